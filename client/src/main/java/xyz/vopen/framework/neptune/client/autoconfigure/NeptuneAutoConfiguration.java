@@ -12,6 +12,8 @@ import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import xyz.vopen.framework.neptune.client.NeptuneClientEntrypoint;
+import xyz.vopen.framework.neptune.common.configuration.AkkaOptions;
+import xyz.vopen.framework.neptune.common.serialization.PayloadFormat;
 import xyz.vopen.framework.neptune.common.utils.time.Time;
 import xyz.vopen.framework.neptune.common.utils.ExceptionUtil;
 import xyz.vopen.framework.neptune.rpc.RpcService;
@@ -54,7 +56,11 @@ public class NeptuneAutoConfiguration {
       this.rpcService =
           new AkkaRpcService(
               ActorSystem.create(NEPTUNE_CLIENT_NAME, ConfigFactory.load(NEPTUNE_CLIENT_CONFIG)),
-              new AkkaRpcServiceConfiguration(Time.seconds(10), 10485760, true));
+              new AkkaRpcServiceConfiguration(
+                  Time.seconds(10),
+                  10485760,
+                  true,
+                  PayloadFormat.parseList(AkkaOptions.RPC_PAYLOAD_FORMATS.defaultValue())));
     }
 
     @Override
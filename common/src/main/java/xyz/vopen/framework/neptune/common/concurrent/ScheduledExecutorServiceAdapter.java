@@ -0,0 +1,54 @@
+package xyz.vopen.framework.neptune.common.concurrent;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ScheduledExecutorServiceAdapter} Adapter to use a {@link ScheduledExecutorService} as a
+ * {@link ScheduledExecutor}.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class ScheduledExecutorServiceAdapter implements ScheduledExecutor {
+  private final ScheduledExecutorService scheduledExecutorService;
+
+  public ScheduledExecutorServiceAdapter(ScheduledExecutorService scheduledExecutorService) {
+    this.scheduledExecutorService =
+        Preconditions.checkNotNull(scheduledExecutorService, "scheduledExecutorService");
+  }
+
+  @Override
+  public @Nonnull ScheduledFuture<?> schedule(
+      @Nonnull Runnable command, long delay, @Nonnull TimeUnit unit) {
+    return scheduledExecutorService.schedule(command, delay, unit);
+  }
+
+  @Override
+  public @Nonnull <V> ScheduledFuture<V> schedule(
+      @Nonnull Callable<V> callable, long delay, @Nonnull TimeUnit unit) {
+    return scheduledExecutorService.schedule(callable, delay, unit);
+  }
+
+  @Override
+  public @Nonnull ScheduledFuture<?> scheduleAtFixedRate(
+      @Nonnull Runnable command, long initialDelay, long period, @Nonnull TimeUnit unit) {
+    return scheduledExecutorService.scheduleAtFixedRate(command, initialDelay, period, unit);
+  }
+
+  @Override
+  public @Nonnull ScheduledFuture<?> scheduleWithFixedDelay(
+      @Nonnull Runnable command, long initialDelay, long delay, @Nonnull TimeUnit unit) {
+    return scheduledExecutorService.scheduleWithFixedDelay(command, initialDelay, delay, unit);
+  }
+
+  @Override
+  public void execute(@Nonnull Runnable command) {
+    scheduledExecutorService.execute(command);
+  }
+}
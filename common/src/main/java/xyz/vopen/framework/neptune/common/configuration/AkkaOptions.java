@@ -19,6 +19,74 @@ public class AkkaOptions {
                   + "call site. Note that in case of having millions of concurrent RPC calls, this may add to the "
                   + "memory footprint.");
 
+  /** Payload formats of the remote rpc calls, in order of preference. */
+  public static final ConfigOption<String> RPC_PAYLOAD_FORMATS =
+      ConfigOptions.key("akka.rpc.payload-formats")
+          .stringType()
+          .defaultValue("kryo,java")
+          .withDescription(
+              "Comma separated serialization formats of the remote rpc payloads, in order of "
+                  + "preference: kryo, java. A connection uses the first format of the caller "
+                  + "which the endpoint accepts too, java being understood by all. Set to java "
+                  + "to disable Kryo.");
+
+  /** Chunk size of the rpc payloads exceeding the maximum frame size. */
+  public static final ConfigOption<Integer> RPC_STREAM_CHUNK_SIZE =
+      ConfigOptions.key("akka.rpc.stream.chunk-size")
+          .intType()
+          .defaultValue(128 * 1024)
+          .withDescription(
+              "Size in bytes of the chunks the rpc invocations and results larger than "
+                  + "akka.framesize are streamed in, at most half of the frame size.");
+
+  /** Chunks of a streamed rpc payload requested ahead by the receiver. */
+  public static final ConfigOption<Integer> RPC_STREAM_WINDOW =
+      ConfigOptions.key("akka.rpc.stream.window")
+          .intType()
+          .defaultValue(8)
+          .withDescription(
+              "Number of chunks of a streamed rpc payload the receiver requests before receiving "
+                  + "the previous ones, bounding the memory a stream takes on the way.");
+
+  /** Gateways kept connected by a rpc service. */
+  public static final ConfigOption<Integer> RPC_CONNECTION_CACHE_SIZE =
+      ConfigOptions.key("akka.rpc.connection-cache.size")
+          .intType()
+          .defaultValue(1024)
+          .withDescription(
+              "Maximum number of gateways a rpc service keeps by address and gateway class, "
+                  + "so that connecting again skips the resolution and handshake. 0 disables "
+                  + "the cache.");
+
+  /** Size from which the rpc payloads are compressed. */
+  public static final ConfigOption<Integer> RPC_COMPRESSION_THRESHOLD =
+      ConfigOptions.key("akka.rpc.compression.threshold")
+          .intType()
+          .defaultValue(8 * 1024)
+          .withDescription(
+              "Size in bytes from which the serialized invocations and results of remote rpc "
+                  + "calls are compressed with LZ4, if both sides support it. The maximum frame "
+                  + "size applies to the compressed payloads. 0 disables the compression.");
+
+  /** Window in which the calls of batchable rpc methods are coalesced. */
+  public static final ConfigOption<Long> RPC_BATCH_WINDOW =
+      ConfigOptions.key("akka.rpc.batch.window")
+          .longType()
+          .defaultValue(1L)
+          .withDescription(
+              "Milliseconds the remote calls of the rpc methods annotated as batchable wait for "
+                  + "other calls to the same endpoint, to be sent together in one message. 0 "
+                  + "sends every call on its own.");
+
+  /** Calls coalesced in one message at most. */
+  public static final ConfigOption<Integer> RPC_BATCH_MAX_INVOCATIONS =
+      ConfigOptions.key("akka.rpc.batch.max-invocations")
+          .intType()
+          .defaultValue(64)
+          .withDescription(
+              "Maximum number of calls of batchable rpc methods sent together, the batch is sent "
+                  + "as soon as it is full or reaches half of akka.framesize.");
+
   /** Timeout for akka ask calls. */
   public static final ConfigOption<String> ASK_TIMEOUT =
       ConfigOptions.key("akka.ask.timeout")
@@ -176,4 +176,118 @@ public class JobManagerOptions {
           .defaultValue(true)
           .withDescription(
               "Controls whether partitions should already be released during the job execution.");
+
+  /** Config parameter determining how many jobs a scheduler claims per round trip. */
+  public static final ConfigOption<Integer> JOB_CLAIM_BATCH_SIZE =
+      key("jobmanager.scheduler.claim-batch-size")
+          .defaultValue(100)
+          .withDescription("The maximum number of jobs claimed by a scheduler per round trip.");
+
+  /**
+   * Config parameter determining how long a claimed job is held by a scheduler without renewal.
+   */
+  public static final ConfigOption<Long> JOB_CLAIM_LEASE =
+      key("jobmanager.scheduler.claim-lease")
+          .defaultValue(60_000L)
+          .withDescription(
+              "Lease in milliseconds of a claimed job. The claiming scheduler renews it on every "
+                  + "acquire round, once expired the job can be claimed by another scheduler.");
+
+  /**
+   * Config parameter determining how long an instance may wait for its dispatch or for its worker.
+   */
+  public static final ConfigOption<Long> DISPATCH_TIMEOUT =
+      key("jobmanager.scheduler.dispatch-timeout")
+          .defaultValue(30_000L)
+          .withDescription(
+              "Time in milliseconds an instance may wait to be dispatched, to be received by its "
+                  + "worker or between two status reports of its worker, before it is retried "
+                  + "or failed.");
+
+  /** Config parameter determining the delay of the first retry of an instance. */
+  public static final ConfigOption<Long> RETRY_BACKOFF_INITIAL =
+      key("jobmanager.scheduler.retry-backoff.initial")
+          .defaultValue(1_000L)
+          .withDescription("Delay in milliseconds before the first retry of a failed instance.");
+
+  /** Config parameter determining the upper bound of the retry delay. */
+  public static final ConfigOption<Long> RETRY_BACKOFF_MAX =
+      key("jobmanager.scheduler.retry-backoff.max")
+          .defaultValue(300_000L)
+          .withDescription("Maximum delay in milliseconds between two retries of an instance.");
+
+  /** Config parameter determining how fast the retry delay grows. */
+  public static final ConfigOption<Double> RETRY_BACKOFF_MULTIPLIER =
+      key("jobmanager.scheduler.retry-backoff.multiplier")
+          .defaultValue(2.0)
+          .withDescription("Factor applied to the retry delay after every retry of an instance.");
+
+  /** Config parameter determining the random part of the retry delay. */
+  public static final ConfigOption<Double> RETRY_BACKOFF_JITTER =
+      key("jobmanager.scheduler.retry-backoff.jitter")
+          .defaultValue(0.5)
+          .withDescription(
+              "Fraction of the retry delay drawn at random, between 0 and 1, so that the instances "
+                  + "failed together are not retried together.");
+
+  /** Config parameter determining how often the retry counts are written back. */
+  public static final ConfigOption<Long> RETRY_TIMES_FLUSH_INTERVAL =
+      key("jobmanager.scheduler.retry-times.flush-interval")
+          .defaultValue(1_000L)
+          .withDescription(
+              "Interval in milliseconds at which the retry counts of the instances are written "
+                  + "back to the persistence in one batch.");
+
+  /** Config parameter determining how fast the expected runtime of a job follows its last runs. */
+  public static final ConfigOption<Double> RUNTIME_EWMA_ALPHA =
+      key("jobmanager.scheduler.runtime-estimator.ewma-alpha")
+          .defaultValue(0.2)
+          .withDescription(
+              "Weight of the last run in the moving average of the runtime of a job, between 0 "
+                  + "and 1.");
+
+  /** Config parameter determining how many runs the runtime quantiles reflect. */
+  public static final ConfigOption<Integer> RUNTIME_SKETCH_WINDOW =
+      key("jobmanager.scheduler.runtime-estimator.sketch-window")
+          .defaultValue(1024)
+          .withDescription(
+              "Number of runs after which the weight of the older runs in the runtime quantiles "
+                  + "of a job is halved.");
+
+  /** Config parameter determining which jobs count as long running for the placement. */
+  public static final ConfigOption<Long> RUNTIME_LONG_TASK_THRESHOLD =
+      key("jobmanager.scheduler.runtime-estimator.long-task-threshold")
+          .defaultValue(600_000L)
+          .withDescription(
+              "Median runtime in milliseconds from which the instances of a job are long tasks, "
+                  + "the workers running one are avoided by the placement.");
+
+  /** Config parameter determining whether a time limit is derived from the runtime of a job. */
+  public static final ConfigOption<Boolean> RUNTIME_TIMEOUT_ENABLED =
+      key("jobmanager.scheduler.runtime-timeout.enabled")
+          .booleanType()
+          .defaultValue(false)
+          .withDescription(
+              "If true, the instances of a job without time limit are limited by the time limit "
+                  + "derived from its runtime. Off by default, these jobs then run unlimited.");
+
+  /** Config parameter determining the time limit derived from the runtime of a job. */
+  public static final ConfigOption<Double> RUNTIME_TIMEOUT_MULTIPLIER =
+      key("jobmanager.scheduler.runtime-timeout.multiplier")
+          .defaultValue(3.0)
+          .withDescription(
+              "The instances of a job without time limit are limited to this multiple of the 99th "
+                  + "percentile of its runtime, 0 to never derive a time limit.");
+
+  /** Config parameter determining when the runtime of a job is known well enough. */
+  public static final ConfigOption<Integer> RUNTIME_TIMEOUT_MIN_SAMPLES =
+      key("jobmanager.scheduler.runtime-timeout.min-samples")
+          .defaultValue(20)
+          .withDescription("Number of successful runs needed before a time limit is derived.");
+
+  /** Config parameter determining the lower bound of a derived time limit. */
+  public static final ConfigOption<Long> RUNTIME_TIMEOUT_MIN =
+      key("jobmanager.scheduler.runtime-timeout.min")
+          .defaultValue(60_000L)
+          .withDescription("Lower bound in milliseconds of a derived time limit.");
 }
@@ -13,6 +13,13 @@ public class PersistenceOptions {
     throw new AssertionError();
   }
 
+  public static final ConfigOption<String> PERSISTENCE_TYPE =
+      key("persistence.type")
+          .defaultValue("mysql")
+          .withDescription(
+              "The config parameter defining the persistence to use, one of mysql, mongo, "
+                  + "embedded, memory");
+
   // =====================   MYSQL Configuration  =====================
   public static final ConfigOption<String> MYSQL_ADDRESS =
       key("mysql.address")
@@ -45,5 +52,147 @@ public class PersistenceOptions {
           .noDefaultValue()
           .withDescription("The config parameter defining the mysql url to connect to");
 
+  public static final ConfigOption<Integer> MYSQL_POOL_MAX_SIZE =
+      key("mysql.pool.max-size")
+          .defaultValue(16)
+          .withDescription(
+              "The config parameter defining the maximum number of connections to mysql, the "
+                  + "upper bound of the adaptive pool size");
+
+  public static final ConfigOption<Integer> MYSQL_POOL_WAIT_QUEUE_SIZE =
+      key("mysql.pool.wait-queue-size")
+          .defaultValue(-1)
+          .withDescription(
+              "The config parameter defining the maximum number of statements waiting for a "
+                  + "connection, beyond which they fail immediately, -1 for unbounded");
+
+  public static final ConfigOption<Long> MYSQL_POOL_IDLE_TIMEOUT =
+      key("mysql.pool.idle-timeout")
+          .defaultValue(60000L)
+          .withDescription(
+              "The config parameter defining the time in milliseconds after which an unused "
+                  + "connection is closed, 0 to keep connections open");
+
+  public static final ConfigOption<Integer> MYSQL_PREPARED_STATEMENT_CACHE_SIZE =
+      key("mysql.prepared-statement-cache.max-size")
+          .defaultValue(256)
+          .withDescription(
+              "The config parameter defining the number of prepared statements cached per "
+                  + "connection, saving the prepare round trip of every query, 0 to disable");
+
+  public static final ConfigOption<Boolean> MYSQL_POOL_ADAPTIVE_ENABLED =
+      key("mysql.pool.adaptive.enabled")
+          .defaultValue(false)
+          .withDescription(
+              "The config parameter defining whether the number of connections in use grows and "
+                  + "shrinks with the observed wait time and query latency");
+
+  public static final ConfigOption<Integer> MYSQL_POOL_ADAPTIVE_MIN_SIZE =
+      key("mysql.pool.adaptive.min-size")
+          .defaultValue(4)
+          .withDescription(
+              "The config parameter defining the number of connections the adaptive pool never "
+                  + "shrinks below");
+
+  // =====================  Cache Configuration  =====================
+  public static final ConfigOption<Boolean> JOB_CACHE_ENABLED =
+      key("persistence.job-cache.enabled")
+          .defaultValue(true)
+          .withDescription(
+              "The config parameter defining whether job reads go through the local job cache");
+
+  public static final ConfigOption<Integer> JOB_CACHE_MAX_SIZE =
+      key("persistence.job-cache.max-size")
+          .defaultValue(10000)
+          .withDescription("The config parameter defining the maximum number of cached jobs");
+
+  public static final ConfigOption<Boolean> METRICS_ENABLED =
+      key("persistence.metrics.enabled")
+          .defaultValue(true)
+          .withDescription(
+              "The config parameter defining whether the latency, rows and errors of every "
+                  + "persistence call are published through the metric service");
+
+  // =====================  Instance Retention Configuration  =====================
+  public static final ConfigOption<Integer> INSTANCE_RETENTION_DAYS =
+      key("persistence.instance.retention-days")
+          .defaultValue(7)
+          .withDescription(
+              "The config parameter defining the number of days the instance history is kept");
+
+  public static final ConfigOption<Integer> INSTANCE_PARTITION_PRECREATE_DAYS =
+      key("persistence.instance.partition-precreate-days")
+          .defaultValue(3)
+          .withDescription(
+              "The config parameter defining the number of days ahead the instance partitions "
+                  + "are created");
+
+  public static final ConfigOption<Long> INSTANCE_CLEANER_INTERVAL =
+      key("persistence.instance.cleaner-interval")
+          .defaultValue(60 * 60 * 1000L)
+          .withDescription(
+              "The config parameter defining the interval in milliseconds between two runs of "
+                  + "the instance history cleaner");
+
+  // =====================  Embedded Configuration  =====================
+  public static final ConfigOption<String> EMBEDDED_DIRECTORY =
+      key("embedded.directory")
+          .defaultValue("data/neptune")
+          .withDescription("The config parameter defining the directory of the embedded log");
+
+  public static final ConfigOption<Integer> EMBEDDED_SEGMENT_SIZE =
+      key("embedded.segment-size")
+          .defaultValue(64 * 1024 * 1024)
+          .withDescription("The config parameter defining the size in bytes of a log segment");
+
+  public static final ConfigOption<Boolean> EMBEDDED_SYNC_WRITE =
+      key("embedded.sync-write")
+          .defaultValue(false)
+          .withDescription(
+              "The config parameter defining whether every write is forced to the disk, "
+                  + "otherwise writes survive a process crash but not a machine crash");
+
+  public static final ConfigOption<Long> EMBEDDED_COMPACTION_INTERVAL =
+      key("embedded.compaction.interval")
+          .defaultValue(60_000L)
+          .withDescription(
+              "The config parameter defining the interval in milliseconds between compactions");
+
+  public static final ConfigOption<Double> EMBEDDED_COMPACTION_THRESHOLD =
+      key("embedded.compaction.threshold")
+          .defaultValue(0.5d)
+          .withDescription(
+              "The config parameter defining the live ratio under which a segment is compacted");
+
+  // =====================  Memory Configuration  =====================
+  public static final ConfigOption<Long> MEMORY_LATENCY =
+      key("persistence.memory.latency")
+          .defaultValue(0L)
+          .withDescription(
+              "The config parameter defining the latency in microseconds injected in every call "
+                  + "of the in-memory persistence, to simulate a database round trip");
+
+  public static final ConfigOption<Long> MEMORY_LATENCY_JITTER =
+      key("persistence.memory.latency-jitter")
+          .defaultValue(0L)
+          .withDescription(
+              "The config parameter defining the maximum random latency in microseconds added to "
+                  + "the injected latency");
+
   // =====================  MONGO Configuration  =====================
+  public static final ConfigOption<String> MONGO_URL =
+      key("mongo.url")
+          .defaultValue("mongodb://localhost:27017")
+          .withDescription("The config parameter defining the mongo connection string");
+
+  public static final ConfigOption<String> MONGO_DATABASE =
+      key("mongo.database")
+          .defaultValue("neptune")
+          .withDescription("The config parameter defining the mongo database to connect to");
+
+  public static final ConfigOption<Long> MONGO_TIMEOUT =
+      key("mongo.timeout")
+          .defaultValue(10_000L)
+          .withDescription(
+              "The config parameter defining the timeout in milliseconds of a mongo operation");
 }
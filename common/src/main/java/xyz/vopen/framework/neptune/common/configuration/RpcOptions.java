@@ -0,0 +1,67 @@
+package xyz.vopen.framework.neptune.common.configuration;
+
+/**
+ * {@link RpcOptions} Options of the rpc transport. The timeout, frame size, payload format and
+ * compression options of {@link AkkaOptions} apply to every transport.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class RpcOptions {
+
+  /** Transport of the rpc service. */
+  public static final ConfigOption<String> TRANSPORT =
+      ConfigOptions.key("rpc.transport")
+          .stringType()
+          .defaultValue("akka")
+          .withDescription(
+              "Transport of the rpc service: akka, the Akka remoting, or netty, a binary protocol "
+                  + "over Netty. All the processes of a cluster must use the same transport.");
+
+  /** Whether the endpoints of the same process are called directly. */
+  public static final ConfigOption<Boolean> IN_PROCESS_CALLS =
+      ConfigOptions.key("rpc.in-process-calls.enabled")
+          .booleanType()
+          .defaultValue(true)
+          .withDescription(
+              "If true, the endpoints of an rpc service are registered for the rpc services of "
+                  + "the same process, which call them in their main thread directly instead of "
+                  + "through the transport. Off, every call goes through the transport.");
+
+  /** Messages of a lane of the mailbox of an endpoint. */
+  public static final ConfigOption<Integer> MAILBOX_CAPACITY =
+      ConfigOptions.key("rpc.mailbox.capacity")
+          .intType()
+          .defaultValue(10_000)
+          .withDescription(
+              "Maximum number of rpc invocations queued in each lane of the mailbox of an "
+                  + "endpoint: control, heartbeat and normal. The invocations exceeding it are "
+                  + "rejected, failing the call. 0 leaves the mailboxes unbounded.");
+
+  /** Event loop threads of the netty transport. */
+  public static final ConfigOption<Integer> NETTY_IO_THREADS =
+      ConfigOptions.key("rpc.netty.io-threads")
+          .intType()
+          .defaultValue(0)
+          .withDescription(
+              "Number of event loop threads reading and writing the connections of the netty "
+                  + "transport. 0 uses twice the number of cores.");
+
+  /** Threads running the main threads of the endpoints of the netty transport. */
+  public static final ConfigOption<Integer> NETTY_ENDPOINT_THREADS =
+      ConfigOptions.key("rpc.netty.endpoint-threads")
+          .intType()
+          .defaultValue(0)
+          .withDescription(
+              "Number of threads the main threads of the endpoints of the netty transport run "
+                  + "on, which also complete the futures of the calls. 0 uses the number of cores.");
+
+  /** Messages an endpoint of the netty transport processes before yielding its thread. */
+  public static final ConfigOption<Integer> NETTY_THROUGHPUT =
+      ConfigOptions.key("rpc.netty.throughput")
+          .intType()
+          .defaultValue(15)
+          .withDescription(
+              "Number of messages the main thread of an endpoint of the netty transport processes "
+                  + "before the thread is given to another endpoint, like akka.throughput.");
+}
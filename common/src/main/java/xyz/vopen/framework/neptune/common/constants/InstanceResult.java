@@ -8,4 +8,5 @@ package xyz.vopen.framework.neptune.common.constants;
  */
 public class InstanceResult {
   public static final String WORKER_REPORT_TIMEOUT = "worker report timeout,maybe worker down.";
+  public static final String INSTANCE_TIME_LIMIT_EXCEEDED = "instance exceeded its time limit.";
 }
@@ -1,5 +1,6 @@
 package xyz.vopen.framework.neptune.common.model;
 
+import java.io.Serializable;
 import java.util.Date;
 
 /**
@@ -8,7 +9,9 @@ import java.util.Date;
  * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
  * @version ${project.version} - 2020/10/22
  */
-public class InstanceInfo {
+public class InstanceInfo implements Serializable {
+  private static final long serialVersionUID = 6209532318467591754L;
+
   private Long id;
   /** The app id to which the task belongs. */
   private Long appId;
@@ -221,6 +224,65 @@ public class InstanceInfo {
     this.gmtUpdate = gmtUpdate;
   }
 
+  /**
+   * Copies the non null fields of the given instance into this one, the way the storages apply an
+   * update built from a partial read such as a status projection.
+   *
+   * @param update Instance holding the changed fields.
+   * @return This instance.
+   */
+  public InstanceInfo merge(InstanceInfo update) {
+    if (update.id != null) {
+      this.id = update.id;
+    }
+    if (update.appId != null) {
+      this.appId = update.appId;
+    }
+    if (update.jobId != null) {
+      this.jobId = update.jobId;
+    }
+    if (update.jobParams != null) {
+      this.jobParams = update.jobParams;
+    }
+    if (update.type != null) {
+      this.type = update.type;
+    }
+    if (update.workFlowId != null) {
+      this.workFlowId = update.workFlowId;
+    }
+    if (update.status != null) {
+      this.status = update.status;
+    }
+    if (update.result != null) {
+      this.result = update.result;
+    }
+    if (update.triggerTime != null) {
+      this.triggerTime = update.triggerTime;
+    }
+    if (update.completedTime != null) {
+      this.completedTime = update.completedTime;
+    }
+    if (update.lastReportTime != null) {
+      this.lastReportTime = update.lastReportTime;
+    }
+    if (update.executeTime != null) {
+      this.executeTime = update.executeTime;
+    }
+    if (update.retryTimes != null) {
+      this.retryTimes = update.retryTimes;
+    }
+    if (update.taskAddress != null) {
+      this.taskAddress = update.taskAddress;
+    }
+    if (update.gmtCreate != null) {
+      this.gmtCreate = update.gmtCreate;
+    }
+    if (update.gmtUpdate != null) {
+      this.gmtUpdate = update.gmtUpdate;
+    }
+    return this;
+  }
+
   // =====================   Builder  =====================
   public static Builder builder() {
     return new Builder();
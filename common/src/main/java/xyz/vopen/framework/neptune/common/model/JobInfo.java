@@ -2,6 +2,7 @@ package xyz.vopen.framework.neptune.common.model;
 
 import xyz.vopen.framework.neptune.common.utils.IdGenerateUtil;
 
+import java.io.Serializable;
 import java.util.Date;
 
 /**
@@ -10,7 +11,9 @@ import java.util.Date;
  * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
  * @version ${project.version} - 2020/10/19
  */
-public class JobInfo {
+public class JobInfo implements Serializable {
+  private static final long serialVersionUID = -3172349462287355519L;
+
   /** Unique id through {@link IdGenerateUtil#generate()} generate. */
   private Long id;
   /** The name of job. */
@@ -65,11 +68,64 @@ public class JobInfo {
   /** Alarm user ID list, multi-value comma. */
   private String notifyUserIds;
 
+  /** The server that claimed the job, null while the job is unclaimed. */
+  private String claimServer;
+  /** Time in milliseconds until which the claim holds, the job can be claimed again afterwards. */
+  private Long leaseExpireTime;
+
+  /**
+   * Milliseconds the triggers of the job may be delayed by to spread the load of the jobs due at
+   * the same time, null or 0 to fire on time.
+   */
+  private Long triggerTolerance;
+
+  /**
+   * Milliseconds before the first retry of a failed instance of the job, null or 0 for the backoff
+   * of the scheduler.
+   */
+  private Long retryBackoff;
+  /** Upper bound of the retry delay in milliseconds, null or 0 for the bound of the scheduler. */
+  private Long maxRetryBackoff;
+
   private Date gmtCreate;
   private Date gmtUpdate;
 
   public JobInfo() {}
 
+  /** Copies the specifies job. */
+  public JobInfo(JobInfo other) {
+    this.id = other.id;
+    this.jobName = other.jobName;
+    this.jobDescription = other.jobDescription;
+    this.appId = other.appId;
+    this.jobParams = other.jobParams;
+    this.timeExpressionType = other.timeExpressionType;
+    this.timeExpression = other.timeExpression;
+    this.executeType = other.executeType;
+    this.processorType = other.processorType;
+    this.processorInfo = other.processorInfo;
+    this.maxInstanceNum = other.maxInstanceNum;
+    this.concurrency = other.concurrency;
+    this.instanceTimeLimit = other.instanceTimeLimit;
+    this.instanceRetryNum = other.instanceRetryNum;
+    this.taskRetryNum = other.taskRetryNum;
+    this.status = other.status;
+    this.nextTriggerTime = other.nextTriggerTime;
+    this.minCpuCores = other.minCpuCores;
+    this.minMemorySpace = other.minMemorySpace;
+    this.minDiskSpace = other.minDiskSpace;
+    this.designatedWorkers = other.designatedWorkers;
+    this.maxWorkerCount = other.maxWorkerCount;
+    this.notifyUserIds = other.notifyUserIds;
+    this.claimServer = other.claimServer;
+    this.leaseExpireTime = other.leaseExpireTime;
+    this.triggerTolerance = other.triggerTolerance;
+    this.retryBackoff = other.retryBackoff;
+    this.maxRetryBackoff = other.maxRetryBackoff;
+    this.gmtCreate = other.gmtCreate == null ? null : new Date(other.gmtCreate.getTime());
+    this.gmtUpdate = other.gmtUpdate == null ? null : new Date(other.gmtUpdate.getTime());
+  }
+
   public JobInfo(
       Long id,
       String jobName,
@@ -322,4 +378,44 @@ public class JobInfo {
   public void setGmtUpdate(Date gmtUpdate) {
     this.gmtUpdate = gmtUpdate;
   }
+
+  public String getClaimServer() {
+    return claimServer;
+  }
+
+  public void setClaimServer(String claimServer) {
+    this.claimServer = claimServer;
+  }
+
+  public Long getLeaseExpireTime() {
+    return leaseExpireTime;
+  }
+
+  public void setLeaseExpireTime(Long leaseExpireTime) {
+    this.leaseExpireTime = leaseExpireTime;
+  }
+
+  public Long getTriggerTolerance() {
+    return triggerTolerance;
+  }
+
+  public void setTriggerTolerance(Long triggerTolerance) {
+    this.triggerTolerance = triggerTolerance;
+  }
+
+  public Long getRetryBackoff() {
+    return retryBackoff;
+  }
+
+  public void setRetryBackoff(Long retryBackoff) {
+    this.retryBackoff = retryBackoff;
+  }
+
+  public Long getMaxRetryBackoff() {
+    return maxRetryBackoff;
+  }
+
+  public void setMaxRetryBackoff(Long maxRetryBackoff) {
+    this.maxRetryBackoff = maxRetryBackoff;
+  }
 }
@@ -3,10 +3,62 @@ package xyz.vopen.framework.neptune.common.model.message.request;
 import java.io.Serializable;
 
 /**
- * {@link ReportHeartbeatRequest}
+ * {@link ReportHeartbeatRequest} Heartbeat of a worker, carrying the resources it has free.
  *
  * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
  * @version ${project.version} - 2020/10/5
  */
 public class ReportHeartbeatRequest implements Serializable {
+  private static final long serialVersionUID = -2846397410365538103L;
+
+  /** The address of the worker. */
+  private String workerAddress;
+  /** Time in milliseconds the heartbeat was sent. */
+  private long heartbeatTime;
+  /** Free CPU cores. */
+  private double availableCpuCores;
+  /** Free memory space, GB per unit. */
+  private double availableMemorySpace;
+  /** Free disk space, GB per unit. */
+  private double availableDiskSpace;
+
+  public String getWorkerAddress() {
+    return workerAddress;
+  }
+
+  public void setWorkerAddress(String workerAddress) {
+    this.workerAddress = workerAddress;
+  }
+
+  public long getHeartbeatTime() {
+    return heartbeatTime;
+  }
+
+  public void setHeartbeatTime(long heartbeatTime) {
+    this.heartbeatTime = heartbeatTime;
+  }
+
+  public double getAvailableCpuCores() {
+    return availableCpuCores;
+  }
+
+  public void setAvailableCpuCores(double availableCpuCores) {
+    this.availableCpuCores = availableCpuCores;
+  }
+
+  public double getAvailableMemorySpace() {
+    return availableMemorySpace;
+  }
+
+  public void setAvailableMemorySpace(double availableMemorySpace) {
+    this.availableMemorySpace = availableMemorySpace;
+  }
+
+  public double getAvailableDiskSpace() {
+    return availableDiskSpace;
+  }
+
+  public void setAvailableDiskSpace(double availableDiskSpace) {
+    this.availableDiskSpace = availableDiskSpace;
+  }
 }
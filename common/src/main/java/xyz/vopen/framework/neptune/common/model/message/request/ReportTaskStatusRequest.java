@@ -3,10 +3,73 @@ package xyz.vopen.framework.neptune.common.model.message.request;
 import java.io.Serializable;
 
 /**
- * {@link ReportTaskStatusRequest}
+ * {@link ReportTaskStatusRequest} Status of an instance reported by the worker running it, the
+ * times are taken on the worker.
  *
  * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
  * @version ${project.version} - 2020/10/5
  */
 public class ReportTaskStatusRequest implements Serializable {
+  private static final long serialVersionUID = 4418032651902365273L;
+
+  /** Id of the instance. */
+  private long instanceId;
+  /** Id of the job of the instance. */
+  private long jobId;
+  /** Status of the instance, see {@code InstanceStatus}. */
+  private int status;
+  /** Time in milliseconds the instance started running on the worker, 0 if unknown. */
+  private long startTime;
+  /** Time in milliseconds of the report. */
+  private long reportTime;
+  /** Result of the instance once finished. */
+  private String result;
+
+  public long getInstanceId() {
+    return instanceId;
+  }
+
+  public void setInstanceId(long instanceId) {
+    this.instanceId = instanceId;
+  }
+
+  public long getJobId() {
+    return jobId;
+  }
+
+  public void setJobId(long jobId) {
+    this.jobId = jobId;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  public void setStatus(int status) {
+    this.status = status;
+  }
+
+  public long getStartTime() {
+    return startTime;
+  }
+
+  public void setStartTime(long startTime) {
+    this.startTime = startTime;
+  }
+
+  public long getReportTime() {
+    return reportTime;
+  }
+
+  public void setReportTime(long reportTime) {
+    this.reportTime = reportTime;
+  }
+
+  public String getResult() {
+    return result;
+  }
+
+  public void setResult(String result) {
+    this.result = result;
+  }
 }
@@ -0,0 +1,213 @@
+package xyz.vopen.framework.neptune.common.serialization;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.CollectionSerializer;
+import com.esotericsoftware.kryo.serializers.JavaSerializer;
+import com.esotericsoftware.kryo.serializers.MapSerializer;
+import com.esotericsoftware.kryo.util.DefaultInstantiatorStrategy;
+import com.google.common.base.Preconditions;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+import xyz.vopen.framework.neptune.common.model.InstanceInfo;
+import xyz.vopen.framework.neptune.common.model.JobInfo;
+import xyz.vopen.framework.neptune.common.model.message.request.DispatcherTaskRequest;
+import xyz.vopen.framework.neptune.common.model.message.request.MapTaskRequest;
+import xyz.vopen.framework.neptune.common.model.message.request.QueryTaskStatusRequest;
+import xyz.vopen.framework.neptune.common.model.message.request.ReportHeartbeatRequest;
+import xyz.vopen.framework.neptune.common.model.message.request.ReportTaskStatusRequest;
+import xyz.vopen.framework.neptune.common.model.message.request.StopTaskRequest;
+import xyz.vopen.framework.neptune.common.model.message.request.TaskStartRequest;
+import xyz.vopen.framework.neptune.common.model.message.request.TaskStopRequest;
+
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * {@link KryoSerializer} Kryo serialization of the RPC payloads. A Kryo instance is costly to
+ * create and not thread safe, so every thread keeps its own, together with the output buffer it
+ * serializes into: a payload costs one copy of its bytes and no other allocation.
+ *
+ * <p>The model and message classes are registered, so that a small id is written instead of their
+ * class name. The ids are part of the wire format: classes are only ever appended to {@link
+ * #REGISTERED_CLASSES}. The classes of the other modules are registered through {@link
+ * #register(Class, int)}. Other classes are still accepted and written with their name.
+ *
+ * <p>References are not tracked: a shared object is written once per reference and a cyclic graph
+ * fails, see {@link xyz.vopen.framework.neptune.common.utils.SerializedValue} falling back to Java
+ * serialization then.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class KryoSerializer {
+
+  /** Id of the first registered class, the lower ones are taken by Kryo's default types. */
+  private static final int FIRST_REGISTRATION_ID = 100;
+
+  /** Ids from this one on are left to {@link #register(Class, int)}. */
+  public static final int FIRST_MODULE_REGISTRATION_ID = 1000;
+
+  private static final Class<?>[] REGISTERED_CLASSES = {
+    Class.class,
+    Class[].class,
+    Object[].class,
+    String[].class,
+    byte[].class,
+    long[].class,
+    Date.class,
+    ArrayList.class,
+    LinkedList.class,
+    HashMap.class,
+    LinkedHashMap.class,
+    HashSet.class,
+    JobInfo.class,
+    InstanceInfo.class,
+    DispatcherTaskRequest.class,
+    MapTaskRequest.class,
+    QueryTaskStatusRequest.class,
+    ReportHeartbeatRequest.class,
+    ReportTaskStatusRequest.class,
+    StopTaskRequest.class,
+    TaskStartRequest.class,
+    TaskStopRequest.class
+  };
+
+  private static final int INITIAL_BUFFER_SIZE = 4 * 1024;
+
+  /** Output buffers grown beyond this size by a large payload are dropped instead of kept. */
+  private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+  private static final byte[] EMPTY = new byte[0];
+
+  /** Classes registered by the other modules by id, guarded by itself. */
+  private static final Map<Integer, Class<?>> MODULE_REGISTRATIONS = new HashMap<>();
+
+  /** Incremented on every module registration, for the threads to catch up. */
+  private static volatile int moduleRegistrationCount;
+
+  private static final ThreadLocal<PayloadKryo> KRYO =
+      ThreadLocal.withInitial(KryoSerializer::newKryo);
+
+  private static final ThreadLocal<Output> OUTPUT =
+      ThreadLocal.withInitial(() -> new Output(INITIAL_BUFFER_SIZE, -1));
+
+  private static final ThreadLocal<Input> INPUT = ThreadLocal.withInitial(Input::new);
+
+  private KryoSerializer() {}
+
+  /**
+   * Registers a class of another module, e.g. a message class, under a fixed id. The ids are part
+   * of the wire format like the ones of the built-in registrations.
+   *
+   * @param id at least {@link #FIRST_MODULE_REGISTRATION_ID}.
+   * @throws IllegalArgumentException if the id is taken by another class.
+   */
+  public static void register(Class<?> type, int id) {
+    Preconditions.checkArgument(
+        id >= FIRST_MODULE_REGISTRATION_ID,
+        "Ids below %s are reserved.",
+        FIRST_MODULE_REGISTRATION_ID);
+    synchronized (MODULE_REGISTRATIONS) {
+      Class<?> registered = MODULE_REGISTRATIONS.putIfAbsent(id, type);
+      Preconditions.checkArgument(
+          registered == null || registered == type,
+          "Id %s is taken by %s.",
+          id,
+          registered);
+      if (registered == null) {
+        moduleRegistrationCount++;
+      }
+    }
+  }
+
+  public static byte[] serialize(Object value) throws IOException {
+    Kryo kryo = kryo();
+    Output output = OUTPUT.get();
+    try {
+      output.reset();
+      kryo.writeClassAndObject(output, value);
+      return output.toBytes();
+    } catch (RuntimeException | StackOverflowError e) {
+      // a cyclic graph overflows the stack
+      kryo.reset();
+      throw new IOException(
+          "Could not serialize " + value.getClass().getName() + " with Kryo.", e);
+    } finally {
+      if (output.getBuffer().length > MAX_RETAINED_BUFFER_SIZE) {
+        OUTPUT.remove();
+      }
+    }
+  }
+
+  public static Object deserialize(byte[] bytes, ClassLoader loader) throws IOException {
+    Kryo kryo = kryo();
+    Input input = INPUT.get();
+    kryo.setClassLoader(loader);
+    input.setBuffer(bytes);
+    try {
+      return kryo.readClassAndObject(input);
+    } catch (RuntimeException e) {
+      kryo.reset();
+      throw new IOException("Could not deserialize the payload with Kryo.", e);
+    } finally {
+      // do not retain the payload in the thread
+      input.setBuffer(EMPTY);
+    }
+  }
+
+  private static Kryo kryo() {
+    PayloadKryo kryo = KRYO.get();
+    if (kryo.moduleRegistrationCount != moduleRegistrationCount) {
+      synchronized (MODULE_REGISTRATIONS) {
+        MODULE_REGISTRATIONS.forEach((id, type) -> kryo.register(type, id));
+        kryo.moduleRegistrationCount = moduleRegistrationCount;
+      }
+    }
+    return kryo;
+  }
+
+  private static PayloadKryo newKryo() {
+    PayloadKryo kryo = new PayloadKryo();
+    kryo.setRegistrationRequired(false);
+    // payloads are trees of plain objects, tracking the references costs five times the time
+    kryo.setReferences(false);
+    // classes without a nullary constructor, e.g. the immutable collections
+    kryo.setInstantiatorStrategy(new DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+    for (int i = 0; i < REGISTERED_CLASSES.length; i++) {
+      kryo.register(REGISTERED_CLASSES[i], FIRST_REGISTRATION_ID + i);
+    }
+    return kryo;
+  }
+
+  /**
+   * Kryo writing the private collections of the JDK, e.g. the unmodifiable and synchronized views,
+   * with Java serialization: the generic collection serializers would read them back by adding
+   * the elements, which the views refuse or fail on.
+   */
+  private static final class PayloadKryo extends Kryo {
+    private final Serializer javaSerializer = new JavaSerializer();
+
+    /** Number of module registrations applied, guarded by the registrations. */
+    private int moduleRegistrationCount;
+
+    @Override
+    public Serializer getDefaultSerializer(Class type) {
+      Serializer serializer = super.getDefaultSerializer(type);
+      if ((serializer instanceof CollectionSerializer || serializer instanceof MapSerializer)
+          && type.getName().startsWith("java.")
+          && !Modifier.isPublic(type.getModifiers())) {
+        return javaSerializer;
+      }
+      return serializer;
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package xyz.vopen.framework.neptune.common.serialization;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+
+/**
+ * {@link PayloadCompression} LZ4 compression of the serialized RPC payloads. LZ4 compresses at
+ * several hundred megabytes per second per core, cheaper than sending the repetitive payloads of
+ * the scheduler, e.g. the JSON of the map tasks and job parameters, uncompressed over the network.
+ *
+ * <p>A compressed payload is the length of the original payload, 4 bytes big endian, followed by
+ * the LZ4 block. A length beyond what the block can expand to is rejected before the payload is
+ * allocated.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class PayloadCompression {
+
+  private static final int LENGTH_BYTES = 4;
+
+  /**
+   * Most bytes an LZ4 block expands to per byte: a match is at most 255 bytes longer per byte of
+   * its length, so a length above this ratio is corrupted and is not allocated.
+   */
+  private static final int MAX_EXPANSION = 255;
+
+  /** The native implementation if available, the pure java one otherwise. */
+  private static final LZ4Factory LZ4 = LZ4Factory.fastestInstance();
+
+  private static final LZ4Compressor COMPRESSOR = LZ4.fastCompressor();
+
+  private static final LZ4FastDecompressor DECOMPRESSOR = LZ4.fastDecompressor();
+
+  private PayloadCompression() {}
+
+  /**
+   * Compresses the payload.
+   *
+   * @return The compressed payload, null if it is not smaller than the payload, e.g. already
+   *     compressed data.
+   */
+  public static @Nullable byte[] compress(byte[] payload) {
+    int maxLength = COMPRESSOR.maxCompressedLength(payload.length);
+    byte[] buffer = new byte[LENGTH_BYTES + maxLength];
+    writeLength(buffer, payload.length);
+    int compressedLength =
+        COMPRESSOR.compress(payload, 0, payload.length, buffer, LENGTH_BYTES, maxLength);
+    int length = LENGTH_BYTES + compressedLength;
+    if (length >= payload.length) {
+      return null;
+    }
+    byte[] compressed = new byte[length];
+    System.arraycopy(buffer, 0, compressed, 0, length);
+    return compressed;
+  }
+
+  /**
+   * Decompresses a payload returned by {@link #compress(byte[])}.
+   *
+   * @throws IOException if the payload is corrupted.
+   */
+  public static byte[] decompress(byte[] compressed) throws IOException {
+    if (compressed.length < LENGTH_BYTES) {
+      throw new IOException("Compressed payload of " + compressed.length + " bytes is truncated.");
+    }
+    int length = readLength(compressed);
+    if (length < 0) {
+      throw new IOException("Compressed payload has a negative length " + length + '.');
+    }
+    long maxLength = (long) (compressed.length - LENGTH_BYTES) * MAX_EXPANSION;
+    if (length > maxLength) {
+      throw new IOException(
+          "Compressed payload of "
+              + compressed.length
+              + " bytes cannot expand to "
+              + length
+              + " bytes.");
+    }
+    byte[] payload = new byte[length];
+    try {
+      int read = DECOMPRESSOR.decompress(compressed, LENGTH_BYTES, payload, 0, length);
+      if (LENGTH_BYTES + read != compressed.length) {
+        throw new IOException(
+            "Compressed payload has "
+                + (compressed.length - LENGTH_BYTES - read)
+                + " extra bytes.");
+      }
+    } catch (LZ4Exception e) {
+      throw new IOException("Could not decompress the payload.", e);
+    }
+    return payload;
+  }
+
+  private static void writeLength(byte[] buffer, int length) {
+    buffer[0] = (byte) (length >>> 24);
+    buffer[1] = (byte) (length >>> 16);
+    buffer[2] = (byte) (length >>> 8);
+    buffer[3] = (byte) length;
+  }
+
+  private static int readLength(byte[] buffer) {
+    return (buffer[0] & 0xFF) << 24
+        | (buffer[1] & 0xFF) << 16
+        | (buffer[2] & 0xFF) << 8
+        | (buffer[3] & 0xFF);
+  }
+}
@@ -0,0 +1,110 @@
+package xyz.vopen.framework.neptune.common.serialization;
+
+import xyz.vopen.framework.neptune.common.utils.InstantiationUtil;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * {@link PayloadFormat} Formats of the serialized RPC payloads, identified by one byte on the wire.
+ * {@link #JAVA} is understood by every endpoint, the other formats are only used once both ends
+ * agreed on them in the handshake.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public enum PayloadFormat {
+  /** Java serialization, the values must be {@link java.io.Serializable}. */
+  JAVA((byte) 0) {
+    @Override
+    public byte[] serialize(Object value) throws IOException {
+      return InstantiationUtil.serializeObject(value);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes, ClassLoader loader)
+        throws IOException, ClassNotFoundException {
+      return InstantiationUtil.deserializeObject(bytes, loader);
+    }
+  },
+
+  /** Kryo serialization, see {@link KryoSerializer}. */
+  KRYO((byte) 1) {
+    @Override
+    public byte[] serialize(Object value) throws IOException {
+      return KryoSerializer.serialize(value);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes, ClassLoader loader) throws IOException {
+      return KryoSerializer.deserialize(bytes, loader);
+    }
+  };
+
+  private final byte id;
+
+  PayloadFormat(byte id) {
+    this.id = id;
+  }
+
+  public byte getId() {
+    return id;
+  }
+
+  public abstract byte[] serialize(Object value) throws IOException;
+
+  public abstract Object deserialize(byte[] bytes, ClassLoader loader)
+      throws IOException, ClassNotFoundException;
+
+  /** Returns the format of the given id, null if unknown, e.g. sent by a newer version. */
+  public static @Nullable PayloadFormat fromId(byte id) {
+    for (PayloadFormat format : values()) {
+      if (format.id == id) {
+        return format;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Parses a comma separated list of format names in order of preference, e.g. {@code kryo,java}.
+   * {@link #JAVA} is appended when missing, since it is the format every endpoint falls back to.
+   */
+  public static List<PayloadFormat> parseList(String formats) {
+    List<PayloadFormat> parsed = new ArrayList<>();
+    if (formats != null) {
+      for (String name : formats.split(",")) {
+        String trimmed = name.trim();
+        if (trimmed.isEmpty()) {
+          continue;
+        }
+        PayloadFormat format = valueOf(trimmed.toUpperCase(Locale.ROOT));
+        if (!parsed.contains(format)) {
+          parsed.add(format);
+        }
+      }
+    }
+    if (!parsed.contains(JAVA)) {
+      parsed.add(JAVA);
+    }
+    return parsed;
+  }
+
+  /**
+   * Returns the first of the formats preferred by the caller which the callee accepts too, {@link
+   * #JAVA} if there is none.
+   */
+  public static PayloadFormat negotiate(
+      Collection<PayloadFormat> preferred, Collection<PayloadFormat> accepted) {
+    for (PayloadFormat format : preferred) {
+      if (accepted.contains(format)) {
+        return format;
+      }
+    }
+    return JAVA;
+  }
+}
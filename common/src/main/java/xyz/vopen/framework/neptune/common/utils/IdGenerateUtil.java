@@ -96,7 +96,7 @@ public class IdGenerateUtil {
    *
    * @return the unique id.
    */
-  public static Long generate() {
+  public static synchronized Long generate() {
     long time = clock.millis();
     Preconditions.checkState(
         lastTime <= time,
@@ -105,7 +105,13 @@ public class IdGenerateUtil {
         time);
 
     if (lastTime == time) {
-
+      sequence = (sequence + 1) & SEQUENCE_MASK;
+      if (sequence == 0) {
+        // sequence exhausted within this millisecond, wait for the next one
+        while (time <= lastTime) {
+          time = clock.millis();
+        }
+      }
     } else {
       sequence = 0;
     }
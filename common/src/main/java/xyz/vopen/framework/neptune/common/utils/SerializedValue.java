@@ -1,7 +1,11 @@
 package xyz.vopen.framework.neptune.common.utils;
 
 import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import xyz.vopen.framework.neptune.common.annoations.Internal;
+import xyz.vopen.framework.neptune.common.serialization.PayloadCompression;
+import xyz.vopen.framework.neptune.common.serialization.PayloadFormat;
 
 import java.io.*;
 import java.util.Arrays;
@@ -16,6 +20,14 @@ import java.util.Arrays;
  * transferred. The object is deserialized later (upon access) and requires the accessor to provide
  * the corresponding class loader.
  *
+ * <p>The bytes are written in a {@link PayloadFormat}, recorded next to them. Values serialized
+ * before the format was recorded read as {@link PayloadFormat#JAVA}.
+ *
+ * <p>Serialized data at least as large as a compression threshold is compressed with {@link
+ * PayloadCompression}, marked by a flag. The byte array is the one shipped, so the frame size and
+ * the statistics of the RPC see the compressed size. Values serialized before the flags were
+ * recorded read as uncompressed.
+ *
  * @param <T> The type of the value held.
  * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
  * @version ${project.version} - 2020/10/7
@@ -24,27 +36,108 @@ import java.util.Arrays;
 public class SerializedValue<T> implements Serializable {
   private static final long serialVersionUID = 161775940257247262L;
 
+  private static final Logger LOG = LoggerFactory.getLogger(SerializedValue.class);
+
+  /** Flag of the serialized data compressed by {@link PayloadCompression}. */
+  private static final byte COMPRESSED = 1;
+
   /** The serialized data. */
   private final byte[] serializedData;
 
-  private SerializedValue(byte[] serializedData) {
+  /** Id of the {@link PayloadFormat} of the serialized data. */
+  private final byte format;
+
+  /** Flags of the serialized data, see {@link #COMPRESSED}. */
+  private final byte flags;
+
+  private SerializedValue(byte[] serializedData, PayloadFormat format, byte flags) {
     Preconditions.checkNotNull(serializedData, "Serialized data");
     this.serializedData = serializedData;
+    this.format = format.getId();
+    this.flags = flags;
   }
 
   public SerializedValue(T value) throws IOException {
     this.serializedData = value == null ? null : InstantiationUtil.serializeObject(value);
+    this.format = PayloadFormat.JAVA.getId();
+    this.flags = 0;
+  }
+
+  /**
+   * Serializes the value in the given format, falling back to {@link PayloadFormat#JAVA} if the
+   * format cannot write it.
+   */
+  public SerializedValue(T value, PayloadFormat format) throws IOException {
+    this(value, format, 0);
+  }
+
+  /**
+   * Serializes the value in the given format, falling back to {@link PayloadFormat#JAVA} if the
+   * format cannot write it, and compresses the serialized data if it is at least as large as the
+   * threshold and gets smaller.
+   *
+   * @param compressionThreshold Size from which the serialized data is compressed, 0 to never
+   *     compress it.
+   */
+  public SerializedValue(T value, PayloadFormat format, int compressionThreshold)
+      throws IOException {
+    Preconditions.checkNotNull(format, "format");
+    Preconditions.checkArgument(
+        compressionThreshold >= 0, "The compression threshold must not be negative.");
+    if (value == null) {
+      this.serializedData = null;
+      this.format = format.getId();
+      this.flags = 0;
+      return;
+    }
+    byte[] data;
+    PayloadFormat written = format;
+    try {
+      data = format.serialize(value);
+    } catch (IOException e) {
+      if (format == PayloadFormat.JAVA) {
+        throw e;
+      }
+      LOG.debug("[SerializedValue] {} falls back to java serialization.", format, e);
+      data = InstantiationUtil.serializeObject(value);
+      written = PayloadFormat.JAVA;
+    }
+    byte[] compressed = null;
+    if (compressionThreshold > 0 && data.length >= compressionThreshold) {
+      compressed = PayloadCompression.compress(data);
+    }
+    this.serializedData = compressed != null ? compressed : data;
+    this.format = written.getId();
+    this.flags = compressed != null ? COMPRESSED : 0;
   }
 
+  @SuppressWarnings("unchecked")
   public T deserializeValue(ClassLoader loader) throws IOException, ClassNotFoundException {
     Preconditions.checkNotNull(loader, "No classloader has been passed");
-    return serializedData == null
-        ? null
-        : (T) InstantiationUtil.deserializeObject(serializedData, loader);
+    if (serializedData == null) {
+      return null;
+    }
+    PayloadFormat payloadFormat = PayloadFormat.fromId(format);
+    if (payloadFormat == null) {
+      throw new IOException("Unknown payload format " + format + '.');
+    }
+    byte[] data = isCompressed() ? PayloadCompression.decompress(serializedData) : serializedData;
+    return (T) payloadFormat.deserialize(data, loader);
+  }
+
+  /** Returns the format of the serialized data, null if unknown to this version. */
+  public PayloadFormat getFormat() {
+    return PayloadFormat.fromId(format);
+  }
+
+  /** Returns whether the serialized data is compressed. */
+  public boolean isCompressed() {
+    return (flags & COMPRESSED) != 0;
   }
 
   /**
-   * Returns the serialized value or <code>null</code> if no value is set.
+   * Returns the serialized value or <code>null</code> if no value is set, compressed if {@link
+   * #isCompressed()}.
    *
    * @return Serialized data.
    */
@@ -53,18 +146,36 @@ public class SerializedValue<T> implements Serializable {
   }
 
   public static <T> SerializedValue<T> fromBytes(byte[] serializedData) {
-    return new SerializedValue<>(serializedData);
+    return new SerializedValue<>(serializedData, PayloadFormat.JAVA, (byte) 0);
+  }
+
+  public static <T> SerializedValue<T> fromBytes(byte[] serializedData, PayloadFormat format) {
+    return fromBytes(serializedData, format, false);
+  }
+
+  /**
+   * Returns the value of serialized data read from a transport, e.g. the data of {@link
+   * #getByteArray()} with its {@link #getFormat()} and {@link #isCompressed()}.
+   */
+  public static <T> SerializedValue<T> fromBytes(
+      byte[] serializedData, PayloadFormat format, boolean compressed) {
+    return new SerializedValue<>(
+        serializedData, Preconditions.checkNotNull(format, "format"), compressed ? COMPRESSED : 0);
   }
 
   @Override
   public int hashCode() {
-    return serializedData == null ? 0 : Arrays.hashCode(serializedData);
+    int result = 31 * format + flags;
+    return 31 * result + (serializedData == null ? 0 : Arrays.hashCode(serializedData));
   }
 
   @Override
   public boolean equals(Object obj) {
     if (obj instanceof SerializedValue) {
       SerializedValue<?> other = (SerializedValue<?>) obj;
+      if (this.format != other.format || this.flags != other.flags) {
+        return false;
+      }
       return this.serializedData == null
           ? other.serializedData == null
           : (other.serializedData != null
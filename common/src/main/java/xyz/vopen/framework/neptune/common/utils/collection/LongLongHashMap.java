@@ -0,0 +1,223 @@
+package xyz.vopen.framework.neptune.common.utils.collection;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * {@link LongLongHashMap} Open addressing hash map from primitive long to primitive long, with
+ * linear probing and backward shift deletion. Avoids boxing of both keys and values, so a million
+ * entries cost two long arrays instead of a million map entries.
+ *
+ * <p>Not thread safe.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/27
+ */
+public class LongLongHashMap {
+
+  /** Key 0 marks an empty slot, the entry of key 0 is kept aside. */
+  private static final long EMPTY_KEY = 0L;
+
+  private static final float LOAD_FACTOR = 0.6f;
+
+  private final long missingValue;
+
+  private long[] keys;
+  private long[] values;
+  private int mask;
+  private int size;
+  private int resizeThreshold;
+
+  private boolean hasZeroKey;
+  private long zeroValue;
+
+  /**
+   * @param initialCapacity expected number of entries.
+   * @param missingValue the value returned by {@link #get(long)} for absent keys.
+   */
+  public LongLongHashMap(int initialCapacity, long missingValue) {
+    Preconditions.checkArgument(initialCapacity >= 0, "initialCapacity must not be negative");
+    this.missingValue = missingValue;
+    allocate(capacityFor(initialCapacity));
+  }
+
+  public long get(long key) {
+    if (key == EMPTY_KEY) {
+      return hasZeroKey ? zeroValue : missingValue;
+    }
+    int index = slot(key);
+    long existing;
+    while ((existing = keys[index]) != EMPTY_KEY) {
+      if (existing == key) {
+        return values[index];
+      }
+      index = (index + 1) & mask;
+    }
+    return missingValue;
+  }
+
+  public boolean containsKey(long key) {
+    if (key == EMPTY_KEY) {
+      return hasZeroKey;
+    }
+    int index = slot(key);
+    long existing;
+    while ((existing = keys[index]) != EMPTY_KEY) {
+      if (existing == key) {
+        return true;
+      }
+      index = (index + 1) & mask;
+    }
+    return false;
+  }
+
+  /**
+   * Associates the value with the key.
+   *
+   * @return The previous value, or the missing value if there was none.
+   */
+  public long put(long key, long value) {
+    if (key == EMPTY_KEY) {
+      long previous = hasZeroKey ? zeroValue : missingValue;
+      if (!hasZeroKey) {
+        hasZeroKey = true;
+        size++;
+      }
+      zeroValue = value;
+      return previous;
+    }
+
+    int index = slot(key);
+    long existing;
+    while ((existing = keys[index]) != EMPTY_KEY) {
+      if (existing == key) {
+        long previous = values[index];
+        values[index] = value;
+        return previous;
+      }
+      index = (index + 1) & mask;
+    }
+
+    keys[index] = key;
+    values[index] = value;
+    if (++size > resizeThreshold) {
+      rehash(keys.length << 1);
+    }
+    return missingValue;
+  }
+
+  /**
+   * Removes the key.
+   *
+   * @return The removed value, or the missing value if there was none.
+   */
+  public long remove(long key) {
+    if (key == EMPTY_KEY) {
+      if (!hasZeroKey) {
+        return missingValue;
+      }
+      hasZeroKey = false;
+      size--;
+      return zeroValue;
+    }
+
+    int index = slot(key);
+    long existing;
+    while ((existing = keys[index]) != EMPTY_KEY) {
+      if (existing == key) {
+        long previous = values[index];
+        shiftBackward(index);
+        size--;
+        return previous;
+      }
+      index = (index + 1) & mask;
+    }
+    return missingValue;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public void clear() {
+    Arrays.fill(keys, EMPTY_KEY);
+    hasZeroKey = false;
+    size = 0;
+  }
+
+  /** Visits every entry, in no particular order. The map must not be modified meanwhile. */
+  public void forEach(EntryConsumer consumer) {
+    if (hasZeroKey) {
+      consumer.accept(EMPTY_KEY, zeroValue);
+    }
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] != EMPTY_KEY) {
+        consumer.accept(keys[i], values[i]);
+      }
+    }
+  }
+
+  /** Consumer of a primitive key value pair. */
+  @FunctionalInterface
+  public interface EntryConsumer {
+    void accept(long key, long value);
+  }
+
+  // =====================  Internal  =====================
+
+  private void shiftBackward(int deleted) {
+    int gap = deleted;
+    int index = (deleted + 1) & mask;
+    long key;
+    while ((key = keys[index]) != EMPTY_KEY) {
+      int home = slot(key);
+      // move the entry into the gap if the gap lies between its home slot and its current slot
+      if (((index - home) & mask) >= ((index - gap) & mask)) {
+        keys[gap] = key;
+        values[gap] = values[index];
+        gap = index;
+      }
+      index = (index + 1) & mask;
+    }
+    keys[gap] = EMPTY_KEY;
+  }
+
+  private void rehash(int newCapacity) {
+    long[] oldKeys = keys;
+    long[] oldValues = values;
+    allocate(newCapacity);
+    for (int i = 0; i < oldKeys.length; i++) {
+      long key = oldKeys[i];
+      if (key != EMPTY_KEY) {
+        int index = slot(key);
+        while (keys[index] != EMPTY_KEY) {
+          index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = oldValues[i];
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = new long[capacity];
+    mask = capacity - 1;
+    resizeThreshold = (int) (capacity * LOAD_FACTOR);
+  }
+
+  private int slot(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & mask;
+  }
+
+  private static int capacityFor(int expectedSize) {
+    int capacity = (int) Math.ceil(Math.max(expectedSize, 8) / LOAD_FACTOR);
+    return 1 << -Integer.numberOfLeadingZeros(capacity - 1);
+  }
+}
@@ -0,0 +1,229 @@
+package xyz.vopen.framework.neptune.common.utils.collection;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * {@link LongObjectHashMap} Open addressing hash map from primitive long to object, with linear
+ * probing and backward shift deletion. Avoids boxing of the keys and the entry objects of a {@link
+ * java.util.HashMap}, so a million entries cost one long and one reference array.
+ *
+ * <p>Not thread safe.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class LongObjectHashMap<V> {
+
+  /** Key 0 marks an empty slot, the entry of key 0 is kept aside. */
+  private static final long EMPTY_KEY = 0L;
+
+  private static final float LOAD_FACTOR = 0.6f;
+
+  private long[] keys;
+  private Object[] values;
+  private int mask;
+  private int size;
+  private int resizeThreshold;
+
+  private boolean hasZeroKey;
+  private V zeroValue;
+
+  /** @param initialCapacity expected number of entries. */
+  public LongObjectHashMap(int initialCapacity) {
+    Preconditions.checkArgument(initialCapacity >= 0, "initialCapacity must not be negative");
+    allocate(capacityFor(initialCapacity));
+  }
+
+  /** Returns the value of the key, null if absent. */
+  @SuppressWarnings("unchecked")
+  public V get(long key) {
+    if (key == EMPTY_KEY) {
+      return hasZeroKey ? zeroValue : null;
+    }
+    int index = slot(key);
+    long existing;
+    while ((existing = keys[index]) != EMPTY_KEY) {
+      if (existing == key) {
+        return (V) values[index];
+      }
+      index = (index + 1) & mask;
+    }
+    return null;
+  }
+
+  public boolean containsKey(long key) {
+    if (key == EMPTY_KEY) {
+      return hasZeroKey;
+    }
+    int index = slot(key);
+    long existing;
+    while ((existing = keys[index]) != EMPTY_KEY) {
+      if (existing == key) {
+        return true;
+      }
+      index = (index + 1) & mask;
+    }
+    return false;
+  }
+
+  /**
+   * Associates the value with the key.
+   *
+   * @param value Not null.
+   * @return The previous value, or null if there was none.
+   */
+  @SuppressWarnings("unchecked")
+  public V put(long key, V value) {
+    Preconditions.checkNotNull(value);
+    if (key == EMPTY_KEY) {
+      V previous = hasZeroKey ? zeroValue : null;
+      if (!hasZeroKey) {
+        hasZeroKey = true;
+        size++;
+      }
+      zeroValue = value;
+      return previous;
+    }
+
+    int index = slot(key);
+    long existing;
+    while ((existing = keys[index]) != EMPTY_KEY) {
+      if (existing == key) {
+        V previous = (V) values[index];
+        values[index] = value;
+        return previous;
+      }
+      index = (index + 1) & mask;
+    }
+
+    keys[index] = key;
+    values[index] = value;
+    if (++size > resizeThreshold) {
+      rehash(keys.length << 1);
+    }
+    return null;
+  }
+
+  /**
+   * Removes the key.
+   *
+   * @return The removed value, or null if there was none.
+   */
+  @SuppressWarnings("unchecked")
+  public V remove(long key) {
+    if (key == EMPTY_KEY) {
+      if (!hasZeroKey) {
+        return null;
+      }
+      V previous = zeroValue;
+      hasZeroKey = false;
+      zeroValue = null;
+      size--;
+      return previous;
+    }
+
+    int index = slot(key);
+    long existing;
+    while ((existing = keys[index]) != EMPTY_KEY) {
+      if (existing == key) {
+        V previous = (V) values[index];
+        shiftBackward(index);
+        size--;
+        return previous;
+      }
+      index = (index + 1) & mask;
+    }
+    return null;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public void clear() {
+    Arrays.fill(keys, EMPTY_KEY);
+    Arrays.fill(values, null);
+    hasZeroKey = false;
+    zeroValue = null;
+    size = 0;
+  }
+
+  /** Visits every entry, in no particular order. The map must not be modified meanwhile. */
+  @SuppressWarnings("unchecked")
+  public void forEach(EntryConsumer<? super V> consumer) {
+    if (hasZeroKey) {
+      consumer.accept(EMPTY_KEY, zeroValue);
+    }
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] != EMPTY_KEY) {
+        consumer.accept(keys[i], (V) values[i]);
+      }
+    }
+  }
+
+  /** Consumer of a primitive key and its value. */
+  @FunctionalInterface
+  public interface EntryConsumer<V> {
+    void accept(long key, V value);
+  }
+
+  // =====================  Internal  =====================
+
+  private void shiftBackward(int deleted) {
+    int gap = deleted;
+    int index = (deleted + 1) & mask;
+    long key;
+    while ((key = keys[index]) != EMPTY_KEY) {
+      int home = slot(key);
+      // move the entry into the gap if the gap lies between its home slot and its current slot
+      if (((index - home) & mask) >= ((index - gap) & mask)) {
+        keys[gap] = key;
+        values[gap] = values[index];
+        gap = index;
+      }
+      index = (index + 1) & mask;
+    }
+    keys[gap] = EMPTY_KEY;
+    values[gap] = null;
+  }
+
+  private void rehash(int newCapacity) {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+    allocate(newCapacity);
+    for (int i = 0; i < oldKeys.length; i++) {
+      long key = oldKeys[i];
+      if (key != EMPTY_KEY) {
+        int index = slot(key);
+        while (keys[index] != EMPTY_KEY) {
+          index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = oldValues[i];
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = new Object[capacity];
+    mask = capacity - 1;
+    resizeThreshold = (int) (capacity * LOAD_FACTOR);
+  }
+
+  private int slot(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & mask;
+  }
+
+  private static int capacityFor(int expectedSize) {
+    int capacity = (int) Math.ceil(Math.max(expectedSize, 8) / LOAD_FACTOR);
+    return 1 << -Integer.numberOfLeadingZeros(capacity - 1);
+  }
+}
@@ -0,0 +1,119 @@
+package xyz.vopen.framework.neptune.common.serialization;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link PayloadCompressionTest} Round trips through {@link PayloadCompression}, and the rejection
+ * of the corrupted payloads before their allocation.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class PayloadCompressionTest {
+
+  @Test
+  public void testRoundTripsRepetitivePayload() throws Exception {
+    byte[] payload = repetitive(64 * 1024);
+
+    byte[] compressed = PayloadCompression.compress(payload);
+
+    assertNotNull(compressed);
+    assertTrue("compressed " + compressed.length, compressed.length < payload.length / 4);
+    assertArrayEquals(payload, PayloadCompression.decompress(compressed));
+  }
+
+  @Test
+  public void testRoundTripsHighlyCompressiblePayload() throws Exception {
+    // zeros expand close to the bound of LZ4
+    byte[] payload = new byte[1024 * 1024];
+
+    assertArrayEquals(payload, PayloadCompression.decompress(PayloadCompression.compress(payload)));
+  }
+
+  @Test
+  public void testIncompressiblePayloadIsNotCompressed() {
+    byte[] payload = new byte[64 * 1024];
+    new Random(42L).nextBytes(payload);
+
+    assertNull(PayloadCompression.compress(payload));
+    assertNull(PayloadCompression.compress(new byte[0]));
+  }
+
+  @Test
+  public void testRejectsTruncatedHeader() {
+    assertCorrupted(new byte[] {0, 0, 1});
+  }
+
+  @Test
+  public void testRejectsTruncatedBlock() throws Exception {
+    byte[] compressed = PayloadCompression.compress(repetitive(64 * 1024));
+
+    assertCorrupted(Arrays.copyOf(compressed, compressed.length / 2));
+  }
+
+  @Test
+  public void testRejectsExtraBytes() throws Exception {
+    byte[] compressed = PayloadCompression.compress(repetitive(64 * 1024));
+
+    assertCorrupted(Arrays.copyOf(compressed, compressed.length + 8));
+  }
+
+  @Test
+  public void testRejectsOversizedLength() throws Exception {
+    byte[] compressed = PayloadCompression.compress(repetitive(64 * 1024));
+    // a hostile length is rejected before 2 GiB are allocated
+    writeLength(compressed, Integer.MAX_VALUE);
+    assertCorrupted(compressed);
+
+    writeLength(compressed, (compressed.length - 4) * 255 + 1);
+    assertCorrupted(compressed);
+  }
+
+  @Test
+  public void testRejectsNegativeLength() throws Exception {
+    byte[] compressed = PayloadCompression.compress(repetitive(64 * 1024));
+    writeLength(compressed, -1);
+
+    assertCorrupted(compressed);
+  }
+
+  // =====================  Internal  =====================
+
+  private static byte[] repetitive(int size) {
+    byte[] line =
+        "{\"jobId\":42,\"status\":\"RUNNING\",\"worker\":\"10.0.12.34\"}\n"
+            .getBytes(StandardCharsets.UTF_8);
+    byte[] payload = new byte[size];
+    for (int i = 0; i < size; i++) {
+      payload[i] = line[i % line.length];
+    }
+    return payload;
+  }
+
+  private static void writeLength(byte[] compressed, int length) {
+    compressed[0] = (byte) (length >>> 24);
+    compressed[1] = (byte) (length >>> 16);
+    compressed[2] = (byte) (length >>> 8);
+    compressed[3] = (byte) length;
+  }
+
+  private static void assertCorrupted(byte[] compressed) {
+    try {
+      PayloadCompression.decompress(compressed);
+      fail("a corrupted payload of " + compressed.length + " bytes is rejected");
+    } catch (IOException expected) {
+      // the caller fails the call
+    }
+  }
+}
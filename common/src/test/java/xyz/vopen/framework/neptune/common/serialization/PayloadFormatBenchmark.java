@@ -0,0 +1,133 @@
+package xyz.vopen.framework.neptune.common.serialization;
+
+import xyz.vopen.framework.neptune.common.model.InstanceInfo;
+import xyz.vopen.framework.neptune.common.model.JobInfo;
+import xyz.vopen.framework.neptune.common.model.message.request.ReportHeartbeatRequest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * {@link PayloadFormatBenchmark} Serializes and deserializes the typical RPC payloads in every
+ * {@link PayloadFormat} and reports their size and the time of a round trip: a heartbeat, a job, an
+ * instance and a page of 100 instances. As rows read from the persistence, the instances share no
+ * object, not even equal strings or dates.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class PayloadFormatBenchmark {
+  private static final int WARMUP_ROUNDS = 20_000;
+  private static final int ROUNDS = 100_000;
+
+  public static void main(String[] args) throws Exception {
+    Object[][] payloads = {
+      {"heartbeat", heartbeat()},
+      {"job", job()},
+      {"instance", instance(1L)},
+      {"100 instances", instances(100)}
+    };
+    ClassLoader loader = PayloadFormatBenchmark.class.getClassLoader();
+    for (Object[] payload : payloads) {
+      for (PayloadFormat format : PayloadFormat.values()) {
+        run(format, payload[1], loader, WARMUP_ROUNDS / rounds(payload[1]));
+        long nanos = run(format, payload[1], loader, ROUNDS / rounds(payload[1]));
+        System.out.printf(
+            "%-14s %-5s %7d bytes   %9.2f us per round trip%n",
+            payload[0],
+            format,
+            format.serialize(payload[1]).length,
+            nanos / 1e3);
+      }
+    }
+  }
+
+  /** Returns the mean nanoseconds of a serialization followed by a deserialization. */
+  private static long run(PayloadFormat format, Object value, ClassLoader loader, int rounds)
+      throws IOException, ClassNotFoundException {
+    long start = System.nanoTime();
+    int sink = 0;
+    for (int i = 0; i < rounds; i++) {
+      byte[] bytes = format.serialize(value);
+      sink += format.deserialize(bytes, loader).hashCode() & 1;
+    }
+    long elapsed = System.nanoTime() - start;
+    if (sink < 0) {
+      System.out.println(sink);
+    }
+    return elapsed / rounds;
+  }
+
+  /** Fewer rounds for the large payloads. */
+  private static int rounds(Object value) {
+    return value instanceof List ? 50 : 1;
+  }
+
+  private static ReportHeartbeatRequest heartbeat() {
+    ReportHeartbeatRequest request = new ReportHeartbeatRequest();
+    request.setWorkerAddress("akka.tcp://neptune-client@10.0.12.34:25520/user/rpc/worker");
+    request.setHeartbeatTime(System.currentTimeMillis());
+    request.setAvailableCpuCores(12.5);
+    request.setAvailableMemorySpace(48.0);
+    request.setAvailableDiskSpace(820.0);
+    return request;
+  }
+
+  private static JobInfo job() {
+    JobInfo jobInfo = new JobInfo();
+    jobInfo.setId(360_117_824_419_841L);
+    jobInfo.setJobName("order-settlement");
+    jobInfo.setJobDescription("Settles the orders of the previous day.");
+    jobInfo.setAppId(12L);
+    jobInfo.setJobParams("{\"region\":\"eu-west\",\"batchSize\":500}");
+    jobInfo.setTimeExpressionType(2);
+    jobInfo.setTimeExpression("0 0 2 * * ?");
+    jobInfo.setExecuteType(1);
+    jobInfo.setProcessorType(1);
+    jobInfo.setProcessorInfo("com.example.settlement.SettlementProcessor");
+    jobInfo.setMaxInstanceNum(1);
+    jobInfo.setConcurrency(4);
+    jobInfo.setInstanceTimeLimit(3_600_000L);
+    jobInfo.setInstanceRetryNum(3);
+    jobInfo.setTaskRetryNum(1);
+    jobInfo.setStatus(1);
+    jobInfo.setNextTriggerTime(System.currentTimeMillis());
+    jobInfo.setMinCpuCores(2);
+    jobInfo.setMinMemorySpace(4);
+    jobInfo.setMinDiskSpace(10);
+    jobInfo.setGmtCreate(new Date());
+    jobInfo.setGmtUpdate(new Date());
+    return jobInfo;
+  }
+
+  private static InstanceInfo instance(long id) {
+    long now = System.currentTimeMillis();
+    InstanceInfo instanceInfo =
+        InstanceInfo.builder()
+            .id(id)
+            .appId(12L)
+            .jobId(360_117_824_419_841L)
+            .jobParams(new String("{\"region\":\"eu-west\",\"batchSize\":500}"))
+            .type(1)
+            .status(3)
+            .triggerTime(new Date(now - 1_200))
+            .executeTime(new Date(now - 1_000))
+            .lastReportTime(new Date(now))
+            .retryTimes(0)
+            .taskAddress(new String("10.0.12.34:25520"))
+            .build();
+    instanceInfo.setGmtCreate(new Date(now - 1_200));
+    instanceInfo.setGmtUpdate(new Date(now));
+    return instanceInfo;
+  }
+
+  private static List<InstanceInfo> instances(int count) {
+    List<InstanceInfo> instances = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      instances.add(instance(i));
+    }
+    return instances;
+  }
+}
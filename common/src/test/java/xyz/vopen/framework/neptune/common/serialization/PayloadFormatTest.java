@@ -0,0 +1,204 @@
+package xyz.vopen.framework.neptune.common.serialization;
+
+import org.junit.Test;
+import xyz.vopen.framework.neptune.common.model.InstanceInfo;
+import xyz.vopen.framework.neptune.common.model.JobInfo;
+import xyz.vopen.framework.neptune.common.model.message.request.ReportHeartbeatRequest;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link PayloadFormatTest} Round trips of the RPC payloads through every {@link PayloadFormat},
+ * and the parsing and negotiation of the formats.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class PayloadFormatTest {
+  private static final ClassLoader LOADER = PayloadFormatTest.class.getClassLoader();
+
+  @Test
+  public void testRoundTripsHeartbeat() throws Exception {
+    ReportHeartbeatRequest heartbeat = new ReportHeartbeatRequest();
+    heartbeat.setWorkerAddress("10.0.12.34:25520");
+    heartbeat.setHeartbeatTime(1_604_000_000_000L);
+    heartbeat.setAvailableCpuCores(12.5);
+    heartbeat.setAvailableMemorySpace(48.0);
+    heartbeat.setAvailableDiskSpace(820.0);
+
+    for (PayloadFormat format : PayloadFormat.values()) {
+      ReportHeartbeatRequest copy = roundTrip(format, heartbeat);
+      assertEquals(format.name(), heartbeat.getWorkerAddress(), copy.getWorkerAddress());
+      assertEquals(format.name(), heartbeat.getHeartbeatTime(), copy.getHeartbeatTime());
+      assertEquals(format.name(), 12.5, copy.getAvailableCpuCores(), 0.0);
+      assertEquals(format.name(), 48.0, copy.getAvailableMemorySpace(), 0.0);
+      assertEquals(format.name(), 820.0, copy.getAvailableDiskSpace(), 0.0);
+    }
+  }
+
+  @Test
+  public void testRoundTripsJob() throws Exception {
+    JobInfo job = new JobInfo();
+    job.setId(360_117_824_419_841L);
+    job.setJobName("order-settlement");
+    job.setAppId(12L);
+    job.setTimeExpressionType(2);
+    job.setTimeExpression("0 0 2 * * ?");
+    job.setInstanceTimeLimit(3_600_000L);
+    job.setMinCpuCores(2);
+    job.setRetryBackoff(500L);
+    job.setGmtCreate(new Date(1_604_000_000_000L));
+
+    for (PayloadFormat format : PayloadFormat.values()) {
+      JobInfo copy = roundTrip(format, job);
+      assertEquals(format.name(), job.getId(), copy.getId());
+      assertEquals(format.name(), job.getJobName(), copy.getJobName());
+      assertEquals(format.name(), job.getAppId(), copy.getAppId());
+      assertEquals(format.name(), job.getTimeExpressionType(), copy.getTimeExpressionType());
+      assertEquals(format.name(), job.getTimeExpression(), copy.getTimeExpression());
+      assertEquals(format.name(), job.getInstanceTimeLimit(), copy.getInstanceTimeLimit());
+      assertEquals(format.name(), 2.0, copy.getMinCpuCores(), 0.0);
+      assertEquals(format.name(), job.getRetryBackoff(), copy.getRetryBackoff());
+      assertEquals(format.name(), job.getGmtCreate(), copy.getGmtCreate());
+      // unset fields stay unset
+      assertNull(format.name(), copy.getJobDescription());
+      assertNull(format.name(), copy.getMaxRetryBackoff());
+    }
+  }
+
+  @Test
+  public void testRoundTripsPageOfInstances() throws Exception {
+    List<InstanceInfo> instances = new ArrayList<>();
+    for (long id = 0; id < 100; id++) {
+      instances.add(
+          InstanceInfo.builder()
+              .id(id)
+              .jobId(7L)
+              .status(3)
+              .executeTime(new Date(1_604_000_000_000L + id))
+              .taskAddress("10.0.12.34:25520")
+              .build());
+    }
+
+    for (PayloadFormat format : PayloadFormat.values()) {
+      List<InstanceInfo> copy = roundTrip(format, instances);
+      assertEquals(format.name(), instances.size(), copy.size());
+      for (int i = 0; i < instances.size(); i++) {
+        InstanceInfo instance = instances.get(i);
+        assertEquals(format.name(), instance.getId(), copy.get(i).getId());
+        assertEquals(format.name(), instance.getJobId(), copy.get(i).getJobId());
+        assertEquals(format.name(), instance.getStatus(), copy.get(i).getStatus());
+        assertEquals(format.name(), instance.getExecuteTime(), copy.get(i).getExecuteTime());
+        assertEquals(format.name(), instance.getTaskAddress(), copy.get(i).getTaskAddress());
+      }
+    }
+  }
+
+  @Test
+  public void testRoundTripsJdkCollections() throws Exception {
+    Map<String, List<Long>> map = new HashMap<>();
+    map.put("ids", Arrays.asList(1L, 2L, 3L));
+    List<Object> values =
+        Arrays.asList(
+            Collections.unmodifiableList(new ArrayList<>(Arrays.asList("a", "b"))),
+            Collections.unmodifiableMap(map),
+            Collections.emptyList(),
+            Collections.singletonMap("key", 1),
+            new long[] {1L, Long.MAX_VALUE},
+            "text",
+            null);
+
+    for (PayloadFormat format : PayloadFormat.values()) {
+      for (Object value : values) {
+        Object copy = roundTrip(format, value);
+        if (value instanceof long[]) {
+          assertArrayEquals(format.name(), (long[]) value, (long[]) copy);
+        } else {
+          assertEquals(format.name(), value, copy);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testRoundTripsModuleRegistration() throws Exception {
+    KryoSerializer.register(Registered.class, KryoSerializer.FIRST_MODULE_REGISTRATION_ID + 999);
+    Registered value = new Registered();
+    value.name = "registered";
+
+    Registered copy = roundTrip(PayloadFormat.KRYO, value);
+
+    assertEquals("registered", copy.name);
+  }
+
+  @Test
+  public void testKryoRejectsCyclicGraph() {
+    List<Object> cyclic = new ArrayList<>();
+    cyclic.add(cyclic);
+    try {
+      PayloadFormat.KRYO.serialize(cyclic);
+      fail("a cyclic graph cannot be written without references");
+    } catch (IOException expected) {
+      // the caller falls back to Java serialization
+    }
+  }
+
+  @Test
+  public void testFromIdRoundTrips() {
+    for (PayloadFormat format : PayloadFormat.values()) {
+      assertSame(format, PayloadFormat.fromId(format.getId()));
+    }
+    assertNull(PayloadFormat.fromId((byte) 127));
+  }
+
+  @Test
+  public void testParseListAppendsJava() {
+    assertEquals(
+        Arrays.asList(PayloadFormat.KRYO, PayloadFormat.JAVA),
+        PayloadFormat.parseList(" kryo, KRYO,,"));
+    assertEquals(
+        Arrays.asList(PayloadFormat.JAVA, PayloadFormat.KRYO),
+        PayloadFormat.parseList("java,kryo"));
+    assertEquals(Collections.singletonList(PayloadFormat.JAVA), PayloadFormat.parseList(null));
+  }
+
+  @Test
+  public void testNegotiateFallsBackToJava() {
+    List<PayloadFormat> both = Arrays.asList(PayloadFormat.KRYO, PayloadFormat.JAVA);
+    List<PayloadFormat> java = Collections.singletonList(PayloadFormat.JAVA);
+
+    assertSame(PayloadFormat.KRYO, PayloadFormat.negotiate(both, both));
+    assertSame(PayloadFormat.JAVA, PayloadFormat.negotiate(both, java));
+    assertSame(
+        PayloadFormat.JAVA,
+        PayloadFormat.negotiate(
+            Collections.singletonList(PayloadFormat.KRYO), Collections.emptyList()));
+  }
+
+  // =====================  Internal  =====================
+
+  @SuppressWarnings("unchecked")
+  private static <T> T roundTrip(PayloadFormat format, T value) throws Exception {
+    return (T) format.deserialize(format.serialize(value), LOADER);
+  }
+
+  private static final class Registered implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    String name;
+  }
+}
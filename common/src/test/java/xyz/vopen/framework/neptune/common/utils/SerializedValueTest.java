@@ -0,0 +1,119 @@
+package xyz.vopen.framework.neptune.common.utils;
+
+import org.junit.Test;
+import xyz.vopen.framework.neptune.common.serialization.PayloadFormat;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link SerializedValueTest} Round trips of the compressed {@link SerializedValue}: below and
+ * above the compression threshold, with incompressible data and through java serialization.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class SerializedValueTest {
+  private static final ClassLoader LOADER = SerializedValueTest.class.getClassLoader();
+  private static final int THRESHOLD = 1024;
+
+  @Test
+  public void testBelowThresholdIsNotCompressed() throws Exception {
+    String value = repeat("status", 10);
+
+    for (PayloadFormat format : PayloadFormat.values()) {
+      SerializedValue<String> serialized = new SerializedValue<>(value, format, THRESHOLD);
+      assertFalse(format.name(), serialized.isCompressed());
+      assertEquals(format.name(), value, serialized.deserializeValue(LOADER));
+    }
+  }
+
+  @Test
+  public void testAboveThresholdIsCompressed() throws Exception {
+    String value = repeat("{\"jobId\":42,\"status\":\"RUNNING\"}", 1_000);
+
+    for (PayloadFormat format : PayloadFormat.values()) {
+      SerializedValue<String> serialized = new SerializedValue<>(value, format, THRESHOLD);
+      int uncompressed = new SerializedValue<>(value, format).getByteArray().length;
+      assertTrue(format.name(), serialized.isCompressed());
+      assertTrue(format.name(), serialized.getByteArray().length < uncompressed);
+      assertEquals(format.name(), value, serialized.deserializeValue(LOADER));
+    }
+  }
+
+  @Test
+  public void testIncompressibleIsNotCompressed() throws Exception {
+    byte[] value = new byte[16 * 1024];
+    new Random(42L).nextBytes(value);
+
+    SerializedValue<byte[]> serialized =
+        new SerializedValue<>(value, PayloadFormat.JAVA, THRESHOLD);
+
+    assertFalse(serialized.isCompressed());
+    assertArrayEquals(value, serialized.deserializeValue(LOADER));
+  }
+
+  @Test
+  public void testZeroThresholdNeverCompresses() throws Exception {
+    String value = repeat("status", 10_000);
+
+    assertFalse(new SerializedValue<>(value, PayloadFormat.KRYO, 0).isCompressed());
+  }
+
+  @Test
+  public void testCompressionSurvivesJavaSerialization() throws Exception {
+    String value = repeat("{\"jobId\":42,\"status\":\"RUNNING\"}", 1_000);
+    SerializedValue<String> serialized =
+        new SerializedValue<>(value, PayloadFormat.KRYO, THRESHOLD);
+
+    SerializedValue<String> copy = InstantiationUtil.clone(serialized);
+
+    assertEquals(serialized, copy);
+    assertTrue(copy.isCompressed());
+    assertEquals(value, copy.deserializeValue(LOADER));
+  }
+
+  @Test
+  public void testFromBytesKeepsCompression() throws Exception {
+    String value = repeat("{\"jobId\":42,\"status\":\"RUNNING\"}", 1_000);
+    SerializedValue<String> serialized =
+        new SerializedValue<>(value, PayloadFormat.KRYO, THRESHOLD);
+
+    SerializedValue<String> read =
+        SerializedValue.fromBytes(serialized.getByteArray(), serialized.getFormat(), true);
+
+    assertEquals(value, read.deserializeValue(LOADER));
+  }
+
+  @Test
+  public void testCorruptedCompressedDataFails() throws Exception {
+    String value = repeat("{\"jobId\":42,\"status\":\"RUNNING\"}", 1_000);
+    byte[] data = new SerializedValue<>(value, PayloadFormat.JAVA, THRESHOLD).getByteArray();
+    SerializedValue<String> truncated =
+        SerializedValue.fromBytes(Arrays.copyOf(data, data.length / 2), PayloadFormat.JAVA, true);
+
+    try {
+      truncated.deserializeValue(LOADER);
+      fail("truncated compressed data cannot be read");
+    } catch (IOException expected) {
+      // the call fails with the corrupted payload
+    }
+  }
+
+  // =====================  Internal  =====================
+
+  private static String repeat(String part, int times) {
+    StringBuilder builder = new StringBuilder(part.length() * times);
+    for (int i = 0; i < times; i++) {
+      builder.append(part);
+    }
+    return builder.toString();
+  }
+}
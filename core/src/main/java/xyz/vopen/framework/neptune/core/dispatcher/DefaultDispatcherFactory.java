@@ -3,6 +3,7 @@ package xyz.vopen.framework.neptune.core.dispatcher;
 import xyz.vopen.framework.neptune.common.configuration.Configuration;
 import xyz.vopen.framework.neptune.common.configuration.JobManagerOptions;
 import xyz.vopen.framework.neptune.core.persistence.Persistence;
+import xyz.vopen.framework.neptune.optimizer.runtime.RuntimeEstimator;
 import xyz.vopen.framework.neptune.rpc.FatalErrorHandler;
 import xyz.vopen.framework.neptune.rpc.RpcService;
 
@@ -20,8 +21,10 @@ public enum DefaultDispatcherFactory implements DispatcherFactory {
       Configuration configuration,
       FatalErrorHandler fatalErrorHandler,
       RpcService rpcService,
-      Persistence persistence) {
+      Persistence persistence,
+      RuntimeEstimator runtimeEstimator) {
     String[] addresses = configuration.getString(JobManagerOptions.ADDRESS).split(",");
-    return new StandaloneDispatcher(configuration, fatalErrorHandler, rpcService, persistence);
+    return new StandaloneDispatcher(
+        configuration, fatalErrorHandler, rpcService, persistence, runtimeEstimator);
   }
 }
@@ -8,11 +8,12 @@ import xyz.vopen.framework.neptune.common.configuration.Configuration;
 import xyz.vopen.framework.neptune.common.enums.ApplicationStatus;
 import xyz.vopen.framework.neptune.common.model.event.DispatchJobEvent;
 import xyz.vopen.framework.neptune.common.model.event.ReDispatchJobEvent;
+import xyz.vopen.framework.neptune.common.model.message.request.ReportHeartbeatRequest;
+import xyz.vopen.framework.neptune.common.model.message.request.ReportTaskStatusRequest;
 import xyz.vopen.framework.neptune.common.utils.time.Time;
 import xyz.vopen.framework.neptune.common.utils.ExceptionUtil;
 import xyz.vopen.framework.neptune.core.exceptions.DispatcherException;
 import xyz.vopen.framework.neptune.core.persistence.Persistence;
-import xyz.vopen.framework.neptune.core.persistence.PersistenceFactory;
 import xyz.vopen.framework.neptune.rpc.DispatcherGateway;
 import xyz.vopen.framework.neptune.rpc.FatalErrorHandler;
 import xyz.vopen.framework.neptune.rpc.RpcEndpoint;
@@ -45,16 +46,15 @@ public abstract class Dispatcher extends RpcEndpoint implements DispatcherGatewa
       final Configuration configuration,
       final String gatewayName,
       final FatalErrorHandler fatalErrorHandler,
-      final RpcService rpcService) {
+      final RpcService rpcService,
+      final @Nonnull Persistence persistence) {
     super(rpcService, gatewayName);
     Preconditions.checkNotNull(configuration, "Configuration is null");
 
     this.configuration = configuration;
     this.rpcService = rpcService;
     this.fatalErrorHandler = fatalErrorHandler;
-    // TODO: Persistence.PersistenceEnum.MONGO will changed that obtain from Configuration.
-    this.persistence =
-        PersistenceFactory.INSTANCE.create(configuration, Persistence.PersistenceEnum.MONGO);
+    this.persistence = Preconditions.checkNotNull(persistence, "Persistence is null");
     this.shutDownFuture = new CompletableFuture<>();
   }
 
@@ -146,6 +146,12 @@ public abstract class Dispatcher extends RpcEndpoint implements DispatcherGatewa
     return null;
   }
 
+  @Override
+  public void reportHeartbeat(ReportHeartbeatRequest heartbeat) {}
+
+  @Override
+  public void reportTaskStatus(ReportTaskStatusRequest status) {}
+
   protected void onFatalError(Throwable throwable) {
     fatalErrorHandler.onFatalError(throwable);
   }
@@ -2,6 +2,7 @@ package xyz.vopen.framework.neptune.core.dispatcher;
 
 import xyz.vopen.framework.neptune.common.configuration.Configuration;
 import xyz.vopen.framework.neptune.core.persistence.Persistence;
+import xyz.vopen.framework.neptune.optimizer.runtime.RuntimeEstimator;
 import xyz.vopen.framework.neptune.rpc.FatalErrorHandler;
 import xyz.vopen.framework.neptune.rpc.RpcService;
 
@@ -18,6 +19,7 @@ public interface DispatcherFactory {
    *
    * @param configuration
    * @param rpcService
+   * @param runtimeEstimator Runtimes of the jobs, for the placement of their instances.
    * @return
    * @throws Exception
    */
@@ -25,6 +27,7 @@ public interface DispatcherFactory {
       Configuration configuration,
       FatalErrorHandler fatalErrorHandler,
       RpcService rpcService,
-      Persistence persistence)
+      Persistence persistence,
+      RuntimeEstimator runtimeEstimator)
       throws Exception;
 }
@@ -3,35 +3,98 @@ package xyz.vopen.framework.neptune.core.dispatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import xyz.vopen.framework.neptune.common.configuration.Configuration;
+import xyz.vopen.framework.neptune.common.enums.InstanceStatus;
 import xyz.vopen.framework.neptune.common.model.event.DispatchJobEvent;
 import xyz.vopen.framework.neptune.common.model.event.ReDispatchJobEvent;
 import xyz.vopen.framework.neptune.common.model.InstanceInfo;
 import xyz.vopen.framework.neptune.common.model.JobInfo;
+import xyz.vopen.framework.neptune.common.model.message.request.ReportHeartbeatRequest;
+import xyz.vopen.framework.neptune.common.model.message.request.ReportTaskStatusRequest;
+import xyz.vopen.framework.neptune.core.hearbeat.HeartbeatListener;
 import xyz.vopen.framework.neptune.core.persistence.Persistence;
 import xyz.vopen.framework.neptune.core.persistence.adapter.PersistenceAdapter;
+import xyz.vopen.framework.neptune.optimizer.placement.BinPackingOptimizer;
+import xyz.vopen.framework.neptune.optimizer.placement.Demand;
+import xyz.vopen.framework.neptune.optimizer.placement.Placement;
+import xyz.vopen.framework.neptune.optimizer.placement.WorkerResources;
+import xyz.vopen.framework.neptune.optimizer.runtime.RuntimeEstimator;
 import xyz.vopen.framework.neptune.rpc.FatalErrorHandler;
 import xyz.vopen.framework.neptune.rpc.RpcService;
 
 import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.List;
 
 /**
- * {@link StandaloneDispatcher}
+ * {@link StandaloneDispatcher} Dispatches the instances to the workers chosen by a {@link
+ * BinPackingOptimizer}, which learns the free resources of the workers from their heartbeats and
+ * avoids the workers running long tasks according to the {@link RuntimeEstimator}. Until the first
+ * heartbeat arrives, the instances go to the designated workers of their job.
  *
  * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
  * @version ${project.version} - 2020/10/13
  */
-public class StandaloneDispatcher extends Dispatcher {
+public class StandaloneDispatcher extends Dispatcher implements HeartbeatListener {
   private static final Logger LOG = LoggerFactory.getLogger(StandaloneDispatcher.class);
 
   private final @Nonnull PersistenceAdapter persistenceAdapter;
+  private final @Nonnull RuntimeEstimator runtimeEstimator;
+  private final BinPackingOptimizer placementOptimizer = BinPackingOptimizer.create();
 
   StandaloneDispatcher(
       Configuration configuration,
       FatalErrorHandler fatalErrorHandler,
       RpcService rpcService,
-      Persistence persistence) {
-    super(configuration, StandaloneDispatcher.class.getSimpleName(), fatalErrorHandler, rpcService);
+      Persistence persistence,
+      RuntimeEstimator runtimeEstimator) {
+    super(
+        configuration,
+        StandaloneDispatcher.class.getSimpleName(),
+        fatalErrorHandler,
+        rpcService,
+        persistence);
     this.persistenceAdapter = persistence.getPersistenceAdapter();
+    this.runtimeEstimator = runtimeEstimator;
+    this.placementOptimizer.setAvoidedWorkers(runtimeEstimator::isRunningLongTasks);
+  }
+
+  @Override
+  public void reportHeartbeat(ReportHeartbeatRequest heartbeat) {
+    onHeartbeat(heartbeat);
+  }
+
+  /** Feeds the {@link RuntimeEstimator} with the start and the completion the workers report. */
+  @Override
+  public void reportTaskStatus(ReportTaskStatusRequest status) {
+    long instanceId = status.getInstanceId();
+    switch (InstanceStatus.of(status.getStatus())) {
+      case RUNNING:
+        long startTime = status.getStartTime() > 0 ? status.getStartTime() : status.getReportTime();
+        runtimeEstimator.onStarted(instanceId, status.getJobId(), startTime);
+        break;
+      case SUCCEED:
+        runtimeEstimator.onSucceeded(
+            instanceId, status.getJobId(), status.getStartTime(), status.getReportTime());
+        break;
+      case FAILED:
+      case CANCELED:
+      case STOPPED:
+        runtimeEstimator.onFinished(instanceId);
+        break;
+      default:
+        break;
+    }
+  }
+
+  @Override
+  public void onHeartbeat(ReportHeartbeatRequest heartbeat) {
+    placementOptimizer.onHeartbeat(
+        WorkerResources.of(
+            heartbeat.getWorkerAddress(),
+            heartbeat.getAvailableCpuCores(),
+            heartbeat.getAvailableMemorySpace(),
+            heartbeat.getAvailableDiskSpace(),
+            heartbeat.getHeartbeatTime()));
   }
 
   @Override
@@ -67,9 +130,27 @@ public class StandaloneDispatcher extends Dispatcher {
    */
   private void dispatcher(
       JobInfo jobInfo, long instanceId, long runningTimes, String jobParams, long workFlowId) {
+    if (placementOptimizer.size() == 0) {
+      // no heartbeat yet, the resources of the workers are unknown
+      LOG.debug(
+          "[StandaloneDispatcher] start dispatch job: {} to worker: {} ",
+          jobInfo.getId(),
+          jobInfo.getDesignatedWorkers());
+      return;
+    }
+    Placement placement =
+        placementOptimizer.optimize(
+            Placement.of(Collections.singletonList(Demand.of(instanceId, jobInfo))));
+    List<String> workers = placement.getWorkers(instanceId);
+    if (workers.isEmpty()) {
+      LOG.warn(
+          "[StandaloneDispatcher] no worker has room for job: {}, instance: {}.",
+          jobInfo.getId(),
+          instanceId);
+      return;
+    }
+    runtimeEstimator.onPlaced(instanceId, jobInfo.getId(), workers);
     LOG.debug(
-        "[StandaloneDispatcher] start dispatch job: {} to worker: {} ",
-        jobInfo.getId(),
-        jobInfo.getDesignatedWorkers());
+        "[StandaloneDispatcher] start dispatch job: {} to worker: {} ", jobInfo.getId(), workers);
   }
 }
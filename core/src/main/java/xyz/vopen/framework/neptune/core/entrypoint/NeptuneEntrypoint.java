@@ -21,12 +21,17 @@ import xyz.vopen.framework.neptune.core.dispatcher.Dispatcher;
 import xyz.vopen.framework.neptune.core.exceptions.NeptuneEntrypointException;
 import xyz.vopen.framework.neptune.core.highavailability.HighAvailabilityService;
 import xyz.vopen.framework.neptune.core.metrics.MetricService;
+import xyz.vopen.framework.neptune.core.metrics.RpcMetrics;
 import xyz.vopen.framework.neptune.core.persistence.Persistence;
 import xyz.vopen.framework.neptune.core.persistence.PersistenceFactory;
+import xyz.vopen.framework.neptune.core.persistence.adapter.CachingPersistenceAdapter;
+import xyz.vopen.framework.neptune.core.persistence.adapter.InstrumentedPersistenceAdapter;
+import xyz.vopen.framework.neptune.core.persistence.adapter.PersistenceAdapter;
+import xyz.vopen.framework.neptune.core.persistence.cache.CacheInvalidationService;
 import xyz.vopen.framework.neptune.core.schedule.SchedulerService;
 import xyz.vopen.framework.neptune.rpc.FatalErrorHandler;
 import xyz.vopen.framework.neptune.rpc.RpcService;
-import xyz.vopen.framework.neptune.rpc.akka.AkkaRpcServiceUtils;
+import xyz.vopen.framework.neptune.rpc.RpcServiceUtils;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
@@ -57,9 +62,10 @@ public abstract class NeptuneEntrypoint implements AutoCloseableAsync, FatalErro
   private final MetricService metricService;
   private final HighAvailabilityService haService;
   private final Thread shutDownHook;
-  private final SchedulerService schedulerService;
+  private SchedulerService schedulerService;
   private CompletableFuture<ApplicationStatus> terminationFuture;
   private final Persistence persistence;
+  private CacheInvalidationService cacheInvalidationService;
   private EventBus eventBus;
 
   private final AtomicBoolean isShutDown = new AtomicBoolean(false);
@@ -75,7 +81,7 @@ public abstract class NeptuneEntrypoint implements AutoCloseableAsync, FatalErro
     this.metricService = MetricService.createMetricService(configuration, rpcService);
     this.haService = HighAvailabilityService.createFromConfiguration(configuration, rpcService);
     this.persistence = PersistenceFactory.INSTANCE.create(configuration);
-    this.schedulerService = new SchedulerService(configuration, rpcService, persistence,eventBus);
+    registerPersistenceMetrics(persistence.getPersistenceAdapter());
     this.terminationFuture = new CompletableFuture();
 
     this.shutDownHook =
@@ -83,6 +89,16 @@ public abstract class NeptuneEntrypoint implements AutoCloseableAsync, FatalErro
             this::cleanupDirectories, getClass().getSimpleName(), logger);
   }
 
+  private void registerPersistenceMetrics(PersistenceAdapter persistenceAdapter) {
+    if (persistenceAdapter instanceof CachingPersistenceAdapter) {
+      ((CachingPersistenceAdapter) persistenceAdapter).registerMetrics(metricService);
+      persistenceAdapter = ((CachingPersistenceAdapter) persistenceAdapter).getDelegate();
+    }
+    if (persistenceAdapter instanceof InstrumentedPersistenceAdapter) {
+      ((InstrumentedPersistenceAdapter) persistenceAdapter).registerMetrics(metricService);
+    }
+  }
+
   /**
    * Run Neptune application invoked by {@link NeptuneServerAutoConfiguration}.
    *
@@ -151,7 +167,12 @@ public abstract class NeptuneEntrypoint implements AutoCloseableAsync, FatalErro
       initializerServices(configuration);
 
       Dispatcher dispatcher =
-          DefaultDispatcherFactory.INSTANCE.create(configuration, this, rpcService, persistence);
+          DefaultDispatcherFactory.INSTANCE.create(
+              configuration,
+              this,
+              rpcService,
+              persistence,
+              schedulerService.getRuntimeEstimator());
 
       dispatcher.internalCallOnStart();
 
@@ -180,16 +201,28 @@ public abstract class NeptuneEntrypoint implements AutoCloseableAsync, FatalErro
   private void initializerServices(Configuration configuration) throws Exception {
     synchronized (lock) {
       this.rpcService =
-          AkkaRpcServiceUtils.createRemoteRpcService(
+          RpcServiceUtils.createRemoteRpcService(
               configuration,
               configuration.getString(JobManagerOptions.ADDRESS),
               String.valueOf(configuration.getInteger(JobManagerOptions.PORT)),
               configuration.getString(JobManagerOptions.BIND_HOST),
               configuration.getOptional(JobManagerOptions.RPC_BIND_PORT));
+      RpcMetrics.register(metricService, rpcService.getStatistics());
+      // the scheduler claims jobs under the address of the rpc service
+      this.schedulerService =
+          new SchedulerService(configuration, rpcService, persistence, eventBus);
 
       this.ioExecutor =
           Executors.newFixedThreadPool(
               Runtime.getRuntime().availableProcessors(), new ExecutorThreadFactory("neptune-io"));
+
+      if (persistence.getPersistenceAdapter() instanceof CachingPersistenceAdapter) {
+        this.cacheInvalidationService =
+            CacheInvalidationService.createAndStart(
+                configuration,
+                rpcService,
+                (CachingPersistenceAdapter) persistence.getPersistenceAdapter());
+      }
     }
   }
 
@@ -235,6 +268,10 @@ public abstract class NeptuneEntrypoint implements AutoCloseableAsync, FatalErro
             ExecutorStUtil.nonBlockingShutdown(50L, TimeUnit.MILLISECONDS, ioExecutor));
       }
 
+      if (this.cacheInvalidationService != null) {
+        terminationFutures.add(cacheInvalidationService.closeAsync());
+      }
+
       if (this.rpcService != null) {
         terminationFutures.add(rpcService.stopService());
       }
@@ -250,10 +287,20 @@ public abstract class NeptuneEntrypoint implements AutoCloseableAsync, FatalErro
       if (exception != null) {
         terminationFutures.add(FutureUtil.completedExceptionally(exception));
       }
-      return FutureUtil.completeAll(terminationFutures);
+      // the storage is released last, the services above may still write on their way down
+      return FutureUtil.composeAfterwards(
+          FutureUtil.completeAll(terminationFutures), this::closePersistence);
     }
   }
 
+  private CompletableFuture<Void> closePersistence() {
+    return FutureUtil.runSync(
+        () -> {
+          persistence.getPersistenceAdapter().close();
+          return null;
+        });
+  }
+
   public CompletableFuture<ApplicationStatus> getTerminationFuture() {
     return this.terminationFuture;
   }
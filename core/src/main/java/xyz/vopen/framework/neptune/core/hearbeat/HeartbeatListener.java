@@ -1,10 +1,19 @@
 package xyz.vopen.framework.neptune.core.hearbeat;
 
+import xyz.vopen.framework.neptune.common.model.message.request.ReportHeartbeatRequest;
+
 /**
- * {@link HeartbeatListener}
+ * {@link HeartbeatListener} Receives the heartbeats of the workers.
  *
  * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
  * @version ${project.version} - 2020/10/4
  */
 public interface HeartbeatListener {
+
+  /**
+   * Called on every heartbeat of a worker.
+   *
+   * @param heartbeat {@link ReportHeartbeatRequest} instance.
+   */
+  void onHeartbeat(ReportHeartbeatRequest heartbeat);
 }
@@ -0,0 +1,32 @@
+package xyz.vopen.framework.neptune.core.metrics;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link Counter} Monotonic counter, cheap to increment from many threads.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class Counter implements Metric {
+
+  private final LongAdder count = new LongAdder();
+
+  public void inc() {
+    count.increment();
+  }
+
+  public void inc(long n) {
+    count.add(n);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  @Override
+  public void dump(String name, Map<String, Number> values) {
+    values.put(name, getCount());
+  }
+}
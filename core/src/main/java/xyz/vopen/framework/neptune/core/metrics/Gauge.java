@@ -0,0 +1,20 @@
+package xyz.vopen.framework.neptune.core.metrics;
+
+import java.util.Map;
+
+/**
+ * {@link Gauge} Metric whose value is read on demand.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+@FunctionalInterface
+public interface Gauge<T extends Number> extends Metric {
+
+  T getValue();
+
+  @Override
+  default void dump(String name, Map<String, Number> values) {
+    values.put(name, getValue());
+  }
+}
@@ -0,0 +1,114 @@
+package xyz.vopen.framework.neptune.core.metrics;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link LatencyHistogram} Lock-free histogram of durations in nanoseconds. Values are counted in
+ * log-linear buckets: every power of two is split in 16 linear sub-buckets, so a quantile is
+ * reported within ~6% of the recorded value while the histogram stays a fixed array of counters,
+ * whatever the number of samples.
+ *
+ * <p>Values are dumped in milliseconds: {@code count}, {@code mean}, {@code p50}, {@code p95},
+ * {@code p99} and {@code max}.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class LatencyHistogram implements Metric {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+  private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+  /**
+   * Records one duration.
+   *
+   * @param nanos Duration in nanoseconds, negative values are recorded as zero.
+   */
+  public void record(long nanos) {
+    long value = Math.max(0L, nanos);
+    buckets.incrementAndGet(bucketOf(value));
+    count.increment();
+    sum.add(value);
+    max.accumulate(value);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  public double getMean() {
+    long n = count.sum();
+    return n == 0 ? 0.0 : (double) sum.sum() / n;
+  }
+
+  /**
+   * Returns the upper bound of the bucket holding the given quantile.
+   *
+   * @param quantile Between 0 and 1.
+   * @return Duration in nanoseconds, 0 when nothing was recorded.
+   */
+  public long getQuantile(double quantile) {
+    long total = 0;
+    long[] snapshot = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = buckets.get(i);
+      total += snapshot[i];
+    }
+    if (total == 0) {
+      return 0L;
+    }
+
+    long rank = Math.max(1L, (long) Math.ceil(quantile * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        long upper = i + 1 < BUCKETS ? lowerBoundOf(i + 1) - 1 : Long.MAX_VALUE;
+        return Math.min(upper, getMax());
+      }
+    }
+    return getMax();
+  }
+
+  @Override
+  public void dump(String name, Map<String, Number> values) {
+    values.put(name + ".count", getCount());
+    values.put(name + ".mean", getMean() / NANOS_PER_MILLI);
+    values.put(name + ".p50", getQuantile(0.50) / NANOS_PER_MILLI);
+    values.put(name + ".p95", getQuantile(0.95) / NANOS_PER_MILLI);
+    values.put(name + ".p99", getQuantile(0.99) / NANOS_PER_MILLI);
+    values.put(name + ".max", getMax() / NANOS_PER_MILLI);
+  }
+
+  static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+    return (shift + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  static long lowerBoundOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKETS - 1;
+    return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+  }
+}
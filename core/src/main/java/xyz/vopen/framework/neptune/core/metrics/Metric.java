@@ -0,0 +1,20 @@
+package xyz.vopen.framework.neptune.core.metrics;
+
+import java.util.Map;
+
+/**
+ * {@link Metric} A metric registered with the {@link MetricService}.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public interface Metric {
+
+  /**
+   * Writes the current value(s) of the metric.
+   *
+   * @param name Name the metric is registered with, used as prefix of its values.
+   * @param values Receives the values.
+   */
+  void dump(String name, Map<String, Number> values);
+}
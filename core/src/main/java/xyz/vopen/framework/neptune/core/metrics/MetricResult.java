@@ -1,10 +1,37 @@
 package xyz.vopen.framework.neptune.core.metrics;
 
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
 /**
- * {@link MetricResult}
+ * {@link MetricResult} Key-value snapshot of the registered metrics, sorted by name.
  *
  * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
  * @version ${project.version} - 2020/10/16
  */
-public class MetricResult {
+public class MetricResult implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private final long timestamp;
+  private final TreeMap<String, Number> metrics;
+
+  public MetricResult(long timestamp, Map<String, Number> metrics) {
+    this.timestamp = timestamp;
+    this.metrics = new TreeMap<>(metrics);
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public Map<String, Number> getMetrics() {
+    return Collections.unmodifiableMap(metrics);
+  }
+
+  @Override
+  public String toString() {
+    return "MetricResult{" + "timestamp=" + timestamp + ", metrics=" + metrics + '}';
+  }
 }
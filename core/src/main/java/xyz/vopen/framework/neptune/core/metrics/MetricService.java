@@ -7,7 +7,11 @@ import xyz.vopen.framework.neptune.common.utils.time.Time;
 import xyz.vopen.framework.neptune.rpc.RpcEndpoint;
 import xyz.vopen.framework.neptune.rpc.RpcService;
 
+import javax.annotation.Nonnull;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * {@link MetricService} The MetricQueryService creates a key-value representation of all metrics
@@ -21,6 +25,9 @@ public class MetricService extends RpcEndpoint implements MetricServiceGateway {
 
   private static final String METRIC_SERVICE_NAME = "MetricService";
 
+  /** Metrics are registered from any thread, not only from the main thread of the endpoint. */
+  private final Map<String, Metric> metrics = new ConcurrentHashMap<>();
+
   protected MetricService(RpcService rpcService) {
     super(rpcService);
   }
@@ -35,9 +42,38 @@ public class MetricService extends RpcEndpoint implements MetricServiceGateway {
     return new MetricService(rpcService);
   }
 
-  public void addMetric() {}
+  /**
+   * Registers the metric under the given name, replacing the metric previously registered under
+   * it.
+   *
+   * @param name Name of the metric, dot separated.
+   * @param metric {@link Metric} instance.
+   */
+  public void addMetric(@Nonnull String name, @Nonnull Metric metric) {
+    metrics.put(name, metric);
+  }
 
-  public void removeMetric() {}
+  public void removeMetric(@Nonnull String name) {
+    metrics.remove(name);
+  }
+
+  /**
+   * Dumps the current value of every registered metric, a failing metric is logged and skipped.
+   *
+   * @return The key-value snapshot.
+   */
+  public MetricResult snapshot() {
+    Map<String, Number> values = new HashMap<>(metrics.size() * 4);
+    metrics.forEach(
+        (name, metric) -> {
+          try {
+            metric.dump(name, values);
+          } catch (RuntimeException e) {
+            LOG.warn("[MetricService] failed to dump metric {}: {}", name, e.getMessage());
+          }
+        });
+    return new MetricResult(System.currentTimeMillis(), values);
+  }
 
   @Override
   protected CompletableFuture<Void> onStop() {
@@ -46,6 +82,6 @@ public class MetricService extends RpcEndpoint implements MetricServiceGateway {
 
   @Override
   public CompletableFuture<MetricResult> queryMetrics(Time timeout) {
-    return null;
+    return CompletableFuture.completedFuture(snapshot());
   }
 }
@@ -0,0 +1,74 @@
+package xyz.vopen.framework.neptune.core.metrics;
+
+import com.google.common.base.Preconditions;
+import xyz.vopen.framework.neptune.rpc.RpcMethodStatistics;
+import xyz.vopen.framework.neptune.rpc.RpcService;
+import xyz.vopen.framework.neptune.rpc.RpcStatistics;
+
+import javax.annotation.Nonnull;
+
+/**
+ * {@link RpcMetrics} Publishes the {@link RpcStatistics} of an {@link RpcService} through the
+ * {@link MetricService}, for every gateway method under {@code rpc.<gateway>.<method>}:
+ *
+ * <ul>
+ *   <li>{@code latency}: histogram of the calls with a result, as seen by the caller.
+ *   <li>{@code invocation}: histogram of the time the calls took in the main thread of the
+ *       endpoint.
+ *   <li>{@code calls}, {@code in-flight}, {@code timeouts} and {@code failures}.
+ *   <li>{@code request-bytes} and {@code response-bytes}: serialized size of the remote calls.
+ * </ul>
+ *
+ * <p>The connections of the service are published under {@code rpc.connections}: the {@code hits}
+ * and {@code misses} of its gateway cache, the cached gateways {@code invalidated} and the {@code
+ * handshake} latency histogram.
+ *
+ * <p>The metrics of the methods called later are published on their first call.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class RpcMetrics {
+
+  private static final String METRIC_PREFIX = "rpc.";
+
+  private RpcMetrics() {}
+
+  /**
+   * Publishes the statistics of the rpc service through the given metric service.
+   *
+   * @param metricService {@link MetricService} instance.
+   * @param statistics Of the rpc service, see {@link RpcService#getStatistics()}.
+   */
+  public static void register(
+      @Nonnull MetricService metricService, @Nonnull RpcStatistics statistics) {
+    Preconditions.checkNotNull(metricService);
+    statistics.setMethodListener(method -> registerMethodMetrics(metricService, method));
+
+    String prefix = METRIC_PREFIX + "connections.";
+    LatencyHistogram handshake = new LatencyHistogram();
+    statistics.setHandshakeLatencyListener(handshake::record);
+    metricService.addMetric(prefix + "handshake", handshake);
+    metricService.addMetric(prefix + "hits", (Gauge<Long>) statistics::getConnectionHits);
+    metricService.addMetric(prefix + "misses", (Gauge<Long>) statistics::getConnectionMisses);
+    metricService.addMetric(
+        prefix + "invalidated", (Gauge<Long>) statistics::getConnectionInvalidations);
+  }
+
+  private static void registerMethodMetrics(
+      MetricService metricService, RpcMethodStatistics method) {
+    String prefix = METRIC_PREFIX + method.getName() + '.';
+    LatencyHistogram latency = new LatencyHistogram();
+    LatencyHistogram invocation = new LatencyHistogram();
+    method.setCallLatencyListener(latency::record);
+    method.setInvocationTimeListener(invocation::record);
+    metricService.addMetric(prefix + "latency", latency);
+    metricService.addMetric(prefix + "invocation", invocation);
+    metricService.addMetric(prefix + "calls", (Gauge<Long>) method::getCalls);
+    metricService.addMetric(prefix + "in-flight", (Gauge<Integer>) method::getInFlight);
+    metricService.addMetric(prefix + "timeouts", (Gauge<Long>) method::getTimeouts);
+    metricService.addMetric(prefix + "failures", (Gauge<Long>) method::getFailures);
+    metricService.addMetric(prefix + "request-bytes", (Gauge<Long>) method::getRequestBytes);
+    metricService.addMetric(prefix + "response-bytes", (Gauge<Long>) method::getResponseBytes);
+  }
+}
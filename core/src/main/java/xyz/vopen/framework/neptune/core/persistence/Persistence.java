@@ -15,6 +15,9 @@ public interface Persistence {
   PersistenceAdapter getPersistenceAdapter();
 
   enum PersistenceEnum {
-    MONGO;
+    MYSQL,
+    MONGO,
+    EMBEDDED,
+    MEMORY;
   }
 }
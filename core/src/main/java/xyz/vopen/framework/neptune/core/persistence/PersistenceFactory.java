@@ -1,7 +1,12 @@
 package xyz.vopen.framework.neptune.core.persistence;
 
 import xyz.vopen.framework.neptune.common.configuration.Configuration;
+import xyz.vopen.framework.neptune.common.configuration.PersistenceOptions;
+import xyz.vopen.framework.neptune.core.persistence.adapter.CachingPersistenceAdapter;
 import xyz.vopen.framework.neptune.core.persistence.adapter.DefaultPersistenceAdapter;
+import xyz.vopen.framework.neptune.core.persistence.adapter.EmbeddedPersistenceAdapter;
+import xyz.vopen.framework.neptune.core.persistence.adapter.InMemoryPersistenceAdapter;
+import xyz.vopen.framework.neptune.core.persistence.adapter.InstrumentedPersistenceAdapter;
 import xyz.vopen.framework.neptune.core.persistence.adapter.MongoPersistenceAdapter;
 import xyz.vopen.framework.neptune.core.persistence.adapter.PersistenceAdapter;
 
@@ -17,7 +22,10 @@ public enum PersistenceFactory {
   INSTANCE;
 
   public Persistence create(final Configuration configuration) {
-    return DefaultPersistence.create(configuration, createAdapter(configuration, null));
+    Persistence.PersistenceEnum persistenceEnum =
+        Persistence.PersistenceEnum.valueOf(
+            configuration.getString(PersistenceOptions.PERSISTENCE_TYPE).toUpperCase());
+    return DefaultPersistence.create(configuration, createAdapter(configuration, persistenceEnum));
   }
 
   public Persistence create(
@@ -28,10 +36,34 @@ public enum PersistenceFactory {
 
   protected PersistenceAdapter createAdapter(
       final Configuration configuration, final Persistence.PersistenceEnum persistenceEnum) {
+    PersistenceAdapter persistenceAdapter = createStorageAdapter(configuration, persistenceEnum);
+    if (configuration.getBoolean(PersistenceOptions.METRICS_ENABLED)) {
+      // below the cache, so that only the calls reaching the storage are measured
+      persistenceAdapter = InstrumentedPersistenceAdapter.create(persistenceAdapter);
+    }
+    if (!configuration.getBoolean(PersistenceOptions.JOB_CACHE_ENABLED)) {
+      return persistenceAdapter;
+    }
+    return CachingPersistenceAdapter.create(
+        persistenceAdapter, configuration.getInteger(PersistenceOptions.JOB_CACHE_MAX_SIZE));
+  }
+
+  private PersistenceAdapter createStorageAdapter(
+      final Configuration configuration, final Persistence.PersistenceEnum persistenceEnum) {
+    if (persistenceEnum == null) {
+      return DefaultPersistenceAdapter.create(configuration);
+    }
+
     switch (persistenceEnum) {
       case MONGO:
         return MongoPersistenceAdapter.create(configuration);
 
+      case EMBEDDED:
+        return EmbeddedPersistenceAdapter.create(configuration);
+
+      case MEMORY:
+        return InMemoryPersistenceAdapter.create(configuration);
+
       default:
         return DefaultPersistenceAdapter.create(configuration);
     }
@@ -0,0 +1,268 @@
+package xyz.vopen.framework.neptune.core.persistence.adapter;
+
+import com.google.common.base.Preconditions;
+import xyz.vopen.framework.neptune.common.model.InstanceInfo;
+import xyz.vopen.framework.neptune.common.model.JobInfo;
+import xyz.vopen.framework.neptune.common.model.ServerInfo;
+import xyz.vopen.framework.neptune.core.metrics.Gauge;
+import xyz.vopen.framework.neptune.core.metrics.MetricService;
+import xyz.vopen.framework.neptune.core.persistence.cache.InvalidationBroadcaster;
+import xyz.vopen.framework.neptune.core.persistence.cache.JobInfoCache;
+
+import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * {@link CachingPersistenceAdapter} Read-through decorator of {@link PersistenceAdapter}, caches
+ * {@link JobInfo} by job id in a {@link JobInfoCache}. Job writes invalidate the local entry and
+ * are broadcast to the other servers through the {@link InvalidationBroadcaster}. The cached jobs
+ * are never handed out, the reads return copies of them.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/26
+ */
+public class CachingPersistenceAdapter implements PersistenceAdapter {
+
+  private static final String METRIC_PREFIX = "persistence.cache.";
+
+  private final @Nonnull PersistenceAdapter delegate;
+  private final @Nonnull JobInfoCache jobInfoCache;
+  private volatile @Nonnull InvalidationBroadcaster broadcaster = InvalidationBroadcaster.NO_OP;
+
+  private CachingPersistenceAdapter(
+      final @Nonnull PersistenceAdapter delegate, final int maximumSize) {
+    this.delegate = Preconditions.checkNotNull(delegate);
+    this.jobInfoCache = new JobInfoCache(maximumSize);
+  }
+
+  public static CachingPersistenceAdapter create(
+      final PersistenceAdapter delegate, final int maximumSize) {
+    return new CachingPersistenceAdapter(delegate, maximumSize);
+  }
+
+  public void setInvalidationBroadcaster(@Nonnull InvalidationBroadcaster broadcaster) {
+    this.broadcaster = Preconditions.checkNotNull(broadcaster);
+  }
+
+  /**
+   * Drops the specifies job from the local cache only, invoked when another server changed it.
+   *
+   * @param jobId of job.
+   */
+  public void invalidateLocal(long jobId) {
+    jobInfoCache.invalidate(jobId);
+  }
+
+  public JobInfoCache getJobInfoCache() {
+    return jobInfoCache;
+  }
+
+  public PersistenceAdapter getDelegate() {
+    return delegate;
+  }
+
+  /**
+   * Publishes the statistics of the job cache through the given service, as {@code
+   * persistence.cache.<statistic>}.
+   *
+   * @param metricService {@link MetricService} instance.
+   */
+  public void registerMetrics(@Nonnull MetricService metricService) {
+    Preconditions.checkNotNull(metricService);
+    metricService.addMetric(METRIC_PREFIX + "size", (Gauge<Integer>) jobInfoCache::size);
+    metricService.addMetric(METRIC_PREFIX + "hits", (Gauge<Long>) jobInfoCache::getHitCount);
+    metricService.addMetric(METRIC_PREFIX + "misses", (Gauge<Long>) jobInfoCache::getMissCount);
+    metricService.addMetric(
+        METRIC_PREFIX + "evictions", (Gauge<Long>) jobInfoCache::getEvictionCount);
+    metricService.addMetric(METRIC_PREFIX + "hit-rate", (Gauge<Double>) jobInfoCache::hitRate);
+  }
+
+  @Override
+  public Optional<ServerInfo> queryServerByName(String serverName) {
+    return delegate.queryServerByName(serverName);
+  }
+
+  @Override
+  public Optional<List<ServerInfo>> queryServers() {
+    return delegate.queryServers();
+  }
+
+  @Override
+  public void saveServerInfo(@Nonnull ServerInfo serverInfo) {
+    delegate.saveServerInfo(serverInfo);
+  }
+
+  /** Returns a copy of the cached job, the callers may change it before writing it back. */
+  @Override
+  public Optional<JobInfo> findJobById(long jobId) {
+    JobInfo cached = jobInfoCache.getIfPresent(jobId);
+    if (cached != null) {
+      return Optional.of(new JobInfo(cached));
+    }
+
+    long generation = jobInfoCache.generation();
+    Optional<JobInfo> jobInfo = delegate.findJobById(jobId);
+    jobInfo.ifPresent(job -> jobInfoCache.put(jobId, new JobInfo(job), generation));
+    return jobInfo;
+  }
+
+  @Override
+  public Optional<List<JobInfo>> findJobByAppId(long appId) {
+    return delegate.findJobByAppId(appId);
+  }
+
+  @Override
+  public Optional<List<JobInfo>> findJobByAppIdAndStatus(long appId, int status) {
+    return delegate.findJobByAppIdAndStatus(appId, status);
+  }
+
+  @Override
+  public Optional<List<JobInfo>> findJobByAppIdAndName(long appId, String name) {
+    return delegate.findJobByAppIdAndName(appId, name);
+  }
+
+  @Override
+  public List<JobInfo> findJobPageByAppId(long appId, long afterId, int limit) {
+    return delegate.findJobPageByAppId(appId, afterId, limit);
+  }
+
+  @Override
+  public List<JobInfo> findJobPageByAppIdAndStatus(
+      long appId, int status, long afterId, int limit) {
+    return delegate.findJobPageByAppIdAndStatus(appId, status, afterId, limit);
+  }
+
+  @Override
+  public List<JobInfo> claimJobs(long appId, String serverId, int limit, long leaseMillis) {
+    List<JobInfo> claimed = delegate.claimJobs(appId, serverId, limit, leaseMillis);
+    claimed.forEach(this::invalidate);
+    return claimed;
+  }
+
+  /** Only the lease changes, which is never written back from a cached job. */
+  @Override
+  public void renewJobLeases(String serverId, long leaseMillis) {
+    delegate.renewJobLeases(serverId, leaseMillis);
+  }
+
+  @Override
+  public void saveJobInfo(JobInfo jobInfo) {
+    try {
+      delegate.saveJobInfo(jobInfo);
+    } finally {
+      invalidate(jobInfo);
+    }
+  }
+
+  @Override
+  public void updateJobInfo(JobInfo jobInfo) {
+    try {
+      delegate.updateJobInfo(jobInfo);
+    } finally {
+      invalidate(jobInfo);
+    }
+  }
+
+  @Override
+  public long countByJobIdAndStatus(long jobId, List<Integer> status) {
+    return delegate.countByJobIdAndStatus(jobId, status);
+  }
+
+  @Override
+  public Optional<InstanceInfo> findByInstanceId(long instanceId) {
+    return delegate.findByInstanceId(instanceId);
+  }
+
+  @Override
+  public Optional<List<InstanceInfo>> findByJobIdAndStatus(long jobId, List<Integer> status) {
+    return delegate.findByJobIdAndStatus(jobId, status);
+  }
+
+  @Override
+  public Optional<List<InstanceInfo>> findInstancesByAppId(long appId) {
+    return delegate.findInstancesByAppId(appId);
+  }
+
+  @Override
+  public Optional<List<InstanceInfo>> findInstancesByAppIdAndStatus(long appId, int status) {
+    return delegate.findInstancesByAppIdAndStatus(appId, status);
+  }
+
+  @Override
+  public Optional<List<InstanceInfo>> findInstanceStatusByAppId(long appId) {
+    return delegate.findInstanceStatusByAppId(appId);
+  }
+
+  @Override
+  public List<InstanceInfo> findInstancePageByAppId(long appId, long afterId, int limit) {
+    return delegate.findInstancePageByAppId(appId, afterId, limit);
+  }
+
+  @Override
+  public List<InstanceInfo> findInstanceStatusPageByAppId(long appId, long afterId, int limit) {
+    return delegate.findInstanceStatusPageByAppId(appId, afterId, limit);
+  }
+
+  @Override
+  public void saveInstanceInfo(InstanceInfo instanceInfo) {
+    delegate.saveInstanceInfo(instanceInfo);
+  }
+
+  @Override
+  public void saveInstanceInfos(Collection<InstanceInfo> instanceInfos) {
+    delegate.saveInstanceInfos(instanceInfos);
+  }
+
+  @Override
+  public void updateInstanceInfo(InstanceInfo instanceInfo) {
+    delegate.updateInstanceInfo(instanceInfo);
+  }
+
+  @Override
+  public void updateInstanceInfos(Collection<InstanceInfo> instanceInfos) {
+    delegate.updateInstanceInfos(instanceInfos);
+  }
+
+  @Override
+  public void updateInstanceRetryTimes(Map<Long, Integer> retryTimes) {
+    delegate.updateInstanceRetryTimes(retryTimes);
+  }
+
+  @Override
+  public void updateInstanceStatuses(Collection<InstanceInfo> instanceInfos) {
+    delegate.updateInstanceStatuses(instanceInfos);
+  }
+
+  @Override
+  public void deleteInstance(Long instanceIds) {
+    delegate.deleteInstance(instanceIds);
+  }
+
+  @Override
+  public void ensureInstancePartitions(Date until) {
+    delegate.ensureInstancePartitions(until);
+  }
+
+  @Override
+  public void purgeInstancesBefore(Date cutoff) {
+    delegate.purgeInstancesBefore(cutoff);
+  }
+
+  @Override
+  public void close() throws Exception {
+    delegate.close();
+  }
+
+  private void invalidate(JobInfo jobInfo) {
+    if (jobInfo == null || jobInfo.getId() == null) {
+      jobInfoCache.invalidateAll();
+      return;
+    }
+    jobInfoCache.invalidate(jobInfo.getId());
+    broadcaster.broadcastJobInvalidation(jobInfo.getId());
+  }
+}
@@ -6,9 +6,13 @@ import xyz.vopen.framework.neptune.common.model.InstanceInfo;
 import xyz.vopen.framework.neptune.common.model.JobInfo;
 import xyz.vopen.framework.neptune.common.model.ServerInfo;
 import xyz.vopen.framework.repository.mysql.MysqlRepository;
+import xyz.vopen.framework.repository.mysql.PoolStatistics;
 
 import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -30,6 +34,15 @@ public class DefaultPersistenceAdapter implements PersistenceAdapter {
     return new DefaultPersistenceAdapter(configuration);
   }
 
+  public PoolStatistics getPoolStatistics() {
+    return mysqlRepository.getPoolStatistics();
+  }
+
+  /** See {@link MysqlRepository#setCompletionListener}. */
+  public void setCompletionListener(MysqlRepository.CompletionListener completionListener) {
+    mysqlRepository.setCompletionListener(completionListener);
+  }
+
   @Override
   public Optional<ServerInfo> queryServerByName(@Nonnull String serverName) {
     Optional<ServerInfo> serverInfo = mysqlRepository.queryServerByName(serverName);
@@ -67,6 +80,27 @@ public class DefaultPersistenceAdapter implements PersistenceAdapter {
     return mysqlRepository.findJobByAppIdAndName(appId, name);
   }
 
+  @Override
+  public List<JobInfo> findJobPageByAppId(long appId, long afterId, int limit) {
+    return mysqlRepository.findJobPageByAppId(appId, afterId, limit);
+  }
+
+  @Override
+  public List<JobInfo> findJobPageByAppIdAndStatus(
+      long appId, int status, long afterId, int limit) {
+    return mysqlRepository.findJobPageByAppIdAndStatus(appId, status, afterId, limit);
+  }
+
+  @Override
+  public List<JobInfo> claimJobs(long appId, String serverId, int limit, long leaseMillis) {
+    return mysqlRepository.claimJobs(appId, serverId, limit, leaseMillis);
+  }
+
+  @Override
+  public void renewJobLeases(String serverId, long leaseMillis) {
+    mysqlRepository.renewJobLeases(serverId, leaseMillis);
+  }
+
   @Override
   public void saveJobInfo(JobInfo jobInfo) {
     mysqlRepository.saveJobInfo(jobInfo);
@@ -102,6 +136,11 @@ public class DefaultPersistenceAdapter implements PersistenceAdapter {
     return mysqlRepository.findInstancesByAppIdAndStatus(appId,status);
   }
 
+  @Override
+  public List<InstanceInfo> findInstancePageByAppId(long appId, long afterId, int limit) {
+    return mysqlRepository.findInstancePageByAppId(appId, afterId, limit);
+  }
+
   @Override
   public void saveInstanceInfo(InstanceInfo instanceInfo) {
     mysqlRepository.saveInstanceInfo(instanceInfo);
@@ -112,8 +151,32 @@ public class DefaultPersistenceAdapter implements PersistenceAdapter {
     mysqlRepository.updateInstanceInfo(instanceInfo);
   }
 
+  @Override
+  public void updateInstanceRetryTimes(Map<Long, Integer> retryTimes) {
+    mysqlRepository.updateInstanceRetryTimes(retryTimes);
+  }
+
+  @Override
+  public void updateInstanceStatuses(Collection<InstanceInfo> instanceInfos) {
+    mysqlRepository.updateInstanceStatuses(instanceInfos);
+  }
+
   @Override
   public void deleteInstance(Long instanceIds) {
     mysqlRepository.deleteInstance(instanceIds);
   }
+  @Override
+  public void ensureInstancePartitions(Date until) {
+    mysqlRepository.ensureInstancePartitions(until);
+  }
+
+  @Override
+  public void purgeInstancesBefore(Date cutoff) {
+    mysqlRepository.purgeInstancesBefore(cutoff);
+  }
+
+  @Override
+  public void close() {
+    mysqlRepository.close();
+  }
 }
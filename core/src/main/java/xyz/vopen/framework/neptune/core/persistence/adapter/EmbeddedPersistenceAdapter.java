@@ -0,0 +1,471 @@
+package xyz.vopen.framework.neptune.core.persistence.adapter;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import xyz.vopen.framework.neptune.common.annoations.VisibleForTesting;
+import xyz.vopen.framework.neptune.common.configuration.Configuration;
+import xyz.vopen.framework.neptune.common.configuration.PersistenceOptions;
+import xyz.vopen.framework.neptune.common.enums.JobStatus;
+import xyz.vopen.framework.neptune.common.model.InstanceInfo;
+import xyz.vopen.framework.neptune.common.model.JobInfo;
+import xyz.vopen.framework.neptune.common.model.ServerInfo;
+import xyz.vopen.framework.neptune.common.utils.ExecutorThreadFactory;
+import xyz.vopen.framework.neptune.common.utils.IdGenerateUtil;
+import xyz.vopen.framework.neptune.core.persistence.embedded.RecordCodec;
+import xyz.vopen.framework.neptune.core.persistence.embedded.MutationLog;
+import xyz.vopen.framework.neptune.core.persistence.embedded.SecondaryIndex;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * {@link EmbeddedPersistenceAdapter} Adapter storing jobs, instances and servers in a local {@link
+ * MutationLog}, for standalone deployments without an external database. Writes are a single
+ * append to a memory-mapped segment, reads by id go through the index of the log. The jobs by app
+ * id, the running jobs by claim server, the instances by app id and by job id are found through
+ * {@link SecondaryIndex}es rebuilt when the log is opened; only the servers, a handful of records,
+ * are scanned.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/27
+ */
+public class EmbeddedPersistenceAdapter implements PersistenceAdapter, AutoCloseable {
+  private static final Logger LOG = LoggerFactory.getLogger(EmbeddedPersistenceAdapter.class);
+
+  private final @Nonnull MutationLog mutationLog;
+  private final ScheduledExecutorService compactionExecutor;
+  private final Object claimLock = new Object();
+  private final Object instanceLock = new Object();
+
+  private final SecondaryIndex<JobInfo, Long> jobsByAppId =
+      new SecondaryIndex<>(JobInfo::getAppId);
+  /** The leases to renew, only accessed under the claim lock. */
+  private final SecondaryIndex<JobInfo, String> runningJobsByClaimServer =
+      new SecondaryIndex<>(EmbeddedPersistenceAdapter::leaseOwner);
+  private final SecondaryIndex<InstanceInfo, Long> instancesByAppId =
+      new SecondaryIndex<>(InstanceInfo::getAppId);
+  private final SecondaryIndex<InstanceInfo, Long> instancesByJobId =
+      new SecondaryIndex<>(InstanceInfo::getJobId);
+
+  private EmbeddedPersistenceAdapter(final Configuration configuration) {
+    Preconditions.checkNotNull(configuration);
+    File directory = new File(configuration.getString(PersistenceOptions.EMBEDDED_DIRECTORY));
+    try {
+      this.mutationLog =
+          MutationLog.open(
+              directory,
+              configuration.getInteger(PersistenceOptions.EMBEDDED_SEGMENT_SIZE),
+              configuration.getBoolean(PersistenceOptions.EMBEDDED_SYNC_WRITE));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not open the embedded log in " + directory, e);
+    }
+    mutationLog.forEach(MutationLog.TYPE_JOB, RecordCodec::readJob, this::indexJob);
+    mutationLog.forEach(MutationLog.TYPE_INSTANCE, RecordCodec::readInstance, this::indexInstance);
+
+    double threshold = configuration.getDouble(PersistenceOptions.EMBEDDED_COMPACTION_THRESHOLD);
+    long interval = configuration.getLong(PersistenceOptions.EMBEDDED_COMPACTION_INTERVAL);
+    this.compactionExecutor =
+        Executors.newSingleThreadScheduledExecutor(
+            new ExecutorThreadFactory("neptune-embedded-compaction"));
+    this.compactionExecutor.scheduleWithFixedDelay(
+        () -> {
+          try {
+            mutationLog.compact(threshold);
+          } catch (Throwable t) {
+            LOG.error("[EmbeddedPersistenceAdapter] Compaction failed.", t);
+          }
+        },
+        interval,
+        interval,
+        TimeUnit.MILLISECONDS);
+  }
+
+  public static EmbeddedPersistenceAdapter create(final Configuration configuration) {
+    return new EmbeddedPersistenceAdapter(configuration);
+  }
+
+  // =====================  Server Info   =====================
+
+  @Override
+  public Optional<ServerInfo> queryServerByName(String serverName) {
+    return scan(
+            MutationLog.TYPE_SERVER,
+            RecordCodec::readServer,
+            server -> Objects.equals(serverName, server.getServiceName()))
+        .stream()
+        .findFirst();
+  }
+
+  @Override
+  public Optional<List<ServerInfo>> queryServers() {
+    return Optional.of(scan(MutationLog.TYPE_SERVER, RecordCodec::readServer, server -> true));
+  }
+
+  @Override
+  public void saveServerInfo(@Nonnull ServerInfo serverInfo) {
+    if (serverInfo.getId() == null) {
+      serverInfo.setId(IdGenerateUtil.generate());
+    }
+    mutationLog.append(
+        MutationLog.TYPE_SERVER, serverInfo.getId(), serverInfo, RecordCodec::writeServer);
+  }
+
+  // =====================  Job Info   =====================
+
+  @Override
+  public Optional<JobInfo> findJobById(long jobId) {
+    return Optional.ofNullable(
+        mutationLog.get(MutationLog.TYPE_JOB, jobId, RecordCodec::readJob));
+  }
+
+  @Override
+  public Optional<List<JobInfo>> findJobByAppId(long appId) {
+    return Optional.of(findJobs(appId, Long.MIN_VALUE, Integer.MAX_VALUE, job -> true));
+  }
+
+  @Override
+  public Optional<List<JobInfo>> findJobByAppIdAndStatus(long appId, int status) {
+    return Optional.of(
+        findJobs(appId, Long.MIN_VALUE, Integer.MAX_VALUE, job -> equals(status, job.getStatus())));
+  }
+
+  @Override
+  public Optional<List<JobInfo>> findJobByAppIdAndName(long appId, String name) {
+    return Optional.of(
+        findJobs(
+            appId,
+            Long.MIN_VALUE,
+            Integer.MAX_VALUE,
+            job -> Objects.equals(name, job.getJobName())));
+  }
+
+  @Override
+  public List<JobInfo> findJobPageByAppId(long appId, long afterId, int limit) {
+    return findJobs(appId, afterId, limit, job -> true);
+  }
+
+  @Override
+  public List<JobInfo> findJobPageByAppIdAndStatus(
+      long appId, int status, long afterId, int limit) {
+    return findJobs(appId, afterId, limit, job -> equals(status, job.getStatus()));
+  }
+
+  /**
+   * Claims the jobs under the claim lock, the log is local to this server so the lock is enough to
+   * make the check and the write atomic.
+   */
+  @Override
+  public List<JobInfo> claimJobs(long appId, String serverId, int limit, long leaseMillis) {
+    synchronized (claimLock) {
+      long now = System.currentTimeMillis();
+      List<JobInfo> claimed = findJobs(appId, Long.MIN_VALUE, limit, job -> isClaimable(job, now));
+      for (JobInfo job : claimed) {
+        runningJobsByClaimServer.remove(job.getId(), job);
+        job.setStatus(JobStatus.RUNNING.getStatus());
+        job.setClaimServer(serverId);
+        job.setLeaseExpireTime(now + leaseMillis);
+        job.setGmtUpdate(new Date(now));
+        mutationLog.append(MutationLog.TYPE_JOB, job.getId(), job, RecordCodec::writeJob);
+        runningJobsByClaimServer.add(job.getId(), job);
+      }
+      return claimed;
+    }
+  }
+
+  @Override
+  public void renewJobLeases(String serverId, long leaseMillis) {
+    synchronized (claimLock) {
+      long leaseExpireTime = System.currentTimeMillis() + leaseMillis;
+      List<JobInfo> claimed =
+          runningJobsByClaimServer.lookup(
+              serverId, Long.MIN_VALUE, Integer.MAX_VALUE, this::loadJob, job -> true);
+      for (JobInfo job : claimed) {
+        job.setLeaseExpireTime(leaseExpireTime);
+        mutationLog.append(MutationLog.TYPE_JOB, job.getId(), job, RecordCodec::writeJob);
+      }
+    }
+  }
+
+  @Override
+  public void saveJobInfo(JobInfo jobInfo) {
+    Date now = new Date();
+    if (jobInfo.getId() == null) {
+      jobInfo.setId(IdGenerateUtil.generate());
+    }
+    if (jobInfo.getGmtCreate() == null) {
+      jobInfo.setGmtCreate(now);
+    }
+    jobInfo.setGmtUpdate(now);
+    synchronized (claimLock) {
+      JobInfo stored = loadJob(jobInfo.getId());
+      mutationLog.append(MutationLog.TYPE_JOB, jobInfo.getId(), jobInfo, RecordCodec::writeJob);
+      reindexJob(stored, jobInfo);
+    }
+  }
+
+  /** Updates the job, the claim fields are kept from the stored job. */
+  @Override
+  public void updateJobInfo(JobInfo jobInfo) {
+    Preconditions.checkNotNull(jobInfo.getId(), "Job id is null.");
+    synchronized (claimLock) {
+      JobInfo stored = loadJob(jobInfo.getId());
+      if (stored != null) {
+        jobInfo.setClaimServer(stored.getClaimServer());
+        jobInfo.setLeaseExpireTime(stored.getLeaseExpireTime());
+      }
+      jobInfo.setGmtUpdate(new Date());
+      mutationLog.append(MutationLog.TYPE_JOB, jobInfo.getId(), jobInfo, RecordCodec::writeJob);
+      reindexJob(stored, jobInfo);
+    }
+  }
+
+  // =====================  Instance Info   =====================
+
+  @Override
+  public long countByJobIdAndStatus(long jobId, List<Integer> status) {
+    return findByJobIdAndStatus(jobId, status).map(List::size).orElse(0);
+  }
+
+  @Override
+  public Optional<InstanceInfo> findByInstanceId(long instanceId) {
+    return Optional.ofNullable(
+        mutationLog.get(MutationLog.TYPE_INSTANCE, instanceId, RecordCodec::readInstance));
+  }
+
+  @Override
+  public Optional<List<InstanceInfo>> findByJobIdAndStatus(long jobId, List<Integer> status) {
+    return Optional.of(
+        instancesByJobId.lookup(
+            jobId,
+            Long.MIN_VALUE,
+            Integer.MAX_VALUE,
+            this::loadInstance,
+            instance -> status.contains(instance.getStatus())));
+  }
+
+  @Override
+  public Optional<List<InstanceInfo>> findInstancesByAppId(long appId) {
+    return Optional.of(findInstances(appId, Long.MIN_VALUE, Integer.MAX_VALUE, instance -> true));
+  }
+
+  @Override
+  public Optional<List<InstanceInfo>> findInstancesByAppIdAndStatus(long appId, int status) {
+    return Optional.of(
+        findInstances(
+            appId,
+            Long.MIN_VALUE,
+            Integer.MAX_VALUE,
+            instance -> equals(status, instance.getStatus())));
+  }
+
+  @Override
+  public List<InstanceInfo> findInstancePageByAppId(long appId, long afterId, int limit) {
+    return findInstances(appId, afterId, limit, instance -> true);
+  }
+
+  @Override
+  public void saveInstanceInfo(InstanceInfo instanceInfo) {
+    Date now = new Date();
+    if (instanceInfo.getId() == null) {
+      instanceInfo.setId(IdGenerateUtil.generate());
+    }
+    if (instanceInfo.getGmtCreate() == null) {
+      instanceInfo.setGmtCreate(now);
+    }
+    instanceInfo.setGmtUpdate(now);
+    mutationLog.append(
+        MutationLog.TYPE_INSTANCE,
+        instanceInfo.getId(),
+        instanceInfo,
+        RecordCodec::writeInstance);
+    indexInstance(instanceInfo);
+  }
+
+  /**
+   * Appends the stored instance with the non null fields of the update applied, so that an
+   * instance read through a status projection is written back without losing its other fields.
+   */
+  @Override
+  public void updateInstanceInfo(InstanceInfo instanceInfo) {
+    Preconditions.checkNotNull(instanceInfo.getId(), "Instance id is null.");
+    instanceInfo.setGmtUpdate(new Date());
+    synchronized (instanceLock) {
+      InstanceInfo stored = loadInstance(instanceInfo.getId());
+      InstanceInfo updated = stored == null ? instanceInfo : stored.merge(instanceInfo);
+      mutationLog.append(
+          MutationLog.TYPE_INSTANCE, updated.getId(), updated, RecordCodec::writeInstance);
+      indexInstance(updated);
+    }
+  }
+
+  /** Appends each changed instance once, without the lookup of the default implementation. */
+  @Override
+  public void updateInstanceRetryTimes(Map<Long, Integer> retryTimes) {
+    Date now = new Date();
+    synchronized (instanceLock) {
+      retryTimes.forEach(
+          (instanceId, times) -> {
+            InstanceInfo stored = loadInstance(instanceId);
+            if (stored != null) {
+              stored.setRetryTimes(times);
+              stored.setGmtUpdate(now);
+              mutationLog.append(
+                  MutationLog.TYPE_INSTANCE, instanceId, stored, RecordCodec::writeInstance);
+            }
+          });
+    }
+  }
+
+  @Override
+  public void deleteInstance(Long instanceIds) {
+    if (instanceIds == null) {
+      return;
+    }
+    synchronized (instanceLock) {
+      InstanceInfo stored = loadInstance(instanceIds);
+      if (stored != null) {
+        mutationLog.deleteInstance(instanceIds);
+        unindexInstance(stored);
+      }
+    }
+  }
+
+  /** The log is not partitioned, nothing to prepare. */
+  @Override
+  public void ensureInstancePartitions(Date until) {}
+
+  /**
+   * Writes a tombstone for every instance created before the cutoff, the space is reclaimed by the
+   * next compaction of the segments.
+   *
+   * @param cutoff Instances created before this day are dropped.
+   */
+  @Override
+  public void purgeInstancesBefore(Date cutoff) {
+    List<InstanceInfo> deleted;
+    synchronized (instanceLock) {
+      deleted =
+          mutationLog.deleteInstancesIf(
+              RecordCodec::readInstance,
+              instance ->
+                  instance.getGmtCreate() != null && instance.getGmtCreate().before(cutoff));
+      deleted.forEach(this::unindexInstance);
+    }
+    LOG.info(
+        "[EmbeddedPersistenceAdapter] purged {} instances created before {}.",
+        deleted.size(),
+        cutoff);
+  }
+
+  @Override
+  public void close() throws IOException {
+    compactionExecutor.shutdownNow();
+    mutationLog.close();
+  }
+
+  @VisibleForTesting
+  int indexedInstancesOfJob(long jobId) {
+    return instancesByJobId.size(jobId);
+  }
+
+  @VisibleForTesting
+  int indexedLeasesOf(String serverId) {
+    synchronized (claimLock) {
+      return runningJobsByClaimServer.size(serverId);
+    }
+  }
+
+  // =====================  Internal  =====================
+
+  private <T> List<T> scan(
+      byte type, Function<ByteBuffer, T> reader, Predicate<T> filter) {
+    List<T> result = new ArrayList<>();
+    mutationLog.forEach(
+        type,
+        reader,
+        entity -> {
+          if (filter.test(entity)) {
+            result.add(entity);
+          }
+        });
+    return result;
+  }
+
+  private List<JobInfo> findJobs(long appId, long afterId, int limit, Predicate<JobInfo> filter) {
+    return jobsByAppId.lookup(appId, afterId, limit, this::loadJob, filter);
+  }
+
+  private JobInfo loadJob(long jobId) {
+    return mutationLog.get(MutationLog.TYPE_JOB, jobId, RecordCodec::readJob);
+  }
+
+  private void indexJob(JobInfo job) {
+    jobsByAppId.add(job.getId(), job);
+    runningJobsByClaimServer.add(job.getId(), job);
+  }
+
+  /** Moves the lease of the written job, called under the claim lock. */
+  private void reindexJob(@Nullable JobInfo stored, JobInfo job) {
+    if (stored != null) {
+      runningJobsByClaimServer.remove(stored.getId(), stored);
+    }
+    indexJob(job);
+  }
+
+  private List<InstanceInfo> findInstances(
+      long appId, long afterId, int limit, Predicate<InstanceInfo> filter) {
+    return instancesByAppId.lookup(appId, afterId, limit, this::loadInstance, filter);
+  }
+
+  private InstanceInfo loadInstance(long instanceId) {
+    return mutationLog.get(MutationLog.TYPE_INSTANCE, instanceId, RecordCodec::readInstance);
+  }
+
+  private void indexInstance(InstanceInfo instance) {
+    instancesByAppId.add(instance.getId(), instance);
+    instancesByJobId.add(instance.getId(), instance);
+  }
+
+  private void unindexInstance(InstanceInfo instance) {
+    instancesByAppId.remove(instance.getId(), instance);
+    instancesByJobId.remove(instance.getId(), instance);
+  }
+
+  /** Returns the server holding the lease of the job, null if the job is not running. */
+  @Nullable
+  private static String leaseOwner(JobInfo job) {
+    return equals(JobStatus.RUNNING.getStatus(), job.getStatus()) ? job.getClaimServer() : null;
+  }
+
+  private static boolean isClaimable(JobInfo job, long now) {
+    if (equals(JobStatus.NEW.getStatus(), job.getStatus())) {
+      return true;
+    }
+    return equals(JobStatus.RUNNING.getStatus(), job.getStatus())
+        && (job.getLeaseExpireTime() == null || job.getLeaseExpireTime() < now);
+  }
+
+  private static boolean equals(long expected, Long actual) {
+    return actual != null && actual == expected;
+  }
+
+  private static boolean equals(int expected, Integer actual) {
+    return actual != null && actual == expected;
+  }
+}
@@ -0,0 +1,463 @@
+package xyz.vopen.framework.neptune.core.persistence.adapter;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import xyz.vopen.framework.neptune.common.configuration.Configuration;
+import xyz.vopen.framework.neptune.common.configuration.PersistenceOptions;
+import xyz.vopen.framework.neptune.common.enums.JobStatus;
+import xyz.vopen.framework.neptune.common.model.InstanceInfo;
+import xyz.vopen.framework.neptune.common.model.JobInfo;
+import xyz.vopen.framework.neptune.common.model.ServerInfo;
+import xyz.vopen.framework.neptune.common.utils.IdGenerateUtil;
+import xyz.vopen.framework.neptune.core.persistence.memory.MemoryTable;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link InMemoryPersistenceAdapter} Reference adapter keeping jobs, instances and servers in
+ * {@link MemoryTable}s, with secondary indexes on the app id, job id and status. Nothing survives
+ * a restart: it is meant for benchmarks and simulations of the scheduler without a database, for
+ * which a fixed latency and a random jitter can be injected in every call to stand for the round
+ * trip of a real database.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class InMemoryPersistenceAdapter implements PersistenceAdapter {
+  private static final Logger LOG = LoggerFactory.getLogger(InMemoryPersistenceAdapter.class);
+
+  private final long latencyNanos;
+  private final long jitterNanos;
+
+  private final MemoryTable<ServerInfo> servers =
+      MemoryTable.create(ServerInfo::getId, InMemoryPersistenceAdapter::copyOf);
+
+  private final MemoryTable<JobInfo> jobs =
+      MemoryTable.create(JobInfo::getId, InMemoryPersistenceAdapter::copyOf);
+  private final MemoryTable.Index<JobInfo> jobsByAppId =
+      jobs.addIndex(job -> keyOf(job.getAppId()));
+  private final MemoryTable.Index<JobInfo> jobsByAppIdAndStatus =
+      jobs.addIndex(job -> keyOf(job.getAppId(), job.getStatus()));
+  private final MemoryTable.Index<JobInfo> jobsByStatus =
+      jobs.addIndex(job -> job.getStatus() == null ? MemoryTable.NO_KEY : job.getStatus());
+
+  private final MemoryTable<InstanceInfo> instances =
+      MemoryTable.create(InstanceInfo::getId, InMemoryPersistenceAdapter::copyOf);
+  private final MemoryTable.Index<InstanceInfo> instancesByAppId =
+      instances.addIndex(instance -> keyOf(instance.getAppId()));
+  private final MemoryTable.Index<InstanceInfo> instancesByJobId =
+      instances.addIndex(instance -> keyOf(instance.getJobId()));
+  private final MemoryTable.Index<InstanceInfo> instancesByAppIdAndStatus =
+      instances.addIndex(instance -> keyOf(instance.getAppId(), instance.getStatus()));
+
+  private InMemoryPersistenceAdapter(final long latencyMicros, final long jitterMicros) {
+    Preconditions.checkArgument(latencyMicros >= 0, "latency must not be negative");
+    Preconditions.checkArgument(jitterMicros >= 0, "latency jitter must not be negative");
+    this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+    this.jitterNanos = TimeUnit.MICROSECONDS.toNanos(jitterMicros);
+  }
+
+  public static InMemoryPersistenceAdapter create(final @Nonnull Configuration configuration) {
+    Preconditions.checkNotNull(configuration);
+    return new InMemoryPersistenceAdapter(
+        configuration.getLong(PersistenceOptions.MEMORY_LATENCY),
+        configuration.getLong(PersistenceOptions.MEMORY_LATENCY_JITTER));
+  }
+
+  /**
+   * Create the adapter with the given injected latency.
+   *
+   * @param latencyMicros Latency of every call in microseconds.
+   * @param jitterMicros Maximum random latency added to every call in microseconds.
+   * @return The adapter.
+   */
+  public static InMemoryPersistenceAdapter create(
+      final long latencyMicros, final long jitterMicros) {
+    return new InMemoryPersistenceAdapter(latencyMicros, jitterMicros);
+  }
+
+  // =====================  Server Info   =====================
+
+  @Override
+  public Optional<ServerInfo> queryServerByName(String serverName) {
+    simulateLatency();
+    return servers
+        .find(
+            null,
+            0L,
+            Long.MIN_VALUE,
+            1,
+            server -> Objects.equals(serverName, server.getServiceName()))
+        .stream()
+        .findFirst();
+  }
+
+  @Override
+  public Optional<List<ServerInfo>> queryServers() {
+    simulateLatency();
+    return Optional.of(servers.find(null, 0L, server -> true));
+  }
+
+  @Override
+  public void saveServerInfo(@Nonnull ServerInfo serverInfo) {
+    simulateLatency();
+    if (serverInfo.getId() == null) {
+      serverInfo.setId(IdGenerateUtil.generate());
+    }
+    servers.put(serverInfo);
+  }
+
+  // =====================  Job Info   =====================
+
+  @Override
+  public Optional<JobInfo> findJobById(long jobId) {
+    simulateLatency();
+    return Optional.ofNullable(jobs.get(jobId));
+  }
+
+  @Override
+  public Optional<List<JobInfo>> findJobByAppId(long appId) {
+    simulateLatency();
+    return Optional.of(jobs.find(jobsByAppId, appId, job -> equals(appId, job.getAppId())));
+  }
+
+  @Override
+  public Optional<List<JobInfo>> findJobByAppIdAndStatus(long appId, int status) {
+    simulateLatency();
+    return Optional.of(
+        jobs.find(jobsByAppIdAndStatus, keyOf(appId, status), job -> matches(job, appId, status)));
+  }
+
+  @Override
+  public Optional<List<JobInfo>> findJobByAppIdAndName(long appId, String name) {
+    simulateLatency();
+    return Optional.of(
+        jobs.find(
+            jobsByAppId,
+            appId,
+            job -> equals(appId, job.getAppId()) && Objects.equals(name, job.getJobName())));
+  }
+
+  @Override
+  public List<JobInfo> findJobPageByAppId(long appId, long afterId, int limit) {
+    simulateLatency();
+    return jobs.find(jobsByAppId, appId, afterId, limit, job -> equals(appId, job.getAppId()));
+  }
+
+  @Override
+  public List<JobInfo> findJobPageByAppIdAndStatus(
+      long appId, int status, long afterId, int limit) {
+    simulateLatency();
+    return jobs.find(
+        jobsByAppIdAndStatus,
+        keyOf(appId, status),
+        afterId,
+        limit,
+        job -> matches(job, appId, status));
+  }
+
+  /** Claims the new jobs first, then the running jobs whose lease expired. */
+  @Override
+  public List<JobInfo> claimJobs(long appId, String serverId, int limit, long leaseMillis) {
+    simulateLatency();
+    long now = System.currentTimeMillis();
+    int running = JobStatus.RUNNING.getStatus();
+    List<JobInfo> claimed = new ArrayList<>();
+    for (int status : new int[] {JobStatus.NEW.getStatus(), running}) {
+      claimed.addAll(
+          jobs.update(
+              jobsByAppIdAndStatus,
+              keyOf(appId, status),
+              limit - claimed.size(),
+              job ->
+                  matches(job, appId, status)
+                      && (status != running
+                          || job.getLeaseExpireTime() == null
+                          || job.getLeaseExpireTime() < now),
+              job -> {
+                job.setStatus(running);
+                job.setClaimServer(serverId);
+                job.setLeaseExpireTime(now + leaseMillis);
+                job.setGmtUpdate(new Date(now));
+              }));
+    }
+    return claimed;
+  }
+
+  @Override
+  public void renewJobLeases(String serverId, long leaseMillis) {
+    simulateLatency();
+    long leaseExpireTime = System.currentTimeMillis() + leaseMillis;
+    jobs.update(
+        jobsByStatus,
+        JobStatus.RUNNING.getStatus(),
+        Integer.MAX_VALUE,
+        job -> Objects.equals(serverId, job.getClaimServer()),
+        job -> job.setLeaseExpireTime(leaseExpireTime));
+  }
+
+  @Override
+  public void saveJobInfo(JobInfo jobInfo) {
+    simulateLatency();
+    Date now = new Date();
+    if (jobInfo.getId() == null) {
+      jobInfo.setId(IdGenerateUtil.generate());
+    }
+    if (jobInfo.getGmtCreate() == null) {
+      jobInfo.setGmtCreate(now);
+    }
+    jobInfo.setGmtUpdate(now);
+    jobs.put(jobInfo);
+  }
+
+  /** Updates the job, the claim fields are kept from the stored job. */
+  @Override
+  public void updateJobInfo(JobInfo jobInfo) {
+    Preconditions.checkNotNull(jobInfo.getId(), "Job id is null.");
+    simulateLatency();
+    jobInfo.setGmtUpdate(new Date());
+    jobs.compute(
+        jobInfo.getId(),
+        stored -> {
+          JobInfo updated = copyOf(jobInfo);
+          if (stored != null) {
+            updated.setClaimServer(stored.getClaimServer());
+            updated.setLeaseExpireTime(stored.getLeaseExpireTime());
+          }
+          return updated;
+        });
+  }
+
+  // =====================  Instance Info   =====================
+
+  @Override
+  public long countByJobIdAndStatus(long jobId, List<Integer> status) {
+    simulateLatency();
+    return instances.count(
+        instancesByJobId,
+        jobId,
+        instance -> equals(jobId, instance.getJobId()) && status.contains(instance.getStatus()));
+  }
+
+  @Override
+  public Optional<InstanceInfo> findByInstanceId(long instanceId) {
+    simulateLatency();
+    return Optional.ofNullable(instances.get(instanceId));
+  }
+
+  @Override
+  public Optional<List<InstanceInfo>> findByJobIdAndStatus(long jobId, List<Integer> status) {
+    simulateLatency();
+    return Optional.of(
+        instances.find(
+            instancesByJobId,
+            jobId,
+            instance ->
+                equals(jobId, instance.getJobId()) && status.contains(instance.getStatus())));
+  }
+
+  @Override
+  public Optional<List<InstanceInfo>> findInstancesByAppId(long appId) {
+    simulateLatency();
+    return Optional.of(
+        instances.find(
+            instancesByAppId, appId, instance -> equals(appId, instance.getAppId())));
+  }
+
+  @Override
+  public Optional<List<InstanceInfo>> findInstancesByAppIdAndStatus(long appId, int status) {
+    simulateLatency();
+    return Optional.of(
+        instances.find(
+            instancesByAppIdAndStatus,
+            keyOf(appId, status),
+            instance ->
+                equals(appId, instance.getAppId()) && equals(status, instance.getStatus())));
+  }
+
+  @Override
+  public List<InstanceInfo> findInstancePageByAppId(long appId, long afterId, int limit) {
+    simulateLatency();
+    return instances.find(
+        instancesByAppId, appId, afterId, limit, instance -> equals(appId, instance.getAppId()));
+  }
+
+  @Override
+  public void saveInstanceInfo(InstanceInfo instanceInfo) {
+    simulateLatency();
+    Date now = new Date();
+    if (instanceInfo.getId() == null) {
+      instanceInfo.setId(IdGenerateUtil.generate());
+    }
+    if (instanceInfo.getGmtCreate() == null) {
+      instanceInfo.setGmtCreate(now);
+    }
+    instanceInfo.setGmtUpdate(now);
+    instances.put(instanceInfo);
+  }
+
+  /** Merges the non null fields into the stored row, see {@link #findInstanceStatusByAppId}. */
+  @Override
+  public void updateInstanceInfo(InstanceInfo instanceInfo) {
+    Preconditions.checkNotNull(instanceInfo.getId(), "Instance id is null.");
+    simulateLatency();
+    instanceInfo.setGmtUpdate(new Date());
+    instances.compute(
+        instanceInfo.getId(), stored -> stored == null ? instanceInfo : stored.merge(instanceInfo));
+  }
+
+  @Override
+  public void updateInstanceRetryTimes(Map<Long, Integer> retryTimes) {
+    simulateLatency();
+    Date now = new Date();
+    retryTimes.forEach(
+        (instanceId, times) ->
+            instances.compute(
+                instanceId,
+                stored -> {
+                  if (stored == null) {
+                    return null;
+                  }
+                  stored.setRetryTimes(times);
+                  stored.setGmtUpdate(now);
+                  return stored;
+                }));
+  }
+
+  @Override
+  public void deleteInstance(Long instanceIds) {
+    simulateLatency();
+    if (instanceIds != null) {
+      instances.remove(instanceIds);
+    }
+  }
+
+  /** Nothing is partitioned in memory. */
+  @Override
+  public void ensureInstancePartitions(Date until) {}
+
+  @Override
+  public void purgeInstancesBefore(Date cutoff) {
+    simulateLatency();
+    int deleted =
+        instances.removeIf(
+            instance -> instance.getGmtCreate() != null && instance.getGmtCreate().before(cutoff));
+    LOG.info(
+        "[InMemoryPersistenceAdapter] purged {} instances created before {}.", deleted, cutoff);
+  }
+
+  // =====================  Internal  =====================
+
+  private void simulateLatency() {
+    long nanos = latencyNanos;
+    if (jitterNanos > 0) {
+      nanos += ThreadLocalRandom.current().nextLong(jitterNanos + 1);
+    }
+    if (nanos > 0) {
+      LockSupport.parkNanos(nanos);
+    }
+  }
+
+  private static long keyOf(Long id) {
+    return id == null ? MemoryTable.NO_KEY : id;
+  }
+
+  /** Composite key, may collide: the queries check the columns. */
+  private static long keyOf(Long appId, Integer status) {
+    if (appId == null || status == null) {
+      return MemoryTable.NO_KEY;
+    }
+    return appId * 31 + status;
+  }
+
+  private static boolean matches(JobInfo job, long appId, int status) {
+    return equals(appId, job.getAppId()) && equals(status, job.getStatus());
+  }
+
+  private static boolean equals(long expected, Long actual) {
+    return actual != null && actual == expected;
+  }
+
+  private static boolean equals(int expected, Integer actual) {
+    return actual != null && actual == expected;
+  }
+
+  private static ServerInfo copyOf(ServerInfo server) {
+    return new ServerInfo(
+        server.getId(),
+        server.getServiceName(),
+        server.getAddress(),
+        copyOf(server.getGmtCreate()),
+        copyOf(server.getGmtUpdate()));
+  }
+
+  private static JobInfo copyOf(JobInfo job) {
+    JobInfo copy =
+        new JobInfo(
+            job.getId(),
+            job.getJobName(),
+            job.getJobDescription(),
+            job.getAppId(),
+            job.getJobParams(),
+            job.getTimeExpressionType(),
+            job.getTimeExpression(),
+            job.getExecuteType(),
+            job.getProcessorType(),
+            job.getProcessorInfo(),
+            job.getMaxInstanceNum(),
+            job.getConcurrency(),
+            job.getInstanceTimeLimit(),
+            job.getInstanceRetryNum(),
+            job.getTaskRetryNum(),
+            job.getStatus(),
+            job.getNextTriggerTime(),
+            job.getMinCpuCores(),
+            job.getMinMemorySpace(),
+            job.getMinDiskSpace(),
+            job.getDesignatedWorkers(),
+            job.getMaxWorkerCount(),
+            job.getNotifyUserIds(),
+            copyOf(job.getGmtCreate()),
+            copyOf(job.getGmtUpdate()));
+    copy.setClaimServer(job.getClaimServer());
+    copy.setLeaseExpireTime(job.getLeaseExpireTime());
+    copy.setTriggerTolerance(job.getTriggerTolerance());
+    copy.setRetryBackoff(job.getRetryBackoff());
+    copy.setMaxRetryBackoff(job.getMaxRetryBackoff());
+    return copy;
+  }
+
+  private static InstanceInfo copyOf(InstanceInfo instance) {
+    return new InstanceInfo(
+        instance.getId(),
+        instance.getAppId(),
+        instance.getJobId(),
+        instance.getJobParams(),
+        instance.getType(),
+        instance.getWorkFlowId(),
+        instance.getStatus(),
+        instance.getResult(),
+        copyOf(instance.getTriggerTime()),
+        copyOf(instance.getCompletedTime()),
+        copyOf(instance.getLastReportTime()),
+        copyOf(instance.getExecuteTime()),
+        instance.getRetryTimes(),
+        instance.getTaskAddress(),
+        copyOf(instance.getGmtCreate()),
+        copyOf(instance.getGmtUpdate()));
+  }
+
+  private static Date copyOf(Date date) {
+    return date == null ? null : new Date(date.getTime());
+  }
+}
@@ -0,0 +1,356 @@
+package xyz.vopen.framework.neptune.core.persistence.adapter;
+
+import com.google.common.base.Preconditions;
+import xyz.vopen.framework.neptune.common.model.InstanceInfo;
+import xyz.vopen.framework.neptune.common.model.JobInfo;
+import xyz.vopen.framework.neptune.common.model.ServerInfo;
+import xyz.vopen.framework.neptune.core.metrics.Counter;
+import xyz.vopen.framework.neptune.core.metrics.Gauge;
+import xyz.vopen.framework.neptune.core.metrics.LatencyHistogram;
+import xyz.vopen.framework.neptune.core.metrics.MetricService;
+import xyz.vopen.framework.repository.mysql.MysqlRepository;
+import xyz.vopen.framework.repository.mysql.PoolStatistics;
+
+import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * {@link InstrumentedPersistenceAdapter} Decorator of {@link PersistenceAdapter} recording, for
+ * every method, the latency histogram of the calls, the number of rows they returned and the
+ * number of calls that failed. The metrics are published through the {@link MetricService} as
+ * {@code persistence.<method>.latency}, {@code persistence.<method>.rows} and {@code
+ * persistence.<method>.errors}; the MySQL adapter also publishes its connection pool under {@code
+ * persistence.pool}.
+ *
+ * <p>The MySQL repository returns from its writes before their statement completes; their latency
+ * and failures are recorded when the repository reports the completion, see {@link
+ * MysqlRepository#setCompletionListener}. For the batch writes of MySQL the completions are
+ * recorded per statement, under the method writing one row.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class InstrumentedPersistenceAdapter implements PersistenceAdapter {
+
+  private static final String METRIC_PREFIX = "persistence.";
+
+  private final @Nonnull PersistenceAdapter delegate;
+  private final Map<String, CallMetrics> callMetrics = new ConcurrentHashMap<>();
+  private volatile MetricService metricService;
+  /** Whether the delegate reports the completion of the writes it does not wait for. */
+  private final boolean completionReported;
+
+  private InstrumentedPersistenceAdapter(final @Nonnull PersistenceAdapter delegate) {
+    this.delegate = Preconditions.checkNotNull(delegate);
+    if (delegate instanceof DefaultPersistenceAdapter) {
+      ((DefaultPersistenceAdapter) delegate).setCompletionListener(this::recordCompletion);
+      this.completionReported = true;
+    } else {
+      this.completionReported = false;
+    }
+  }
+
+  public static InstrumentedPersistenceAdapter create(final PersistenceAdapter delegate) {
+    return new InstrumentedPersistenceAdapter(delegate);
+  }
+
+  public PersistenceAdapter getDelegate() {
+    return delegate;
+  }
+
+  /**
+   * Publishes the metrics through the given service, the metrics of the methods called later are
+   * published on their first call.
+   *
+   * @param metricService {@link MetricService} instance.
+   */
+  public void registerMetrics(@Nonnull MetricService metricService) {
+    this.metricService = Preconditions.checkNotNull(metricService);
+    callMetrics.forEach((method, metrics) -> metrics.register(metricService));
+
+    if (delegate instanceof DefaultPersistenceAdapter) {
+      PoolStatistics pool = ((DefaultPersistenceAdapter) delegate).getPoolStatistics();
+      registerPoolMetrics(metricService, pool);
+    }
+  }
+
+  private static void registerPoolMetrics(MetricService metricService, PoolStatistics pool) {
+    String prefix = METRIC_PREFIX + "pool.";
+    LatencyHistogram waitTime = new LatencyHistogram();
+    pool.setWaitTimeListener(waitTime::record);
+    metricService.addMetric(prefix + "wait", waitTime);
+    metricService.addMetric(prefix + "max-size", (Gauge<Integer>) pool::getMaxSize);
+    metricService.addMetric(prefix + "limit", (Gauge<Integer>) pool::getLimit);
+    metricService.addMetric(prefix + "active", (Gauge<Integer>) pool::getActive);
+    metricService.addMetric(prefix + "waiting", (Gauge<Integer>) pool::getWaiting);
+    metricService.addMetric(prefix + "acquisitions", (Gauge<Long>) pool::getAcquisitions);
+    metricService.addMetric(prefix + "failures", (Gauge<Long>) pool::getFailures);
+  }
+
+  @Override
+  public Optional<ServerInfo> queryServerByName(String serverName) {
+    return timed("queryServerByName", () -> delegate.queryServerByName(serverName));
+  }
+
+  @Override
+  public Optional<List<ServerInfo>> queryServers() {
+    return timed("queryServers", delegate::queryServers);
+  }
+
+  @Override
+  public void saveServerInfo(@Nonnull ServerInfo serverInfo) {
+    dispatched("saveServerInfo", () -> delegate.saveServerInfo(serverInfo));
+  }
+
+  @Override
+  public Optional<JobInfo> findJobById(long jobId) {
+    return timed("findJobById", () -> delegate.findJobById(jobId));
+  }
+
+  @Override
+  public Optional<List<JobInfo>> findJobByAppId(long appId) {
+    return timed("findJobByAppId", () -> delegate.findJobByAppId(appId));
+  }
+
+  @Override
+  public Optional<List<JobInfo>> findJobByAppIdAndStatus(long appId, int status) {
+    return timed(
+        "findJobByAppIdAndStatus", () -> delegate.findJobByAppIdAndStatus(appId, status));
+  }
+
+  @Override
+  public Optional<List<JobInfo>> findJobByAppIdAndName(long appId, String name) {
+    return timed("findJobByAppIdAndName", () -> delegate.findJobByAppIdAndName(appId, name));
+  }
+
+  @Override
+  public List<JobInfo> findJobPageByAppId(long appId, long afterId, int limit) {
+    return timed("findJobPageByAppId", () -> delegate.findJobPageByAppId(appId, afterId, limit));
+  }
+
+  @Override
+  public List<JobInfo> findJobPageByAppIdAndStatus(
+      long appId, int status, long afterId, int limit) {
+    return timed(
+        "findJobPageByAppIdAndStatus",
+        () -> delegate.findJobPageByAppIdAndStatus(appId, status, afterId, limit));
+  }
+
+  @Override
+  public List<JobInfo> claimJobs(long appId, String serverId, int limit, long leaseMillis) {
+    return timed("claimJobs", () -> delegate.claimJobs(appId, serverId, limit, leaseMillis));
+  }
+
+  @Override
+  public void renewJobLeases(String serverId, long leaseMillis) {
+    timedRun("renewJobLeases", () -> delegate.renewJobLeases(serverId, leaseMillis));
+  }
+
+  @Override
+  public void saveJobInfo(JobInfo jobInfo) {
+    dispatched("saveJobInfo", () -> delegate.saveJobInfo(jobInfo));
+  }
+
+  @Override
+  public void updateJobInfo(JobInfo jobInfo) {
+    dispatched("updateJobInfo", () -> delegate.updateJobInfo(jobInfo));
+  }
+
+  @Override
+  public long countByJobIdAndStatus(long jobId, List<Integer> status) {
+    return timed("countByJobIdAndStatus", () -> delegate.countByJobIdAndStatus(jobId, status));
+  }
+
+  @Override
+  public Optional<InstanceInfo> findByInstanceId(long instanceId) {
+    return timed("findByInstanceId", () -> delegate.findByInstanceId(instanceId));
+  }
+
+  @Override
+  public Optional<List<InstanceInfo>> findByJobIdAndStatus(long jobId, List<Integer> status) {
+    return timed("findByJobIdAndStatus", () -> delegate.findByJobIdAndStatus(jobId, status));
+  }
+
+  @Override
+  public Optional<List<InstanceInfo>> findInstancesByAppId(long appId) {
+    return timed("findInstancesByAppId", () -> delegate.findInstancesByAppId(appId));
+  }
+
+  @Override
+  public Optional<List<InstanceInfo>> findInstancesByAppIdAndStatus(long appId, int status) {
+    return timed(
+        "findInstancesByAppIdAndStatus",
+        () -> delegate.findInstancesByAppIdAndStatus(appId, status));
+  }
+
+  @Override
+  public Optional<List<InstanceInfo>> findInstanceStatusByAppId(long appId) {
+    return timed("findInstanceStatusByAppId", () -> delegate.findInstanceStatusByAppId(appId));
+  }
+
+  @Override
+  public List<InstanceInfo> findInstancePageByAppId(long appId, long afterId, int limit) {
+    return timed(
+        "findInstancePageByAppId", () -> delegate.findInstancePageByAppId(appId, afterId, limit));
+  }
+
+  @Override
+  public List<InstanceInfo> findInstanceStatusPageByAppId(long appId, long afterId, int limit) {
+    return timed(
+        "findInstanceStatusPageByAppId",
+        () -> delegate.findInstanceStatusPageByAppId(appId, afterId, limit));
+  }
+
+  @Override
+  public void saveInstanceInfo(InstanceInfo instanceInfo) {
+    dispatched("saveInstanceInfo", () -> delegate.saveInstanceInfo(instanceInfo));
+  }
+
+  @Override
+  public void saveInstanceInfos(Collection<InstanceInfo> instanceInfos) {
+    dispatched("saveInstanceInfos", () -> delegate.saveInstanceInfos(instanceInfos));
+  }
+
+  @Override
+  public void updateInstanceInfo(InstanceInfo instanceInfo) {
+    dispatched("updateInstanceInfo", () -> delegate.updateInstanceInfo(instanceInfo));
+  }
+
+  @Override
+  public void updateInstanceInfos(Collection<InstanceInfo> instanceInfos) {
+    dispatched("updateInstanceInfos", () -> delegate.updateInstanceInfos(instanceInfos));
+  }
+
+  @Override
+  public void updateInstanceRetryTimes(Map<Long, Integer> retryTimes) {
+    timedRun("updateInstanceRetryTimes", () -> delegate.updateInstanceRetryTimes(retryTimes));
+  }
+
+  @Override
+  public void updateInstanceStatuses(Collection<InstanceInfo> instanceInfos) {
+    timedRun("updateInstanceStatuses", () -> delegate.updateInstanceStatuses(instanceInfos));
+  }
+
+  @Override
+  public void deleteInstance(Long instanceIds) {
+    dispatched("deleteInstance", () -> delegate.deleteInstance(instanceIds));
+  }
+
+  @Override
+  public void ensureInstancePartitions(Date until) {
+    timedRun("ensureInstancePartitions", () -> delegate.ensureInstancePartitions(until));
+  }
+
+  @Override
+  public void purgeInstancesBefore(Date cutoff) {
+    timedRun("purgeInstancesBefore", () -> delegate.purgeInstancesBefore(cutoff));
+  }
+
+  @Override
+  public void close() throws Exception {
+    delegate.close();
+  }
+
+  // =====================  Instrumentation  =====================
+
+  private <T> T timed(String method, Supplier<T> call) {
+    CallMetrics metrics = callMetrics(method);
+    long start = System.nanoTime();
+    try {
+      T result = call.get();
+      metrics.rows.inc(rowsOf(result));
+      return result;
+    } catch (RuntimeException | Error e) {
+      metrics.errors.inc();
+      throw e;
+    } finally {
+      metrics.latency.record(System.nanoTime() - start);
+    }
+  }
+
+  private void timedRun(String method, Runnable call) {
+    timed(
+        method,
+        () -> {
+          call.run();
+          return null;
+        });
+  }
+
+  /**
+   * Runs a write the delegate may return from before it completes. The completion is recorded by
+   * {@link #recordCompletion} when the delegate reports it, only a failure to issue the write is
+   * recorded here.
+   */
+  private void dispatched(String method, Runnable call) {
+    if (!completionReported) {
+      timedRun(method, call);
+      return;
+    }
+    try {
+      call.run();
+    } catch (RuntimeException | Error e) {
+      callMetrics(method).errors.inc();
+      throw e;
+    }
+  }
+
+  private void recordCompletion(String method, long elapsedNanos, boolean succeeded) {
+    CallMetrics metrics = callMetrics(method);
+    metrics.latency.record(elapsedNanos);
+    if (!succeeded) {
+      metrics.errors.inc();
+    }
+  }
+
+  private CallMetrics callMetrics(String method) {
+    CallMetrics metrics = callMetrics.get(method);
+    if (metrics != null) {
+      return metrics;
+    }
+    return callMetrics.computeIfAbsent(
+        method,
+        name -> {
+          CallMetrics created = new CallMetrics(METRIC_PREFIX + name);
+          MetricService service = metricService;
+          if (service != null) {
+            created.register(service);
+          }
+          return created;
+        });
+  }
+
+  private static long rowsOf(Object result) {
+    if (result instanceof Optional) {
+      return ((Optional<?>) result).map(InstrumentedPersistenceAdapter::rowsOf).orElse(0L);
+    }
+    if (result instanceof Collection) {
+      return ((Collection<?>) result).size();
+    }
+    return result == null ? 0L : 1L;
+  }
+
+  /** Metrics of one method. */
+  private static final class CallMetrics {
+    final String name;
+    final LatencyHistogram latency = new LatencyHistogram();
+    final Counter rows = new Counter();
+    final Counter errors = new Counter();
+
+    CallMetrics(String name) {
+      this.name = name;
+    }
+
+    void register(MetricService metricService) {
+      metricService.addMetric(name + ".latency", latency);
+      metricService.addMetric(name + ".rows", rows);
+      metricService.addMetric(name + ".errors", errors);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package xyz.vopen.framework.neptune.core.persistence.adapter;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnull;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.ToLongFunction;
+
+/**
+ * {@link KeysetPageIterator} Iterates over a result set in fixed-size pages using keyset
+ * pagination: every page is queried with the id of the last row of the previous page, so a page
+ * costs the same index seek whatever its position. A page is only fetched when the caller asks for
+ * it, so at most one page is held in memory.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/29
+ */
+public final class KeysetPageIterator<T> implements Iterator<List<T>> {
+
+  /** Starting key, smaller than any id. */
+  public static final long FIRST_KEY = Long.MIN_VALUE;
+
+  private final @Nonnull PageQuery<T> query;
+  private final @Nonnull ToLongFunction<T> keyExtractor;
+  private final int pageSize;
+
+  private long lastKey = FIRST_KEY;
+  private List<T> nextPage;
+  private boolean exhausted;
+
+  private KeysetPageIterator(
+      final @Nonnull PageQuery<T> query,
+      final @Nonnull ToLongFunction<T> keyExtractor,
+      final int pageSize) {
+    Preconditions.checkArgument(pageSize > 0, "pageSize must be positive");
+    this.query = Preconditions.checkNotNull(query);
+    this.keyExtractor = Preconditions.checkNotNull(keyExtractor);
+    this.pageSize = pageSize;
+  }
+
+  public static <T> KeysetPageIterator<T> create(
+      final PageQuery<T> query, final ToLongFunction<T> keyExtractor, final int pageSize) {
+    return new KeysetPageIterator<>(query, keyExtractor, pageSize);
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (nextPage == null && !exhausted) {
+      List<T> page = query.query(lastKey, pageSize);
+      if (page == null || page.isEmpty()) {
+        exhausted = true;
+      } else {
+        // a short page is the last one, no need for another round trip
+        exhausted = page.size() < pageSize;
+        lastKey = keyExtractor.applyAsLong(page.get(page.size() - 1));
+        nextPage = page;
+      }
+    }
+    return nextPage != null;
+  }
+
+  @Override
+  public List<T> next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    List<T> page = nextPage;
+    nextPage = null;
+    return page;
+  }
+
+  /** Queries the page of rows with a key greater than {@code afterId}, in key order. */
+  @FunctionalInterface
+  public interface PageQuery<T> {
+    List<T> query(long afterId, int limit);
+  }
+}
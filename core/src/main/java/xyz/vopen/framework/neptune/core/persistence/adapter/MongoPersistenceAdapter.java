@@ -1,104 +1,195 @@
 package xyz.vopen.framework.neptune.core.persistence.adapter;
 
+import com.google.common.base.Preconditions;
 import xyz.vopen.framework.neptune.common.configuration.Configuration;
 import xyz.vopen.framework.neptune.common.model.InstanceInfo;
 import xyz.vopen.framework.neptune.common.model.JobInfo;
 import xyz.vopen.framework.neptune.common.model.ServerInfo;
+import xyz.vopen.framework.repository.mongo.MongoRepository;
 
 import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
- * {@link MongoPersistenceAdapter}
+ * {@link MongoPersistenceAdapter} Adapter {@link MongoRepository}.
  *
  * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
  * @version ${project.version} - 2020/10/13
  */
 public class MongoPersistenceAdapter implements PersistenceAdapter {
 
-  private MongoPersistenceAdapter(Configuration configuration) {}
+  private final @Nonnull MongoRepository mongoRepository;
+
+  private MongoPersistenceAdapter(final @Nonnull MongoRepository mongoRepository) {
+    this.mongoRepository = Preconditions.checkNotNull(mongoRepository);
+  }
 
   public static MongoPersistenceAdapter create(final @Nonnull Configuration configuration) {
-    return new MongoPersistenceAdapter(configuration);
+    Preconditions.checkNotNull(configuration);
+    return new MongoPersistenceAdapter(MongoRepository.createFromConfiguration(configuration));
+  }
+
+  /**
+   * Create the adapter on top of an existing repository, e.g. one backed by an in-process stand-in.
+   *
+   * @param mongoRepository {@link MongoRepository} instance.
+   * @return The adapter.
+   */
+  public static MongoPersistenceAdapter create(final @Nonnull MongoRepository mongoRepository) {
+    return new MongoPersistenceAdapter(mongoRepository);
   }
 
   @Override
   public Optional<ServerInfo> queryServerByName(String serverName) {
-    return Optional.empty();
+    return mongoRepository.queryServerByName(serverName);
   }
 
   @Override
   public Optional<List<ServerInfo>> queryServers() {
-    return Optional.empty();
+    return mongoRepository.queryServers();
   }
 
   @Override
-  public void saveServerInfo(@Nonnull ServerInfo serverInfo) {}
+  public void saveServerInfo(@Nonnull ServerInfo serverInfo) {
+    mongoRepository.saveServerInfo(serverInfo);
+  }
 
   @Override
   public Optional<JobInfo> findJobById(long jobId) {
-    return Optional.empty();
+    return mongoRepository.findJobById(jobId);
   }
 
   @Override
   public Optional<List<JobInfo>> findJobByAppId(long appId) {
-    return Optional.empty();
+    return mongoRepository.findJobByAppId(appId);
   }
 
   @Override
   public Optional<List<JobInfo>> findJobByAppIdAndStatus(long appId, int status) {
-    return Optional.empty();
+    return mongoRepository.findJobByAppIdAndStatus(appId, status);
   }
 
   @Override
   public Optional<List<JobInfo>> findJobByAppIdAndName(long appId, String name) {
-    return Optional.empty();
+    return mongoRepository.findJobByAppIdAndName(appId, name);
   }
 
   @Override
-  public void saveJobInfo(JobInfo jobInfo) {}
+  public List<JobInfo> findJobPageByAppId(long appId, long afterId, int limit) {
+    return mongoRepository.findJobPageByAppId(appId, afterId, limit);
+  }
 
   @Override
-  public void updateJobInfo(JobInfo jobInfo) {}
+  public List<JobInfo> findJobPageByAppIdAndStatus(
+      long appId, int status, long afterId, int limit) {
+    return mongoRepository.findJobPageByAppIdAndStatus(appId, status, afterId, limit);
+  }
+
+  @Override
+  public List<JobInfo> claimJobs(long appId, String serverId, int limit, long leaseMillis) {
+    return mongoRepository.claimJobs(appId, serverId, limit, leaseMillis);
+  }
+
+  @Override
+  public void renewJobLeases(String serverId, long leaseMillis) {
+    mongoRepository.renewJobLeases(serverId, leaseMillis);
+  }
+
+  @Override
+  public void saveJobInfo(JobInfo jobInfo) {
+    mongoRepository.saveJobInfo(jobInfo);
+  }
+
+  @Override
+  public void updateJobInfo(JobInfo jobInfo) {
+    mongoRepository.updateJobInfo(jobInfo);
+  }
 
   @Override
   public long countByJobIdAndStatus(long jobId, List<Integer> status) {
-    return 0;
+    return mongoRepository.countByJobIdAndStatus(jobId, status);
   }
 
   @Override
   public Optional<InstanceInfo> findByInstanceId(long instanceId) {
-    return Optional.empty();
+    return mongoRepository.findByInstanceId(instanceId);
   }
 
   @Override
   public Optional<List<InstanceInfo>> findByJobIdAndStatus(long jobId, List<Integer> status) {
-    return Optional.empty();
+    return mongoRepository.findByJobIdAndStatus(jobId, status);
   }
 
   @Override
   public Optional<List<InstanceInfo>> findInstancesByAppId(long appId) {
-    return Optional.empty();
+    return mongoRepository.findInstancesByAppId(appId);
   }
 
   @Override
   public Optional<List<InstanceInfo>> findInstancesByAppIdAndStatus(long appId, int status) {
-    return Optional.empty();
+    return mongoRepository.findInstancesByAppIdAndStatus(appId, status);
+  }
+
+  @Override
+  public Optional<List<InstanceInfo>> findInstanceStatusByAppId(long appId) {
+    return mongoRepository.findInstanceStatusByAppId(appId);
+  }
+
+  @Override
+  public List<InstanceInfo> findInstancePageByAppId(long appId, long afterId, int limit) {
+    return mongoRepository.findInstancePageByAppId(appId, afterId, limit);
+  }
+
+  @Override
+  public List<InstanceInfo> findInstanceStatusPageByAppId(long appId, long afterId, int limit) {
+    return mongoRepository.findInstanceStatusPageByAppId(appId, afterId, limit);
   }
 
   @Override
   public void saveInstanceInfo(InstanceInfo instanceInfo) {
+    mongoRepository.saveInstanceInfo(instanceInfo);
+  }
 
+  @Override
+  public void saveInstanceInfos(Collection<InstanceInfo> instanceInfos) {
+    mongoRepository.saveInstanceInfos(instanceInfos);
   }
 
   @Override
   public void updateInstanceInfo(InstanceInfo instanceInfo) {
+    mongoRepository.updateInstanceInfo(instanceInfo);
+  }
 
+  @Override
+  public void updateInstanceInfos(Collection<InstanceInfo> instanceInfos) {
+    mongoRepository.updateInstanceInfos(instanceInfos);
+  }
+
+  @Override
+  public void updateInstanceRetryTimes(Map<Long, Integer> retryTimes) {
+    mongoRepository.updateInstanceRetryTimes(retryTimes);
   }
 
   @Override
   public void deleteInstance(Long instanceIds) {
+    mongoRepository.deleteInstance(instanceIds);
+  }
+  @Override
+  public void ensureInstancePartitions(Date until) {
+    mongoRepository.ensureInstancePartitions(until);
+  }
 
+  @Override
+  public void purgeInstancesBefore(Date cutoff) {
+    mongoRepository.purgeInstancesBefore(cutoff);
+  }
+
+  @Override
+  public void close() {
+    mongoRepository.close();
   }
 }
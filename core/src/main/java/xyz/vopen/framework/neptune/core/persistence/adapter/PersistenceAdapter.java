@@ -5,7 +5,12 @@ import xyz.vopen.framework.neptune.common.model.JobInfo;
 import xyz.vopen.framework.neptune.common.model.ServerInfo;
 
 import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -14,7 +19,7 @@ import java.util.Optional;
  * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
  * @version ${project.version} - 2020/10/13
  */
-public interface PersistenceAdapter {
+public interface PersistenceAdapter extends AutoCloseable {
 
   /**
    * Returns the specifies server message through specifies the server name, allows null.
@@ -66,6 +71,59 @@ public interface PersistenceAdapter {
    */
   Optional<List<JobInfo>> findJobByAppIdAndName(long appId, String name);
 
+  /**
+   * Returns one keyset page of the job collection under server, ordered by job id.
+   *
+   * @param appId Represent the server id.
+   * @param afterId Only jobs with a greater id are returned, the last id of the previous page.
+   * @param limit Maximum size of the page.
+   * @return Job page, empty when there are no more jobs.
+   */
+  List<JobInfo> findJobPageByAppId(long appId, long afterId, int limit);
+
+  List<JobInfo> findJobPageByAppIdAndStatus(long appId, int status, long afterId, int limit);
+
+  /**
+   * Claims up to {@code limit} jobs under server for the given scheduler: new jobs, and running
+   * jobs whose lease expired. The claimed jobs are switched to running with the claiming server and the
+   * lease expiry recorded, a job is never handed to two concurrent claimers.
+   *
+   * @param appId Represent the server id.
+   * @param serverId Id of the claiming scheduler.
+   * @param limit Maximum number of jobs to claim.
+   * @param leaseMillis Duration of the lease.
+   * @return The claimed jobs, empty when there is nothing to claim.
+   */
+  List<JobInfo> claimJobs(long appId, String serverId, int limit, long leaseMillis);
+
+  /**
+   * Extends the lease of all the running jobs claimed by the scheduler.
+   *
+   * @param serverId Id of the claiming scheduler.
+   * @param leaseMillis Duration of the lease from now.
+   */
+  void renewJobLeases(String serverId, long leaseMillis);
+
+  /**
+   * Streams the job collection under server in pages of {@code pageSize}, a page is only queried
+   * when the iterator is advanced.
+   *
+   * @param appId Represent the server id.
+   * @param pageSize Size of a page.
+   * @return Iterator over the job pages.
+   */
+  default Iterator<List<JobInfo>> streamJobByAppId(long appId, int pageSize) {
+    return KeysetPageIterator.create(
+        (afterId, limit) -> findJobPageByAppId(appId, afterId, limit), JobInfo::getId, pageSize);
+  }
+
+  default Iterator<List<JobInfo>> streamJobByAppIdAndStatus(long appId, int status, int pageSize) {
+    return KeysetPageIterator.create(
+        (afterId, limit) -> findJobPageByAppIdAndStatus(appId, status, afterId, limit),
+        JobInfo::getId,
+        pageSize);
+  }
+
   /**
    * Save the job message.
    *
@@ -92,9 +150,130 @@ public interface PersistenceAdapter {
 
   Optional<List<InstanceInfo>> findInstancesByAppIdAndStatus(long appId, int status);
 
+  /**
+   * Returns the instances under the server for a status check. Implementations may populate only
+   * the status fields (id, appId, jobId, status, retryTimes, lastReportTime, gmtUpdate); every
+   * {@link #updateInstanceInfo(InstanceInfo)} writes only the non null fields, so such an instance
+   * can be written back.
+   *
+   * @param appId Represent the server id.
+   * @return Instance collection.
+   */
+  default Optional<List<InstanceInfo>> findInstanceStatusByAppId(long appId) {
+    return findInstancesByAppId(appId);
+  }
+
+  List<InstanceInfo> findInstancePageByAppId(long appId, long afterId, int limit);
+
+  /**
+   * Keyset page variant of {@link #findInstanceStatusByAppId(long)}.
+   *
+   * @param appId Represent the server id.
+   * @param afterId Only instances with a greater id are returned.
+   * @param limit Maximum size of the page.
+   * @return Instance page, empty when there are no more instances.
+   */
+  default List<InstanceInfo> findInstanceStatusPageByAppId(long appId, long afterId, int limit) {
+    return findInstancePageByAppId(appId, afterId, limit);
+  }
+
+  default Iterator<List<InstanceInfo>> streamInstanceByAppId(long appId, int pageSize) {
+    return KeysetPageIterator.create(
+        (afterId, limit) -> findInstancePageByAppId(appId, afterId, limit),
+        InstanceInfo::getId,
+        pageSize);
+  }
+
+  default Iterator<List<InstanceInfo>> streamInstanceStatusByAppId(long appId, int pageSize) {
+    return KeysetPageIterator.create(
+        (afterId, limit) -> findInstanceStatusPageByAppId(appId, afterId, limit),
+        InstanceInfo::getId,
+        pageSize);
+  }
+
   void saveInstanceInfo(InstanceInfo instanceInfo);
 
+  /**
+   * Save the instances, in one round trip where the storage supports it.
+   *
+   * @param instanceInfos {@link InstanceInfo} instances.
+   */
+  default void saveInstanceInfos(Collection<InstanceInfo> instanceInfos) {
+    instanceInfos.forEach(this::saveInstanceInfo);
+  }
+
   void updateInstanceInfo(InstanceInfo instanceInfo);
 
+  /**
+   * Update the instances, in one round trip where the storage supports it.
+   *
+   * @param instanceInfos {@link InstanceInfo} instances.
+   */
+  default void updateInstanceInfos(Collection<InstanceInfo> instanceInfos) {
+    instanceInfos.forEach(this::updateInstanceInfo);
+  }
+
+  /**
+   * Update the retry times of the instances, leaving their other fields untouched, in one round
+   * trip where the storage supports it.
+   *
+   * @param retryTimes Retry times by instance id.
+   */
+  default void updateInstanceRetryTimes(Map<Long, Integer> retryTimes) {
+    retryTimes.forEach(
+        (instanceId, times) ->
+            findByInstanceId(instanceId)
+                .ifPresent(
+                    instanceInfo -> {
+                      instanceInfo.setRetryTimes(times);
+                      updateInstanceInfo(instanceInfo);
+                    }));
+  }
+
+  /**
+   * Records the outcome of the instances: writes their status, completion time and result, leaving
+   * their other fields untouched, in one round trip where the storage supports it.
+   *
+   * @param instanceInfos The instances, only their id and outcome fields are read.
+   */
+  default void updateInstanceStatuses(Collection<InstanceInfo> instanceInfos) {
+    List<InstanceInfo> outcomes = new ArrayList<>(instanceInfos.size());
+    for (InstanceInfo instanceInfo : instanceInfos) {
+      outcomes.add(
+          InstanceInfo.builder()
+              .id(instanceInfo.getId())
+              .status(instanceInfo.getStatus())
+              .completedTime(instanceInfo.getCompletedTime())
+              .result(instanceInfo.getResult())
+              .build());
+    }
+    updateInstanceInfos(outcomes);
+  }
+
   void deleteInstance(Long instanceIds);
+
+  /**
+   * Prepares the storage of the instances created up to the given day, e.g. creates the daily
+   * partitions ahead of time.
+   *
+   * @param until Last day to prepare.
+   */
+  void ensureInstancePartitions(Date until);
+
+  /**
+   * Drops the history of the instances created before the given day, by whole partitions where the
+   * storage is partitioned.
+   *
+   * @param cutoff Instances created before this day are dropped.
+   */
+  void purgeInstancesBefore(Date cutoff);
+
+  /**
+   * Releases the resources of the storage, e.g. the connection pool or the log files. Invoked once
+   * on shutdown, after the services using the adapter stopped.
+   *
+   * @throws Exception Thrown when the resources could not be released.
+   */
+  @Override
+  default void close() throws Exception {}
 }
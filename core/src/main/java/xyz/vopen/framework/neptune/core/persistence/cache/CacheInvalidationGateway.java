@@ -0,0 +1,20 @@
+package xyz.vopen.framework.neptune.core.persistence.cache;
+
+import xyz.vopen.framework.neptune.rpc.RpcGateway;
+
+/**
+ * {@link CacheInvalidationGateway} rpc gateway used by the servers to tell each other that a cached
+ * job has changed.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/26
+ */
+public interface CacheInvalidationGateway extends RpcGateway {
+
+  /**
+   * Drops the specifies job from the local cache. Fire and forget, the sender does not wait.
+   *
+   * @param jobId of job.
+   */
+  void invalidateJob(long jobId);
+}
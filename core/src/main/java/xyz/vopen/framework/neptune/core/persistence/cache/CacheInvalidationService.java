@@ -0,0 +1,169 @@
+package xyz.vopen.framework.neptune.core.persistence.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import xyz.vopen.framework.neptune.common.concurrent.FutureUtil;
+import xyz.vopen.framework.neptune.common.configuration.Configuration;
+import xyz.vopen.framework.neptune.common.configuration.JobManagerOptions;
+import xyz.vopen.framework.neptune.common.model.ServerInfo;
+import xyz.vopen.framework.neptune.common.utils.HighAvailabilityServicesUtil;
+import xyz.vopen.framework.neptune.core.persistence.adapter.CachingPersistenceAdapter;
+import xyz.vopen.framework.neptune.rpc.RpcEndpoint;
+import xyz.vopen.framework.neptune.rpc.RpcService;
+import xyz.vopen.framework.neptune.rpc.RpcServiceUtils;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link CacheInvalidationService} Endpoint receiving job invalidation from the other servers, and
+ * broadcaster sending the local ones to every server registered in {@code server_info}.
+ *
+ * <p>The broadcast is best effort: a lost message only leaves a stale entry until it is evicted or
+ * rewritten, so failed connections are dropped and retried on the next broadcast. It runs in the
+ * main thread of the endpoint, off the writing thread, with the registered servers queried at most
+ * once per refresh interval; a server registered meanwhile misses the invalidation of that time.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/26
+ */
+public class CacheInvalidationService extends RpcEndpoint
+    implements CacheInvalidationGateway, InvalidationBroadcaster {
+  private static final Logger LOG = LoggerFactory.getLogger(CacheInvalidationService.class);
+
+  public static final String CACHE_INVALIDATION_SERVICE_NAME = "CacheInvalidationService";
+
+  /** Milliseconds the registered servers are reused for before being queried again. */
+  private static final long SERVERS_REFRESH_INTERVAL = 30_000L;
+
+  private final @Nonnull Configuration configuration;
+  private final @Nonnull CachingPersistenceAdapter cachingPersistenceAdapter;
+  private final String localAddress;
+  private final Map<String, CompletableFuture<CacheInvalidationGateway>> peerGateways;
+
+  /** Servers registered in {@code server_info}, only accessed from the main thread. */
+  private List<ServerInfo> servers = Collections.emptyList();
+
+  private long serversQueriedAt = Long.MIN_VALUE / 2;
+
+  private CacheInvalidationService(
+      final @Nonnull Configuration configuration,
+      final @Nonnull RpcService rpcService,
+      final @Nonnull CachingPersistenceAdapter cachingPersistenceAdapter) {
+    super(rpcService, CACHE_INVALIDATION_SERVICE_NAME);
+    this.configuration = configuration;
+    this.cachingPersistenceAdapter = cachingPersistenceAdapter;
+    this.localAddress =
+        configuration.getString(JobManagerOptions.ADDRESS)
+            + ":"
+            + configuration.getInteger(JobManagerOptions.PORT);
+    this.peerGateways = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Create the service, register it as broadcaster of the adapter and start the endpoint.
+   *
+   * @param configuration The configuration of the server.
+   * @param rpcService The rpcService running CacheInvalidationService.
+   * @param cachingPersistenceAdapter The adapter holding the job cache.
+   * @return The started service.
+   */
+  public static CacheInvalidationService createAndStart(
+      final Configuration configuration,
+      final RpcService rpcService,
+      final CachingPersistenceAdapter cachingPersistenceAdapter) {
+    CacheInvalidationService service =
+        new CacheInvalidationService(configuration, rpcService, cachingPersistenceAdapter);
+    cachingPersistenceAdapter.setInvalidationBroadcaster(service);
+    service.start();
+    return service;
+  }
+
+  @Override
+  public void invalidateJob(long jobId) {
+    cachingPersistenceAdapter.invalidateLocal(jobId);
+  }
+
+  /** Returns at once, the servers are notified from the main thread of the endpoint. */
+  @Override
+  public void broadcastJobInvalidation(long jobId) {
+    runAsync(() -> notifyServers(jobId));
+  }
+
+  @Override
+  protected CompletableFuture<Void> onStop() {
+    cachingPersistenceAdapter.setInvalidationBroadcaster(InvalidationBroadcaster.NO_OP);
+    peerGateways.clear();
+    return super.onStop();
+  }
+
+  // =====================  Internal  =====================
+
+  private void notifyServers(long jobId) {
+    for (ServerInfo server : getServers()) {
+      String address = server.getAddress();
+      if (address == null || address.equals(localAddress)) {
+        continue;
+      }
+      connect(address)
+          .whenComplete(
+              (gateway, throwable) -> {
+                if (throwable != null) {
+                  LOG.warn(
+                      "[CacheInvalidationService] Could not notify {} of job {} change.",
+                      address,
+                      jobId,
+                      throwable);
+                  return;
+                }
+                gateway.invalidateJob(jobId);
+              });
+    }
+  }
+
+  /** Returns the registered servers, queried again after the refresh interval. */
+  private List<ServerInfo> getServers() {
+    long now = System.currentTimeMillis();
+    if (now - serversQueriedAt >= SERVERS_REFRESH_INTERVAL) {
+      try {
+        servers = cachingPersistenceAdapter.queryServers().orElse(Collections.emptyList());
+        serversQueriedAt = now;
+      } catch (Exception e) {
+        LOG.warn("[CacheInvalidationService] Could not query the servers.", e);
+      }
+    }
+    return servers;
+  }
+
+  private CompletableFuture<CacheInvalidationGateway> connect(String address) {
+    CompletableFuture<CacheInvalidationGateway> gatewayFuture =
+        peerGateways.computeIfAbsent(
+            address,
+            key -> {
+              try {
+                int index = key.lastIndexOf(':');
+                String rpcUrl =
+                    RpcServiceUtils.getRpcUrl(
+                        key.substring(0, index),
+                        Integer.parseInt(key.substring(index + 1)),
+                        CACHE_INVALIDATION_SERVICE_NAME,
+                        HighAvailabilityServicesUtil.AddressResolution.NO_ADDRESS_RESOLUTION,
+                        configuration);
+                return getRpcService().connect(rpcUrl, CacheInvalidationGateway.class);
+              } catch (Exception e) {
+                return FutureUtil.completedExceptionally(e);
+              }
+            });
+    gatewayFuture.whenComplete(
+        (gateway, throwable) -> {
+          if (throwable != null) {
+            peerGateways.remove(address, gatewayFuture);
+          }
+        });
+    return gatewayFuture;
+  }
+}
@@ -0,0 +1,99 @@
+package xyz.vopen.framework.neptune.core.persistence.cache;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * {@link FrequencySketch} A 4-bit count-min sketch used as the TinyLFU admission filter. Each long
+ * word holds sixteen 4-bit counters, every key touches four counters and the estimate is the
+ * minimum of them. Counters are halved once the number of increments reaches ten times the
+ * capacity, so the sketch forgets old popularity.
+ *
+ * <p>Not thread safe, callers must guard access.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/26
+ */
+class FrequencySketch {
+
+  private static final long[] SEEDS = {
+    0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+  };
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final long ONE_MASK = 0x1111111111111111L;
+
+  private final long[] table;
+  private final int tableMask;
+  private final int sampleSize;
+  private int size;
+
+  FrequencySketch(int maximumSize) {
+    Preconditions.checkArgument(maximumSize > 0, "maximumSize must be positive");
+    int length = ceilingPowerOfTwo(Math.max(maximumSize, 16));
+    this.table = new long[length];
+    this.tableMask = length - 1;
+    this.sampleSize = 10 * maximumSize;
+  }
+
+  /** Returns the estimated number of occurrences of the key, at most 15. */
+  int frequency(long key) {
+    int hash = spread(key);
+    int start = (hash & 3) << 2;
+    int frequency = Integer.MAX_VALUE;
+    for (int i = 0; i < 4; i++) {
+      int index = indexOf(hash, i);
+      int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  /** Increments the popularity of the key if it does not exceed the maximum (15). */
+  void increment(long key) {
+    int hash = spread(key);
+    int start = (hash & 3) << 2;
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexOf(hash, i), start + i);
+    }
+    if (added && ++size == sampleSize) {
+      reset();
+    }
+  }
+
+  private boolean incrementAt(int index, int counter) {
+    int offset = counter << 2;
+    long mask = 0xfL << offset;
+    if ((table[index] & mask) != mask) {
+      table[index] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  /** Halves every counter, keeping the relative order of popular keys. */
+  private void reset() {
+    int odd = 0;
+    for (int i = 0; i < table.length; i++) {
+      odd += Long.bitCount(table[i] & ONE_MASK);
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    size = (size >>> 1) - (odd >>> 2);
+  }
+
+  private int indexOf(int hash, int i) {
+    long h = (hash + SEEDS[i]) * SEEDS[i];
+    h += h >>> 32;
+    return ((int) h) & tableMask;
+  }
+
+  private static int spread(long key) {
+    int x = (int) (key ^ (key >>> 32));
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    return (x >>> 16) ^ x;
+  }
+
+  private static int ceilingPowerOfTwo(int x) {
+    return 1 << -Integer.numberOfLeadingZeros(x - 1);
+  }
+}
@@ -0,0 +1,20 @@
+package xyz.vopen.framework.neptune.core.persistence.cache;
+
+/**
+ * {@link InvalidationBroadcaster} Propagates local job invalidation to the other servers.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/26
+ */
+@FunctionalInterface
+public interface InvalidationBroadcaster {
+
+  InvalidationBroadcaster NO_OP = jobId -> {};
+
+  /**
+   * Notify the other servers that the specifies job has changed.
+   *
+   * @param jobId of job.
+   */
+  void broadcastJobInvalidation(long jobId);
+}
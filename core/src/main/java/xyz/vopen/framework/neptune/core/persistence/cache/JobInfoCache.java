@@ -0,0 +1,203 @@
+package xyz.vopen.framework.neptune.core.persistence.cache;
+
+import com.google.common.base.Preconditions;
+import xyz.vopen.framework.neptune.common.model.JobInfo;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link JobInfoCache} Size bounded {@link JobInfo} cache keyed by job id, using the W-TinyLFU
+ * policy: new entries land in a small LRU window, entries evicted from the window compete with the
+ * probation victim of the main SLRU region, and the {@link FrequencySketch} decides which one is
+ * kept.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/26
+ */
+public class JobInfoCache {
+
+  private final int maximumSize;
+  private final int windowCapacity;
+  private final int protectedCapacity;
+
+  private final LinkedHashMap<Long, JobInfo> window;
+  private final LinkedHashMap<Long, JobInfo> probation;
+  private final LinkedHashMap<Long, JobInfo> protectedSegment;
+  private final FrequencySketch sketch;
+
+  /** Bumped on every invalidation, guards against caching a value loaded before it. */
+  private long generation;
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+
+  public JobInfoCache(int maximumSize) {
+    Preconditions.checkArgument(maximumSize > 0, "maximumSize must be positive");
+    this.maximumSize = maximumSize;
+    this.windowCapacity = Math.max(1, maximumSize / 100);
+    int mainCapacity = Math.max(1, maximumSize - windowCapacity);
+    this.protectedCapacity = (int) (mainCapacity * 0.8d);
+    this.window = new LinkedHashMap<>(16, 0.75f, true);
+    this.probation = new LinkedHashMap<>(16, 0.75f, true);
+    this.protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    this.sketch = new FrequencySketch(maximumSize);
+  }
+
+  /**
+   * Returns the cached job, or null when the job is not cached. Records a hit or a miss.
+   *
+   * @param jobId of job.
+   * @return The cached job or null.
+   */
+  @Nullable
+  public synchronized JobInfo getIfPresent(long jobId) {
+    Long key = jobId;
+    sketch.increment(jobId);
+
+    JobInfo jobInfo = window.get(key);
+    if (jobInfo == null) {
+      jobInfo = protectedSegment.get(key);
+    }
+    if (jobInfo == null) {
+      jobInfo = probation.remove(key);
+      if (jobInfo != null) {
+        promote(key, jobInfo);
+      }
+    }
+
+    if (jobInfo == null) {
+      missCount.increment();
+    } else {
+      hitCount.increment();
+    }
+    return jobInfo;
+  }
+
+  /**
+   * Returns the current invalidation generation, to be passed to {@link #put(long, JobInfo, long)}
+   * after the job has been loaded.
+   */
+  public synchronized long generation() {
+    return generation;
+  }
+
+  /**
+   * Caches the loaded job unless an invalidation happened since {@code loadGeneration} was read.
+   *
+   * @param jobId of job.
+   * @param jobInfo loaded job.
+   * @param loadGeneration generation read before loading.
+   */
+  public synchronized void put(long jobId, @Nonnull JobInfo jobInfo, long loadGeneration) {
+    if (loadGeneration != generation) {
+      return;
+    }
+    Long key = jobId;
+    if (window.containsKey(key)) {
+      window.put(key, jobInfo);
+    } else if (protectedSegment.containsKey(key)) {
+      protectedSegment.put(key, jobInfo);
+    } else if (probation.containsKey(key)) {
+      probation.put(key, jobInfo);
+    } else {
+      window.put(key, jobInfo);
+      if (window.size() > windowCapacity) {
+        evictFromWindow();
+      }
+    }
+  }
+
+  /**
+   * Removes the specifies job from the cache.
+   *
+   * @param jobId of job.
+   */
+  public synchronized void invalidate(long jobId) {
+    Long key = jobId;
+    generation++;
+    if (window.remove(key) == null && protectedSegment.remove(key) == null) {
+      probation.remove(key);
+    }
+  }
+
+  /** Removes all cached jobs. */
+  public synchronized void invalidateAll() {
+    generation++;
+    window.clear();
+    probation.clear();
+    protectedSegment.clear();
+  }
+
+  public synchronized int size() {
+    return window.size() + probation.size() + protectedSegment.size();
+  }
+
+  public int getMaximumSize() {
+    return maximumSize;
+  }
+
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  public long getEvictionCount() {
+    return evictionCount.sum();
+  }
+
+  public double hitRate() {
+    long hits = hitCount.sum();
+    long requests = hits + missCount.sum();
+    return requests == 0 ? 1.0d : (double) hits / requests;
+  }
+
+  // =====================  Eviction policy  =====================
+
+  private void promote(Long key, JobInfo jobInfo) {
+    protectedSegment.put(key, jobInfo);
+    if (protectedSegment.size() > protectedCapacity) {
+      Map.Entry<Long, JobInfo> demoted = removeEldest(protectedSegment);
+      probation.put(demoted.getKey(), demoted.getValue());
+    }
+  }
+
+  private void evictFromWindow() {
+    Map.Entry<Long, JobInfo> candidate = removeEldest(window);
+    if (window.size() + probation.size() + protectedSegment.size() < maximumSize) {
+      probation.put(candidate.getKey(), candidate.getValue());
+      return;
+    }
+
+    Map.Entry<Long, JobInfo> victim =
+        probation.isEmpty() ? null : probation.entrySet().iterator().next();
+    if (victim == null
+        || sketch.frequency(candidate.getKey()) > sketch.frequency(victim.getKey())) {
+      if (victim != null) {
+        probation.remove(victim.getKey());
+      } else {
+        removeEldest(protectedSegment);
+      }
+      probation.put(candidate.getKey(), candidate.getValue());
+    }
+    evictionCount.increment();
+  }
+
+  private static Map.Entry<Long, JobInfo> removeEldest(LinkedHashMap<Long, JobInfo> segment) {
+    Iterator<Map.Entry<Long, JobInfo>> iterator = segment.entrySet().iterator();
+    Map.Entry<Long, JobInfo> eldest = iterator.next();
+    Map.Entry<Long, JobInfo> copy =
+        new AbstractMap.SimpleImmutableEntry<>(eldest.getKey(), eldest.getValue());
+    iterator.remove();
+    return copy;
+  }
+}
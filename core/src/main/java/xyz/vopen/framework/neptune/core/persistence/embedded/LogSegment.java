@@ -0,0 +1,271 @@
+package xyz.vopen.framework.neptune.core.persistence.embedded;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * {@link LogSegment} One fixed size, memory-mapped file of the {@link MutationLog}.
+ *
+ * <p>Record layout, big endian:
+ *
+ * <pre>
+ * int   length   total record length, header included. 0 marks the end of the written data
+ * int   crc      CRC32 of type, key and payload
+ * byte  type     see {@link MutationLog}
+ * long  key      id of the entity
+ * byte[] payload encoded by {@link RecordCodec}
+ * </pre>
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/27
+ */
+final class LogSegment {
+  private static final Logger LOG = LoggerFactory.getLogger(LogSegment.class);
+
+  static final int HEADER_SIZE = 4 + 4 + 1 + 8;
+
+  private static final String FILE_PREFIX = "segment-";
+  private static final String FILE_SUFFIX = ".log";
+
+  /** Unmaps a segment on close, null if the JVM offers no way to before its garbage collection. */
+  private static final @Nullable Unmapper UNMAPPER = unmapper();
+
+  private final int id;
+  private final File file;
+  private final FileChannel channel;
+  private final MappedByteBuffer buffer;
+  private final int capacity;
+
+  /** Next write offset, also the number of written bytes. */
+  private int position;
+  /** Bytes of records still referenced by the index. */
+  private long liveBytes;
+
+  private boolean unmapped;
+
+  private LogSegment(int id, File file, int capacity) throws IOException {
+    this.id = id;
+    this.file = file;
+    this.capacity = capacity;
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+    if (randomAccessFile.length() < capacity) {
+      randomAccessFile.setLength(capacity);
+    }
+    this.channel = randomAccessFile.getChannel();
+    this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+  }
+
+  static LogSegment open(File directory, int id, int capacity) throws IOException {
+    return new LogSegment(id, new File(directory, fileName(id)), capacity);
+  }
+
+  static String fileName(int id) {
+    return String.format("%s%010d%s", FILE_PREFIX, id, FILE_SUFFIX);
+  }
+
+  /** Returns the segment id of a segment file name, or -1 if the file is not a segment. */
+  static int parseId(String fileName) {
+    if (!fileName.startsWith(FILE_PREFIX) || !fileName.endsWith(FILE_SUFFIX)) {
+      return -1;
+    }
+    try {
+      return Integer.parseInt(
+          fileName.substring(FILE_PREFIX.length(), fileName.length() - FILE_SUFFIX.length()));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Appends a record.
+   *
+   * @return The offset of the record, or -1 if the segment has no room left.
+   */
+  int append(byte type, long key, ByteBuffer payload) {
+    int length = HEADER_SIZE + payload.remaining();
+    // keep room for the 0 length terminator
+    if (position + length + 4 > capacity) {
+      return -1;
+    }
+
+    CRC32 crc = new CRC32();
+    crc.update(type);
+    updateLong(crc, key);
+    crc.update(payload.duplicate());
+
+    int offset = position;
+    ByteBuffer target = buffer.duplicate();
+    target.position(offset + 4);
+    target.putInt((int) crc.getValue()).put(type).putLong(key).put(payload);
+    // length last: a torn write leaves either 0 or a record whose crc does not match
+    buffer.putInt(offset, length);
+    position = offset + length;
+    return offset;
+  }
+
+  /**
+   * Reads the record at the given offset.
+   *
+   * @return A view of the record, positioned at the payload, or null if there is no valid record.
+   */
+  Record read(int offset) {
+    if (offset + HEADER_SIZE > capacity) {
+      return null;
+    }
+    int length = buffer.getInt(offset);
+    if (length < HEADER_SIZE || offset + length > capacity) {
+      return null;
+    }
+
+    ByteBuffer view = buffer.duplicate();
+    view.position(offset + 4);
+    view.limit(offset + length);
+    int crcValue = view.getInt();
+    byte type = view.get();
+    long key = view.getLong();
+    ByteBuffer payload = view.slice();
+
+    CRC32 crc = new CRC32();
+    crc.update(type);
+    updateLong(crc, key);
+    crc.update(payload.duplicate());
+    if ((int) crc.getValue() != crcValue) {
+      return null;
+    }
+    return new Record(offset, length, type, key, payload);
+  }
+
+  /** Returns the length of the record at the given offset, without validating it. */
+  int lengthAt(int offset) {
+    return buffer.getInt(offset);
+  }
+
+  /** Positions the writer after the last valid record, returns that position. */
+  int recover() {
+    int offset = 0;
+    Record record;
+    while ((record = read(offset)) != null) {
+      offset += record.length;
+    }
+    position = offset;
+    // clear a possibly torn record so that later appends are not mistaken for it
+    if (position + 4 <= capacity) {
+      buffer.putInt(position, 0);
+    }
+    return position;
+  }
+
+  void flush() {
+    buffer.force();
+  }
+
+  /** Closes the file and unmaps the buffer, the segment must not be read or written after. */
+  void close() throws IOException {
+    channel.close();
+    if (UNMAPPER != null && !unmapped) {
+      unmapped = true;
+      try {
+        UNMAPPER.unmap(buffer);
+      } catch (ReflectiveOperationException e) {
+        LOG.warn("[LogSegment] Could not unmap log segment {}.", file, e);
+      }
+    }
+  }
+
+  void delete() throws IOException {
+    close();
+    if (!file.delete() && file.exists()) {
+      throw new IOException("Could not delete log segment " + file);
+    }
+  }
+
+  int getId() {
+    return id;
+  }
+
+  int getPosition() {
+    return position;
+  }
+
+  long getLiveBytes() {
+    return liveBytes;
+  }
+
+  void addLiveBytes(long delta) {
+    liveBytes += delta;
+  }
+
+  /** Resolves the cleaner of the mapped buffers, by {@code Unsafe} since Java 9. */
+  @Nullable
+  private static Unmapper unmapper() {
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      try {
+        Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+        theUnsafe.setAccessible(true);
+        Object unsafe = theUnsafe.get(null);
+        return buffer -> invoke(invokeCleaner, unsafe, buffer);
+      } catch (NoSuchMethodException e) {
+        Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+        Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+        return buffer -> invoke(clean, invoke(cleaner, buffer));
+      }
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      LOG.warn("[LogSegment] Log segments are unmapped by the garbage collector only.", e);
+      return null;
+    }
+  }
+
+  private static Object invoke(Method method, Object target, Object... args)
+      throws ReflectiveOperationException {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private static void updateLong(CRC32 crc, long value) {
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      crc.update((int) (value >>> shift));
+    }
+  }
+
+  @FunctionalInterface
+  private interface Unmapper {
+    void unmap(MappedByteBuffer buffer) throws ReflectiveOperationException;
+  }
+
+  /** A record read back from a segment. */
+  static final class Record {
+    final int offset;
+    final int length;
+    final byte type;
+    final long key;
+    final ByteBuffer payload;
+
+    Record(int offset, int length, byte type, long key, ByteBuffer payload) {
+      this.offset = offset;
+      this.length = length;
+      this.type = type;
+      this.key = key;
+      this.payload = payload;
+    }
+  }
+}
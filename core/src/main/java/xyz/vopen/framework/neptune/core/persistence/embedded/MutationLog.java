@@ -0,0 +1,419 @@
+package xyz.vopen.framework.neptune.core.persistence.embedded;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import xyz.vopen.framework.neptune.common.utils.collection.LongLongHashMap;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * {@link MutationLog} Segmented append-only log of entity mutations with an in-memory index of the
+ * latest record of every key.
+ *
+ * <p>Every write appends a full record to the active segment and repoints the index, the previous
+ * record becomes garbage. {@link #compact(double)} rewrites the live records of mostly-garbage
+ * segments to the head of the log and deletes them. On open the segments are replayed in order to
+ * rebuild the index; replay of a segment stops at the first torn or corrupted record.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/27
+ */
+public class MutationLog implements AutoCloseable {
+  private static final Logger LOG = LoggerFactory.getLogger(MutationLog.class);
+
+  public static final byte TYPE_JOB = 1;
+  public static final byte TYPE_INSTANCE = 2;
+  public static final byte TYPE_SERVER = 3;
+  public static final byte TYPE_INSTANCE_DELETE = 4;
+
+  private static final long NO_LOCATION = -1L;
+
+  private final File directory;
+  private final int segmentSize;
+  private final boolean syncWrite;
+
+  private final TreeMap<Integer, LogSegment> segments = new TreeMap<>();
+  private final LongLongHashMap jobIndex = new LongLongHashMap(1024, NO_LOCATION);
+  private final LongLongHashMap instanceIndex = new LongLongHashMap(1024, NO_LOCATION);
+  private final LongLongHashMap serverIndex = new LongLongHashMap(16, NO_LOCATION);
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  /** Null once the log is closed, its segments are unmapped and must not be touched. */
+  private LogSegment activeSegment;
+  private ByteBuffer scratch = ByteBuffer.allocate(4096);
+
+  private MutationLog(File directory, int segmentSize, boolean syncWrite) {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.syncWrite = syncWrite;
+  }
+
+  /**
+   * Opens the log stored in the given directory, replaying the existing segments.
+   *
+   * @param directory The directory of the segment files, created if missing.
+   * @param segmentSize Size in bytes of a segment file.
+   * @param syncWrite Whether every append is forced to the storage device.
+   * @return The opened log.
+   * @throws IOException Thrown when the segments could not be opened.
+   */
+  public static MutationLog open(File directory, int segmentSize, boolean syncWrite)
+      throws IOException {
+    Preconditions.checkArgument(segmentSize > LogSegment.HEADER_SIZE * 2, "segmentSize too small");
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Could not create log directory " + directory);
+    }
+    MutationLog log = new MutationLog(directory, segmentSize, syncWrite);
+    log.recover();
+    return log;
+  }
+
+  // =====================  Write path  =====================
+
+  public <T> void append(byte type, long key, T entity, EntityWriter<T> writer) {
+    lock.writeLock().lock();
+    try {
+      ByteBuffer payload = encode(entity, writer);
+      long location = appendRecord(type, key, payload);
+      int length = LogSegment.HEADER_SIZE + payload.limit();
+      repoint(indexOf(type), key, location, length);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void deleteInstance(long instanceId) {
+    lock.writeLock().lock();
+    try {
+      if (instanceIndex.containsKey(instanceId)) {
+        tombstone(instanceId);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Deletes every live instance matching the filter. The instances are selected under the read
+   * lock, an instance rewritten in the meantime is kept.
+   *
+   * @return The deleted instances, as selected.
+   */
+  public <T> List<T> deleteInstancesIf(Function<ByteBuffer, T> reader, Predicate<T> filter) {
+    LongLongHashMap expired = new LongLongHashMap(64, NO_LOCATION);
+    Map<Long, T> expiredInstances = new HashMap<>();
+    lock.readLock().lock();
+    try {
+      instanceIndex.forEach(
+          (key, location) -> {
+            T instance = readAt(location, reader);
+            if (filter.test(instance)) {
+              expired.put(key, location);
+              expiredInstances.put(key, instance);
+            }
+          });
+    } finally {
+      lock.readLock().unlock();
+    }
+    if (expired.size() == 0) {
+      return Collections.emptyList();
+    }
+
+    List<T> deleted = new ArrayList<>(expired.size());
+    lock.writeLock().lock();
+    try {
+      expired.forEach(
+          (key, location) -> {
+            if (instanceIndex.get(key) == location) {
+              tombstone(key);
+              deleted.add(expiredInstances.get(key));
+            }
+          });
+    } finally {
+      lock.writeLock().unlock();
+    }
+    return deleted;
+  }
+
+  // =====================  Read path  =====================
+
+  @Nullable
+  public <T> T get(byte type, long key, Function<ByteBuffer, T> reader) {
+    lock.readLock().lock();
+    try {
+      long location = indexOf(type).get(key);
+      return location == NO_LOCATION ? null : readAt(location, reader);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Decodes every live entity of the given type, in no particular order. */
+  public <T> void forEach(byte type, Function<ByteBuffer, T> reader, Consumer<T> consumer) {
+    List<T> entities = new ArrayList<>();
+    lock.readLock().lock();
+    try {
+      indexOf(type).forEach((key, location) -> entities.add(readAt(location, reader)));
+    } finally {
+      lock.readLock().unlock();
+    }
+    entities.forEach(consumer);
+  }
+
+  public int size(byte type) {
+    lock.readLock().lock();
+    try {
+      return indexOf(type).size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  // =====================  Compaction  =====================
+
+  /**
+   * Rewrites the live records of every sealed segment whose live ratio is below the threshold,
+   * then deletes the segment. Each segment is compacted under its own lock acquisition so writers
+   * are only blocked for the copy of one segment.
+   *
+   * @param liveRatioThreshold Segments with less live bytes than this ratio are compacted.
+   * @return The number of deleted segments.
+   */
+  public int compact(double liveRatioThreshold) {
+    int compacted = 0;
+    for (Integer segmentId : sealedSegmentIds()) {
+      lock.writeLock().lock();
+      try {
+        LogSegment segment = segments.get(segmentId);
+        if (segment == null
+            || segment == activeSegment
+            || segment.getLiveBytes() >= liveRatioThreshold * segment.getPosition()) {
+          continue;
+        }
+        compactSegment(segment);
+        compacted++;
+      } catch (IOException e) {
+        LOG.warn("[MutationLog] Compaction of segment {} failed.", segmentId, e);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+    return compacted;
+  }
+
+  private void compactSegment(LogSegment segment) throws IOException {
+    boolean oldest = segments.firstKey() == segment.getId();
+    int offset = 0;
+    LogSegment.Record record;
+    while (offset < segment.getPosition() && (record = segment.read(offset)) != null) {
+      offset += record.length;
+      if (record.type == TYPE_INSTANCE_DELETE) {
+        // a tombstone still hides the records of the older segments
+        if (!oldest && !instanceIndex.containsKey(record.key)) {
+          appendRecord(record.type, record.key, record.payload.duplicate());
+        }
+        continue;
+      }
+      LongLongHashMap index = indexOf(record.type);
+      if (index.get(record.key) != location(segment.getId(), record.offset)) {
+        continue;
+      }
+      long location = appendRecord(record.type, record.key, record.payload.duplicate());
+      repoint(index, record.key, location, record.length);
+    }
+
+    activeSegment.flush();
+    segments.remove(segment.getId());
+    segment.delete();
+    LOG.info("[MutationLog] Compacted log segment {}.", segment.getId());
+  }
+
+  private List<Integer> sealedSegmentIds() {
+    lock.readLock().lock();
+    try {
+      if (activeSegment == null) {
+        return Collections.emptyList();
+      }
+      List<Integer> ids = new ArrayList<>(segments.keySet());
+      ids.remove(Integer.valueOf(activeSegment.getId()));
+      return ids;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  // =====================  Recovery  =====================
+
+  private void recover() throws IOException {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        int id = LogSegment.parseId(file.getName());
+        if (id >= 0) {
+          segments.put(id, LogSegment.open(directory, id, segmentSize));
+        }
+      }
+    }
+
+    for (LogSegment segment : segments.values()) {
+      int end = segment.recover();
+      int offset = 0;
+      while (offset < end) {
+        LogSegment.Record record = segment.read(offset);
+        offset += record.length;
+        if (record.type == TYPE_INSTANCE_DELETE) {
+          releaseLocation(instanceIndex.remove(record.key));
+        } else {
+          long location = location(segment.getId(), record.offset);
+          repoint(indexOf(record.type), record.key, location, record.length);
+        }
+      }
+    }
+
+    if (segments.isEmpty()) {
+      activeSegment = LogSegment.open(directory, 0, segmentSize);
+      segments.put(0, activeSegment);
+    } else {
+      activeSegment = segments.lastEntry().getValue();
+    }
+    LOG.info(
+        "[MutationLog] Recovered {} segments: {} jobs, {} instances, {} servers.",
+        segments.size(),
+        jobIndex.size(),
+        instanceIndex.size(),
+        serverIndex.size());
+  }
+
+  // =====================  Internal  =====================
+
+  private <T> ByteBuffer encode(T entity, EntityWriter<T> writer) {
+    while (true) {
+      scratch.clear();
+      try {
+        writer.write(scratch, entity);
+        scratch.flip();
+        return scratch;
+      } catch (BufferOverflowException e) {
+        Preconditions.checkState(
+            scratch.capacity() < segmentSize, "Record larger than the log segment size");
+        scratch = ByteBuffer.allocate(scratch.capacity() << 1);
+      }
+    }
+  }
+
+  private long appendRecord(byte type, long key, ByteBuffer payload) {
+    Preconditions.checkState(activeSegment != null, "The mutation log is closed");
+    int offset = activeSegment.append(type, key, payload);
+    if (offset < 0) {
+      roll();
+      offset = activeSegment.append(type, key, payload);
+      Preconditions.checkState(offset >= 0, "Record larger than the log segment size");
+    }
+    if (syncWrite) {
+      activeSegment.flush();
+    }
+    return location(activeSegment.getId(), offset);
+  }
+
+  private void tombstone(long instanceId) {
+    appendRecord(TYPE_INSTANCE_DELETE, instanceId, ByteBuffer.allocate(0));
+    releaseLocation(instanceIndex.remove(instanceId));
+  }
+
+  private void roll() {
+    activeSegment.flush();
+    int nextId = activeSegment.getId() + 1;
+    try {
+      activeSegment = LogSegment.open(directory, nextId, segmentSize);
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not create log segment " + nextId, e);
+    }
+    segments.put(nextId, activeSegment);
+  }
+
+  private void repoint(LongLongHashMap index, long key, long location, int length) {
+    long previous = index.put(key, location);
+    releaseLocation(previous);
+    segments.get(segmentId(location)).addLiveBytes(length);
+  }
+
+  private void releaseLocation(long location) {
+    if (location == NO_LOCATION) {
+      return;
+    }
+    LogSegment segment = segments.get(segmentId(location));
+    if (segment != null) {
+      segment.addLiveBytes(-segment.lengthAt(offset(location)));
+    }
+  }
+
+  private <T> T readAt(long location, Function<ByteBuffer, T> reader) {
+    LogSegment segment = segments.get(segmentId(location));
+    Preconditions.checkState(segment != null, "The mutation log is closed");
+    LogSegment.Record record = segment.read(offset(location));
+    Preconditions.checkState(record != null, "Index points to an invalid record");
+    return reader.apply(record.payload);
+  }
+
+  private LongLongHashMap indexOf(byte type) {
+    switch (type) {
+      case TYPE_JOB:
+        return jobIndex;
+      case TYPE_INSTANCE:
+        return instanceIndex;
+      case TYPE_SERVER:
+        return serverIndex;
+      default:
+        throw new IllegalArgumentException("Unknown record type " + type);
+    }
+  }
+
+  private static long location(int segmentId, int offset) {
+    return ((long) segmentId << 32) | (offset & 0xFFFFFFFFL);
+  }
+
+  private static int segmentId(long location) {
+    return (int) (location >>> 32);
+  }
+
+  private static int offset(long location) {
+    return (int) location;
+  }
+
+  @Override
+  public void close() throws IOException {
+    lock.writeLock().lock();
+    try {
+      for (Map.Entry<Integer, LogSegment> entry : segments.entrySet()) {
+        entry.getValue().flush();
+        entry.getValue().close();
+      }
+      segments.clear();
+      activeSegment = null;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Encodes an entity into the payload buffer. */
+  @FunctionalInterface
+  public interface EntityWriter<T> {
+    void write(ByteBuffer buffer, T entity);
+  }
+}
@@ -0,0 +1,218 @@
+package xyz.vopen.framework.neptune.core.persistence.embedded;
+
+import xyz.vopen.framework.neptune.common.model.InstanceInfo;
+import xyz.vopen.framework.neptune.common.model.JobInfo;
+import xyz.vopen.framework.neptune.common.model.ServerInfo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * {@link RecordCodec} Binary layout of the entities stored in the {@link MutationLog}. Every boxed
+ * field is prefixed by a presence byte, so null values round trip.
+ *
+ * <p>Fields are only ever appended at the end of an entity layout: records written by an older
+ * version are still readable because a decoder stops at the end of the record.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/27
+ */
+public final class RecordCodec {
+
+  private RecordCodec() {
+    throw new AssertionError();
+  }
+
+  // =====================  Job  =====================
+
+  public static void writeJob(ByteBuffer buffer, JobInfo job) {
+    putLong(buffer, job.getId());
+    putString(buffer, job.getJobName());
+    putString(buffer, job.getJobDescription());
+    putLong(buffer, job.getAppId());
+    putString(buffer, job.getJobParams());
+    putInt(buffer, job.getTimeExpressionType());
+    putString(buffer, job.getTimeExpression());
+    putInt(buffer, job.getExecuteType());
+    putInt(buffer, job.getProcessorType());
+    putString(buffer, job.getProcessorInfo());
+    putInt(buffer, job.getMaxInstanceNum());
+    putInt(buffer, job.getConcurrency());
+    putLong(buffer, job.getInstanceTimeLimit());
+    putInt(buffer, job.getInstanceRetryNum());
+    putInt(buffer, job.getTaskRetryNum());
+    putInt(buffer, job.getStatus());
+    putLong(buffer, job.getNextTriggerTime());
+    buffer.putDouble(job.getMinCpuCores());
+    buffer.putDouble(job.getMinMemorySpace());
+    buffer.putDouble(job.getMinDiskSpace());
+    putString(buffer, job.getDesignatedWorkers());
+    putInt(buffer, job.getMaxWorkerCount());
+    putString(buffer, job.getNotifyUserIds());
+    putDate(buffer, job.getGmtCreate());
+    putDate(buffer, job.getGmtUpdate());
+    putString(buffer, job.getClaimServer());
+    putLong(buffer, job.getLeaseExpireTime());
+    putLong(buffer, job.getTriggerTolerance());
+    putLong(buffer, job.getRetryBackoff());
+    putLong(buffer, job.getMaxRetryBackoff());
+  }
+
+  public static JobInfo readJob(ByteBuffer buffer) {
+    JobInfo job =
+        new JobInfo(
+            getLong(buffer),
+            getString(buffer),
+            getString(buffer),
+            getLong(buffer),
+            getString(buffer),
+            getInt(buffer),
+            getString(buffer),
+            getInt(buffer),
+            getInt(buffer),
+            getString(buffer),
+            getInt(buffer),
+            getInt(buffer),
+            getLong(buffer),
+            getInt(buffer),
+            getInt(buffer),
+            getInt(buffer),
+            getLong(buffer),
+            buffer.getDouble(),
+            buffer.getDouble(),
+            buffer.getDouble(),
+            getString(buffer),
+            getInt(buffer),
+            getString(buffer),
+            getDate(buffer),
+            getDate(buffer));
+    job.setClaimServer(getString(buffer));
+    job.setLeaseExpireTime(getLong(buffer));
+    job.setTriggerTolerance(getLong(buffer));
+    // the records written before the retry backoff of the jobs end here
+    if (buffer.hasRemaining()) {
+      job.setRetryBackoff(getLong(buffer));
+      job.setMaxRetryBackoff(getLong(buffer));
+    }
+    return job;
+  }
+
+  // =====================  Instance  =====================
+
+  public static void writeInstance(ByteBuffer buffer, InstanceInfo instance) {
+    putLong(buffer, instance.getId());
+    putLong(buffer, instance.getAppId());
+    putLong(buffer, instance.getJobId());
+    putString(buffer, instance.getJobParams());
+    putInt(buffer, instance.getType());
+    putLong(buffer, instance.getWorkFlowId());
+    putInt(buffer, instance.getStatus());
+    putString(buffer, instance.getResult());
+    putDate(buffer, instance.getTriggerTime());
+    putDate(buffer, instance.getCompletedTime());
+    putDate(buffer, instance.getLastReportTime());
+    putDate(buffer, instance.getExecuteTime());
+    putInt(buffer, instance.getRetryTimes());
+    putString(buffer, instance.getTaskAddress());
+    putDate(buffer, instance.getGmtCreate());
+    putDate(buffer, instance.getGmtUpdate());
+  }
+
+  public static InstanceInfo readInstance(ByteBuffer buffer) {
+    return new InstanceInfo(
+        getLong(buffer),
+        getLong(buffer),
+        getLong(buffer),
+        getString(buffer),
+        getInt(buffer),
+        getLong(buffer),
+        getInt(buffer),
+        getString(buffer),
+        getDate(buffer),
+        getDate(buffer),
+        getDate(buffer),
+        getDate(buffer),
+        getInt(buffer),
+        getString(buffer),
+        getDate(buffer),
+        getDate(buffer));
+  }
+
+  // =====================  Server  =====================
+
+  public static void writeServer(ByteBuffer buffer, ServerInfo server) {
+    putLong(buffer, server.getId());
+    putString(buffer, server.getServiceName());
+    putString(buffer, server.getAddress());
+    putDate(buffer, server.getGmtCreate());
+    putDate(buffer, server.getGmtUpdate());
+  }
+
+  public static ServerInfo readServer(ByteBuffer buffer) {
+    return new ServerInfo(
+        getLong(buffer),
+        getString(buffer),
+        getString(buffer),
+        getDate(buffer),
+        getDate(buffer));
+  }
+
+  // =====================  Primitives  =====================
+
+  private static void putLong(ByteBuffer buffer, Long value) {
+    if (value == null) {
+      buffer.put((byte) 0);
+    } else {
+      buffer.put((byte) 1).putLong(value);
+    }
+  }
+
+  private static Long getLong(ByteBuffer buffer) {
+    return present(buffer) ? buffer.getLong() : null;
+  }
+
+  private static void putInt(ByteBuffer buffer, Integer value) {
+    if (value == null) {
+      buffer.put((byte) 0);
+    } else {
+      buffer.put((byte) 1).putInt(value);
+    }
+  }
+
+  private static Integer getInt(ByteBuffer buffer) {
+    return present(buffer) ? buffer.getInt() : null;
+  }
+
+  private static void putDate(ByteBuffer buffer, Date value) {
+    putLong(buffer, value == null ? null : value.getTime());
+  }
+
+  private static Date getDate(ByteBuffer buffer) {
+    Long time = getLong(buffer);
+    return time == null ? null : new Date(time);
+  }
+
+  private static void putString(ByteBuffer buffer, String value) {
+    if (value == null) {
+      buffer.put((byte) 0);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    buffer.put((byte) 1).putInt(bytes.length).put(bytes);
+  }
+
+  private static String getString(ByteBuffer buffer) {
+    if (!present(buffer)) {
+      return null;
+    }
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /** A missing trailing field reads as absent, which keeps old records decodable. */
+  private static boolean present(ByteBuffer buffer) {
+    return buffer.hasRemaining() && buffer.get() == 1;
+  }
+}
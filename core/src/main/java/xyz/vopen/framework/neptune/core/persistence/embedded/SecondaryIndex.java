@@ -0,0 +1,113 @@
+package xyz.vopen.framework.neptune.core.persistence.embedded;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.Predicate;
+
+/**
+ * {@link SecondaryIndex} In-memory index of the keys of the entities of a {@link MutationLog} by
+ * one of their fields, e.g. the instances by job id, holding the keys of a value in key order. An
+ * entity whose field is null is not indexed.
+ *
+ * <p>The writers add the keys of the written entities and remove the keys of the deleted ones. A
+ * key whose entity was deleted without its removal is dropped by the first lookup that does not
+ * find the entity; a key whose entity moved to another value stays but is skipped, the lookups
+ * check every entity against the looked up value.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/27
+ */
+public final class SecondaryIndex<T, V> {
+
+  private final Function<T, V> field;
+
+  private final ConcurrentHashMap<V, NavigableSet<Long>> keys = new ConcurrentHashMap<>();
+
+  public SecondaryIndex(Function<T, V> field) {
+    this.field = Preconditions.checkNotNull(field);
+  }
+
+  /** Indexes the key of the written entity under the value of its field. */
+  public void add(long key, T entity) {
+    V value = field.apply(entity);
+    if (value != null) {
+      keys.compute(
+          value,
+          (ignored, indexed) -> {
+            NavigableSet<Long> updated = indexed == null ? new ConcurrentSkipListSet<>() : indexed;
+            updated.add(key);
+            return updated;
+          });
+    }
+  }
+
+  /** Removes the key of the entity from the value of its field, dropping the emptied value. */
+  public void remove(long key, T entity) {
+    V value = field.apply(entity);
+    if (value != null) {
+      keys.computeIfPresent(
+          value,
+          (ignored, indexed) -> {
+            indexed.remove(key);
+            return indexed.isEmpty() ? null : indexed;
+          });
+    }
+  }
+
+  /**
+   * Returns the entities indexed under the value that match the filter, the {@code limit} smallest
+   * keys greater than {@code afterKey} in key order.
+   *
+   * @param value Value of the indexed field.
+   * @param afterKey Only keys greater than this one are returned.
+   * @param limit Maximum number of entities.
+   * @param loader Returns the live entity of a key, null if the entity was deleted.
+   * @param filter Further condition on the entities.
+   * @return The matching entities.
+   */
+  public List<T> lookup(
+      V value, long afterKey, int limit, LongFunction<T> loader, Predicate<T> filter) {
+    Preconditions.checkArgument(limit > 0, "limit must be positive");
+    NavigableSet<Long> indexed = keys.get(value);
+    if (indexed == null) {
+      return Collections.emptyList();
+    }
+
+    List<T> entities = new ArrayList<>();
+    for (Long key : indexed.tailSet(afterKey, false)) {
+      T entity = loader.apply(key);
+      if (entity == null) {
+        // keys are never reused, a deleted entity does not come back
+        indexed.remove(key);
+      } else if (isIndexedUnder(entity, value) && filter.test(entity)) {
+        entities.add(entity);
+        if (entities.size() == limit) {
+          break;
+        }
+      }
+    }
+    return entities;
+  }
+
+  /** Returns the number of keys indexed under the value. */
+  public int size(V value) {
+    NavigableSet<Long> indexed = keys.get(value);
+    return indexed == null ? 0 : indexed.size();
+  }
+
+  // =====================  Internal  =====================
+
+  private boolean isIndexedUnder(T entity, V value) {
+    @Nullable V current = field.apply(entity);
+    return value.equals(current);
+  }
+}
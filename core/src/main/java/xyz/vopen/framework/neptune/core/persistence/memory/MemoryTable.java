@@ -0,0 +1,360 @@
+package xyz.vopen.framework.neptune.core.persistence.memory;
+
+import com.google.common.base.Preconditions;
+import xyz.vopen.framework.neptune.common.utils.collection.LongObjectHashMap;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * {@link MemoryTable} Table of rows keyed by a primitive id, with secondary indexes from a
+ * primitive key to the sorted ids of its rows. Rows are copied in and out, so callers never share
+ * a row with the table, as with a real database.
+ *
+ * <p>Reads share a read lock, writes take the write lock of the table. Index keys may collide, e.g.
+ * a composite key hashed into one long, so the queries always take a predicate checking the exact
+ * columns.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class MemoryTable<T> {
+
+  /** Key of a row which is not part of an index, e.g. because the column is null. */
+  public static final long NO_KEY = Long.MIN_VALUE;
+
+  private final @Nonnull ToLongFunction<T> idOf;
+  private final @Nonnull UnaryOperator<T> copier;
+  private final LongObjectHashMap<T> rows = new LongObjectHashMap<>(1024);
+  private final SortedLongSet ids = new SortedLongSet();
+  private final List<Index<T>> indexes = new ArrayList<>();
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Lock readLock = lock.readLock();
+  private final Lock writeLock = lock.writeLock();
+
+  private MemoryTable(
+      final @Nonnull ToLongFunction<T> idOf, final @Nonnull UnaryOperator<T> copier) {
+    this.idOf = Preconditions.checkNotNull(idOf);
+    this.copier = Preconditions.checkNotNull(copier);
+  }
+
+  /**
+   * @param idOf Returns the id of a row.
+   * @param copier Returns a copy of a row.
+   */
+  public static <T> MemoryTable<T> create(
+      final ToLongFunction<T> idOf, final UnaryOperator<T> copier) {
+    return new MemoryTable<>(idOf, copier);
+  }
+
+  /**
+   * Adds a secondary index, must be called before the first row is inserted.
+   *
+   * @param keyOf Returns the key of a row, {@link #NO_KEY} to leave it out of the index.
+   * @return The index, to be passed to the queries.
+   */
+  public Index<T> addIndex(ToLongFunction<T> keyOf) {
+    writeLock.lock();
+    try {
+      Preconditions.checkState(rows.isEmpty(), "Indexes must be added to an empty table.");
+      Index<T> index = new Index<>(keyOf);
+      indexes.add(index);
+      return index;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  public int size() {
+    readLock.lock();
+    try {
+      return rows.size();
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /** Returns a copy of the row, null if absent. */
+  public T get(long id) {
+    readLock.lock();
+    try {
+      T row = rows.get(id);
+      return row == null ? null : copier.apply(row);
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /** Inserts or replaces the row. */
+  public void put(T row) {
+    T copy = copier.apply(row);
+    writeLock.lock();
+    try {
+      store(copy);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Atomically replaces the row by the result of the function.
+   *
+   * @param id of the row.
+   * @param update Receives a copy of the current row, null if absent, returns the new row or null
+   *     to leave the table unchanged.
+   */
+  public void compute(long id, UnaryOperator<T> update) {
+    writeLock.lock();
+    try {
+      T current = rows.get(id);
+      T updated = update.apply(current == null ? null : copier.apply(current));
+      if (updated != null) {
+        store(copier.apply(updated));
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  public boolean remove(long id) {
+    writeLock.lock();
+    try {
+      T removed = rows.remove(id);
+      if (removed == null) {
+        return false;
+      }
+      ids.remove(id);
+      for (Index<T> index : indexes) {
+        index.remove(removed, id);
+      }
+      return true;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Removes the rows matching the predicate, scanning the whole table.
+   *
+   * @return The number of removed rows.
+   */
+  public int removeIf(Predicate<T> filter) {
+    writeLock.lock();
+    try {
+      LongObjectHashMap<T> removed = new LongObjectHashMap<>(16);
+      ids.forEach(
+          id -> {
+            T row = rows.get(id);
+            if (filter.test(row)) {
+              removed.put(id, row);
+            }
+          });
+      if (removed.isEmpty()) {
+        return 0;
+      }
+
+      removed.forEach((id, row) -> rows.remove(id));
+      ids.removeIf(removed::containsKey);
+      for (Index<T> index : indexes) {
+        index.removeAll(removed);
+      }
+      return removed.size();
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Returns copies of the matching rows in id order.
+   *
+   * @param index Index to look up, null to scan the whole table.
+   * @param key Key in the index, ignored without index.
+   * @param afterId Only the rows with a greater id are returned.
+   * @param limit Maximum number of rows.
+   * @param filter Exact condition on the rows.
+   */
+  public List<T> find(Index<T> index, long key, long afterId, int limit, Predicate<T> filter) {
+    if (limit <= 0) {
+      return new ArrayList<>();
+    }
+    readLock.lock();
+    try {
+      List<T> result = new ArrayList<>();
+      visit(
+          index,
+          key,
+          afterId,
+          row -> {
+            if (filter.test(row)) {
+              result.add(copier.apply(row));
+            }
+            return result.size() < limit;
+          });
+      return result;
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /** Returns copies of all the matching rows in id order. */
+  public List<T> find(Index<T> index, long key, Predicate<T> filter) {
+    return find(index, key, Long.MIN_VALUE, Integer.MAX_VALUE, filter);
+  }
+
+  /** Counts the matching rows without copying them. */
+  public long count(Index<T> index, long key, Predicate<T> filter) {
+    readLock.lock();
+    try {
+      long[] count = new long[1];
+      visit(
+          index,
+          key,
+          Long.MIN_VALUE,
+          row -> {
+            if (filter.test(row)) {
+              count[0]++;
+            }
+            return true;
+          });
+      return count[0];
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /**
+   * Atomically updates the matching rows, in id order.
+   *
+   * @param limit Maximum number of rows to update.
+   * @param update Modifies a copy of a row, which then replaces it.
+   * @return Copies of the updated rows.
+   */
+  public List<T> update(
+      Index<T> index, long key, int limit, Predicate<T> filter, Consumer<T> update) {
+    if (limit <= 0) {
+      return new ArrayList<>();
+    }
+    writeLock.lock();
+    try {
+      List<T> matching = new ArrayList<>();
+      visit(
+          index,
+          key,
+          Long.MIN_VALUE,
+          row -> {
+            if (filter.test(row)) {
+              matching.add(copier.apply(row));
+            }
+            return matching.size() < limit;
+          });
+
+      List<T> updated = new ArrayList<>(matching.size());
+      for (T row : matching) {
+        update.accept(row);
+        store(copier.apply(row));
+        updated.add(row);
+      }
+      return updated;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  // =====================  Internal  =====================
+
+  /** Must hold the write lock. */
+  private void store(T row) {
+    long id = idOf.applyAsLong(row);
+    T previous = rows.put(id, row);
+    if (previous == null) {
+      ids.add(id);
+    }
+    for (Index<T> index : indexes) {
+      index.replace(previous, row, id);
+    }
+  }
+
+  /** Must hold a lock. */
+  private void visit(Index<T> index, long key, long afterId, Predicate<T> visitor) {
+    SortedLongSet candidates = index == null ? ids : index.ids(key);
+    if (candidates != null) {
+      candidates.forEachAfter(afterId, id -> visitor.test(rows.get(id)));
+    }
+  }
+
+  /** Secondary index of a {@link MemoryTable}, guarded by the lock of its table. */
+  public static final class Index<T> {
+    private final ToLongFunction<T> keyOf;
+    private final LongObjectHashMap<SortedLongSet> ids = new LongObjectHashMap<>(64);
+
+    private Index(ToLongFunction<T> keyOf) {
+      this.keyOf = keyOf;
+    }
+
+    private SortedLongSet ids(long key) {
+      return ids.get(key);
+    }
+
+    private void replace(T previous, T row, long id) {
+      long key = keyOf.applyAsLong(row);
+      if (previous != null) {
+        long previousKey = keyOf.applyAsLong(previous);
+        if (previousKey == key) {
+          return;
+        }
+        remove(previous, id);
+      }
+      if (key != NO_KEY) {
+        add(key, id);
+      }
+    }
+
+    private void add(long key, long id) {
+      SortedLongSet set = ids.get(key);
+      if (set == null) {
+        set = new SortedLongSet();
+        ids.put(key, set);
+      }
+      set.add(id);
+    }
+
+    private void remove(T row, long id) {
+      long key = keyOf.applyAsLong(row);
+      if (key == NO_KEY) {
+        return;
+      }
+      SortedLongSet set = ids.get(key);
+      if (set != null && set.remove(id) && set.isEmpty()) {
+        ids.remove(key);
+      }
+    }
+
+    private void removeAll(LongObjectHashMap<T> removed) {
+      LongObjectHashMap<SortedLongSet> affected = new LongObjectHashMap<>(16);
+      removed.forEach(
+          (id, row) -> {
+            long key = keyOf.applyAsLong(row);
+            SortedLongSet set = key == NO_KEY ? null : ids.get(key);
+            if (set != null) {
+              affected.put(key, set);
+            }
+          });
+      affected.forEach(
+          (key, set) -> {
+            set.removeIf(removed::containsKey);
+            if (set.isEmpty()) {
+              ids.remove(key);
+            }
+          });
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package xyz.vopen.framework.neptune.core.persistence.memory;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * {@link SortedLongSet} Set of primitive longs kept sorted in one array. Ids are generated in
+ * increasing order, so an insert is almost always an append; a range scan is a binary search
+ * followed by a sequential read.
+ *
+ * <p>Not thread safe.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+final class SortedLongSet {
+
+  private long[] values = new long[4];
+  private int size;
+
+  boolean add(long value) {
+    if (size == 0 || values[size - 1] < value) {
+      ensureCapacity();
+      values[size++] = value;
+      return true;
+    }
+
+    int index = Arrays.binarySearch(values, 0, size, value);
+    if (index >= 0) {
+      return false;
+    }
+    int insertion = -index - 1;
+    ensureCapacity();
+    System.arraycopy(values, insertion, values, insertion + 1, size - insertion);
+    values[insertion] = value;
+    size++;
+    return true;
+  }
+
+  boolean remove(long value) {
+    int index = Arrays.binarySearch(values, 0, size, value);
+    if (index < 0) {
+      return false;
+    }
+    System.arraycopy(values, index + 1, values, index, size - index - 1);
+    size--;
+    return true;
+  }
+
+  /** Removes the matching values in one pass. */
+  void removeIf(LongPredicate filter) {
+    int kept = 0;
+    for (int i = 0; i < size; i++) {
+      if (!filter.test(values[i])) {
+        values[kept++] = values[i];
+      }
+    }
+    size = kept;
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** Visits the values greater than {@code after} in increasing order, until it returns false. */
+  void forEachAfter(long after, LongPredicate consumer) {
+    int index = Arrays.binarySearch(values, 0, size, after);
+    int from = index >= 0 ? index + 1 : -index - 1;
+    for (int i = from; i < size; i++) {
+      if (!consumer.test(values[i])) {
+        return;
+      }
+    }
+  }
+
+  void forEach(LongConsumer consumer) {
+    for (int i = 0; i < size; i++) {
+      consumer.accept(values[i]);
+    }
+  }
+
+  private void ensureCapacity() {
+    if (size == values.length) {
+      values = Arrays.copyOf(values, size << 1);
+    }
+  }
+}
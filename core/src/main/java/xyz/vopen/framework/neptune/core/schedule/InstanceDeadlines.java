@@ -0,0 +1,97 @@
+package xyz.vopen.framework.neptune.core.schedule;
+
+import com.google.common.base.Preconditions;
+import xyz.vopen.framework.neptune.common.utils.collection.LongObjectHashMap;
+import xyz.vopen.framework.neptune.common.utils.time.timewheel.Timer;
+import xyz.vopen.framework.neptune.common.utils.time.timewheel.TimerFuture;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * {@link InstanceDeadlines} At most one deadline per instance armed on a {@link Timer}. A deadline
+ * is only moved earlier, never later: a status update pushing the expiry back does not touch the
+ * timer, the callback finds out when it fires and arms the deadline again. The timer thus costs one
+ * entry per instance whatever the number of worker reports.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class InstanceDeadlines {
+
+  private final @Nonnull Timer timer;
+  private final @Nonnull LongConsumer onDeadline;
+
+  /** Armed deadlines by instance id, guarded by itself. */
+  private final LongObjectHashMap<Deadline> deadlines = new LongObjectHashMap<>(1024);
+
+  /**
+   * @param timer Timer the deadlines are armed on.
+   * @param onDeadline Receives the id of the instance whose deadline passed.
+   */
+  public InstanceDeadlines(final @Nonnull Timer timer, final @Nonnull LongConsumer onDeadline) {
+    this.timer = Preconditions.checkNotNull(timer);
+    this.onDeadline = Preconditions.checkNotNull(onDeadline);
+  }
+
+  /**
+   * Makes sure the callback runs for the instance no later than the given time.
+   *
+   * @param instanceId Id of the instance.
+   * @param deadline Time in milliseconds.
+   */
+  public void arm(long instanceId, long deadline) {
+    synchronized (deadlines) {
+      Deadline current = deadlines.get(instanceId);
+      if (current != null) {
+        if (current.time <= deadline) {
+          return;
+        }
+        current.future.cancel();
+      }
+      Deadline armed = new Deadline(instanceId, deadline);
+      deadlines.put(instanceId, armed);
+      // at least one tick, so that the callback never runs in the thread holding the lock
+      long delay = Math.max(1L, deadline - System.currentTimeMillis());
+      armed.future = timer.schedule(armed::fire, delay, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  public void cancel(long instanceId) {
+    synchronized (deadlines) {
+      Deadline current = deadlines.remove(instanceId);
+      if (current != null && current.future != null) {
+        current.future.cancel();
+      }
+    }
+  }
+
+  public int size() {
+    synchronized (deadlines) {
+      return deadlines.size();
+    }
+  }
+
+  private final class Deadline {
+    final long instanceId;
+    final long time;
+    TimerFuture future;
+
+    Deadline(long instanceId, long time) {
+      this.instanceId = instanceId;
+      this.time = time;
+    }
+
+    void fire() {
+      synchronized (deadlines) {
+        // replaced or cancelled meanwhile
+        if (deadlines.get(instanceId) != this) {
+          return;
+        }
+        deadlines.remove(instanceId);
+      }
+      onDeadline.accept(instanceId);
+    }
+  }
+}
@@ -0,0 +1,324 @@
+package xyz.vopen.framework.neptune.core.schedule;
+
+import com.google.common.base.Preconditions;
+import xyz.vopen.framework.neptune.common.model.InstanceInfo;
+import xyz.vopen.framework.neptune.common.utils.collection.LongLongHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntToLongFunction;
+
+/**
+ * {@link InstanceStateTable} Status, last update time, retry count, job id and time limit of the
+ * instances in flight, kept in primitive arrays, one row per instance and one array per column,
+ * with an {@link LongLongHashMap} from the instance id to its row. A row costs about 70 bytes and
+ * no object, so the timeout sweep over millions of instances is a scan of a few arrays instead of
+ * pages of {@link InstanceInfo} loaded from the persistence.
+ *
+ * <p>Rows are dense: a removed row is replaced by the last one.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class InstanceStateTable {
+
+  /** Returned by the timeout function for the statuses which never time out. */
+  public static final long NO_TIMEOUT = -1L;
+
+  /** Returned by the getters for an unknown instance. */
+  public static final int MISSING = -1;
+
+  /** Time limit of the instances which may run forever. */
+  public static final long NO_TIME_LIMIT = Long.MAX_VALUE;
+
+  private final LongLongHashMap rowOf;
+
+  private long[] instanceIds;
+  private long[] jobIds;
+  private long[] updateTimes;
+  private int[] statuses;
+  private int[] retryTimes;
+  private long[] timeLimits;
+  private int size;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Lock readLock = lock.readLock();
+  private final Lock writeLock = lock.writeLock();
+
+  /** @param initialCapacity Expected number of instances in flight. */
+  public InstanceStateTable(int initialCapacity) {
+    Preconditions.checkArgument(initialCapacity >= 0, "initialCapacity must not be negative");
+    int capacity = Math.max(16, initialCapacity);
+    this.rowOf = new LongLongHashMap(capacity, MISSING);
+    this.instanceIds = new long[capacity];
+    this.jobIds = new long[capacity];
+    this.updateTimes = new long[capacity];
+    this.statuses = new int[capacity];
+    this.retryTimes = new int[capacity];
+    this.timeLimits = new long[capacity];
+  }
+
+  public int size() {
+    readLock.lock();
+    try {
+      return size;
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /**
+   * Inserts or replaces the state of the instance, e.g. when it is created or dispatched. The time
+   * limit is cleared.
+   */
+  public void put(long instanceId, long jobId, int status, long updateTime, int retryTimes) {
+    writeLock.lock();
+    try {
+      int row = (int) rowOf.get(instanceId);
+      if (row == MISSING) {
+        row = size++;
+        ensureCapacity(size);
+        rowOf.put(instanceId, row);
+        instanceIds[row] = instanceId;
+      }
+      this.jobIds[row] = jobId;
+      this.statuses[row] = status;
+      this.updateTimes[row] = updateTime;
+      this.retryTimes[row] = retryTimes;
+      this.timeLimits[row] = NO_TIME_LIMIT;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /** Inserts or replaces the state of the instance from its status fields. */
+  public void put(InstanceInfo instanceInfo) {
+    put(
+        instanceInfo.getId(),
+        instanceInfo.getJobId() == null ? 0L : instanceInfo.getJobId(),
+        instanceInfo.getStatus(),
+        instanceInfo.getGmtUpdate() == null
+            ? System.currentTimeMillis()
+            : instanceInfo.getGmtUpdate().getTime(),
+        instanceInfo.getRetryTimes() == null ? 0 : instanceInfo.getRetryTimes());
+  }
+
+  /**
+   * Updates the status of a known instance, e.g. on a worker report.
+   *
+   * @return false if the instance is unknown.
+   */
+  public boolean update(long instanceId, int status, long updateTime) {
+    writeLock.lock();
+    try {
+      int row = (int) rowOf.get(instanceId);
+      if (row == MISSING) {
+        return false;
+      }
+      statuses[row] = status;
+      updateTimes[row] = updateTime;
+      return true;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Updates the status and the retry count of a known instance, e.g. when a retry is scheduled.
+   *
+   * @return false if the instance is unknown.
+   */
+  public boolean update(long instanceId, int status, long updateTime, int retryTimes) {
+    writeLock.lock();
+    try {
+      int row = (int) rowOf.get(instanceId);
+      if (row == MISSING) {
+        return false;
+      }
+      statuses[row] = status;
+      updateTimes[row] = updateTime;
+      this.retryTimes[row] = retryTimes;
+      return true;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Sets the time the instance must be completed by, e.g. when it starts running.
+   *
+   * @return false if the instance is unknown.
+   */
+  public boolean setTimeLimit(long instanceId, long timeLimit) {
+    writeLock.lock();
+    try {
+      int row = (int) rowOf.get(instanceId);
+      if (row == MISSING) {
+        return false;
+      }
+      timeLimits[row] = timeLimit;
+      return true;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /** @return false if the instance is unknown. */
+  public boolean remove(long instanceId) {
+    writeLock.lock();
+    try {
+      int row = (int) rowOf.remove(instanceId);
+      if (row == MISSING) {
+        return false;
+      }
+      int last = --size;
+      if (row != last) {
+        instanceIds[row] = instanceIds[last];
+        jobIds[row] = jobIds[last];
+        updateTimes[row] = updateTimes[last];
+        statuses[row] = statuses[last];
+        retryTimes[row] = retryTimes[last];
+        timeLimits[row] = timeLimits[last];
+        rowOf.put(instanceIds[row], row);
+      }
+      return true;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  public int getStatus(long instanceId) {
+    readLock.lock();
+    try {
+      int row = (int) rowOf.get(instanceId);
+      return row == MISSING ? MISSING : statuses[row];
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /** Returns the status fields of the instance, null if unknown. */
+  public InstanceInfo get(long instanceId) {
+    readLock.lock();
+    try {
+      int row = (int) rowOf.get(instanceId);
+      return row == MISSING ? null : toInstanceInfo(row);
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /** Returns the time limit of the instance, {@link #NO_TIME_LIMIT} if unknown or unlimited. */
+  public long getTimeLimit(long instanceId) {
+    readLock.lock();
+    try {
+      int row = (int) rowOf.get(instanceId);
+      return row == MISSING ? NO_TIME_LIMIT : timeLimits[row];
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /**
+   * Returns when the instance expires: its status times out or it reaches its time limit.
+   *
+   * @param timeoutOf Timeout of a status in milliseconds, {@link #NO_TIMEOUT} if it never expires.
+   * @return The time in milliseconds, {@link Long#MAX_VALUE} if it never expires, {@link #MISSING}
+   *     if unknown.
+   */
+  public long expiryOf(long instanceId, IntToLongFunction timeoutOf) {
+    readLock.lock();
+    try {
+      int row = (int) rowOf.get(instanceId);
+      if (row == MISSING) {
+        return MISSING;
+      }
+      long timeout = timeoutOf.applyAsLong(statuses[row]);
+      long expiry = timeout == NO_TIMEOUT ? Long.MAX_VALUE : updateTimes[row] + timeout;
+      return Math.min(expiry, timeLimits[row]);
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  public int getRetryTimes(long instanceId) {
+    readLock.lock();
+    try {
+      int row = (int) rowOf.get(instanceId);
+      return row == MISSING ? MISSING : retryTimes[row];
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /**
+   * Returns the instances whose status was not updated within its timeout, or which reached their
+   * time limit. The scan only reads the
+   * arrays, objects are created for the expired instances alone.
+   *
+   * @param now Current time in milliseconds.
+   * @param timeoutOf Timeout of a status in milliseconds, {@link #NO_TIMEOUT} if it never expires.
+   * @return The expired instances, carrying the status fields only.
+   */
+  public List<InstanceInfo> sweep(long now, IntToLongFunction timeoutOf) {
+    List<InstanceInfo> expired = new ArrayList<>();
+    // status codes are small, the timeouts are resolved once per sweep
+    long[] timeouts = new long[16];
+    Arrays.fill(timeouts, Long.MIN_VALUE);
+
+    readLock.lock();
+    try {
+      for (int row = 0; row < size; row++) {
+        int status = statuses[row];
+        long timeout;
+        if (status >= 0 && status < timeouts.length) {
+          timeout = timeouts[status];
+          if (timeout == Long.MIN_VALUE) {
+            timeout = timeouts[status] = timeoutOf.applyAsLong(status);
+          }
+        } else {
+          timeout = timeoutOf.applyAsLong(status);
+        }
+        if ((timeout != NO_TIMEOUT && now - updateTimes[row] >= timeout)
+            || now >= timeLimits[row]) {
+          expired.add(toInstanceInfo(row));
+        }
+      }
+    } finally {
+      readLock.unlock();
+    }
+    return expired;
+  }
+
+  // =====================  Internal  =====================
+
+  private InstanceInfo toInstanceInfo(int row) {
+    InstanceInfo instanceInfo =
+        InstanceInfo.builder()
+            .id(instanceIds[row])
+            .jobId(jobIds[row])
+            .status(statuses[row])
+            .retryTimes(retryTimes[row])
+            .build();
+    instanceInfo.setGmtUpdate(new Date(updateTimes[row]));
+    return instanceInfo;
+  }
+
+  private void ensureCapacity(int required) {
+    if (required <= instanceIds.length) {
+      return;
+    }
+    int capacity = instanceIds.length << 1;
+    instanceIds = Arrays.copyOf(instanceIds, capacity);
+    jobIds = Arrays.copyOf(jobIds, capacity);
+    updateTimes = Arrays.copyOf(updateTimes, capacity);
+    statuses = Arrays.copyOf(statuses, capacity);
+    retryTimes = Arrays.copyOf(retryTimes, capacity);
+    timeLimits = Arrays.copyOf(timeLimits, capacity);
+  }
+}
@@ -0,0 +1,184 @@
+package xyz.vopen.framework.neptune.core.schedule;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import xyz.vopen.framework.neptune.common.configuration.Configuration;
+import xyz.vopen.framework.neptune.common.configuration.JobManagerOptions;
+import xyz.vopen.framework.neptune.common.model.JobInfo;
+import xyz.vopen.framework.neptune.common.utils.collection.LongObjectHashMap;
+import xyz.vopen.framework.neptune.common.utils.time.timewheel.Timer;
+import xyz.vopen.framework.neptune.common.utils.time.timewheel.TimerFuture;
+import xyz.vopen.framework.neptune.core.persistence.adapter.PersistenceAdapter;
+
+import javax.annotation.Nonnull;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RetryScheduler} Delays the retries of the instances on a {@link Timer} with an exponential
+ * backoff: the n-th retry waits {@code initial * multiplier^(n-1)}, capped at the maximum, of which
+ * the jitter fraction is drawn at random. The instances failed together by a worker outage are thus
+ * retried spread over time, more and more slowly, instead of hammering the workers on every check.
+ *
+ * <p>A job may set its own initial and maximum backoff, {@link JobInfo#getRetryBackoff()} and
+ * {@link JobInfo#getMaxRetryBackoff()}; the backoff of the scheduler applies to the others.
+ *
+ * <p>At most one retry is pending per instance. The retry counts are not written one by one, they
+ * are collected and written back in one batch by {@link #flushRetryTimes()}.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class RetryScheduler {
+  private static final Logger LOG = LoggerFactory.getLogger(RetryScheduler.class);
+
+  private final @Nonnull Timer timer;
+  private final @Nonnull PersistenceAdapter persistenceAdapter;
+  private final long initialBackoff;
+  private final long maxBackoff;
+  private final double multiplier;
+  private final double jitter;
+
+  /** Pending retries by instance id, guarded by itself. */
+  private final LongObjectHashMap<TimerFuture> pendingRetries = new LongObjectHashMap<>(256);
+
+  /** Retry counts not written back yet, guarded by itself. */
+  private final Map<Long, Integer> unflushedRetryTimes = new HashMap<>();
+
+  private RetryScheduler(
+      final @Nonnull Timer timer,
+      final @Nonnull PersistenceAdapter persistenceAdapter,
+      final long initialBackoff,
+      final long maxBackoff,
+      final double multiplier,
+      final double jitter) {
+    Preconditions.checkArgument(initialBackoff > 0, "initial backoff must be positive");
+    Preconditions.checkArgument(maxBackoff >= initialBackoff, "max backoff below initial backoff");
+    Preconditions.checkArgument(multiplier >= 1.0, "backoff multiplier must be at least 1");
+    Preconditions.checkArgument(jitter >= 0.0 && jitter <= 1.0, "jitter must be within [0, 1]");
+    this.timer = Preconditions.checkNotNull(timer);
+    this.persistenceAdapter = Preconditions.checkNotNull(persistenceAdapter);
+    this.initialBackoff = initialBackoff;
+    this.maxBackoff = maxBackoff;
+    this.multiplier = multiplier;
+    this.jitter = jitter;
+  }
+
+  public static RetryScheduler create(
+      final @Nonnull Configuration configuration,
+      final @Nonnull Timer timer,
+      final @Nonnull PersistenceAdapter persistenceAdapter) {
+    return new RetryScheduler(
+        timer,
+        persistenceAdapter,
+        configuration.getLong(JobManagerOptions.RETRY_BACKOFF_INITIAL),
+        configuration.getLong(JobManagerOptions.RETRY_BACKOFF_MAX),
+        configuration.getDouble(JobManagerOptions.RETRY_BACKOFF_MULTIPLIER),
+        configuration.getDouble(JobManagerOptions.RETRY_BACKOFF_JITTER));
+  }
+
+  /**
+   * Arms the retry of the instance after its backoff, unless one is already pending. The retry
+   * count is recorded to be written back with the next flush.
+   *
+   * @param instanceId Id of the instance.
+   * @param retryTimes Retry count of the instance, this retry included.
+   * @param jobInfo The job of the instance, for its backoff.
+   * @param retry Retries the instance.
+   * @return The backoff in milliseconds, -1 if a retry was already pending.
+   */
+  public long schedule(long instanceId, int retryTimes, JobInfo jobInfo, Runnable retry) {
+    long backoff = backoffOf(retryTimes, jobInfo);
+    synchronized (pendingRetries) {
+      if (pendingRetries.containsKey(instanceId)) {
+        return -1L;
+      }
+      // at least one tick, so that the retry never runs in the thread holding the lock
+      pendingRetries.put(
+          instanceId,
+          timer.schedule(
+              () -> fire(instanceId, retry), Math.max(1L, backoff), TimeUnit.MILLISECONDS));
+    }
+    synchronized (unflushedRetryTimes) {
+      unflushedRetryTimes.put(instanceId, retryTimes);
+    }
+    return backoff;
+  }
+
+  /** Cancels the pending retry of the instance, e.g. once it completed. */
+  public void cancel(long instanceId) {
+    TimerFuture pending;
+    synchronized (pendingRetries) {
+      pending = pendingRetries.remove(instanceId);
+    }
+    if (pending != null) {
+      pending.cancel();
+    }
+  }
+
+  public boolean isPending(long instanceId) {
+    synchronized (pendingRetries) {
+      return pendingRetries.containsKey(instanceId);
+    }
+  }
+
+  /**
+   * Writes the recorded retry counts back in one batch. The counts of a failed batch are kept for
+   * the next flush, unless they were recorded again meanwhile.
+   */
+  public void flushRetryTimes() {
+    Map<Long, Integer> batch;
+    synchronized (unflushedRetryTimes) {
+      if (unflushedRetryTimes.isEmpty()) {
+        return;
+      }
+      batch = new HashMap<>(unflushedRetryTimes);
+      unflushedRetryTimes.clear();
+    }
+    try {
+      persistenceAdapter.updateInstanceRetryTimes(batch);
+    } catch (Exception e) {
+      LOG.error("[RetryScheduler] write back {} retry counts failed.", batch.size(), e);
+      synchronized (unflushedRetryTimes) {
+        batch.forEach(unflushedRetryTimes::putIfAbsent);
+      }
+    }
+  }
+
+  /**
+   * Returns the backoff of the given retry of an instance of the job: exponential in the retry
+   * count, capped at the maximum, of which the jitter fraction is random.
+   */
+  long backoffOf(int retryTimes, JobInfo jobInfo) {
+    long initial = positiveOr(jobInfo.getRetryBackoff(), initialBackoff);
+    long max = Math.max(initial, positiveOr(jobInfo.getMaxRetryBackoff(), maxBackoff));
+    double exponential = initial * Math.pow(multiplier, Math.max(0, retryTimes - 1));
+    long capped = (long) Math.min(max, exponential);
+    long random = (long) (capped * jitter);
+    if (random <= 0) {
+      return capped;
+    }
+    return capped - random + ThreadLocalRandom.current().nextLong(random + 1);
+  }
+
+  private static long positiveOr(Long value, long defaultValue) {
+    return value == null || value <= 0 ? defaultValue : value;
+  }
+
+  private void fire(long instanceId, Runnable retry) {
+    synchronized (pendingRetries) {
+      if (pendingRetries.remove(instanceId) == null) {
+        // cancelled meanwhile
+        return;
+      }
+    }
+    try {
+      retry.run();
+    } catch (Exception e) {
+      LOG.error("[RetryScheduler] retry of instance {} failed.", instanceId, e);
+    }
+  }
+}
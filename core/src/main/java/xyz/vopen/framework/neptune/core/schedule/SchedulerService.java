@@ -1,11 +1,14 @@
 package xyz.vopen.framework.neptune.core.schedule;
 
+import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
-import com.google.common.collect.Lists;
 import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import xyz.vopen.framework.neptune.common.configuration.Configuration;
+import xyz.vopen.framework.neptune.common.configuration.JobManagerOptions;
+import xyz.vopen.framework.neptune.common.configuration.PersistenceOptions;
 import xyz.vopen.framework.neptune.common.constants.InstanceResult;
 import xyz.vopen.framework.neptune.common.enums.ExpressionType;
 import xyz.vopen.framework.neptune.common.enums.JobStatus;
@@ -18,12 +21,23 @@ import xyz.vopen.framework.neptune.common.utils.*;
 import xyz.vopen.framework.neptune.common.utils.time.timewheel.HashedWheelTimer;
 import xyz.vopen.framework.neptune.core.persistence.Persistence;
 import xyz.vopen.framework.neptune.core.persistence.adapter.PersistenceAdapter;
+import xyz.vopen.framework.neptune.optimizer.Optimizer;
+import xyz.vopen.framework.neptune.optimizer.runtime.RuntimeEstimator;
+import xyz.vopen.framework.neptune.optimizer.trigger.Trigger;
+import xyz.vopen.framework.neptune.optimizer.trigger.TriggerSmoothingOptimizer;
 import xyz.vopen.framework.neptune.rpc.RpcService;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.management.ManagementFactory;
 import java.text.ParseException;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -41,19 +55,35 @@ import static xyz.vopen.framework.neptune.common.enums.InstanceStatus.*;
 public class SchedulerService {
   private static final Logger LOG = LoggerFactory.getLogger(SchedulerService.class);
   private static final long SERVER_STATUS_CHECKER_INITIAL_DELAY = 5000;
-  private static final long SERVER_STATUS_CHECKER_DELAY = 10000;
+  /** The timeouts fire on the timer, the checker is a safety net. */
+  private static final long SERVER_STATUS_CHECKER_DELAY = 60000;
   private static final long TASK_ACQUIRE_INITIAL_DELAY = 2000;
   private static final long TASK_ACQUIRE_DELAY = 5000;
+  private static final long LOG_CLEANER_INITIAL_DELAY = 60000;
   private static final String SCHEDULER_THREAD_POOL_NAME = "scheduler";
-  private static final int MAX_BATCH = 10;
-  private static final long DISPATCH_TIMEOUT_MS = 30000;
+  private static final int SCAN_PAGE_SIZE = 1000;
+  private static final int INSTANCE_STATE_INITIAL_CAPACITY = 4096;
 
   private final @Nonnull Configuration configuration;
-  private final @Nonnull RpcService rpcService;
+  /**
+   * Id of this scheduler in the job claims: the rpc address, and the start time of the process so
+   * that a restarted scheduler does not renew the leases of the jobs claimed before the restart.
+   */
+  private final @Nonnull String serverId;
+  private final int claimBatchSize;
+  /** Milliseconds an instance may stay waiting for its dispatch or its worker. */
+  private final long dispatchTimeout;
   private final ScheduledThreadPoolExecutor scheduledThreadPoolExecutor;
   final PersistenceAdapter persistenceAdapter;
   private HashedWheelTimer hashedWheelTimer;
   private final EventBus eventBus;
+  private final InstanceStateTable instanceStates =
+      new InstanceStateTable(INSTANCE_STATE_INITIAL_CAPACITY);
+  private final InstanceDeadlines instanceDeadlines;
+  private final RetryScheduler retryScheduler;
+  private final Optimizer<Trigger> triggerOptimizer = new TriggerSmoothingOptimizer();
+  private final RuntimeEstimator runtimeEstimator;
+  private volatile boolean instanceStatesLoaded;
 
   public SchedulerService(
       final @Nonnull Configuration configuration,
@@ -61,15 +91,31 @@ public class SchedulerService {
       final @Nonnull Persistence persistence,
       final EventBus eventBus) {
     this.configuration = configuration;
-    this.rpcService = rpcService;
+    this.serverId =
+        rpcService.getAddress()
+            + ":"
+            + rpcService.getPort()
+            + "@"
+            + ManagementFactory.getRuntimeMXBean().getStartTime();
+    this.claimBatchSize = configuration.getInteger(JobManagerOptions.JOB_CLAIM_BATCH_SIZE);
+    Preconditions.checkArgument(
+        claimBatchSize > 0, JobManagerOptions.JOB_CLAIM_BATCH_SIZE.key() + " must be positive");
+    this.dispatchTimeout = configuration.getLong(JobManagerOptions.DISPATCH_TIMEOUT);
+    Preconditions.checkArgument(
+        dispatchTimeout > 0, JobManagerOptions.DISPATCH_TIMEOUT.key() + " must be positive");
     this.persistenceAdapter = persistence.getPersistenceAdapter();
     this.eventBus = eventBus;
     this.hashedWheelTimer = HashedWheelTimer.defaultWheelTimer();
+    this.instanceDeadlines = new InstanceDeadlines(hashedWheelTimer, this::onInstanceDeadline);
+    this.retryScheduler =
+        RetryScheduler.create(configuration, hashedWheelTimer, persistenceAdapter);
+    this.runtimeEstimator = RuntimeEstimator.create(configuration);
     this.scheduledThreadPoolExecutor =
-        new ScheduledThreadPoolExecutor(3, new ExecutorThreadFactory(SCHEDULER_THREAD_POOL_NAME));
+        new ScheduledThreadPoolExecutor(4, new ExecutorThreadFactory(SCHEDULER_THREAD_POOL_NAME));
   }
 
   public void start() {
+    eventBus.register(this);
     scheduledThreadPoolExecutor.scheduleWithFixedDelay(
         new TasksStatusChecker(),
         SERVER_STATUS_CHECKER_INITIAL_DELAY,
@@ -77,13 +123,25 @@ public class SchedulerService {
         TimeUnit.MILLISECONDS);
     scheduledThreadPoolExecutor.scheduleWithFixedDelay(
         new TaskAcquirer(), TASK_ACQUIRE_INITIAL_DELAY, TASK_ACQUIRE_DELAY, TimeUnit.MILLISECONDS);
-    scheduledThreadPoolExecutor.schedule(new LogCleaner(), 7, TimeUnit.DAYS);
+    scheduledThreadPoolExecutor.scheduleWithFixedDelay(
+        new LogCleaner(),
+        LOG_CLEANER_INITIAL_DELAY,
+        configuration.getLong(PersistenceOptions.INSTANCE_CLEANER_INTERVAL),
+        TimeUnit.MILLISECONDS);
+    long retryTimesFlushInterval =
+        configuration.getLong(JobManagerOptions.RETRY_TIMES_FLUSH_INTERVAL);
+    scheduledThreadPoolExecutor.scheduleWithFixedDelay(
+        retryScheduler::flushRetryTimes,
+        retryTimesFlushInterval,
+        retryTimesFlushInterval,
+        TimeUnit.MILLISECONDS);
   }
 
   public void stop() {
     if (scheduledThreadPoolExecutor != null) {
       ExecutorStUtil.gracefulShutdown(5000, TimeUnit.MILLISECONDS, scheduledThreadPoolExecutor);
     }
+    retryScheduler.flushRetryTimes();
   }
 
   /**
@@ -100,100 +158,258 @@ public class SchedulerService {
   public void addJobToPurgatory(@Nonnull JobInfo job) {}
 
   /**
-   * Check the Job status, excluded exception job。
+   * Returns the state of the instances in flight, to be updated by the dispatch and the worker
+   * reports.
+   */
+  public InstanceStateTable getInstanceStates() {
+    return instanceStates;
+  }
+
+  /**
+   * Returns the runtimes learned from the status changes, e.g. for the placement and the expected
+   * completion of the running instances.
+   */
+  public RuntimeEstimator getRuntimeEstimator() {
+    return runtimeEstimator;
+  }
+
+  /**
+   * Keeps the {@link InstanceStateTable} up to date: the instances which reached a final status
+   * leave the table and their deadline is cancelled, the others are refreshed. The time limits are
+   * set at dispatch, see {@link #armTimeLimit}.
    *
-   * @param jobInfos The {@link JobInfo} collection.
+   * @param event {@link JobStatusChangeEvent} instance.
    */
-  private void checkStatus(@Nonnull List<JobInfo> jobInfos) {
-    Lists.partition(jobInfos, MAX_BATCH)
-        .forEach(
-            partJobInfos -> {
-              Optional<List<InstanceInfo>> results =
-                  persistenceAdapter.findInstancesByAppId(
-                      Integer.parseInt(NetUtils.getLocalAddress().toString()));
-              if (!results.isPresent()) {
-                return;
-              }
-              List<InstanceInfo> instanceInfos = results.get();
-              for (InstanceInfo instanceInfo : instanceInfos) {
-                // 1. check the job which the status is WAITING_DISPATCH.
-                if (instanceInfo.getStatus() == WAITING_DISPATCH.getStatus()) {
-                  long time = Instant.now().toEpochMilli() - instanceInfo.getGmtUpdate().getTime();
-                  // case1 dispatch failure. skip it.
-                  if (time < DISPATCH_TIMEOUT_MS) {
-                    return;
-                  }
-
-                  Optional<JobInfo> jobInfo =
-                      persistenceAdapter.findJobById(instanceInfo.getJobId());
-                  if (jobInfo.isPresent()) {
-                    // dispatch job.
-                    eventBus.post(DispatchJobEvent.builder().build());
-                  }
-                  // 2. check
-                } else if (instanceInfo.getStatus() == WAITING_WORKER_RECEIVE.getStatus()) {
-                  LOG.warn(
-                      "[checkStatus] instance {} didn't receive any reply from worker",
-                      instanceInfo.getId());
-                  Optional<JobInfo> job = persistenceAdapter.findJobById(instanceInfo.getJobId());
-                  if (job.isPresent()) {
-                    // redispatch job.
-                    eventBus.post(ReDispatchJobEvent.builder().build());
-                  }
-
-                } else if (instanceInfo.getStatus() == RUNNING.getStatus()) {
-                  // 检查 RUNNING 状态的任务（一定时间没收到 worker 的状态报告，视为失败）
-                  if (instanceInfo.getGmtUpdate().getTime()
-                      < Instant.now().toEpochMilli() - DISPATCH_TIMEOUT_MS) {
-                    JobInfo jobInfo =
-                        persistenceAdapter
-                            .findJobById(instanceInfo.getJobId())
-                            .orElseGet(JobInfo::new);
-
-                    if (jobInfo.getStatus() != 1
-                        || (jobInfo.getTimeExpressionType() == 4
-                            || jobInfo.getTimeExpressionType() == 5)) {
-                      updateFailedInstance(instanceInfo);
-                      return;
-                    }
-
-                    if (instanceInfo.getRetryTimes() < jobInfo.getInstanceRetryNum()) {
-                      // redispatch
-                      eventBus.post(ReDispatchJobEvent.builder().build());
-                    } else {
-                      updateFailedInstance(instanceInfo);
-                    }
-                  }
-                }
-              }
-            });
+  @Subscribe
+  public void onJobStatusChange(JobStatusChangeEvent event) {
+    if (event.getStatus() == null) {
+      return;
+    }
+    long instanceId = event.getInstanceId();
+    int status = event.getStatus().getStatus();
+    long now = System.currentTimeMillis();
+    if (isFinished(status)) {
+      instanceStates.remove(instanceId);
+      instanceDeadlines.cancel(instanceId);
+      retryScheduler.cancel(instanceId);
+      // the runtimes are learned from the completions the workers report to the dispatcher
+      runtimeEstimator.onFinished(instanceId);
+      return;
+    }
+
+    int previousStatus = instanceStates.getStatus(instanceId);
+    if (!instanceStates.update(instanceId, status, now)) {
+      instanceStates.put(instanceId, event.getJobId(), status, now, 0);
+    }
+    if (status == RUNNING.getStatus() && previousStatus != RUNNING.getStatus()) {
+      runtimeEstimator.onStarted(instanceId, event.getJobId(), now);
+    }
+    armDeadline(instanceId);
   }
 
   /**
-   * Process failed instance that report timeout.
+   * Sets the time limit of the instance when it is dispatched, counted from the dispatch: the time
+   * limit of its job, or for the jobs without one the limit learned from the runtime of the job if
+   * {@link JobManagerOptions#RUNTIME_TIMEOUT_ENABLED} is set.
    *
-   * @param instanceInfo
+   * @param instanceId Id of the dispatched instance.
+   * @param jobInfo The job of the instance.
+   * @param dispatchTime Time of the dispatch in milliseconds.
    */
-  private void updateFailedInstance(InstanceInfo instanceInfo) {
-    LOG.warn(
-        "[checkStatus] detected instance(id={},jobId={}) report timeout,this instance is considered a failure.",
-        instanceInfo.getId(),
-        instanceInfo.getJobId());
+  private void armTimeLimit(long instanceId, JobInfo jobInfo, long dispatchTime) {
+    Long jobTimeLimit = jobInfo.getInstanceTimeLimit();
+    long timeLimit =
+        jobTimeLimit != null && jobTimeLimit > 0
+            ? jobTimeLimit
+            : runtimeEstimator.timeLimitOf(jobInfo.getId());
+    if (timeLimit > 0 && instanceStates.setTimeLimit(instanceId, dispatchTime + timeLimit)) {
+      armDeadline(instanceId);
+    }
+  }
 
-    instanceInfo.setStatus(FAILED.getStatus());
-    instanceInfo.setCompletedTime(new Date());
-    instanceInfo.setResult(InstanceResult.WORKER_REPORT_TIMEOUT);
+  /** Arms the deadline of the instance at its expiry in the {@link InstanceStateTable}. */
+  private void armDeadline(long instanceId) {
+    long expiry = instanceStates.expiryOf(instanceId, this::timeoutOf);
+    if (expiry == InstanceStateTable.MISSING || expiry == Long.MAX_VALUE) {
+      instanceDeadlines.cancel(instanceId);
+    } else {
+      instanceDeadlines.arm(instanceId, expiry);
+    }
+  }
 
-    persistenceAdapter.updateInstanceInfo(instanceInfo);
+  /**
+   * Called by the timer at the deadline of an instance. The instance may have been updated since
+   * the deadline was armed, it is then armed again at its new expiry.
+   */
+  private void onInstanceDeadline(long instanceId) {
+    try {
+      long expiry = instanceStates.expiryOf(instanceId, this::timeoutOf);
+      if (expiry == InstanceStateTable.MISSING || expiry == Long.MAX_VALUE) {
+        return;
+      }
+      if (expiry > System.currentTimeMillis()) {
+        instanceDeadlines.arm(instanceId, expiry);
+        return;
+      }
+      InstanceInfo instanceInfo = instanceStates.get(instanceId);
+      if (instanceInfo != null) {
+        checkStatus(Collections.singletonList(instanceInfo));
+      }
+    } catch (Exception e) {
+      LOG.error("[checkStatus] check instance {} at its deadline failed.", instanceId, e);
+    }
+  }
 
-    // publish job failure event.
+  /**
+   * Check the status of one page of instances under the current server, excluded exception job。
+   *
+   * @param instanceInfos The timed out instances, may only carry the status fields.
+   */
+  void checkStatus(@Nonnull List<InstanceInfo> instanceInfos) {
+    List<InstanceInfo> failedInstances = new ArrayList<>();
+    long now = Instant.now().toEpochMilli();
+    for (InstanceInfo instanceInfo : instanceInfos) {
+      // 1. check the job which the status is WAITING_DISPATCH.
+      if (instanceInfo.getStatus() == WAITING_DISPATCH.getStatus()) {
+        Optional<JobInfo> jobInfo = persistenceAdapter.findJobById(instanceInfo.getJobId());
+        if (jobInfo.isPresent()) {
+          // dispatch job.
+          eventBus.post(DispatchJobEvent.builder().build());
+        }
+        instanceStates.update(instanceInfo.getId(), instanceInfo.getStatus(), now);
+        armDeadline(instanceInfo.getId());
+        // 2. check
+      } else if (instanceInfo.getStatus() == WAITING_WORKER_RECEIVE.getStatus()) {
+        LOG.warn(
+            "[checkStatus] instance {} didn't receive any reply from worker", instanceInfo.getId());
+        Optional<JobInfo> job = persistenceAdapter.findJobById(instanceInfo.getJobId());
+        if (!job.isPresent()) {
+          instanceStates.update(instanceInfo.getId(), instanceInfo.getStatus(), now);
+          armDeadline(instanceInfo.getId());
+        } else if (hasRetriesLeft(instanceInfo, job.get())) {
+          // redispatch job.
+          retry(instanceInfo, job.get(), now);
+        } else {
+          failedInstances.add(instanceInfo);
+        }
+
+      } else if (instanceInfo.getStatus() == RUNNING.getStatus()) {
+        // 检查 RUNNING 状态的任务（一定时间没收到 worker 的状态报告，视为失败）
+        JobInfo jobInfo =
+            persistenceAdapter.findJobById(instanceInfo.getJobId()).orElseGet(JobInfo::new);
+
+        if (jobInfo.getStatus() != 1
+            || (jobInfo.getTimeExpressionType() == 4 || jobInfo.getTimeExpressionType() == 5)
+            || instanceStates.getTimeLimit(instanceInfo.getId()) <= now) {
+          failedInstances.add(instanceInfo);
+          continue;
+        }
+
+        if (hasRetriesLeft(instanceInfo, jobInfo)) {
+          // redispatch
+          retry(instanceInfo, jobInfo, now);
+        } else {
+          failedInstances.add(instanceInfo);
+        }
+      }
+    }
+    updateFailedInstances(failedInstances);
+  }
+
+  /** Whether the instance may be retried again, the job bounds its retries. */
+  private static boolean hasRetriesLeft(InstanceInfo instanceInfo, JobInfo jobInfo) {
+    Integer instanceRetryNum = jobInfo.getInstanceRetryNum();
+    return instanceRetryNum != null && instanceInfo.getRetryTimes() < instanceRetryNum;
+  }
+
+  /**
+   * Redispatches the instance after its retry backoff. Its timeout is pushed back by the backoff,
+   * so that it does not expire before the retry ran.
+   *
+   * @param instanceInfo The instance to retry, may only carry the status fields.
+   * @param jobInfo The job of the instance.
+   * @param now Current time in milliseconds.
+   */
+  private void retry(InstanceInfo instanceInfo, JobInfo jobInfo, long now) {
+    long instanceId = instanceInfo.getId();
+    int retryTimes = instanceInfo.getRetryTimes() + 1;
+    long backoff =
+        retryScheduler.schedule(
+            instanceId, retryTimes, jobInfo, () -> redispatch(instanceId, jobInfo));
+    if (backoff < 0) {
+      return;
+    }
+    instanceStates.update(instanceId, instanceInfo.getStatus(), now + backoff, retryTimes);
+    armDeadline(instanceId);
+    LOG.info(
+        "[checkStatus] instance {} will be retried for the {} time in {} ms.",
+        instanceId,
+        retryTimes,
+        backoff);
+  }
+
+  private void redispatch(long instanceId, JobInfo jobInfo) {
+    InstanceInfo instanceInfo = instanceStates.get(instanceId);
+    if (instanceInfo == null) {
+      // completed meanwhile
+      return;
+    }
+    long now = System.currentTimeMillis();
+    armTimeLimit(instanceId, jobInfo, now);
     eventBus.post(
-        JobStatusChangeEvent.builder()
-            .withInstanceId(instanceInfo.getId())
-            .withJobId(instanceInfo.getJobId())
-            .withStatus(FAILED)
-            .withCause(InstanceResult.WORKER_REPORT_TIMEOUT)
+        ReDispatchJobEvent.builder()
+            .withJobInfo(jobInfo)
+            .withInstanceId(instanceId)
+            .withRunningTimes(instanceInfo.getRetryTimes())
             .build());
+    instanceStates.update(instanceId, instanceInfo.getStatus(), now);
+    armDeadline(instanceId);
+  }
+
+  /**
+   * Process failed instances that report timeout or exceeded their time limit, written back in one
+   * batch.
+   *
+   * @param instanceInfos The failed instances, may only carry the status fields.
+   */
+  private void updateFailedInstances(List<InstanceInfo> instanceInfos) {
+    if (instanceInfos.isEmpty()) {
+      return;
+    }
+    Date now = new Date();
+    for (InstanceInfo instanceInfo : instanceInfos) {
+      String cause =
+          instanceStates.getTimeLimit(instanceInfo.getId()) <= now.getTime()
+              ? InstanceResult.INSTANCE_TIME_LIMIT_EXCEEDED
+              : InstanceResult.WORKER_REPORT_TIMEOUT;
+      LOG.warn(
+          "[checkStatus] detected instance(id={},jobId={}) failure: {}",
+          instanceInfo.getId(),
+          instanceInfo.getJobId(),
+          cause);
+
+      instanceInfo.setStatus(FAILED.getStatus());
+      instanceInfo.setCompletedTime(now);
+      instanceInfo.setResult(cause);
+    }
+
+    persistenceAdapter.updateInstanceStatuses(instanceInfos);
+    for (InstanceInfo instanceInfo : instanceInfos) {
+      instanceStates.remove(instanceInfo.getId());
+      instanceDeadlines.cancel(instanceInfo.getId());
+      retryScheduler.cancel(instanceInfo.getId());
+    }
+
+    // publish job failure event.
+    for (InstanceInfo instanceInfo : instanceInfos) {
+      eventBus.post(
+          JobStatusChangeEvent.builder()
+              .withInstanceId(instanceInfo.getId())
+              .withJobId(instanceInfo.getJobId())
+              .withStatus(FAILED)
+              .withCause(instanceInfo.getResult())
+              .build());
+    }
   }
 
   /**
@@ -204,22 +420,26 @@ public class SchedulerService {
   private void scheduleCronJob(JobInfo jobInfo) {
     InstanceInfo instanceInfo = generateInstanceRecord(jobInfo);
     persistenceAdapter.saveInstanceInfo(instanceInfo);
+    instanceStates.put(instanceInfo);
+    armDeadline(instanceInfo.getId());
     LOG.info("[scheduleCronJob] The cron job will be scheduled： {}.", jobInfo);
 
     long nextTriggerTime = jobInfo.getNextTriggerTime();
+    long fireTime = fireTimeOf(jobInfo);
     long delay = 0;
     long now = Instant.now().toEpochMilli();
-    if (nextTriggerTime < now) {
+    if (fireTime < now) {
       LOG.warn(
           "[Job-{}] schedule delay, expect: {}, current: {}",
           jobInfo.getId(),
           nextTriggerTime,
           now);
     } else {
-      delay = nextTriggerTime - now;
+      delay = fireTime - now;
     }
     hashedWheelTimer.schedule(
         () -> {
+          armTimeLimit(instanceInfo.getId(), jobInfo, System.currentTimeMillis());
           eventBus.post(DispatchJobEvent.builder().build());
         },
         delay,
@@ -228,6 +448,32 @@ public class SchedulerService {
     refreshJob(jobInfo);
   }
 
+  /**
+   * Returns the time the next trigger of the job fires: the jobs due together are spread over
+   * their tolerance, the next trigger time of the job itself is kept.
+   */
+  long fireTimeOf(JobInfo jobInfo) {
+    return triggerOptimizer
+        .optimize(
+            Trigger.of(jobInfo.getId(), jobInfo.getNextTriggerTime(), triggerToleranceOf(jobInfo)))
+        .getFireTime();
+  }
+
+  /**
+   * Returns the trigger of the job after its next trigger time, which is the time the job was due
+   * and not the time it fired: the delay of a trigger never shifts the period of the job.
+   */
+  @Nullable
+  Date nextTriggerTimeOf(JobInfo jobInfo) {
+    return calculateNextTriggerTime(
+        jobInfo.getNextTriggerTime(), jobInfo.getTimeExpressionType(), jobInfo.getTimeExpression());
+  }
+
+  private static long triggerToleranceOf(JobInfo jobInfo) {
+    Long tolerance = jobInfo.getTriggerTolerance();
+    return tolerance == null || tolerance < 0 ? 0L : tolerance;
+  }
+
   /**
    * Schedule job that the type is workflow.
    *
@@ -249,11 +495,7 @@ public class SchedulerService {
    * @param jobInfo {@link JobInfo} instance.
    */
   private void refreshJob(JobInfo jobInfo) {
-    Date nextTriggerTime =
-        calculateNextTriggerTime(
-            jobInfo.getNextTriggerTime(),
-            jobInfo.getTimeExpressionType(),
-            jobInfo.getTimeExpression());
+    Date nextTriggerTime = nextTriggerTimeOf(jobInfo);
 
     if (nextTriggerTime == null) {
       LOG.warn(
@@ -315,68 +557,140 @@ public class SchedulerService {
         throw new IllegalArgumentException();
     }
   }
+
+  private static boolean isFinished(int status) {
+    return status == FAILED.getStatus()
+        || status == SUCCEED.getStatus()
+        || status == CANCELED.getStatus()
+        || status == STOPPED.getStatus();
+  }
+
+  /** Returns how long an instance may stay in the status without any update. */
+  long timeoutOf(int status) {
+    if (status == WAITING_DISPATCH.getStatus()
+        || status == WAITING_WORKER_RECEIVE.getStatus()
+        || status == RUNNING.getStatus()) {
+      return dispatchTimeout;
+    }
+    return InstanceStateTable.NO_TIMEOUT;
+  }
+
   // ===================== SCHEDULERS =====================
 
-  /** Used to check the status of tasks that under the current server. */
+  /**
+   * Used to check the status of tasks that under the current server. The instances in flight are
+   * loaded once from the persistence into the {@link InstanceStateTable} and their deadlines armed.
+   * The timeouts then fire on the timer, every run only sweeps the table for the instances overdue
+   * by more than a run, which the timer missed.
+   */
   class TasksStatusChecker implements Runnable {
     @Override
     public void run() {
       Stopwatch stopwatch = Stopwatch.createStarted();
-      Optional<List<JobInfo>> jobInfos =
-          persistenceAdapter.findJobByAppId(
-              Integer.parseInt(NetUtils.getLocalAddress().toString()));
-
-      if (!jobInfos.isPresent()) {
-        LOG.info("[TaskAcquirer] current server has no job to check");
-        return;
-      }
-
+      int checked = 0;
       try {
-        checkStatus(jobInfos.get());
-
+        if (!instanceStatesLoaded) {
+          loadInstanceStates();
+          instanceStatesLoaded = true;
+        }
+        checked = instanceStates.size();
+        long overdue = Instant.now().toEpochMilli() - SERVER_STATUS_CHECKER_DELAY;
+        checkStatus(instanceStates.sweep(overdue, SchedulerService.this::timeoutOf));
       } catch (Exception e) {
         LOG.info(
             "[TaskAcquirer] job status check failed, cause: {}",
             ExceptionUtil.stringifyException(e));
       }
-      LOG.info("[TaskAcquirer] job check used {}", stopwatch.stop());
+      LOG.info("[TaskAcquirer] checked {} instances, used {}", checked, stopwatch.stop());
+    }
+
+    private void loadInstanceStates() {
+      Iterator<List<InstanceInfo>> pages =
+          persistenceAdapter.streamInstanceStatusByAppId(
+              Integer.parseInt(NetUtils.getLocalAddress().toString()), SCAN_PAGE_SIZE);
+      while (pages.hasNext()) {
+        for (InstanceInfo instanceInfo : pages.next()) {
+          if (instanceInfo.getStatus() != null && !isFinished(instanceInfo.getStatus())) {
+            instanceStates.put(instanceInfo);
+            armDeadline(instanceInfo.getId());
+          }
+        }
+      }
+      LOG.info("[TaskAcquirer] loaded {} instances in flight.", instanceStates.size());
     }
   }
 
-  /** Used to obtain the task that belongs to current server. */
+  /**
+   * Used to obtain the task that belongs to current server. Jobs are claimed in batches through
+   * {@link PersistenceAdapter#claimJobs(long, String, int, long)}, so several schedulers can pull
+   * concurrently without firing the same job twice; the leases of the jobs already claimed are
+   * renewed first.
+   */
   class TaskAcquirer implements Runnable {
     @Override
     public void run() {
-      Optional<List<JobInfo>> jobs =
-          persistenceAdapter.findJobByAppIdAndStatus(
-              Integer.parseInt(NetUtils.getLocalAddress().toString()), JobStatus.NEW.getStatus());
-      if (!jobs.isPresent()) {
-        return;
+      long leaseMillis = configuration.getLong(JobManagerOptions.JOB_CLAIM_LEASE);
+      try {
+        persistenceAdapter.renewJobLeases(serverId, leaseMillis);
+      } catch (Exception e) {
+        LOG.error("[TaskAcquirer] renew job leases failed.", e);
       }
 
-      for (JobInfo jobInfo : jobs.get()) {
-        jobInfo.setStatus(JobStatus.RUNNING.getStatus());
-        try {
-          persistenceAdapter.updateJobInfo(jobInfo);
-        } catch (Exception e) {
-          LOG.error(
-              "[updateInstanceInfo] occur error, err: {}", ExceptionUtil.stringifyException(e));
-        }
+      // an exception escaping run() would cancel the periodic acquisition
+      try {
+        List<JobInfo> claimed;
+        do {
+          claimed =
+              persistenceAdapter.claimJobs(
+                  Integer.parseInt(NetUtils.getLocalAddress().toString()),
+                  serverId,
+                  claimBatchSize,
+                  leaseMillis);
+          claimed.forEach(this::acquire);
+        } while (claimed.size() == claimBatchSize);
+      } catch (Exception e) {
+        LOG.error("[TaskAcquirer] claim jobs failed.", e);
+      }
+    }
 
-        try {
-          if (jobInfo.getTimeExpressionType() == ExpressionType.CRON) {
-            scheduleCronJob(jobInfo);
-          }
-        } catch (Exception e) {
-          LOG.error("[scheduleCronJob] schedule cron job failed.", e);
+    private void acquire(JobInfo jobInfo) {
+      try {
+        if (jobInfo.getTimeExpressionType() == ExpressionType.CRON) {
+          scheduleCronJob(jobInfo);
         }
+      } catch (Exception e) {
+        LOG.error("[scheduleCronJob] schedule cron job failed.", e);
       }
     }
   }
 
-  /** Used to clean expire log. */
+  /**
+   * Used to clean expire log: creates the instance partitions of the coming days and drops the ones
+   * older than the retention.
+   */
   class LogCleaner implements Runnable {
     @Override
-    public void run() {}
+    public void run() {
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      LocalDate today = LocalDate.now();
+      int precreateDays =
+          configuration.getInteger(PersistenceOptions.INSTANCE_PARTITION_PRECREATE_DAYS);
+      int retentionDays = configuration.getInteger(PersistenceOptions.INSTANCE_RETENTION_DAYS);
+      try {
+        persistenceAdapter.ensureInstancePartitions(toDate(today.plusDays(precreateDays)));
+      } catch (Exception e) {
+        LOG.error("[LogCleaner] create instance partitions failed.", e);
+      }
+      try {
+        persistenceAdapter.purgeInstancesBefore(toDate(today.minusDays(retentionDays)));
+      } catch (Exception e) {
+        LOG.error("[LogCleaner] purge instance history failed.", e);
+      }
+      LOG.info("[LogCleaner] instance history clean used {}", stopwatch.stop());
+    }
+
+    private Date toDate(LocalDate day) {
+      return Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
   }
 }
@@ -0,0 +1,95 @@
+package xyz.vopen.framework.neptune.core.metrics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import xyz.vopen.framework.neptune.common.configuration.Configuration;
+import xyz.vopen.framework.neptune.common.utils.time.Time;
+import xyz.vopen.framework.neptune.rpc.RpcService;
+import xyz.vopen.framework.neptune.rpc.akka.AkkaRpcServiceUtils;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link RpcMetricsTest} Tests of the {@link RpcMetrics}: the metrics of a gateway method are
+ * queried after its first call, and registered once however often it is called.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class RpcMetricsTest {
+  private static final Time TIMEOUT = Time.seconds(10L);
+  private static final String QUERY_METRICS = "rpc.MetricServiceGateway.queryMetrics.";
+
+  private RpcService rpcService;
+  private CountingMetricService metricService;
+  private MetricServiceGateway gateway;
+
+  /** Counts the registrations of every metric name. */
+  private static class CountingMetricService extends MetricService {
+    private final Map<String, AtomicInteger> added = new ConcurrentHashMap<>();
+
+    CountingMetricService(RpcService rpcService) {
+      super(rpcService);
+    }
+
+    @Override
+    public void addMetric(@Nonnull String name, @Nonnull Metric metric) {
+      added.computeIfAbsent(name, key -> new AtomicInteger()).incrementAndGet();
+      super.addMetric(name, metric);
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    rpcService = AkkaRpcServiceUtils.localServiceBuilder(new Configuration()).createAndStart();
+    metricService = new CountingMetricService(rpcService);
+    metricService.start();
+    RpcMetrics.register(metricService, rpcService.getStatistics());
+    gateway =
+        rpcService
+            .connect(metricService.getAddress(), MetricServiceGateway.class)
+            .get(10L, TimeUnit.SECONDS);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    rpcService.stopService().get(30L, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testQueryMetricsShowsCalledMethod() throws Exception {
+    gateway.queryMetrics(TIMEOUT).get(10L, TimeUnit.SECONDS);
+
+    Map<String, Number> metrics =
+        gateway.queryMetrics(TIMEOUT).get(10L, TimeUnit.SECONDS).getMetrics();
+
+    assertTrue(metrics.toString(), metrics.get(QUERY_METRICS + "calls").longValue() >= 1L);
+    assertEquals(0L, metrics.get(QUERY_METRICS + "failures").longValue());
+    assertEquals(0L, metrics.get(QUERY_METRICS + "timeouts").longValue());
+    assertTrue(metrics.get(QUERY_METRICS + "latency.count").longValue() >= 1L);
+    assertTrue(metrics.containsKey(QUERY_METRICS + "invocation.p99"));
+    assertTrue(metrics.containsKey("rpc.connections.hits"));
+  }
+
+  @Test
+  public void testMethodMetricsRegisteredOnce() throws Exception {
+    for (int i = 0; i < 10; i++) {
+      gateway.queryMetrics(TIMEOUT).get(10L, TimeUnit.SECONDS);
+    }
+    // once per listener: the second one receives the method called before it was set
+    RpcMetrics.register(metricService, rpcService.getStatistics());
+
+    assertEquals(2, metricService.added.get(QUERY_METRICS + "calls").get());
+    metricService.added.clear();
+    gateway.queryMetrics(TIMEOUT).get(10L, TimeUnit.SECONDS);
+    assertTrue(metricService.added.toString(), metricService.added.isEmpty());
+  }
+}
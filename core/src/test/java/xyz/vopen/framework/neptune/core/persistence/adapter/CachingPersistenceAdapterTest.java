@@ -0,0 +1,113 @@
+package xyz.vopen.framework.neptune.core.persistence.adapter;
+
+import org.junit.Test;
+import xyz.vopen.framework.neptune.common.enums.JobStatus;
+import xyz.vopen.framework.neptune.common.model.JobInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+/**
+ * {@link CachingPersistenceAdapterTest} Tests of the {@link CachingPersistenceAdapter}: the reads
+ * served from the cache return copies, and the job writes invalidate the cached job locally and
+ * broadcast the invalidation to the other servers.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class CachingPersistenceAdapterTest {
+  private static final long APP_ID = 7L;
+
+  private final InMemoryPersistenceAdapter delegate = InMemoryPersistenceAdapter.create(0L, 0L);
+  private final CachingPersistenceAdapter adapter = CachingPersistenceAdapter.create(delegate, 100);
+  private final List<Long> broadcast = Collections.synchronizedList(new ArrayList<>());
+
+  {
+    adapter.setInvalidationBroadcaster(broadcast::add);
+  }
+
+  @Test
+  public void testReadsServedFromCache() {
+    saveJob(1L, "first");
+    broadcast.clear();
+
+    adapter.findJobById(1L);
+    adapter.findJobById(1L);
+    adapter.findJobById(1L);
+
+    assertEquals(1L, adapter.getJobInfoCache().getMissCount());
+    assertEquals(2L, adapter.getJobInfoCache().getHitCount());
+    assertEquals(Collections.emptyList(), broadcast);
+  }
+
+  @Test
+  public void testReadsReturnCopies() {
+    saveJob(1L, "first");
+
+    adapter.findJobById(1L);
+    JobInfo cached = adapter.findJobById(1L).get();
+    cached.setJobName("changed");
+    JobInfo again = adapter.findJobById(1L).get();
+
+    assertNotSame(cached, again);
+    assertEquals("first", again.getJobName());
+  }
+
+  @Test
+  public void testWritesInvalidateAndBroadcast() {
+    saveJob(1L, "first");
+    saveJob(2L, "second");
+    adapter.findJobById(1L);
+    adapter.findJobById(2L);
+
+    JobInfo job = adapter.findJobById(1L).get();
+    job.setJobName("updated");
+    adapter.updateJobInfo(job);
+
+    assertEquals("updated", adapter.findJobById(1L).get().getJobName());
+    assertEquals(Arrays.asList(1L, 2L, 1L), broadcast);
+  }
+
+  @Test
+  public void testClaimsInvalidateAndBroadcast() {
+    saveJob(1L, "first");
+    adapter.findJobById(1L);
+    broadcast.clear();
+
+    assertEquals(1, adapter.claimJobs(APP_ID, "server-1", 10, 60_000L).size());
+
+    assertEquals("server-1", adapter.findJobById(1L).get().getClaimServer());
+    assertEquals(Collections.singletonList(1L), broadcast);
+  }
+
+  @Test
+  public void testRemoteInvalidationNotBroadcast() {
+    saveJob(1L, "first");
+    adapter.findJobById(1L);
+    broadcast.clear();
+
+    JobInfo changed = delegate.findJobById(1L).get();
+    changed.setJobName("changed remotely");
+    delegate.updateJobInfo(changed);
+    adapter.invalidateLocal(1L);
+
+    assertEquals("changed remotely", adapter.findJobById(1L).get().getJobName());
+    assertEquals(Collections.emptyList(), broadcast);
+  }
+
+  // =====================  Internal  =====================
+
+  private void saveJob(long id, String name) {
+    JobInfo job = new JobInfo();
+    job.setId(id);
+    job.setAppId(APP_ID);
+    job.setJobName(name);
+    job.setStatus(JobStatus.NEW.getStatus());
+    adapter.saveJobInfo(job);
+  }
+}
@@ -0,0 +1,127 @@
+package xyz.vopen.framework.neptune.core.persistence.adapter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import xyz.vopen.framework.neptune.common.configuration.Configuration;
+import xyz.vopen.framework.neptune.common.configuration.PersistenceOptions;
+import xyz.vopen.framework.neptune.common.enums.JobStatus;
+import xyz.vopen.framework.neptune.common.model.InstanceInfo;
+import xyz.vopen.framework.neptune.common.model.JobInfo;
+
+import java.io.IOException;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link EmbeddedPersistenceAdapterTest} Tests of the secondary indexes of the {@link
+ * EmbeddedPersistenceAdapter}: the deleted and purged instances leave them, and the leases are
+ * renewed through the running jobs of the server, as they are rebuilt when the log is opened.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class EmbeddedPersistenceAdapterTest {
+  private static final long APP_ID = 7L;
+  private static final long LEASE_MILLIS = 60_000L;
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Configuration configuration;
+  private EmbeddedPersistenceAdapter adapter;
+
+  @Before
+  public void setUp() throws IOException {
+    configuration = new Configuration();
+    configuration.setString(
+        PersistenceOptions.EMBEDDED_DIRECTORY, temporaryFolder.newFolder().getPath());
+    configuration.setInteger(PersistenceOptions.EMBEDDED_SEGMENT_SIZE, 64 * 1024);
+    adapter = EmbeddedPersistenceAdapter.create(configuration);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    adapter.close();
+  }
+
+  @Test
+  public void testDeleteInstanceLeavesIndexes() {
+    saveInstance(1L, new Date());
+    saveInstance(2L, new Date());
+
+    adapter.deleteInstance(1L);
+    adapter.deleteInstance(1L);
+
+    assertFalse(adapter.findByInstanceId(1L).isPresent());
+    assertEquals(1, adapter.indexedInstancesOfJob(1L));
+    assertEquals(1, adapter.findInstancesByAppId(APP_ID).get().size());
+  }
+
+  @Test
+  public void testPurgeLeavesIndexes() {
+    Date old = new Date(System.currentTimeMillis() - 86_400_000L);
+    for (long id = 1L; id <= 4L; id++) {
+      saveInstance(id, id <= 3L ? old : new Date());
+    }
+
+    adapter.purgeInstancesBefore(new Date(old.getTime() + 1L));
+
+    assertEquals(1, adapter.indexedInstancesOfJob(1L));
+    assertEquals(1, adapter.findInstancesByAppId(APP_ID).get().size());
+  }
+
+  @Test
+  public void testRenewsLeasesOfRunningJobs() throws InterruptedException {
+    for (long id = 1L; id <= 4L; id++) {
+      saveJob(id);
+    }
+    assertEquals(4, adapter.claimJobs(APP_ID, "server-1", 10, LEASE_MILLIS).size());
+    JobInfo finished = adapter.findJobById(4L).get();
+    finished.setStatus(JobStatus.STOP.getStatus());
+    adapter.updateJobInfo(finished);
+    assertEquals(3, adapter.indexedLeasesOf("server-1"));
+
+    long claimedLease = adapter.findJobById(1L).get().getLeaseExpireTime();
+    Thread.sleep(5L);
+    adapter.renewJobLeases("server-1", LEASE_MILLIS);
+
+    assertTrue(adapter.findJobById(1L).get().getLeaseExpireTime() > claimedLease);
+    assertEquals(claimedLease, (long) adapter.findJobById(4L).get().getLeaseExpireTime());
+    assertEquals(0, adapter.indexedLeasesOf("server-2"));
+  }
+
+  @Test
+  public void testLeasesIndexedOnOpen() throws IOException {
+    saveJob(1L);
+    saveJob(2L);
+    adapter.claimJobs(APP_ID, "server-1", 1, LEASE_MILLIS);
+    adapter.close();
+
+    adapter = EmbeddedPersistenceAdapter.create(configuration);
+
+    assertEquals(1, adapter.indexedLeasesOf("server-1"));
+    assertEquals(1, adapter.claimJobs(APP_ID, "server-2", 10, LEASE_MILLIS).size());
+    assertEquals(1, adapter.indexedLeasesOf("server-2"));
+  }
+
+  // =====================  Internal  =====================
+
+  private void saveJob(long id) {
+    JobInfo job = new JobInfo();
+    job.setId(id);
+    job.setAppId(APP_ID);
+    job.setStatus(JobStatus.NEW.getStatus());
+    adapter.saveJobInfo(job);
+  }
+
+  private void saveInstance(long id, Date gmtCreate) {
+    InstanceInfo instance = InstanceInfo.builder().id(id).appId(APP_ID).jobId(1L).build();
+    instance.setGmtCreate(gmtCreate);
+    adapter.saveInstanceInfo(instance);
+  }
+}
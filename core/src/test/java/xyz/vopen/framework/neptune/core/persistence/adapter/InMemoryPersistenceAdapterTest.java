@@ -0,0 +1,214 @@
+package xyz.vopen.framework.neptune.core.persistence.adapter;
+
+import org.junit.Test;
+import xyz.vopen.framework.neptune.common.enums.JobStatus;
+import xyz.vopen.framework.neptune.common.model.InstanceInfo;
+import xyz.vopen.framework.neptune.common.model.JobInfo;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link InMemoryPersistenceAdapterTest} Tests of the {@link InMemoryPersistenceAdapter}: the pages
+ * of jobs, the deletes and purges of instances, and the claims of jobs, which never hand the same
+ * job to two servers.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class InMemoryPersistenceAdapterTest {
+  private static final long APP_ID = 7L;
+  private static final long LEASE_MILLIS = 60_000L;
+
+  private final InMemoryPersistenceAdapter adapter = InMemoryPersistenceAdapter.create(0L, 0L);
+
+  @Test
+  public void testJobPages() {
+    saveJobs(1L, 5L, JobStatus.NEW);
+    saveJob(6L, APP_ID + 1, JobStatus.NEW);
+
+    assertEquals(ids(1L, 2L), ids(adapter.findJobPageByAppId(APP_ID, Long.MIN_VALUE, 2)));
+    assertEquals(ids(3L, 4L), ids(adapter.findJobPageByAppId(APP_ID, 2L, 2)));
+    assertEquals(ids(5L), ids(adapter.findJobPageByAppId(APP_ID, 4L, 2)));
+    assertTrue(adapter.findJobPageByAppId(APP_ID, 5L, 2).isEmpty());
+  }
+
+  @Test
+  public void testJobPagesByStatusFollowUpdates() {
+    saveJobs(1L, 4L, JobStatus.NEW);
+    JobInfo job = adapter.findJobById(2L).get();
+    job.setStatus(JobStatus.RUNNING.getStatus());
+    adapter.updateJobInfo(job);
+
+    int status = JobStatus.NEW.getStatus();
+    assertEquals(
+        ids(1L, 3L, 4L),
+        ids(adapter.findJobPageByAppIdAndStatus(APP_ID, status, Long.MIN_VALUE, 10)));
+    assertEquals(ids(4L), ids(adapter.findJobPageByAppIdAndStatus(APP_ID, status, 3L, 10)));
+    assertEquals(
+        ids(2L), ids(adapter.findJobByAppIdAndStatus(APP_ID, JobStatus.RUNNING.getStatus()).get()));
+  }
+
+  @Test
+  public void testDeleteAndPurgeInstances() {
+    Date old = new Date(System.currentTimeMillis() - 86_400_000L);
+    for (long id = 1L; id <= 4L; id++) {
+      InstanceInfo instance = InstanceInfo.builder().id(id).appId(APP_ID).jobId(1L).build();
+      instance.setGmtCreate(id <= 2L ? old : new Date());
+      adapter.saveInstanceInfo(instance);
+    }
+
+    adapter.deleteInstance(4L);
+    adapter.purgeInstancesBefore(new Date(old.getTime() + 1L));
+
+    assertFalse(adapter.findByInstanceId(1L).isPresent());
+    assertFalse(adapter.findByInstanceId(4L).isPresent());
+    assertEquals(
+        ids(3L),
+        adapter.findInstancesByAppId(APP_ID).get().stream()
+            .map(InstanceInfo::getId)
+            .collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testClaimTakesNewJobsAndSkipsLeasedJobs() {
+    saveJobs(1L, 3L, JobStatus.NEW);
+
+    List<JobInfo> claimed = adapter.claimJobs(APP_ID, "server-1", 2, LEASE_MILLIS);
+
+    assertEquals(ids(1L, 2L), ids(claimed));
+    for (JobInfo job : claimed) {
+      assertEquals(JobStatus.RUNNING.getStatus(), (int) job.getStatus());
+      assertEquals("server-1", job.getClaimServer());
+      assertEquals("server-1", adapter.findJobById(job.getId()).get().getClaimServer());
+    }
+    assertEquals(ids(3L), ids(adapter.claimJobs(APP_ID, "server-2", 10, LEASE_MILLIS)));
+    assertTrue(adapter.claimJobs(APP_ID, "server-2", 10, LEASE_MILLIS).isEmpty());
+  }
+
+  @Test
+  public void testClaimTakesJobsWhoseLeaseExpired() throws Exception {
+    saveJobs(1L, 2L, JobStatus.NEW);
+    adapter.claimJobs(APP_ID, "server-1", 1, LEASE_MILLIS);
+    adapter.claimJobs(APP_ID, "server-1", 1, -1L);
+    Thread.sleep(2L);
+
+    List<JobInfo> claimed = adapter.claimJobs(APP_ID, "server-2", 10, LEASE_MILLIS);
+
+    assertEquals(ids(2L), ids(claimed));
+    assertEquals("server-1", adapter.findJobById(1L).get().getClaimServer());
+  }
+
+  @Test
+  public void testRenewedLeaseIsNotClaimed() throws Exception {
+    saveJobs(1L, 1L, JobStatus.NEW);
+    adapter.claimJobs(APP_ID, "server-1", 1, -1L);
+    adapter.renewJobLeases("server-1", LEASE_MILLIS);
+    Thread.sleep(2L);
+
+    assertTrue(adapter.claimJobs(APP_ID, "server-2", 10, LEASE_MILLIS).isEmpty());
+  }
+
+  @Test
+  public void testUpdateKeepsClaim() {
+    saveJobs(1L, 1L, JobStatus.NEW);
+    JobInfo job = adapter.claimJobs(APP_ID, "server-1", 1, LEASE_MILLIS).get(0);
+    job.setClaimServer(null);
+    job.setLeaseExpireTime(null);
+    job.setJobName("renamed");
+
+    adapter.updateJobInfo(job);
+
+    JobInfo stored = adapter.findJobById(1L).get();
+    assertEquals("renamed", stored.getJobName());
+    assertEquals("server-1", stored.getClaimServer());
+    assertTrue(stored.getLeaseExpireTime() > System.currentTimeMillis());
+  }
+
+  @Test
+  public void testConcurrentClaimsNeverShareJob() throws Exception {
+    int jobCount = 2_000;
+    int servers = 8;
+    saveJobs(1L, jobCount, JobStatus.NEW);
+
+    ExecutorService executor = Executors.newFixedThreadPool(servers);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<List<Long>>> futures = new ArrayList<>();
+      for (int i = 0; i < servers; i++) {
+        String serverId = "server-" + i;
+        futures.add(
+            executor.submit(
+                () -> {
+                  start.await();
+                  List<Long> claimed = new ArrayList<>();
+                  for (List<JobInfo> batch = claim(serverId);
+                      !batch.isEmpty();
+                      batch = claim(serverId)) {
+                    for (JobInfo job : batch) {
+                      assertEquals(serverId, job.getClaimServer());
+                      claimed.add(job.getId());
+                    }
+                  }
+                  return claimed;
+                }));
+      }
+      start.countDown();
+
+      Set<Long> claimed = new HashSet<>();
+      for (Future<List<Long>> future : futures) {
+        for (long id : future.get(30L, TimeUnit.SECONDS)) {
+          assertTrue("claimed twice: " + id, claimed.add(id));
+        }
+      }
+      assertEquals(jobCount, claimed.size());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  // =====================  Internal  =====================
+
+  private List<JobInfo> claim(String serverId) {
+    return adapter.claimJobs(APP_ID, serverId, 7, LEASE_MILLIS);
+  }
+
+  private void saveJobs(long fromId, long toId, JobStatus status) {
+    for (long id = fromId; id <= toId; id++) {
+      saveJob(id, APP_ID, status);
+    }
+  }
+
+  private void saveJob(long id, long appId, JobStatus status) {
+    JobInfo job = new JobInfo();
+    job.setId(id);
+    job.setAppId(appId);
+    job.setStatus(status.getStatus());
+    adapter.saveJobInfo(job);
+  }
+
+  private static List<Long> ids(long... ids) {
+    List<Long> list = new ArrayList<>();
+    for (long id : ids) {
+      list.add(id);
+    }
+    return list;
+  }
+
+  private static List<Long> ids(List<JobInfo> jobs) {
+    return jobs.stream().map(JobInfo::getId).collect(Collectors.toList());
+  }
+}
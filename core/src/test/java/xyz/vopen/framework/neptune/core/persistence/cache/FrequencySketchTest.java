@@ -0,0 +1,68 @@
+package xyz.vopen.framework.neptune.core.persistence.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link FrequencySketchTest} Tests of the {@link FrequencySketch}: the estimates of the counted
+ * keys, their 4-bit saturation and the halving once the sample is full.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class FrequencySketchTest {
+
+  @Test
+  public void testCountsIncrements() {
+    FrequencySketch sketch = new FrequencySketch(1000);
+    increment(sketch, 42L, 5);
+
+    assertEquals(5, sketch.frequency(42L));
+    assertEquals(0, sketch.frequency(43L));
+  }
+
+  @Test
+  public void testSaturatesAtFifteen() {
+    FrequencySketch sketch = new FrequencySketch(1000);
+    increment(sketch, 42L, 20);
+
+    assertEquals(15, sketch.frequency(42L));
+  }
+
+  @Test
+  public void testOrdersPopularKeys() {
+    FrequencySketch sketch = new FrequencySketch(1000);
+    for (long key = 0L; key < 100L; key++) {
+      increment(sketch, key, 1);
+    }
+    increment(sketch, 7L, 9);
+
+    assertTrue(sketch.frequency(7L) > sketch.frequency(8L));
+    assertEquals(10, sketch.frequency(7L));
+    // never counted: the four counters of an unknown key are not all shared with counted ones
+    assertEquals(0, sketch.frequency(1L << 40));
+  }
+
+  @Test
+  public void testHalvesOnceSampleIsFull() {
+    FrequencySketch sketch = new FrequencySketch(16);
+    increment(sketch, 42L, 15);
+
+    long key = 1000L;
+    while (sketch.frequency(42L) == 15) {
+      assertTrue("no reset after " + (key - 1000L) + " keys", key < 1000L + 10 * 16);
+      sketch.increment(key++);
+    }
+    assertEquals(7, sketch.frequency(42L));
+  }
+
+  // =====================  Internal  =====================
+
+  private static void increment(FrequencySketch sketch, long key, int times) {
+    for (int i = 0; i < times; i++) {
+      sketch.increment(key);
+    }
+  }
+}
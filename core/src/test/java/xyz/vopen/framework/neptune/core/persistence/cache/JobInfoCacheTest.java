@@ -0,0 +1,131 @@
+package xyz.vopen.framework.neptune.core.persistence.cache;
+
+import org.junit.Test;
+import xyz.vopen.framework.neptune.common.model.JobInfo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link JobInfoCacheTest} Tests of the {@link JobInfoCache}: the hits and misses, the loads
+ * racing an invalidation, the size bound and the admission of the jobs evicted from the window by
+ * their frequency.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class JobInfoCacheTest {
+
+  @Test
+  public void testHitsAndMisses() {
+    JobInfoCache cache = new JobInfoCache(100);
+    JobInfo job = job(1L);
+
+    assertNull(cache.getIfPresent(1L));
+    cache.put(1L, job, cache.generation());
+
+    assertSame(job, cache.getIfPresent(1L));
+    assertEquals(1L, cache.getHitCount());
+    assertEquals(1L, cache.getMissCount());
+    assertEquals(0.5d, cache.hitRate(), 0.0d);
+  }
+
+  @Test
+  public void testLoadRacingInvalidationNotCached() {
+    JobInfoCache cache = new JobInfoCache(100);
+    long generation = cache.generation();
+    cache.invalidate(1L);
+
+    cache.put(1L, job(1L), generation);
+
+    assertNull(cache.getIfPresent(1L));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testInvalidate() {
+    JobInfoCache cache = new JobInfoCache(100);
+    for (long id = 1L; id <= 10L; id++) {
+      cache.put(id, job(id), cache.generation());
+    }
+    // promoted to the protected segment
+    cache.getIfPresent(2L);
+
+    cache.invalidate(2L);
+    cache.invalidate(10L);
+    assertNull(cache.getIfPresent(2L));
+    assertNull(cache.getIfPresent(10L));
+    assertEquals(8, cache.size());
+
+    cache.invalidateAll();
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testSizeBounded() {
+    JobInfoCache cache = new JobInfoCache(100);
+    for (long id = 1L; id <= 1000L; id++) {
+      cache.getIfPresent(id);
+      cache.put(id, job(id), cache.generation());
+    }
+
+    assertEquals(100, cache.size());
+    assertEquals(900L, cache.getEvictionCount());
+  }
+
+  @Test
+  public void testAdmissionByFrequency() {
+    JobInfoCache cache = new JobInfoCache(10);
+    for (long id = 1L; id <= 10L; id++) {
+      cache.put(id, job(id), cache.generation());
+    }
+    for (int i = 0; i < 5; i++) {
+      cache.getIfPresent(100L);
+    }
+
+    // each put evicts the previous job of the one-entry window
+    cache.put(100L, job(100L), cache.generation());
+    cache.put(101L, job(101L), cache.generation());
+    cache.put(102L, job(102L), cache.generation());
+
+    assertNotNull("more frequent than the probation victim", cache.getIfPresent(100L));
+    assertNull("as frequent as the probation victim", cache.getIfPresent(101L));
+    assertNull("replaced by the frequent job", cache.getIfPresent(1L));
+    assertEquals(10, cache.size());
+  }
+
+  @Test
+  public void testFrequentJobsSurviveScan() {
+    JobInfoCache cache = new JobInfoCache(100);
+    for (long id = 1L; id <= 50L; id++) {
+      cache.put(id, job(id), cache.generation());
+    }
+    for (int i = 0; i < 10; i++) {
+      for (long id = 1L; id <= 50L; id++) {
+        cache.getIfPresent(id);
+      }
+    }
+
+    // four times the cache, within one sample of the sketch
+    for (long id = 1000L; id < 1400L; id++) {
+      if (cache.getIfPresent(id) == null) {
+        cache.put(id, job(id), cache.generation());
+      }
+    }
+
+    for (long id = 1L; id <= 50L; id++) {
+      assertTrue("job " + id, cache.getIfPresent(id) != null);
+    }
+  }
+
+  // =====================  Internal  =====================
+
+  private static JobInfo job(long id) {
+    JobInfo job = new JobInfo();
+    job.setId(id);
+    return job;
+  }
+}
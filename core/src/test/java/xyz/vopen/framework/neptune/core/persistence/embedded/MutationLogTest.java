@@ -0,0 +1,248 @@
+package xyz.vopen.framework.neptune.core.persistence.embedded;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import xyz.vopen.framework.neptune.common.model.InstanceInfo;
+import xyz.vopen.framework.neptune.common.model.JobInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link MutationLogTest} Tests of the recovery, the compaction, the deletions and the closing of
+ * the {@link MutationLog}.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/27
+ */
+public class MutationLogTest {
+  private static final int SEGMENT_SIZE = 4096;
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File directory;
+  private MutationLog log;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = temporaryFolder.newFolder();
+    log = MutationLog.open(directory, SEGMENT_SIZE, false);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    log.close();
+  }
+
+  @Test
+  public void testRecoverDropsTruncatedTail() throws IOException {
+    appendJob(1L, "first");
+    appendJob(2L, "second");
+    int tailOffset = segmentPosition();
+    appendJob(3L, "third");
+    log.close();
+
+    // the file ends within the id of the last record, as after a crash during the write; the
+    // trailing null fields of a record are zero bytes, a cut among them would lose nothing
+    try (RandomAccessFile file = new RandomAccessFile(segmentFile(0), "rw")) {
+      file.setLength(tailOffset + LogSegment.HEADER_SIZE + 1);
+    }
+
+    log = MutationLog.open(directory, SEGMENT_SIZE, false);
+    assertEquals("first", jobName(1L));
+    assertEquals("second", jobName(2L));
+    assertNull(readJob(3L));
+
+    // appends go after the last valid record
+    appendJob(4L, "fourth");
+    log.close();
+    log = MutationLog.open(directory, SEGMENT_SIZE, false);
+    assertEquals(3, log.size(MutationLog.TYPE_JOB));
+    assertEquals("second", jobName(2L));
+    assertEquals("fourth", jobName(4L));
+  }
+
+  @Test
+  public void testRecoverDropsCorruptedTail() throws IOException {
+    appendJob(1L, "first");
+    int tailOffset = segmentPosition();
+    appendJob(2L, "second");
+    log.close();
+
+    // the length of the last record was written, the end of its payload was not
+    try (RandomAccessFile file = new RandomAccessFile(segmentFile(0), "rw")) {
+      file.seek(tailOffset);
+      int lastByte = tailOffset + file.readInt() - 1;
+      file.seek(lastByte);
+      int value = file.readByte();
+      file.seek(lastByte);
+      file.writeByte(~value);
+    }
+
+    log = MutationLog.open(directory, SEGMENT_SIZE, false);
+    assertEquals("first", jobName(1L));
+    assertNull(readJob(2L));
+  }
+
+  @Test
+  public void testCompactKeepsLatestRecords() throws IOException {
+    for (int version = 0; version < 50; version++) {
+      for (long jobId = 1L; jobId <= 3L; jobId++) {
+        appendJob(jobId, "job-" + jobId + "-v" + version);
+      }
+    }
+    int segments = segmentFiles().length;
+    assertTrue("the updates should span several segments", segments > 2);
+
+    int compacted = log.compact(0.5d);
+
+    assertTrue(compacted > 0);
+    assertEquals(segments - compacted, segmentFiles().length);
+    assertEquals(3, log.size(MutationLog.TYPE_JOB));
+    for (long jobId = 1L; jobId <= 3L; jobId++) {
+      assertEquals("job-" + jobId + "-v49", jobName(jobId));
+    }
+
+    log.close();
+    log = MutationLog.open(directory, SEGMENT_SIZE, false);
+    assertEquals(3, log.size(MutationLog.TYPE_JOB));
+    for (long jobId = 1L; jobId <= 3L; jobId++) {
+      assertEquals("job-" + jobId + "-v49", jobName(jobId));
+    }
+  }
+
+  @Test
+  public void testCompactKeepsDeletions() throws IOException {
+    InstanceInfo instance = InstanceInfo.builder().id(10L).appId(1L).jobId(1L).build();
+    log.append(MutationLog.TYPE_INSTANCE, 10L, instance, RecordCodec::writeInstance);
+    for (int version = 0; version < 20; version++) {
+      appendJob(1L, "job-v" + version);
+    }
+    log.deleteInstance(10L);
+    for (int version = 20; version < 60; version++) {
+      appendJob(1L, "job-v" + version);
+    }
+
+    assertTrue(log.compact(0.5d) > 0);
+    log.close();
+    log = MutationLog.open(directory, SEGMENT_SIZE, false);
+
+    assertNull(log.get(MutationLog.TYPE_INSTANCE, 10L, RecordCodec::readInstance));
+    assertEquals(0, log.size(MutationLog.TYPE_INSTANCE));
+    assertEquals("job-v59", jobName(1L));
+  }
+
+  @Test
+  public void testDeleteInstancesIfReturnsDeleted() {
+    for (long id = 1L; id <= 6L; id++) {
+      InstanceInfo instance = InstanceInfo.builder().id(id).appId(1L).jobId(id % 2).build();
+      log.append(MutationLog.TYPE_INSTANCE, id, instance, RecordCodec::writeInstance);
+    }
+
+    List<InstanceInfo> deleted =
+        log.deleteInstancesIf(RecordCodec::readInstance, instance -> instance.getJobId() == 0L);
+
+    assertEquals(
+        Arrays.asList(2L, 4L, 6L),
+        deleted.stream().map(InstanceInfo::getId).sorted().collect(Collectors.toList()));
+    assertEquals(3, log.size(MutationLog.TYPE_INSTANCE));
+    assertTrue(
+        log.deleteInstancesIf(RecordCodec::readInstance, instance -> instance.getJobId() == 0L)
+            .isEmpty());
+  }
+
+  @Test
+  public void testCloseUnmapsSegments() throws IOException {
+    File maps = new File("/proc/self/maps");
+    if (!maps.canRead()) {
+      // only Linux lists the mappings of the process
+      return;
+    }
+    for (int version = 0; version < 50; version++) {
+      appendJob(1L, "job-v" + version);
+    }
+    assertTrue(mappedSegments(maps) > 1);
+
+    log.close();
+
+    assertEquals(0, mappedSegments(maps));
+  }
+
+  @Test
+  public void testClosedLogRejectsAccess() throws IOException {
+    appendJob(1L, "first");
+    log.close();
+
+    try {
+      appendJob(2L, "second");
+      fail("appended to a closed log");
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      readJob(1L);
+      fail("read a closed log");
+    } catch (IllegalStateException expected) {
+    }
+    assertEquals(0, log.compact(1.0d));
+  }
+
+  // =====================  Internal  =====================
+
+  private void appendJob(long jobId, String jobName) {
+    JobInfo job = new JobInfo();
+    job.setId(jobId);
+    job.setAppId(1L);
+    job.setJobName(jobName);
+    log.append(MutationLog.TYPE_JOB, jobId, job, RecordCodec::writeJob);
+  }
+
+  private JobInfo readJob(long jobId) {
+    return log.get(MutationLog.TYPE_JOB, jobId, RecordCodec::readJob);
+  }
+
+  private String jobName(long jobId) {
+    JobInfo job = readJob(jobId);
+    assertNotNull("job " + jobId + " is missing", job);
+    return job.getJobName();
+  }
+
+  /** Returns the end of the written records of the only segment. */
+  private int segmentPosition() throws IOException {
+    try (RandomAccessFile file = new RandomAccessFile(segmentFile(0), "r")) {
+      int position = 0;
+      int length;
+      while ((length = file.readInt()) != 0) {
+        position += length;
+        file.seek(position);
+      }
+      return position;
+    }
+  }
+
+  private File segmentFile(int id) {
+    return new File(directory, LogSegment.fileName(id));
+  }
+
+  private long mappedSegments(File maps) throws IOException {
+    String path = directory.getCanonicalPath() + File.separator;
+    return Files.readAllLines(maps.toPath()).stream().filter(line -> line.contains(path)).count();
+  }
+
+  private File[] segmentFiles() {
+    return directory.listFiles((dir, name) -> LogSegment.parseId(name) >= 0);
+  }
+}
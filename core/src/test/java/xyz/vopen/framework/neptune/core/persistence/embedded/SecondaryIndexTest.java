@@ -0,0 +1,97 @@
+package xyz.vopen.framework.neptune.core.persistence.embedded;
+
+import org.junit.Test;
+import xyz.vopen.framework.neptune.common.model.InstanceInfo;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link SecondaryIndexTest} Tests of the {@link SecondaryIndex}: the pages of keys of a value,
+ * the removed and deleted entities, and the entities that moved to another value.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class SecondaryIndexTest {
+
+  private final Map<Long, InstanceInfo> stored = new HashMap<>();
+  private final SecondaryIndex<InstanceInfo, Long> instancesByJobId =
+      new SecondaryIndex<>(InstanceInfo::getJobId);
+
+  @Test
+  public void testLookupPages() {
+    for (long id = 1L; id <= 5L; id++) {
+      write(id, 7L);
+    }
+    write(6L, 8L);
+
+    assertEquals(Arrays.asList(1L, 2L), lookup(7L, Long.MIN_VALUE, 2));
+    assertEquals(Arrays.asList(3L, 4L), lookup(7L, 2L, 2));
+    assertEquals(Arrays.asList(5L), lookup(7L, 4L, 2));
+    assertTrue(lookup(7L, 5L, 2).isEmpty());
+    assertTrue(lookup(9L, Long.MIN_VALUE, 2).isEmpty());
+  }
+
+  @Test
+  public void testRemoveDropsEmptiedValue() {
+    write(1L, 7L);
+    write(2L, 7L);
+
+    instancesByJobId.remove(1L, stored.remove(1L));
+    assertEquals(1, instancesByJobId.size(7L));
+    instancesByJobId.remove(2L, stored.remove(2L));
+    assertEquals(0, instancesByJobId.size(7L));
+
+    // a removed value is indexed again by the next write
+    write(3L, 7L);
+    assertEquals(Arrays.asList(3L), lookup(7L, Long.MIN_VALUE, 10));
+  }
+
+  @Test
+  public void testDeletedKeyDroppedByLookup() {
+    write(1L, 7L);
+    write(2L, 7L);
+    stored.remove(1L);
+
+    assertEquals(Arrays.asList(2L), lookup(7L, Long.MIN_VALUE, 10));
+    assertEquals(1, instancesByJobId.size(7L));
+  }
+
+  @Test
+  public void testMovedKeySkipped() {
+    write(1L, 7L);
+    write(1L, 8L);
+
+    assertTrue(lookup(7L, Long.MIN_VALUE, 10).isEmpty());
+    assertEquals(Arrays.asList(1L), lookup(8L, Long.MIN_VALUE, 10));
+  }
+
+  @Test
+  public void testNullFieldNotIndexed() {
+    write(1L, null);
+
+    instancesByJobId.remove(1L, stored.get(1L));
+    assertEquals(0, instancesByJobId.size(7L));
+  }
+
+  // =====================  Internal  =====================
+
+  private void write(long id, Long jobId) {
+    InstanceInfo instance = InstanceInfo.builder().id(id).jobId(jobId).build();
+    stored.put(id, instance);
+    instancesByJobId.add(id, instance);
+  }
+
+  private List<Long> lookup(long jobId, long afterId, int limit) {
+    return instancesByJobId.lookup(jobId, afterId, limit, stored::get, instance -> true).stream()
+        .map(InstanceInfo::getId)
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,159 @@
+package xyz.vopen.framework.neptune.core.persistence.memory;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link MemoryTableTest} Tests of the {@link MemoryTable}: the copies in and out, the keyset scans
+ * over the whole table and over an index, and the index entries following the updates and deletes.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class MemoryTableTest {
+
+  private final MemoryTable<Row> table = MemoryTable.create(row -> row.id, Row::new);
+  private final MemoryTable.Index<Row> byGroup =
+      table.addIndex(row -> row.group == null ? MemoryTable.NO_KEY : row.group);
+
+  @Test
+  public void testRowsAreCopiedInAndOut() {
+    Row row = new Row(1L, 7L);
+    table.put(row);
+    row.group = 8L;
+
+    Row stored = table.get(1L);
+    assertEquals(7L, (long) stored.group);
+    stored.group = 9L;
+    assertEquals(7L, (long) table.get(1L).group);
+    assertNotSame(table.get(1L), table.get(1L));
+    assertNull(table.get(2L));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testIndexMustBeAddedToEmptyTable() {
+    table.put(new Row(1L, 7L));
+
+    table.addIndex(row -> row.id);
+  }
+
+  @Test
+  public void testKeysetScanOverTable() {
+    for (long id = 10L; id > 0; id--) {
+      table.put(new Row(id, id % 2));
+    }
+
+    assertEquals(ids(1L, 2L, 3L), ids(table.find(null, 0L, Long.MIN_VALUE, 3, row -> true)));
+    assertEquals(ids(4L, 5L, 6L), ids(table.find(null, 0L, 3L, 3, row -> true)));
+    assertEquals(ids(10L), ids(table.find(null, 0L, 9L, 3, row -> true)));
+    assertTrue(table.find(null, 0L, 10L, 3, row -> true).isEmpty());
+    assertTrue(table.find(null, 0L, Long.MIN_VALUE, 0, row -> true).isEmpty());
+  }
+
+  @Test
+  public void testKeysetScanOverIndex() {
+    for (long id = 1L; id <= 10L; id++) {
+      table.put(new Row(id, id % 2));
+    }
+
+    assertEquals(ids(2L, 4L), ids(table.find(byGroup, 0L, Long.MIN_VALUE, 2, row -> true)));
+    assertEquals(ids(6L, 8L), ids(table.find(byGroup, 0L, 4L, 2, row -> true)));
+    // the filter applies before the limit
+    assertEquals(
+        ids(5L, 7L), ids(table.find(byGroup, 1L, Long.MIN_VALUE, 2, row -> row.id > 3L)));
+    assertEquals(5L, table.count(byGroup, 1L, row -> true));
+    assertTrue(table.find(byGroup, 2L, row -> true).isEmpty());
+  }
+
+  @Test
+  public void testIndexFollowsUpdates() {
+    table.put(new Row(1L, 7L));
+    table.put(new Row(2L, 7L));
+
+    table.put(new Row(1L, 8L));
+    table.compute(2L, row -> new Row(row.id, null));
+
+    assertTrue(table.find(byGroup, 7L, row -> true).isEmpty());
+    assertEquals(ids(1L), ids(table.find(byGroup, 8L, row -> true)));
+    // left out of the index, still in the table
+    assertEquals(ids(1L, 2L), ids(table.find(null, 0L, row -> true)));
+  }
+
+  @Test
+  public void testUpdateMovesRowsBetweenKeys() {
+    for (long id = 1L; id <= 5L; id++) {
+      table.put(new Row(id, 7L));
+    }
+
+    List<Row> updated = table.update(byGroup, 7L, 3, row -> row.id != 2L, row -> row.group = 8L);
+
+    assertEquals(ids(1L, 3L, 4L), ids(updated));
+    assertEquals(ids(2L, 5L), ids(table.find(byGroup, 7L, row -> true)));
+    assertEquals(ids(1L, 3L, 4L), ids(table.find(byGroup, 8L, row -> true)));
+  }
+
+  @Test
+  public void testRemoveDropsIndexEntries() {
+    table.put(new Row(1L, 7L));
+    table.put(new Row(2L, 7L));
+    table.put(new Row(3L, null));
+
+    assertTrue(table.remove(1L));
+    assertTrue(table.remove(3L));
+    assertEquals(false, table.remove(3L));
+
+    assertEquals(ids(2L), ids(table.find(byGroup, 7L, row -> true)));
+    assertEquals(1, table.size());
+  }
+
+  @Test
+  public void testRemoveIfDropsIndexEntries() {
+    for (long id = 1L; id <= 10L; id++) {
+      table.put(new Row(id, id % 3));
+    }
+
+    assertEquals(5, table.removeIf(row -> row.id % 2 == 0));
+
+    assertEquals(5, table.size());
+    assertEquals(ids(3L, 9L), ids(table.find(byGroup, 0L, row -> true)));
+    assertEquals(ids(1L, 7L), ids(table.find(byGroup, 1L, row -> true)));
+    assertEquals(ids(5L), ids(table.find(byGroup, 2L, row -> true)));
+    assertEquals(0, table.removeIf(row -> false));
+  }
+
+  // =====================  Internal  =====================
+
+  private static List<Long> ids(long... ids) {
+    List<Long> list = new ArrayList<>();
+    for (long id : ids) {
+      list.add(id);
+    }
+    return list;
+  }
+
+  private static List<Long> ids(List<Row> rows) {
+    return rows.stream().map(row -> row.id).collect(Collectors.toList());
+  }
+
+  private static final class Row {
+    private final long id;
+    private Long group;
+
+    private Row(long id, Long group) {
+      this.id = id;
+      this.group = group;
+    }
+
+    private Row(Row row) {
+      this(row.id, row.group);
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package xyz.vopen.framework.neptune.core.persistence.memory;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link SortedLongSetTest} Tests of the {@link SortedLongSet}: inserts in and out of order,
+ * removes and the range scans after a value.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class SortedLongSetTest {
+
+  @Test
+  public void testAddKeepsValuesSortedAndUnique() {
+    SortedLongSet set = new SortedLongSet();
+    for (long value : new long[] {5L, 1L, 9L, 3L, 7L, 3L, 11L, 1L}) {
+      set.add(value);
+    }
+
+    assertEquals(Arrays.asList(1L, 3L, 5L, 7L, 9L, 11L), values(set));
+    assertFalse(set.add(9L));
+    assertTrue(set.add(Long.MIN_VALUE));
+    assertEquals(7, set.size());
+  }
+
+  @Test
+  public void testRemove() {
+    SortedLongSet set = of(1L, 2L, 3L, 4L);
+
+    assertTrue(set.remove(1L));
+    assertTrue(set.remove(4L));
+    assertFalse(set.remove(4L));
+    assertFalse(set.remove(10L));
+    assertEquals(Arrays.asList(2L, 3L), values(set));
+
+    set.remove(2L);
+    set.remove(3L);
+    assertTrue(set.isEmpty());
+  }
+
+  @Test
+  public void testRemoveIf() {
+    SortedLongSet set = of(1L, 2L, 3L, 4L, 5L, 6L);
+
+    set.removeIf(value -> value % 2 == 0);
+
+    assertEquals(Arrays.asList(1L, 3L, 5L), values(set));
+    assertEquals(3, set.size());
+  }
+
+  @Test
+  public void testForEachAfter() {
+    SortedLongSet set = of(10L, 20L, 30L, 40L);
+
+    // after a value of the set, and after a value between two values
+    assertEquals(Arrays.asList(30L, 40L), after(set, 20L, Integer.MAX_VALUE));
+    assertEquals(Arrays.asList(30L, 40L), after(set, 25L, Integer.MAX_VALUE));
+    assertEquals(Arrays.asList(10L, 20L, 30L, 40L), after(set, Long.MIN_VALUE, Integer.MAX_VALUE));
+    assertTrue(after(set, 40L, Integer.MAX_VALUE).isEmpty());
+    // stops once the visitor returns false
+    assertEquals(Arrays.asList(10L, 20L), after(set, 0L, 2));
+  }
+
+  @Test
+  public void testGrowsBeyondInitialCapacity() {
+    SortedLongSet set = new SortedLongSet();
+    for (long value = 1_000L; value > 0; value--) {
+      set.add(value);
+    }
+
+    List<Long> values = values(set);
+    assertEquals(1_000, values.size());
+    for (int i = 0; i < values.size(); i++) {
+      assertEquals(i + 1L, (long) values.get(i));
+    }
+  }
+
+  // =====================  Internal  =====================
+
+  private static SortedLongSet of(long... values) {
+    SortedLongSet set = new SortedLongSet();
+    for (long value : values) {
+      set.add(value);
+    }
+    return set;
+  }
+
+  private static List<Long> values(SortedLongSet set) {
+    List<Long> values = new ArrayList<>();
+    set.forEach(values::add);
+    return values;
+  }
+
+  private static List<Long> after(SortedLongSet set, long after, int limit) {
+    List<Long> values = new ArrayList<>();
+    set.forEachAfter(
+        after,
+        value -> {
+          values.add(value);
+          return values.size() < limit;
+        });
+    return values;
+  }
+}
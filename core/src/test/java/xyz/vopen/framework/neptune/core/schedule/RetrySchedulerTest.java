@@ -0,0 +1,128 @@
+package xyz.vopen.framework.neptune.core.schedule;
+
+import org.junit.After;
+import org.junit.Test;
+import xyz.vopen.framework.neptune.common.configuration.Configuration;
+import xyz.vopen.framework.neptune.common.configuration.JobManagerOptions;
+import xyz.vopen.framework.neptune.common.model.InstanceInfo;
+import xyz.vopen.framework.neptune.common.model.JobInfo;
+import xyz.vopen.framework.neptune.common.utils.time.timewheel.HashedWheelTimer;
+import xyz.vopen.framework.neptune.core.persistence.adapter.InMemoryPersistenceAdapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link RetrySchedulerTest} Tests of the backoff of the {@link RetryScheduler}, with the backoff
+ * of the scheduler and with the backoff of a job.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class RetrySchedulerTest {
+
+  private final HashedWheelTimer timer = HashedWheelTimer.defaultWheelTimer();
+  private final InMemoryPersistenceAdapter persistenceAdapter =
+      InMemoryPersistenceAdapter.create(0L, 0L);
+
+  @After
+  public void tearDown() {
+    timer.stop();
+  }
+
+  @Test
+  public void testBackoffGrowsExponentially() {
+    RetryScheduler scheduler = create(0.0d);
+    JobInfo job = new JobInfo();
+
+    assertEquals(1_000L, scheduler.backoffOf(1, job));
+    assertEquals(2_000L, scheduler.backoffOf(2, job));
+    assertEquals(4_000L, scheduler.backoffOf(3, job));
+  }
+
+  @Test
+  public void testBackoffIsCappedAtMax() {
+    RetryScheduler scheduler = create(0.0d);
+
+    assertEquals(60_000L, scheduler.backoffOf(30, new JobInfo()));
+  }
+
+  @Test
+  public void testJitterStaysWithinItsFraction() {
+    RetryScheduler scheduler = create(0.5d);
+    JobInfo job = new JobInfo();
+    for (int i = 0; i < 1_000; i++) {
+      long backoff = scheduler.backoffOf(3, job);
+      assertTrue("backoff " + backoff, backoff >= 2_000L && backoff <= 4_000L);
+    }
+  }
+
+  @Test
+  public void testJobBackoffOverridesScheduler() {
+    RetryScheduler scheduler = create(0.0d);
+    JobInfo job = new JobInfo();
+    job.setRetryBackoff(100L);
+    job.setMaxRetryBackoff(500L);
+
+    assertEquals(100L, scheduler.backoffOf(1, job));
+    assertEquals(400L, scheduler.backoffOf(3, job));
+    assertEquals(500L, scheduler.backoffOf(4, job));
+  }
+
+  @Test
+  public void testJobMaxBelowInitialIsRaised() {
+    RetryScheduler scheduler = create(0.0d);
+    JobInfo job = new JobInfo();
+    job.setMaxRetryBackoff(10L);
+
+    // the maximum never goes below the initial backoff of the scheduler
+    assertEquals(1_000L, scheduler.backoffOf(3, job));
+  }
+
+  @Test
+  public void testUnsetJobBackoffUsesScheduler() {
+    RetryScheduler scheduler = create(0.0d);
+    JobInfo job = new JobInfo();
+    job.setRetryBackoff(0L);
+
+    assertEquals(1_000L, scheduler.backoffOf(1, job));
+  }
+
+  @Test
+  public void testOneRetryPendingPerInstance() {
+    RetryScheduler scheduler = create(0.0d);
+    JobInfo job = new JobInfo();
+
+    assertEquals(1_000L, scheduler.schedule(1L, 1, job, () -> {}));
+    assertEquals(-1L, scheduler.schedule(1L, 2, job, () -> {}));
+    assertTrue(scheduler.isPending(1L));
+
+    scheduler.cancel(1L);
+    assertFalse(scheduler.isPending(1L));
+  }
+
+  @Test
+  public void testFlushWritesRetryTimes() {
+    persistenceAdapter.saveInstanceInfo(
+        InstanceInfo.builder().id(1L).appId(1L).jobId(1L).retryTimes(0).build());
+    RetryScheduler scheduler = create(0.0d);
+
+    scheduler.schedule(1L, 1, new JobInfo(), () -> {});
+    scheduler.flushRetryTimes();
+
+    assertEquals(
+        Integer.valueOf(1), persistenceAdapter.findByInstanceId(1L).get().getRetryTimes());
+  }
+
+  // =====================  Internal  =====================
+
+  private RetryScheduler create(double jitter) {
+    Configuration configuration = new Configuration();
+    configuration.setLong(JobManagerOptions.RETRY_BACKOFF_INITIAL, 1_000L);
+    configuration.setLong(JobManagerOptions.RETRY_BACKOFF_MAX, 60_000L);
+    configuration.setDouble(JobManagerOptions.RETRY_BACKOFF_MULTIPLIER, 2.0d);
+    configuration.setDouble(JobManagerOptions.RETRY_BACKOFF_JITTER, jitter);
+    return RetryScheduler.create(configuration, timer, persistenceAdapter);
+  }
+}
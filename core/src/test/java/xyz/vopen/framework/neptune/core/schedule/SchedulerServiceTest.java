@@ -0,0 +1,189 @@
+package xyz.vopen.framework.neptune.core.schedule;
+
+import com.google.common.eventbus.EventBus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import xyz.vopen.framework.neptune.common.configuration.Configuration;
+import xyz.vopen.framework.neptune.common.configuration.JobManagerOptions;
+import xyz.vopen.framework.neptune.common.constants.InstanceResult;
+import xyz.vopen.framework.neptune.common.enums.ExpressionType;
+import xyz.vopen.framework.neptune.common.model.InstanceInfo;
+import xyz.vopen.framework.neptune.common.model.JobInfo;
+import xyz.vopen.framework.neptune.core.persistence.Persistence;
+import xyz.vopen.framework.neptune.core.persistence.adapter.InMemoryPersistenceAdapter;
+import xyz.vopen.framework.neptune.core.persistence.adapter.PersistenceAdapter;
+import xyz.vopen.framework.neptune.rpc.RpcService;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static xyz.vopen.framework.neptune.common.enums.InstanceStatus.FAILED;
+import static xyz.vopen.framework.neptune.common.enums.InstanceStatus.RUNNING;
+import static xyz.vopen.framework.neptune.common.enums.InstanceStatus.SUCCEED;
+import static xyz.vopen.framework.neptune.common.enums.InstanceStatus.WAITING_DISPATCH;
+import static xyz.vopen.framework.neptune.common.enums.InstanceStatus.WAITING_WORKER_RECEIVE;
+
+/**
+ * {@link SchedulerServiceTest} Tests of the {@link SchedulerService}: the triggers of the cron
+ * jobs, spread over their tolerance without shifting the period of the jobs, and the instances
+ * never received by their worker, retried as often as their job allows.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class SchedulerServiceTest {
+  private static final long TOLERANCE = TimeUnit.MINUTES.toMillis(10L);
+
+  private final PersistenceAdapter persistenceAdapter = InMemoryPersistenceAdapter.create(0L, 0L);
+  private SchedulerService schedulerService;
+
+  @Before
+  public void setUp() {
+    schedulerService = schedulerService(new Configuration());
+  }
+
+  @After
+  public void tearDown() {
+    schedulerService.stop();
+  }
+
+  @Test
+  public void testFireTimeIsWithinTolerance() {
+    long due = nextMinute();
+    for (long jobId = 1L; jobId <= 1_000L; jobId++) {
+      long fireTime = schedulerService.fireTimeOf(cronJob(jobId, due));
+      assertTrue("fire time " + fireTime, fireTime >= due && fireTime <= due + TOLERANCE);
+    }
+  }
+
+  @Test
+  public void testNextTriggerFollowsStoredTriggerTime() {
+    long due = nextMinute();
+    JobInfo job = null;
+    // a job fired more than a period after it was due
+    for (long jobId = 1L; job == null; jobId++) {
+      JobInfo candidate = cronJob(jobId, due);
+      if (schedulerService.fireTimeOf(candidate) - due > TimeUnit.MINUTES.toMillis(2L)) {
+        job = candidate;
+      }
+    }
+
+    assertEquals(
+        due + TimeUnit.MINUTES.toMillis(1L), schedulerService.nextTriggerTimeOf(job).getTime());
+  }
+
+  @Test
+  public void testDispatchTimeoutIsConfigurable() {
+    assertEquals(30_000L, schedulerService.timeoutOf(WAITING_WORKER_RECEIVE.getStatus()));
+
+    Configuration configuration = new Configuration();
+    configuration.setLong(JobManagerOptions.DISPATCH_TIMEOUT, 5_000L);
+    SchedulerService configured = schedulerService(configuration);
+    try {
+      assertEquals(5_000L, configured.timeoutOf(WAITING_DISPATCH.getStatus()));
+      assertEquals(5_000L, configured.timeoutOf(WAITING_WORKER_RECEIVE.getStatus()));
+      assertEquals(5_000L, configured.timeoutOf(RUNNING.getStatus()));
+      assertEquals(InstanceStateTable.NO_TIMEOUT, configured.timeoutOf(SUCCEED.getStatus()));
+    } finally {
+      configured.stop();
+    }
+  }
+
+  @Test
+  public void testUnreceivedInstanceRetriedUpToRetryNum() {
+    JobInfo job = new JobInfo();
+    job.setId(1L);
+    job.setInstanceRetryNum(2);
+    persistenceAdapter.saveJobInfo(job);
+    persistenceAdapter.saveInstanceInfo(unreceivedInstance(10L, 1));
+    persistenceAdapter.saveInstanceInfo(unreceivedInstance(11L, 2));
+
+    schedulerService.checkStatus(
+        Arrays.asList(unreceivedInstance(10L, 1), unreceivedInstance(11L, 2)));
+
+    assertEquals(
+        WAITING_WORKER_RECEIVE.getStatus(),
+        (int) persistenceAdapter.findByInstanceId(10L).get().getStatus());
+    InstanceInfo failed = persistenceAdapter.findByInstanceId(11L).get();
+    assertEquals(FAILED.getStatus(), (int) failed.getStatus());
+    assertEquals(InstanceResult.WORKER_REPORT_TIMEOUT, failed.getResult());
+  }
+
+  @Test
+  public void testUnreceivedInstanceOfJobWithoutRetriesFails() {
+    JobInfo job = new JobInfo();
+    job.setId(1L);
+    persistenceAdapter.saveJobInfo(job);
+    persistenceAdapter.saveInstanceInfo(unreceivedInstance(10L, 0));
+
+    schedulerService.checkStatus(Collections.singletonList(unreceivedInstance(10L, 0)));
+
+    InstanceInfo failed = persistenceAdapter.findByInstanceId(10L).get();
+    assertEquals(FAILED.getStatus(), (int) failed.getStatus());
+  }
+
+  // =====================  Internal  =====================
+
+  private SchedulerService schedulerService(Configuration configuration) {
+    return new SchedulerService(
+        configuration,
+        rpcService(),
+        new Persistence() {
+          @Override
+          public void initialize() {}
+
+          @Override
+          public PersistenceAdapter getPersistenceAdapter() {
+            return persistenceAdapter;
+          }
+        },
+        new EventBus());
+  }
+
+  private static InstanceInfo unreceivedInstance(long instanceId, int retryTimes) {
+    return InstanceInfo.builder()
+        .id(instanceId)
+        .jobId(1L)
+        .status(WAITING_WORKER_RECEIVE.getStatus())
+        .retryTimes(retryTimes)
+        .build();
+  }
+
+  private static JobInfo cronJob(long jobId, long nextTriggerTime) {
+    JobInfo job = new JobInfo();
+    job.setId(jobId);
+    job.setTimeExpressionType(ExpressionType.CRON);
+    job.setTimeExpression("0 * * * * ?");
+    job.setNextTriggerTime(nextTriggerTime);
+    job.setTriggerTolerance(TOLERANCE);
+    return job;
+  }
+
+  /** A minute boundary an hour ahead, the cron expression triggers on every minute. */
+  private static long nextMinute() {
+    long minute = TimeUnit.MINUTES.toMillis(1L);
+    return (System.currentTimeMillis() / minute + 60L) * minute;
+  }
+
+  private static RpcService rpcService() {
+    return (RpcService)
+        Proxy.newProxyInstance(
+            SchedulerServiceTest.class.getClassLoader(),
+            new Class<?>[] {RpcService.class},
+            (proxy, method, args) -> {
+              switch (method.getName()) {
+                case "getAddress":
+                  return "127.0.0.1";
+                case "getPort":
+                  return 0;
+                default:
+                  throw new UnsupportedOperationException(method.getName());
+              }
+            });
+  }
+}
@@ -4,7 +4,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * {@link DefaultOptimizer}
+ * {@link DefaultOptimizer} Leaves the target unchanged.
  *
  * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
  * @version ${project.version} - 2020/10/9
@@ -12,5 +12,8 @@ import org.slf4j.LoggerFactory;
 public class DefaultOptimizer<T> implements Optimizer<T> {
   private static final Logger logger = LoggerFactory.getLogger(DefaultOptimizer.class);
 
-
+  @Override
+  public T optimize(T target) {
+    return target;
+  }
 }
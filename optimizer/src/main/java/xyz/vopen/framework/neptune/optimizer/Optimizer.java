@@ -1,11 +1,19 @@
 package xyz.vopen.framework.neptune.optimizer;
 
 /**
- * {@link Optimizer}
+ * {@link Optimizer} Rewrites a target into an equivalent one which is cheaper for the cluster to
+ * run, e.g. the trigger time of a job spread away from the crowd.
  *
  * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
  * @version ${project.version} - 2020/10/7
  */
 public interface Optimizer<T> {
 
+  /**
+   * Optimizes the target.
+   *
+   * @param target The target to optimize, never modified.
+   * @return The optimized target, the target itself if nothing can be done.
+   */
+  T optimize(T target);
 }
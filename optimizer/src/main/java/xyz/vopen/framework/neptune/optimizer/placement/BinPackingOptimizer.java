@@ -0,0 +1,401 @@
+package xyz.vopen.framework.neptune.optimizer.placement;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import xyz.vopen.framework.neptune.optimizer.Optimizer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ * {@link BinPackingOptimizer} Places the instances onto the workers with a best-fit decreasing
+ * heuristic on resource vectors. The free resources of a worker are the vector (CPU cores, memory,
+ * disk) reported by its last heartbeat, minus what was placed on it since. Its size is the sum of
+ * the components, each divided by its unit.
+ *
+ * <p>A batch is placed from the largest demand to the smallest, a demand goes to the smallest
+ * worker it fits in, i.e. the one left with the least free resources. To find it without scanning
+ * the workers, which are mostly fragments of the wrong shape once the cluster fills up, they are
+ * indexed in a grid of cells by the levels of their free CPU and memory, on a logarithmic scale of
+ * half an octave, and sorted by size within a cell. Every worker of a cell above the levels of the
+ * demand in both dimensions has room for it, only the cells at its levels are scanned for the
+ * workers which really fit, and the cells whose smallest worker is larger than the best one found
+ * are skipped.
+ *
+ * <p>The instances declaring no resource reserve nothing and would all land on the same worker,
+ * they are spread round-robin instead. Instances with designated workers are only placed among
+ * them. The workers to avoid, e.g. those running long tasks, are only chosen when no other worker
+ * fits.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class BinPackingOptimizer implements Optimizer<Placement> {
+  private static final Logger LOG = LoggerFactory.getLogger(BinPackingOptimizer.class);
+
+  /** Slack for the rounding of the resources. */
+  private static final double EPSILON = 1e-9;
+
+  /** Levels of a dimension: none, then half octaves from 2^-6 to 2^10 units. */
+  private static final int LEVELS = 34;
+
+  private static final int MIN_OCTAVE = -6;
+
+  private static final Comparator<Bin> BY_SIZE =
+      (left, right) -> {
+        int bySize = Double.compare(left.size, right.size);
+        return bySize != 0 ? bySize : Long.compare(left.sequence, right.sequence);
+      };
+
+  private final double cpuUnit;
+  private final double memoryUnit;
+  private final double diskUnit;
+
+  /** Workers by address, guarded by itself with the fields below. */
+  private final Map<String, Bin> bins = new HashMap<>();
+
+  /** Workers by cell, the cell of CPU level c and memory level m at c * LEVELS + m. */
+  private final TreeSet<Bin>[] cells = newCells();
+
+  private final List<Bin> ring = new ArrayList<>();
+  private Predicate<String> avoided = worker -> false;
+  private int cursor;
+  private long sequence;
+
+  private BinPackingOptimizer(double cpuUnit, double memoryUnit, double diskUnit) {
+    Preconditions.checkArgument(
+        cpuUnit > 0 && memoryUnit > 0 && diskUnit > 0, "resource units must be positive");
+    this.cpuUnit = cpuUnit;
+    this.memoryUnit = memoryUnit;
+    this.diskUnit = diskUnit;
+  }
+
+  /** Weighs one CPU core as much as 4 GB of memory and 100 GB of disk. */
+  public static BinPackingOptimizer create() {
+    return create(1.0, 4.0, 100.0);
+  }
+
+  /**
+   * @param cpuUnit CPU cores weighing as much as the other units.
+   * @param memoryUnit Memory in GB weighing as much as the other units.
+   * @param diskUnit Disk space in GB weighing as much as the other units.
+   */
+  public static BinPackingOptimizer create(double cpuUnit, double memoryUnit, double diskUnit) {
+    return new BinPackingOptimizer(cpuUnit, memoryUnit, diskUnit);
+  }
+
+  // =====================  Workers  =====================
+
+  /**
+   * Adds the worker or replaces its free resources, the placements made since its previous
+   * heartbeat are then accounted for by the worker itself. Heartbeats older than the last one are
+   * ignored.
+   */
+  public void onHeartbeat(WorkerResources resources) {
+    synchronized (bins) {
+      Bin bin = bins.get(resources.getAddress());
+      if (bin == null) {
+        bin = new Bin(resources.getAddress(), sequence++);
+        bins.put(bin.address, bin);
+        bin.ringIndex = ring.size();
+        ring.add(bin);
+      } else if (resources.getHeartbeatTime() < bin.heartbeatTime) {
+        return;
+      } else {
+        unindex(bin);
+      }
+      bin.cpuCores = resources.getCpuCores();
+      bin.memorySpace = resources.getMemorySpace();
+      bin.diskSpace = resources.getDiskSpace();
+      bin.heartbeatTime = resources.getHeartbeatTime();
+      index(bin);
+    }
+  }
+
+  /** @return false if the worker is unknown. */
+  public boolean removeWorker(String address) {
+    synchronized (bins) {
+      Bin bin = bins.remove(address);
+      if (bin == null) {
+        return false;
+      }
+      remove(bin);
+      return true;
+    }
+  }
+
+  /**
+   * Removes the workers whose last heartbeat is older than the given time.
+   *
+   * @return The number of removed workers.
+   */
+  public int removeWorkersBefore(long heartbeatTime) {
+    int removed = 0;
+    synchronized (bins) {
+      Iterator<Bin> iterator = bins.values().iterator();
+      while (iterator.hasNext()) {
+        Bin bin = iterator.next();
+        if (bin.heartbeatTime < heartbeatTime) {
+          iterator.remove();
+          remove(bin);
+          removed++;
+        }
+      }
+    }
+    if (removed > 0) {
+      LOG.info("[BinPackingOptimizer] removed {} workers without heartbeat.", removed);
+    }
+    return removed;
+  }
+
+  public int size() {
+    synchronized (bins) {
+      return bins.size();
+    }
+  }
+
+  /**
+   * Sets the workers to avoid, which are only chosen when no other worker fits.
+   *
+   * @param avoided Tests the address of a worker, called under the lock of the optimizer.
+   */
+  public void setAvoidedWorkers(Predicate<String> avoided) {
+    synchronized (bins) {
+      this.avoided = Preconditions.checkNotNull(avoided);
+    }
+  }
+
+  // =====================  Placement  =====================
+
+  /**
+   * Places the demands from the largest to the smallest, reserving their resources on the chosen
+   * workers. The demands no worker has room for are left unplaced.
+   */
+  @Override
+  public Placement optimize(Placement placement) {
+    List<Demand> demands = new ArrayList<>(placement.getDemands());
+    demands.sort(Comparator.comparingDouble((Demand demand) -> sizeOf(demand)).reversed());
+
+    Map<Long, List<String>> assignments = new HashMap<>(demands.size() * 2);
+    for (Demand demand : demands) {
+      List<String> workers;
+      // per demand, so that the heartbeats are not held up by a large batch
+      synchronized (bins) {
+        workers = place(demand);
+      }
+      if (!workers.isEmpty()) {
+        assignments.put(demand.getInstanceId(), workers);
+      }
+    }
+    return placement.withAssignments(assignments);
+  }
+
+  /** Must hold the lock. */
+  private List<String> place(Demand demand) {
+    List<Bin> chosen;
+    if (!demand.getDesignatedWorkers().isEmpty()) {
+      chosen = bestFitAmongDesignated(demand);
+    } else if (demand.isEmpty()) {
+      chosen = roundRobin(demand.getWorkerCount());
+    } else {
+      chosen = bestFit(demand);
+    }
+
+    List<String> workers = new ArrayList<>(chosen.size());
+    for (Bin bin : chosen) {
+      reserve(bin, demand);
+      workers.add(bin.address);
+    }
+    return workers;
+  }
+
+  /** Must hold the lock. */
+  private List<Bin> bestFit(Demand demand) {
+    int cpuLevel = levelOf(demand.getCpuCores() / cpuUnit);
+    int memoryLevel = levelOf(demand.getMemorySpace() / memoryUnit);
+    List<Bin> chosen = new ArrayList<>(demand.getWorkerCount());
+    while (chosen.size() < demand.getWorkerCount()) {
+      Bin best = null;
+      Bin bestAvoided = null;
+      for (int cpu = cpuLevel; cpu < LEVELS; cpu++) {
+        for (int memory = memoryLevel; memory < LEVELS; memory++) {
+          TreeSet<Bin> cell = cells[cpu * LEVELS + memory];
+          if (cell == null || cell.isEmpty() || (best != null && cell.first().size >= best.size)) {
+            continue;
+          }
+          // sorted by size, the first worker which fits is the best of the cell
+          for (Bin bin : cell) {
+            if (best != null && bin.size >= best.size) {
+              break;
+            }
+            if (!bin.fits(demand) || chosen.contains(bin)) {
+              continue;
+            }
+            if (!avoided.test(bin.address)) {
+              best = bin;
+              break;
+            }
+            if (bestAvoided == null || bin.size < bestAvoided.size) {
+              bestAvoided = bin;
+            }
+          }
+        }
+      }
+      if (best == null) {
+        best = bestAvoided;
+      }
+      if (best == null) {
+        break;
+      }
+      chosen.add(best);
+    }
+    return chosen;
+  }
+
+  /** Must hold the lock. */
+  private List<Bin> bestFitAmongDesignated(Demand demand) {
+    List<Bin> candidates = new ArrayList<>(demand.getDesignatedWorkers().size());
+    for (String address : demand.getDesignatedWorkers()) {
+      Bin bin = bins.get(address);
+      if (bin != null && bin.fits(demand)) {
+        candidates.add(bin);
+      }
+    }
+    if (candidates.isEmpty()) {
+      return candidates;
+    }
+    candidates.sort(BY_SIZE);
+    if (!demand.isEmpty()) {
+      // stable, the workers to avoid come last and stay sorted by size
+      candidates.sort(Comparator.comparing((Bin bin) -> avoided.test(bin.address)));
+    }
+    if (demand.isEmpty()) {
+      int start = cursor++ & Integer.MAX_VALUE;
+      List<Bin> chosen = new ArrayList<>(demand.getWorkerCount());
+      for (int i = 0; i < Math.min(demand.getWorkerCount(), candidates.size()); i++) {
+        chosen.add(candidates.get((start + i) % candidates.size()));
+      }
+      return chosen;
+    }
+    return candidates.size() <= demand.getWorkerCount()
+        ? candidates
+        : new ArrayList<>(candidates.subList(0, demand.getWorkerCount()));
+  }
+
+  /** Must hold the lock. */
+  private List<Bin> roundRobin(int count) {
+    int taken = Math.min(count, ring.size());
+    List<Bin> chosen = new ArrayList<>(taken);
+    List<Bin> skipped = new ArrayList<>();
+    int visited = 0;
+    while (chosen.size() < taken && visited < ring.size()) {
+      Bin bin = ring.get((cursor + visited++) % ring.size());
+      if (avoided.test(bin.address)) {
+        skipped.add(bin);
+      } else {
+        chosen.add(bin);
+      }
+    }
+    for (int i = 0; chosen.size() < taken; i++) {
+      chosen.add(skipped.get(i));
+    }
+    if (!ring.isEmpty()) {
+      cursor = (cursor + visited) % ring.size();
+    }
+    return chosen;
+  }
+
+  /** Must hold the lock. */
+  private void reserve(Bin bin, Demand demand) {
+    if (demand.isEmpty()) {
+      return;
+    }
+    unindex(bin);
+    bin.cpuCores = Math.max(0, bin.cpuCores - demand.getCpuCores());
+    bin.memorySpace = Math.max(0, bin.memorySpace - demand.getMemorySpace());
+    bin.diskSpace = Math.max(0, bin.diskSpace - demand.getDiskSpace());
+    index(bin);
+  }
+
+  /** Must hold the lock, the bin must be out of the map already. */
+  private void remove(Bin bin) {
+    unindex(bin);
+    Bin last = ring.remove(ring.size() - 1);
+    if (last != bin) {
+      ring.set(bin.ringIndex, last);
+      last.ringIndex = bin.ringIndex;
+    }
+  }
+
+  /** Must hold the lock, the resources of the bin must be set. */
+  private void index(Bin bin) {
+    bin.size = sizeOf(bin.cpuCores, bin.memorySpace, bin.diskSpace);
+    bin.cell = levelOf(bin.cpuCores / cpuUnit) * LEVELS + levelOf(bin.memorySpace / memoryUnit);
+    TreeSet<Bin> cell = cells[bin.cell];
+    if (cell == null) {
+      cell = cells[bin.cell] = new TreeSet<>(BY_SIZE);
+    }
+    cell.add(bin);
+  }
+
+  /** Must hold the lock, before the resources of the bin change. */
+  private void unindex(Bin bin) {
+    cells[bin.cell].remove(bin);
+  }
+
+  /**
+   * Returns the level of an amount of units: 0 for none, then one level per half octave, the
+   * amounts beyond the range are clamped to the first or the last level.
+   */
+  static int levelOf(double units) {
+    if (units <= 0) {
+      return 0;
+    }
+    double halfOctaves = (Math.log(units) / Math.log(2) - MIN_OCTAVE) * 2;
+    return (int) Math.max(1, Math.min(LEVELS - 1, 1 + Math.floor(halfOctaves)));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static TreeSet<Bin>[] newCells() {
+    return (TreeSet<Bin>[]) new TreeSet<?>[LEVELS * LEVELS];
+  }
+
+  private double sizeOf(Demand demand) {
+    return sizeOf(demand.getCpuCores(), demand.getMemorySpace(), demand.getDiskSpace());
+  }
+
+  private double sizeOf(double cpuCores, double memorySpace, double diskSpace) {
+    return cpuCores / cpuUnit + memorySpace / memoryUnit + diskSpace / diskUnit;
+  }
+
+  /** Free resources of a worker, guarded by the lock of the optimizer. */
+  private static final class Bin {
+    final String address;
+    final long sequence;
+    double cpuCores;
+    double memorySpace;
+    double diskSpace;
+    double size;
+    int cell;
+    long heartbeatTime = Long.MIN_VALUE;
+    int ringIndex;
+
+    Bin(String address, long sequence) {
+      this.address = address;
+      this.sequence = sequence;
+    }
+
+    boolean fits(Demand demand) {
+      return cpuCores + EPSILON >= demand.getCpuCores()
+          && memorySpace + EPSILON >= demand.getMemorySpace()
+          && diskSpace + EPSILON >= demand.getDiskSpace();
+    }
+  }
+}
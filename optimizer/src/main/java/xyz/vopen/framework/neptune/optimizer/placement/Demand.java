@@ -0,0 +1,123 @@
+package xyz.vopen.framework.neptune.optimizer.placement;
+
+import com.google.common.base.Preconditions;
+import xyz.vopen.framework.neptune.common.model.JobInfo;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * {@link Demand} Resources an instance needs on each of its workers, as declared by its job.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class Demand {
+  private final long instanceId;
+  private final double cpuCores;
+  private final double memorySpace;
+  private final double diskSpace;
+  private final int workerCount;
+  private final Set<String> designatedWorkers;
+
+  private Demand(
+      long instanceId,
+      double cpuCores,
+      double memorySpace,
+      double diskSpace,
+      int workerCount,
+      Set<String> designatedWorkers) {
+    Preconditions.checkArgument(
+        cpuCores >= 0 && memorySpace >= 0 && diskSpace >= 0, "resources must not be negative");
+    Preconditions.checkArgument(workerCount > 0, "workerCount must be positive");
+    this.instanceId = instanceId;
+    this.cpuCores = cpuCores;
+    this.memorySpace = memorySpace;
+    this.diskSpace = diskSpace;
+    this.workerCount = workerCount;
+    this.designatedWorkers = Collections.unmodifiableSet(designatedWorkers);
+  }
+
+  /** Demand of one worker, on any worker. */
+  public static Demand of(long instanceId, double cpuCores, double memorySpace, double diskSpace) {
+    return new Demand(instanceId, cpuCores, memorySpace, diskSpace, 1, Collections.emptySet());
+  }
+
+  /**
+   * Demand of an instance of the job: its minimum resources, on up to {@link
+   * JobInfo#getMaxWorkerCount()} workers among its designated workers, if any.
+   */
+  public static Demand of(long instanceId, JobInfo jobInfo) {
+    Integer maxWorkerCount = jobInfo.getMaxWorkerCount();
+    return new Demand(
+        instanceId,
+        jobInfo.getMinCpuCores(),
+        jobInfo.getMinMemorySpace(),
+        jobInfo.getMinDiskSpace(),
+        maxWorkerCount == null || maxWorkerCount <= 0 ? 1 : maxWorkerCount,
+        parseWorkers(jobInfo.getDesignatedWorkers()));
+  }
+
+  public long getInstanceId() {
+    return instanceId;
+  }
+
+  public double getCpuCores() {
+    return cpuCores;
+  }
+
+  public double getMemorySpace() {
+    return memorySpace;
+  }
+
+  public double getDiskSpace() {
+    return diskSpace;
+  }
+
+  /** The maximum number of workers the instance runs on, at least one. */
+  public int getWorkerCount() {
+    return workerCount;
+  }
+
+  /** The only workers the instance may run on, empty for any worker. */
+  public Set<String> getDesignatedWorkers() {
+    return designatedWorkers;
+  }
+
+  /** Returns true if the instance declares no resource at all. */
+  public boolean isEmpty() {
+    return cpuCores == 0 && memorySpace == 0 && diskSpace == 0;
+  }
+
+  private static Set<String> parseWorkers(String workers) {
+    if (workers == null || workers.trim().isEmpty()) {
+      return Collections.emptySet();
+    }
+    Set<String> result = new HashSet<>();
+    for (String worker : workers.split(",")) {
+      if (!worker.trim().isEmpty()) {
+        result.add(worker.trim());
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "Demand{"
+        + "instanceId="
+        + instanceId
+        + ", cpuCores="
+        + cpuCores
+        + ", memorySpace="
+        + memorySpace
+        + ", diskSpace="
+        + diskSpace
+        + ", workerCount="
+        + workerCount
+        + ", designatedWorkers="
+        + designatedWorkers
+        + '}';
+  }
+}
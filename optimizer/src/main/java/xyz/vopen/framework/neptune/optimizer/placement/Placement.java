@@ -0,0 +1,61 @@
+package xyz.vopen.framework.neptune.optimizer.placement;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link Placement} A batch of pending instances and the workers they are placed on.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class Placement {
+  private final List<Demand> demands;
+  private final Map<Long, List<String>> assignments;
+
+  private Placement(List<Demand> demands, Map<Long, List<String>> assignments) {
+    this.demands = Collections.unmodifiableList(Preconditions.checkNotNull(demands));
+    this.assignments = Collections.unmodifiableMap(Preconditions.checkNotNull(assignments));
+  }
+
+  /** Returns the placement of the demands, none placed yet. */
+  public static Placement of(List<Demand> demands) {
+    return new Placement(new ArrayList<>(demands), Collections.emptyMap());
+  }
+
+  /** Returns the same demands placed as given, by instance id. */
+  Placement withAssignments(Map<Long, List<String>> assignments) {
+    return new Placement(demands, new HashMap<>(assignments));
+  }
+
+  public List<Demand> getDemands() {
+    return demands;
+  }
+
+  /** Workers by instance id, the unplaced instances are absent. */
+  public Map<Long, List<String>> getAssignments() {
+    return assignments;
+  }
+
+  /** Returns the workers of the instance, empty if it is not placed. */
+  public List<String> getWorkers(long instanceId) {
+    List<String> workers = assignments.get(instanceId);
+    return workers == null ? Collections.emptyList() : workers;
+  }
+
+  /** Returns the demands no worker has room for. */
+  public List<Demand> getUnplaced() {
+    List<Demand> unplaced = new ArrayList<>();
+    for (Demand demand : demands) {
+      if (!assignments.containsKey(demand.getInstanceId())) {
+        unplaced.add(demand);
+      }
+    }
+    return unplaced;
+  }
+}
@@ -0,0 +1,77 @@
+package xyz.vopen.framework.neptune.optimizer.placement;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * {@link WorkerResources} Resources a worker reported free in its last heartbeat.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class WorkerResources {
+  private final String address;
+  private final double cpuCores;
+  private final double memorySpace;
+  private final double diskSpace;
+  private final long heartbeatTime;
+
+  private WorkerResources(
+      String address, double cpuCores, double memorySpace, double diskSpace, long heartbeatTime) {
+    this.address = Preconditions.checkNotNull(address, "address is null");
+    Preconditions.checkArgument(
+        cpuCores >= 0 && memorySpace >= 0 && diskSpace >= 0, "resources must not be negative");
+    this.cpuCores = cpuCores;
+    this.memorySpace = memorySpace;
+    this.diskSpace = diskSpace;
+    this.heartbeatTime = heartbeatTime;
+  }
+
+  /**
+   * @param address Address of the worker.
+   * @param cpuCores Free CPU cores.
+   * @param memorySpace Free memory, GB per unit.
+   * @param diskSpace Free disk space, GB per unit.
+   * @param heartbeatTime Time in milliseconds of the heartbeat.
+   */
+  public static WorkerResources of(
+      String address, double cpuCores, double memorySpace, double diskSpace, long heartbeatTime) {
+    return new WorkerResources(address, cpuCores, memorySpace, diskSpace, heartbeatTime);
+  }
+
+  public String getAddress() {
+    return address;
+  }
+
+  public double getCpuCores() {
+    return cpuCores;
+  }
+
+  public double getMemorySpace() {
+    return memorySpace;
+  }
+
+  public double getDiskSpace() {
+    return diskSpace;
+  }
+
+  public long getHeartbeatTime() {
+    return heartbeatTime;
+  }
+
+  @Override
+  public String toString() {
+    return "WorkerResources{"
+        + "address='"
+        + address
+        + '\''
+        + ", cpuCores="
+        + cpuCores
+        + ", memorySpace="
+        + memorySpace
+        + ", diskSpace="
+        + diskSpace
+        + ", heartbeatTime="
+        + heartbeatTime
+        + '}';
+  }
+}
@@ -0,0 +1,108 @@
+package xyz.vopen.framework.neptune.optimizer.runtime;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * {@link DurationSketch} Quantile sketch of durations: a histogram of logarithmic buckets, each
+ * {@code GAMMA} times wider than the previous one, so that any quantile is known within 2% of its
+ * value whatever the range of the durations. Only the buckets between the smallest and the largest
+ * duration seen are allocated, a job whose runs last about the same time costs a few dozen ints.
+ *
+ * <p>Once the window is reached, every count is halved: the older runs weigh less and less and the
+ * quantiles follow the changes of the job. Not thread safe.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class DurationSketch {
+
+  /** Relative accuracy of the quantiles. */
+  private static final double ACCURACY = 0.02;
+
+  private static final double GAMMA = (1 + ACCURACY) / (1 - ACCURACY);
+  private static final double LOG_GAMMA = Math.log(GAMMA);
+
+  private final int window;
+
+  /** Counts of the buckets from {@link #offset} on, bucket 0 holds the durations up to 1 ms. */
+  private int[] counts = new int[0];
+
+  private int offset;
+  private long total;
+
+  /** @param window Number of durations after which the counts are halved. */
+  public DurationSketch(int window) {
+    Preconditions.checkArgument(window > 1, "window must be greater than 1");
+    this.window = window;
+  }
+
+  public void add(long duration) {
+    int bucket = bucketOf(duration);
+    if (counts.length == 0) {
+      counts = new int[1];
+      offset = bucket;
+    } else if (bucket < offset) {
+      int[] grown = new int[counts.length + offset - bucket];
+      System.arraycopy(counts, 0, grown, offset - bucket, counts.length);
+      counts = grown;
+      offset = bucket;
+    } else if (bucket >= offset + counts.length) {
+      counts = Arrays.copyOf(counts, bucket - offset + 1);
+    }
+    counts[bucket - offset]++;
+    if (++total >= window) {
+      halve();
+    }
+  }
+
+  /**
+   * Returns the duration below which the given fraction of the durations fall.
+   *
+   * @param quantile Between 0 and 1.
+   * @return The duration in milliseconds, -1 if the sketch is empty.
+   */
+  public long quantile(double quantile) {
+    Preconditions.checkArgument(quantile >= 0 && quantile <= 1, "quantile must be within [0, 1]");
+    if (total == 0) {
+      return -1L;
+    }
+    long rank = (long) Math.ceil(quantile * total);
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= Math.max(1, rank)) {
+        return valueOf(offset + i);
+      }
+    }
+    return valueOf(offset + counts.length - 1);
+  }
+
+  /** Returns the weight of the durations in the sketch, the halved ones counting for less. */
+  public long count() {
+    return total;
+  }
+
+  /** Returns the number of buckets allocated. */
+  int size() {
+    return counts.length;
+  }
+
+  private void halve() {
+    total = 0;
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] >>>= 1;
+      total += counts[i];
+    }
+  }
+
+  private static int bucketOf(long duration) {
+    return duration <= 1 ? 0 : (int) Math.ceil(Math.log(duration) / LOG_GAMMA);
+  }
+
+  /** Returns the middle of the bucket, within the accuracy of every duration of the bucket. */
+  private static long valueOf(int bucket) {
+    return bucket == 0 ? 1L : Math.round(2 * Math.pow(GAMMA, bucket) / (GAMMA + 1));
+  }
+}
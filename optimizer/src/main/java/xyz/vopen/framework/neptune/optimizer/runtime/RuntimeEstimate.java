@@ -0,0 +1,70 @@
+package xyz.vopen.framework.neptune.optimizer.runtime;
+
+/**
+ * {@link RuntimeEstimate} Expected runtime of the instances of a job, learned from its previous
+ * successful runs.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class RuntimeEstimate {
+  private final long jobId;
+  private final long samples;
+  private final long average;
+  private final long median;
+  private final long p95;
+  private final long p99;
+
+  RuntimeEstimate(long jobId, long samples, long average, long median, long p95, long p99) {
+    this.jobId = jobId;
+    this.samples = samples;
+    this.average = average;
+    this.median = median;
+    this.p95 = p95;
+    this.p99 = p99;
+  }
+
+  public long getJobId() {
+    return jobId;
+  }
+
+  /** Number of runs the estimate is learned from. */
+  public long getSamples() {
+    return samples;
+  }
+
+  /** Exponentially weighted moving average of the runtime in milliseconds. */
+  public long getAverage() {
+    return average;
+  }
+
+  public long getMedian() {
+    return median;
+  }
+
+  public long getP95() {
+    return p95;
+  }
+
+  public long getP99() {
+    return p99;
+  }
+
+  @Override
+  public String toString() {
+    return "RuntimeEstimate{"
+        + "jobId="
+        + jobId
+        + ", samples="
+        + samples
+        + ", average="
+        + average
+        + ", median="
+        + median
+        + ", p95="
+        + p95
+        + ", p99="
+        + p99
+        + '}';
+  }
+}
@@ -0,0 +1,266 @@
+package xyz.vopen.framework.neptune.optimizer.runtime;
+
+import com.google.common.base.Preconditions;
+import xyz.vopen.framework.neptune.common.configuration.Configuration;
+import xyz.vopen.framework.neptune.common.configuration.JobManagerOptions;
+import xyz.vopen.framework.neptune.common.utils.collection.LongObjectHashMap;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link RuntimeEstimator} Learns the runtime of every job online, from the completions its workers
+ * report: the time from running to succeeded feeds an exponentially weighted moving average and a
+ * {@link DurationSketch} of the job. No history is ever read, the estimates start empty and
+ * improve with every run.
+ *
+ * <p>The estimates serve three purposes: a time limit derived for the jobs which declare none, only
+ * if enabled, the expected completion of a running instance, and the workers running long tasks,
+ * which the placement avoids.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class RuntimeEstimator {
+
+  private final double ewmaAlpha;
+  private final int sketchWindow;
+  private final long longTaskThreshold;
+  private final boolean timeLimitEnabled;
+  private final double timeoutMultiplier;
+  private final int timeoutMinSamples;
+  private final long minTimeout;
+
+  /** Runtimes by job id, guarded by itself with the fields below. */
+  private final LongObjectHashMap<JobRuntime> jobs = new LongObjectHashMap<>(256);
+
+  /** Instances in flight by instance id. */
+  private final LongObjectHashMap<Run> runs = new LongObjectHashMap<>(1024);
+
+  /** Number of long tasks in flight by worker address. */
+  private final Map<String, Integer> longTasks = new HashMap<>();
+
+  private RuntimeEstimator(
+      double ewmaAlpha,
+      int sketchWindow,
+      long longTaskThreshold,
+      boolean timeLimitEnabled,
+      double timeoutMultiplier,
+      int timeoutMinSamples,
+      long minTimeout) {
+    Preconditions.checkArgument(ewmaAlpha > 0 && ewmaAlpha <= 1, "alpha must be within (0, 1]");
+    Preconditions.checkArgument(timeoutMultiplier >= 0, "timeout multiplier must not be negative");
+    this.ewmaAlpha = ewmaAlpha;
+    this.sketchWindow = sketchWindow;
+    this.longTaskThreshold = longTaskThreshold;
+    this.timeLimitEnabled = timeLimitEnabled;
+    this.timeoutMultiplier = timeoutMultiplier;
+    this.timeoutMinSamples = Math.max(1, timeoutMinSamples);
+    this.minTimeout = minTimeout;
+  }
+
+  public static RuntimeEstimator create(Configuration configuration) {
+    return new RuntimeEstimator(
+        configuration.getDouble(JobManagerOptions.RUNTIME_EWMA_ALPHA),
+        configuration.getInteger(JobManagerOptions.RUNTIME_SKETCH_WINDOW),
+        configuration.getLong(JobManagerOptions.RUNTIME_LONG_TASK_THRESHOLD),
+        configuration.getBoolean(JobManagerOptions.RUNTIME_TIMEOUT_ENABLED),
+        configuration.getDouble(JobManagerOptions.RUNTIME_TIMEOUT_MULTIPLIER),
+        configuration.getInteger(JobManagerOptions.RUNTIME_TIMEOUT_MIN_SAMPLES),
+        configuration.getLong(JobManagerOptions.RUNTIME_TIMEOUT_MIN));
+  }
+
+  // =====================  Instance events  =====================
+
+  /** The instance was placed on the workers, it counts as a long task there if its job is one. */
+  public void onPlaced(long instanceId, long jobId, List<String> workers) {
+    synchronized (jobs) {
+      Run run = runOf(instanceId, jobId);
+      release(run);
+      run.workers = workers;
+      run.longTask = isLongTask(jobId);
+      if (run.longTask) {
+        for (String worker : workers) {
+          longTasks.merge(worker, 1, Integer::sum);
+        }
+      }
+    }
+  }
+
+  /** The instance started running, again on a retry. */
+  public void onStarted(long instanceId, long jobId, long time) {
+    synchronized (jobs) {
+      runOf(instanceId, jobId).startTime = time;
+    }
+  }
+
+  /**
+   * The instance succeeded, as reported by its worker. Its runtime is learned from the start time
+   * of the worker, or from the start seen here if the worker reported none.
+   *
+   * @param startTime Time in milliseconds the instance started on the worker, 0 if unknown.
+   * @param completedTime Time in milliseconds the instance completed on the worker.
+   */
+  public void onSucceeded(long instanceId, long jobId, long startTime, long completedTime) {
+    synchronized (jobs) {
+      Run run = runs.remove(instanceId);
+      if (run != null) {
+        release(run);
+        if (startTime <= 0) {
+          startTime = run.startTime;
+        }
+      }
+      if (startTime > 0 && completedTime >= startTime) {
+        record(jobId, completedTime - startTime);
+      }
+    }
+  }
+
+  /** The instance ended without success, e.g. failed or stopped, its runtime says nothing. */
+  public void onFinished(long instanceId) {
+    synchronized (jobs) {
+      Run run = runs.remove(instanceId);
+      if (run != null) {
+        release(run);
+      }
+    }
+  }
+
+  /** Learns a runtime of the job. */
+  public void record(long jobId, long duration) {
+    synchronized (jobs) {
+      JobRuntime runtime = jobs.get(jobId);
+      if (runtime == null) {
+        runtime = new JobRuntime(sketchWindow);
+        jobs.put(jobId, runtime);
+      }
+      runtime.add(duration, ewmaAlpha);
+    }
+  }
+
+  // =====================  Estimates  =====================
+
+  /** Returns the expected runtime of the job, null before its first successful run. */
+  public RuntimeEstimate estimate(long jobId) {
+    synchronized (jobs) {
+      JobRuntime runtime = jobs.get(jobId);
+      if (runtime == null) {
+        return null;
+      }
+      return new RuntimeEstimate(
+          jobId,
+          runtime.samples,
+          Math.round(runtime.average),
+          runtime.sketch.quantile(0.5),
+          runtime.sketch.quantile(0.95),
+          runtime.sketch.quantile(0.99));
+    }
+  }
+
+  /**
+   * Returns the time limit derived from the runtime of the job: a multiple of its 99th percentile,
+   * no lower than the minimum.
+   *
+   * @return The time limit in milliseconds, -1 while too few runs are known or if disabled.
+   */
+  public long timeLimitOf(long jobId) {
+    if (!timeLimitEnabled || timeoutMultiplier == 0) {
+      return -1L;
+    }
+    synchronized (jobs) {
+      JobRuntime runtime = jobs.get(jobId);
+      if (runtime == null || runtime.samples < timeoutMinSamples) {
+        return -1L;
+      }
+      long p99 = runtime.sketch.quantile(0.99);
+      return Math.max(minTimeout, (long) Math.ceil(p99 * timeoutMultiplier));
+    }
+  }
+
+  /**
+   * Returns when the running instance is expected to complete: its start plus the average runtime
+   * of its job.
+   *
+   * @return The time in milliseconds, -1 if the instance is not running or its job never succeeded.
+   */
+  public long expectedCompletionTime(long instanceId) {
+    synchronized (jobs) {
+      Run run = runs.get(instanceId);
+      if (run == null || run.startTime <= 0) {
+        return -1L;
+      }
+      JobRuntime runtime = jobs.get(run.jobId);
+      return runtime == null ? -1L : run.startTime + Math.round(runtime.average);
+    }
+  }
+
+  /** Returns true if a long task is placed on the worker and not finished yet. */
+  public boolean isRunningLongTasks(String worker) {
+    synchronized (jobs) {
+      return longTasks.containsKey(worker);
+    }
+  }
+
+  /** Returns the number of jobs with an estimate. */
+  public int size() {
+    synchronized (jobs) {
+      return jobs.size();
+    }
+  }
+
+  // =====================  Internal  =====================
+
+  /** Must hold the lock. */
+  private Run runOf(long instanceId, long jobId) {
+    Run run = runs.get(instanceId);
+    if (run == null) {
+      run = new Run(jobId);
+      runs.put(instanceId, run);
+    }
+    return run;
+  }
+
+  /** Must hold the lock. */
+  private boolean isLongTask(long jobId) {
+    JobRuntime runtime = jobs.get(jobId);
+    return runtime != null && runtime.sketch.quantile(0.5) >= longTaskThreshold;
+  }
+
+  /** Must hold the lock. */
+  private void release(Run run) {
+    if (run.longTask) {
+      for (String worker : run.workers) {
+        longTasks.computeIfPresent(worker, (address, count) -> count == 1 ? null : count - 1);
+      }
+      run.longTask = false;
+    }
+  }
+
+  private static final class JobRuntime {
+    final DurationSketch sketch;
+    double average;
+    long samples;
+
+    JobRuntime(int sketchWindow) {
+      this.sketch = new DurationSketch(sketchWindow);
+    }
+
+    void add(long duration, double alpha) {
+      average = samples == 0 ? duration : average + alpha * (duration - average);
+      samples++;
+      sketch.add(duration);
+    }
+  }
+
+  private static final class Run {
+    final long jobId;
+    long startTime;
+    List<String> workers;
+    boolean longTask;
+
+    Run(long jobId) {
+      this.jobId = jobId;
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package xyz.vopen.framework.neptune.optimizer.trigger;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * {@link Trigger} A firing of a job: the time it is due and how late it may fire.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class Trigger {
+  private final long jobId;
+  private final long fireTime;
+  private final long tolerance;
+
+  private Trigger(long jobId, long fireTime, long tolerance) {
+    Preconditions.checkArgument(tolerance >= 0, "tolerance must not be negative");
+    this.jobId = jobId;
+    this.fireTime = fireTime;
+    this.tolerance = tolerance;
+  }
+
+  /**
+   * @param jobId Id of the job.
+   * @param fireTime Time in milliseconds the job is due.
+   * @param tolerance How many milliseconds after the due time the job may fire, 0 for none.
+   */
+  public static Trigger of(long jobId, long fireTime, long tolerance) {
+    return new Trigger(jobId, fireTime, tolerance);
+  }
+
+  public long getJobId() {
+    return jobId;
+  }
+
+  public long getFireTime() {
+    return fireTime;
+  }
+
+  public long getTolerance() {
+    return tolerance;
+  }
+
+  /** Returns the same trigger firing at the given time. */
+  public Trigger withFireTime(long fireTime) {
+    return fireTime == this.fireTime ? this : new Trigger(jobId, fireTime, tolerance);
+  }
+
+  @Override
+  public String toString() {
+    return "Trigger{"
+        + "jobId="
+        + jobId
+        + ", fireTime="
+        + fireTime
+        + ", tolerance="
+        + tolerance
+        + '}';
+  }
+}
@@ -0,0 +1,49 @@
+package xyz.vopen.framework.neptune.optimizer.trigger;
+
+import xyz.vopen.framework.neptune.optimizer.Optimizer;
+
+/**
+ * {@link TriggerSmoothingOptimizer} Spreads the triggers due at the same time, e.g. all the cron
+ * jobs of {@code 0 * * * * ?}, over their tolerance windows. Each job is delayed by an offset
+ * derived from a hash of its id, uniform within {@code [0, tolerance]}: the offset of a job is the
+ * same on every firing and on every server, so a job keeps a stable period while the jobs sharing a
+ * due time no longer hit the persistence, the event bus and the workers in the same millisecond.
+ *
+ * <p>A trigger is only ever delayed, never fired early, and never beyond its tolerance.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class TriggerSmoothingOptimizer implements Optimizer<Trigger> {
+
+  @Override
+  public Trigger optimize(Trigger trigger) {
+    long tolerance = trigger.getTolerance();
+    if (tolerance <= 0) {
+      return trigger;
+    }
+    long fireTime = trigger.getFireTime();
+    long offset = offsetOf(trigger.getJobId(), tolerance);
+    return trigger.withFireTime(
+        fireTime > Long.MAX_VALUE - offset ? Long.MAX_VALUE : fireTime + offset);
+  }
+
+  /** Returns the offset of the job within {@code [0, tolerance]}. */
+  static long offsetOf(long jobId, long tolerance) {
+    long bound = tolerance == Long.MAX_VALUE ? tolerance : tolerance + 1;
+    return Math.floorMod(mix(jobId), bound);
+  }
+
+  /**
+   * Finalizer of MurmurHash3, the ids are generated in sequence and their low bits alone would
+   * leave neighbouring jobs next to each other.
+   */
+  private static long mix(long value) {
+    value ^= value >>> 33;
+    value *= 0xff51afd7ed558ccdL;
+    value ^= value >>> 33;
+    value *= 0xc4ceb9fe1a85ec53L;
+    value ^= value >>> 33;
+    return value;
+  }
+}
@@ -0,0 +1,163 @@
+package xyz.vopen.framework.neptune.optimizer.placement;
+
+import xyz.vopen.framework.neptune.common.model.JobInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * {@link BinPackingBenchmark} Places 100k pending instances onto 10k workers, once one instance at
+ * a time as they arrive and once in batches, and reports the placement latency per instance, the
+ * unplaced instances and the share of the CPU cores allocated. The demands add up to about 90% of
+ * the cluster, one in ten declares no resource and one in twenty designates three workers.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class BinPackingBenchmark {
+  private static final int WORKERS = 10_000;
+  private static final int INSTANCES = 100_000;
+  private static final int BATCH_SIZE = 1_000;
+  private static final long LATENCY_BUDGET_NANOS = 1_000_000;
+  private static final long SEED = 42;
+
+  /** CPU cores of the last created cluster. */
+  private static double totalCpu;
+
+  public static void main(String[] args) {
+    // warm up the JIT on a run of its own
+    runOnline(false);
+    runOnline(true);
+    runBatches();
+  }
+
+  private static void runOnline(boolean report) {
+    BinPackingOptimizer optimizer = createCluster();
+    List<Demand> demands = createDemands();
+    long[] latencies = new long[demands.size()];
+    int placed = 0;
+    double placedCpu = 0;
+    for (int i = 0; i < demands.size(); i++) {
+      Demand demand = demands.get(i);
+      long start = System.nanoTime();
+      Placement placement = optimizer.optimize(Placement.of(Collections.singletonList(demand)));
+      latencies[i] = System.nanoTime() - start;
+      int workers = placement.getWorkers(demand.getInstanceId()).size();
+      if (workers > 0) {
+        placed++;
+        placedCpu += demand.getCpuCores() * workers;
+      }
+    }
+    if (!report) {
+      return;
+    }
+    Arrays.sort(latencies);
+    System.out.printf(
+        "online   p50 %7.1f us   p99 %7.1f us   max %8.1f us   over budget %d   placed %d/%d"
+            + "   cpu allocated %.1f%%%n",
+        percentile(latencies, 0.50) / 1e3,
+        percentile(latencies, 0.99) / 1e3,
+        latencies[latencies.length - 1] / 1e3,
+        latencies.length - countBelow(latencies, LATENCY_BUDGET_NANOS),
+        placed,
+        demands.size(),
+        100.0 * placedCpu / totalCpu);
+  }
+
+  private static void runBatches() {
+    BinPackingOptimizer optimizer = createCluster();
+    List<Demand> demands = createDemands();
+    long[] perInstance = new long[demands.size() / BATCH_SIZE];
+    int placed = 0;
+    double placedCpu = 0;
+    for (int batch = 0; batch < perInstance.length; batch++) {
+      List<Demand> slice = demands.subList(batch * BATCH_SIZE, (batch + 1) * BATCH_SIZE);
+      long start = System.nanoTime();
+      Placement placement = optimizer.optimize(Placement.of(slice));
+      perInstance[batch] = (System.nanoTime() - start) / BATCH_SIZE;
+      for (Demand demand : slice) {
+        int workers = placement.getWorkers(demand.getInstanceId()).size();
+        if (workers > 0) {
+          placed++;
+          placedCpu += demand.getCpuCores() * workers;
+        }
+      }
+    }
+    Arrays.sort(perInstance);
+    System.out.printf(
+        "batch-%d p50 %7.1f us   p99 %7.1f us   max %8.1f us   per instance"
+            + "   placed %d/%d   cpu allocated %.1f%%%n",
+        BATCH_SIZE,
+        percentile(perInstance, 0.50) / 1e3,
+        percentile(perInstance, 0.99) / 1e3,
+        perInstance[perInstance.length - 1] / 1e3,
+        placed,
+        demands.size(),
+        100.0 * placedCpu / totalCpu);
+  }
+
+  /** Workers of 8 to 64 cores with 2 to 6 GB of memory per core and 0.5 to 2 TB of disk. */
+  private static BinPackingOptimizer createCluster() {
+    Random random = new Random(SEED);
+    BinPackingOptimizer optimizer = BinPackingOptimizer.create();
+    totalCpu = 0;
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < WORKERS; i++) {
+      double cores = 8 << random.nextInt(4);
+      double memory = cores * (2 + random.nextInt(5));
+      double disk = 500 + random.nextInt(1500);
+      optimizer.onHeartbeat(WorkerResources.of("worker-" + i, cores, memory, disk, now));
+      totalCpu += cores;
+    }
+    return optimizer;
+  }
+
+  private static List<Demand> createDemands() {
+    Random random = new Random(SEED + 1);
+    List<Demand> demands = new ArrayList<>(INSTANCES);
+    for (int i = 0; i < INSTANCES; i++) {
+      int kind = random.nextInt(20);
+      if (kind < 2) {
+        demands.add(Demand.of(i, 0, 0, 0));
+        continue;
+      }
+      double cores = 0.5 + random.nextInt(10) * 0.5;
+      double memory = cores * (1 + random.nextInt(6));
+      double disk = 1 + random.nextInt(20);
+      if (kind == 2) {
+        demands.add(designated(i, cores, memory, disk, random));
+      } else {
+        demands.add(Demand.of(i, cores, memory, disk));
+      }
+    }
+    return demands;
+  }
+
+  private static Demand designated(
+      long instanceId, double cores, double memory, double disk, Random random) {
+    JobInfo jobInfo = new JobInfo();
+    jobInfo.setMinCpuCores(cores);
+    jobInfo.setMinMemorySpace(memory);
+    jobInfo.setMinDiskSpace(disk);
+    jobInfo.setDesignatedWorkers(
+        "worker-"
+            + random.nextInt(WORKERS)
+            + ",worker-"
+            + random.nextInt(WORKERS)
+            + ",worker-"
+            + random.nextInt(WORKERS));
+    return Demand.of(instanceId, jobInfo);
+  }
+
+  private static long percentile(long[] sorted, double quantile) {
+    return sorted[Math.min(sorted.length - 1, (int) (sorted.length * quantile))];
+  }
+
+  private static int countBelow(long[] sorted, long bound) {
+    int index = Arrays.binarySearch(sorted, bound);
+    return index < 0 ? -index - 1 : index;
+  }
+}
@@ -0,0 +1,105 @@
+package xyz.vopen.framework.neptune.optimizer.runtime;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link DurationSketchTest} Tests of the {@link DurationSketch}: the quantiles within the
+ * accuracy of the buckets whatever the range of the durations, the buckets allocated and the
+ * halving once the window is reached.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class DurationSketchTest {
+  private static final double ACCURACY = 0.02;
+  private static final double[] QUANTILES = {0.0, 0.01, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99, 1.0};
+
+  @Test
+  public void testEmptySketch() {
+    DurationSketch sketch = new DurationSketch(16);
+
+    assertEquals(-1L, sketch.quantile(0.5));
+    assertEquals(0L, sketch.count());
+  }
+
+  @Test
+  public void testQuantilesOfUniformDurations() {
+    long[] durations = new long[100_000];
+    for (int i = 0; i < durations.length; i++) {
+      durations[i] = i + 1;
+    }
+    assertQuantilesWithinAccuracy(durations);
+  }
+
+  @Test
+  public void testQuantilesOfSkewedDurations() {
+    Random random = new Random(42L);
+    long[] durations = new long[50_000];
+    for (int i = 0; i < durations.length; i++) {
+      // from milliseconds to days
+      durations[i] = (long) Math.exp(random.nextGaussian() * 3 + 8);
+    }
+    assertQuantilesWithinAccuracy(durations);
+  }
+
+  @Test
+  public void testAllocatesBucketsBetweenSmallestAndLargest() {
+    DurationSketch sketch = new DurationSketch(1024);
+    for (int i = 0; i < 1000; i++) {
+      sketch.add(60_000L);
+    }
+    assertEquals(1, sketch.size());
+
+    sketch.add(50_000L);
+    sketch.add(70_000L);
+    // about ln(70 / 50) / ln(1.02 / 0.98) buckets
+    assertTrue("buckets " + sketch.size(), sketch.size() <= 10);
+    assertEquals(1002L, sketch.count());
+  }
+
+  @Test
+  public void testHalvingFollowsChanges() {
+    DurationSketch sketch = new DurationSketch(100);
+    for (int i = 0; i < 99; i++) {
+      sketch.add(10L);
+    }
+    assertEquals(99L, sketch.count());
+    sketch.add(10L);
+    assertEquals(50L, sketch.count());
+
+    for (int i = 0; i < 60; i++) {
+      sketch.add(1_000L);
+    }
+    assertWithinAccuracy(1_000L, sketch.quantile(0.5));
+    assertWithinAccuracy(10L, sketch.quantile(0.1));
+  }
+
+  // =====================  Internal  =====================
+
+  private static void assertQuantilesWithinAccuracy(long[] durations) {
+    DurationSketch sketch = new DurationSketch(Integer.MAX_VALUE);
+    for (long duration : durations) {
+      sketch.add(duration);
+    }
+    long[] sorted = durations.clone();
+    Arrays.sort(sorted);
+
+    for (double quantile : QUANTILES) {
+      int rank = (int) Math.max(1, Math.ceil(quantile * sorted.length));
+      assertWithinAccuracy(sorted[rank - 1], sketch.quantile(quantile));
+    }
+  }
+
+  /** The middle of a bucket is within the accuracy of its durations, up to the rounding. */
+  private static void assertWithinAccuracy(long expected, long actual) {
+    assertTrue(
+        "expected " + expected + " but was " + actual,
+        Math.abs(actual - expected) <= ACCURACY * expected + 1);
+  }
+}
@@ -0,0 +1,107 @@
+package xyz.vopen.framework.neptune.optimizer.runtime;
+
+import org.junit.Test;
+import xyz.vopen.framework.neptune.common.configuration.Configuration;
+import xyz.vopen.framework.neptune.common.configuration.JobManagerOptions;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link RuntimeEstimatorTest} Tests of the {@link RuntimeEstimator}: the runtimes learned from
+ * the successes, the expected completion of the running instances before and after learning, the
+ * derived time limits and the workers running long tasks.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class RuntimeEstimatorTest {
+  private static final long JOB_ID = 7L;
+  private static final long START = 1_604_000_000_000L;
+
+  @Test
+  public void testExpectedCompletionBeforeAndAfterLearning() {
+    RuntimeEstimator estimator = RuntimeEstimator.create(new Configuration());
+    assertEquals(-1L, estimator.expectedCompletionTime(1L));
+
+    estimator.onStarted(1L, JOB_ID, START);
+    // the job never succeeded
+    assertEquals(-1L, estimator.expectedCompletionTime(1L));
+    assertNull(estimator.estimate(JOB_ID));
+
+    estimator.onStarted(2L, JOB_ID, START);
+    estimator.onSucceeded(2L, JOB_ID, 0L, START + 5_000L);
+    assertEquals(START + 5_000L, estimator.expectedCompletionTime(1L));
+
+    estimator.onSucceeded(1L, JOB_ID, START, START + 10_000L);
+    assertEquals(-1L, estimator.expectedCompletionTime(1L));
+    estimator.onStarted(3L, JOB_ID, START);
+    // 5s then 10s with the default alpha of 0.2
+    assertEquals(START + 6_000L, estimator.expectedCompletionTime(3L));
+  }
+
+  @Test
+  public void testLearnsFromSuccessesOnly() {
+    RuntimeEstimator estimator = RuntimeEstimator.create(new Configuration());
+    estimator.onStarted(1L, JOB_ID, START);
+    estimator.onFinished(1L);
+    estimator.onSucceeded(2L, JOB_ID, START, START - 1L);
+    assertNull(estimator.estimate(JOB_ID));
+
+    for (int i = 0; i < 100; i++) {
+      estimator.record(JOB_ID, i < 50 ? 1_000L : 3_000L);
+    }
+    RuntimeEstimate estimate = estimator.estimate(JOB_ID);
+    assertEquals(100L, estimate.getSamples());
+    assertEquals(1_000L, estimate.getMedian(), 1_000L * 0.02);
+    assertEquals(3_000L, estimate.getP99(), 3_000L * 0.02);
+    assertEquals(1, estimator.size());
+  }
+
+  @Test
+  public void testTimeLimitAfterEnoughSamples() {
+    Configuration configuration = new Configuration();
+    assertEquals(-1L, learned(configuration, 100, 10_000L).timeLimitOf(JOB_ID));
+
+    configuration.setBoolean(JobManagerOptions.RUNTIME_TIMEOUT_ENABLED, true);
+    assertEquals(-1L, learned(configuration, 19, 100_000L).timeLimitOf(JOB_ID));
+    long timeLimit = learned(configuration, 20, 100_000L).timeLimitOf(JOB_ID);
+    assertEquals(300_000L, timeLimit, 300_000L * 0.02);
+    // no lower than the minimum
+    assertEquals(60_000L, learned(configuration, 20, 1_000L).timeLimitOf(JOB_ID));
+  }
+
+  @Test
+  public void testLongTasksHeldUntilFinished() {
+    RuntimeEstimator estimator = RuntimeEstimator.create(new Configuration());
+    estimator.onPlaced(1L, JOB_ID, Collections.singletonList("worker-1"));
+    assertFalse("the job is not known to be long yet", estimator.isRunningLongTasks("worker-1"));
+
+    estimator.record(JOB_ID, 3_600_000L);
+    estimator.onPlaced(2L, JOB_ID, Arrays.asList("worker-1", "worker-2"));
+    estimator.onPlaced(3L, JOB_ID, Collections.singletonList("worker-2"));
+    assertTrue(estimator.isRunningLongTasks("worker-1"));
+    assertTrue(estimator.isRunningLongTasks("worker-2"));
+
+    estimator.onFinished(2L);
+    assertFalse(estimator.isRunningLongTasks("worker-1"));
+    assertTrue(estimator.isRunningLongTasks("worker-2"));
+    estimator.onSucceeded(3L, JOB_ID, START, START + 3_600_000L);
+    assertFalse(estimator.isRunningLongTasks("worker-2"));
+  }
+
+  // =====================  Internal  =====================
+
+  private static RuntimeEstimator learned(Configuration configuration, int runs, long duration) {
+    RuntimeEstimator estimator = RuntimeEstimator.create(configuration);
+    for (int i = 0; i < runs; i++) {
+      estimator.record(JOB_ID, duration);
+    }
+    return estimator;
+  }
+}
@@ -0,0 +1,81 @@
+package xyz.vopen.framework.neptune.optimizer.trigger;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link TriggerSmoothingOptimizerTest} Tests of the offsets of the {@link
+ * TriggerSmoothingOptimizer}: within the tolerance, stable per job and spread over the window.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class TriggerSmoothingOptimizerTest {
+  private static final long DUE = 1_604_000_000_000L;
+
+  private final TriggerSmoothingOptimizer optimizer = new TriggerSmoothingOptimizer();
+
+  @Test
+  public void testOffsetStaysWithinTolerance() {
+    for (long tolerance : new long[] {1L, 7L, 1_000L, 60_000L, Long.MAX_VALUE}) {
+      for (long jobId = -1_000L; jobId < 10_000L; jobId++) {
+        long offset = TriggerSmoothingOptimizer.offsetOf(jobId, tolerance);
+        assertTrue("offset " + offset, offset >= 0L && offset <= tolerance);
+      }
+    }
+  }
+
+  @Test
+  public void testTriggerIsNeverEarly() {
+    for (long jobId = 0L; jobId < 10_000L; jobId++) {
+      long fireTime = optimizer.optimize(Trigger.of(jobId, DUE, 60_000L)).getFireTime();
+      assertTrue("fire time " + fireTime, fireTime >= DUE && fireTime <= DUE + 60_000L);
+    }
+  }
+
+  @Test
+  public void testOffsetIsStablePerJob() {
+    for (long jobId = 0L; jobId < 1_000L; jobId++) {
+      long first = optimizer.optimize(Trigger.of(jobId, DUE, 60_000L)).getFireTime() - DUE;
+      // the same job on a later firing, and on another server
+      long later =
+          new TriggerSmoothingOptimizer()
+                  .optimize(Trigger.of(jobId, DUE + 3_600_000L, 60_000L))
+                  .getFireTime()
+              - DUE
+              - 3_600_000L;
+      assertEquals(first, later);
+    }
+  }
+
+  @Test
+  public void testSequentialJobsAreSpread() {
+    Set<Long> seconds = new HashSet<>();
+    for (long jobId = 0L; jobId < 1_000L; jobId++) {
+      seconds.add(TriggerSmoothingOptimizer.offsetOf(jobId, 59_999L) / 1_000L);
+    }
+    // a thousand jobs cover nearly every second of the minute
+    assertTrue("seconds " + seconds.size(), seconds.size() >= 55);
+  }
+
+  @Test
+  public void testNoToleranceFiresOnTime() {
+    Trigger trigger = Trigger.of(42L, DUE, 0L);
+
+    assertSame(trigger, optimizer.optimize(trigger));
+  }
+
+  @Test
+  public void testFireTimeSaturates() {
+    long fireTime =
+        optimizer.optimize(Trigger.of(42L, Long.MAX_VALUE - 1L, 60_000L)).getFireTime();
+
+    assertTrue(fireTime >= Long.MAX_VALUE - 1L);
+  }
+}
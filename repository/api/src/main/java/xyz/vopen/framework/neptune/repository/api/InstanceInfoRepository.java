@@ -2,6 +2,7 @@ package xyz.vopen.framework.neptune.repository.api;
 
 import xyz.vopen.framework.neptune.common.model.InstanceInfo;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,9 +24,35 @@ public interface InstanceInfoRepository {
 
   Optional<List<InstanceInfo>> findInstancesByAppId(long appId);
 
+  /**
+   * Returns one keyset page of the instances under server, ordered by instance id.
+   *
+   * @param appId Represent the server id.
+   * @param afterId Only instances with a greater id are returned, the last id of the previous page.
+   * @param limit Maximum size of the page.
+   * @return Instance page, empty when there are no more instances.
+   */
+  List<InstanceInfo> findInstancePageByAppId(long appId, long afterId, int limit);
+
   void saveInstanceInfo(InstanceInfo instanceInfo);
 
   void updateInstanceInfo(InstanceInfo instanceInfo);
 
   void deleteInstance(Long instanceIds);
+
+  /**
+   * Prepares the storage of the instances created up to the given day, e.g. creates the daily
+   * partitions ahead of time.
+   *
+   * @param until Last day to prepare.
+   */
+  void ensureInstancePartitions(Date until);
+
+  /**
+   * Drops the history of the instances created before the given day. A storage partitioned by day
+   * drops whole partitions instead of deleting row by row.
+   *
+   * @param cutoff Instances created before this day are dropped.
+   */
+  void purgeInstancesBefore(Date cutoff);
 }
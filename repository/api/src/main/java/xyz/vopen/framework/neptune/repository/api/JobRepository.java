@@ -62,4 +62,46 @@ public interface JobRepository extends BaseRepository {
   void deleteJobInfos(Long jobId);
 
   Optional<List<JobInfo>> findJobByAppIdAndStatus(long appId, int status);
+
+  /**
+   * Returns one keyset page of the job collection under server, ordered by job id.
+   *
+   * @param appId Represent the server id.
+   * @param afterId Only jobs with a greater id are returned, the last id of the previous page.
+   * @param limit Maximum size of the page.
+   * @return Job page, empty when there are no more jobs.
+   */
+  List<JobInfo> findJobPageByAppId(long appId, long afterId, int limit);
+
+  /**
+   * Returns one keyset page of the jobs in the specified status under server, ordered by job id.
+   *
+   * @param appId Represent the server id.
+   * @param status of job.
+   * @param afterId Only jobs with a greater id are returned, the last id of the previous page.
+   * @param limit Maximum size of the page.
+   * @return Job page, empty when there are no more jobs.
+   */
+  List<JobInfo> findJobPageByAppIdAndStatus(long appId, int status, long afterId, int limit);
+
+  /**
+   * Claims up to {@code limit} jobs under server for the given scheduler: new jobs, and running
+   * jobs whose lease expired. The claimed jobs are switched to running with the claiming server and the
+   * lease expiry recorded on the row, a job is never handed to two concurrent claimers.
+   *
+   * @param appId Represent the server id.
+   * @param serverId Id of the claiming scheduler.
+   * @param limit Maximum number of jobs to claim.
+   * @param leaseMillis Duration of the lease.
+   * @return The claimed jobs, empty when there is nothing to claim.
+   */
+  List<JobInfo> claimJobs(long appId, String serverId, int limit, long leaseMillis);
+
+  /**
+   * Extends the lease of all the running jobs claimed by the scheduler.
+   *
+   * @param serverId Id of the claiming scheduler.
+   * @param leaseMillis Duration of the lease from now.
+   */
+  void renewJobLeases(String serverId, long leaseMillis);
 }
@@ -0,0 +1,170 @@
+package xyz.vopen.framework.repository.mongo;
+
+import io.vertx.core.json.JsonObject;
+import xyz.vopen.framework.neptune.common.model.InstanceInfo;
+import xyz.vopen.framework.neptune.common.model.JobInfo;
+import xyz.vopen.framework.neptune.common.model.ServerInfo;
+
+import java.util.Date;
+
+/**
+ * {@link MongoDocuments} Mapping between the models and their mongo documents. The entity id is
+ * stored as {@code _id}, dates as epoch milliseconds.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/28
+ */
+final class MongoDocuments {
+
+  static final String ID = "_id";
+  static final String CLAIM_SERVER = "claimServer";
+  static final String LEASE_EXPIRE_TIME = "leaseExpireTime";
+
+  private MongoDocuments() {
+    throw new AssertionError();
+  }
+
+  // =====================  Server Info   =====================
+
+  static JsonObject fromServer(ServerInfo server) {
+    return new JsonObject()
+        .put(ID, server.getId())
+        .put("serviceName", server.getServiceName())
+        .put("address", server.getAddress())
+        .put("gmtCreate", millis(server.getGmtCreate()))
+        .put("gmtUpdate", millis(server.getGmtUpdate()));
+  }
+
+  static ServerInfo toServer(JsonObject document) {
+    return new ServerInfo(
+        document.getLong(ID),
+        document.getString("serviceName"),
+        document.getString("address"),
+        date(document, "gmtCreate"),
+        date(document, "gmtUpdate"));
+  }
+
+  // =====================  Job Info   =====================
+
+  static JsonObject fromJob(JobInfo job) {
+    return new JsonObject()
+        .put(ID, job.getId())
+        .put("jobName", job.getJobName())
+        .put("jobDescription", job.getJobDescription())
+        .put("appId", job.getAppId())
+        .put("jobParams", job.getJobParams())
+        .put("timeExpressionType", job.getTimeExpressionType())
+        .put("timeExpression", job.getTimeExpression())
+        .put("executeType", job.getExecuteType())
+        .put("processorType", job.getProcessorType())
+        .put("processorInfo", job.getProcessorInfo())
+        .put("maxInstanceNum", job.getMaxInstanceNum())
+        .put("concurrency", job.getConcurrency())
+        .put("instanceTimeLimit", job.getInstanceTimeLimit())
+        .put("instanceRetryNum", job.getInstanceRetryNum())
+        .put("taskRetryNum", job.getTaskRetryNum())
+        .put("status", job.getStatus())
+        .put("nextTriggerTime", job.getNextTriggerTime())
+        .put("minCpuCores", job.getMinCpuCores())
+        .put("minMemorySpace", job.getMinMemorySpace())
+        .put("minDiskSpace", job.getMinDiskSpace())
+        .put("designatedWorkers", job.getDesignatedWorkers())
+        .put("maxWorkerCount", job.getMaxWorkerCount())
+        .put("notifyUserIds", job.getNotifyUserIds())
+        .put("gmtCreate", millis(job.getGmtCreate()))
+        .put("gmtUpdate", millis(job.getGmtUpdate()))
+        .put(CLAIM_SERVER, job.getClaimServer())
+        .put(LEASE_EXPIRE_TIME, job.getLeaseExpireTime())
+        .put("triggerTolerance", job.getTriggerTolerance())
+        .put("retryBackoff", job.getRetryBackoff())
+        .put("maxRetryBackoff", job.getMaxRetryBackoff());
+  }
+
+  static JobInfo toJob(JsonObject document) {
+    JobInfo job =
+        new JobInfo(
+            document.getLong(ID),
+            document.getString("jobName"),
+            document.getString("jobDescription"),
+            document.getLong("appId"),
+            document.getString("jobParams"),
+            document.getInteger("timeExpressionType"),
+            document.getString("timeExpression"),
+            document.getInteger("executeType"),
+            document.getInteger("processorType"),
+            document.getString("processorInfo"),
+            document.getInteger("maxInstanceNum"),
+            document.getInteger("concurrency"),
+            document.getLong("instanceTimeLimit"),
+            document.getInteger("instanceRetryNum"),
+            document.getInteger("taskRetryNum"),
+            document.getInteger("status"),
+            document.getLong("nextTriggerTime"),
+            document.getDouble("minCpuCores", 0d),
+            document.getDouble("minMemorySpace", 0d),
+            document.getDouble("minDiskSpace", 0d),
+            document.getString("designatedWorkers"),
+            document.getInteger("maxWorkerCount"),
+            document.getString("notifyUserIds"),
+            date(document, "gmtCreate"),
+            date(document, "gmtUpdate"));
+    job.setClaimServer(document.getString(CLAIM_SERVER));
+    job.setLeaseExpireTime(document.getLong(LEASE_EXPIRE_TIME));
+    job.setTriggerTolerance(document.getLong("triggerTolerance"));
+    job.setRetryBackoff(document.getLong("retryBackoff"));
+    job.setMaxRetryBackoff(document.getLong("maxRetryBackoff"));
+    return job;
+  }
+
+  // =====================  Instance Info   =====================
+
+  static JsonObject fromInstance(InstanceInfo instance) {
+    return new JsonObject()
+        .put(ID, instance.getId())
+        .put("appId", instance.getAppId())
+        .put("jobId", instance.getJobId())
+        .put("jobParams", instance.getJobParams())
+        .put("type", instance.getType())
+        .put("workFlowId", instance.getWorkFlowId())
+        .put("status", instance.getStatus())
+        .put("result", instance.getResult())
+        .put("triggerTime", millis(instance.getTriggerTime()))
+        .put("completedTime", millis(instance.getCompletedTime()))
+        .put("lastReportTime", millis(instance.getLastReportTime()))
+        .put("executeTime", millis(instance.getExecuteTime()))
+        .put("retryTimes", instance.getRetryTimes())
+        .put("taskAddress", instance.getTaskAddress())
+        .put("gmtCreate", millis(instance.getGmtCreate()))
+        .put("gmtUpdate", millis(instance.getGmtUpdate()));
+  }
+
+  /** Also used for projected documents, absent fields map to null. */
+  static InstanceInfo toInstance(JsonObject document) {
+    return new InstanceInfo(
+        document.getLong(ID),
+        document.getLong("appId"),
+        document.getLong("jobId"),
+        document.getString("jobParams"),
+        document.getInteger("type"),
+        document.getLong("workFlowId"),
+        document.getInteger("status"),
+        document.getString("result"),
+        date(document, "triggerTime"),
+        date(document, "completedTime"),
+        date(document, "lastReportTime"),
+        date(document, "executeTime"),
+        document.getInteger("retryTimes"),
+        document.getString("taskAddress"),
+        date(document, "gmtCreate"),
+        date(document, "gmtUpdate"));
+  }
+
+  private static Long millis(Date date) {
+    return date == null ? null : date.getTime();
+  }
+
+  private static Date date(JsonObject document, String field) {
+    Long millis = document.getLong(field);
+    return millis == null ? null : new Date(millis);
+  }
+}
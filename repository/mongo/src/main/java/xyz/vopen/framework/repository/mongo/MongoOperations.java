@@ -0,0 +1,73 @@
+package xyz.vopen.framework.repository.mongo;
+
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@link MongoOperations} The subset of the Mongo collection operations used by {@link
+ * MongoRepository}. Filters, projections and index keys use the Mongo document syntax.
+ *
+ * <p>{@link VertxMongoOperations} talks to a real Mongo, the tests use an in-process stand-in.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/28
+ */
+public interface MongoOperations extends AutoCloseable {
+
+  /**
+   * Executes the writes in one round trip.
+   *
+   * @param collection name of the collection.
+   * @param writes operations to execute.
+   * @param ordered If false the server may apply the writes in any order and continues after a
+   *     failed write.
+   */
+  void bulkWrite(String collection, List<MongoWrite> writes, boolean ordered);
+
+  /**
+   * Returns the matching documents.
+   *
+   * @param collection name of the collection.
+   * @param filter query document.
+   * @param projection fields to return, all fields if null.
+   * @return The matching documents.
+   */
+  List<JsonObject> find(String collection, JsonObject filter, @Nullable JsonObject projection);
+
+  /**
+   * Returns one page of the matching documents.
+   *
+   * @param collection name of the collection.
+   * @param filter query document.
+   * @param projection fields to return, all fields if null.
+   * @param sort sort document, e.g. {@code {"_id": 1}}.
+   * @param limit maximum number of documents to return.
+   * @return The matching documents in the sort order.
+   */
+  List<JsonObject> find(
+      String collection,
+      JsonObject filter,
+      @Nullable JsonObject projection,
+      JsonObject sort,
+      int limit);
+
+  Optional<JsonObject> findOne(
+      String collection, JsonObject filter, @Nullable JsonObject projection);
+
+  long count(String collection, JsonObject filter);
+
+  /**
+   * Creates the index if it does not exist yet.
+   *
+   * @param collection name of the collection.
+   * @param keys index keys, e.g. {@code {"appId": 1, "status": 1}}.
+   * @param name name of the index.
+   */
+  void createIndex(String collection, JsonObject keys, String name);
+
+  @Override
+  void close();
+}
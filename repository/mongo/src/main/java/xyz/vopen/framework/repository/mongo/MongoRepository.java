@@ -0,0 +1,479 @@
+package xyz.vopen.framework.repository.mongo;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import xyz.vopen.framework.neptune.common.configuration.Configuration;
+import xyz.vopen.framework.neptune.common.enums.JobStatus;
+import xyz.vopen.framework.neptune.common.model.InstanceInfo;
+import xyz.vopen.framework.neptune.common.model.JobInfo;
+import xyz.vopen.framework.neptune.common.model.ServerInfo;
+import xyz.vopen.framework.neptune.repository.api.BaseRepository;
+import xyz.vopen.framework.neptune.repository.api.InstanceInfoRepository;
+import xyz.vopen.framework.neptune.repository.api.JobRepository;
+import xyz.vopen.framework.neptune.repository.api.ServerRepository;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static xyz.vopen.framework.repository.mongo.MongoDocuments.CLAIM_SERVER;
+import static xyz.vopen.framework.repository.mongo.MongoDocuments.ID;
+import static xyz.vopen.framework.repository.mongo.MongoDocuments.LEASE_EXPIRE_TIME;
+
+/**
+ * {@link MongoRepository} Mongo implementation of the repositories.
+ *
+ * <p>Instance writes are sent as unordered bulk writes, status checks read a projection holding
+ * only the status fields, and the instance collection is indexed on (appId, status, gmtUpdate),
+ * which serves every instance query of the scheduler.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/28
+ */
+public class MongoRepository
+    implements BaseRepository, ServerRepository, JobRepository, InstanceInfoRepository {
+  static final String SERVER_COLLECTION = "server_info";
+  static final String JOB_COLLECTION = "job_info";
+  static final String INSTANCE_COLLECTION = "instance_info";
+
+  /** Fields needed to decide whether an instance must be redispatched or failed. */
+  private static final JsonObject STATUS_PROJECTION =
+      new JsonObject()
+          .put("appId", 1)
+          .put("jobId", 1)
+          .put("status", 1)
+          .put("retryTimes", 1)
+          .put("lastReportTime", 1)
+          .put("gmtUpdate", 1);
+
+  /** Keyset pages are read in id order. */
+  private static final JsonObject ID_ORDER = new JsonObject().put(ID, 1);
+
+  private final @Nonnull MongoOperations operations;
+
+  private MongoRepository(final @Nonnull MongoOperations operations) {
+    this.operations = operations;
+    ensureIndexes();
+  }
+
+  public static MongoRepository createFromConfiguration(
+      final @Nonnull Configuration configuration) {
+    return new MongoRepository(VertxMongoOperations.createFromConfiguration(configuration));
+  }
+
+  /**
+   * Create the repository on top of the given operations, e.g. a stand-in of the tests.
+   *
+   * @param operations The mongo operations.
+   * @return The repository.
+   */
+  public static MongoRepository create(final @Nonnull MongoOperations operations) {
+    return new MongoRepository(operations);
+  }
+
+  private void ensureIndexes() {
+    operations.createIndex(
+        INSTANCE_COLLECTION,
+        new JsonObject().put("appId", 1).put("status", 1).put("gmtUpdate", 1),
+        "idx_app_status_update");
+    operations.createIndex(
+        INSTANCE_COLLECTION, new JsonObject().put("jobId", 1).put("status", 1), "idx_job_status");
+    operations.createIndex(
+        INSTANCE_COLLECTION, new JsonObject().put("appId", 1).put(ID, 1), "idx_app_id");
+    operations.createIndex(
+        INSTANCE_COLLECTION, new JsonObject().put("gmtCreate", 1), "idx_gmt_create");
+    operations.createIndex(
+        JOB_COLLECTION,
+        new JsonObject().put("appId", 1).put("status", 1).put(ID, 1),
+        "idx_app_status");
+    operations.createIndex(
+        JOB_COLLECTION, new JsonObject().put("appId", 1).put(ID, 1), "idx_app_id");
+    operations.createIndex(
+        SERVER_COLLECTION, new JsonObject().put("serviceName", 1), "idx_service_name");
+  }
+
+  // =====================  Server Info   =====================
+
+  @Override
+  public Optional<ServerInfo> queryServerByName(@Nonnull String serverName) {
+    return operations
+        .findOne(SERVER_COLLECTION, new JsonObject().put("serviceName", serverName), null)
+        .map(MongoDocuments::toServer);
+  }
+
+  @Override
+  public Optional<List<ServerInfo>> queryServers() {
+    return Optional.of(
+        operations.find(SERVER_COLLECTION, new JsonObject(), null).stream()
+            .map(MongoDocuments::toServer)
+            .collect(Collectors.toList()));
+  }
+
+  @Override
+  public void saveServerInfo(@Nonnull ServerInfo serverInfo) {
+    operations.bulkWrite(
+        SERVER_COLLECTION,
+        Collections.singletonList(
+            MongoWrite.replace(
+                idFilter(serverInfo.getId()), MongoDocuments.fromServer(serverInfo), true)),
+        false);
+  }
+
+  // =====================  Job Info   =====================
+
+  @Override
+  public Optional<JobInfo> findJobById(long jobId) {
+    return operations
+        .findOne(JOB_COLLECTION, idFilter(jobId), null)
+        .map(MongoDocuments::toJob);
+  }
+
+  @Override
+  public Optional<List<JobInfo>> findJobByAppId(long appId) {
+    return findJobs(new JsonObject().put("appId", appId));
+  }
+
+  @Override
+  public Optional<List<JobInfo>> findJobByAppIdAndName(long appId, String name) {
+    return findJobs(new JsonObject().put("appId", appId).put("jobName", name));
+  }
+
+  @Override
+  public Optional<List<JobInfo>> findJobByAppIdAndStatus(long appId, int status) {
+    return findJobs(new JsonObject().put("appId", appId).put("status", status));
+  }
+
+  @Override
+  public List<JobInfo> findJobPageByAppId(long appId, long afterId, int limit) {
+    JsonObject filter = new JsonObject().put("appId", appId);
+    return operations.find(JOB_COLLECTION, after(filter, afterId), null, ID_ORDER, limit).stream()
+        .map(MongoDocuments::toJob)
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public List<JobInfo> findJobPageByAppIdAndStatus(
+      long appId, int status, long afterId, int limit) {
+    JsonObject filter = new JsonObject().put("appId", appId).put("status", status);
+    return operations.find(JOB_COLLECTION, after(filter, afterId), null, ID_ORDER, limit).stream()
+        .map(MongoDocuments::toJob)
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public void saveJobInfo(JobInfo jobInfo) {
+    Date now = new Date();
+    if (jobInfo.getGmtCreate() == null) {
+      jobInfo.setGmtCreate(now);
+    }
+    jobInfo.setGmtUpdate(now);
+    operations.bulkWrite(
+        JOB_COLLECTION,
+        Collections.singletonList(
+            MongoWrite.replace(idFilter(jobInfo.getId()), MongoDocuments.fromJob(jobInfo), true)),
+        false);
+  }
+
+  /**
+   * Updates the job, leaving the claim fields untouched: they are only written by {@link
+   * #claimJobs(long, String, int, long)} and {@link #renewJobLeases(String, long)}.
+   *
+   * @param jobInfo {@link JobInfo instance.}
+   */
+  @Override
+  public void updateJobInfo(JobInfo jobInfo) {
+    jobInfo.setGmtUpdate(new Date());
+    JsonObject fields = MongoDocuments.fromJob(jobInfo);
+    fields.remove(ID);
+    fields.remove(CLAIM_SERVER);
+    fields.remove(LEASE_EXPIRE_TIME);
+    operations.bulkWrite(
+        JOB_COLLECTION,
+        Collections.singletonList(
+            MongoWrite.update(idFilter(jobInfo.getId()), new JsonObject().put("$set", fields))),
+        false);
+  }
+
+  /**
+   * Claims the jobs with a compare-and-set update per candidate: the update only applies while the
+   * job is still claimable, and the claimed jobs are read back by server and lease.
+   */
+  @Override
+  public List<JobInfo> claimJobs(long appId, String serverId, int limit, long leaseMillis) {
+    long now = System.currentTimeMillis();
+    long leaseExpireTime = now + leaseMillis;
+    List<JsonObject> candidates =
+        operations.find(
+            JOB_COLLECTION, claimable(appId, now), new JsonObject().put(ID, 1), ID_ORDER, limit);
+    if (candidates.isEmpty()) {
+      return new ArrayList<>();
+    }
+
+    JsonObject claim =
+        new JsonObject()
+            .put(
+                "$set",
+                new JsonObject()
+                    .put("status", JobStatus.RUNNING.getStatus())
+                    .put(CLAIM_SERVER, serverId)
+                    .put(LEASE_EXPIRE_TIME, leaseExpireTime)
+                    .put("gmtUpdate", now));
+    List<MongoWrite> writes = new ArrayList<>(candidates.size());
+    JsonArray ids = new JsonArray();
+    for (JsonObject candidate : candidates) {
+      Object id = candidate.getValue(ID);
+      ids.add(id);
+      writes.add(MongoWrite.update(claimable(appId, now).put(ID, id), claim));
+    }
+    operations.bulkWrite(JOB_COLLECTION, writes, false);
+
+    JsonObject claimed =
+        new JsonObject()
+            .put(ID, new JsonObject().put("$in", ids))
+            .put(CLAIM_SERVER, serverId)
+            .put(LEASE_EXPIRE_TIME, leaseExpireTime);
+    return operations.find(JOB_COLLECTION, claimed, null, ID_ORDER, limit).stream()
+        .map(MongoDocuments::toJob)
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public void renewJobLeases(String serverId, long leaseMillis) {
+    JsonObject filter =
+        new JsonObject()
+            .put(CLAIM_SERVER, serverId)
+            .put("status", JobStatus.RUNNING.getStatus());
+    JsonObject renew =
+        new JsonObject()
+            .put(
+                "$set",
+                new JsonObject().put(LEASE_EXPIRE_TIME, System.currentTimeMillis() + leaseMillis));
+    operations.bulkWrite(
+        JOB_COLLECTION, Collections.singletonList(MongoWrite.update(filter, renew)), false);
+  }
+
+  @Override
+  public void deleteJobInfos(Long jobId) {
+    operations.bulkWrite(
+        JOB_COLLECTION, Collections.singletonList(MongoWrite.delete(idFilter(jobId))), false);
+  }
+
+  // =====================  Instance Info   =====================
+
+  @Override
+  public long countByJobIdAndStatus(long jobId, List<Integer> status) {
+    return operations.count(
+        INSTANCE_COLLECTION,
+        new JsonObject().put("jobId", jobId).put("status", in(status)));
+  }
+
+  @Override
+  public Optional<InstanceInfo> findByInstanceId(long instanceId) {
+    return operations
+        .findOne(INSTANCE_COLLECTION, idFilter(instanceId), null)
+        .map(MongoDocuments::toInstance);
+  }
+
+  @Override
+  public Optional<List<InstanceInfo>> findByJobIdAndStatus(long jobId, List<Integer> status) {
+    return findInstances(new JsonObject().put("jobId", jobId).put("status", in(status)), null);
+  }
+
+  @Override
+  public Optional<List<InstanceInfo>> findInstancesByAppIdAndStatus(long appId, int status) {
+    return findInstances(new JsonObject().put("appId", appId).put("status", status), null);
+  }
+
+  @Override
+  public Optional<List<InstanceInfo>> findInstancesByAppId(long appId) {
+    return findInstances(new JsonObject().put("appId", appId), null);
+  }
+
+  /**
+   * Returns the instances under the server with only the status fields populated: id, appId, jobId,
+   * status, retryTimes, lastReportTime and gmtUpdate.
+   *
+   * @param appId Represent the server id.
+   * @return Instance collection.
+   */
+  public Optional<List<InstanceInfo>> findInstanceStatusByAppId(long appId) {
+    return findInstances(new JsonObject().put("appId", appId), STATUS_PROJECTION);
+  }
+
+  @Override
+  public List<InstanceInfo> findInstancePageByAppId(long appId, long afterId, int limit) {
+    return findInstancePage(appId, afterId, limit, null);
+  }
+
+  /**
+   * Returns one keyset page of the instances under the server with only the status fields
+   * populated, see {@link #findInstanceStatusByAppId(long)}.
+   *
+   * @param appId Represent the server id.
+   * @param afterId Only instances with a greater id are returned.
+   * @param limit Maximum size of the page.
+   * @return Instance page, empty when there are no more instances.
+   */
+  public List<InstanceInfo> findInstanceStatusPageByAppId(long appId, long afterId, int limit) {
+    return findInstancePage(appId, afterId, limit, STATUS_PROJECTION);
+  }
+
+  @Override
+  public void saveInstanceInfo(InstanceInfo instanceInfo) {
+    saveInstanceInfos(Collections.singletonList(instanceInfo));
+  }
+
+  /**
+   * Inserts or replaces the instances with one unordered bulk write.
+   *
+   * @param instanceInfos {@link InstanceInfo} instances.
+   */
+  public void saveInstanceInfos(Collection<InstanceInfo> instanceInfos) {
+    Date now = new Date();
+    List<MongoWrite> writes = new ArrayList<>(instanceInfos.size());
+    for (InstanceInfo instanceInfo : instanceInfos) {
+      if (instanceInfo.getGmtCreate() == null) {
+        instanceInfo.setGmtCreate(now);
+      }
+      instanceInfo.setGmtUpdate(now);
+      writes.add(
+          MongoWrite.replace(
+              idFilter(instanceInfo.getId()), MongoDocuments.fromInstance(instanceInfo), true));
+    }
+    operations.bulkWrite(INSTANCE_COLLECTION, writes, false);
+  }
+
+  @Override
+  public void updateInstanceInfo(InstanceInfo instanceInfo) {
+    updateInstanceInfos(Collections.singletonList(instanceInfo));
+  }
+
+  /**
+   * Updates the instances with one unordered bulk write. Only non null fields are written, so an
+   * instance read through a projection can be updated without clearing the other fields.
+   *
+   * @param instanceInfos {@link InstanceInfo} instances.
+   */
+  public void updateInstanceInfos(Collection<InstanceInfo> instanceInfos) {
+    Date now = new Date();
+    List<MongoWrite> writes = new ArrayList<>(instanceInfos.size());
+    for (InstanceInfo instanceInfo : instanceInfos) {
+      instanceInfo.setGmtUpdate(now);
+      JsonObject fields = MongoDocuments.fromInstance(instanceInfo);
+      fields.remove(ID);
+      fields.getMap().values().removeIf(value -> value == null);
+      writes.add(
+          MongoWrite.update(idFilter(instanceInfo.getId()), new JsonObject().put("$set", fields)));
+    }
+    operations.bulkWrite(INSTANCE_COLLECTION, writes, false);
+  }
+
+  /**
+   * Updates the retry times of the instances with one unordered bulk write.
+   *
+   * @param retryTimes Retry times by instance id.
+   */
+  public void updateInstanceRetryTimes(Map<Long, Integer> retryTimes) {
+    if (retryTimes.isEmpty()) {
+      return;
+    }
+    List<InstanceInfo> instanceInfos = new ArrayList<>(retryTimes.size());
+    retryTimes.forEach(
+        (instanceId, times) ->
+            instanceInfos.add(InstanceInfo.builder().id(instanceId).retryTimes(times).build()));
+    updateInstanceInfos(instanceInfos);
+  }
+
+  @Override
+  public void deleteInstance(Long instanceId) {
+    operations.bulkWrite(
+        INSTANCE_COLLECTION,
+        Collections.singletonList(MongoWrite.delete(idFilter(instanceId))),
+        false);
+  }
+
+  /** Collections are not partitioned, nothing to prepare. */
+  @Override
+  public void ensureInstancePartitions(Date until) {}
+
+  /**
+   * Removes the instances created before the cutoff with a single multi-document delete executed
+   * by the server over the {@code gmtCreate} index.
+   *
+   * @param cutoff Instances created before this day are dropped.
+   */
+  @Override
+  public void purgeInstancesBefore(Date cutoff) {
+    JsonObject filter =
+        new JsonObject().put("gmtCreate", new JsonObject().put("$lt", cutoff.getTime()));
+    operations.bulkWrite(
+        INSTANCE_COLLECTION, Collections.singletonList(MongoWrite.delete(filter)), false);
+  }
+
+  public void close() {
+    operations.close();
+  }
+
+  // =====================  Internal  =====================
+
+  private Optional<List<JobInfo>> findJobs(JsonObject filter) {
+    return Optional.of(
+        operations.find(JOB_COLLECTION, filter, null).stream()
+            .map(MongoDocuments::toJob)
+            .collect(Collectors.toList()));
+  }
+
+  private Optional<List<InstanceInfo>> findInstances(JsonObject filter, JsonObject projection) {
+    return Optional.of(
+        operations.find(INSTANCE_COLLECTION, filter, projection).stream()
+            .map(MongoDocuments::toInstance)
+            .collect(Collectors.toList()));
+  }
+
+  private List<InstanceInfo> findInstancePage(
+      long appId, long afterId, int limit, JsonObject projection) {
+    JsonObject filter = after(new JsonObject().put("appId", appId), afterId);
+    return operations.find(INSTANCE_COLLECTION, filter, projection, ID_ORDER, limit).stream()
+        .map(MongoDocuments::toInstance)
+        .collect(Collectors.toList());
+  }
+
+  /** New jobs, and running jobs whose lease expired. */
+  private static JsonObject claimable(long appId, long now) {
+    JsonObject expired =
+        new JsonObject()
+            .put("status", JobStatus.RUNNING.getStatus())
+            .put(
+                "$or",
+                new JsonArray()
+                    .add(new JsonObject().put(LEASE_EXPIRE_TIME, (Object) null))
+                    .add(
+                        new JsonObject()
+                            .put(LEASE_EXPIRE_TIME, new JsonObject().put("$lt", now))));
+    return new JsonObject()
+        .put("appId", appId)
+        .put(
+            "$or",
+            new JsonArray()
+                .add(new JsonObject().put("status", JobStatus.NEW.getStatus()))
+                .add(expired));
+  }
+
+  private static JsonObject after(JsonObject filter, long afterId) {
+    return filter.put(ID, new JsonObject().put("$gt", afterId));
+  }
+
+  private static JsonObject idFilter(Long id) {
+    return new JsonObject().put(ID, id);
+  }
+
+  private static JsonObject in(List<Integer> values) {
+    return new JsonObject().put("$in", new JsonArray(new ArrayList<>(values)));
+  }
+}
@@ -0,0 +1,73 @@
+package xyz.vopen.framework.repository.mongo;
+
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * {@link MongoWrite} One operation of a {@link MongoOperations#bulkWrite} call.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/28
+ */
+public final class MongoWrite {
+
+  public enum Type {
+    INSERT,
+    REPLACE,
+    UPDATE,
+    DELETE
+  }
+
+  private final @Nonnull Type type;
+  private final @Nullable JsonObject filter;
+  private final @Nullable JsonObject document;
+  private final boolean upsert;
+
+  private MongoWrite(
+      @Nonnull Type type,
+      @Nullable JsonObject filter,
+      @Nullable JsonObject document,
+      boolean upsert) {
+    this.type = type;
+    this.filter = filter;
+    this.document = document;
+    this.upsert = upsert;
+  }
+
+  public static MongoWrite insert(@Nonnull JsonObject document) {
+    return new MongoWrite(Type.INSERT, null, document, false);
+  }
+
+  /** Replaces the whole document matching the filter, inserting it if {@code upsert}. */
+  public static MongoWrite replace(
+      @Nonnull JsonObject filter, @Nonnull JsonObject document, boolean upsert) {
+    return new MongoWrite(Type.REPLACE, filter, document, upsert);
+  }
+
+  /** Applies an update document, e.g. {@code {"$set": {...}}}, to the matching documents. */
+  public static MongoWrite update(@Nonnull JsonObject filter, @Nonnull JsonObject update) {
+    return new MongoWrite(Type.UPDATE, filter, update, false);
+  }
+
+  public static MongoWrite delete(@Nonnull JsonObject filter) {
+    return new MongoWrite(Type.DELETE, filter, null, false);
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public JsonObject getFilter() {
+    return filter;
+  }
+
+  public JsonObject getDocument() {
+    return document;
+  }
+
+  public boolean isUpsert() {
+    return upsert;
+  }
+}
@@ -0,0 +1,159 @@
+package xyz.vopen.framework.repository.mongo;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.BulkOperation;
+import io.vertx.ext.mongo.BulkWriteOptions;
+import io.vertx.ext.mongo.FindOptions;
+import io.vertx.ext.mongo.IndexOptions;
+import io.vertx.ext.mongo.MongoClient;
+import io.vertx.ext.mongo.MongoClientBulkWriteResult;
+import xyz.vopen.framework.neptune.common.configuration.Configuration;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import static xyz.vopen.framework.neptune.common.configuration.PersistenceOptions.*;
+
+/**
+ * {@link VertxMongoOperations} {@link MongoOperations} backed by the reactive vert.x mongo client,
+ * each call blocks until the client completes or the configured timeout elapses.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/28
+ */
+public class VertxMongoOperations implements MongoOperations {
+
+  private static final String DATA_SOURCE_NAME = "neptune";
+
+  private final @Nonnull Vertx vertx;
+  private final @Nonnull MongoClient client;
+  private final long timeoutMs;
+
+  private VertxMongoOperations(final Configuration configuration) {
+    JsonObject config =
+        new JsonObject()
+            .put("connection_string", configuration.getString(MONGO_URL))
+            .put("db_name", configuration.getString(MONGO_DATABASE));
+    this.vertx = Vertx.vertx();
+    this.client = MongoClient.createShared(vertx, config, DATA_SOURCE_NAME);
+    this.timeoutMs = configuration.getLong(MONGO_TIMEOUT);
+  }
+
+  public static VertxMongoOperations createFromConfiguration(
+      final @Nonnull Configuration configuration) {
+    return new VertxMongoOperations(configuration);
+  }
+
+  @Override
+  public void bulkWrite(String collection, List<MongoWrite> writes, boolean ordered) {
+    if (writes.isEmpty()) {
+      return;
+    }
+    List<BulkOperation> operations = new ArrayList<>(writes.size());
+    for (MongoWrite write : writes) {
+      operations.add(toBulkOperation(write));
+    }
+    this.<MongoClientBulkWriteResult>await(
+        handler ->
+            client.bulkWriteWithOptions(
+                collection, operations, new BulkWriteOptions().setOrdered(ordered), handler));
+  }
+
+  @Override
+  public List<JsonObject> find(
+      String collection, JsonObject filter, @Nullable JsonObject projection) {
+    FindOptions options = new FindOptions();
+    if (projection != null) {
+      options.setFields(projection);
+    }
+    return await(handler -> client.findWithOptions(collection, filter, options, handler));
+  }
+
+  @Override
+  public List<JsonObject> find(
+      String collection,
+      JsonObject filter,
+      @Nullable JsonObject projection,
+      JsonObject sort,
+      int limit) {
+    FindOptions options = new FindOptions().setSort(sort).setLimit(limit).setBatchSize(limit);
+    if (projection != null) {
+      options.setFields(projection);
+    }
+    return await(handler -> client.findWithOptions(collection, filter, options, handler));
+  }
+
+  @Override
+  public Optional<JsonObject> findOne(
+      String collection, JsonObject filter, @Nullable JsonObject projection) {
+    return Optional.ofNullable(
+        await(handler -> client.findOne(collection, filter, projection, handler)));
+  }
+
+  @Override
+  public long count(String collection, JsonObject filter) {
+    Long count = await(handler -> client.count(collection, filter, handler));
+    return count == null ? 0L : count;
+  }
+
+  @Override
+  public void createIndex(String collection, JsonObject keys, String name) {
+    this.<Void>await(
+        handler ->
+            client.createIndexWithOptions(
+                collection, keys, new IndexOptions().name(name), handler));
+  }
+
+  @Override
+  public void close() {
+    client.close();
+    vertx.close();
+  }
+
+  private static BulkOperation toBulkOperation(MongoWrite write) {
+    switch (write.getType()) {
+      case INSERT:
+        return BulkOperation.createInsert(write.getDocument());
+      case REPLACE:
+        return BulkOperation.createReplace(
+            write.getFilter(), write.getDocument(), write.isUpsert());
+      case UPDATE:
+        return BulkOperation.createUpdate(write.getFilter(), write.getDocument(), false, true);
+      case DELETE:
+        return BulkOperation.createDelete(write.getFilter());
+      default:
+        throw new IllegalArgumentException("Unknown write type " + write.getType());
+    }
+  }
+
+  private <T> T await(Consumer<Handler<AsyncResult<T>>> operation) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    operation.accept(
+        ar -> {
+          if (ar.succeeded()) {
+            future.complete(ar.result());
+          } else {
+            future.completeExceptionally(ar.cause());
+          }
+        });
+    try {
+      return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for mongo.", e);
+    } catch (ExecutionException | TimeoutException e) {
+      throw new IllegalStateException("Mongo operation failed.", e);
+    }
+  }
+}
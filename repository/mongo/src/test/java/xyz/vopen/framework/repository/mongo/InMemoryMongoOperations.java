@@ -0,0 +1,296 @@
+package xyz.vopen.framework.repository.mongo;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * {@link InMemoryMongoOperations} In-process stand-in of a Mongo database, so that {@link
+ * MongoRepository} can be exercised without a server.
+ *
+ * <p>Supports the filter operators used by the repository ({@code $or, $in, $ne, $lt, $lte, $gt,
+ * $gte}), inclusion projections and the {@code $set, $inc} update operators. Documents are keyed by
+ * {@code _id}.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/28
+ */
+public class InMemoryMongoOperations implements MongoOperations {
+
+  private static final String ID = "_id";
+
+  private final Map<String, Map<Object, JsonObject>> collections = new ConcurrentHashMap<>();
+  private final Map<String, Set<String>> indexes = new ConcurrentHashMap<>();
+
+  @Override
+  public synchronized void bulkWrite(String collection, List<MongoWrite> writes, boolean ordered) {
+    Map<Object, JsonObject> documents = collection(collection);
+    RuntimeException failure = null;
+    for (MongoWrite write : writes) {
+      try {
+        apply(documents, write);
+      } catch (RuntimeException e) {
+        if (ordered) {
+          throw e;
+        }
+        failure = failure == null ? e : failure;
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  @Override
+  public synchronized List<JsonObject> find(
+      String collection, JsonObject filter, @Nullable JsonObject projection) {
+    return collection(collection).values().stream()
+        .filter(document -> matches(document, filter))
+        .map(document -> project(document, projection))
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public synchronized List<JsonObject> find(
+      String collection,
+      JsonObject filter,
+      @Nullable JsonObject projection,
+      JsonObject sort,
+      int limit) {
+    return collection(collection).values().stream()
+        .filter(document -> matches(document, filter))
+        .sorted(comparator(sort))
+        .limit(limit)
+        .map(document -> project(document, projection))
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public synchronized Optional<JsonObject> findOne(
+      String collection, JsonObject filter, @Nullable JsonObject projection) {
+    return collection(collection).values().stream()
+        .filter(document -> matches(document, filter))
+        .findFirst()
+        .map(document -> project(document, projection));
+  }
+
+  @Override
+  public synchronized long count(String collection, JsonObject filter) {
+    return collection(collection).values().stream()
+        .filter(document -> matches(document, filter))
+        .count();
+  }
+
+  @Override
+  public void createIndex(String collection, JsonObject keys, String name) {
+    indexes.computeIfAbsent(collection, key -> ConcurrentHashMap.newKeySet()).add(name);
+  }
+
+  /** Returns the names of the indexes created on the collection. */
+  public Set<String> getIndexes(String collection) {
+    return indexes.getOrDefault(collection, ConcurrentHashMap.newKeySet());
+  }
+
+  @Override
+  public void close() {}
+
+  // =====================  Internal  =====================
+
+  private Map<Object, JsonObject> collection(String name) {
+    return collections.computeIfAbsent(name, key -> new LinkedHashMap<>());
+  }
+
+  private static void apply(Map<Object, JsonObject> documents, MongoWrite write) {
+    switch (write.getType()) {
+      case INSERT:
+        {
+          Object id = write.getDocument().getValue(ID);
+          if (documents.containsKey(id)) {
+            throw new IllegalStateException("E11000 duplicate key error, _id: " + id);
+          }
+          documents.put(id, write.getDocument().copy());
+          break;
+        }
+      case REPLACE:
+        {
+          List<Object> ids = matchingIds(documents, write.getFilter());
+          JsonObject replacement = write.getDocument().copy();
+          if (!ids.isEmpty()) {
+            replacement.put(ID, ids.get(0));
+            documents.put(ids.get(0), replacement);
+          } else if (write.isUpsert()) {
+            Object id = replacement.getValue(ID, write.getFilter().getValue(ID));
+            replacement.put(ID, id);
+            documents.put(id, replacement);
+          }
+          break;
+        }
+      case UPDATE:
+        for (Object id : matchingIds(documents, write.getFilter())) {
+          applyUpdate(documents.get(id), write.getDocument());
+        }
+        break;
+      case DELETE:
+        matchingIds(documents, write.getFilter()).forEach(documents::remove);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown write type " + write.getType());
+    }
+  }
+
+  private static List<Object> matchingIds(Map<Object, JsonObject> documents, JsonObject filter) {
+    List<Object> ids = new ArrayList<>();
+    documents.forEach(
+        (id, document) -> {
+          if (matches(document, filter)) {
+            ids.add(id);
+          }
+        });
+    return ids;
+  }
+
+  private static void applyUpdate(JsonObject document, JsonObject update) {
+    JsonObject set = update.getJsonObject("$set");
+    if (set != null) {
+      set.forEach(entry -> document.put(entry.getKey(), entry.getValue()));
+    }
+    JsonObject inc = update.getJsonObject("$inc");
+    if (inc != null) {
+      inc.forEach(
+          entry -> {
+            Number current = (Number) document.getValue(entry.getKey(), 0L);
+            document.put(
+                entry.getKey(), current.longValue() + ((Number) entry.getValue()).longValue());
+          });
+    }
+  }
+
+  static boolean matches(JsonObject document, JsonObject filter) {
+    for (Map.Entry<String, Object> condition : filter) {
+      if ("$or".equals(condition.getKey())) {
+        if (((JsonArray) condition.getValue())
+            .stream().noneMatch(branch -> matches(document, (JsonObject) branch))) {
+          return false;
+        }
+        continue;
+      }
+      Object actual = document.getValue(condition.getKey());
+      Object expected = condition.getValue();
+      if (expected instanceof JsonObject) {
+        if (!matchesOperators(actual, (JsonObject) expected)) {
+          return false;
+        }
+      } else if (!valueEquals(actual, expected)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean matchesOperators(Object actual, JsonObject operators) {
+    for (Map.Entry<String, Object> operator : operators) {
+      Object operand = operator.getValue();
+      switch (operator.getKey()) {
+        case "$in":
+          if (((JsonArray) operand).stream().noneMatch(value -> valueEquals(actual, value))) {
+            return false;
+          }
+          break;
+        case "$ne":
+          if (valueEquals(actual, operand)) {
+            return false;
+          }
+          break;
+        case "$lt":
+          if (actual == null || compare(actual, operand) >= 0) {
+            return false;
+          }
+          break;
+        case "$lte":
+          if (actual == null || compare(actual, operand) > 0) {
+            return false;
+          }
+          break;
+        case "$gt":
+          if (actual == null || compare(actual, operand) <= 0) {
+            return false;
+          }
+          break;
+        case "$gte":
+          if (actual == null || compare(actual, operand) < 0) {
+            return false;
+          }
+          break;
+        default:
+          throw new UnsupportedOperationException("Unsupported operator " + operator.getKey());
+      }
+    }
+    return true;
+  }
+
+  private static boolean valueEquals(Object actual, Object expected) {
+    if (actual instanceof Number && expected instanceof Number) {
+      return compare(actual, expected) == 0;
+    }
+    return Objects.equals(actual, expected);
+  }
+
+  @SuppressWarnings("unchecked")
+  static int compare(Object left, Object right) {
+    if (left instanceof Number && right instanceof Number) {
+      Number l = (Number) left;
+      Number r = (Number) right;
+      if (isIntegral(l) && isIntegral(r)) {
+        return Long.compare(l.longValue(), r.longValue());
+      }
+      return Double.compare(l.doubleValue(), r.doubleValue());
+    }
+    return ((Comparable<Object>) left).compareTo(right);
+  }
+
+  private static Comparator<JsonObject> comparator(JsonObject sort) {
+    Comparator<JsonObject> comparator = (left, right) -> 0;
+    for (String field : sort.fieldNames()) {
+      int direction = sort.getInteger(field) < 0 ? -1 : 1;
+      comparator =
+          comparator.thenComparing(
+              (left, right) -> {
+                Object l = left.getValue(field);
+                Object r = right.getValue(field);
+                if (l == null || r == null) {
+                  return l == null ? (r == null ? 0 : -direction) : direction;
+                }
+                return direction * compare(l, r);
+              });
+    }
+    return comparator;
+  }
+
+  private static boolean isIntegral(Number number) {
+    return number instanceof Long || number instanceof Integer;
+  }
+
+  private static JsonObject project(JsonObject document, @Nullable JsonObject projection) {
+    if (projection == null || projection.isEmpty()) {
+      return document.copy();
+    }
+    JsonObject projected = new JsonObject().put(ID, document.getValue(ID));
+    for (String field : projection.fieldNames()) {
+      if (document.containsKey(field)) {
+        projected.put(field, document.getValue(field));
+      }
+    }
+    return projected;
+  }
+}
@@ -0,0 +1,103 @@
+package xyz.vopen.framework.repository.mongo;
+
+import org.junit.Before;
+import org.junit.Test;
+import xyz.vopen.framework.neptune.common.model.InstanceInfo;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link MongoRepositoryTest} Tests of the status projection of the instances of {@link
+ * MongoRepository}, on top of the {@link InMemoryMongoOperations}.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/28
+ */
+public class MongoRepositoryTest {
+
+  private InMemoryMongoOperations operations;
+  private MongoRepository repository;
+
+  @Before
+  public void setUp() {
+    operations = new InMemoryMongoOperations();
+    repository = MongoRepository.create(operations);
+    repository.saveInstanceInfos(
+        Arrays.asList(instance(1L, 10L), instance(2L, 10L), instance(3L, 20L)));
+  }
+
+  @Test
+  public void testFindInstanceStatusByAppIdReadsStatusFields() {
+    List<InstanceInfo> instances = repository.findInstanceStatusByAppId(10L).get();
+    instances.sort(Comparator.comparing(InstanceInfo::getId));
+
+    assertEquals(2, instances.size());
+    InstanceInfo instance = instances.get(0);
+    assertEquals(Long.valueOf(1L), instance.getId());
+    assertEquals(Long.valueOf(10L), instance.getAppId());
+    assertEquals(Long.valueOf(100L), instance.getJobId());
+    assertEquals(Integer.valueOf(1), instance.getStatus());
+    assertEquals(Integer.valueOf(2), instance.getRetryTimes());
+    assertNotNull(instance.getLastReportTime());
+    assertNotNull(instance.getGmtUpdate());
+    assertNull(instance.getJobParams());
+    assertNull(instance.getResult());
+    assertNull(instance.getTaskAddress());
+    assertNull(instance.getTriggerTime());
+  }
+
+  @Test
+  public void testFindInstanceStatusPageByAppId() {
+    List<InstanceInfo> page = repository.findInstanceStatusPageByAppId(10L, 1L, 10);
+
+    assertEquals(1, page.size());
+    assertEquals(Long.valueOf(2L), page.get(0).getId());
+    assertNull(page.get(0).getJobParams());
+  }
+
+  @Test
+  public void testUpdateOfStatusReadKeepsOtherFields() {
+    InstanceInfo instance = repository.findInstanceStatusByAppId(20L).get().get(0);
+    instance.setStatus(5);
+    instance.setRetryTimes(3);
+    repository.updateInstanceInfos(Arrays.asList(instance));
+
+    InstanceInfo stored = repository.findByInstanceId(3L).get();
+    assertEquals(Integer.valueOf(5), stored.getStatus());
+    assertEquals(Integer.valueOf(3), stored.getRetryTimes());
+    assertEquals("params-3", stored.getJobParams());
+    assertEquals("result-3", stored.getResult());
+    assertEquals("127.0.0.1:27777", stored.getTaskAddress());
+    assertNotNull(stored.getTriggerTime());
+  }
+
+  @Test
+  public void testStatusIndexIsCreated() {
+    assertTrue(operations.getIndexes(MongoRepository.INSTANCE_COLLECTION).size() > 0);
+  }
+
+  // =====================  Internal  =====================
+
+  private static InstanceInfo instance(long id, long appId) {
+    return InstanceInfo.builder()
+        .id(id)
+        .appId(appId)
+        .jobId(id * 100L)
+        .jobParams("params-" + id)
+        .status(1)
+        .result("result-" + id)
+        .triggerTime(new Date())
+        .lastReportTime(new Date())
+        .retryTimes(2)
+        .taskAddress("127.0.0.1:27777")
+        .build();
+  }
+}
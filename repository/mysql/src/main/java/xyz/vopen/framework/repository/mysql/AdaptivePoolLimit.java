@@ -0,0 +1,113 @@
+package xyz.vopen.framework.repository.mysql;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * {@link AdaptivePoolLimit} Number of connections a {@link MonitoredPool} may lease at once,
+ * adjusted after every window of statements in the manner of TCP Vegas. The number of statements
+ * queued inside the database is estimated from the rise of the query latency over its unloaded
+ * baseline, {@code limit * (1 - baseline / latency)}:
+ *
+ * <ul>
+ *   <li>more than {@link #MAX_QUEUED} queued: the database is saturated, more connections only add
+ *       contention, the limit shrinks by one;
+ *   <li>less than {@link #MIN_QUEUED} queued while statements wait for a connection: the database
+ *       keeps up, the limit grows by one;
+ *   <li>statements barely wait and less than half of the connections are used: the limit shrinks
+ *       by one, the idle connections being closed by the idle timeout.
+ * </ul>
+ *
+ * The baseline is the lowest latency seen. As the workload changes it is measured again
+ * periodically: the limit drops to the minimum size for two windows, the first one draining the
+ * connections leased before, the second one giving the new baseline.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+final class AdaptivePoolLimit {
+
+  /** Number of statements between two adjustments. */
+  static final int WINDOW = 64;
+
+  /** Number of windows between two measures of the baseline. */
+  static final int PROBE_INTERVAL = 500;
+
+  private static final double MIN_QUEUED = 2.0;
+  private static final double MAX_QUEUED = 4.0;
+  private static final int PROBE_WINDOWS = 2;
+
+  private final int minSize;
+  private final int maxSize;
+
+  private volatile int limit;
+  private long baselineLatencyNanos = Long.MAX_VALUE;
+  private int windows;
+  private int probeWindowsLeft;
+  private int limitBeforeProbe;
+
+  private int samples;
+  private long windowWaitNanos;
+  private long windowLatencyNanos;
+  private int windowPeakInUse;
+
+  AdaptivePoolLimit(int minSize, int maxSize) {
+    Preconditions.checkArgument(minSize > 0, "minSize must be positive");
+    Preconditions.checkArgument(minSize <= maxSize, "minSize must not exceed maxSize");
+    this.minSize = minSize;
+    this.maxSize = maxSize;
+    this.limit = minSize;
+  }
+
+  int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Records one completed statement.
+   *
+   * @param waitNanos Time the statement waited for a connection.
+   * @param latencyNanos Time the statement ran on the connection.
+   * @param inUse Connections in use when it completed, itself included.
+   */
+  synchronized void onSample(long waitNanos, long latencyNanos, int inUse) {
+    windowWaitNanos += waitNanos;
+    windowLatencyNanos += latencyNanos;
+    windowPeakInUse = Math.max(windowPeakInUse, inUse);
+    if (++samples < WINDOW) {
+      return;
+    }
+
+    long averageWait = windowWaitNanos / samples;
+    long averageLatency = Math.max(1L, windowLatencyNanos / samples);
+    int peakInUse = windowPeakInUse;
+    samples = 0;
+    windowWaitNanos = 0;
+    windowLatencyNanos = 0;
+    windowPeakInUse = 0;
+
+    if (probeWindowsLeft > 0) {
+      if (--probeWindowsLeft == 0) {
+        baselineLatencyNanos = averageLatency;
+        limit = limitBeforeProbe;
+      }
+      return;
+    }
+    if (++windows % PROBE_INTERVAL == 0) {
+      probeWindowsLeft = PROBE_WINDOWS;
+      limitBeforeProbe = limit;
+      limit = minSize;
+      return;
+    }
+
+    baselineLatencyNanos = Math.min(baselineLatencyNanos, averageLatency);
+    double queued = limit * (1.0 - (double) baselineLatencyNanos / averageLatency);
+    boolean waiting = averageWait * 100 >= averageLatency;
+    if (queued > MAX_QUEUED) {
+      limit = Math.max(minSize, limit - 1);
+    } else if (queued < MIN_QUEUED && waiting) {
+      limit = Math.min(maxSize, limit + 1);
+    } else if (!waiting && peakInUse * 2 < limit) {
+      limit = Math.max(minSize, limit - 1);
+    }
+  }
+}
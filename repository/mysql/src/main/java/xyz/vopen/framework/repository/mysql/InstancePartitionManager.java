@@ -0,0 +1,191 @@
+package xyz.vopen.framework.repository.mysql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.mysqlclient.MySQLPool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.Tuple;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * {@link InstancePartitionManager} Manages the daily partitions of the {@code instance_info}
+ * table. Each day has its own partition {@code pYYYYMMDD}, new days are split out of the trailing
+ * {@code p_max} partition ahead of time and expired days are dropped as a whole, which costs the
+ * same whatever the number of rows.
+ *
+ * <p>The table must be range partitioned on the creation day, the partition key being part of
+ * every unique key, by the migration {@code sql/instance_info_partition.sql} of this module. The
+ * migration leaves the whole history in {@code p_max}; the first {@link #ensurePartitions} splits
+ * it into daily partitions from the day of the oldest instance, so that it expires day by day like
+ * the rows written afterwards.
+ *
+ * <p>On a table that is not partitioned both operations log a warning and do nothing.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+final class InstancePartitionManager {
+  private static final Logger LOG = LoggerFactory.getLogger(InstancePartitionManager.class);
+
+  private static final String TABLE = "instance_info";
+  private static final String MAX_PARTITION = "p_max";
+  private static final String PARTITION_PREFIX = "p";
+  private static final DateTimeFormatter PARTITION_DAY = DateTimeFormatter.BASIC_ISO_DATE;
+  /** MySQL allows 8192 partitions per table, the oldest daily partition takes any older rows. */
+  private static final int MAX_DAILY_PARTITIONS = 8000;
+
+  private final @Nonnull MySQLPool client;
+  private final @Nonnull String database;
+
+  InstancePartitionManager(final @Nonnull MySQLPool client, final @Nonnull String database) {
+    this.client = client;
+    this.database = database;
+  }
+
+  /**
+   * Creates the daily partitions up to the given day, in one reorganization of {@code p_max}.
+   *
+   * @param until Last day to create.
+   */
+  void ensurePartitions(LocalDate until) {
+    List<String> partitions = partitionNames();
+    if (!partitions.contains(MAX_PARTITION)) {
+      LOG.warn("[InstancePartitionManager] {} is not partitioned by day, skip.", TABLE);
+      return;
+    }
+
+    LocalDate newest =
+        partitions.stream()
+            .map(InstancePartitionManager::parseDay)
+            .filter(day -> day != null)
+            .max(LocalDate::compareTo)
+            .orElse(null);
+    LocalDate day = newest == null ? firstDay(until) : newest.plusDays(1);
+    if (day.isAfter(until)) {
+      return;
+    }
+
+    StringBuilder ddl =
+        new StringBuilder("ALTER TABLE ")
+            .append(TABLE)
+            .append(" REORGANIZE PARTITION ")
+            .append(MAX_PARTITION)
+            .append(" INTO (");
+    List<String> created = new ArrayList<>();
+    for (; !day.isAfter(until); day = day.plusDays(1)) {
+      String name = PARTITION_PREFIX + day.format(PARTITION_DAY);
+      created.add(name);
+      ddl.append("PARTITION ")
+          .append(name)
+          .append(" VALUES LESS THAN (TO_DAYS('")
+          .append(day.plusDays(1))
+          .append("')), ");
+    }
+    ddl.append("PARTITION ").append(MAX_PARTITION).append(" VALUES LESS THAN MAXVALUE)");
+
+    execute(handler -> client.query(ddl.toString()).execute(handler));
+    LOG.info(
+        "[InstancePartitionManager] created {} partitions, {} to {}.",
+        created.size(),
+        created.get(0),
+        created.get(created.size() - 1));
+  }
+
+  /**
+   * Drops the daily partitions of the days before the cutoff.
+   *
+   * @param cutoff First day to keep.
+   */
+  void dropPartitionsBefore(LocalDate cutoff) {
+    List<String> partitions = partitionNames();
+    if (!partitions.contains(MAX_PARTITION)) {
+      LOG.warn("[InstancePartitionManager] {} is not partitioned by day, skip.", TABLE);
+      return;
+    }
+
+    List<String> expired =
+        partitions.stream()
+            .filter(
+                name -> {
+                  LocalDate day = parseDay(name);
+                  return day != null && day.isBefore(cutoff);
+                })
+            .collect(Collectors.toList());
+    if (expired.isEmpty()) {
+      return;
+    }
+
+    String ddl = "ALTER TABLE " + TABLE + " DROP PARTITION " + String.join(",", expired);
+    execute(handler -> client.query(ddl).execute(handler));
+    LOG.info("[InstancePartitionManager] dropped partitions {}.", expired);
+  }
+
+  /**
+   * Returns the first day to partition when no day has its partition yet: the day of the oldest
+   * instance, all of them being in {@code p_max}, or today on an empty table.
+   */
+  private LocalDate firstDay(LocalDate until) {
+    RowSet<Row> rows =
+        execute(handler -> client.query("SELECT MIN(gmt_create) FROM " + TABLE).execute(handler));
+    LocalDate today = LocalDate.now();
+    LocalDateTime oldest = rows.iterator().next().getLocalDateTime(0);
+    if (oldest == null || !oldest.toLocalDate().isBefore(today)) {
+      return today;
+    }
+
+    LocalDate first = oldest.toLocalDate();
+    LocalDate earliest = until.minusDays(MAX_DAILY_PARTITIONS - 1);
+    return first.isBefore(earliest) ? earliest : first;
+  }
+
+  private List<String> partitionNames() {
+    RowSet<Row> rows =
+        execute(
+            handler ->
+                client
+                    .preparedQuery(
+                        "SELECT PARTITION_NAME FROM information_schema.PARTITIONS "
+                            + "WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ? "
+                            + "AND PARTITION_NAME IS NOT NULL")
+                    .execute(Tuple.of(database, TABLE), handler));
+    List<String> names = new ArrayList<>();
+    for (Row row : rows) {
+      names.add(row.getString(0));
+    }
+    return names;
+  }
+
+  @Nullable
+  private static LocalDate parseDay(String partitionName) {
+    if (!partitionName.startsWith(PARTITION_PREFIX) || MAX_PARTITION.equals(partitionName)) {
+      return null;
+    }
+    try {
+      return LocalDate.parse(partitionName.substring(PARTITION_PREFIX.length()), PARTITION_DAY);
+    } catch (DateTimeParseException e) {
+      return null;
+    }
+  }
+
+  private static RowSet<Row> execute(Consumer<Handler<AsyncResult<RowSet<Row>>>> statement) {
+    try {
+      return VertxFutures.await(statement);
+    } catch (RuntimeException e) {
+      LOG.error("[InstancePartitionManager] failure: {}", e.getMessage());
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,365 @@
+package xyz.vopen.framework.repository.mysql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.mysqlclient.MySQLPool;
+import io.vertx.sqlclient.PreparedQuery;
+import io.vertx.sqlclient.PreparedStatement;
+import io.vertx.sqlclient.Query;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.SqlClient;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.SqlResult;
+import io.vertx.sqlclient.Transaction;
+import io.vertx.sqlclient.Tuple;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collector;
+
+/**
+ * {@link MonitoredPool} {@link MySQLPool} decorator collecting the {@link PoolStatistics}. A
+ * statement leases a connection explicitly, as the vert.x pool does internally, so the time spent
+ * waiting for it can be measured; the connection is counted as active until the statement
+ * completes. A transaction is counted as active until it is committed, rolled back or aborted, its
+ * wait time includes the {@code BEGIN} round trip.
+ *
+ * <p>With an {@link AdaptivePoolLimit} the statements and transactions beyond the current limit
+ * wait in a queue of this pool, bounded by the wait queue size, and every completed statement is
+ * fed back to the limit.
+ *
+ * <p>Connections leased through {@link #getConnection(Handler)} are given to the caller as is, only
+ * their wait time is recorded and they are not subject to the limit.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+final class MonitoredPool implements MySQLPool {
+
+  private final @Nonnull MySQLPool delegate;
+  private final @Nonnull PoolStatistics statistics;
+  private final @Nullable AdaptivePoolLimit adaptiveLimit;
+  private final int maxWaitQueueSize;
+
+  /** Admissions waiting for the limit, guarded by itself along with {@link #leased}. */
+  private final ArrayDeque<Runnable> waiters = new ArrayDeque<>();
+
+  private int leased;
+
+  MonitoredPool(final @Nonnull MySQLPool delegate, final @Nonnull PoolStatistics statistics) {
+    this(delegate, statistics, null, -1);
+  }
+
+  /**
+   * @param adaptiveLimit Limit of the connections leased at once, null to leave it to the pool.
+   * @param maxWaitQueueSize Maximum number of admissions waiting for the limit, -1 for unbounded.
+   */
+  MonitoredPool(
+      final @Nonnull MySQLPool delegate,
+      final @Nonnull PoolStatistics statistics,
+      final @Nullable AdaptivePoolLimit adaptiveLimit,
+      final int maxWaitQueueSize) {
+    this.delegate = delegate;
+    this.statistics = statistics;
+    this.adaptiveLimit = adaptiveLimit;
+    this.maxWaitQueueSize = maxWaitQueueSize;
+    if (adaptiveLimit != null) {
+      statistics.setLimit(adaptiveLimit.getLimit());
+    }
+  }
+
+  @Override
+  public Query<RowSet<Row>> query(String sql) {
+    return new MonitoredQuery<>(connection -> connection.query(sql));
+  }
+
+  @Override
+  public PreparedQuery<RowSet<Row>> preparedQuery(String sql) {
+    return new MonitoredPreparedQuery<>(connection -> connection.preparedQuery(sql));
+  }
+
+  @Override
+  public void getConnection(Handler<AsyncResult<SqlConnection>> handler) {
+    long start = System.nanoTime();
+    statistics.onRequest();
+    delegate.getConnection(
+        ar -> {
+          statistics.onAcquire(System.nanoTime() - start, ar.succeeded());
+          if (ar.succeeded()) {
+            // not tracked once given away
+            statistics.onRelease(true);
+          }
+          handler.handle(ar);
+        });
+  }
+
+  @Override
+  public void begin(Handler<AsyncResult<Transaction>> handler) {
+    long start = System.nanoTime();
+    statistics.onRequest();
+    admit(
+        () ->
+            delegate.begin(
+                ar -> {
+                  statistics.onAcquire(System.nanoTime() - start, ar.succeeded());
+                  if (ar.succeeded()) {
+                    handler.handle(Future.succeededFuture(new MonitoredTransaction(ar.result())));
+                  } else {
+                    release();
+                    handler.handle(ar);
+                  }
+                }),
+        failure -> {
+          statistics.onAcquire(System.nanoTime() - start, false);
+          handler.handle(Future.failedFuture(failure));
+        });
+  }
+
+  @Override
+  public void close() {
+    delegate.close();
+  }
+
+  private <T> void execute(
+      BiConsumer<SqlClient, Handler<AsyncResult<T>>> statement, Handler<AsyncResult<T>> handler) {
+    long start = System.nanoTime();
+    statistics.onRequest();
+    admit(
+        () ->
+            delegate.getConnection(
+                ar -> {
+                  long acquired = System.nanoTime();
+                  long waitNanos = acquired - start;
+                  statistics.onAcquire(waitNanos, ar.succeeded());
+                  if (ar.failed()) {
+                    release();
+                    handler.handle(Future.failedFuture(ar.cause()));
+                    return;
+                  }
+
+                  SqlConnection connection = ar.result();
+                  statement.accept(
+                      connection,
+                      result -> {
+                        connection.close();
+                        statistics.onRelease(result.succeeded());
+                        if (adaptiveLimit != null) {
+                          // before the release, so that a grown limit admits the waiters at once
+                          adaptiveLimit.onSample(waitNanos, System.nanoTime() - acquired, leased());
+                          statistics.setLimit(adaptiveLimit.getLimit());
+                        }
+                        release();
+                        handler.handle(result);
+                      });
+                }),
+        failure -> {
+          statistics.onAcquire(System.nanoTime() - start, false);
+          handler.handle(Future.failedFuture(failure));
+        });
+  }
+
+  // =====================  Adaptive Limit  =====================
+
+  /** Runs the lease now if the limit allows it, later otherwise. */
+  private void admit(Runnable lease, Consumer<Throwable> rejected) {
+    if (adaptiveLimit == null) {
+      lease.run();
+      return;
+    }
+
+    boolean full;
+    synchronized (waiters) {
+      if (leased < adaptiveLimit.getLimit()) {
+        leased++;
+        full = false;
+      } else {
+        full = maxWaitQueueSize >= 0 && waiters.size() >= maxWaitQueueSize;
+        if (!full) {
+          waiters.add(lease);
+          return;
+        }
+      }
+    }
+
+    if (full) {
+      rejected.accept(
+          new IllegalStateException(
+              "Connection pool reached max wait queue size of " + maxWaitQueueSize));
+    } else {
+      lease.run();
+    }
+  }
+
+  private int leased() {
+    synchronized (waiters) {
+      return leased;
+    }
+  }
+
+  /** Gives back an admission and runs the waiting ones the limit now allows. */
+  private void release() {
+    if (adaptiveLimit == null) {
+      return;
+    }
+
+    List<Runnable> admitted = new ArrayList<>();
+    synchronized (waiters) {
+      leased--;
+      while (!waiters.isEmpty() && leased < adaptiveLimit.getLimit()) {
+        admitted.add(waiters.poll());
+        leased++;
+      }
+    }
+    admitted.forEach(Runnable::run);
+  }
+
+  private class MonitoredQuery<T> implements Query<T> {
+    final Function<SqlClient, Query<T>> query;
+
+    MonitoredQuery(Function<SqlClient, Query<T>> query) {
+      this.query = query;
+    }
+
+    @Override
+    public void execute(Handler<AsyncResult<T>> handler) {
+      MonitoredPool.this.execute(
+          (connection, completion) -> query.apply(connection).execute(completion), handler);
+    }
+
+    @Override
+    public <R> Query<SqlResult<R>> collecting(Collector<Row, ?, R> collector) {
+      return new MonitoredQuery<>(connection -> query.apply(connection).collecting(collector));
+    }
+
+    @Override
+    public <U> Query<RowSet<U>> mapping(Function<Row, U> mapper) {
+      return new MonitoredQuery<>(connection -> query.apply(connection).mapping(mapper));
+    }
+  }
+
+  private class MonitoredPreparedQuery<T> implements PreparedQuery<T> {
+    final Function<SqlClient, PreparedQuery<T>> query;
+
+    MonitoredPreparedQuery(Function<SqlClient, PreparedQuery<T>> query) {
+      this.query = query;
+    }
+
+    @Override
+    public void execute(Handler<AsyncResult<T>> handler) {
+      MonitoredPool.this.execute(
+          (connection, completion) -> query.apply(connection).execute(completion), handler);
+    }
+
+    @Override
+    public void execute(Tuple tuple, Handler<AsyncResult<T>> handler) {
+      MonitoredPool.this.execute(
+          (connection, completion) -> query.apply(connection).execute(tuple, completion),
+          handler);
+    }
+
+    @Override
+    public void executeBatch(List<Tuple> batch, Handler<AsyncResult<T>> handler) {
+      MonitoredPool.this.execute(
+          (connection, completion) -> query.apply(connection).executeBatch(batch, completion),
+          handler);
+    }
+
+    @Override
+    public <R> PreparedQuery<SqlResult<R>> collecting(Collector<Row, ?, R> collector) {
+      return new MonitoredPreparedQuery<>(
+          connection -> query.apply(connection).collecting(collector));
+    }
+
+    @Override
+    public <U> PreparedQuery<RowSet<U>> mapping(Function<Row, U> mapper) {
+      return new MonitoredPreparedQuery<>(connection -> query.apply(connection).mapping(mapper));
+    }
+  }
+
+  /** Releases its connection from the statistics once it ends, whichever way. */
+  private class MonitoredTransaction implements Transaction {
+    final Transaction transaction;
+    final AtomicBoolean released = new AtomicBoolean();
+
+    MonitoredTransaction(Transaction transaction) {
+      this.transaction = transaction;
+      transaction.abortHandler(v -> release(false));
+    }
+
+    @Override
+    public Transaction prepare(String sql, Handler<AsyncResult<PreparedStatement>> handler) {
+      transaction.prepare(sql, handler);
+      return this;
+    }
+
+    @Override
+    public Query<RowSet<Row>> query(String sql) {
+      return transaction.query(sql);
+    }
+
+    @Override
+    public PreparedQuery<RowSet<Row>> preparedQuery(String sql) {
+      return transaction.preparedQuery(sql);
+    }
+
+    @Override
+    public void commit() {
+      commit(ar -> {});
+    }
+
+    @Override
+    public void commit(Handler<AsyncResult<Void>> handler) {
+      transaction.commit(
+          ar -> {
+            release(ar.succeeded());
+            handler.handle(ar);
+          });
+    }
+
+    @Override
+    public void rollback() {
+      rollback(ar -> {});
+    }
+
+    @Override
+    public void rollback(Handler<AsyncResult<Void>> handler) {
+      transaction.rollback(
+          ar -> {
+            release(false);
+            handler.handle(ar);
+          });
+    }
+
+    @Override
+    public Transaction abortHandler(Handler<Void> handler) {
+      transaction.abortHandler(
+          v -> {
+            release(false);
+            handler.handle(v);
+          });
+      return this;
+    }
+
+    @Override
+    public void close() {
+      transaction.close();
+      release(true);
+    }
+
+    private void release(boolean succeeded) {
+      if (released.compareAndSet(false, true)) {
+        statistics.onRelease(succeeded);
+        MonitoredPool.this.release();
+      }
+    }
+  }
+}
@@ -1,17 +1,20 @@
 package xyz.vopen.framework.repository.mysql;
 
-import com.google.common.collect.Lists;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
 import io.vertx.mysqlclient.MySQLClient;
 import io.vertx.mysqlclient.MySQLConnectOptions;
 import io.vertx.mysqlclient.MySQLPool;
 import io.vertx.sqlclient.PoolOptions;
 import io.vertx.sqlclient.Row;
 import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.Transaction;
 import io.vertx.sqlclient.Tuple;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.CollectionUtils;
 import xyz.vopen.framework.neptune.common.configuration.Configuration;
+import xyz.vopen.framework.neptune.common.enums.JobStatus;
 import xyz.vopen.framework.neptune.common.model.InstanceInfo;
 import xyz.vopen.framework.neptune.common.model.JobInfo;
 import xyz.vopen.framework.neptune.common.model.ServerInfo;
@@ -21,9 +24,18 @@ import xyz.vopen.framework.neptune.repository.api.JobRepository;
 import xyz.vopen.framework.neptune.repository.api.ServerRepository;
 
 import javax.annotation.Nonnull;
-import java.lang.reflect.Field;
+import javax.annotation.Nullable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -38,9 +50,27 @@ import static xyz.vopen.framework.neptune.common.configuration.PersistenceOption
 public class MysqlRepository
     implements BaseRepository, ServerRepository, JobRepository, InstanceInfoRepository {
   private static final Logger LOG = LoggerFactory.getLogger(MysqlRepository.class);
+  private static final CompletionListener NO_LISTENER = (method, elapsedNanos, succeeded) -> {};
+
+  static final String INSERT_INSTANCE_INFO =
+      "INSERT INTO instance_info (id,app_id,job_id,job_params,trigger_time,completed_time,"
+          + "last_report_time,execute_time,result,status,type,work_flow_id,task_address,"
+          + "retry_times,gmt_create,gmt_update) VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+
+  /** Locks the claimable jobs, see {@code sql/job_info_claim_lease.sql} for the columns. */
+  static final String SELECT_CLAIMABLE_JOBS =
+      "SELECT id FROM job_info WHERE app_id = ? AND (status = ? OR (status = ? "
+          + "AND (lease_expire_time IS NULL OR lease_expire_time < ?))) "
+          + "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+  static final String RENEW_JOB_LEASES =
+      "UPDATE job_info SET lease_expire_time = ? WHERE claim_server = ? AND status = ?";
 
   private final Configuration configuration;
   private final @Nonnull MySQLPool client;
+  private final @Nonnull PoolStatistics poolStatistics;
+  private final @Nonnull InstancePartitionManager partitionManager;
+  private volatile @Nonnull CompletionListener completionListener = NO_LISTENER;
 
   private MysqlRepository(final Configuration configuration) {
     this.configuration = configuration;
@@ -51,10 +81,39 @@ public class MysqlRepository
             .setHost(configuration.getString(MYSQL_ADDRESS))
             .setDatabase(configuration.getString(MYSQL_DATABASE))
             .setUser(configuration.getString(MYSQL_USER))
-            .setPassword(configuration.getString(MYSQL_PASSWORD));
-    PoolOptions poolOptions = new PoolOptions().setMaxSize(5);
+            .setPassword(configuration.getString(MYSQL_PASSWORD))
+            .setIdleTimeout((int) configuration.getLong(MYSQL_POOL_IDLE_TIMEOUT))
+            .setIdleTimeoutUnit(TimeUnit.MILLISECONDS);
+    int preparedStatementCacheSize = configuration.getInteger(MYSQL_PREPARED_STATEMENT_CACHE_SIZE);
+    if (preparedStatementCacheSize > 0) {
+      connectOptions
+          .setCachePreparedStatements(true)
+          .setPreparedStatementCacheMaxSize(preparedStatementCacheSize);
+    }
 
-    this.client = MySQLPool.pool(connectOptions, poolOptions);
+    int maxSize = configuration.getInteger(MYSQL_POOL_MAX_SIZE);
+    int maxWaitQueueSize = configuration.getInteger(MYSQL_POOL_WAIT_QUEUE_SIZE);
+    this.poolStatistics = new PoolStatistics(maxSize);
+    if (configuration.getBoolean(MYSQL_POOL_ADAPTIVE_ENABLED)) {
+      // the statements wait in the adaptive limit, never in the pool
+      PoolOptions poolOptions = new PoolOptions().setMaxSize(maxSize);
+      AdaptivePoolLimit adaptiveLimit =
+          new AdaptivePoolLimit(
+              Math.min(maxSize, configuration.getInteger(MYSQL_POOL_ADAPTIVE_MIN_SIZE)), maxSize);
+      this.client =
+          new MonitoredPool(
+              MySQLPool.pool(connectOptions, poolOptions),
+              poolStatistics,
+              adaptiveLimit,
+              maxWaitQueueSize);
+    } else {
+      PoolOptions poolOptions =
+          new PoolOptions().setMaxSize(maxSize).setMaxWaitQueueSize(maxWaitQueueSize);
+      this.client =
+          new MonitoredPool(MySQLPool.pool(connectOptions, poolOptions), poolStatistics);
+    }
+    this.partitionManager =
+        new InstancePartitionManager(client, configuration.getString(MYSQL_DATABASE));
   }
 
   public static MysqlRepository createFromConfiguration(
@@ -62,6 +121,23 @@ public class MysqlRepository
     return new MysqlRepository(configuration);
   }
 
+  /** Returns the live statistics of the connection pool. */
+  public PoolStatistics getPoolStatistics() {
+    return poolStatistics;
+  }
+
+  /**
+   * Sets the listener receiving the completion of the statements of the methods that return before
+   * their statement completes: {@link #saveServerInfo}, {@link #saveJobInfo}, {@link
+   * #updateJobInfo}, {@link #deleteJobInfos}, {@link #saveInstanceInfo}, {@link
+   * #updateInstanceInfo} and {@link #deleteInstance}. Invoked on the event loop, it must be cheap.
+   *
+   * @param completionListener {@link CompletionListener} instance.
+   */
+  public void setCompletionListener(@Nonnull CompletionListener completionListener) {
+    this.completionListener = completionListener;
+  }
+
   // =====================  Server Info   =====================
   /**
    * Returns the specifies server message through specifies the server name, allows null.
@@ -85,7 +161,7 @@ public class MysqlRepository
                     serverInfo.set((ServerInfo) ret.get(0));
                   }
                 } catch (Exception e) {
-                  e.printStackTrace();
+                  LOG.error("[MysqlRepository] convert failure: {}", e.getMessage(), e);
                 }
               } else {
                 LOG.error("[MysqlRepository] failure: {}", ar.cause().getMessage());
@@ -115,7 +191,7 @@ public class MysqlRepository
                     serverInfo.set(ret);
                   }
                 } catch (Exception e) {
-                  e.printStackTrace();
+                  LOG.error("[MysqlRepository] convert failure: {}", e.getMessage(), e);
                 }
               }
             });
@@ -135,15 +211,18 @@ public class MysqlRepository
         .preparedQuery("INSERT INTO server_info (id,address,server_name) VALUES (?,?,?)")
         .execute(
             Tuple.of(serverInfo.getId(), serverInfo.getAddress(), serverInfo.getServiceName()),
-            ar -> {
-              if (ar.succeeded()) {
-                RowSet<Row> result = ar.result();
-                long lastInsertId = result.property(MySQLClient.LAST_INSERTED_ID);
-                LOG.info("[MysqlRepository] saveServerInfo Last inserted id is: {}", lastInsertId);
-              } else {
-                LOG.error("[MysqlRepository] failure: {}", ar.cause().getMessage());
-              }
-            });
+            completion(
+                "saveServerInfo",
+                ar -> {
+                  if (ar.succeeded()) {
+                    RowSet<Row> result = ar.result();
+                    long lastInsertId = result.property(MySQLClient.LAST_INSERTED_ID);
+                    LOG.info(
+                        "[MysqlRepository] saveServerInfo Last inserted id is: {}", lastInsertId);
+                  } else {
+                    LOG.error("[MysqlRepository] failure: {}", ar.cause().getMessage());
+                  }
+                }));
   }
 
   // =====================   Job Info  =====================
@@ -169,7 +248,7 @@ public class MysqlRepository
                     jobInfo.set((JobInfo) ret.get(0));
                   }
                 } catch (Exception e) {
-                  e.printStackTrace();
+                  LOG.error("[MysqlRepository] convert failure: {}", e.getMessage(), e);
                 }
               }
             });
@@ -199,7 +278,7 @@ public class MysqlRepository
                     jobInfo.set(ret);
                   }
                 } catch (Exception e) {
-                  e.printStackTrace();
+                  LOG.error("[MysqlRepository] convert failure: {}", e.getMessage(), e);
                 }
               }
             });
@@ -230,7 +309,7 @@ public class MysqlRepository
                     jobInfo.set(ret);
                   }
                 } catch (Exception e) {
-                  e.printStackTrace();
+                  LOG.error("[MysqlRepository] convert failure: {}", e.getMessage(), e);
                 }
               }
             });
@@ -254,7 +333,7 @@ public class MysqlRepository
                     jobInfo.set(ret);
                   }
                 } catch (Exception e) {
-                  e.printStackTrace();
+                  LOG.error("[MysqlRepository] convert failure: {}", e.getMessage(), e);
                 }
               }
             });
@@ -262,6 +341,106 @@ public class MysqlRepository
     return Optional.ofNullable(jobInfo.get());
   }
 
+  @Override
+  public List<JobInfo> findJobPageByAppId(long appId, long afterId, int limit) {
+    return queryPage(
+        "SELECT * FROM job_info WHERE app_id = ? AND id > ? ORDER BY id LIMIT ?",
+        Tuple.of(appId, afterId, limit),
+        JobInfo.class);
+  }
+
+  @Override
+  public List<JobInfo> findJobPageByAppIdAndStatus(
+      long appId, int status, long afterId, int limit) {
+    return queryPage(
+        "SELECT * FROM job_info WHERE app_id = ? AND status = ? AND id > ? ORDER BY id LIMIT ?",
+        Tuple.of(appId, status, afterId, limit),
+        JobInfo.class);
+  }
+
+  /**
+   * Claims the jobs in one transaction: the claimable rows are locked with {@code FOR UPDATE SKIP
+   * LOCKED}, so concurrent schedulers skip each other's rows instead of waiting, then switched to
+   * running with the claiming server and lease. Requires MySQL 8.0.
+   */
+  @Override
+  public List<JobInfo> claimJobs(long appId, String serverId, int limit, long leaseMillis) {
+    long now = System.currentTimeMillis();
+    Transaction transaction = VertxFutures.await(client::begin);
+    try {
+      RowSet<Row> candidates =
+          VertxFutures.await(
+              handler ->
+                  transaction
+                      .preparedQuery(SELECT_CLAIMABLE_JOBS)
+                      .execute(claimableTuple(appId, now, limit), handler));
+      List<Long> ids = new ArrayList<>(candidates.rowCount());
+      for (Row row : candidates) {
+        ids.add(row.getLong(0));
+      }
+      if (ids.isEmpty()) {
+        VertxFutures.<Void>await(transaction::commit);
+        return new ArrayList<>();
+      }
+
+      VertxFutures.<RowSet<Row>>await(
+          handler ->
+              transaction
+                  .preparedQuery(claimJobsStatement(ids.size()))
+                  .execute(claimTuple(serverId, now + leaseMillis, ids), handler));
+      Tuple idTuple = Tuple.tuple();
+      ids.forEach(idTuple::addLong);
+      RowSet<Row> claimed =
+          VertxFutures.await(
+              handler ->
+                  transaction
+                      .preparedQuery(
+                          "SELECT * FROM job_info WHERE id IN (" + placeholders(ids.size()) + ")")
+                      .execute(idTuple, handler));
+      VertxFutures.<Void>await(transaction::commit);
+      return convert(claimed, JobInfo.class);
+    } catch (RuntimeException e) {
+      LOG.error("[MysqlRepository] claimJobs failure: {}", e.getMessage());
+      transaction.rollback();
+      throw e;
+    }
+  }
+
+  @Override
+  public void renewJobLeases(String serverId, long leaseMillis) {
+    VertxFutures.<RowSet<Row>>await(
+        handler ->
+            client
+                .preparedQuery(RENEW_JOB_LEASES)
+                .execute(
+                    Tuple.of(
+                        System.currentTimeMillis() + leaseMillis,
+                        serverId,
+                        JobStatus.RUNNING.getStatus()),
+                    handler));
+  }
+
+  /** Binds {@link #SELECT_CLAIMABLE_JOBS}: new jobs, and running jobs whose lease expired. */
+  static Tuple claimableTuple(long appId, long now, int limit) {
+    return Tuple.of(
+        appId, JobStatus.NEW.getStatus(), JobStatus.RUNNING.getStatus(), now, limit);
+  }
+
+  /** Switches the jobs of the given ids to running, claimed by the server until the lease. */
+  static String claimJobsStatement(int count) {
+    return "UPDATE job_info SET status = ?, claim_server = ?, lease_expire_time = ? "
+        + "WHERE id IN ("
+        + placeholders(count)
+        + ")";
+  }
+
+  /** Binds {@link #claimJobsStatement} for the ids. */
+  static Tuple claimTuple(String serverId, long leaseExpireTime, List<Long> ids) {
+    Tuple claim = Tuple.of(JobStatus.RUNNING.getStatus(), serverId, leaseExpireTime);
+    ids.forEach(claim::addLong);
+    return claim;
+  }
+
   /**
    * Save the job message.
    *
@@ -275,7 +454,9 @@ public class MysqlRepository
             "INSERT INTO job_info (id,job_name,job_description,app_id,job_params,time_expression_type,"
                 + "time_expression,execute_type,processor_type,processor_info,max_instance_num,concurrency,"
                 + "instance_time_limit,instance_retry_num,task_retry_num,status,next_trigger_time,min_cpu_cores,min_memory_space,"
-                + "min_disk_space,designated_workers,max_worker_count,notify_user_ids) VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)")
+                + "min_disk_space,designated_workers,max_worker_count,notify_user_ids,trigger_tolerance,"
+                + "retry_backoff,max_retry_backoff) "
+                + "VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)")
         .execute(
             Tuple.of(
                 jobInfo.getId(),
@@ -300,16 +481,21 @@ public class MysqlRepository
                 jobInfo.getMinDiskSpace(),
                 jobInfo.getDesignatedWorkers(),
                 jobInfo.getMaxWorkerCount(),
-                jobInfo.getNotifyUserIds()),
-            ar -> {
-              if (ar.succeeded()) {
-                RowSet<Row> result = ar.result();
-                long lastInsertId = result.property(MySQLClient.LAST_INSERTED_ID);
-                LOG.info("[MysqlRepository] saveJobInfo Last inserted id is: {}", lastInsertId);
-              } else {
-                LOG.error("[MysqlRepository] failure: {}", ar.cause().getMessage());
-              }
-            });
+                jobInfo.getNotifyUserIds(),
+                jobInfo.getTriggerTolerance(),
+                jobInfo.getRetryBackoff(),
+                jobInfo.getMaxRetryBackoff()),
+            completion(
+                "saveJobInfo",
+                ar -> {
+                  if (ar.succeeded()) {
+                    RowSet<Row> result = ar.result();
+                    long lastInsertId = result.property(MySQLClient.LAST_INSERTED_ID);
+                    LOG.info("[MysqlRepository] saveJobInfo Last inserted id is: {}", lastInsertId);
+                  } else {
+                    LOG.error("[MysqlRepository] failure: {}", ar.cause().getMessage());
+                  }
+                }));
   }
 
   /**
@@ -325,7 +511,8 @@ public class MysqlRepository
             "UPDATE job_info SET job_name = ?,job_description = ?,app_id = ?, job_params = ?, time_expression_type = ?,"
                 + "time_expression = ?,execute_type = ?,processor_type = ?,processor_info = ?,max_instance_num = ?,concurrency = ?,"
                 + "instance_time_limit = ?,instance_retry_num = ?,task_retry_num = ?,status = ?,next_trigger_time = ?,min_cpu_cores = ?,"
-                + "min_memory_space = ?,min_disk_space = ?,designated_workers = ?,max_worker_count = ?,notify_user_ids = ? WHERE  id = ?")
+                + "min_memory_space = ?,min_disk_space = ?,designated_workers = ?,max_worker_count = ?,notify_user_ids = ?,"
+                + "trigger_tolerance = ?,retry_backoff = ?,max_retry_backoff = ? WHERE  id = ?")
         .execute(
             Tuple.of(
                 jobInfo.getJobName(),
@@ -350,14 +537,20 @@ public class MysqlRepository
                 jobInfo.getDesignatedWorkers(),
                 jobInfo.getMaxWorkerCount(),
                 jobInfo.getNotifyUserIds(),
+                jobInfo.getTriggerTolerance(),
+                jobInfo.getRetryBackoff(),
+                jobInfo.getMaxRetryBackoff(),
                 jobInfo.getId()),
-            ar -> {
-              if (ar.succeeded()) {
-
-              } else {
-                LOG.error("[MysqlRepository] updateJobInfo failure: {}", ar.cause().getMessage());
-              }
-            });
+            completion(
+                "updateJobInfo",
+                ar -> {
+                  if (ar.succeeded()) {
+
+                  } else {
+                    LOG.error(
+                        "[MysqlRepository] updateJobInfo failure: {}", ar.cause().getMessage());
+                  }
+                }));
   }
 
   /**
@@ -371,13 +564,16 @@ public class MysqlRepository
         .preparedQuery("DELETE FROM job_info WHERE id = ?")
         .execute(
             Tuple.of(jobId),
-            ar -> {
-              if (ar.succeeded()) {
-
-              } else {
-                LOG.error("[MysqlRepository] deleteJobInfos failure: {}", ar.cause().getMessage());
-              }
-            });
+            completion(
+                "deleteJobInfos",
+                ar -> {
+                  if (ar.succeeded()) {
+
+                  } else {
+                    LOG.error(
+                        "[MysqlRepository] deleteJobInfos failure: {}", ar.cause().getMessage());
+                  }
+                }));
   }
 
   @Override
@@ -414,7 +610,7 @@ public class MysqlRepository
                     instanceInfo.set((InstanceInfo) ret.get(0));
                   }
                 } catch (Exception e) {
-                  e.printStackTrace();
+                  LOG.error("[MysqlRepository] convert failure: {}", e.getMessage(), e);
                 }
               }
             });
@@ -438,7 +634,7 @@ public class MysqlRepository
                     instanceInfos.set(ret);
                   }
                 } catch (Exception e) {
-                  e.printStackTrace();
+                  LOG.error("[MysqlRepository] convert failure: {}", e.getMessage(), e);
                 }
               }
             });
@@ -462,7 +658,7 @@ public class MysqlRepository
                     instanceInfos.set(ret);
                   }
                 } catch (Exception e) {
-                  e.printStackTrace();
+                  LOG.error("[MysqlRepository] convert failure: {}", e.getMessage(), e);
                 }
               }
             });
@@ -470,6 +666,14 @@ public class MysqlRepository
     return Optional.ofNullable(instanceInfos.get());
   }
 
+  @Override
+  public List<InstanceInfo> findInstancePageByAppId(long appId, long afterId, int limit) {
+    return queryPage(
+        "SELECT * FROM instance_info WHERE app_id = ? AND id > ? ORDER BY id LIMIT ?",
+        Tuple.of(appId, afterId, limit),
+        InstanceInfo.class);
+  }
+
   @Override
   public Optional<List<InstanceInfo>> findInstancesByAppIdAndStatus(long appId, int status) {
     AtomicReference<List<InstanceInfo>> instanceInfos = null;
@@ -486,7 +690,7 @@ public class MysqlRepository
                     instanceInfos.set(ret);
                   }
                 } catch (Exception e) {
-                  e.printStackTrace();
+                  LOG.error("[MysqlRepository] convert failure: {}", e.getMessage(), e);
                 }
               }
             });
@@ -497,44 +701,42 @@ public class MysqlRepository
   @Override
   public void saveInstanceInfo(InstanceInfo instanceInfo) {
     client
-        .preparedQuery(
-            "INSERT INTO instance_info (id,app_id,job_id,job_params,trigger_time,completed_time,last_report_time,"
-                + "execute_time,result,status,type,work_flow_id,task_address,retry_times,gmt_create,gmt_update) VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)")
+        .preparedQuery(INSERT_INSTANCE_INFO)
         .execute(
-            Tuple.of(
-                instanceInfo.getId(),
-                instanceInfo.getAppId(),
-                instanceInfo.getJobId(),
-                instanceInfo.getJobParams(),
-                instanceInfo.getTriggerTime(),
-                instanceInfo.getCompletedTime(),
-                instanceInfo.getLastReportTime(),
-                instanceInfo.getExecuteTime(),
-                instanceInfo.getResult(),
-                instanceInfo.getStatus(),
-                instanceInfo.getType(),
-                instanceInfo.getWorkFlowId(),
-                instanceInfo.getTaskAddress(),
-                instanceInfo.getRetryTimes()),
-            ar -> {
-              if (ar.succeeded()) {
-                LOG.info(
-                    "[MysqlRepository] saveInstanceInfo success insert id: {}",
-                    ar.result().property(MySQLClient.LAST_INSERTED_ID));
-              } else {
-                LOG.error(
-                    "[MysqlRepository] saveInstanceInfo failure: {}", ar.cause().getMessage());
-              }
-            });
+            instanceInsertTuple(instanceInfo, new Date()),
+            completion(
+                "saveInstanceInfo",
+                ar -> {
+                  if (ar.succeeded()) {
+                    LOG.info(
+                        "[MysqlRepository] saveInstanceInfo success insert id: {}",
+                        ar.result().property(MySQLClient.LAST_INSERTED_ID));
+                  } else {
+                    LOG.error(
+                        "[MysqlRepository] saveInstanceInfo failure: {}", ar.cause().getMessage());
+                  }
+                }));
   }
 
+  /**
+   * Updates the instance, a null field leaves its column untouched so that an instance read with
+   * only its status fields can be written back.
+   *
+   * @param instanceInfo {@link InstanceInfo} instance.
+   */
   @Override
   public void updateInstanceInfo(InstanceInfo instanceInfo) {
     client
         .preparedQuery(
-            "UPDATE instance_info SET app_id = ?,job_id = ?, job_params = ?, trigger_time = ?,"
-                + "completed_time = ?,last_report_time = ?,execute_time = ?,result = ?,status = ?,type = ?,"
-                + "work_flow_id = ?,task_address = ?,retry_times = ? WHERE  id = ?")
+            "UPDATE instance_info SET app_id = COALESCE(?, app_id), job_id = COALESCE(?, job_id),"
+                + " job_params = COALESCE(?, job_params), trigger_time = COALESCE(?, trigger_time),"
+                + " completed_time = COALESCE(?, completed_time),"
+                + " last_report_time = COALESCE(?, last_report_time),"
+                + " execute_time = COALESCE(?, execute_time), result = COALESCE(?, result),"
+                + " status = COALESCE(?, status), type = COALESCE(?, type),"
+                + " work_flow_id = COALESCE(?, work_flow_id),"
+                + " task_address = COALESCE(?, task_address),"
+                + " retry_times = COALESCE(?, retry_times) WHERE id = ?")
         .execute(
             Tuple.of(
                 instanceInfo.getAppId(),
@@ -551,14 +753,68 @@ public class MysqlRepository
                 instanceInfo.getTaskAddress(),
                 instanceInfo.getRetryTimes(),
                 instanceInfo.getId()),
-            ar -> {
-              if (ar.succeeded()) {
+            completion(
+                "updateInstanceInfo",
+                ar -> {
+                  if (ar.succeeded()) {
+
+                  } else {
+                    LOG.error(
+                        "[MysqlRepository] updateInstanceInfo failure: {}",
+                        ar.cause().getMessage());
+                  }
+                }));
+  }
 
-              } else {
-                LOG.error(
-                    "[MysqlRepository] updateInstanceInfo failure: {}", ar.cause().getMessage());
-              }
-            });
+  /**
+   * Updates the retry times of the instances in one batch of a single prepared statement.
+   *
+   * @param retryTimes Retry times by instance id.
+   */
+  public void updateInstanceRetryTimes(Map<Long, Integer> retryTimes) {
+    if (retryTimes.isEmpty()) {
+      return;
+    }
+    Date now = new Date();
+    List<Tuple> batch = new ArrayList<>(retryTimes.size());
+    retryTimes.forEach((instanceId, times) -> batch.add(Tuple.of(times, now, instanceId)));
+    VertxFutures.<RowSet<Row>>await(
+        handler ->
+            client
+                .preparedQuery(
+                    "UPDATE instance_info SET retry_times = ?, gmt_update = ? WHERE id = ?")
+                .executeBatch(batch, handler));
+  }
+
+  /**
+   * Updates the status, the completion time and the result of the instances in one batch of a
+   * single prepared statement, a null completion time or result leaves its column untouched.
+   *
+   * @param instanceInfos The instances, only their id and outcome fields are read.
+   */
+  public void updateInstanceStatuses(Collection<InstanceInfo> instanceInfos) {
+    if (instanceInfos.isEmpty()) {
+      return;
+    }
+    Date now = new Date();
+    List<Tuple> batch = new ArrayList<>(instanceInfos.size());
+    for (InstanceInfo instanceInfo : instanceInfos) {
+      batch.add(
+          Tuple.of(
+              instanceInfo.getStatus(),
+              instanceInfo.getCompletedTime(),
+              instanceInfo.getResult(),
+              now,
+              instanceInfo.getId()));
+    }
+    VertxFutures.<RowSet<Row>>await(
+        handler ->
+            client
+                .preparedQuery(
+                    "UPDATE instance_info SET status = ?,"
+                        + " completed_time = COALESCE(?, completed_time),"
+                        + " result = COALESCE(?, result), gmt_update = ? WHERE id = ?")
+                .executeBatch(batch, handler));
   }
 
   @Override
@@ -567,13 +823,72 @@ public class MysqlRepository
         .preparedQuery("DELETE FROM instance_info WHERE id = ?")
         .execute(
             Tuple.of(instanceId),
-            ar -> {
-              if (ar.succeeded()) {
+            completion(
+                "deleteInstance",
+                ar -> {
+                  if (ar.succeeded()) {
+
+                  } else {
+                    LOG.error(
+                        "[MysqlRepository] deleteInstance failure: {}", ar.cause().getMessage());
+                  }
+                }));
+  }
 
-              } else {
-                LOG.error("[MysqlRepository] deleteInstance failure: {}", ar.cause().getMessage());
-              }
-            });
+  /**
+   * Binds the columns of {@link #INSERT_INSTANCE_INFO}. {@code gmt_create} is the partition key of
+   * {@code instance_info} and is never null: an instance without a creation time is created now.
+   *
+   * @param instanceInfo The instance to insert.
+   * @param now Creation and update time of an instance without them.
+   * @return The values, in the order of the columns.
+   */
+  static Tuple instanceInsertTuple(InstanceInfo instanceInfo, Date now) {
+    Date gmtCreate = instanceInfo.getGmtCreate() == null ? now : instanceInfo.getGmtCreate();
+    Date gmtUpdate = instanceInfo.getGmtUpdate() == null ? gmtCreate : instanceInfo.getGmtUpdate();
+    return Tuple.of(
+        instanceInfo.getId(),
+        instanceInfo.getAppId(),
+        instanceInfo.getJobId(),
+        instanceInfo.getJobParams(),
+        toLocalDateTime(instanceInfo.getTriggerTime()),
+        toLocalDateTime(instanceInfo.getCompletedTime()),
+        toLocalDateTime(instanceInfo.getLastReportTime()),
+        toLocalDateTime(instanceInfo.getExecuteTime()),
+        instanceInfo.getResult(),
+        instanceInfo.getStatus(),
+        instanceInfo.getType(),
+        instanceInfo.getWorkFlowId(),
+        instanceInfo.getTaskAddress(),
+        instanceInfo.getRetryTimes(),
+        toLocalDateTime(gmtCreate),
+        toLocalDateTime(gmtUpdate));
+  }
+
+  @Override
+  public void ensureInstancePartitions(Date until) {
+    partitionManager.ensurePartitions(toLocalDate(until));
+  }
+
+  /**
+   * Drops the daily partitions of {@code instance_info} before the cutoff day, see {@link
+   * InstancePartitionManager}.
+   *
+   * @param cutoff Instances created before this day are dropped.
+   */
+  @Override
+  public void purgeInstancesBefore(Date cutoff) {
+    partitionManager.dropPartitionsBefore(toLocalDate(cutoff));
+  }
+
+  private static LocalDate toLocalDate(Date date) {
+    return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+  }
+
+  /** The client binds DATETIME columns from {@link LocalDateTime}, a {@link Date} is a string. */
+  @Nullable
+  private static LocalDateTime toLocalDateTime(@Nullable Date date) {
+    return date == null ? null : LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
   }
 
   public void close() {
@@ -583,41 +898,47 @@ public class MysqlRepository
   }
 
   /**
-   * Convert to PO through {@link RowSet}.
+   * Executes a keyset page query and waits for the page, so that only one page of rows is held in
+   * memory at a time.
+   */
+  private <T> List<T> queryPage(String sql, Tuple tuple, Class<T> clazz) {
+    return convert(
+        VertxFutures.await(handler -> client.preparedQuery(sql).execute(tuple, handler)), clazz);
+  }
+
+  /** Reports the completion of the statement of the method to the listener, then handles it. */
+  private <T> Handler<AsyncResult<T>> completion(String method, Handler<AsyncResult<T>> handler) {
+    long start = System.nanoTime();
+    return ar -> {
+      completionListener.onCompletion(method, System.nanoTime() - start, ar.succeeded());
+      handler.handle(ar);
+    };
+  }
+
+  private static String placeholders(int count) {
+    return String.join(", ", Collections.nCopies(count, "?"));
+  }
+
+  /**
+   * Convert to PO through {@link RowSet}, see {@link MysqlRows}.
    *
    * @param rs {@link RowSet} instance.
    * @param clazz converted object.
-   * @param <T>
-   * @return
-   * @throws IllegalAccessException Thrown when field is private.
-   * @throws InstantiationException
+   * @return The converted objects, one per row.
    */
-  static <T> List convert(RowSet<Row> rs, Class clazz)
-      throws IllegalAccessException, InstantiationException {
-    int count = rs.rowCount();
-    List ret = Lists.newArrayList();
-
-    Field[] fields = clazz.getDeclaredFields();
-    while (rs.iterator().hasNext()) {
-      Object newInstance = clazz.newInstance();
-      for (int i = 1; i <= count; i++) {
-        try {
-          Row row = rs.iterator().next();
-          for (int j = 0; j < fields.length; j++) {
-            Field field = fields[j];
-            String name = field.getName();
-            Object o = row.get(field.getType(), j);
-            if (name.equalsIgnoreCase(row.getColumnName(j))) {
-              field.set(newInstance, row.get(field.getType(), j));
-              field.setAccessible(field.isAccessible());
-            }
-          }
-        } catch (Exception e) {
-
-        }
-        ret.add(newInstance);
-      }
-    }
-    return ret;
+  static <T> List<T> convert(RowSet<Row> rs, Class<T> clazz) {
+    return MysqlRows.convert(rs, clazz);
+  }
+
+  /** Receives the completion of the statements that the repository methods do not wait for. */
+  @FunctionalInterface
+  public interface CompletionListener {
+
+    /**
+     * @param method Name of the repository method that issued the statement.
+     * @param elapsedNanos Time from the issue of the statement to its completion.
+     * @param succeeded Whether the statement succeeded.
+     */
+    void onCompletion(String method, long elapsedNanos, boolean succeeded);
   }
 }
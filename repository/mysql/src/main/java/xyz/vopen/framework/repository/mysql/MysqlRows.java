@@ -0,0 +1,173 @@
+package xyz.vopen.framework.repository.mysql;
+
+import io.vertx.sqlclient.Row;
+import xyz.vopen.framework.neptune.common.model.InstanceInfo;
+import xyz.vopen.framework.neptune.common.model.JobInfo;
+import xyz.vopen.framework.neptune.common.model.ServerInfo;
+
+import javax.annotation.Nullable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * {@link MysqlRows} Maps the rows of {@code server_info}, {@code job_info} and {@code
+ * instance_info} to their models, column by column. A column the query did not select leaves its
+ * field unset.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/28
+ */
+final class MysqlRows {
+
+  private MysqlRows() {}
+
+  /**
+   * Maps every row to an instance of the given model.
+   *
+   * @param rows Rows of the table of the model.
+   * @param clazz {@link ServerInfo}, {@link JobInfo} or {@link InstanceInfo}.
+   * @return The models, in the order of the rows.
+   */
+  @SuppressWarnings("unchecked")
+  static <T> List<T> convert(Iterable<Row> rows, Class<T> clazz) {
+    final Function<Row, ?> mapper;
+    if (clazz == JobInfo.class) {
+      mapper = MysqlRows::toJobInfo;
+    } else if (clazz == InstanceInfo.class) {
+      mapper = MysqlRows::toInstanceInfo;
+    } else if (clazz == ServerInfo.class) {
+      mapper = MysqlRows::toServerInfo;
+    } else {
+      throw new IllegalArgumentException("No row mapping for " + clazz.getName());
+    }
+
+    List<T> models = new ArrayList<>();
+    for (Row row : rows) {
+      models.add((T) mapper.apply(row));
+    }
+    return models;
+  }
+
+  static ServerInfo toServerInfo(Row row) {
+    return ServerInfo.builder()
+        .id(getLong(row, "id"))
+        .serviceName(getString(row, "server_name"))
+        .address(getString(row, "address"))
+        .gmtCreate(getDate(row, "gmt_create"))
+        .gmtUpdate(getDate(row, "gmt_update"))
+        .build();
+  }
+
+  static JobInfo toJobInfo(Row row) {
+    JobInfo job = new JobInfo();
+    job.setId(getLong(row, "id"));
+    job.setJobName(getString(row, "job_name"));
+    job.setJobDescription(getString(row, "job_description"));
+    job.setAppId(getLong(row, "app_id"));
+    job.setJobParams(getString(row, "job_params"));
+    job.setTimeExpressionType(getInteger(row, "time_expression_type"));
+    job.setTimeExpression(getString(row, "time_expression"));
+    job.setExecuteType(getInteger(row, "execute_type"));
+    job.setProcessorType(getInteger(row, "processor_type"));
+    job.setProcessorInfo(getString(row, "processor_info"));
+    job.setMaxInstanceNum(getInteger(row, "max_instance_num"));
+    job.setConcurrency(getInteger(row, "concurrency"));
+    job.setInstanceTimeLimit(getLong(row, "instance_time_limit"));
+    job.setInstanceRetryNum(getInteger(row, "instance_retry_num"));
+    job.setTaskRetryNum(getInteger(row, "task_retry_num"));
+    job.setStatus(getInteger(row, "status"));
+    job.setNextTriggerTime(getLong(row, "next_trigger_time"));
+    job.setMinCpuCores(getDouble(row, "min_cpu_cores"));
+    job.setMinMemorySpace(getDouble(row, "min_memory_space"));
+    job.setMinDiskSpace(getDouble(row, "min_disk_space"));
+    job.setDesignatedWorkers(getString(row, "designated_workers"));
+    job.setMaxWorkerCount(getInteger(row, "max_worker_count"));
+    job.setNotifyUserIds(getString(row, "notify_user_ids"));
+    job.setClaimServer(getString(row, "claim_server"));
+    job.setLeaseExpireTime(getLong(row, "lease_expire_time"));
+    job.setTriggerTolerance(getLong(row, "trigger_tolerance"));
+    job.setRetryBackoff(getLong(row, "retry_backoff"));
+    job.setMaxRetryBackoff(getLong(row, "max_retry_backoff"));
+    job.setGmtCreate(getDate(row, "gmt_create"));
+    job.setGmtUpdate(getDate(row, "gmt_update"));
+    return job;
+  }
+
+  static InstanceInfo toInstanceInfo(Row row) {
+    InstanceInfo instance =
+        InstanceInfo.builder()
+            .id(getLong(row, "id"))
+            .appId(getLong(row, "app_id"))
+            .jobId(getLong(row, "job_id"))
+            .jobParams(getString(row, "job_params"))
+            .type(getInteger(row, "type"))
+            .workFlowId(getLong(row, "work_flow_id"))
+            .status(getInteger(row, "status"))
+            .result(getString(row, "result"))
+            .triggerTime(getDate(row, "trigger_time"))
+            .completedTime(getDate(row, "completed_time"))
+            .lastReportTime(getDate(row, "last_report_time"))
+            .executeTime(getDate(row, "execute_time"))
+            .retryTimes(getInteger(row, "retry_times"))
+            .taskAddress(getString(row, "task_address"))
+            .build();
+    instance.setGmtCreate(getDate(row, "gmt_create"));
+    instance.setGmtUpdate(getDate(row, "gmt_update"));
+    return instance;
+  }
+
+  // =====================  Internal  =====================
+
+  @Nullable
+  private static Object getValue(Row row, String column) {
+    int index = row.getColumnIndex(column);
+    return index < 0 ? null : row.getValue(index);
+  }
+
+  @Nullable
+  private static Long getLong(Row row, String column) {
+    Object value = getValue(row, column);
+    return value == null ? null : ((Number) value).longValue();
+  }
+
+  @Nullable
+  private static Integer getInteger(Row row, String column) {
+    Object value = getValue(row, column);
+    return value == null ? null : ((Number) value).intValue();
+  }
+
+  private static double getDouble(Row row, String column) {
+    Object value = getValue(row, column);
+    return value == null ? 0.0d : ((Number) value).doubleValue();
+  }
+
+  @Nullable
+  private static String getString(Row row, String column) {
+    Object value = getValue(row, column);
+    return value == null ? null : value.toString();
+  }
+
+  /** DATETIME and TIMESTAMP columns are read as {@link LocalDateTime}, in the server time zone. */
+  @Nullable
+  private static Date getDate(Row row, String column) {
+    Object value = getValue(row, column);
+    if (value == null) {
+      return null;
+    } else if (value instanceof Date) {
+      return (Date) value;
+    } else if (value instanceof LocalDateTime) {
+      return Date.from(((LocalDateTime) value).atZone(ZoneId.systemDefault()).toInstant());
+    } else if (value instanceof LocalDate) {
+      return Date.from(((LocalDate) value).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    } else if (value instanceof Number) {
+      return new Date(((Number) value).longValue());
+    }
+    throw new IllegalStateException(
+        "Column " + column + " holds an unexpected " + value.getClass().getSimpleName());
+  }
+}
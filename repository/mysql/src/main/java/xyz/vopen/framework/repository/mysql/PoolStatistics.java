@@ -0,0 +1,105 @@
+package xyz.vopen.framework.repository.mysql;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/**
+ * {@link PoolStatistics} Live statistics of the connection pool of a {@link MysqlRepository}. The
+ * vert.x pool does not expose its state, so they are collected by the repository around every
+ * connection it leases.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class PoolStatistics {
+
+  private static final LongConsumer NO_OP = nanos -> {};
+
+  private final int maxSize;
+  private volatile int limit;
+  private final AtomicInteger waiting = new AtomicInteger();
+  private final AtomicInteger active = new AtomicInteger();
+  private final LongAdder acquisitions = new LongAdder();
+  private final LongAdder totalWaitNanos = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private volatile @Nonnull LongConsumer waitTimeListener = NO_OP;
+
+  PoolStatistics(int maxSize) {
+    this.maxSize = maxSize;
+    this.limit = maxSize;
+  }
+
+  /** Maximum number of connections of the pool. */
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /** Number of connections that may be leased at once, below the maximum in adaptive mode. */
+  public int getLimit() {
+    return limit;
+  }
+
+  /** Number of requests waiting for a connection. */
+  public int getWaiting() {
+    return waiting.get();
+  }
+
+  /** Number of connections leased and not yet released. */
+  public int getActive() {
+    return active.get();
+  }
+
+  /** Number of connections leased since the pool was created. */
+  public long getAcquisitions() {
+    return acquisitions.sum();
+  }
+
+  /** Total time spent waiting for a connection, in nanoseconds. */
+  public long getTotalWaitNanos() {
+    return totalWaitNanos.sum();
+  }
+
+  /** Number of connection leases and statements that failed. */
+  public long getFailures() {
+    return failures.sum();
+  }
+
+  /**
+   * Sets the listener receiving the wait time of every lease, invoked on the event loop so it must
+   * be cheap.
+   *
+   * @param waitTimeListener Receives the wait time in nanoseconds.
+   */
+  public void setWaitTimeListener(@Nonnull LongConsumer waitTimeListener) {
+    this.waitTimeListener = waitTimeListener;
+  }
+
+  void setLimit(int limit) {
+    this.limit = limit;
+  }
+
+  void onRequest() {
+    waiting.incrementAndGet();
+  }
+
+  void onAcquire(long waitNanos, boolean succeeded) {
+    waiting.decrementAndGet();
+    if (succeeded) {
+      active.incrementAndGet();
+      acquisitions.increment();
+    } else {
+      failures.increment();
+    }
+    totalWaitNanos.add(waitNanos);
+    waitTimeListener.accept(waitNanos);
+  }
+
+  void onRelease(boolean succeeded) {
+    active.decrementAndGet();
+    if (!succeeded) {
+      failures.increment();
+    }
+  }
+}
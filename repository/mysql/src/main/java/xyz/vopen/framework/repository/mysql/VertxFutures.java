@@ -0,0 +1,71 @@
+package xyz.vopen.framework.repository.mysql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * {@link VertxFutures} Blocks the calling thread on an asynchronous vert.x operation. Must not be
+ * called from an event loop thread.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+final class VertxFutures {
+
+  private VertxFutures() {
+    throw new AssertionError();
+  }
+
+  /** Longest wait for an operation, a lost connection must not block the caller forever. */
+  static final long DEFAULT_TIMEOUT_MILLIS = 60_000L;
+
+  /**
+   * Starts the operation and waits for its result, at most {@link #DEFAULT_TIMEOUT_MILLIS}.
+   *
+   * @param operation Starts the operation with the given completion handler.
+   * @return The result of the operation.
+   * @throws CompletionException Wraps the failure of the operation, or the timeout.
+   */
+  static <T> T await(Consumer<Handler<AsyncResult<T>>> operation) {
+    return await(operation, DEFAULT_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * Starts the operation and waits for its result.
+   *
+   * @param operation Starts the operation with the given completion handler.
+   * @param timeoutMillis Longest wait for the result.
+   * @return The result of the operation.
+   * @throws CompletionException Wraps the failure of the operation, a {@link TimeoutException} or
+   *     an {@link InterruptedException}.
+   */
+  static <T> T await(Consumer<Handler<AsyncResult<T>>> operation, long timeoutMillis) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    operation.accept(
+        ar -> {
+          if (ar.succeeded()) {
+            result.complete(ar.result());
+          } else {
+            result.completeExceptionally(ar.cause());
+          }
+        });
+    try {
+      return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      throw new CompletionException(e.getCause());
+    } catch (TimeoutException e) {
+      throw new CompletionException(
+          new TimeoutException("no result after " + timeoutMillis + " ms"));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CompletionException(e);
+    }
+  }
+}
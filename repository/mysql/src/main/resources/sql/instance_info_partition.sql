@@ -0,0 +1,14 @@
+-- Partitions instance_info by creation day, see InstancePartitionManager.
+--
+-- Every unique key of a partitioned table must contain the partition key, so gmt_create joins
+-- the primary key. The whole history lands in p_max; the first run of the partition manager
+-- splits it into one partition per day, from the oldest instance on.
+--
+-- The statements rebuild the table: run them in a maintenance window.
+
+ALTER TABLE instance_info MODIFY gmt_create DATETIME NOT NULL;
+
+ALTER TABLE instance_info DROP PRIMARY KEY, ADD PRIMARY KEY (id, gmt_create);
+
+ALTER TABLE instance_info PARTITION BY RANGE (TO_DAYS(gmt_create))
+    (PARTITION p_max VALUES LESS THAN MAXVALUE);
@@ -0,0 +1,9 @@
+-- Adds the claim of the jobs by the schedulers, see MysqlRepository#claimJobs.
+--
+-- A running job belongs to claim_server until lease_expire_time, in epoch milliseconds; the
+-- claiming server renews the lease of its jobs by (claim_server, status).
+
+ALTER TABLE job_info
+    ADD COLUMN claim_server VARCHAR(255) NULL,
+    ADD COLUMN lease_expire_time BIGINT NULL,
+    ADD INDEX idx_claim_server_status (claim_server, status);
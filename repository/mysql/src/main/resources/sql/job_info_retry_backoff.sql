@@ -0,0 +1,5 @@
+-- Adds the retry backoff of the jobs. NULL keeps the backoff configured on the scheduler.
+
+ALTER TABLE job_info
+    ADD COLUMN retry_backoff BIGINT NULL,
+    ADD COLUMN max_retry_backoff BIGINT NULL;
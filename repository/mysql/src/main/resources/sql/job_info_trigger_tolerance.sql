@@ -0,0 +1,4 @@
+-- Adds the trigger tolerance of the jobs, see TriggerSmoothingOptimizer. NULL fires on time.
+
+ALTER TABLE job_info
+    ADD COLUMN trigger_tolerance BIGINT NULL;
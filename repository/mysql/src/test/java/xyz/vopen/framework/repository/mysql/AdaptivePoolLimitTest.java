@@ -0,0 +1,138 @@
+package xyz.vopen.framework.repository.mysql;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link AdaptivePoolLimitTest} Tests of the adjustments of the {@link AdaptivePoolLimit}.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class AdaptivePoolLimitTest {
+  private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1L);
+
+  @Test
+  public void testStartsAtMinSize() {
+    assertEquals(2, new AdaptivePoolLimit(2, 10).getLimit());
+  }
+
+  @Test
+  public void testAdjustsOncePerWindow() {
+    AdaptivePoolLimit limit = new AdaptivePoolLimit(2, 10);
+    for (int i = 0; i < AdaptivePoolLimit.WINDOW - 1; i++) {
+      limit.onSample(MILLIS, MILLIS, 2);
+    }
+    assertEquals(2, limit.getLimit());
+
+    limit.onSample(MILLIS, MILLIS, 2);
+    assertEquals(3, limit.getLimit());
+  }
+
+  @Test
+  public void testIncreasesWhileStatementsWait() {
+    AdaptivePoolLimit limit = new AdaptivePoolLimit(2, 10);
+    for (int i = 1; i <= 3; i++) {
+      window(limit, MILLIS, MILLIS, limit.getLimit());
+      assertEquals(2 + i, limit.getLimit());
+    }
+  }
+
+  @Test
+  public void testIncreaseIsBoundedByMaxSize() {
+    AdaptivePoolLimit limit = new AdaptivePoolLimit(2, 10);
+    for (int i = 0; i < 50; i++) {
+      window(limit, MILLIS, MILLIS, limit.getLimit());
+    }
+    assertEquals(10, limit.getLimit());
+  }
+
+  @Test
+  public void testDecreasesWhenLatencyRises() {
+    AdaptivePoolLimit limit = grownTo(10);
+
+    // with the latency ten times the baseline, 9 statements are queued in the database
+    window(limit, MILLIS, 10 * MILLIS, 10);
+    assertEquals(9, limit.getLimit());
+    window(limit, MILLIS, 10 * MILLIS, 9);
+    assertEquals(8, limit.getLimit());
+  }
+
+  @Test
+  public void testDecreaseIsBoundedByMinSize() {
+    AdaptivePoolLimit limit = grownTo(10);
+    for (int i = 0; i < 50; i++) {
+      window(limit, 0L, MILLIS, 0);
+    }
+    assertEquals(2, limit.getLimit());
+  }
+
+  @Test
+  public void testDecreasesWhenConnectionsAreIdle() {
+    AdaptivePoolLimit limit = grownTo(10);
+
+    window(limit, 0L, MILLIS, 4);
+    assertEquals(9, limit.getLimit());
+
+    // half of the connections in use is enough to hold the limit
+    window(limit, 0L, MILLIS, 5);
+    assertEquals(9, limit.getLimit());
+  }
+
+  @Test
+  public void testKeepsLimitWhenBalanced() {
+    AdaptivePoolLimit limit = grownTo(10);
+
+    // 3 statements queued: neither saturated nor idle
+    window(limit, MILLIS, 10 * MILLIS / 7, 10);
+    assertEquals(10, limit.getLimit());
+  }
+
+  @Test
+  public void testProbeMeasuresBaselineAndRestoresLimit() {
+    AdaptivePoolLimit limit = grownTo(10);
+    int windows = 8;
+    while (windows < AdaptivePoolLimit.PROBE_INTERVAL - 1) {
+      window(limit, MILLIS, MILLIS, 10);
+      windows++;
+    }
+    assertEquals(10, limit.getLimit());
+
+    window(limit, MILLIS, MILLIS, 10);
+    assertEquals(2, limit.getLimit());
+    window(limit, 0L, 3 * MILLIS, 2);
+    assertEquals(2, limit.getLimit());
+    window(limit, 0L, 3 * MILLIS, 2);
+    assertEquals(10, limit.getLimit());
+
+    // the new baseline is 3 ms: 3 ms is no longer a sign of saturation
+    window(limit, MILLIS, 3 * MILLIS, 10);
+    assertEquals(10, limit.getLimit());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsMinSizeAboveMaxSize() {
+    new AdaptivePoolLimit(5, 4);
+  }
+
+  // =====================  Internal  =====================
+
+  /** Returns a limit grown from 2 to the given size, with a baseline latency of 1 ms. */
+  private static AdaptivePoolLimit grownTo(int size) {
+    AdaptivePoolLimit limit = new AdaptivePoolLimit(2, size);
+    while (limit.getLimit() < size) {
+      window(limit, MILLIS, MILLIS, limit.getLimit());
+    }
+    return limit;
+  }
+
+  private static void window(
+      AdaptivePoolLimit limit, long waitNanos, long latencyNanos, int inUse) {
+    for (int i = 0; i < AdaptivePoolLimit.WINDOW; i++) {
+      limit.onSample(waitNanos, latencyNanos, inUse);
+    }
+  }
+}
@@ -0,0 +1,258 @@
+package xyz.vopen.framework.repository.mysql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.mysqlclient.MySQLPool;
+import io.vertx.sqlclient.PreparedQuery;
+import io.vertx.sqlclient.PreparedStatement;
+import io.vertx.sqlclient.Query;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.SqlResult;
+import io.vertx.sqlclient.Transaction;
+import io.vertx.sqlclient.Tuple;
+import io.vertx.sqlclient.spi.DatabaseMetadata;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collector;
+
+/**
+ * {@link MysqlPoolBenchmark} Compares a fixed pool of 5 connections, a large fixed pool and the
+ * adaptive pool against a stand-in server: a database with a few cores whose queries slow down
+ * linearly once the cores are busy and suffer lock contention beyond that. Callers issue queries
+ * back to back, the benchmark reports the throughput and latency of each pool.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class MysqlPoolBenchmark {
+  private static final int SERVER_CORES = 8;
+  private static final long QUERY_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+  private static final double CONTENTION_PER_EXTRA_QUERY = 0.05;
+  private static final int CALLERS = 64;
+  private static final long WARMUP_MILLIS = 2000;
+  private static final long MEASURE_MILLIS = 5000;
+
+  public static void main(String[] args) throws Exception {
+    run("fixed-5", 5, null);
+    run("fixed-32", 32, null);
+    run("adaptive-4..32", 32, new AdaptivePoolLimit(4, 32));
+  }
+
+  private static void run(String name, int maxSize, AdaptivePoolLimit adaptiveLimit)
+      throws InterruptedException {
+    ScheduledExecutorService eventLoop = Executors.newSingleThreadScheduledExecutor();
+    PoolStatistics statistics = new PoolStatistics(maxSize);
+    MySQLPool pool =
+        new MonitoredPool(new StandInPool(eventLoop, maxSize), statistics, adaptiveLimit, -1);
+
+    long[] latencies = new long[1 << 22];
+    int[] measured = new int[1];
+    long measureStart = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WARMUP_MILLIS);
+    long measureEnd = measureStart + TimeUnit.MILLISECONDS.toNanos(MEASURE_MILLIS);
+    CountDownLatch finished = new CountDownLatch(CALLERS);
+
+    for (int i = 0; i < CALLERS; i++) {
+      eventLoop.execute(
+          new Runnable() {
+            @Override
+            public void run() {
+              long issued = System.nanoTime();
+              if (issued >= measureEnd) {
+                finished.countDown();
+                return;
+              }
+              pool.preparedQuery("SELECT * FROM job_info WHERE id = ?")
+                  .execute(
+                      Tuple.of(1L),
+                      ar -> {
+                        if (issued >= measureStart && measured[0] < latencies.length) {
+                          latencies[measured[0]++] = System.nanoTime() - issued;
+                        }
+                        run();
+                      });
+            }
+          });
+    }
+    finished.await();
+    eventLoop.shutdown();
+
+    long[] samples = Arrays.copyOf(latencies, measured[0]);
+    Arrays.sort(samples);
+    System.out.printf(
+        "%-16s throughput %8.0f q/s   p50 %6.2f ms   p99 %6.2f ms   final limit %d%n",
+        name,
+        samples.length * 1000.0 / MEASURE_MILLIS,
+        percentile(samples, 0.50) / 1e6,
+        percentile(samples, 0.99) / 1e6,
+        statistics.getLimit());
+  }
+
+  private static long percentile(long[] sorted, double quantile) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    return sorted[Math.min(sorted.length - 1, (int) (sorted.length * quantile))];
+  }
+
+  /** Pool of {@link StandInConnection}, queues the requests beyond its size. */
+  private static class StandInPool implements MySQLPool {
+    final ScheduledExecutorService eventLoop;
+    final int maxSize;
+    final ArrayDeque<Handler<AsyncResult<SqlConnection>>> waiters = new ArrayDeque<>();
+    int leased;
+    int running;
+
+    StandInPool(ScheduledExecutorService eventLoop, int maxSize) {
+      this.eventLoop = eventLoop;
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    public void getConnection(Handler<AsyncResult<SqlConnection>> handler) {
+      if (leased < maxSize) {
+        leased++;
+        handler.handle(Future.succeededFuture(new StandInConnection(this)));
+      } else {
+        waiters.add(handler);
+      }
+    }
+
+    void giveBack() {
+      Handler<AsyncResult<SqlConnection>> waiter = waiters.poll();
+      if (waiter == null) {
+        leased--;
+      } else {
+        waiter.handle(Future.succeededFuture(new StandInConnection(this)));
+      }
+    }
+
+    /** Runs a query on the stand-in server, slower the more queries already run. */
+    void runQuery(Handler<AsyncResult<RowSet<Row>>> handler) {
+      running++;
+      double sharing = Math.max(1.0, (double) running / SERVER_CORES);
+      double contention = 1.0 + CONTENTION_PER_EXTRA_QUERY * Math.max(0, running - SERVER_CORES);
+      long serviceNanos = (long) (QUERY_NANOS * sharing * contention);
+      eventLoop.schedule(
+          () -> {
+            running--;
+            handler.handle(Future.succeededFuture());
+          },
+          serviceNanos,
+          TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public Query<RowSet<Row>> query(String sql) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public PreparedQuery<RowSet<Row>> preparedQuery(String sql) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void begin(Handler<AsyncResult<Transaction>> handler) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  private static class StandInConnection implements SqlConnection {
+    final StandInPool pool;
+
+    StandInConnection(StandInPool pool) {
+      this.pool = pool;
+    }
+
+    @Override
+    public PreparedQuery<RowSet<Row>> preparedQuery(String sql) {
+      return new StandInQuery(pool);
+    }
+
+    @Override
+    public void close() {
+      pool.giveBack();
+    }
+
+    @Override
+    public Query<RowSet<Row>> query(String sql) {
+      return new StandInQuery(pool);
+    }
+
+    @Override
+    public SqlConnection prepare(String sql, Handler<AsyncResult<PreparedStatement>> handler) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SqlConnection exceptionHandler(Handler<Throwable> handler) {
+      return this;
+    }
+
+    @Override
+    public SqlConnection closeHandler(Handler<Void> handler) {
+      return this;
+    }
+
+    @Override
+    public Transaction begin() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isSSL() {
+      return false;
+    }
+
+    @Override
+    public DatabaseMetadata databaseMetadata() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private static class StandInQuery implements PreparedQuery<RowSet<Row>> {
+    final StandInPool pool;
+
+    StandInQuery(StandInPool pool) {
+      this.pool = pool;
+    }
+
+    @Override
+    public void execute(Handler<AsyncResult<RowSet<Row>>> handler) {
+      pool.runQuery(handler);
+    }
+
+    @Override
+    public void execute(Tuple tuple, Handler<AsyncResult<RowSet<Row>>> handler) {
+      pool.runQuery(handler);
+    }
+
+    @Override
+    public void executeBatch(List<Tuple> batch, Handler<AsyncResult<RowSet<Row>>> handler) {
+      pool.runQuery(handler);
+    }
+
+    @Override
+    public <R> PreparedQuery<SqlResult<R>> collecting(Collector<Row, ?, R> collector) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <U> PreparedQuery<RowSet<U>> mapping(Function<Row, U> mapper) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
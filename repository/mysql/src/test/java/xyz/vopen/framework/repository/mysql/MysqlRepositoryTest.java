@@ -0,0 +1,135 @@
+package xyz.vopen.framework.repository.mysql;
+
+import io.vertx.sqlclient.Tuple;
+import org.junit.Test;
+import xyz.vopen.framework.neptune.common.model.InstanceInfo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link MysqlRepositoryTest} Tests of the statements of the {@link MysqlRepository} that can be
+ * checked without a server: every placeholder is bound, with the values MySQL accepts, and the
+ * columns they write have their migration.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/28
+ */
+public class MysqlRepositoryTest {
+  private static final Date NOW = new Date(1_603_888_200_000L);
+
+  @Test
+  public void testInstanceInsertBindsEveryColumn() {
+    String sql = MysqlRepository.INSERT_INSTANCE_INFO;
+    Tuple tuple = MysqlRepository.instanceInsertTuple(InstanceInfo.builder().id(1L).build(), NOW);
+
+    assertEquals(columnCount(sql), placeholderCount(sql));
+    assertEquals(columnCount(sql), tuple.size());
+  }
+
+  @Test
+  public void testInstanceInsertCreatesInstanceWithoutCreationTime() {
+    Tuple tuple = MysqlRepository.instanceInsertTuple(InstanceInfo.builder().id(1L).build(), NOW);
+
+    // gmt_create is the partition key and never null
+    assertEquals(toLocalDateTime(NOW), tuple.getValue(columnIndex("gmt_create")));
+    assertEquals(toLocalDateTime(NOW), tuple.getValue(columnIndex("gmt_update")));
+    assertNull(tuple.getValue(columnIndex("completed_time")));
+  }
+
+  @Test
+  public void testInstanceInsertKeepsCreationTime() {
+    Date created = new Date(NOW.getTime() - 86_400_000L);
+    InstanceInfo instance = InstanceInfo.builder().id(1L).triggerTime(created).build();
+    instance.setGmtCreate(created);
+
+    Tuple tuple = MysqlRepository.instanceInsertTuple(instance, NOW);
+
+    assertEquals(toLocalDateTime(created), tuple.getValue(columnIndex("gmt_create")));
+    assertEquals(toLocalDateTime(created), tuple.getValue(columnIndex("trigger_time")));
+  }
+
+  @Test
+  public void testClaimStatementsBindEveryPlaceholder() {
+    assertEquals(
+        placeholderCount(MysqlRepository.SELECT_CLAIMABLE_JOBS),
+        MysqlRepository.claimableTuple(7L, NOW.getTime(), 100).size());
+    assertEquals(
+        placeholderCount(MysqlRepository.claimJobsStatement(3)),
+        MysqlRepository.claimTuple("server-1", NOW.getTime(), Arrays.asList(1L, 2L, 3L)).size());
+    assertEquals(3, placeholderCount(MysqlRepository.RENEW_JOB_LEASES));
+  }
+
+  @Test
+  public void testClaimColumnsHaveMigration() throws Exception {
+    String migration = migration("job_info_claim_lease.sql");
+
+    assertTrue(migration.contains("ADD COLUMN claim_server"));
+    assertTrue(migration.contains("ADD COLUMN lease_expire_time"));
+    // the leases are renewed by claim server and status
+    assertTrue(migration.contains("(claim_server, status)"));
+  }
+
+  @Test
+  public void testTriggerToleranceHasMigration() throws Exception {
+    assertTrue(
+        migration("job_info_trigger_tolerance.sql").contains("ADD COLUMN trigger_tolerance"));
+  }
+
+  // =====================  Internal  =====================
+
+  private static String migration(String name) throws Exception {
+    try (InputStream in =
+        MysqlRepositoryTest.class.getClassLoader().getResourceAsStream("sql/" + name)) {
+      assertNotNull("sql/" + name, in);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+        out.write(buffer, 0, read);
+      }
+      return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+
+  private static int columnCount(String sql) {
+    return columns(sql).length;
+  }
+
+  private static int columnIndex(String column) {
+    String[] columns = columns(MysqlRepository.INSERT_INSTANCE_INFO);
+    for (int i = 0; i < columns.length; i++) {
+      if (columns[i].trim().equals(column)) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("No column " + column);
+  }
+
+  private static String[] columns(String sql) {
+    return sql.substring(sql.indexOf('(') + 1, sql.indexOf(')')).split(",");
+  }
+
+  private static int placeholderCount(String sql) {
+    int count = 0;
+    for (char c : sql.toCharArray()) {
+      if (c == '?') {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static LocalDateTime toLocalDateTime(Date date) {
+    return LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+  }
+}
@@ -0,0 +1,133 @@
+package xyz.vopen.framework.repository.mysql;
+
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.impl.ArrayTuple;
+import org.junit.Test;
+import xyz.vopen.framework.neptune.common.model.InstanceInfo;
+import xyz.vopen.framework.neptune.common.model.JobInfo;
+import xyz.vopen.framework.neptune.common.model.ServerInfo;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * {@link MysqlRowsTest} Tests of the mapping of the rows of a page to the models.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/28
+ */
+public class MysqlRowsTest {
+  private static final LocalDateTime CREATED = LocalDateTime.of(2020, 10, 28, 12, 30);
+
+  @Test
+  public void testConvertMapsEveryRowOfAPage() {
+    List<String> columns =
+        Arrays.asList(
+            "id",
+            "job_name",
+            "app_id",
+            "status",
+            "min_cpu_cores",
+            "claim_server",
+            "lease_expire_time",
+            "trigger_tolerance",
+            "gmt_create");
+    List<Row> page = new ArrayList<>();
+    for (long id = 1L; id <= 3L; id++) {
+      page.add(
+          new TestRow(
+              columns, id, "job-" + id, 7L, (int) id, 0.5d, "server-1", 1000L * id, null, CREATED));
+    }
+
+    List<JobInfo> jobs = MysqlRows.convert(page, JobInfo.class);
+
+    assertEquals(3, jobs.size());
+    for (int i = 0; i < 3; i++) {
+      JobInfo job = jobs.get(i);
+      long id = i + 1L;
+      assertEquals(Long.valueOf(id), job.getId());
+      assertEquals("job-" + id, job.getJobName());
+      assertEquals(Long.valueOf(7L), job.getAppId());
+      assertEquals(Integer.valueOf((int) id), job.getStatus());
+      assertEquals(0.5d, job.getMinCpuCores(), 0.0d);
+      assertEquals("server-1", job.getClaimServer());
+      assertEquals(Long.valueOf(1000L * id), job.getLeaseExpireTime());
+      assertNull(job.getTriggerTolerance());
+      assertEquals(toDate(CREATED), job.getGmtCreate());
+      // not selected
+      assertNull(job.getJobParams());
+    }
+  }
+
+  @Test
+  public void testConvertMapsSelectedInstanceColumns() {
+    List<String> columns = Arrays.asList("id", "app_id", "job_id", "status", "retry_times");
+    List<Row> page =
+        Arrays.asList(
+            new TestRow(columns, 10L, 1L, 100L, 3, 0), new TestRow(columns, 11L, 1L, 101L, 4, 2));
+
+    List<InstanceInfo> instances = MysqlRows.convert(page, InstanceInfo.class);
+
+    assertEquals(2, instances.size());
+    assertEquals(Long.valueOf(11L), instances.get(1).getId());
+    assertEquals(Long.valueOf(101L), instances.get(1).getJobId());
+    assertEquals(Integer.valueOf(4), instances.get(1).getStatus());
+    assertEquals(Integer.valueOf(2), instances.get(1).getRetryTimes());
+    assertNull(instances.get(1).getResult());
+    assertNull(instances.get(1).getGmtUpdate());
+  }
+
+  @Test
+  public void testConvertMapsServerName() {
+    List<String> columns = Arrays.asList("id", "server_name", "address");
+    List<ServerInfo> servers =
+        MysqlRows.convert(
+            Arrays.asList(new TestRow(columns, 1L, "neptune", "127.0.0.1:10086")),
+            ServerInfo.class);
+
+    assertEquals(1, servers.size());
+    assertEquals("neptune", servers.get(0).getServiceName());
+    assertEquals("127.0.0.1:10086", servers.get(0).getAddress());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConvertRejectsUnknownModel() {
+    MysqlRows.convert(new ArrayList<>(), String.class);
+  }
+
+  private static Date toDate(LocalDateTime dateTime) {
+    return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+  }
+
+  /** Row with the values of the given columns, as the client reads them. */
+  private static final class TestRow extends ArrayTuple implements Row {
+    private final List<String> columns;
+
+    private TestRow(List<String> columns, Object... values) {
+      super(Arrays.asList(values));
+      this.columns = columns;
+    }
+
+    @Override
+    public String getColumnName(int pos) {
+      return columns.get(pos);
+    }
+
+    @Override
+    public int getColumnIndex(String name) {
+      return columns.indexOf(name);
+    }
+
+    @Override
+    public <T> T[] getValues(Class<T> type, int pos) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package xyz.vopen.framework.repository.mysql;
+
+import io.vertx.core.Future;
+import org.junit.Test;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link VertxFuturesTest} Tests of the bounded wait of {@link VertxFutures}.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class VertxFuturesTest {
+
+  @Test
+  public void testAwaitReturnsResult() {
+    String result =
+        VertxFutures.<String>await(handler -> handler.handle(Future.succeededFuture("done")));
+
+    assertEquals("done", result);
+  }
+
+  @Test
+  public void testAwaitWrapsFailure() {
+    IllegalStateException failure = new IllegalStateException("broken");
+    try {
+      VertxFutures.<String>await(handler -> handler.handle(Future.failedFuture(failure)));
+      fail("the failure should be thrown");
+    } catch (CompletionException e) {
+      assertEquals(failure, e.getCause());
+    }
+  }
+
+  @Test
+  public void testAwaitTimesOut() {
+    long start = System.currentTimeMillis();
+    try {
+      // the handler is never called
+      VertxFutures.<String>await(handler -> {}, 50L);
+      fail("the wait should time out");
+    } catch (CompletionException e) {
+      assertTrue(e.getCause() instanceof TimeoutException);
+    }
+    assertTrue(System.currentTimeMillis() - start < 5000L);
+  }
+}
@@ -1,5 +1,7 @@
 package xyz.vopen.framework.neptune.rpc;
 
+import xyz.vopen.framework.neptune.common.model.message.request.ReportHeartbeatRequest;
+import xyz.vopen.framework.neptune.common.model.message.request.ReportTaskStatusRequest;
 import xyz.vopen.framework.neptune.common.utils.time.Time;
 import xyz.vopen.framework.neptune.rpc.message.Acknowledge;
 
@@ -44,4 +46,22 @@ public interface DispatcherGateway extends RpcGateway {
    * @return A future acknowledge.
    */
   CompletableFuture<Acknowledge> shutdownJobManager();
+
+  /**
+   * Reports the free resources of a worker. Fire and forget, the worker does not wait. Queued in
+   * the heartbeat lane, so that a worker is not taken for lost behind a flood of status reports.
+   *
+   * @param heartbeat {@link ReportHeartbeatRequest} instance.
+   */
+  @RpcPriority(RpcPriority.Lane.HEARTBEAT)
+  void reportHeartbeat(ReportHeartbeatRequest heartbeat);
+
+  /**
+   * Reports the status of an instance, e.g. its completion. Fire and forget, the worker does not
+   * wait. The reports of a worker sent within the batch window are coalesced in one message.
+   *
+   * @param status {@link ReportTaskStatusRequest} instance.
+   */
+  @RpcBatchable
+  void reportTaskStatus(ReportTaskStatusRequest status);
 }
@@ -0,0 +1,135 @@
+package xyz.vopen.framework.neptune.rpc;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import xyz.vopen.framework.neptune.common.utils.time.Time;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link InProcessEndpointRegistry} Endpoints started in this process by their address, for the
+ * {@link RpcService}s to connect to them without going through their transport: the gateway
+ * returned by {@link #connect(String, Class, Object, Time)} runs the calls in the main thread of
+ * the endpoint with the arguments and results passed by reference, see {@link
+ * InProcessInvocationHandler}.
+ *
+ * <p>An address unique in the process, e.g. with the host and port of a remote actor system, is
+ * registered without scope. An address only unique within its rpc service, e.g. of a local actor
+ * system, is registered with the service as scope and only found from it. An address taken by
+ * another endpoint is not registered again, the calls to it go through the transport.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class InProcessEndpointRegistry {
+  private static final Logger LOG = LoggerFactory.getLogger(InProcessEndpointRegistry.class);
+
+  private static final ConcurrentMap<String, Registration> ENDPOINTS = new ConcurrentHashMap<>();
+
+  private InProcessEndpointRegistry() {}
+
+  /**
+   * Registers a started endpoint.
+   *
+   * @param address of the endpoint, as returned by {@link RpcServer#getAddress()}.
+   * @param rpcEndpoint to invoke.
+   * @param rpcServer of the endpoint, running the calls in its main thread.
+   * @param scope the address is unique within, null if unique in the process.
+   * @param responseExecutor completing the results, so that the callbacks of the callers do not
+   *     run in the main thread of the endpoint.
+   * @param statistics of the rpc service of the endpoint, taking the invocation times.
+   */
+  public static void register(
+      String address,
+      RpcEndpoint rpcEndpoint,
+      RpcServer rpcServer,
+      @Nullable Object scope,
+      Executor responseExecutor,
+      RpcStatistics statistics) {
+    Registration registration =
+        new Registration(
+            Preconditions.checkNotNull(rpcEndpoint),
+            Preconditions.checkNotNull(rpcServer),
+            scope,
+            Preconditions.checkNotNull(responseExecutor),
+            Preconditions.checkNotNull(statistics));
+    Registration registered = ENDPOINTS.putIfAbsent(address, registration);
+    if (registered != null) {
+      LOG.debug(
+          "[InProcessEndpointRegistry] Address {} is taken by {}, "
+              + "calls to {} go through the rpc service.",
+          address,
+          registered.rpcEndpoint.getEndpointId(),
+          rpcEndpoint.getEndpointId());
+    }
+  }
+
+  /** Unregisters the endpoint of the server, if it is the one registered under the address. */
+  public static void unregister(String address, RpcServer rpcServer) {
+    ENDPOINTS.computeIfPresent(
+        address,
+        (ignored, registration) -> registration.rpcServer == rpcServer ? null : registration);
+  }
+
+  /**
+   * Returns a gateway calling the endpoint registered under the address directly, null if there is
+   * none visible from the scope or it does not implement the gateway.
+   *
+   * @param scope of the connecting rpc service.
+   * @param timeout of the calls without {@link RpcTimeout} parameter.
+   * @param statistics of the connecting rpc service, taking the calls.
+   */
+  public static <C extends RpcGateway> @Nullable C connect(
+      String address, Class<C> clazz, Object scope, Time timeout, RpcStatistics statistics) {
+    Registration registration = ENDPOINTS.get(address);
+    if (registration == null
+        || (registration.scope != null && registration.scope != scope)
+        || !clazz.isInstance(registration.rpcEndpoint)) {
+      return null;
+    }
+
+    InProcessInvocationHandler invocationHandler =
+        new InProcessInvocationHandler(
+            registration.rpcEndpoint,
+            registration.rpcServer,
+            registration.responseExecutor,
+            timeout,
+            statistics,
+            registration.statistics);
+
+    @SuppressWarnings("unchecked")
+    C proxy =
+        (C)
+            Proxy.newProxyInstance(
+                InProcessEndpointRegistry.class.getClassLoader(),
+                new Class<?>[] {clazz},
+                invocationHandler);
+    return proxy;
+  }
+
+  private static final class Registration {
+    private final RpcEndpoint rpcEndpoint;
+    private final RpcServer rpcServer;
+    private final @Nullable Object scope;
+    private final Executor responseExecutor;
+    private final RpcStatistics statistics;
+
+    private Registration(
+        RpcEndpoint rpcEndpoint,
+        RpcServer rpcServer,
+        @Nullable Object scope,
+        Executor responseExecutor,
+        RpcStatistics statistics) {
+      this.rpcEndpoint = rpcEndpoint;
+      this.rpcServer = rpcServer;
+      this.scope = scope;
+      this.responseExecutor = responseExecutor;
+      this.statistics = statistics;
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package xyz.vopen.framework.neptune.rpc;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import xyz.vopen.framework.neptune.common.concurrent.FutureUtil;
+import xyz.vopen.framework.neptune.common.utils.ExceptionUtil;
+import xyz.vopen.framework.neptune.common.utils.time.Time;
+import xyz.vopen.framework.neptune.rpc.exceptions.RpcException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link InProcessInvocationHandler} Invocation handler of a gateway to an endpoint of the same
+ * process. A call is not wrapped in an invocation message nor serialized: the method of the
+ * endpoint is run through {@link MainThreadExecutable#runAsync(Runnable)}, which keeps it in the
+ * main thread of the endpoint, and its result completes the future returned to the caller.
+ *
+ * <p>The result is completed in the response executor, not in the main thread of the endpoint,
+ * which the callbacks of the caller must not run in.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+class InProcessInvocationHandler implements InvocationHandler {
+  private static final Logger LOG = LoggerFactory.getLogger(InProcessInvocationHandler.class);
+
+  private final RpcEndpoint rpcEndpoint;
+
+  /** Server of the endpoint, running the calls in its main thread. */
+  private final RpcServer rpcServer;
+
+  private final RpcMethodTable methodTable;
+
+  private final Executor responseExecutor;
+
+  private final Time timeout;
+
+  /** Statistics of the rpc service of the caller. */
+  private final RpcStatistics callerStatistics;
+
+  /** Statistics of the rpc service of the endpoint. */
+  private final RpcStatistics endpointStatistics;
+
+  InProcessInvocationHandler(
+      RpcEndpoint rpcEndpoint,
+      RpcServer rpcServer,
+      Executor responseExecutor,
+      Time timeout,
+      RpcStatistics callerStatistics,
+      RpcStatistics endpointStatistics) {
+    this.rpcEndpoint = Preconditions.checkNotNull(rpcEndpoint);
+    this.rpcServer = Preconditions.checkNotNull(rpcServer);
+    this.methodTable = RpcMethodTable.forEndpoint(rpcEndpoint.getClass());
+    this.responseExecutor = Preconditions.checkNotNull(responseExecutor);
+    this.timeout = Preconditions.checkNotNull(timeout);
+    this.callerStatistics = Preconditions.checkNotNull(callerStatistics);
+    this.endpointStatistics = Preconditions.checkNotNull(endpointStatistics);
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    Class<?> declaringClass = method.getDeclaringClass();
+    if (declaringClass.equals(Object.class)) {
+      return method.invoke(this, args);
+    }
+    if (declaringClass.equals(RpcGateway.class)) {
+      return method.invoke(rpcServer, args);
+    }
+
+    RpcMethodTable.RpcMethod gatewayMethod =
+        RpcMethodTable.forGateway(declaringClass).get(method);
+    RpcMethodTable.RpcMethod rpcMethod = methodTable.get(gatewayMethod.getId());
+    Preconditions.checkState(
+        rpcMethod != null, "%s does not implement %s.", rpcEndpoint.getClass(), method);
+
+    RpcMethodStatistics methodStatistics = callerStatistics.forMethod(gatewayMethod);
+    if (rpcMethod.returnsVoid()) {
+      methodStatistics.onTell(0L);
+      rpcServer.runAsync(() -> invokeVoid(rpcMethod, args));
+      return null;
+    }
+
+    // the RpcTimeout annotations are on the parameters of the gateway, not of the endpoint
+    Time callTimeout = gatewayMethod.getTimeout(args, timeout);
+    CompletableFuture<Object> resultFuture = new CompletableFuture<>();
+    long startNanos = methodStatistics.onAsk(0L);
+    resultFuture.whenComplete(
+        (value, failure) -> methodStatistics.onAskCompleted(startNanos, 0L, failure));
+    rpcServer.runAsync(() -> invokeInMainThread(rpcMethod, args, resultFuture));
+    FutureUtil.orTimeout(resultFuture, callTimeout.getSize(), callTimeout.getUnit());
+
+    if (rpcMethod.returnsFuture()) {
+      return resultFuture;
+    }
+    try {
+      return resultFuture.get(callTimeout.getSize(), callTimeout.getUnit());
+    } catch (ExecutionException e) {
+      throw new RpcException(
+          "Failure while obtaining synchronous RPC result.",
+          ExceptionUtil.stripExecutionException(e));
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "InProcessInvocationHandler(" + rpcEndpoint.getEndpointId() + ')';
+  }
+
+  // =====================  Internal  =====================
+
+  private void invokeVoid(RpcMethodTable.RpcMethod rpcMethod, Object[] args) {
+    try {
+      invokeTimed(rpcMethod, args);
+    } catch (Throwable e) {
+      LOG.error("[InProcessInvocationHandler] Error while executing rpc call {}.", rpcMethod, e);
+    }
+  }
+
+  private Object invokeTimed(RpcMethodTable.RpcMethod rpcMethod, Object[] args) throws Throwable {
+    long startNanos = System.nanoTime();
+    try {
+      return rpcMethod.invoke(rpcEndpoint, args);
+    } finally {
+      endpointStatistics.forMethod(rpcMethod).onInvocation(System.nanoTime() - startNanos);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void invokeInMainThread(
+      RpcMethodTable.RpcMethod rpcMethod, Object[] args, CompletableFuture<Object> resultFuture) {
+    try {
+      Object result = invokeTimed(rpcMethod, args);
+      if (result instanceof CompletableFuture) {
+        FutureUtil.forwardAsync((CompletableFuture<Object>) result, resultFuture, responseExecutor);
+      } else {
+        responseExecutor.execute(() -> resultFuture.complete(result));
+      }
+    } catch (Throwable e) {
+      LOG.debug(
+          "[InProcessInvocationHandler] Reporting back error thrown in rpc call {}.", rpcMethod, e);
+      responseExecutor.execute(() -> resultFuture.completeExceptionally(e));
+    }
+  }
+}
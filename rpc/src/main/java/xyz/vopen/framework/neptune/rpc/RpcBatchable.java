@@ -0,0 +1,24 @@
+package xyz.vopen.framework.neptune.rpc;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * {@link RpcBatchable} Annotation for {@link RpcGateway} methods called at a high rate with small
+ * arguments, such as status reports and heartbeats: the remote calls of a gateway made within a
+ * short window are coalesced in one message to the endpoint, where they are invoked one by one as
+ * if sent alone, and their results are sent back together.
+ *
+ * <p>A call may then wait for the window and for the other calls of its batch to complete, the
+ * methods with a slow or large result should not be batchable.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RpcBatchable {}
@@ -0,0 +1,107 @@
+package xyz.vopen.framework.neptune.rpc;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nullable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * {@link RpcMailbox} Messages queued for the main thread of an endpoint, in a lane per {@link
+ * RpcPriority.Lane}. The messages are taken from the first lane which has any, in the order they
+ * were added to it.
+ *
+ * <p>Each lane holds at most the capacity of messages {@link #offer(RpcPriority.Lane, Object)
+ * offered}, the rpc invocations, so that a flood of calls neither grows the heap without limit nor
+ * delays the lanes ahead of it. The messages {@link #add(RpcPriority.Lane, Object) added}, the
+ * lifecycle messages and the runnables of the endpoint itself, are never rejected but count towards
+ * the capacity.
+ *
+ * <p>Any thread may add messages, only one at a time may take them.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class RpcMailbox<T> {
+  private static final RpcPriority.Lane[] LANES = RpcPriority.Lane.values();
+
+  /** Maximum messages offered to a lane, 0 if unbounded. */
+  private final int capacity;
+
+  private final Queue<T>[] queues;
+
+  /** Messages of each lane, including those being added. */
+  private final AtomicIntegerArray sizes;
+
+  @SuppressWarnings("unchecked")
+  public RpcMailbox(int capacity) {
+    Preconditions.checkArgument(capacity >= 0, "The capacity must not be negative.");
+    this.capacity = capacity;
+    this.queues = new Queue[LANES.length];
+    for (int i = 0; i < LANES.length; i++) {
+      queues[i] = new ConcurrentLinkedQueue<>();
+    }
+    this.sizes = new AtomicIntegerArray(LANES.length);
+  }
+
+  /**
+   * Adds the message unless its lane is full.
+   *
+   * @return Whether the message was added.
+   */
+  public boolean offer(RpcPriority.Lane lane, T message) {
+    final int index = lane.ordinal();
+    if (sizes.incrementAndGet(index) > capacity && capacity > 0) {
+      sizes.decrementAndGet(index);
+      return false;
+    }
+    queues[index].add(message);
+    return true;
+  }
+
+  /** Adds the message, even if its lane is full. */
+  public void add(RpcPriority.Lane lane, T message) {
+    final int index = lane.ordinal();
+    sizes.incrementAndGet(index);
+    queues[index].add(message);
+  }
+
+  /** Takes the next message, null if there is none. */
+  public @Nullable T poll() {
+    for (int i = 0; i < queues.length; i++) {
+      T message = queues[i].poll();
+      if (message != null) {
+        sizes.decrementAndGet(i);
+        return message;
+      }
+    }
+    return null;
+  }
+
+  public boolean isEmpty() {
+    for (Queue<T> queue : queues) {
+      if (!queue.isEmpty()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the number of messages, which may include some being added. */
+  public int size() {
+    int size = 0;
+    for (int i = 0; i < queues.length; i++) {
+      size += sizes.get(i);
+    }
+    return size;
+  }
+
+  public int size(RpcPriority.Lane lane) {
+    return sizes.get(lane.ordinal());
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+}
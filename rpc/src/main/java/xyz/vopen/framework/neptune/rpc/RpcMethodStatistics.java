@@ -0,0 +1,143 @@
+package xyz.vopen.framework.neptune.rpc;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/**
+ * {@link RpcMethodStatistics} Live statistics of the calls of one gateway method, collected by the
+ * invocation handlers on the caller side and by the rpc actors on the endpoint side. The rpc module
+ * keeps counters only, the durations are handed to the listeners, e.g. histograms of the metric
+ * service.
+ *
+ * <p>The bytes are the ones of the serialized invocations and results, so calls to a local endpoint
+ * do not count any.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class RpcMethodStatistics {
+
+  private static final LongConsumer NO_OP = nanos -> {};
+
+  private final String name;
+  private final LongAdder calls = new LongAdder();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final LongAdder timeouts = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder requestBytes = new LongAdder();
+  private final LongAdder responseBytes = new LongAdder();
+  private volatile @Nonnull LongConsumer callLatencyListener = NO_OP;
+  private volatile @Nonnull LongConsumer invocationTimeListener = NO_OP;
+
+  RpcMethodStatistics(String name) {
+    this.name = name;
+  }
+
+  /** Name of the method, prefixed with the simple name of its gateway. */
+  public String getName() {
+    return name;
+  }
+
+  /** Number of calls sent, with or without result. */
+  public long getCalls() {
+    return calls.sum();
+  }
+
+  /** Number of calls waiting for their result. */
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  /** Number of calls whose result did not arrive within their timeout. */
+  public long getTimeouts() {
+    return timeouts.sum();
+  }
+
+  /** Number of calls failed otherwise than by a timeout. */
+  public long getFailures() {
+    return failures.sum();
+  }
+
+  /** Total size of the serialized invocations sent. */
+  public long getRequestBytes() {
+    return requestBytes.sum();
+  }
+
+  /** Total size of the serialized results received. */
+  public long getResponseBytes() {
+    return responseBytes.sum();
+  }
+
+  /**
+   * Sets the listener receiving the latency of every call with a result, from the call of the
+   * gateway to the arrival of the result, invoked on the thread completing the call so it must be
+   * cheap.
+   *
+   * @param callLatencyListener Receives the latency in nanoseconds.
+   */
+  public void setCallLatencyListener(@Nonnull LongConsumer callLatencyListener) {
+    this.callLatencyListener = callLatencyListener;
+  }
+
+  /**
+   * Sets the listener receiving the time every call took in the main thread of the endpoint, which
+   * holds back the other messages of the endpoint meanwhile. An asynchronous method is only
+   * measured until it returned its future.
+   *
+   * @param invocationTimeListener Receives the invocation time in nanoseconds.
+   */
+  public void setInvocationTimeListener(@Nonnull LongConsumer invocationTimeListener) {
+    this.invocationTimeListener = invocationTimeListener;
+  }
+
+  // =====================  Recording  =====================
+
+  /** Records a call without result, e.g. a tell. */
+  public void onTell(long serializedBytes) {
+    calls.increment();
+    requestBytes.add(serializedBytes);
+  }
+
+  /**
+   * Records a call waiting for its result.
+   *
+   * @return The start of the call, to pass to {@link #onAskCompleted(long, long, Throwable)}.
+   */
+  public long onAsk(long serializedBytes) {
+    calls.increment();
+    requestBytes.add(serializedBytes);
+    inFlight.incrementAndGet();
+    return System.nanoTime();
+  }
+
+  /**
+   * Records the completion of a call started by {@link #onAsk(long)}.
+   *
+   * @param startNanos Returned by {@link #onAsk(long)}.
+   * @param serializedBytes Size of the serialized result, 0 if it was not serialized.
+   * @param failure Of the call, null if it succeeded.
+   */
+  public void onAskCompleted(long startNanos, long serializedBytes, @Nullable Throwable failure) {
+    inFlight.decrementAndGet();
+    responseBytes.add(serializedBytes);
+    if (failure instanceof CompletionException && failure.getCause() != null) {
+      failure = failure.getCause();
+    }
+    if (failure instanceof TimeoutException) {
+      timeouts.increment();
+    } else if (failure != null) {
+      failures.increment();
+    }
+    callLatencyListener.accept(System.nanoTime() - startNanos);
+  }
+
+  /** Records the time a call took in the main thread of the endpoint. */
+  public void onInvocation(long nanos) {
+    invocationTimeListener.accept(nanos);
+  }
+}
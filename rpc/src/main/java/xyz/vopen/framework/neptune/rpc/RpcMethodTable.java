@@ -0,0 +1,291 @@
+package xyz.vopen.framework.neptune.rpc;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+import xyz.vopen.framework.neptune.common.exceptions.NeptuneRuntimeException;
+import xyz.vopen.framework.neptune.common.utils.time.Time;
+import xyz.vopen.framework.neptune.common.utils.collection.LongObjectHashMap;
+
+import javax.annotation.Nullable;
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link RpcMethodTable} Invocation metadata of the rpc methods of a class, resolved once per class
+ * instead of on every call: the caller finds the method id and the {@link RpcTimeout} parameter of
+ * a gateway method, the endpoint finds the method handle to invoke from the method id. The {@link
+ * RpcPriority} of a method and whether it is {@link RpcBatchable} are taken from its declaration in
+ * the gateway.
+ *
+ * <p>The id of a method is a hash of its name and parameter types, so that both ends compute it
+ * without agreeing on a table and a remote invocation carries 4 bytes instead of the name and the
+ * parameter classes. Two methods of an endpoint whose ids collide fail the creation of its table.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class RpcMethodTable {
+
+  private static final ClassValue<RpcMethodTable> GATEWAY_TABLES =
+      new ClassValue<RpcMethodTable>() {
+        @Override
+        protected RpcMethodTable computeValue(Class<?> gateway) {
+          return createGatewayTable(gateway);
+        }
+      };
+
+  private static final ClassValue<RpcMethodTable> ENDPOINT_TABLES =
+      new ClassValue<RpcMethodTable>() {
+        @Override
+        protected RpcMethodTable computeValue(Class<?> endpoint) {
+          return createEndpointTable(endpoint);
+        }
+      };
+
+  /** Type the method handles are adapted to: the endpoint and the arguments. */
+  private static final MethodType INVOKER_TYPE =
+      MethodType.methodType(Object.class, Object.class, Object[].class);
+
+  private final Map<Method, RpcMethod> byMethod;
+  private final LongObjectHashMap<RpcMethod> byId;
+
+  private RpcMethodTable(Map<Method, RpcMethod> byMethod, LongObjectHashMap<RpcMethod> byId) {
+    this.byMethod = byMethod;
+    this.byId = byId;
+  }
+
+  /** Returns the table of the methods declared by the gateway interface, for the callers. */
+  public static RpcMethodTable forGateway(Class<?> gateway) {
+    return GATEWAY_TABLES.get(gateway);
+  }
+
+  /**
+   * Returns the table of the methods the endpoint class implements for its {@link RpcGateway}s,
+   * with their method handles, for the endpoint.
+   *
+   * @throws IllegalStateException if the ids of two methods collide.
+   */
+  public static RpcMethodTable forEndpoint(Class<?> endpoint) {
+    return ENDPOINT_TABLES.get(endpoint);
+  }
+
+  /** Returns the id of the method with the given signature. */
+  public static int methodIdOf(String methodName, Class<?>[] parameterTypes) {
+    StringBuilder signature = new StringBuilder(methodName).append('(');
+    for (int i = 0; i < parameterTypes.length; i++) {
+      if (i > 0) {
+        signature.append(',');
+      }
+      signature.append(parameterTypes[i].getName());
+    }
+    signature.append(')');
+    return Hashing.murmur3_32().hashString(signature, StandardCharsets.UTF_8).asInt();
+  }
+
+  /** Returns the entry of a gateway method, null if the gateway does not declare it. */
+  public @Nullable RpcMethod get(Method method) {
+    return byMethod.get(method);
+  }
+
+  /** Returns the entry of the method id, null if unknown. */
+  public @Nullable RpcMethod get(int methodId) {
+    return byId.get(methodId);
+  }
+
+  public int size() {
+    return byMethod.size();
+  }
+
+  // =====================  Internal  =====================
+
+  private static RpcMethodTable createGatewayTable(Class<?> gateway) {
+    Map<Method, RpcMethod> byMethod = new HashMap<>();
+    LongObjectHashMap<RpcMethod> byId = new LongObjectHashMap<>(32);
+    for (Method method : gateway.getMethods()) {
+      RpcMethod rpcMethod = new RpcMethod(method, method, null);
+      byMethod.put(method, rpcMethod);
+      byId.put(rpcMethod.id, rpcMethod);
+    }
+    return new RpcMethodTable(byMethod, byId);
+  }
+
+  private static RpcMethodTable createEndpointTable(Class<?> endpoint) {
+    Map<Method, RpcMethod> byMethod = new HashMap<>();
+    LongObjectHashMap<RpcMethod> byId = new LongObjectHashMap<>(32);
+    for (Class<?> gateway : RpcUtil.extractImplementedRpcGateways(endpoint)) {
+      for (Method declared : gateway.getMethods()) {
+        Method method;
+        try {
+          method = endpoint.getMethod(declared.getName(), declared.getParameterTypes());
+        } catch (NoSuchMethodException e) {
+          // abstract endpoint
+          continue;
+        }
+        if (byMethod.containsKey(method)) {
+          continue;
+        }
+        RpcMethod rpcMethod = new RpcMethod(method, declared, invokerOf(method));
+        RpcMethod colliding = byId.put(rpcMethod.id, rpcMethod);
+        Preconditions.checkState(
+            colliding == null || colliding.method.equals(method),
+            "The rpc methods %s and %s of %s have the same id, rename one of them.",
+            colliding == null ? null : colliding.method,
+            method,
+            endpoint.getName());
+        byMethod.put(method, rpcMethod);
+      }
+    }
+    return new RpcMethodTable(byMethod, byId);
+  }
+
+  private static MethodHandle invokerOf(Method method) {
+    // this supports declaration of anonymous classes
+    method.setAccessible(true);
+    try {
+      // the varargs of a method arrive as one array, they must not be collected again
+      return MethodHandles.lookup()
+          .unreflect(method)
+          .asFixedArity()
+          .asSpreader(Object[].class, method.getParameterCount())
+          .asType(INVOKER_TYPE);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException("Could not access the rpc method " + method + '.', e);
+    }
+  }
+
+  /** Invocation metadata of one rpc method. */
+  public static final class RpcMethod {
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final int id;
+    private final Method method;
+    private final String qualifiedName;
+    private final Class<?>[] parameterTypes;
+    private final int timeoutIndex;
+    private final boolean returnsVoid;
+    private final boolean returnsFuture;
+    private final RpcPriority.Lane lane;
+    private final boolean batchable;
+    private final @Nullable MethodHandle invoker;
+
+    /**
+     * @param method to invoke.
+     * @param declared the declaration of the method in its gateway.
+     * @param invoker of the method, null for a gateway table.
+     */
+    private RpcMethod(Method method, Method declared, @Nullable MethodHandle invoker) {
+      this.id = methodIdOf(method.getName(), method.getParameterTypes());
+      this.method = method;
+      this.qualifiedName = declared.getDeclaringClass().getSimpleName() + '.' + method.getName();
+      this.parameterTypes = method.getParameterTypes();
+      this.timeoutIndex = timeoutIndexOf(method);
+      this.returnsVoid = method.getReturnType().equals(Void.TYPE);
+      this.returnsFuture = method.getReturnType().equals(CompletableFuture.class);
+      RpcPriority priority = declared.getAnnotation(RpcPriority.class);
+      this.lane = priority == null ? RpcPriority.Lane.NORMAL : priority.value();
+      this.batchable = declared.isAnnotationPresent(RpcBatchable.class);
+      this.invoker = invoker;
+    }
+
+    public int getId() {
+      return id;
+    }
+
+    public Method getMethod() {
+      return method;
+    }
+
+    public String getName() {
+      return method.getName();
+    }
+
+    /** Returns the name of the method prefixed with the simple name of the gateway declaring it. */
+    public String getQualifiedName() {
+      return qualifiedName;
+    }
+
+    /** Returns the parameter types, shared by all the calls: not to be modified. */
+    public Class<?>[] getParameterTypes() {
+      return parameterTypes;
+    }
+
+    /** Returns the index of the {@link RpcTimeout} parameter, -1 if there is none. */
+    public int getTimeoutIndex() {
+      return timeoutIndex;
+    }
+
+    /**
+     * Returns the value of the {@link RpcTimeout} parameter of a call, the default timeout if the
+     * method has none.
+     *
+     * @throws NeptuneRuntimeException if the parameter is not a {@link Time}.
+     */
+    public Time getTimeout(@Nullable Object[] args, Time defaultTimeout) {
+      if (args == null || timeoutIndex < 0) {
+        return defaultTimeout;
+      }
+      if (args[timeoutIndex] instanceof Time) {
+        return (Time) args[timeoutIndex];
+      }
+      throw new NeptuneRuntimeException(
+          "The rpc timeout parameter must be of type "
+              + Time.class.getName()
+              + ". The type "
+              + args[timeoutIndex].getClass().getName()
+              + " is not supported.");
+    }
+
+    public boolean returnsVoid() {
+      return returnsVoid;
+    }
+
+    public boolean returnsFuture() {
+      return returnsFuture;
+    }
+
+    /** Returns the lane of the mailbox of the endpoint the invocations are queued in. */
+    public RpcPriority.Lane getLane() {
+      return lane;
+    }
+
+    /** Whether the remote calls may be coalesced with others, see {@link RpcBatchable}. */
+    public boolean isBatchable() {
+      return batchable;
+    }
+
+    /**
+     * Invokes the method on the endpoint, only for the entries of an endpoint table.
+     *
+     * @throws Throwable thrown by the method itself.
+     */
+    public Object invoke(Object endpoint, @Nullable Object[] args) throws Throwable {
+      Preconditions.checkState(invoker != null, "Gateway methods cannot be invoked.");
+      Object[] arguments = args == null ? NO_ARGS : args;
+      return invoker.invokeExact(endpoint, arguments);
+    }
+
+    @Override
+    public String toString() {
+      return method.getName() + '#' + id;
+    }
+
+    private static int timeoutIndexOf(Method method) {
+      Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+      for (int i = 0; i < parameterAnnotations.length; i++) {
+        for (Annotation annotation : parameterAnnotations[i]) {
+          if (annotation.annotationType().equals(RpcTimeout.class)) {
+            return i;
+          }
+        }
+      }
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package xyz.vopen.framework.neptune.rpc;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * {@link RpcPriority} Annotation for {@link RpcGateway} methods to queue their invocations in
+ * another lane of the mailbox of the endpoint than the {@link Lane#NORMAL} one, so that they are
+ * processed ahead of the normal rpc traffic queued before them. The invocations of different lanes
+ * are not ordered with each other, even from one caller.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RpcPriority {
+
+  Lane value();
+
+  /** Lanes of the mailbox of an endpoint, in the order they are processed. */
+  enum Lane {
+    /** The lifecycle messages of the endpoint and the calls controlling it. */
+    CONTROL,
+    /** The heartbeats, which must not time out behind a backlog of calls. */
+    HEARTBEAT,
+    /** All the other messages. */
+    NORMAL;
+
+    private static final Lane[] VALUES = values();
+
+    /** Returns the lane of the ordinal, {@link #NORMAL} if it is unknown. */
+    public static Lane fromOrdinal(int ordinal) {
+      return ordinal >= 0 && ordinal < VALUES.length ? VALUES[ordinal] : NORMAL;
+    }
+  }
+}
@@ -74,6 +74,14 @@ public interface RpcService {
    */
   CompletableFuture<Void> getTerminationFuture();
 
+  /**
+   * Returns the live statistics of the calls made and served through this rpc service, by gateway
+   * method.
+   *
+   * @return Statistics of the rpc service
+   */
+  RpcStatistics getStatistics();
+
   /**
    * Gets the executor, provided by this RPC service. This executor can be used for example for the
    * {@code handleAsync(...)} or {@code thenAcceptAsync(...)} methods of futures.
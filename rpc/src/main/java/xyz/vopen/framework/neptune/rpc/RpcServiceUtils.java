@@ -0,0 +1,98 @@
+package xyz.vopen.framework.neptune.rpc;
+
+import com.google.common.base.Preconditions;
+import xyz.vopen.framework.neptune.common.configuration.Configuration;
+import xyz.vopen.framework.neptune.common.configuration.RpcOptions;
+import xyz.vopen.framework.neptune.common.utils.HighAvailabilityServicesUtil;
+import xyz.vopen.framework.neptune.rpc.akka.AkkaRpcServiceUtils;
+import xyz.vopen.framework.neptune.rpc.netty.NettyRpcServiceUtils;
+
+import javax.annotation.Nullable;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * {@link RpcServiceUtils} Starts the {@link RpcService} of the transport selected by {@link
+ * RpcOptions#TRANSPORT} and addresses its endpoints.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class RpcServiceUtils {
+
+  /** This class is not meant to be instantiated. */
+  private RpcServiceUtils() {}
+
+  /** Transports of the rpc service. */
+  public enum Transport {
+    /** Akka remoting, see {@code AkkaRpcService}. */
+    AKKA,
+    /** Binary protocol over Netty, see {@code NettyRpcService}. */
+    NETTY;
+
+    public static Transport fromConfiguration(Configuration configuration) {
+      String transport = configuration.getString(RpcOptions.TRANSPORT);
+      try {
+        return valueOf(transport.trim().toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException(
+            String.format(
+                "Unknown rpc transport %s, expected one of akka, netty.", transport));
+      }
+    }
+  }
+
+  public static RpcService createRemoteRpcService(
+      Configuration configuration,
+      @Nullable String externalAddress,
+      String externalPortRange,
+      @Nullable String bindAddress,
+      Optional<Integer> bindPort)
+      throws Exception {
+    switch (Transport.fromConfiguration(configuration)) {
+      case NETTY:
+        return NettyRpcServiceUtils.createRemoteRpcService(
+            configuration, externalAddress, externalPortRange, bindAddress, bindPort);
+      case AKKA:
+      default:
+        return AkkaRpcServiceUtils.createRemoteRpcService(
+            configuration, externalAddress, externalPortRange, bindAddress, bindPort);
+    }
+  }
+
+  /**
+   * @param hostname The hostname or address where the target RPC service is listening.
+   * @param port The port where the target RPC service is listening.
+   * @param endpointName The name of the RPC endpoint.
+   * @param addressResolution Whether to try address resolution of the given hostname or not. This
+   *     allows to fail fast in case that the hostname cannot be resolved.
+   * @param configuration The configuration selecting the transport.
+   * @return The RPC URL of the specified RPC endpoint.
+   */
+  public static String getRpcUrl(
+      String hostname,
+      int port,
+      String endpointName,
+      HighAvailabilityServicesUtil.AddressResolution addressResolution,
+      Configuration configuration)
+      throws UnknownHostException {
+    Preconditions.checkNotNull(configuration, "config is null");
+
+    switch (Transport.fromConfiguration(configuration)) {
+      case NETTY:
+        if (addressResolution
+            == HighAvailabilityServicesUtil.AddressResolution.TRY_ADDRESS_RESOLUTION) {
+          // Fail fast if the hostname cannot be resolved
+          //noinspection ResultOfMethodCallIgnored
+          InetAddress.getByName(hostname);
+        }
+        return NettyRpcServiceUtils.getRpcUrl(hostname, port, endpointName);
+      case AKKA:
+      default:
+        return AkkaRpcServiceUtils.getRpcUrl(
+            hostname, port, endpointName, addressResolution, configuration);
+    }
+  }
+}
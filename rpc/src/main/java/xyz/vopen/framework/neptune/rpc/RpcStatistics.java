@@ -0,0 +1,134 @@
+package xyz.vopen.framework.neptune.rpc;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * {@link RpcStatistics} Live statistics of the calls going through an {@link RpcService}, one
+ * {@link RpcMethodStatistics} per gateway method, created on the first call of the method. The
+ * caller and the endpoint side of a method share the same statistics.
+ *
+ * <p>The connections of the service are counted as well: the connects served by its gateway cache
+ * or not, the cached gateways invalidated, and the latency of the connects going through the
+ * handshake.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class RpcStatistics {
+
+  private static final Consumer<RpcMethodStatistics> NO_OP = statistics -> {};
+
+  private static final LongConsumer NO_OP_LISTENER = nanos -> {};
+
+  /** Statistics by qualified method name. */
+  private final ConcurrentMap<String, RpcMethodStatistics> byName = new ConcurrentHashMap<>();
+
+  /** Statistics by table entry, which skips building the name on every call. */
+  private final ConcurrentMap<RpcMethodTable.RpcMethod, RpcMethodStatistics> byMethod =
+      new ConcurrentHashMap<>();
+
+  /** Guards the creation of the method statistics and their delivery to the listener. */
+  private final Object methodLock = new Object();
+
+  @GuardedBy("methodLock")
+  private @Nonnull Consumer<RpcMethodStatistics> methodListener = NO_OP;
+
+  private final LongAdder connectionHits = new LongAdder();
+  private final LongAdder connectionMisses = new LongAdder();
+  private final LongAdder connectionInvalidations = new LongAdder();
+  private volatile @Nonnull LongConsumer handshakeLatencyListener = NO_OP_LISTENER;
+
+  /** Returns the statistics of the method, shared by the gateway and the endpoint entries. */
+  public RpcMethodStatistics forMethod(RpcMethodTable.RpcMethod rpcMethod) {
+    RpcMethodStatistics statistics = byMethod.get(rpcMethod);
+    if (statistics == null) {
+      statistics = byName.get(rpcMethod.getQualifiedName());
+      if (statistics == null) {
+        // once per method: the listener receives it exactly once
+        synchronized (methodLock) {
+          statistics =
+              byName.computeIfAbsent(
+                  rpcMethod.getQualifiedName(),
+                  name -> {
+                    RpcMethodStatistics created = new RpcMethodStatistics(name);
+                    methodListener.accept(created);
+                    return created;
+                  });
+        }
+      }
+      byMethod.putIfAbsent(rpcMethod, statistics);
+    }
+    return statistics;
+  }
+
+  public Collection<RpcMethodStatistics> getMethods() {
+    return Collections.unmodifiableCollection(byName.values());
+  }
+
+  /**
+   * Sets the listener receiving the statistics of every method once, the ones of the methods
+   * called later on their first call.
+   *
+   * @param methodListener Receives the statistics of a method.
+   */
+  public void setMethodListener(@Nonnull Consumer<RpcMethodStatistics> methodListener) {
+    synchronized (methodLock) {
+      this.methodListener = Preconditions.checkNotNull(methodListener);
+      byName.values().forEach(methodListener);
+    }
+  }
+
+  /** Number of connects served by a cached gateway or a connection in progress. */
+  public long getConnectionHits() {
+    return connectionHits.sum();
+  }
+
+  /** Number of connects resolving the endpoint and going through the handshake. */
+  public long getConnectionMisses() {
+    return connectionMisses.sum();
+  }
+
+  /**
+   * Number of cached gateways dropped after their endpoint terminated, became unreachable or let a
+   * call time out.
+   */
+  public long getConnectionInvalidations() {
+    return connectionInvalidations.sum();
+  }
+
+  /**
+   * Sets the listener receiving the latency of every connect going through the handshake, from
+   * the resolution of the address to the handshake answer.
+   *
+   * @param handshakeLatencyListener Receives the latency in nanoseconds.
+   */
+  public void setHandshakeLatencyListener(@Nonnull LongConsumer handshakeLatencyListener) {
+    this.handshakeLatencyListener = handshakeLatencyListener;
+  }
+
+  public void onConnectionHit() {
+    connectionHits.increment();
+  }
+
+  public void onConnectionMiss() {
+    connectionMisses.increment();
+  }
+
+  public void onConnectionsInvalidated(int invalidated) {
+    connectionInvalidations.add(invalidated);
+  }
+
+  public void onHandshake(long nanos) {
+    handshakeLatencyListener.accept(nanos);
+  }
+}
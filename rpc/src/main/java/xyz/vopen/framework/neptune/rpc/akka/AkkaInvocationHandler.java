@@ -7,8 +7,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import xyz.vopen.framework.neptune.common.NeptuneStartStoppable;
 import xyz.vopen.framework.neptune.common.exceptions.NeptuneRuntimeException;
+import xyz.vopen.framework.neptune.common.serialization.PayloadFormat;
 import xyz.vopen.framework.neptune.common.utils.time.Time;
 import xyz.vopen.framework.neptune.common.utils.ExceptionUtil;
+import xyz.vopen.framework.neptune.common.utils.InstantiationUtil;
 import xyz.vopen.framework.neptune.common.utils.SerializedValue;
 import xyz.vopen.framework.neptune.common.concurrent.FutureUtil;
 import xyz.vopen.framework.neptune.rpc.exceptions.RpcException;
@@ -18,11 +20,9 @@ import xyz.vopen.framework.neptune.rpc.*;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
-import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.util.Arrays;
-import java.util.Objects;
 import java.util.concurrent.*;
 
 /**
@@ -61,6 +61,24 @@ public class AkkaInvocationHandler implements InvocationHandler, AkkaBasedEndpoi
 
   private final boolean captureAskCallStack;
 
+  /** Format of the remote invocations, negotiated in the handshake. */
+  private final PayloadFormat payloadFormat;
+
+  /** Size from which the remote invocations are compressed, 0 if not negotiated. */
+  private final int compressionThreshold;
+
+  /** Streams of the payloads exceeding the maximum frame size, null if local. */
+  private final @Nullable PayloadStreams payloadStreams;
+
+  /** Statistics of the calls of the rpc service the gateway belongs to. */
+  private final RpcStatistics statistics;
+
+  /** Coalesces the calls of the batchable methods, null if they are sent alone. */
+  private final @Nullable RpcInvocationBatcher batcher;
+
+  /** Notified when an ask times out, e.g. to stop handing out a gateway to a dead actor. */
+  private volatile @Nullable Runnable askTimeoutListener;
+
   AkkaInvocationHandler(
       String address,
       String hostname,
@@ -68,7 +86,12 @@ public class AkkaInvocationHandler implements InvocationHandler, AkkaBasedEndpoi
       Time timeout,
       long maximumFrameSize,
       @Nullable CompletableFuture<Void> terminationFuture,
-      boolean captureAskCallStack) {
+      boolean captureAskCallStack,
+      PayloadFormat payloadFormat,
+      int compressionThreshold,
+      @Nullable PayloadStreams payloadStreams,
+      RpcStatistics statistics,
+      @Nullable RpcInvocationBatcher batcher) {
     this.address = address;
     this.hostname = hostname;
     this.rpcEndpoint = rpcEndpoint;
@@ -77,6 +100,11 @@ public class AkkaInvocationHandler implements InvocationHandler, AkkaBasedEndpoi
     this.maximumFrameSize = maximumFrameSize;
     this.terminationFuture = terminationFuture;
     this.captureAskCallStack = captureAskCallStack;
+    this.payloadFormat = Preconditions.checkNotNull(payloadFormat);
+    this.compressionThreshold = compressionThreshold;
+    this.payloadStreams = payloadStreams;
+    this.statistics = Preconditions.checkNotNull(statistics);
+    this.batcher = batcher;
   }
 
   @Override
@@ -98,6 +126,11 @@ public class AkkaInvocationHandler implements InvocationHandler, AkkaBasedEndpoi
     return result;
   }
 
+  /** Sets the listener notified when an ask through this gateway times out. */
+  void setAskTimeoutListener(@Nullable Runnable askTimeoutListener) {
+    this.askTimeoutListener = askTimeoutListener;
+  }
+
   @Override
   public ActorRef getActorRef() {
     return this.rpcEndpoint;
@@ -172,24 +205,31 @@ public class AkkaInvocationHandler implements InvocationHandler, AkkaBasedEndpoi
    * @throws Exception if the RPC invocation fails.
    */
   private Object invokeRpc(Method method, Object[] args) throws Exception {
-    String methodName = method.getName();
-    Class<?>[] parameterTypes = method.getParameterTypes();
-    Annotation[][] parameterAnnotations = method.getParameterAnnotations();
-    Time futureTimeout = extractRpcTimeout(parameterAnnotations, args, timeout);
+    // resolved once per gateway instead of reflecting on every call
+    RpcMethodTable.RpcMethod rpcMethod =
+        RpcMethodTable.forGateway(method.getDeclaringClass()).get(method);
+    Time futureTimeout = rpcMethod.getTimeout(args, timeout);
 
     // Encapsulate the rpc call as RpcInvocation (depending on whether RpcEndpoint is local or
     // remote).
-    final RpcInvocation rpcInvocation =
-        createRpcInvocationMessage(methodName, parameterTypes, args);
-
-    // Decide whether to call tell or ask based on whether the RPC method has a return value.
-    Class<?> returnType = method.getReturnType();
+    final Object rpcInvocation = createRpcInvocationMessage(rpcMethod, args);
+    final RpcMethodStatistics methodStatistics = statistics.forMethod(rpcMethod);
+    final boolean batched =
+        batcher != null
+            && rpcMethod.isBatchable()
+            && rpcInvocation instanceof RemoteRpcInvocation
+            && batcher.accepts((RemoteRpcInvocation) rpcInvocation);
 
     final Object result;
 
-    //
-    if (Objects.equals(returnType, Void.TYPE)) {
-      tell(rpcInvocation);
+    // Decide whether to call tell or ask based on whether the RPC method has a return value.
+    if (rpcMethod.returnsVoid()) {
+      if (batched) {
+        batcher.tell((RemoteRpcInvocation) rpcInvocation);
+      } else {
+        tell(rpcInvocation);
+      }
+      methodStatistics.onTell(serializedSizeOf(rpcInvocation));
       result = null;
     } else {
       // Capture the call stack, It is significantly faster to do that via an exception than via
@@ -199,20 +239,34 @@ public class AkkaInvocationHandler implements InvocationHandler, AkkaBasedEndpoi
       final Throwable callStackCapture = captureAskCallStack ? new Throwable() : null;
 
       // execute an asynchronous call.
-      final CompletableFuture<?> resultFuture = ask(rpcInvocation, futureTimeout);
+      final long startNanos = methodStatistics.onAsk(serializedSizeOf(rpcInvocation));
+      final CompletableFuture<?> resultFuture =
+          batched
+              ? batcher.ask((RemoteRpcInvocation) rpcInvocation, futureTimeout)
+              : ask(rpcInvocation, futureTimeout);
 
       final CompletableFuture<Object> completableFuture = new CompletableFuture<>();
       resultFuture.whenComplete(
           (resultValue, failure) -> {
+            // the size of the result is only known before its deserialization
+            final long resultSize = serializedSizeOf(resultValue);
+            completableFuture.whenComplete(
+                (value, callFailure) ->
+                    methodStatistics.onAskCompleted(startNanos, resultSize, callFailure));
+
             if (failure != null) {
+              notifyIfTimedOut(failure);
               completableFuture.completeExceptionally(
                   resolveTimeoutException(failure, callStackCapture, method));
+            } else if (resultValue instanceof PayloadStreamHandle && payloadStreams != null) {
+              receiveStreamedResult(
+                  (PayloadStreamHandle) resultValue, method, completableFuture);
             } else {
               completableFuture.complete(deserializeValueIfNeeded(resultValue, method));
             }
           });
 
-      if (Objects.equals(returnType, CompletableFuture.class)) {
+      if (rpcMethod.returnsFuture()) {
         result = completableFuture;
       } else {
         try {
@@ -228,27 +282,42 @@ public class AkkaInvocationHandler implements InvocationHandler, AkkaBasedEndpoi
   }
 
   /**
-   * Create the RpcInvocation message for the given RPC.
+   * Create the RpcInvocation message for the given RPC. A remote invocation exceeding the maximum
+   * frame size is streamed, the message is then the handle of its stream.
    *
-   * @param methodName of the RPC.
-   * @param parameterTypes of the RPC.
+   * @param rpcMethod of the RPC.
    * @param args of the RPC.
    * @return RpcInvocation message which encapsulates the RPC details.
    * @throws IOException
    */
-  protected RpcInvocation createRpcInvocationMessage(
-      final String methodName, final Class<?>[] parameterTypes, final Object[] args)
-      throws IOException {
-    final RpcInvocation rpcInvocation;
+  protected Object createRpcInvocationMessage(
+      final RpcMethodTable.RpcMethod rpcMethod, final Object[] args) throws IOException {
+    final Object rpcInvocation;
 
     if (isLocal) {
-      rpcInvocation = new LocalRpcInvocation(methodName, parameterTypes, args);
+      rpcInvocation =
+          new LocalRpcInvocation(
+              rpcMethod.getId(),
+              rpcMethod.getName(),
+              rpcMethod.getParameterTypes(),
+              args,
+              rpcMethod.getLane());
     } else {
       try {
         RemoteRpcInvocation remoteRpcInvocation =
-            new RemoteRpcInvocation(methodName, parameterTypes, args);
-
-        if (remoteRpcInvocation.getSize() > maximumFrameSize) {
+            new RemoteRpcInvocation(
+                rpcMethod.getId(),
+                rpcMethod.getName(),
+                rpcMethod.getParameterTypes(),
+                args,
+                payloadFormat,
+                compressionThreshold,
+                rpcMethod.getLane());
+
+        if (remoteRpcInvocation.getSize() > maximumFrameSize && payloadStreams != null) {
+          rpcInvocation =
+              payloadStreams.open(InstantiationUtil.serializeObject(remoteRpcInvocation));
+        } else if (remoteRpcInvocation.getSize() > maximumFrameSize) {
           throw new IOException(
               String.format(
                   "The rpc invocation size %d exceeds the maximum akka frameSize.",
@@ -265,54 +334,17 @@ public class AkkaInvocationHandler implements InvocationHandler, AkkaBasedEndpoi
     return rpcInvocation;
   }
 
-  /**
-   * Extracts the {@link RpcTimeout} annotated rpc timeout value from the list of given method
-   * arguments. If no {@link RpcTimeout} annotated parameter could be found, then the default
-   * timeout is returned.
-   *
-   * @param parameterAnnotations Parameter annotations.
-   * @param args Array of arguments.
-   * @param defaultTimeout Default timeout to return if no {@link RpcTimeout} annotated parameter
-   *     has been found.
-   * @return Timeout extracted from the array of arguments or the default timeout.
-   */
-  private static Time extractRpcTimeout(
-      Annotation[][] parameterAnnotations, Object[] args, Time defaultTimeout) {
-    if (args != null) {
-      Preconditions.checkArgument(parameterAnnotations.length == args.length);
-
-      for (int i = 0; i < parameterAnnotations.length; i++) {
-        if (isRpcTimeout(parameterAnnotations[i])) {
-          if (args[i] instanceof Time) {
-            return (Time) args[i];
-          } else {
-            throw new NeptuneRuntimeException(
-                "The rpc timeout parameter must be of type "
-                    + Time.class.getName()
-                    + ". The type "
-                    + args[i].getClass().getName()
-                    + " is not supported.");
-          }
-        }
-      }
-    }
-    return defaultTimeout;
-  }
-
-  /**
-   * Checks whether any of the annotations is of type {@link RpcTimeout}.
-   *
-   * @param annotations Array of annotations
-   * @return True if {@link RpcTimeout} was found; otherwise false
-   */
-  private static boolean isRpcTimeout(Annotation[] annotations) {
-    for (Annotation annotation : annotations) {
-      if (annotation.annotationType().equals(RpcTimeout.class)) {
-        return true;
-      }
+  /** Returns the serialized size of an invocation or result message, 0 if it is not serialized. */
+  private static long serializedSizeOf(@Nullable Object message) {
+    if (message instanceof RemoteRpcInvocation) {
+      return ((RemoteRpcInvocation) message).getSize();
+    } else if (message instanceof SerializedValue) {
+      return ((SerializedValue<?>) message).getByteArray().length;
+    } else if (message instanceof PayloadStreamHandle) {
+      return ((PayloadStreamHandle) message).getSize();
+    } else {
+      return 0L;
     }
-
-    return false;
   }
 
   /**
@@ -335,6 +367,32 @@ public class AkkaInvocationHandler implements InvocationHandler, AkkaBasedEndpoi
     return FutureUtil.toJava(Patterns.ask(rpcEndpoint, message, timeout.toMilliseconds()));
   }
 
+  /** Completes the result future with the result streamed by the endpoint. */
+  private void receiveStreamedResult(
+      PayloadStreamHandle handle, Method method, CompletableFuture<Object> resultFuture) {
+    payloadStreams
+        .receive(handle)
+        .whenComplete(
+            (payload, failure) -> {
+              if (failure != null) {
+                resultFuture.completeExceptionally(failure);
+                return;
+              }
+              try {
+                Object serializedResult =
+                    InstantiationUtil.deserializeObject(
+                        payload, AkkaInvocationHandler.class.getClassLoader());
+                resultFuture.complete(deserializeValueIfNeeded(serializedResult, method));
+              } catch (IOException | ClassNotFoundException | CompletionException e) {
+                resultFuture.completeExceptionally(
+                    new RpcException(
+                        "Could not deserialize the streamed result of RPC method : "
+                            + method.getName(),
+                        ExceptionUtil.stripCompletionException(e)));
+              }
+            });
+  }
+
   static Object deserializeValueIfNeeded(Object o, Method method) {
     if (o instanceof SerializedValue) {
       try {
@@ -351,6 +409,16 @@ public class AkkaInvocationHandler implements InvocationHandler, AkkaBasedEndpoi
     }
   }
 
+  private void notifyIfTimedOut(Throwable failure) {
+    final Runnable listener = askTimeoutListener;
+    final Throwable cause = ExceptionUtil.stripCompletionException(failure);
+    if (listener != null
+        && (cause instanceof akka.pattern.AskTimeoutException
+            || cause instanceof TimeoutException)) {
+      listener.run();
+    }
+  }
+
   static Throwable resolveTimeoutException(
       Throwable exception, @Nullable Throwable callStackCapture, Method method) {
     if (!(exception instanceof akka.pattern.AskTimeoutException)) {
@@ -14,20 +14,25 @@ import scala.util.Either;
 import scala.util.Left;
 import scala.util.Right;
 import xyz.vopen.framework.neptune.common.utils.ExceptionUtil;
+import xyz.vopen.framework.neptune.common.utils.InstantiationUtil;
+import xyz.vopen.framework.neptune.common.serialization.PayloadFormat;
 import xyz.vopen.framework.neptune.common.utils.SerializedValue;
 import xyz.vopen.framework.neptune.common.concurrent.FutureUtil;
 import xyz.vopen.framework.neptune.rpc.MainThreadValidatorUtil;
 import xyz.vopen.framework.neptune.rpc.RpcEndpoint;
 import xyz.vopen.framework.neptune.rpc.RpcGateway;
+import xyz.vopen.framework.neptune.rpc.RpcMethodTable;
+import xyz.vopen.framework.neptune.rpc.RpcStatistics;
 import xyz.vopen.framework.neptune.rpc.exceptions.*;
 import xyz.vopen.framework.neptune.rpc.message.*;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -57,12 +62,27 @@ class AkkaRpcActor<T extends RpcEndpoint & RpcGateway> extends AbstractActor {
 
   private final MainThreadValidatorUtil mainThreadValidator;
 
+  /** Rpc methods of the endpoint by method id. */
+  private final RpcMethodTable methodTable;
+
   private final CompletableFuture<Boolean> terminationFuture;
 
   private final int version;
 
   private final long maximumFrameSize;
 
+  /** Payload formats accepted from the callers. */
+  private final List<PayloadFormat> payloadFormats;
+
+  /** Size from which the results are compressed for the callers reading them, 0 if never. */
+  private final int compressionThreshold;
+
+  /** Streams of the invocations and results exceeding the maximum frame size. */
+  private final PayloadStreams payloadStreams;
+
+  /** Statistics of the calls of the rpc service, taking the invocation times. */
+  private final RpcStatistics statistics;
+
   private final AtomicBoolean rpcEndpointStopped;
 
   private volatile RpcEndpointTerminationResult rpcEndpointTerminationResult;
@@ -73,13 +93,22 @@ class AkkaRpcActor<T extends RpcEndpoint & RpcGateway> extends AbstractActor {
       final T rpcEndpoint,
       final CompletableFuture<Boolean> terminationFuture,
       final int version,
-      final long maximumFrameSize) {
+      final long maximumFrameSize,
+      final List<PayloadFormat> payloadFormats,
+      final int compressionThreshold,
+      final PayloadStreams payloadStreams,
+      final RpcStatistics statistics) {
     Preconditions.checkArgument(maximumFrameSize > 0, "Maximum frameSize must be positive.");
     this.rpcEndpoint = Preconditions.checkNotNull(rpcEndpoint, "rpc endpoint");
     this.mainThreadValidator = new MainThreadValidatorUtil(rpcEndpoint);
+    this.methodTable = RpcMethodTable.forEndpoint(rpcEndpoint.getClass());
     this.terminationFuture = Preconditions.checkNotNull(terminationFuture);
     this.version = version;
     this.maximumFrameSize = maximumFrameSize;
+    this.payloadFormats = Preconditions.checkNotNull(payloadFormats);
+    this.compressionThreshold = compressionThreshold;
+    this.payloadStreams = Preconditions.checkNotNull(payloadStreams);
+    this.statistics = Preconditions.checkNotNull(statistics);
     this.rpcEndpointStopped = new AtomicBoolean(false);
     this.rpcEndpointTerminationResult =
         RpcEndpointTerminationResult.failure(
@@ -169,6 +198,10 @@ class AkkaRpcActor<T extends RpcEndpoint & RpcGateway> extends AbstractActor {
       handleCallAsync((CallAsync) message);
     } else if (message instanceof RpcInvocation) {
       handleRpcInvocation((RpcInvocation) message);
+    } else if (message instanceof PayloadStreamHandle) {
+      handleStreamedRpcInvocation((PayloadStreamHandle) message);
+    } else if (message instanceof RpcInvocationBatch) {
+      handleRpcInvocationBatch((RpcInvocationBatch) message);
     } else {
       logger.warn(
           "Received message of unknown type {} with value {}. Dropping this message!",
@@ -199,7 +232,14 @@ class AkkaRpcActor<T extends RpcEndpoint & RpcGateway> extends AbstractActor {
                   "The rpc endpoint does not support the gateway %s.",
                   handshakeMessage.getRpcGateway().getSimpleName())));
     } else {
-      getSender().tell(new Status.Success(HandshakeSuccessMessage.INSTANCE), getSelf());
+      PayloadFormat payloadFormat =
+          PayloadFormat.negotiate(handshakeMessage.getPayloadFormats(), payloadFormats);
+      // compressed both ways once both sides read it, each side with its own threshold
+      boolean compression = handshakeMessage.isCompression() && compressionThreshold > 0;
+      getSender()
+          .tell(
+              new Status.Success(HandshakeSuccessMessage.of(payloadFormat, compression)),
+              getSelf());
     }
   }
 
@@ -223,88 +263,229 @@ class AkkaRpcActor<T extends RpcEndpoint & RpcGateway> extends AbstractActor {
    * @param rpcInvocation Rpc invocation message.
    */
   private void handleRpcInvocation(RpcInvocation rpcInvocation) {
-    Method rpcMethod = null;
+    RpcMethodTable.RpcMethod rpcMethod = null;
+    Object[] args = null;
 
     try {
-      String methodName = rpcInvocation.getMethodName();
-      Class<?>[] parameterTypes = rpcInvocation.getParameterTypes();
-
       // get method that needed to invoke.
-      rpcMethod = lookupRpcMethod(methodName, parameterTypes);
+      rpcMethod = methodTable.get(rpcInvocation.getMethodId());
+      if (rpcMethod == null) {
+        logger.error("Could not find rpc method for rpc invocation {}.", rpcInvocation);
+
+        RpcConnectionException rpcException =
+            new RpcConnectionException("Could not find rpc method for rpc invocation.");
+        getSender().tell(new Status.Failure(rpcException), getSelf());
+        return;
+      }
+      args = rpcInvocation.getArgs();
     } catch (ClassNotFoundException e) {
       logger.error("Could not load method arguments.", e);
       RpcConnectionException rpcException =
           new RpcConnectionException("Could not load method arguments.", e);
       getSender().tell(new Status.Failure(rpcException), getSelf());
+      return;
     } catch (IOException e) {
       logger.error("Could not deserialize rpc invocation message.", e);
 
       RpcConnectionException rpcException =
           new RpcConnectionException("Could not deserialize rpc invocation message.", e);
       getSender().tell(new Status.Failure(rpcException), getSelf());
-    } catch (final NoSuchMethodException e) {
-      logger.error("Could not find rpc method for rpc invocation.", e);
-
-      RpcConnectionException rpcException =
-          new RpcConnectionException("Could not find rpc method for rpc invocation.", e);
-      getSender().tell(new Status.Failure(rpcException), getSelf());
+      return;
     }
 
-    // 通过反射执行
-    if (rpcMethod != null) {
-      try {
-        // this supports declaration of anonymous classes
-        rpcMethod.setAccessible(true);
+    try {
+      if (rpcMethod.returnsVoid()) {
+        // No return value to send back
+        invokeTimed(rpcMethod, args);
+      } else {
+        final Object result;
+        try {
+          result = invokeTimed(rpcMethod, args);
+        } catch (Throwable e) {
+          logger.debug("Reporting back error thrown in remote procedure {}", rpcMethod, e);
+
+          // tell the sender about the failure
+          getSender().tell(new Status.Failure(e), getSelf());
+          return;
+        }
 
-        if (rpcMethod.getReturnType().equals(Void.TYPE)) {
-          // No return value to send back
-          rpcMethod.invoke(rpcEndpoint, rpcInvocation.getArgs());
+        final String methodName = rpcMethod.getName();
+        // answer in the format of the call, which the caller can read
+        final PayloadFormat payloadFormat =
+            rpcInvocation instanceof RemoteRpcInvocation
+                ? ((RemoteRpcInvocation) rpcInvocation).getPayloadFormat()
+                : PayloadFormat.JAVA;
+        final int resultCompressionThreshold =
+            rpcInvocation instanceof RemoteRpcInvocation
+                    && ((RemoteRpcInvocation) rpcInvocation).acceptsCompressedResult()
+                ? compressionThreshold
+                : 0;
+
+        // send result to caller.
+        if (result instanceof CompletableFuture) {
+          final CompletableFuture<?> responseFuture = (CompletableFuture<?>) result;
+          sendAsyncResponse(responseFuture, methodName, payloadFormat, resultCompressionThreshold);
         } else {
-          final Object result;
-          try {
-            result = rpcMethod.invoke(rpcEndpoint, rpcInvocation.getArgs());
-          } catch (InvocationTargetException e) {
-            logger.debug("Reporting back error thrown in remote procedure {}", rpcMethod, e);
+          sendSyncResponse(result, methodName, payloadFormat, resultCompressionThreshold);
+        }
+      }
+    } catch (Throwable e) {
+      logger.error("Error while executing remote procedure call {}.", rpcMethod, e);
+      // tell the sender about the failure
+      getSender().tell(new Status.Failure(e), getSelf());
+    }
+  }
 
-            // tell the sender about the failure
-            getSender().tell(new Status.Failure(e.getTargetException()), getSelf());
-            return;
-          }
+  /** Invokes the rpc method, recording the time it takes in the main thread. */
+  private Object invokeTimed(RpcMethodTable.RpcMethod rpcMethod, Object[] args) throws Throwable {
+    final long startNanos = System.nanoTime();
+    try {
+      return rpcMethod.invoke(rpcEndpoint, args);
+    } finally {
+      statistics.forMethod(rpcMethod).onInvocation(System.nanoTime() - startNanos);
+    }
+  }
+
+  /**
+   * Handle a remote rpc invocation exceeding the maximum frame size: its stream is received outside
+   * of the main thread, then the invocation is sent to this actor again on behalf of the caller.
+   *
+   * @param handle of the stream of the invocation.
+   */
+  private void handleStreamedRpcInvocation(PayloadStreamHandle handle) {
+    final ActorRef sender = getSender();
+    final ActorRef self = getSelf();
+    payloadStreams
+        .receive(handle)
+        .whenComplete(
+            (payload, failure) -> {
+              if (failure != null) {
+                logger.error("Could not receive rpc invocation message {}.", handle, failure);
+                sender.tell(new Status.Failure(failure), self);
+                return;
+              }
+              try {
+                Object rpcInvocation =
+                    InstantiationUtil.deserializeObject(payload, getClass().getClassLoader());
+                self.tell(rpcInvocation, sender);
+              } catch (IOException | ClassNotFoundException e) {
+                logger.error("Could not deserialize rpc invocation message {}.", handle, e);
+                sender.tell(
+                    new Status.Failure(
+                        new RpcConnectionException(
+                            "Could not deserialize rpc invocation message.", e)),
+                    self);
+              }
+            });
+  }
+
+  /**
+   * Handle a batch of remote rpc invocations coalesced by the caller: each invocation is sent to
+   * this actor again, queued in the lane of its method and invoked as if it had been sent alone,
+   * and the results of those expecting one are sent back together once all of them are complete.
+   *
+   * @param batch of rpc invocations.
+   */
+  private void handleRpcInvocationBatch(RpcInvocationBatch batch) {
+    final ActorRef sender = getSender();
+    final ActorRef self = getSelf();
+    final CompletableFuture<?>[] resultFutures = new CompletableFuture<?>[batch.size()];
+    for (int i = 0; i < batch.size(); i++) {
+      if (batch.isReply(i)) {
+        resultFutures[i] =
+            FutureUtil.toJava(Patterns.ask(self, batch.getInvocation(i), batch.getTimeout()));
+      } else {
+        self.tell(batch.getInvocation(i), ActorRef.noSender());
+        resultFutures[i] = CompletableFuture.completedFuture(null);
+      }
+    }
 
-          final String methodName = rpcMethod.getName();
+    if (batch.hasReplies()) {
+      CompletableFuture.allOf(resultFutures)
+          .whenComplete(
+              (ignored, failure) ->
+                  sender.tell(
+                      new Status.Success(serializeBatchResults(batch, resultFutures)), self));
+    }
+  }
 
-          // send result to caller.
-          if (result instanceof CompletableFuture) {
-            final CompletableFuture<?> responseFuture = (CompletableFuture<?>) result;
-            sendAsyncResponse(responseFuture, methodName);
-          } else {
-            sendSyncResponse(result, methodName);
+  /**
+   * Serializes the completed results of a batch like those of single calls. The results share one
+   * frame, those exceeding half of the maximum frame size together are streamed.
+   */
+  private RpcInvocationBatch.Results serializeBatchResults(
+      RpcInvocationBatch batch, CompletableFuture<?>[] resultFutures) {
+    final Object[] values = new Object[batch.size()];
+    final Throwable[] failures = new Throwable[batch.size()];
+    long batchSize = 0L;
+
+    for (int i = 0; i < batch.size(); i++) {
+      if (!batch.isReply(i)) {
+        continue;
+      }
+      final RemoteRpcInvocation rpcInvocation = batch.getInvocation(i);
+      final Object result;
+      try {
+        result = resultFutures[i].join();
+      } catch (CompletionException | CancellationException e) {
+        failures[i] = ExceptionUtil.stripCompletionException(e);
+        continue;
+      }
+
+      final Either<Object, RpcException> serializedResult =
+          serializeRemoteResultAndVerifySize(
+              result,
+              rpcInvocation.toString(),
+              rpcInvocation.getPayloadFormat(),
+              rpcInvocation.acceptsCompressedResult() ? compressionThreshold : 0);
+      if (serializedResult.isRight()) {
+        failures[i] = serializedResult.toOption().get();
+        continue;
+      }
+
+      Object value = serializedResult.left().toOption().get();
+      if (value instanceof SerializedValue) {
+        final long resultSize = ((SerializedValue<?>) value).getByteArray().length;
+        if (batchSize + resultSize > maximumFrameSize / 2) {
+          try {
+            value = payloadStreams.open(InstantiationUtil.serializeObject(value));
+          } catch (IOException e) {
+            failures[i] =
+                new RpcException(
+                    "Failed to serialize the result for RPC call : " + rpcInvocation + ".", e);
+            continue;
           }
+        } else {
+          batchSize += resultSize;
         }
-      } catch (Throwable e) {
-        logger.error("Error while executing remote procedure call {}.", rpcMethod, e);
-        // tell the sender about the failure
-        getSender().tell(new Status.Failure(e), getSelf());
       }
+      values[i] = value;
     }
+    return new RpcInvocationBatch.Results(values, failures);
   }
 
-  private void sendSyncResponse(Object response, String methodName) {
+  private void sendSyncResponse(
+      Object response, String methodName, PayloadFormat payloadFormat, int compressionThreshold) {
     if (isRemoteSender(getSender())) {
-      Either<SerializedValue<?>, RpcException> serializedResult =
-          serializeRemoteResultAndVerifySize(response, methodName);
+      Either<Object, RpcException> serializedResult =
+          serializeRemoteResultAndVerifySize(
+              response, methodName, payloadFormat, compressionThreshold);
 
       if (serializedResult.isLeft()) {
-        getSender().tell(new Status.Success(serializedResult.left()), getSelf());
+        getSender().tell(new Status.Success(serializedResult.left().toOption().get()), getSelf());
       } else {
-        getSender().tell(new Status.Failure(serializedResult.right().get()), getSelf());
+        getSender().tell(new Status.Failure(serializedResult.toOption().get()), getSelf());
       }
     } else {
       getSender().tell(new Status.Success(response), getSelf());
     }
   }
 
-  private void sendAsyncResponse(CompletableFuture<?> asyncResponse, String methodName) {
+  private void sendAsyncResponse(
+      CompletableFuture<?> asyncResponse,
+      String methodName,
+      PayloadFormat payloadFormat,
+      int compressionThreshold) {
     final ActorRef sender = getSender();
     Promise.DefaultPromise<Object> promise = new Promise.DefaultPromise<>();
 
@@ -314,13 +495,14 @@ class AkkaRpcActor<T extends RpcEndpoint & RpcGateway> extends AbstractActor {
             promise.failure(throwable);
           } else {
             if (isRemoteSender(sender)) {
-              Either<SerializedValue<?>, RpcException> serializedResult =
-                  serializeRemoteResultAndVerifySize(value, methodName);
+              Either<Object, RpcException> serializedResult =
+                  serializeRemoteResultAndVerifySize(
+                      value, methodName, payloadFormat, compressionThreshold);
 
               if (serializedResult.isLeft()) {
-                promise.success(serializedResult.left());
+                promise.success(serializedResult.left().toOption().get());
               } else {
-                promise.failure(serializedResult.right().get());
+                promise.failure(serializedResult.toOption().get());
               }
             } else {
               promise.success(value);
@@ -335,22 +517,26 @@ class AkkaRpcActor<T extends RpcEndpoint & RpcGateway> extends AbstractActor {
     return !sender.path().address().hasLocalScope();
   }
 
-  private Either<SerializedValue<?>, RpcException> serializeRemoteResultAndVerifySize(
-      Object result, String methodName) {
+  /**
+   * Serializes the result of a remote call, compressed from the given threshold and streamed if
+   * it still exceeds the maximum frame size.
+   *
+   * @return The serialized result or the handle of its stream, or the failure.
+   */
+  private Either<Object, RpcException> serializeRemoteResultAndVerifySize(
+      Object result, String methodName, PayloadFormat payloadFormat, int compressionThreshold) {
     try {
-      SerializedValue<?> serializedResult = new SerializedValue<>(result);
+      SerializedValue<?> serializedResult =
+          new SerializedValue<>(result, payloadFormat, compressionThreshold);
 
       long resultSize = serializedResult.getByteArray().length;
       if (resultSize > maximumFrameSize) {
-        return new Right(
-            new RpcException(
-                "The method "
-                    + methodName
-                    + "'s result size "
-                    + resultSize
-                    + " exceeds the maximum size "
-                    + maximumFrameSize
-                    + " ."));
+        logger.debug(
+            "Streaming the result of {}, {} bytes exceeding the maximum size {}.",
+            methodName,
+            resultSize,
+            maximumFrameSize);
+        return new Left(payloadStreams.open(InstantiationUtil.serializeObject(serializedResult)));
       } else {
         return new Left(serializedResult);
       }
@@ -414,20 +600,6 @@ class AkkaRpcActor<T extends RpcEndpoint & RpcGateway> extends AbstractActor {
     }
   }
 
-  /**
-   * Look up the rpc method on the given {@link RpcEndpoint} instance.
-   *
-   * @param methodName Name of the method.
-   * @param parameterTypes Parameter types of the method.
-   * @return Method of the rpc endpoint.
-   * @throws NoSuchMethodException Thrown if the method with the given name and parameter types
-   *     cannot be found at the rpc endpoint.
-   */
-  private Method lookupRpcMethod(final String methodName, final Class<?>[] parameterTypes)
-      throws NoSuchMethodException {
-    return this.rpcEndpoint.getClass().getMethod(methodName, parameterTypes);
-  }
-
   /**
    * Send throwable to sender if the sender is specified.
    *
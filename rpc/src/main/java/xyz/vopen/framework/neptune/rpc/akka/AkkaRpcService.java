@@ -18,6 +18,7 @@ import xyz.vopen.framework.neptune.common.utils.TimeUtil;
 import xyz.vopen.framework.neptune.common.concurrent.ActorSystemScheduledExecutorAdapter;
 import xyz.vopen.framework.neptune.common.concurrent.FutureUtil;
 import xyz.vopen.framework.neptune.common.concurrent.ScheduledExecutor;
+import xyz.vopen.framework.neptune.common.serialization.PayloadFormat;
 import xyz.vopen.framework.neptune.rpc.exceptions.RpcConnectionException;
 import xyz.vopen.framework.neptune.rpc.exceptions.RpcRuntimeException;
 import xyz.vopen.framework.neptune.rpc.message.HandshakeSuccessMessage;
@@ -25,13 +26,14 @@ import xyz.vopen.framework.neptune.rpc.message.RemoteHandshakeMessage;
 import xyz.vopen.framework.neptune.rpc.*;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.function.Function;
+import java.util.function.BiFunction;
 
 /**
  * {@link AkkaRpcService} Based {@link RpcService} implementation. The RPC service starts an Akka
@@ -65,14 +67,28 @@ public class AkkaRpcService implements RpcService {
 
   private final Supervisor supervisor;
 
+  private final PayloadStreams payloadStreams;
+
+  private final RpcStatistics statistics = new RpcStatistics();
+
+  /** Mailbox of the rpc actors, the {@link RpcEndpointMailbox} if configured. */
+  private final String mailboxId;
+
+  /** Gateways connected by this service, null if not cached. */
+  private final @Nullable GatewayCache gatewayCache;
+
   private volatile boolean stopped;
 
   @VisibleForTesting
   public AkkaRpcService(
       final ActorSystem actorSystem, final AkkaRpcServiceConfiguration configuration) {
     this.actorSystem = Preconditions.checkNotNull(actorSystem, "actor system");
+    Preconditions.checkNotNull(configuration, "akka rpc service configuration");
+    // the calls and results beyond the frame size of the transport are streamed
     this.configuration =
-        Preconditions.checkNotNull(configuration, "akka rpc service configuration");
+        configuration.withMaximumFrameSize(
+            AkkaRpcServiceUtils.effectiveMaximumFrameSize(
+                actorSystem, configuration.getMaximumFrameSize()));
 
     Address actorSystemAddress = AkkaUtils.getAddress(actorSystem);
 
@@ -97,6 +113,20 @@ public class AkkaRpcService implements RpcService {
     stopped = false;
 
     supervisor = startSupervisorActor();
+
+    payloadStreams =
+        PayloadStreams.start(actorSystem, internalScheduledExecutor, this.configuration);
+
+    // the actor systems not configured by AkkaUtils keep the default mailbox
+    mailboxId =
+        actorSystem.settings().config().hasPath(RpcEndpointMailbox.MAILBOX_ID)
+            ? RpcEndpointMailbox.MAILBOX_ID
+            : "akka.actor.default-mailbox";
+
+    gatewayCache =
+        configuration.getConnectionCacheSize() > 0
+            ? GatewayCache.start(actorSystem, configuration.getConnectionCacheSize(), statistics)
+            : null;
   }
 
   private Supervisor startSupervisorActor() {
@@ -129,10 +159,34 @@ public class AkkaRpcService implements RpcService {
 
   @Override
   public <C extends RpcGateway> CompletableFuture<C> connect(String address, Class<C> clazz) {
+    Preconditions.checkState(!stopped, "RpcService is stopped");
+
+    // an endpoint of this process is called in its main thread directly, without actor messages
+    final C inProcessGateway =
+        configuration.isInProcessCalls()
+            ? InProcessEndpointRegistry.connect(
+                address, clazz, actorSystem, configuration.getTimeout(), statistics)
+            : null;
+    if (inProcessGateway != null) {
+      logger.debug(
+          "Connected to in-process RPC endpoint with address {}. Returning a {} gateway.",
+          address,
+          clazz.getName());
+      return CompletableFuture.completedFuture(inProcessGateway);
+    }
+
+    if (gatewayCache != null) {
+      return gatewayCache.connect(address, clazz, () -> connectRemote(address, clazz));
+    }
+    return connectRemote(address, clazz);
+  }
+
+  private <C extends RpcGateway> CompletableFuture<C> connectRemote(
+      String address, Class<C> clazz) {
     return connectInternal(
         address,
         clazz,
-        (ActorRef actorRef) -> {
+        (ActorRef actorRef, HandshakeSuccessMessage handshakeSuccess) -> {
           Tuple2<String, String> addressHostname = extractAddressHostname(actorRef);
 
           return new AkkaInvocationHandler(
@@ -142,7 +196,19 @@ public class AkkaRpcService implements RpcService {
               configuration.getTimeout(),
               configuration.getMaximumFrameSize(),
               null,
-              captureAskCallstacks);
+              captureAskCallstacks,
+              handshakeSuccess.getPayloadFormat(),
+              handshakeSuccess.isCompression() ? configuration.getCompressionThreshold() : 0,
+              payloadStreams,
+              statistics,
+              configuration.getBatchWindow() > 0L
+                  ? new RpcInvocationBatcher(
+                      actorRef,
+                      configuration.getBatchWindow(),
+                      configuration.getBatchMaxInvocations(),
+                      configuration.getMaximumFrameSize(),
+                      internalScheduledExecutor)
+                  : null);
         });
   }
 
@@ -189,7 +255,12 @@ public class AkkaRpcService implements RpcService {
             configuration.getTimeout(),
             configuration.getMaximumFrameSize(),
             actorTerminationFuture,
-            captureAskCallstacks);
+            captureAskCallstacks,
+            PayloadFormat.JAVA,
+            0,
+            null,
+            statistics,
+            null);
 
     // Rather than using the System ClassLoader directly, we derive the ClassLoader
     // from this class . That works better in cases where Neptune runs embedded and all Neptune
@@ -202,6 +273,17 @@ public class AkkaRpcService implements RpcService {
                 classLoader,
                 implementedRpcGateways.toArray(new Class<?>[implementedRpcGateways.size()]),
                 invocationHandler);
+
+    if (configuration.isInProcessCalls()) {
+      // the address of a local actor system is only unique within it
+      final Object scope = actorRef.path().address().hasGlobalScope() ? null : actorSystem;
+      InProcessEndpointRegistry.register(
+          akkaAddress, rpcEndpoint, server, scope, getExecutor(), statistics);
+      actorTerminationFuture.whenComplete(
+          (Void ignored, Throwable throwable) ->
+              InProcessEndpointRegistry.unregister(akkaAddress, server));
+    }
+
     return server;
   }
 
@@ -221,7 +303,12 @@ public class AkkaRpcService implements RpcService {
                       rpcEndpoint,
                       actorTerminationFuture,
                       getVersion(),
-                      configuration.getMaximumFrameSize()),
+                      configuration.getMaximumFrameSize(),
+                      configuration.getPayloadFormats(),
+                      configuration.getCompressionThreshold(),
+                      payloadStreams,
+                      statistics)
+                      .withMailbox(mailboxId),
               rpcEndpoint.getEndpointId());
 
       final SupervisorActor.ActorRegistration actorRegistration =
@@ -325,6 +412,11 @@ public class AkkaRpcService implements RpcService {
     return this.terminationFuture;
   }
 
+  @Override
+  public RpcStatistics getStatistics() {
+    return statistics;
+  }
+
   @Override
   public Executor getExecutor() {
     return this.actorSystem.dispatcher();
@@ -371,7 +463,7 @@ public class AkkaRpcService implements RpcService {
   private <C extends RpcGateway> CompletableFuture<C> connectInternal(
       final String address,
       final Class<C> clazz,
-      Function<ActorRef, InvocationHandler> invocationHandlerFactory) {
+      BiFunction<ActorRef, HandshakeSuccessMessage, InvocationHandler> invocationHandlerFactory) {
     Preconditions.checkState(!stopped, "RpcService is stopped");
 
     logger.debug(
@@ -379,6 +471,7 @@ public class AkkaRpcService implements RpcService {
         address,
         clazz.getName());
 
+    final long startNanos = System.nanoTime();
     // 获取 actor 的引用 ActorRef
     final CompletableFuture<ActorRef> actorRefFuture = resolveActorAddress(address);
 
@@ -389,17 +482,24 @@ public class AkkaRpcService implements RpcService {
                     FutureUtil.toJava(
                         Patterns.ask(
                                 actorRef,
-                                new RemoteHandshakeMessage(clazz, getVersion()),
+                                new RemoteHandshakeMessage(
+                                    clazz,
+                                    getVersion(),
+                                    configuration.getPayloadFormats(),
+                                    configuration.getCompressionThreshold() > 0),
                                 configuration.getTimeout().toMilliseconds())
                             .<HandshakeSuccessMessage>mapTo(
                                 ClassTag$.MODULE$.<HandshakeSuccessMessage>apply(
                                     HandshakeSuccessMessage.class))));
 
+    handshakeFuture.thenRun(() -> statistics.onHandshake(System.nanoTime() - startNanos));
+
     // create InvocationHandler and generate proxy object through dynamic proxy.
     return actorRefFuture.thenCombineAsync(
         handshakeFuture,
-        (ActorRef actorRef, HandshakeSuccessMessage ignored) -> {
-          InvocationHandler invocationHandler = invocationHandlerFactory.apply(actorRef);
+        (ActorRef actorRef, HandshakeSuccessMessage handshakeSuccess) -> {
+          InvocationHandler invocationHandler =
+              invocationHandlerFactory.apply(actorRef, handshakeSuccess);
 
           // Rather than using the System ClassLoader directly, we derive the ClassLoader
           // from this class . That works better in cases where Flink runs embedded and all Flink
@@ -2,9 +2,13 @@ package xyz.vopen.framework.neptune.rpc.akka;
 
 import xyz.vopen.framework.neptune.common.configuration.AkkaOptions;
 import xyz.vopen.framework.neptune.common.configuration.Configuration;
+import xyz.vopen.framework.neptune.common.configuration.RpcOptions;
+import xyz.vopen.framework.neptune.common.serialization.PayloadFormat;
 import xyz.vopen.framework.neptune.common.utils.time.Time;
 
 import javax.validation.constraints.NotNull;
+import java.util.Collections;
+import java.util.List;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
@@ -22,13 +26,169 @@ public class AkkaRpcServiceConfiguration {
 
   private final boolean captureAskCallStack;
 
+  /** Payload formats of the remote calls, in order of preference. */
+  private final @NotNull List<PayloadFormat> payloadFormats;
+
+  /** Chunk size of the payloads exceeding the maximum frame size. */
+  private final int streamChunkSize;
+
+  /** Chunks of a streamed payload requested ahead by the receiver. */
+  private final int streamWindow;
+
+  /** Gateways kept connected, 0 if not cached. */
+  private final int connectionCacheSize;
+
+  /** Size from which the remote payloads are compressed, 0 if never. */
+  private final int compressionThreshold;
+
+  /** Milliseconds the calls of batchable methods are coalesced in, 0 if never. */
+  private final long batchWindow;
+
+  /** Calls coalesced in one message at most. */
+  private final int batchMaxInvocations;
+
+  /** Whether the endpoints of the same process are called directly. */
+  private final boolean inProcessCalls;
+
   public AkkaRpcServiceConfiguration(
       @NotNull Time timeout, long maximumFrameSize, boolean captureAskCallStack) {
+    this(
+        timeout,
+        maximumFrameSize,
+        captureAskCallStack,
+        Collections.singletonList(PayloadFormat.JAVA));
+  }
+
+  public AkkaRpcServiceConfiguration(
+      @NotNull Time timeout,
+      long maximumFrameSize,
+      boolean captureAskCallStack,
+      @NotNull List<PayloadFormat> payloadFormats) {
+    this(
+        timeout,
+        maximumFrameSize,
+        captureAskCallStack,
+        payloadFormats,
+        AkkaOptions.RPC_STREAM_CHUNK_SIZE.defaultValue(),
+        AkkaOptions.RPC_STREAM_WINDOW.defaultValue());
+  }
+
+  public AkkaRpcServiceConfiguration(
+      @NotNull Time timeout,
+      long maximumFrameSize,
+      boolean captureAskCallStack,
+      @NotNull List<PayloadFormat> payloadFormats,
+      int streamChunkSize,
+      int streamWindow) {
+    this(
+        timeout,
+        maximumFrameSize,
+        captureAskCallStack,
+        payloadFormats,
+        streamChunkSize,
+        streamWindow,
+        AkkaOptions.RPC_CONNECTION_CACHE_SIZE.defaultValue());
+  }
+
+  public AkkaRpcServiceConfiguration(
+      @NotNull Time timeout,
+      long maximumFrameSize,
+      boolean captureAskCallStack,
+      @NotNull List<PayloadFormat> payloadFormats,
+      int streamChunkSize,
+      int streamWindow,
+      int connectionCacheSize) {
+    this(
+        timeout,
+        maximumFrameSize,
+        captureAskCallStack,
+        payloadFormats,
+        streamChunkSize,
+        streamWindow,
+        connectionCacheSize,
+        AkkaOptions.RPC_COMPRESSION_THRESHOLD.defaultValue());
+  }
+
+  public AkkaRpcServiceConfiguration(
+      @NotNull Time timeout,
+      long maximumFrameSize,
+      boolean captureAskCallStack,
+      @NotNull List<PayloadFormat> payloadFormats,
+      int streamChunkSize,
+      int streamWindow,
+      int connectionCacheSize,
+      int compressionThreshold) {
+    this(
+        timeout,
+        maximumFrameSize,
+        captureAskCallStack,
+        payloadFormats,
+        streamChunkSize,
+        streamWindow,
+        connectionCacheSize,
+        compressionThreshold,
+        AkkaOptions.RPC_BATCH_WINDOW.defaultValue(),
+        AkkaOptions.RPC_BATCH_MAX_INVOCATIONS.defaultValue());
+  }
+
+  public AkkaRpcServiceConfiguration(
+      @NotNull Time timeout,
+      long maximumFrameSize,
+      boolean captureAskCallStack,
+      @NotNull List<PayloadFormat> payloadFormats,
+      int streamChunkSize,
+      int streamWindow,
+      int connectionCacheSize,
+      int compressionThreshold,
+      long batchWindow,
+      int batchMaxInvocations) {
+    this(
+        timeout,
+        maximumFrameSize,
+        captureAskCallStack,
+        payloadFormats,
+        streamChunkSize,
+        streamWindow,
+        connectionCacheSize,
+        compressionThreshold,
+        batchWindow,
+        batchMaxInvocations,
+        RpcOptions.IN_PROCESS_CALLS.defaultValue());
+  }
+
+  public AkkaRpcServiceConfiguration(
+      @NotNull Time timeout,
+      long maximumFrameSize,
+      boolean captureAskCallStack,
+      @NotNull List<PayloadFormat> payloadFormats,
+      int streamChunkSize,
+      int streamWindow,
+      int connectionCacheSize,
+      int compressionThreshold,
+      long batchWindow,
+      int batchMaxInvocations,
+      boolean inProcessCalls) {
 
     checkArgument(maximumFrameSize > 0L, "Maximum frameSize must be positive.");
+    checkArgument(!payloadFormats.isEmpty(), "At least one payload format is required.");
+    checkArgument(streamChunkSize > 0, "Stream chunk size must be positive.");
+    checkArgument(streamWindow > 0, "Stream window must be positive.");
+    checkArgument(connectionCacheSize >= 0, "Connection cache size must not be negative.");
+    checkArgument(compressionThreshold >= 0, "Compression threshold must not be negative.");
+    checkArgument(batchWindow >= 0L, "Batch window must not be negative.");
+    checkArgument(batchMaxInvocations > 0, "Batch max invocations must be positive.");
     this.timeout = timeout;
     this.maximumFrameSize = maximumFrameSize;
     this.captureAskCallStack = captureAskCallStack;
+    this.payloadFormats = Collections.unmodifiableList(payloadFormats);
+    // leaves room in the frame for the envelope of a chunk
+    this.streamChunkSize = (int) Math.min(streamChunkSize, maximumFrameSize / 2);
+    this.streamWindow = streamWindow;
+    this.connectionCacheSize = connectionCacheSize;
+    this.compressionThreshold = compressionThreshold;
+    this.batchWindow = batchWindow;
+    this.batchMaxInvocations = batchMaxInvocations;
+    this.inProcessCalls = inProcessCalls;
   }
 
   public @NotNull Time getTimeout() {
@@ -43,6 +203,57 @@ public class AkkaRpcServiceConfiguration {
     return this.captureAskCallStack;
   }
 
+  public @NotNull List<PayloadFormat> getPayloadFormats() {
+    return this.payloadFormats;
+  }
+
+  public int getStreamChunkSize() {
+    return this.streamChunkSize;
+  }
+
+  public int getStreamWindow() {
+    return this.streamWindow;
+  }
+
+  public int getConnectionCacheSize() {
+    return this.connectionCacheSize;
+  }
+
+  public int getCompressionThreshold() {
+    return this.compressionThreshold;
+  }
+
+  public long getBatchWindow() {
+    return this.batchWindow;
+  }
+
+  public int getBatchMaxInvocations() {
+    return this.batchMaxInvocations;
+  }
+
+  public boolean isInProcessCalls() {
+    return this.inProcessCalls;
+  }
+
+  /** Returns a copy with the given maximum frame size, the stream chunks fitting into it. */
+  public AkkaRpcServiceConfiguration withMaximumFrameSize(long maximumFrameSize) {
+    if (maximumFrameSize == this.maximumFrameSize) {
+      return this;
+    }
+    return new AkkaRpcServiceConfiguration(
+        timeout,
+        maximumFrameSize,
+        captureAskCallStack,
+        payloadFormats,
+        streamChunkSize,
+        streamWindow,
+        connectionCacheSize,
+        compressionThreshold,
+        batchWindow,
+        batchMaxInvocations,
+        inProcessCalls);
+  }
+
   public static AkkaRpcServiceConfiguration fromConfiguration(Configuration configuration) {
     final Time timeout = AkkaUtils.getTimeoutAsTime(configuration);
 
@@ -51,7 +262,21 @@ public class AkkaRpcServiceConfiguration {
     final boolean captureAskCallStacks =
         (boolean) configuration.get(AkkaOptions.CAPTURE_ASK_CALLSTACK);
 
-    return new AkkaRpcServiceConfiguration(timeout, maximumFrameSize, captureAskCallStacks);
+    final List<PayloadFormat> payloadFormats =
+        PayloadFormat.parseList(configuration.getString(AkkaOptions.RPC_PAYLOAD_FORMATS));
+
+    return new AkkaRpcServiceConfiguration(
+        timeout,
+        maximumFrameSize,
+        captureAskCallStacks,
+        payloadFormats,
+        configuration.getInteger(AkkaOptions.RPC_STREAM_CHUNK_SIZE),
+        configuration.getInteger(AkkaOptions.RPC_STREAM_WINDOW),
+        configuration.getInteger(AkkaOptions.RPC_CONNECTION_CACHE_SIZE),
+        configuration.getInteger(AkkaOptions.RPC_COMPRESSION_THRESHOLD),
+        configuration.getLong(AkkaOptions.RPC_BATCH_WINDOW),
+        configuration.getInteger(AkkaOptions.RPC_BATCH_MAX_INVOCATIONS),
+        configuration.getBoolean(RpcOptions.IN_PROCESS_CALLS));
   }
 
   public static AkkaRpcServiceConfiguration defaultConfiguration() {
@@ -41,6 +41,14 @@ public class AkkaRpcServiceUtils {
 
   private static final String MAXIMUM_FRAME_SIZE_PATH = "akka.remote.netty.tcp.maximum-frame-size";
 
+  private static final String ARTERY_ENABLED_PATH = "akka.remote.artery.enabled";
+
+  private static final String ARTERY_MAXIMUM_FRAME_SIZE_PATH =
+      "akka.remote.artery.advanced.maximum-frame-size";
+
+  /** Room left in an Artery frame for the envelope and the rpc message around the payload. */
+  private static final long ARTERY_FRAME_HEADROOM = 16 * 1024;
+
   private static final AtomicLong nextNameOffset = new AtomicLong(0L);
 
   /** This class is not meant to be instantiated. */
@@ -237,6 +245,26 @@ public class AkkaRpcServiceUtils {
     return akkaConfig.getBytes(MAXIMUM_FRAME_SIZE_PATH);
   }
 
+  /**
+   * Returns the largest payload a remote call of the actor system can carry in one message. When
+   * the actor system remotes through Artery, which ignores {@link AkkaOptions#FRAMESIZE}, this is
+   * bounded by the frame size of Artery; the larger payloads are streamed.
+   *
+   * @param actorSystem the rpc service runs in.
+   * @param maximumFrameSize configured, see {@link #extractMaximumFrameSize(Configuration)}.
+   */
+  public static long effectiveMaximumFrameSize(ActorSystem actorSystem, long maximumFrameSize) {
+    Config config = actorSystem.settings().config();
+    if (!AkkaUtils.getAddress(actorSystem).hasGlobalScope()
+        || !config.hasPath(ARTERY_ENABLED_PATH)
+        || !config.getBoolean(ARTERY_ENABLED_PATH)) {
+      return maximumFrameSize;
+    }
+    long arteryFrameSize = config.getBytes(ARTERY_MAXIMUM_FRAME_SIZE_PATH);
+    long payloadSize = Math.max(arteryFrameSize / 2, arteryFrameSize - ARTERY_FRAME_HEADROOM);
+    return Math.min(maximumFrameSize, payloadSize);
+  }
+
   // =====================  RPC service builder  =====================
   /** Builder for {@link AkkaRpcService}. */
   public static class AkkaRpcServiceBuilder {
@@ -9,6 +9,7 @@ import xyz.vopen.framework.neptune.common.annoations.VisibleForTesting;
 import xyz.vopen.framework.neptune.common.concurrent.FutureUtil;
 import xyz.vopen.framework.neptune.common.configuration.AkkaOptions;
 import xyz.vopen.framework.neptune.common.configuration.Configuration;
+import xyz.vopen.framework.neptune.common.configuration.RpcOptions;
 import xyz.vopen.framework.neptune.common.exceptions.IllegalConfigurationException;
 import xyz.vopen.framework.neptune.common.utils.time.Time;
 import xyz.vopen.framework.neptune.common.utils.tuple.Tuple2;
@@ -231,6 +232,8 @@ public class AkkaUtils {
         configuration.getBoolean(AkkaOptions.JVM_EXIT_ON_FATAL_ERROR) ? "on" : "off";
     String logLifecycleEvents = lifecycleEvents ? "on" : "off";
     String supervisorStrategy = EscalatingSupervisorStrategy.class.getCanonicalName();
+    String rpcEndpointMailbox = RpcEndpointMailbox.class.getCanonicalName();
+    int mailboxCapacity = configuration.getInteger(RpcOptions.MAILBOX_CAPACITY);
     String logLevel = getLogLevel();
 
     String configString =
@@ -280,6 +283,17 @@ public class AkkaUtils {
             + "       core-pool-size-max = 1\n"
             + "     }\n"
             + "   }\n"
+            + "\n"
+            + "   rpc-endpoint-mailbox {\n"
+            + "     mailbox-type = "
+            + rpcEndpointMailbox
+            + "\n"
+            + "     "
+            + RpcEndpointMailbox.CAPACITY_KEY
+            + " = "
+            + mailboxCapacity
+            + "\n"
+            + "   }\n"
             + " }\n"
             + "}";
     Config config = ConfigFactory.parseString(configString);
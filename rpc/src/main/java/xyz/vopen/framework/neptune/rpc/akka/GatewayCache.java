@@ -0,0 +1,285 @@
+package xyz.vopen.framework.neptune.rpc.akka;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Address;
+import akka.actor.Props;
+import akka.actor.Terminated;
+import akka.remote.artery.GracefulShutdownQuarantinedEvent;
+import akka.remote.artery.QuarantinedEvent;
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import xyz.vopen.framework.neptune.rpc.RpcGateway;
+import xyz.vopen.framework.neptune.rpc.RpcStatistics;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.Proxy;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * {@link GatewayCache} Gateways of an {@link AkkaRpcService} by address and gateway class, so that
+ * connecting again to an endpoint skips the resolution of its address, the handshake and the
+ * creation of the proxy. The concurrent connects to the same gateway share the connection in
+ * progress, a failed connection is not kept.
+ *
+ * <p>The cache keeps the gateways used last up to its capacity. A gateway is dropped once the
+ * Artery association to the actor system of its actor is quarantined, e.g. the actor system died
+ * or shut down, once its actor terminated if the actor is local, or once a call through it timed
+ * out, so that the next connect resolves the endpoint again. The remote actors are not watched,
+ * remote death watch is only supported by Akka Cluster: a remote endpoint stopped or restarted in
+ * a live actor system is only noticed by the timeout of a call to its former actor.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+final class GatewayCache {
+  private static final Logger LOG = LoggerFactory.getLogger(GatewayCache.class);
+
+  /** Prefix of the name of the watcher, unique in case of several services per system. */
+  private static final String WATCHER_ACTOR_NAME = "gateway-cache-";
+
+  private static final AtomicLong WATCHER_ACTOR_IDS = new AtomicLong();
+
+  private final RpcStatistics statistics;
+
+  /** Watches the actors of the cached gateways. */
+  private final ActorRef watcher;
+
+  /** Gateways by key, in access order, guarded by itself. */
+  private final Map<ConnectionKey, Connection> connections;
+
+  private GatewayCache(ActorSystem actorSystem, int capacity, RpcStatistics statistics) {
+    this.statistics = statistics;
+    this.connections =
+        new LinkedHashMap<ConnectionKey, Connection>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<ConnectionKey, Connection> eldest) {
+            if (size() <= capacity) {
+              return false;
+            }
+            remove(eldest.getKey());
+            unwatchIfUnused(eldest.getValue().actorRef);
+            return false;
+          }
+        };
+    this.watcher =
+        actorSystem.actorOf(
+            Props.create(WatcherActor.class, this),
+            WATCHER_ACTOR_NAME + WATCHER_ACTOR_IDS.incrementAndGet());
+    // subscribed before the first gateway is cached, preStart would run later
+    actorSystem.getEventStream().subscribe(watcher, QuarantinedEvent.class);
+    actorSystem.getEventStream().subscribe(watcher, GracefulShutdownQuarantinedEvent.class);
+  }
+
+  static GatewayCache start(ActorSystem actorSystem, int capacity, RpcStatistics statistics) {
+    Preconditions.checkArgument(capacity > 0, "The capacity must be positive.");
+    return new GatewayCache(
+        Preconditions.checkNotNull(actorSystem), capacity, Preconditions.checkNotNull(statistics));
+  }
+
+  /**
+   * Returns the cached gateway or the connection in progress, otherwise connects through the
+   * connector and caches the gateway.
+   *
+   * @param connector connecting to the gateway, whose invocation handler is an {@link
+   *     AkkaBasedEndpoint}.
+   */
+  @SuppressWarnings("unchecked")
+  <C extends RpcGateway> CompletableFuture<C> connect(
+      String address, Class<C> clazz, Supplier<CompletableFuture<C>> connector) {
+    final ConnectionKey key = new ConnectionKey(address, clazz);
+    final Connection connection;
+    synchronized (connections) {
+      Connection cached = connections.get(key);
+      if (cached != null) {
+        statistics.onConnectionHit();
+        // a copy, so that a caller completing its future does not complete the other ones
+        return cached.gatewayFuture.thenApply(gateway -> (C) gateway);
+      }
+      statistics.onConnectionMiss();
+      connection = new Connection();
+      connections.put(key, connection);
+    }
+
+    final CompletableFuture<C> gatewayFuture;
+    try {
+      gatewayFuture = connector.get();
+    } catch (RuntimeException e) {
+      synchronized (connections) {
+        connections.remove(key, connection);
+      }
+      connection.gatewayFuture.completeExceptionally(e);
+      throw e;
+    }
+    gatewayFuture.whenComplete(
+        (gateway, failure) -> {
+          if (failure != null) {
+            synchronized (connections) {
+              connections.remove(key, connection);
+            }
+            connection.gatewayFuture.completeExceptionally(failure);
+          } else {
+            onConnected(key, connection, gateway);
+          }
+        });
+    return connection.gatewayFuture.thenApply(gateway -> (C) gateway);
+  }
+
+  // =====================  Internal  =====================
+
+  private void onConnected(ConnectionKey key, Connection connection, RpcGateway gateway) {
+    final AkkaBasedEndpoint endpoint = (AkkaBasedEndpoint) Proxy.getInvocationHandler(gateway);
+    final ActorRef actorRef = endpoint.getActorRef();
+    if (endpoint instanceof AkkaInvocationHandler) {
+      ((AkkaInvocationHandler) endpoint)
+          .setAskTimeoutListener(() -> invalidate(key, connection, "a call timing out"));
+    }
+    synchronized (connections) {
+      connection.actorRef = actorRef;
+      if (connections.get(key) == connection && actorRef.path().address().hasLocalScope()) {
+        // watched before the gateway is handed out, a termination in between is still seen
+        watcher.tell(new Watch(actorRef), ActorRef.noSender());
+      }
+    }
+    connection.gatewayFuture.complete(gateway);
+  }
+
+  /** Drops the gateway of the connection, unless it was dropped or replaced already. */
+  private void invalidate(ConnectionKey key, Connection connection, Object cause) {
+    synchronized (connections) {
+      if (!connections.remove(key, connection)) {
+        return;
+      }
+      unwatchIfUnused(connection.actorRef);
+    }
+    statistics.onConnectionsInvalidated(1);
+    LOG.debug("[GatewayCache] Dropped the gateway of {} after {}.", key.address, cause);
+  }
+
+  /** Drops the gateways of the terminated actor. */
+  private void invalidate(ActorRef actorRef) {
+    invalidateIf(connection -> actorRef.equals(connection.actorRef), actorRef);
+  }
+
+  /** Drops the gateways of the actors of the unreachable actor system. */
+  private void invalidate(Address address) {
+    invalidateIf(
+        connection ->
+            connection.actorRef != null && address.equals(connection.actorRef.path().address()),
+        address);
+  }
+
+  private void invalidateIf(Predicate<Connection> predicate, Object cause) {
+    int invalidated = 0;
+    synchronized (connections) {
+      Iterator<Connection> iterator = connections.values().iterator();
+      while (iterator.hasNext()) {
+        Connection connection = iterator.next();
+        if (predicate.test(connection)) {
+          iterator.remove();
+          unwatchIfUnused(connection.actorRef);
+          invalidated++;
+        }
+      }
+    }
+    if (invalidated > 0) {
+      statistics.onConnectionsInvalidated(invalidated);
+      LOG.debug("[GatewayCache] Dropped {} gateways of {}.", invalidated, cause);
+    }
+  }
+
+  /** Stops watching the actor once no cached gateway refers to it, guarded by the connections. */
+  private void unwatchIfUnused(@Nullable ActorRef actorRef) {
+    if (actorRef == null || !actorRef.path().address().hasLocalScope()) {
+      return;
+    }
+    for (Connection connection : connections.values()) {
+      if (actorRef.equals(connection.actorRef)) {
+        return;
+      }
+    }
+    watcher.tell(new Unwatch(actorRef), ActorRef.noSender());
+  }
+
+  private static final class ConnectionKey {
+    private final String address;
+    private final Class<?> clazz;
+
+    private ConnectionKey(String address, Class<?> clazz) {
+      this.address = address;
+      this.clazz = clazz;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      ConnectionKey that = (ConnectionKey) o;
+      return address.equals(that.address) && clazz.equals(that.clazz);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(address, clazz);
+    }
+  }
+
+  private static final class Connection {
+    private final CompletableFuture<RpcGateway> gatewayFuture = new CompletableFuture<>();
+
+    /** Actor of the gateway once connected, guarded by the connections. */
+    private @Nullable ActorRef actorRef;
+  }
+
+  private static final class Watch {
+    private final ActorRef actorRef;
+
+    private Watch(ActorRef actorRef) {
+      this.actorRef = actorRef;
+    }
+  }
+
+  private static final class Unwatch {
+    private final ActorRef actorRef;
+
+    private Unwatch(ActorRef actorRef) {
+      this.actorRef = actorRef;
+    }
+  }
+
+  /** Actor watching the local actors of the cached gateways and the remote actor systems. */
+  static final class WatcherActor extends AbstractActor {
+    private final GatewayCache cache;
+
+    WatcherActor(GatewayCache cache) {
+      this.cache = cache;
+    }
+
+    @Override
+    public Receive createReceive() {
+      return receiveBuilder()
+          .match(Watch.class, watch -> getContext().watch(watch.actorRef))
+          .match(Unwatch.class, unwatch -> getContext().unwatch(unwatch.actorRef))
+          .match(Terminated.class, terminated -> cache.invalidate(terminated.getActor()))
+          .match(
+              QuarantinedEvent.class, event -> cache.invalidate(event.uniqueAddress().address()))
+          .match(
+              GracefulShutdownQuarantinedEvent.class,
+              event -> cache.invalidate(event.uniqueAddress().address()))
+          .build();
+    }
+  }
+}
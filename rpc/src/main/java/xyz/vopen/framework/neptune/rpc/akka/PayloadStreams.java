@@ -0,0 +1,257 @@
+package xyz.vopen.framework.neptune.rpc.akka;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSelection;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.Status;
+import akka.pattern.Patterns;
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import xyz.vopen.framework.neptune.common.concurrent.FutureUtil;
+import xyz.vopen.framework.neptune.common.concurrent.ScheduledExecutor;
+import xyz.vopen.framework.neptune.common.utils.time.Time;
+import xyz.vopen.framework.neptune.rpc.exceptions.RpcException;
+import xyz.vopen.framework.neptune.rpc.message.PayloadChunkRequest;
+import xyz.vopen.framework.neptune.rpc.message.PayloadStreamHandle;
+import xyz.vopen.framework.neptune.rpc.message.PayloadStreamRelease;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link PayloadStreams} Side channel of an {@link AkkaRpcService} for the rpc payloads exceeding
+ * the maximum frame size. The sender keeps the payload and sends a {@link PayloadStreamHandle}
+ * instead, the receiver pulls the chunks of the payload from the source actor of the sender.
+ *
+ * <p>The receiver requests the chunks one by one with at most the window of requests in flight, so
+ * a stream takes at most the window of chunks on the way whatever the size of the payload, and
+ * copies every chunk at its offset into a buffer of the size of the payload, allocated once.
+ *
+ * <p>A payload is dropped once released by the receiver, or after it has not been read for the ask
+ * timeout, e.g. the receiver died.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+final class PayloadStreams {
+  private static final Logger LOG = LoggerFactory.getLogger(PayloadStreams.class);
+
+  /** Prefix of the name of the source actor, unique in case of several services per system. */
+  private static final String SOURCE_ACTOR_NAME = "payload-streams-";
+
+  private static final AtomicLong SOURCE_ACTOR_IDS = new AtomicLong();
+
+  private final ActorSystem actorSystem;
+
+  private final String sourceAddress;
+
+  private final ScheduledExecutor scheduledExecutor;
+
+  private final Time timeout;
+
+  private final int chunkSize;
+
+  private final int window;
+
+  /** Payloads of the open streams by stream id. */
+  private final ConcurrentMap<Long, OutgoingStream> outgoingStreams = new ConcurrentHashMap<>();
+
+  private final AtomicLong nextStreamId = new AtomicLong();
+
+  private PayloadStreams(
+      ActorSystem actorSystem,
+      ScheduledExecutor scheduledExecutor,
+      AkkaRpcServiceConfiguration configuration) {
+    this.actorSystem = actorSystem;
+    this.scheduledExecutor = scheduledExecutor;
+    this.timeout = configuration.getTimeout();
+    this.chunkSize = configuration.getStreamChunkSize();
+    this.window = configuration.getStreamWindow();
+    ActorRef sourceActor =
+        actorSystem.actorOf(
+            Props.create(SourceActor.class, this),
+            SOURCE_ACTOR_NAME + SOURCE_ACTOR_IDS.incrementAndGet());
+    this.sourceAddress = AkkaUtils.getAkkaURL(actorSystem, sourceActor);
+  }
+
+  static PayloadStreams start(
+      ActorSystem actorSystem,
+      ScheduledExecutor scheduledExecutor,
+      AkkaRpcServiceConfiguration configuration) {
+    return new PayloadStreams(
+        Preconditions.checkNotNull(actorSystem),
+        Preconditions.checkNotNull(scheduledExecutor),
+        Preconditions.checkNotNull(configuration));
+  }
+
+  /** Keeps the payload for the receiver to pull and returns the handle to send instead. */
+  PayloadStreamHandle open(byte[] payload) {
+    long streamId = nextStreamId.incrementAndGet();
+    OutgoingStream stream = new OutgoingStream(payload);
+    outgoingStreams.put(streamId, stream);
+    scheduleExpiry(streamId, stream, timeout.toMilliseconds());
+    return new PayloadStreamHandle(sourceAddress, streamId, payload.length, chunkSize);
+  }
+
+  /** Pulls the payload of the stream, completed with the payload or an {@link RpcException}. */
+  CompletableFuture<byte[]> receive(PayloadStreamHandle handle) {
+    return new IncomingStream(handle).start();
+  }
+
+  // =====================  Internal  =====================
+
+  private void scheduleExpiry(long streamId, OutgoingStream stream, long delayMillis) {
+    scheduledExecutor.schedule(
+        () -> {
+          long idleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stream.lastReadNanos);
+          if (idleMillis < timeout.toMilliseconds()) {
+            scheduleExpiry(streamId, stream, timeout.toMilliseconds() - idleMillis);
+          } else if (outgoingStreams.remove(streamId, stream)) {
+            LOG.warn(
+                "[PayloadStreams] Dropped the payload stream {}, not read for {} ms.",
+                streamId,
+                idleMillis);
+          }
+        },
+        delayMillis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /** Payload of an open stream. */
+  private static final class OutgoingStream {
+    private final byte[] payload;
+    private volatile long lastReadNanos = System.nanoTime();
+
+    private OutgoingStream(byte[] payload) {
+      this.payload = payload;
+    }
+  }
+
+  /** Actor serving the chunks of the outgoing streams. */
+  static final class SourceActor extends AbstractActor {
+    private final PayloadStreams streams;
+
+    SourceActor(PayloadStreams streams) {
+      this.streams = streams;
+    }
+
+    @Override
+    public Receive createReceive() {
+      return receiveBuilder()
+          .match(PayloadChunkRequest.class, this::handleChunkRequest)
+          .match(
+              PayloadStreamRelease.class,
+              release -> streams.outgoingStreams.remove(release.getStreamId()))
+          .build();
+    }
+
+    private void handleChunkRequest(PayloadChunkRequest request) {
+      OutgoingStream stream = streams.outgoingStreams.get(request.getStreamId());
+      if (stream == null) {
+        getSender()
+            .tell(
+                new Status.Failure(
+                    new RpcException(
+                        "Unknown payload stream " + request.getStreamId() + ", dropped.")),
+                getSelf());
+        return;
+      }
+      stream.lastReadNanos = System.nanoTime();
+      int from = request.getIndex() * streams.chunkSize;
+      int to = Math.min(from + streams.chunkSize, stream.payload.length);
+      getSender().tell(Arrays.copyOfRange(stream.payload, from, to), getSelf());
+    }
+  }
+
+  /** Pull of one incoming stream. */
+  private final class IncomingStream {
+    private final PayloadStreamHandle handle;
+    private final ActorSelection source;
+    private final byte[] buffer;
+    private final int chunkCount;
+    private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+
+    /** Index of the next chunk to request, guarded by this. */
+    private int nextIndex;
+
+    /** Number of chunks received, guarded by this. */
+    private int receivedCount;
+
+    private IncomingStream(PayloadStreamHandle handle) {
+      this.handle = handle;
+      this.source = actorSystem.actorSelection(handle.getSourceAddress());
+      this.buffer = new byte[handle.getSize()];
+      this.chunkCount = handle.getChunkCount();
+    }
+
+    private CompletableFuture<byte[]> start() {
+      if (chunkCount == 0) {
+        release();
+        result.complete(buffer);
+      }
+      for (int i = 0; i < Math.min(window, chunkCount); i++) {
+        requestNextChunk();
+      }
+      return result;
+    }
+
+    private void requestNextChunk() {
+      final int index;
+      synchronized (this) {
+        if (nextIndex == chunkCount || result.isDone()) {
+          return;
+        }
+        index = nextIndex++;
+      }
+      FutureUtil.toJava(
+              Patterns.ask(
+                  source,
+                  new PayloadChunkRequest(handle.getStreamId(), index),
+                  timeout.toMilliseconds()))
+          .whenComplete((chunk, failure) -> onChunk(index, chunk, failure));
+    }
+
+    private void onChunk(int index, Object chunk, Throwable failure) {
+      if (failure != null) {
+        fail(failure);
+        return;
+      }
+      int offset = index * handle.getChunkSize();
+      int expectedLength = Math.min(handle.getChunkSize(), handle.getSize() - offset);
+      if (!(chunk instanceof byte[]) || ((byte[]) chunk).length != expectedLength) {
+        fail(new IllegalStateException("Unexpected chunk " + index + ": " + chunk));
+        return;
+      }
+      System.arraycopy(chunk, 0, buffer, offset, expectedLength);
+
+      final boolean complete;
+      synchronized (this) {
+        complete = ++receivedCount == chunkCount;
+      }
+      if (complete) {
+        release();
+        result.complete(buffer);
+      } else {
+        requestNextChunk();
+      }
+    }
+
+    private void fail(Throwable failure) {
+      if (result.completeExceptionally(
+          new RpcException("Could not receive the payload of " + handle + '.', failure))) {
+        release();
+      }
+    }
+
+    private void release() {
+      source.tell(new PayloadStreamRelease(handle.getStreamId()), ActorRef.noSender());
+    }
+  }
+}
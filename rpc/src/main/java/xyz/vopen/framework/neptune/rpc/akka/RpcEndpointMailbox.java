@@ -0,0 +1,159 @@
+package xyz.vopen.framework.neptune.rpc.akka;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.DeadLetter;
+import akka.actor.Status;
+import akka.dispatch.Envelope;
+import akka.dispatch.MailboxType;
+import akka.dispatch.MessageQueue;
+import akka.dispatch.ProducesMessageQueue;
+import com.typesafe.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import scala.Option;
+import xyz.vopen.framework.neptune.rpc.RpcMailbox;
+import xyz.vopen.framework.neptune.rpc.RpcPriority;
+import xyz.vopen.framework.neptune.rpc.exceptions.RpcRejectedException;
+import xyz.vopen.framework.neptune.rpc.message.PayloadStreamHandle;
+import xyz.vopen.framework.neptune.rpc.message.RemoteHandshakeMessage;
+import xyz.vopen.framework.neptune.rpc.message.RpcInvocation;
+import xyz.vopen.framework.neptune.rpc.message.RpcInvocationBatch;
+
+import javax.annotation.Nullable;
+
+/**
+ * {@link RpcEndpointMailbox} Mailbox of the {@link AkkaRpcActor}s, queueing the messages in the
+ * lanes of a {@link RpcMailbox}: the {@link ControlMessages} and the handshakes in the control
+ * lane, the rpc invocations in the lane of their {@link RpcPriority} and their batches in the first
+ * lane of their invocations, all the other messages in the normal lane.
+ *
+ * <p>A rpc invocation exceeding the capacity of its lane is not queued: an ask is answered with a
+ * {@link RpcRejectedException} right away, failing the call, and a tell is published as a dead
+ * letter.
+ *
+ * <p>It is configured at {@link #MAILBOX_ID} by {@link AkkaUtils}, with the capacity of {@link
+ * xyz.vopen.framework.neptune.common.configuration.RpcOptions#MAILBOX_CAPACITY}.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class RpcEndpointMailbox
+    implements MailboxType, ProducesMessageQueue<RpcEndpointMailbox.RpcEndpointMessageQueue> {
+  private static final Logger LOG = LoggerFactory.getLogger(RpcEndpointMailbox.class);
+
+  /** Path of the configuration of the mailbox in the configuration of the actor system. */
+  public static final String MAILBOX_ID = "akka.actor.rpc-endpoint-mailbox";
+
+  /** Key of the capacity of a lane in the configuration of the mailbox. */
+  public static final String CAPACITY_KEY = "mailbox-capacity";
+
+  private final int capacity;
+
+  /** Instantiated by Akka from the configuration of the mailbox. */
+  public RpcEndpointMailbox(ActorSystem.Settings settings, Config config) {
+    this.capacity = config.hasPath(CAPACITY_KEY) ? config.getInt(CAPACITY_KEY) : 0;
+  }
+
+  @Override
+  public MessageQueue create(Option<ActorRef> owner, Option<ActorSystem> system) {
+    return new RpcEndpointMessageQueue(capacity, system.isDefined() ? system.get() : null);
+  }
+
+  /** Returns the lane of the message. */
+  static RpcPriority.Lane laneOf(Object message) {
+    if (message instanceof ControlMessages || message instanceof RemoteHandshakeMessage) {
+      return RpcPriority.Lane.CONTROL;
+    } else if (message instanceof RpcInvocation) {
+      return ((RpcInvocation) message).getLane();
+    } else if (message instanceof RpcInvocationBatch) {
+      return ((RpcInvocationBatch) message).getLane();
+    } else {
+      return RpcPriority.Lane.NORMAL;
+    }
+  }
+
+  /** Whether the message is a rpc invocation, which is rejected if its lane is full. */
+  static boolean isRejectable(Object message) {
+    return message instanceof RpcInvocation
+        || message instanceof RpcInvocationBatch
+        || message instanceof PayloadStreamHandle;
+  }
+
+  /** Queue of the messages of one actor. */
+  static final class RpcEndpointMessageQueue implements MessageQueue {
+    private final RpcMailbox<Envelope> mailbox;
+
+    private final @Nullable ActorSystem system;
+
+    RpcEndpointMessageQueue(int capacity, @Nullable ActorSystem system) {
+      this.mailbox = new RpcMailbox<>(capacity);
+      this.system = system;
+    }
+
+    @Override
+    public void enqueue(ActorRef receiver, Envelope handle) {
+      final Object message = handle.message();
+      final RpcPriority.Lane lane = laneOf(message);
+      if (!isRejectable(message)) {
+        mailbox.add(lane, handle);
+      } else if (!mailbox.offer(lane, handle)) {
+        reject(receiver, handle, lane);
+      }
+    }
+
+    @Override
+    public Envelope dequeue() {
+      return mailbox.poll();
+    }
+
+    @Override
+    public int numberOfMessages() {
+      return mailbox.size();
+    }
+
+    @Override
+    public boolean hasMessages() {
+      return !mailbox.isEmpty();
+    }
+
+    @Override
+    public void cleanUp(ActorRef owner, MessageQueue deadLetters) {
+      Envelope handle;
+      while ((handle = mailbox.poll()) != null) {
+        deadLetters.enqueue(owner, handle);
+      }
+    }
+
+    // =====================  Internal  =====================
+
+    private void reject(ActorRef receiver, Envelope handle, RpcPriority.Lane lane) {
+      final ActorRef sender = handle.sender();
+      final boolean isAsk =
+          sender != null && (system == null || !sender.equals(system.deadLetters()));
+      LOG.debug(
+          "[RpcEndpointMailbox] The {} lane of the mailbox of {} is full, rejecting {}.",
+          lane,
+          receiver.path().name(),
+          handle.message());
+
+      if (isAsk) {
+        sender.tell(
+            new Status.Failure(
+                new RpcRejectedException(
+                    String.format(
+                        "The %s lane of the mailbox of the rpc endpoint %s is full with %d "
+                            + "messages, try again later.",
+                        lane, receiver.path().name(), mailbox.getCapacity()))),
+            receiver);
+      } else if (system != null) {
+        // a tell without sender has none, which a dead letter does not accept
+        system
+            .eventStream()
+            .publish(
+                new DeadLetter(
+                    handle.message(), sender == null ? system.deadLetters() : sender, receiver));
+      }
+    }
+  }
+}
@@ -0,0 +1,220 @@
+package xyz.vopen.framework.neptune.rpc.akka;
+
+import akka.actor.ActorRef;
+import akka.pattern.Patterns;
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import xyz.vopen.framework.neptune.common.concurrent.FutureUtil;
+import xyz.vopen.framework.neptune.common.concurrent.ScheduledExecutor;
+import xyz.vopen.framework.neptune.common.utils.time.Time;
+import xyz.vopen.framework.neptune.rpc.RpcBatchable;
+import xyz.vopen.framework.neptune.rpc.message.RemoteRpcInvocation;
+import xyz.vopen.framework.neptune.rpc.message.RpcInvocationBatch;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RpcInvocationBatcher} Coalesces the remote invocations of the {@link RpcBatchable} methods
+ * of a gateway in {@link RpcInvocationBatch}es: the first invocation of a batch waits for the batch
+ * window, the batch is sent earlier once it holds the maximum number of invocations or half of the
+ * maximum frame size, leaving room for the envelope.
+ *
+ * <p>The invocations of a batch are answered by one message, completing their result futures with
+ * what the endpoint would have answered each of them alone.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+final class RpcInvocationBatcher {
+  private static final Logger LOG = LoggerFactory.getLogger(RpcInvocationBatcher.class);
+
+  private final ActorRef rpcEndpoint;
+
+  private final long batchWindow;
+
+  private final int maxInvocations;
+
+  /** Serialized bytes of the invocations of a batch at most. */
+  private final long maxBatchSize;
+
+  private final ScheduledExecutor scheduledExecutor;
+
+  private final Object lock = new Object();
+
+  @GuardedBy("lock")
+  private List<Entry> pending = new ArrayList<>();
+
+  @GuardedBy("lock")
+  private long pendingSize;
+
+  /** Whether a flush of the pending invocations is scheduled. */
+  @GuardedBy("lock")
+  private boolean flushScheduled;
+
+  RpcInvocationBatcher(
+      ActorRef rpcEndpoint,
+      long batchWindow,
+      int maxInvocations,
+      long maximumFrameSize,
+      ScheduledExecutor scheduledExecutor) {
+    Preconditions.checkArgument(batchWindow > 0L, "The batch window must be positive.");
+    Preconditions.checkArgument(maxInvocations > 0, "The max invocations must be positive.");
+    this.rpcEndpoint = Preconditions.checkNotNull(rpcEndpoint);
+    this.batchWindow = batchWindow;
+    this.maxInvocations = maxInvocations;
+    this.maxBatchSize = maximumFrameSize / 2;
+    this.scheduledExecutor = Preconditions.checkNotNull(scheduledExecutor);
+  }
+
+  /** Whether the invocation is small enough to be coalesced with others. */
+  boolean accepts(RemoteRpcInvocation invocation) {
+    return invocation.getSize() <= maxBatchSize;
+  }
+
+  /**
+   * Adds an invocation expecting a result to the batch.
+   *
+   * @return Future of what the endpoint answered, failed with a {@link
+   *     java.util.concurrent.TimeoutException} after the timeout.
+   */
+  CompletableFuture<Object> ask(RemoteRpcInvocation invocation, Time timeout) {
+    final CompletableFuture<Object> resultFuture = new CompletableFuture<>();
+    add(new Entry(invocation, resultFuture, timeout.toMilliseconds()));
+    return FutureUtil.orTimeout(resultFuture, timeout.getSize(), timeout.getUnit());
+  }
+
+  /** Adds an invocation expecting no result to the batch. */
+  void tell(RemoteRpcInvocation invocation) {
+    add(new Entry(invocation, null, 0L));
+  }
+
+  // =====================  Internal  =====================
+
+  private void add(Entry entry) {
+    List<Entry> overflow = null;
+    List<Entry> full = null;
+    boolean scheduleFlush = false;
+
+    synchronized (lock) {
+      if (!pending.isEmpty() && pendingSize + entry.invocation.getSize() > maxBatchSize) {
+        overflow = takePending();
+      }
+      pending.add(entry);
+      pendingSize += entry.invocation.getSize();
+
+      if (pending.size() >= maxInvocations) {
+        full = takePending();
+      } else if (!flushScheduled) {
+        flushScheduled = true;
+        scheduleFlush = true;
+      }
+    }
+
+    if (overflow != null) {
+      send(overflow);
+    }
+    if (full != null) {
+      send(full);
+    }
+    if (scheduleFlush) {
+      try {
+        scheduledExecutor.schedule(this::flush, batchWindow, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        // the rpc service is shutting down
+        flush();
+      }
+    }
+  }
+
+  private void flush() {
+    final List<Entry> batch;
+    synchronized (lock) {
+      flushScheduled = false;
+      batch = pending.isEmpty() ? null : takePending();
+    }
+    if (batch != null) {
+      send(batch);
+    }
+  }
+
+  @GuardedBy("lock")
+  private List<Entry> takePending() {
+    List<Entry> batch = pending;
+    pending = new ArrayList<>();
+    pendingSize = 0L;
+    return batch;
+  }
+
+  private void send(List<Entry> batch) {
+    final RemoteRpcInvocation[] invocations = new RemoteRpcInvocation[batch.size()];
+    final boolean[] replies = new boolean[batch.size()];
+    long timeout = 0L;
+    for (int i = 0; i < batch.size(); i++) {
+      Entry entry = batch.get(i);
+      invocations[i] = entry.invocation;
+      replies[i] = entry.resultFuture != null;
+      timeout = Math.max(timeout, entry.timeout);
+    }
+    final RpcInvocationBatch message = new RpcInvocationBatch(invocations, replies, timeout);
+
+    if (!message.hasReplies()) {
+      rpcEndpoint.tell(message, ActorRef.noSender());
+      return;
+    }
+    FutureUtil.toJava(Patterns.ask(rpcEndpoint, message, timeout))
+        .whenComplete(
+            (reply, failure) -> {
+              if (failure == null && !(reply instanceof RpcInvocationBatch.Results)) {
+                failure =
+                    new IllegalStateException(
+                        "Unexpected answer " + reply + " to a batch of rpc invocations.");
+              }
+              if (failure != null) {
+                LOG.debug(
+                    "[RpcInvocationBatcher] Batch of {} invocations to {} failed.",
+                    batch.size(),
+                    rpcEndpoint.path(),
+                    failure);
+              }
+              for (int i = 0; i < batch.size(); i++) {
+                CompletableFuture<Object> resultFuture = batch.get(i).resultFuture;
+                if (resultFuture == null) {
+                  continue;
+                }
+                if (failure != null) {
+                  resultFuture.completeExceptionally(failure);
+                } else {
+                  RpcInvocationBatch.Results results = (RpcInvocationBatch.Results) reply;
+                  if (results.getFailure(i) != null) {
+                    resultFuture.completeExceptionally(results.getFailure(i));
+                  } else {
+                    resultFuture.complete(results.getValue(i));
+                  }
+                }
+              }
+            });
+  }
+
+  /** Invocation of a batch, with the future of its result if it expects one. */
+  private static final class Entry {
+    private final RemoteRpcInvocation invocation;
+    private final @Nullable CompletableFuture<Object> resultFuture;
+    private final long timeout;
+
+    private Entry(
+        RemoteRpcInvocation invocation,
+        @Nullable CompletableFuture<Object> resultFuture,
+        long timeout) {
+      this.invocation = invocation;
+      this.resultFuture = resultFuture;
+      this.timeout = timeout;
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package xyz.vopen.framework.neptune.rpc.exceptions;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * {@link RpcRejectedException} Exception class which is thrown if a rpc invocation is rejected
+ * because the lane of the mailbox of the endpoint it is queued in is full. The call was not
+ * invoked and may be tried again later.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class RpcRejectedException extends RpcException {
+  private static final long serialVersionUID = 3128446357296310852L;
+
+  public RpcRejectedException(@NotNull String message) {
+    super(message);
+  }
+}
@@ -1,11 +1,58 @@
 package xyz.vopen.framework.neptune.rpc.message;
 
+import com.google.common.base.Preconditions;
+import xyz.vopen.framework.neptune.common.serialization.PayloadFormat;
+
+import java.io.Serializable;
+
 /**
- * {@link HandshakeSuccessMessage}
+ * {@link HandshakeSuccessMessage} Reply to a successful {@link RemoteHandshakeMessage}, carrying
+ * the {@link PayloadFormat} the endpoint picked among the ones the caller accepts, and whether the
+ * payloads of the connection may be compressed.
  *
  * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
  * @version ${project.version} - 2020/10/7
  */
-public enum HandshakeSuccessMessage {
-  INSTANCE
+public final class HandshakeSuccessMessage implements Serializable {
+  private static final long serialVersionUID = -3453620316356466329L;
+
+  /** Success with the {@link PayloadFormat#JAVA} format, which every endpoint understands. */
+  public static final HandshakeSuccessMessage INSTANCE =
+      new HandshakeSuccessMessage(PayloadFormat.JAVA);
+
+  private final byte payloadFormat;
+
+  /** False when sent by a version which cannot read compressed payloads. */
+  private final boolean compression;
+
+  private HandshakeSuccessMessage(PayloadFormat payloadFormat) {
+    this(payloadFormat, false);
+  }
+
+  private HandshakeSuccessMessage(PayloadFormat payloadFormat, boolean compression) {
+    this.payloadFormat = payloadFormat.getId();
+    this.compression = compression;
+  }
+
+  public static HandshakeSuccessMessage of(PayloadFormat payloadFormat) {
+    return of(payloadFormat, false);
+  }
+
+  public static HandshakeSuccessMessage of(PayloadFormat payloadFormat, boolean compression) {
+    Preconditions.checkNotNull(payloadFormat, "payloadFormat");
+    return payloadFormat == PayloadFormat.JAVA && !compression
+        ? INSTANCE
+        : new HandshakeSuccessMessage(payloadFormat, compression);
+  }
+
+  /** Returns the negotiated format, {@link PayloadFormat#JAVA} if unknown to this version. */
+  public PayloadFormat getPayloadFormat() {
+    PayloadFormat format = PayloadFormat.fromId(payloadFormat);
+    return format == null ? PayloadFormat.JAVA : format;
+  }
+
+  /** Returns whether both sides read compressed payloads. */
+  public boolean isCompression() {
+    return compression;
+  }
 }
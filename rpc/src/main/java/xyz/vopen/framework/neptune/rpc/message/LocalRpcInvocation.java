@@ -1,5 +1,8 @@
 package xyz.vopen.framework.neptune.rpc.message;
 
+import xyz.vopen.framework.neptune.rpc.RpcMethodTable;
+import xyz.vopen.framework.neptune.rpc.RpcPriority;
+
 import java.io.IOException;
 
 /**
@@ -11,20 +14,43 @@ import java.io.IOException;
  * @version ${project.version} - 2020/10/7
  */
 public class LocalRpcInvocation implements RpcInvocation {
+  private final int methodId;
   private final String methodName;
   private final Class<?>[] parameterTypes;
   private final Object[] args;
+  private final RpcPriority.Lane lane;
 
   private transient String toString;
 
   public LocalRpcInvocation(String methodName, Class<?>[] parameterTypes, Object[] args) {
+    this(RpcMethodTable.methodIdOf(methodName, parameterTypes), methodName, parameterTypes, args);
+  }
+
+  public LocalRpcInvocation(
+      int methodId, String methodName, Class<?>[] parameterTypes, Object[] args) {
+    this(methodId, methodName, parameterTypes, args, RpcPriority.Lane.NORMAL);
+  }
+
+  public LocalRpcInvocation(
+      int methodId,
+      String methodName,
+      Class<?>[] parameterTypes,
+      Object[] args,
+      RpcPriority.Lane lane) {
+    this.methodId = methodId;
     this.methodName = methodName;
     this.parameterTypes = parameterTypes;
     this.args = args;
+    this.lane = lane;
 
     this.toString = null;
   }
 
+  @Override
+  public int getMethodId() {
+    return this.methodId;
+  }
+
   @Override
   public String getMethodName() throws IOException, ClassNotFoundException {
     return this.methodName;
@@ -40,6 +66,11 @@ public class LocalRpcInvocation implements RpcInvocation {
     return this.args;
   }
 
+  @Override
+  public RpcPriority.Lane getLane() {
+    return this.lane;
+  }
+
   @Override
   public String toString() {
     if (toString == null) {
@@ -0,0 +1,31 @@
+package xyz.vopen.framework.neptune.rpc.message;
+
+import java.io.Serializable;
+
+/**
+ * {@link PayloadChunkRequest} Request of one chunk of a {@link PayloadStreamHandle stream},
+ * answered with the bytes of the chunk.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class PayloadChunkRequest implements Serializable {
+  private static final long serialVersionUID = 4207785169042528467L;
+
+  private final long streamId;
+
+  private final int index;
+
+  public PayloadChunkRequest(long streamId, int index) {
+    this.streamId = streamId;
+    this.index = index;
+  }
+
+  public long getStreamId() {
+    return streamId;
+  }
+
+  public int getIndex() {
+    return index;
+  }
+}
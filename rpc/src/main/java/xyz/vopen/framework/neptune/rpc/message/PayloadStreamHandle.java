@@ -0,0 +1,59 @@
+package xyz.vopen.framework.neptune.rpc.message;
+
+import java.io.Serializable;
+
+/**
+ * {@link PayloadStreamHandle} Handle of a payload too large for one akka frame, sent instead of it:
+ * the receiver pulls the chunks of the payload from the source actor with {@link
+ * PayloadChunkRequest}s and releases it with a {@link PayloadStreamRelease}.
+ *
+ * <p>Sent to an endpoint, the payload is a remote rpc invocation. Sent back to a caller, it is the
+ * serialized result of the call.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class PayloadStreamHandle implements Serializable {
+  private static final long serialVersionUID = -2358473094416610722L;
+
+  /** Akka address of the actor serving the chunks. */
+  private final String sourceAddress;
+
+  private final long streamId;
+
+  private final int size;
+
+  private final int chunkSize;
+
+  public PayloadStreamHandle(String sourceAddress, long streamId, int size, int chunkSize) {
+    this.sourceAddress = sourceAddress;
+    this.streamId = streamId;
+    this.size = size;
+    this.chunkSize = chunkSize;
+  }
+
+  public String getSourceAddress() {
+    return sourceAddress;
+  }
+
+  public long getStreamId() {
+    return streamId;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  public int getChunkCount() {
+    return (int) (((long) size + chunkSize - 1) / chunkSize);
+  }
+
+  @Override
+  public String toString() {
+    return "PayloadStreamHandle(" + sourceAddress + '#' + streamId + ", " + size + " bytes)";
+  }
+}
@@ -0,0 +1,24 @@
+package xyz.vopen.framework.neptune.rpc.message;
+
+import java.io.Serializable;
+
+/**
+ * {@link PayloadStreamRelease} Tells the source of a {@link PayloadStreamHandle stream} that the
+ * receiver is done with it, received or failed.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class PayloadStreamRelease implements Serializable {
+  private static final long serialVersionUID = -6617431620355926085L;
+
+  private final long streamId;
+
+  public PayloadStreamRelease(long streamId) {
+    this.streamId = streamId;
+  }
+
+  public long getStreamId() {
+    return streamId;
+  }
+}
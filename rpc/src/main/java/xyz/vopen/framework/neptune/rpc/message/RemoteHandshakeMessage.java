@@ -1,12 +1,21 @@
 package xyz.vopen.framework.neptune.rpc.message;
 
+import xyz.vopen.framework.neptune.common.serialization.PayloadFormat;
+
 import javax.annotation.Nonnull;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * {@link RemoteHandshakeMessage}Handshake message between rpc endpoints. This message can be used
  * to verify compatibility between different endpoints.
  *
+ * <p>It also carries the {@link PayloadFormat}s the caller accepts, in order of preference, out of
+ * which the endpoint picks the one of the connection, and whether the caller reads compressed
+ * payloads.
+ *
  * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
  * @version ${project.version} - 2020/10/7
  */
@@ -18,9 +27,28 @@ public class RemoteHandshakeMessage implements Serializable {
 
   private final @Nonnull int version;
 
+  /** Ids of the accepted formats, null when sent by a version which only knows java. */
+  private final byte[] payloadFormats;
+
+  /** Whether the caller reads compressed payloads, false when sent by a version which cannot. */
+  private final boolean compression;
+
   public RemoteHandshakeMessage(@Nonnull Class<?> rpcGateway, @Nonnull int version) {
+    this(rpcGateway, version, Collections.singletonList(PayloadFormat.JAVA), false);
+  }
+
+  public RemoteHandshakeMessage(
+      @Nonnull Class<?> rpcGateway,
+      @Nonnull int version,
+      List<PayloadFormat> payloadFormats,
+      boolean compression) {
     this.rpcGateway = rpcGateway;
     this.version = version;
+    this.compression = compression;
+    this.payloadFormats = new byte[payloadFormats.size()];
+    for (int i = 0; i < payloadFormats.size(); i++) {
+      this.payloadFormats[i] = payloadFormats.get(i).getId();
+    }
   }
 
   public @Nonnull Class<?> getRpcGateway() {
@@ -30,4 +58,24 @@ public class RemoteHandshakeMessage implements Serializable {
   public @Nonnull int getVersion() {
     return this.version;
   }
+
+  /** Returns the accepted formats known to this version, in order of preference. */
+  public List<PayloadFormat> getPayloadFormats() {
+    if (payloadFormats == null) {
+      return Collections.singletonList(PayloadFormat.JAVA);
+    }
+    List<PayloadFormat> formats = new ArrayList<>(payloadFormats.length);
+    for (byte id : payloadFormats) {
+      PayloadFormat format = PayloadFormat.fromId(id);
+      if (format != null) {
+        formats.add(format);
+      }
+    }
+    return formats;
+  }
+
+  /** Returns whether the caller reads compressed payloads. */
+  public boolean isCompression() {
+    return compression;
+  }
 }
@@ -1,8 +1,12 @@
 package xyz.vopen.framework.neptune.rpc.message;
 
-import com.google.common.base.Preconditions;
+import xyz.vopen.framework.neptune.common.serialization.KryoSerializer;
+import xyz.vopen.framework.neptune.common.serialization.PayloadFormat;
 import xyz.vopen.framework.neptune.common.utils.SerializedValue;
+import xyz.vopen.framework.neptune.rpc.RpcMethodTable;
+import xyz.vopen.framework.neptune.rpc.RpcPriority;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -12,9 +16,15 @@ import java.io.Serializable;
  * {@link RemoteRpcInvocation} Remote rpc invocation message which is used when the actor
  * communication is remote and, thus, the message has to be serialized.
  *
- * <p>In order to fail fast and report an appropriate error message to the user, the method name,
- * the parameter types and the arguments are eagerly serialized. In case the invocation call
- * contains a non-serializable object, then an {@link IOException} is thrown.
+ * <p>In order to fail fast and report an appropriate error message to the user, the method id and
+ * the arguments are eagerly serialized. In case the invocation call contains a non-serializable
+ * object, then an {@link IOException} is thrown. The method name and parameter types are not sent,
+ * the receiver resolves the id in its {@link RpcMethodTable}.
+ *
+ * <p>The invocation is serialized in the {@link PayloadFormat} negotiated for the connection, and
+ * the endpoint answers in the same format. It is compressed from the compression threshold of the
+ * connection, and tells whether the caller reads a compressed result. Its {@link
+ * RpcPriority.Lane} is sent next to the serialized invocation, for the mailbox of the endpoint.
  *
  * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
  * @version ${project.version} - 2020/10/7
@@ -22,33 +32,78 @@ import java.io.Serializable;
 public class RemoteRpcInvocation implements RpcInvocation, Serializable {
   private static final long serialVersionUID = 5499341497546536875L;
 
+  static {
+    KryoSerializer.register(MethodInvocation.class, KryoSerializer.FIRST_MODULE_REGISTRATION_ID);
+  }
+
   /** Serialized invocation data. */
   private SerializedValue<MethodInvocation> serializedMethodInvocation;
 
+  /** Whether the caller reads a compressed result, false when sent by a version which cannot. */
+  private transient boolean compressedResult;
+
+  /** Lane of the mailbox of the endpoint, normal when sent by a version which does not tell. */
+  private transient RpcPriority.Lane lane;
+
   /** Transient field which is lazily initialized upon first access to the invocation data. */
   private transient RemoteRpcInvocation.MethodInvocation methodInvocation;
 
+  /** Known on the sending side only. */
+  private transient String methodName;
+
+  /** Known on the sending side only. */
+  private transient Class<?>[] parameterTypes;
+
   private transient String toString;
 
   public RemoteRpcInvocation(
       final String methodName, final Class<?>[] parameterTypes, final Object[] args)
       throws IOException {
+    this(
+        RpcMethodTable.methodIdOf(methodName, parameterTypes),
+        methodName,
+        parameterTypes,
+        args,
+        PayloadFormat.JAVA,
+        0,
+        RpcPriority.Lane.NORMAL);
+  }
+
+  public RemoteRpcInvocation(
+      final int methodId,
+      final String methodName,
+      final Class<?>[] parameterTypes,
+      final Object[] args,
+      final PayloadFormat payloadFormat,
+      final int compressionThreshold,
+      final RpcPriority.Lane lane)
+      throws IOException {
+    this.methodName = methodName;
+    this.parameterTypes = parameterTypes;
     this.serializedMethodInvocation =
         new SerializedValue<MethodInvocation>(
-            new RemoteRpcInvocation.MethodInvocation(methodName, parameterTypes, args));
+            new RemoteRpcInvocation.MethodInvocation(methodId, methodName, args),
+            payloadFormat,
+            compressionThreshold);
+    this.compressedResult = compressionThreshold > 0;
+    this.lane = lane;
     this.methodInvocation = null;
   }
 
   @Override
-  public String getMethodName() throws IOException, ClassNotFoundException {
+  public int getMethodId() throws IOException, ClassNotFoundException {
     deserializeMethodInvocation();
-    return this.methodInvocation.getMethodName();
+    return this.methodInvocation.getMethodId();
   }
 
   @Override
-  public Class<?>[] getParameterTypes() throws IOException, ClassNotFoundException {
-    deserializeMethodInvocation();
-    return this.methodInvocation.getParameterTypes();
+  public String getMethodName() {
+    return this.methodName;
+  }
+
+  @Override
+  public Class<?>[] getParameterTypes() {
+    return this.parameterTypes;
   }
 
   @Override
@@ -57,14 +112,15 @@ public class RemoteRpcInvocation implements RpcInvocation, Serializable {
     return this.methodInvocation.getArgs();
   }
 
+  @Override
+  public RpcPriority.Lane getLane() {
+    return this.lane;
+  }
+
   @Override
   public String toString() {
     if (toString == null) {
-
-      try {
-        Class<?>[] parameterTypes = getParameterTypes();
-        String methodName = getMethodName();
-
+      if (methodName != null) {
         StringBuilder paramTypeStringBuilder = new StringBuilder(parameterTypes.length * 5);
 
         if (parameterTypes.length > 0) {
@@ -76,8 +132,12 @@ public class RemoteRpcInvocation implements RpcInvocation, Serializable {
         }
 
         toString = "RemoteRpcInvocation(" + methodName + '(' + paramTypeStringBuilder + "))";
-      } catch (IOException | ClassNotFoundException e) {
-        toString = "Could not deserialize RemoteRpcInvocation: " + e.getMessage();
+      } else {
+        try {
+          toString = "RemoteRpcInvocation(#" + getMethodId() + ')';
+        } catch (IOException | ClassNotFoundException e) {
+          toString = "Could not deserialize RemoteRpcInvocation: " + e.getMessage();
+        }
       }
     }
 
@@ -93,6 +153,20 @@ public class RemoteRpcInvocation implements RpcInvocation, Serializable {
     return serializedMethodInvocation.getByteArray().length;
   }
 
+  /**
+   * Format the invocation was actually serialized in, {@link PayloadFormat#JAVA} if the requested
+   * one could not write it.
+   */
+  public PayloadFormat getPayloadFormat() {
+    PayloadFormat format = serializedMethodInvocation.getFormat();
+    return format == null ? PayloadFormat.JAVA : format;
+  }
+
+  /** Whether the result may be compressed for the caller. */
+  public boolean acceptsCompressedResult() {
+    return compressedResult;
+  }
+
   private void deserializeMethodInvocation() throws IOException, ClassNotFoundException {
     if (methodInvocation == null) {
       methodInvocation =
@@ -102,12 +176,25 @@ public class RemoteRpcInvocation implements RpcInvocation, Serializable {
 
   private void writeObject(ObjectOutputStream oos) throws IOException {
     oos.writeObject(serializedMethodInvocation);
+    // after the invocation, skipped by the versions which do not read it
+    oos.writeBoolean(compressedResult);
+    oos.writeByte(lane.ordinal());
   }
 
   @SuppressWarnings("unchecked")
   private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
     serializedMethodInvocation =
         (SerializedValue<RemoteRpcInvocation.MethodInvocation>) ois.readObject();
+    try {
+      compressedResult = ois.readBoolean();
+    } catch (EOFException e) {
+      compressedResult = false;
+    }
+    try {
+      lane = RpcPriority.Lane.fromOrdinal(ois.readByte());
+    } catch (EOFException e) {
+      lane = RpcPriority.Lane.NORMAL;
+    }
     methodInvocation = null;
   }
 
@@ -115,23 +202,20 @@ public class RemoteRpcInvocation implements RpcInvocation, Serializable {
   private static final class MethodInvocation implements Serializable {
     private static final long serialVersionUID = -5704447299812591385L;
 
-    private String methodName;
-    private Class<?>[] parameterTypes;
+    private int methodId;
     private Object[] args;
 
-    private MethodInvocation(
-        final String methodName, final Class<?>[] parameterTypes, final Object[] args) {
+    /** For the error messages of the sending side, not serialized. */
+    private transient String methodName;
+
+    private MethodInvocation(final int methodId, final String methodName, final Object[] args) {
+      this.methodId = methodId;
       this.methodName = methodName;
-      this.parameterTypes = Preconditions.checkNotNull(parameterTypes);
       this.args = args;
     }
 
-    String getMethodName() {
-      return methodName;
-    }
-
-    Class<?>[] getParameterTypes() {
-      return parameterTypes;
+    int getMethodId() {
+      return methodId;
     }
 
     Object[] getArgs() {
@@ -139,16 +223,10 @@ public class RemoteRpcInvocation implements RpcInvocation, Serializable {
     }
 
     private void writeObject(ObjectOutputStream oos) throws IOException {
-      oos.writeUTF(methodName);
-
-      oos.writeInt(parameterTypes.length);
-
-      for (Class<?> parameterType : parameterTypes) {
-        oos.writeObject(parameterType);
-      }
+      oos.writeInt(methodId);
 
       if (args != null) {
-        oos.writeBoolean(true);
+        oos.writeInt(args.length);
 
         for (int i = 0; i < args.length; i++) {
           try {
@@ -160,79 +238,41 @@ public class RemoteRpcInvocation implements RpcInvocation, Serializable {
                     + "th argument of method "
                     + methodName
                     + ". This indicates that the argument type "
-                    + args.getClass().getName()
+                    + args[i].getClass().getName()
                     + " is not serializable. Arguments have to "
                     + "be serializable for remote rpc calls.",
                 e);
           }
         }
       } else {
-        oos.writeBoolean(false);
+        oos.writeInt(-1);
       }
     }
 
     private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
-      methodName = ois.readUTF();
+      methodId = ois.readInt();
 
       int length = ois.readInt();
 
-      parameterTypes = new Class<?>[length];
-
-      for (int i = 0; i < length; i++) {
-        try {
-          parameterTypes[i] = (Class<?>) ois.readObject();
-        } catch (IOException e) {
-          StringBuilder incompleteMethod = getIncompleteMethodString(i, 0);
-          throw new IOException(
-              "Could not deserialize "
-                  + i
-                  + "th parameter type of method "
-                  + incompleteMethod
-                  + '.',
-              e);
-        } catch (ClassNotFoundException e) {
-          // note: wrapping this CNFE into another CNFE does not overwrite the Exception
-          //       stored in the ObjectInputStream (see ObjectInputStream#readSerialData)
-          // -> add a suppressed exception that adds a more specific message
-          StringBuilder incompleteMethod = getIncompleteMethodString(i, 0);
-          e.addSuppressed(
-              new ClassNotFoundException(
-                  "Could not deserialize "
-                      + i
-                      + "th "
-                      + "parameter type of method "
-                      + incompleteMethod
-                      + ". This indicates that the parameter "
-                      + "type is not part of the system class loader."));
-          throw e;
-        }
-      }
-
-      boolean hasArgs = ois.readBoolean();
-
-      if (hasArgs) {
+      if (length >= 0) {
         args = new Object[length];
 
         for (int i = 0; i < length; i++) {
           try {
             args[i] = ois.readObject();
           } catch (IOException e) {
-            StringBuilder incompleteMethod = getIncompleteMethodString(length, i);
             throw new IOException(
-                "Could not deserialize " + i + "th argument of method " + incompleteMethod + '.',
-                e);
+                "Could not deserialize " + i + "th argument of rpc method #" + methodId + '.', e);
           } catch (ClassNotFoundException e) {
             // note: wrapping this CNFE into another CNFE does not overwrite the Exception
             //       stored in the ObjectInputStream (see ObjectInputStream#readSerialData)
             // -> add a suppressed exception that adds a more specific message
-            StringBuilder incompleteMethod = getIncompleteMethodString(length, i);
             e.addSuppressed(
                 new ClassNotFoundException(
                     "Could not deserialize "
                         + i
-                        + "th "
-                        + "argument of method "
-                        + incompleteMethod
+                        + "th argument of rpc method #"
+                        + methodId
                         + ". This indicates that the argument "
                         + "type is not part of the system class loader."));
             throw e;
@@ -242,19 +282,5 @@ public class RemoteRpcInvocation implements RpcInvocation, Serializable {
         args = null;
       }
     }
-
-    private StringBuilder getIncompleteMethodString(int lastMethodTypeIdx, int lastArgumentIdx) {
-      StringBuilder incompleteMethod = new StringBuilder();
-      incompleteMethod.append(methodName).append('(');
-      for (int i = 0; i < lastMethodTypeIdx; ++i) {
-        incompleteMethod.append(parameterTypes[i].getCanonicalName());
-        if (i < lastArgumentIdx) {
-          incompleteMethod.append(": ").append(args[i]);
-        }
-        incompleteMethod.append(", ");
-      }
-      incompleteMethod.append("...)"); // some parameters could not be deserialized
-      return incompleteMethod;
-    }
   }
 }
@@ -1,19 +1,35 @@
 package xyz.vopen.framework.neptune.rpc.message;
 
+import xyz.vopen.framework.neptune.rpc.RpcPriority;
+
 import java.io.IOException;
 
 /**
  * {@link RpcInvocation} Interface for rpc invocation messages. The interface allows to request all
  * necessary information to lookup a method and call it with the corresponding arguments.
  *
+ * <p>The method is identified by its id in the {@link
+ * xyz.vopen.framework.neptune.rpc.RpcMethodTable}, a remote invocation carries nothing else.
+ *
  * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
  * @version ${project.version} - 2020/10/7
  */
 public interface RpcInvocation {
+  /**
+   * Returns the method's id.
+   *
+   * @return Method id
+   * @throws IOException if the rpc invocation message is a remote message and could not be
+   *     deserialized
+   * @throws ClassNotFoundException if the rpc invocation message is a remote message and contains
+   *     serialized classes which cannot be found on the receiving side
+   */
+  int getMethodId() throws IOException, ClassNotFoundException;
+
   /**
    * Returns the method's name.
    *
-   * @return Method name
+   * @return Method name, null for a remote invocation on the receiving side
    * @throws IOException if the rpc invocation message is a remote message and could not be
    *     deserialized
    * @throws ClassNotFoundException if the rpc invocation message is a remote message and contains
@@ -24,7 +40,7 @@ public interface RpcInvocation {
   /**
    * Returns the method's parameter types
    *
-   * @return Method's parameter types
+   * @return Method's parameter types, null for a remote invocation on the receiving side
    * @throws IOException if the rpc invocation message is a remote message and could not be
    *     deserialized
    * @throws ClassNotFoundException if the rpc invocation message is a remote message and contains
@@ -42,4 +58,12 @@ public interface RpcInvocation {
    *     serialized classes which cannot be found on the receiving side
    */
   Object[] getArgs() throws IOException, ClassNotFoundException;
+
+  /**
+   * Returns the lane of the mailbox of the endpoint the invocation is queued in, known without
+   * deserializing a remote invocation.
+   *
+   * @return Lane of the {@link RpcPriority} of the method
+   */
+  RpcPriority.Lane getLane();
 }
@@ -0,0 +1,104 @@
+package xyz.vopen.framework.neptune.rpc.message;
+
+import com.google.common.base.Preconditions;
+import xyz.vopen.framework.neptune.rpc.RpcBatchable;
+import xyz.vopen.framework.neptune.rpc.RpcPriority;
+
+import javax.annotation.Nullable;
+import java.io.Serializable;
+
+/**
+ * {@link RpcInvocationBatch} Remote rpc invocations of {@link RpcBatchable} methods coalesced by a
+ * caller in one message to the endpoint. The endpoint invokes them one by one and answers the
+ * batch with the {@link Results} of the invocations expecting one.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public final class RpcInvocationBatch implements Serializable {
+  private static final long serialVersionUID = -4470287305316869931L;
+
+  private final RemoteRpcInvocation[] invocations;
+
+  /** Whether the caller waits for the result of each invocation. */
+  private final boolean[] replies;
+
+  /** Milliseconds the endpoint waits for the results, the longest timeout of the calls. */
+  private final long timeout;
+
+  public RpcInvocationBatch(RemoteRpcInvocation[] invocations, boolean[] replies, long timeout) {
+    Preconditions.checkArgument(invocations.length == replies.length);
+    this.invocations = invocations;
+    this.replies = replies;
+    this.timeout = timeout;
+  }
+
+  public int size() {
+    return invocations.length;
+  }
+
+  public RemoteRpcInvocation getInvocation(int index) {
+    return invocations[index];
+  }
+
+  public boolean isReply(int index) {
+    return replies[index];
+  }
+
+  /** Whether any of the invocations expects a result. */
+  public boolean hasReplies() {
+    for (boolean reply : replies) {
+      if (reply) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public long getTimeout() {
+    return timeout;
+  }
+
+  /** Returns the lane of the mailbox of the endpoint, the first lane of the invocations. */
+  public RpcPriority.Lane getLane() {
+    RpcPriority.Lane lane = RpcPriority.Lane.NORMAL;
+    for (RemoteRpcInvocation invocation : invocations) {
+      if (invocation.getLane().ordinal() < lane.ordinal()) {
+        lane = invocation.getLane();
+      }
+    }
+    return lane;
+  }
+
+  @Override
+  public String toString() {
+    return "RpcInvocationBatch(" + invocations.length + " invocations)";
+  }
+
+  /**
+   * Results of a {@link RpcInvocationBatch}, by the index of the invocations: the serialized result
+   * or the handle of its stream, or the failure of the call. Both are null for the invocations
+   * expecting no result.
+   */
+  public static final class Results implements Serializable {
+    private static final long serialVersionUID = 2466207520866931432L;
+
+    private final Object[] values;
+
+    private final Throwable[] failures;
+
+    public Results(Object[] values, Throwable[] failures) {
+      Preconditions.checkArgument(values.length == failures.length);
+      this.values = values;
+      this.failures = failures;
+    }
+
+    public @Nullable Object getValue(int index) {
+      return values[index];
+    }
+
+    public @Nullable Throwable getFailure(int index) {
+      return failures[index];
+    }
+  }
+}
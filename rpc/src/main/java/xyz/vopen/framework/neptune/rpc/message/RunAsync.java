@@ -11,11 +11,11 @@ import com.google.common.base.Preconditions;
 public final class RunAsync {
   private final Runnable runnable;
 
-  /** The delay after which the runnable should be called. */
+  /** The time at which the runnable should be called, 0 to call it right away. */
   private final long atTimeNanos;
 
   public RunAsync(Runnable runnable, long atTimeNanos) {
-    Preconditions.checkArgument(atTimeNanos > 0);
+    Preconditions.checkArgument(atTimeNanos >= 0);
     this.runnable = runnable;
     this.atTimeNanos = atTimeNanos;
   }
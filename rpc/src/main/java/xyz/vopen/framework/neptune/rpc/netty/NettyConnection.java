@@ -0,0 +1,175 @@
+package xyz.vopen.framework.neptune.rpc.netty;
+
+import com.google.common.base.Preconditions;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.util.AttributeKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import xyz.vopen.framework.neptune.common.concurrent.FutureUtil;
+import xyz.vopen.framework.neptune.common.utils.time.Time;
+import xyz.vopen.framework.neptune.rpc.exceptions.RpcConnectionException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link NettyConnection} Client channel of a {@link NettyRpcService} to another one, shared by the
+ * gateways to the endpoints of the other service. The requests are correlated with their responses
+ * by id, so that any number of them are in flight on the channel.
+ *
+ * <p>The responses are read on the event loop of the channel and complete the requests in the
+ * response executor, the callbacks of the callers must not block the event loop.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+final class NettyConnection {
+  private static final Logger LOG = LoggerFactory.getLogger(NettyConnection.class);
+
+  static final AttributeKey<NettyConnection> CONNECTION = AttributeKey.valueOf("neptune.rpc");
+
+  private final Channel channel;
+
+  /** Host and port of the other service. */
+  private final String address;
+
+  private final Executor responseExecutor;
+
+  private final AtomicLong requestIds = new AtomicLong();
+
+  /** Requests waiting for their response, by id. */
+  private final ConcurrentMap<Long, CompletableFuture<NettyMessage>> pendingRequests =
+      new ConcurrentHashMap<>();
+
+  NettyConnection(Channel channel, String address, Executor responseExecutor) {
+    this.channel = Preconditions.checkNotNull(channel);
+    this.address = Preconditions.checkNotNull(address);
+    this.responseExecutor = Preconditions.checkNotNull(responseExecutor);
+  }
+
+  boolean isActive() {
+    return channel.isActive();
+  }
+
+  /** Returns the id of a new request, never 0. */
+  long nextRequestId() {
+    return requestIds.incrementAndGet();
+  }
+
+  /**
+   * Sends the request, with an id of {@link #nextRequestId()}.
+   *
+   * @return Future of the response, failed with a {@link RpcConnectionException} if the request
+   *     cannot be sent or the connection is closed before the response, or with a {@link
+   *     java.util.concurrent.TimeoutException} after the timeout.
+   */
+  CompletableFuture<NettyMessage> ask(NettyMessage request, Time timeout) {
+    final long requestId = request.getRequestId();
+    final CompletableFuture<NettyMessage> responseFuture = new CompletableFuture<>();
+    pendingRequests.put(requestId, responseFuture);
+    responseFuture.whenComplete((response, failure) -> pendingRequests.remove(requestId));
+
+    if (!channel.isActive()) {
+      // the closing of the channel may have failed the pending requests already
+      responseFuture.completeExceptionally(connectionClosed());
+      return responseFuture;
+    }
+    channel
+        .writeAndFlush(request)
+        .addListener(
+            write -> {
+              if (!write.isSuccess()) {
+                responseFuture.completeExceptionally(
+                    new RpcConnectionException(
+                        String.format("Could not send a request to %s.", address), write.cause()));
+              }
+            });
+    return FutureUtil.orTimeout(responseFuture, timeout.getSize(), timeout.getUnit());
+  }
+
+  /** Sends the message, expecting no response. */
+  void tell(NettyMessage message) {
+    channel
+        .writeAndFlush(message)
+        .addListener(
+            write -> {
+              if (!write.isSuccess()) {
+                LOG.debug(
+                    "[NettyConnection] Could not send a message to {}.", address, write.cause());
+              }
+            });
+  }
+
+  void close() {
+    channel.close();
+  }
+
+  // =====================  Internal  =====================
+
+  private void onResponse(NettyMessage response) {
+    CompletableFuture<NettyMessage> responseFuture =
+        pendingRequests.remove(response.getRequestId());
+    if (responseFuture == null) {
+      // timed out already
+      LOG.debug(
+          "[NettyConnection] Dropping the response to request {} from {}.",
+          response.getRequestId(),
+          address);
+      return;
+    }
+    try {
+      responseExecutor.execute(() -> responseFuture.complete(response));
+    } catch (RejectedExecutionException e) {
+      responseFuture.complete(response);
+    }
+  }
+
+  private void onClosed() {
+    LOG.debug("[NettyConnection] Connection to {} closed.", address);
+    for (Long requestId : pendingRequests.keySet()) {
+      CompletableFuture<NettyMessage> responseFuture = pendingRequests.remove(requestId);
+      if (responseFuture != null) {
+        responseFuture.completeExceptionally(connectionClosed());
+      }
+    }
+  }
+
+  private RpcConnectionException connectionClosed() {
+    return new RpcConnectionException(String.format("Connection to %s is closed.", address));
+  }
+
+  /** Hands the responses read on the client channels to their {@link NettyConnection}. */
+  @ChannelHandler.Sharable
+  static final class ResponseHandler extends SimpleChannelInboundHandler<NettyMessage> {
+
+    static final ResponseHandler INSTANCE = new ResponseHandler();
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, NettyMessage message) {
+      ctx.channel().attr(CONNECTION).get().onResponse(message);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+      NettyConnection connection = ctx.channel().attr(CONNECTION).get();
+      if (connection != null) {
+        connection.onClosed();
+      }
+      super.channelInactive(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      LOG.warn(
+          "[NettyConnection] Closing the connection to {}.", ctx.channel().remoteAddress(), cause);
+      ctx.close();
+    }
+  }
+}
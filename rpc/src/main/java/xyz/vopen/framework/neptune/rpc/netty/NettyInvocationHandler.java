@@ -0,0 +1,195 @@
+package xyz.vopen.framework.neptune.rpc.netty;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import xyz.vopen.framework.neptune.common.serialization.PayloadFormat;
+import xyz.vopen.framework.neptune.common.utils.ExceptionUtil;
+import xyz.vopen.framework.neptune.common.utils.SerializedValue;
+import xyz.vopen.framework.neptune.common.utils.time.Time;
+import xyz.vopen.framework.neptune.rpc.RpcGateway;
+import xyz.vopen.framework.neptune.rpc.RpcMethodStatistics;
+import xyz.vopen.framework.neptune.rpc.RpcMethodTable;
+import xyz.vopen.framework.neptune.rpc.RpcStatistics;
+import xyz.vopen.framework.neptune.rpc.exceptions.RpcException;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * {@link NettyInvocationHandler} Invocation handler of a gateway to an endpoint of another {@link
+ * NettyRpcService}. A call of a method returning void is a tell, any other is a request answered
+ * on the {@link NettyConnection} to that service.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+class NettyInvocationHandler implements InvocationHandler, RpcGateway {
+  private static final Logger LOG = LoggerFactory.getLogger(NettyInvocationHandler.class);
+
+  private final String address;
+
+  private final String hostname;
+
+  private final NettyConnection connection;
+
+  /** Id of the endpoint on the connection, returned by the handshake. */
+  private final int endpointHandle;
+
+  /** Default timeout for asks. */
+  private final Time timeout;
+
+  private final long maximumFrameSize;
+
+  /** Format of the invocations, negotiated in the handshake. */
+  private final PayloadFormat payloadFormat;
+
+  /** Size from which the invocations are compressed, 0 if not negotiated. */
+  private final int compressionThreshold;
+
+  /** Statistics of the calls of the rpc service the gateway belongs to. */
+  private final RpcStatistics statistics;
+
+  NettyInvocationHandler(
+      String address,
+      String hostname,
+      NettyConnection connection,
+      int endpointHandle,
+      Time timeout,
+      long maximumFrameSize,
+      PayloadFormat payloadFormat,
+      int compressionThreshold,
+      RpcStatistics statistics) {
+    this.address = Preconditions.checkNotNull(address);
+    this.hostname = Preconditions.checkNotNull(hostname);
+    this.connection = Preconditions.checkNotNull(connection);
+    this.endpointHandle = endpointHandle;
+    this.timeout = Preconditions.checkNotNull(timeout);
+    this.maximumFrameSize = maximumFrameSize;
+    this.payloadFormat = Preconditions.checkNotNull(payloadFormat);
+    this.compressionThreshold = compressionThreshold;
+    this.statistics = Preconditions.checkNotNull(statistics);
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    Class<?> declaringClass = method.getDeclaringClass();
+    if (declaringClass.equals(Object.class) || declaringClass.equals(RpcGateway.class)) {
+      return method.invoke(this, args);
+    }
+    return invokeRpc(method, args);
+  }
+
+  @Override
+  public String getAddress() {
+    return address;
+  }
+
+  @Override
+  public String getHostname() {
+    return hostname;
+  }
+
+  @Override
+  public String toString() {
+    return "NettyInvocationHandler(" + address + ')';
+  }
+
+  // =====================  Internal  =====================
+
+  private Object invokeRpc(Method method, Object[] args) throws Exception {
+    RpcMethodTable.RpcMethod rpcMethod =
+        RpcMethodTable.forGateway(method.getDeclaringClass()).get(method);
+    Time callTimeout = rpcMethod.getTimeout(args, timeout);
+
+    SerializedValue<Object[]> serializedArgs;
+    try {
+      serializedArgs = new SerializedValue<>(args, payloadFormat, compressionThreshold);
+    } catch (IOException e) {
+      LOG.warn(
+          "[NettyInvocationHandler] Could not serialize the rpc invocation of {}.", rpcMethod, e);
+      throw e;
+    }
+    long invocationSize = NettyMessage.sizeOf(serializedArgs);
+    if (invocationSize > maximumFrameSize) {
+      throw new IOException(
+          String.format(
+              "The rpc invocation size %d exceeds the maximum frame size %d.",
+              invocationSize, maximumFrameSize));
+    }
+
+    RpcMethodStatistics methodStatistics = statistics.forMethod(rpcMethod);
+    if (rpcMethod.returnsVoid()) {
+      connection.tell(
+          new NettyMessage.Invocation(
+              0L, endpointHandle, rpcMethod.getId(), payloadFormat, false, serializedArgs));
+      methodStatistics.onTell(invocationSize);
+      return null;
+    }
+
+    NettyMessage.Invocation invocation =
+        new NettyMessage.Invocation(
+            connection.nextRequestId(),
+            endpointHandle,
+            rpcMethod.getId(),
+            payloadFormat,
+            compressionThreshold > 0,
+            serializedArgs);
+    long startNanos = methodStatistics.onAsk(invocationSize);
+    CompletableFuture<Object> resultFuture = new CompletableFuture<>();
+    connection
+        .ask(invocation, callTimeout)
+        .whenComplete(
+            (response, failure) -> {
+              long responseSize = response == null ? 0L : response.getPayloadSize();
+              resultFuture.whenComplete(
+                  (value, callFailure) ->
+                      methodStatistics.onAskCompleted(startNanos, responseSize, callFailure));
+              if (failure != null) {
+                resultFuture.completeExceptionally(failure);
+                return;
+              }
+              try {
+                resultFuture.complete(resultOf(response, rpcMethod));
+              } catch (Throwable t) {
+                resultFuture.completeExceptionally(t);
+              }
+            });
+
+    if (rpcMethod.returnsFuture()) {
+      return resultFuture;
+    }
+    try {
+      return resultFuture.get(callTimeout.getSize(), callTimeout.getUnit());
+    } catch (ExecutionException e) {
+      throw new RpcException(
+          "Failure while obtaining synchronous RPC result.",
+          ExceptionUtil.stripExecutionException(e));
+    }
+  }
+
+  private @Nullable Object resultOf(NettyMessage response, RpcMethodTable.RpcMethod rpcMethod)
+      throws Throwable {
+    if (!(response instanceof NettyMessage.Response)) {
+      throw new RpcException("Received an unexpected response to RPC call " + rpcMethod + '.');
+    }
+    NettyMessage.Response result = (NettyMessage.Response) response;
+    SerializedValue<?> value = result.getValue();
+    Object deserialized;
+    try {
+      deserialized = value == null ? null : value.deserializeValue(getClass().getClassLoader());
+    } catch (IOException | ClassNotFoundException e) {
+      throw new RpcException(
+          "Could not deserialize the serialized payload of RPC method : " + rpcMethod.getName(),
+          e);
+    }
+    if (!result.isSuccess()) {
+      throw (Throwable) deserialized;
+    }
+    return deserialized;
+  }
+}
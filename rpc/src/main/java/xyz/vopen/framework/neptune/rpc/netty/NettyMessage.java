@@ -0,0 +1,242 @@
+package xyz.vopen.framework.neptune.rpc.netty;
+
+import com.google.common.base.Preconditions;
+import xyz.vopen.framework.neptune.common.serialization.PayloadFormat;
+import xyz.vopen.framework.neptune.common.utils.ExceptionUtil;
+import xyz.vopen.framework.neptune.common.utils.SerializedValue;
+import xyz.vopen.framework.neptune.rpc.exceptions.RpcException;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * {@link NettyMessage} Message of the netty transport, written by {@link NettyMessageCodec}. A
+ * request carries an id the response to it repeats, 0 if no response is expected.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+abstract class NettyMessage {
+
+  static final byte HANDSHAKE = 1;
+  static final byte HANDSHAKE_SUCCESS = 2;
+  static final byte INVOCATION = 3;
+  static final byte RESPONSE = 4;
+
+  /** Id of the request, 0 if no response is expected. */
+  private final long requestId;
+
+  NettyMessage(long requestId) {
+    this.requestId = requestId;
+  }
+
+  long getRequestId() {
+    return requestId;
+  }
+
+  abstract byte getType();
+
+  /** Returns the bytes of the serialized payloads of the message. */
+  long getPayloadSize() {
+    return 0L;
+  }
+
+  static int sizeOf(@Nullable SerializedValue<?> value) {
+    return value == null || value.getByteArray() == null ? 0 : value.getByteArray().length;
+  }
+
+  /** Connects a gateway to an endpoint, answered by {@link HandshakeSuccess} or a failure. */
+  static final class Handshake extends NettyMessage {
+    private final int version;
+    private final String endpointId;
+    private final String rpcGateway;
+    private final List<PayloadFormat> payloadFormats;
+    private final boolean compression;
+
+    Handshake(
+        long requestId,
+        int version,
+        String endpointId,
+        String rpcGateway,
+        List<PayloadFormat> payloadFormats,
+        boolean compression) {
+      super(requestId);
+      this.version = version;
+      this.endpointId = Preconditions.checkNotNull(endpointId);
+      this.rpcGateway = Preconditions.checkNotNull(rpcGateway);
+      this.payloadFormats = Preconditions.checkNotNull(payloadFormats);
+      this.compression = compression;
+    }
+
+    @Override
+    byte getType() {
+      return HANDSHAKE;
+    }
+
+    int getVersion() {
+      return version;
+    }
+
+    String getEndpointId() {
+      return endpointId;
+    }
+
+    /** Class name of the gateway. */
+    String getRpcGateway() {
+      return rpcGateway;
+    }
+
+    List<PayloadFormat> getPayloadFormats() {
+      return payloadFormats;
+    }
+
+    boolean isCompression() {
+      return compression;
+    }
+  }
+
+  /** Handle of the endpoint on its connection and payload settings negotiated for the gateway. */
+  static final class HandshakeSuccess extends NettyMessage {
+    private final int endpointHandle;
+    private final PayloadFormat payloadFormat;
+    private final boolean compression;
+
+    HandshakeSuccess(
+        long requestId, int endpointHandle, PayloadFormat payloadFormat, boolean compression) {
+      super(requestId);
+      this.endpointHandle = endpointHandle;
+      this.payloadFormat = Preconditions.checkNotNull(payloadFormat);
+      this.compression = compression;
+    }
+
+    @Override
+    byte getType() {
+      return HANDSHAKE_SUCCESS;
+    }
+
+    int getEndpointHandle() {
+      return endpointHandle;
+    }
+
+    PayloadFormat getPayloadFormat() {
+      return payloadFormat;
+    }
+
+    boolean isCompression() {
+      return compression;
+    }
+  }
+
+  /** Call of a rpc method, a tell if its request id is 0. */
+  static final class Invocation extends NettyMessage {
+    private final int endpointHandle;
+    private final int methodId;
+
+    /** Format to answer in, the one the caller reads. */
+    private final PayloadFormat resultFormat;
+
+    private final boolean acceptsCompressedResult;
+
+    /** Arguments of the call, null if the method takes none. */
+    private final @Nullable SerializedValue<Object[]> args;
+
+    Invocation(
+        long requestId,
+        int endpointHandle,
+        int methodId,
+        PayloadFormat resultFormat,
+        boolean acceptsCompressedResult,
+        @Nullable SerializedValue<Object[]> args) {
+      super(requestId);
+      this.endpointHandle = endpointHandle;
+      this.methodId = methodId;
+      this.resultFormat = Preconditions.checkNotNull(resultFormat);
+      this.acceptsCompressedResult = acceptsCompressedResult;
+      this.args = args;
+    }
+
+    @Override
+    byte getType() {
+      return INVOCATION;
+    }
+
+    @Override
+    long getPayloadSize() {
+      return sizeOf(args);
+    }
+
+    int getEndpointHandle() {
+      return endpointHandle;
+    }
+
+    int getMethodId() {
+      return methodId;
+    }
+
+    PayloadFormat getResultFormat() {
+      return resultFormat;
+    }
+
+    boolean acceptsCompressedResult() {
+      return acceptsCompressedResult;
+    }
+
+    @Nullable
+    SerializedValue<Object[]> getArgs() {
+      return args;
+    }
+  }
+
+  /** Result of a request, or the failure of it. */
+  static final class Response extends NettyMessage {
+    private final boolean success;
+
+    /** The result, null if null, or the java serialized failure. */
+    private final @Nullable SerializedValue<?> value;
+
+    Response(long requestId, boolean success, @Nullable SerializedValue<?> value) {
+      super(requestId);
+      Preconditions.checkArgument(success || value != null, "A failure must have a cause.");
+      this.success = success;
+      this.value = value;
+    }
+
+    /**
+     * Returns the failure response to the request, with the cause replaced by a {@link
+     * RpcException} holding its stack trace if it cannot be serialized.
+     */
+    static Response failure(long requestId, Throwable cause) {
+      SerializedValue<Throwable> value;
+      try {
+        value = new SerializedValue<>(cause);
+      } catch (IOException e) {
+        try {
+          value = new SerializedValue<>(new RpcException(ExceptionUtil.stringifyException(cause)));
+        } catch (IOException unexpected) {
+          throw new IllegalStateException(unexpected);
+        }
+      }
+      return new Response(requestId, false, value);
+    }
+
+    @Override
+    byte getType() {
+      return RESPONSE;
+    }
+
+    @Override
+    long getPayloadSize() {
+      return sizeOf(value);
+    }
+
+    boolean isSuccess() {
+      return success;
+    }
+
+    @Nullable
+    SerializedValue<?> getValue() {
+      return value;
+    }
+  }
+}
@@ -0,0 +1,233 @@
+package xyz.vopen.framework.neptune.rpc.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.MessageToByteEncoder;
+import xyz.vopen.framework.neptune.common.serialization.PayloadFormat;
+import xyz.vopen.framework.neptune.common.utils.SerializedValue;
+
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link NettyMessageCodec} Binary form of the {@link NettyMessage}s. A frame is:
+ *
+ * <pre>
+ * | length: int | type: byte | request id: long | body |
+ * </pre>
+ *
+ * <p>where the length counts the bytes after itself. A serialized payload in a body is its {@link
+ * PayloadFormat} id, its compressed flag, its length, -1 if null, and its bytes, which are copied
+ * straight between the pooled direct buffers of the channel and the byte array of the {@link
+ * SerializedValue}.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+final class NettyMessageCodec {
+
+  private static final int LENGTH_BYTES = 4;
+
+  /** Bytes of a frame besides its payload, e.g. the header and the gateway class name. */
+  private static final int MAX_OVERHEAD = 4096;
+
+  private NettyMessageCodec() {}
+
+  /** Writes the messages to pooled direct buffers, shared by the channels. */
+  @ChannelHandler.Sharable
+  static final class Encoder extends MessageToByteEncoder<NettyMessage> {
+
+    static final Encoder INSTANCE = new Encoder();
+
+    private Encoder() {
+      super(NettyMessage.class, true);
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(
+        ChannelHandlerContext ctx, NettyMessage message, boolean preferDirect) {
+      // sized for the message up front, a large payload is not copied while the buffer grows
+      return ctx.alloc().ioBuffer(64 + (int) message.getPayloadSize());
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, NettyMessage message, ByteBuf out) {
+      int start = out.writerIndex();
+      out.writeInt(0);
+      out.writeByte(message.getType());
+      out.writeLong(message.getRequestId());
+      switch (message.getType()) {
+        case NettyMessage.HANDSHAKE:
+          writeHandshake((NettyMessage.Handshake) message, out);
+          break;
+        case NettyMessage.HANDSHAKE_SUCCESS:
+          NettyMessage.HandshakeSuccess handshakeSuccess = (NettyMessage.HandshakeSuccess) message;
+          out.writeInt(handshakeSuccess.getEndpointHandle());
+          out.writeByte(handshakeSuccess.getPayloadFormat().getId());
+          out.writeBoolean(handshakeSuccess.isCompression());
+          break;
+        case NettyMessage.INVOCATION:
+          NettyMessage.Invocation invocation = (NettyMessage.Invocation) message;
+          out.writeInt(invocation.getEndpointHandle());
+          out.writeInt(invocation.getMethodId());
+          out.writeByte(invocation.getResultFormat().getId());
+          out.writeBoolean(invocation.acceptsCompressedResult());
+          writePayload(invocation.getArgs(), out);
+          break;
+        case NettyMessage.RESPONSE:
+          NettyMessage.Response response = (NettyMessage.Response) message;
+          out.writeBoolean(response.isSuccess());
+          writePayload(response.getValue(), out);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown message type " + message.getType() + '.');
+      }
+      out.setInt(start, out.writerIndex() - start - LENGTH_BYTES);
+    }
+
+    private static void writeHandshake(NettyMessage.Handshake handshake, ByteBuf out) {
+      out.writeInt(handshake.getVersion());
+      writeString(handshake.getEndpointId(), out);
+      writeString(handshake.getRpcGateway(), out);
+      out.writeByte(handshake.getPayloadFormats().size());
+      for (PayloadFormat payloadFormat : handshake.getPayloadFormats()) {
+        out.writeByte(payloadFormat.getId());
+      }
+      out.writeBoolean(handshake.isCompression());
+    }
+
+    private static void writeString(String value, ByteBuf out) {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      out.writeShort(bytes.length);
+      out.writeBytes(bytes);
+    }
+
+    private static void writePayload(@Nullable SerializedValue<?> value, ByteBuf out) {
+      byte[] data = value == null ? null : value.getByteArray();
+      if (data == null) {
+        out.writeByte(PayloadFormat.JAVA.getId());
+        out.writeBoolean(false);
+        out.writeInt(-1);
+      } else {
+        out.writeByte(value.getFormat().getId());
+        out.writeBoolean(value.isCompressed());
+        out.writeInt(data.length);
+        out.writeBytes(data);
+      }
+    }
+  }
+
+  /** Splits the frames and reads their messages, one decoder per channel. */
+  static final class Decoder extends LengthFieldBasedFrameDecoder {
+
+    Decoder(long maximumFrameSize) {
+      super(
+          (int) Math.min(Integer.MAX_VALUE, maximumFrameSize + MAX_OVERHEAD),
+          0,
+          LENGTH_BYTES,
+          0,
+          LENGTH_BYTES);
+    }
+
+    @Override
+    protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+      ByteBuf frame = (ByteBuf) super.decode(ctx, in);
+      if (frame == null) {
+        return null;
+      }
+      try {
+        return readMessage(frame);
+      } finally {
+        frame.release();
+      }
+    }
+
+    private static NettyMessage readMessage(ByteBuf in) {
+      byte type = in.readByte();
+      long requestId = in.readLong();
+      switch (type) {
+        case NettyMessage.HANDSHAKE:
+          return readHandshake(requestId, in);
+        case NettyMessage.HANDSHAKE_SUCCESS:
+          return new NettyMessage.HandshakeSuccess(
+              requestId, in.readInt(), readFormat(in), in.readBoolean());
+        case NettyMessage.INVOCATION:
+          return new NettyMessage.Invocation(
+              requestId,
+              in.readInt(),
+              in.readInt(),
+              readFormat(in),
+              in.readBoolean(),
+              readPayload(in));
+        case NettyMessage.RESPONSE:
+          return new NettyMessage.Response(requestId, in.readBoolean(), readPayload(in));
+        default:
+          throw new CorruptedFrameException("Unknown message type " + type + '.');
+      }
+    }
+
+    private static NettyMessage.Handshake readHandshake(long requestId, ByteBuf in) {
+      int version = in.readInt();
+      String endpointId = readString(in);
+      String rpcGateway = readString(in);
+      int formats = in.readUnsignedByte();
+      List<PayloadFormat> payloadFormats = new ArrayList<>(formats);
+      for (int i = 0; i < formats; i++) {
+        // formats unknown to this version are left out of the negotiation
+        PayloadFormat payloadFormat = PayloadFormat.fromId(in.readByte());
+        if (payloadFormat != null) {
+          payloadFormats.add(payloadFormat);
+        }
+      }
+      return new NettyMessage.Handshake(
+          requestId, version, endpointId, rpcGateway, payloadFormats, in.readBoolean());
+    }
+
+    private static String readString(ByteBuf in) {
+      int length = in.readUnsignedShort();
+      checkReadable(length, in);
+      String value = in.toString(in.readerIndex(), length, StandardCharsets.UTF_8);
+      in.skipBytes(length);
+      return value;
+    }
+
+    private static PayloadFormat readFormat(ByteBuf in) {
+      byte id = in.readByte();
+      PayloadFormat payloadFormat = PayloadFormat.fromId(id);
+      if (payloadFormat == null) {
+        throw new CorruptedFrameException("Unknown payload format " + id + '.');
+      }
+      return payloadFormat;
+    }
+
+    private static @Nullable SerializedValue<Object[]> readPayload(ByteBuf in) {
+      PayloadFormat payloadFormat = readFormat(in);
+      boolean compressed = in.readBoolean();
+      int length = in.readInt();
+      if (length < 0) {
+        return null;
+      }
+      checkReadable(length, in);
+      byte[] data = new byte[length];
+      in.readBytes(data);
+      return SerializedValue.fromBytes(data, payloadFormat, compressed);
+    }
+
+    /** A length read from the wire is checked against the frame before it is allocated. */
+    private static void checkReadable(int length, ByteBuf in) {
+      if (length > in.readableBytes()) {
+        throw new CorruptedFrameException(
+            "Length "
+                + length
+                + " exceeds the "
+                + in.readableBytes()
+                + " bytes left in the frame.");
+      }
+    }
+  }
+}
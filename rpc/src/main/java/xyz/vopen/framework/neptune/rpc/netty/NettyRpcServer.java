@@ -0,0 +1,576 @@
+package xyz.vopen.framework.neptune.rpc.netty;
+
+import com.google.common.base.Preconditions;
+import io.netty.channel.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import xyz.vopen.framework.neptune.common.NeptuneStartStoppable;
+import xyz.vopen.framework.neptune.common.concurrent.FutureUtil;
+import xyz.vopen.framework.neptune.common.utils.ExceptionUtil;
+import xyz.vopen.framework.neptune.common.utils.SerializedValue;
+import xyz.vopen.framework.neptune.common.utils.time.Time;
+import xyz.vopen.framework.neptune.rpc.MainThreadExecutable;
+import xyz.vopen.framework.neptune.rpc.MainThreadValidatorUtil;
+import xyz.vopen.framework.neptune.rpc.RpcEndpoint;
+import xyz.vopen.framework.neptune.rpc.RpcGateway;
+import xyz.vopen.framework.neptune.rpc.RpcMailbox;
+import xyz.vopen.framework.neptune.rpc.RpcMethodStatistics;
+import xyz.vopen.framework.neptune.rpc.RpcMethodTable;
+import xyz.vopen.framework.neptune.rpc.RpcPriority;
+import xyz.vopen.framework.neptune.rpc.RpcServer;
+import xyz.vopen.framework.neptune.rpc.RpcStartStoppable;
+import xyz.vopen.framework.neptune.rpc.RpcStatistics;
+import xyz.vopen.framework.neptune.rpc.exceptions.RpcConnectionException;
+import xyz.vopen.framework.neptune.rpc.exceptions.RpcException;
+import xyz.vopen.framework.neptune.rpc.exceptions.RpcRejectedException;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link NettyRpcServer} Server of an endpoint of the {@link NettyRpcService}, and the invocation
+ * handler of its self gateway.
+ *
+ * <p>The messages to the endpoint, the remote invocations read on the event loops as well as the
+ * calls of the self gateway, are queued in a mailbox. The mailbox is processed by one thread of the
+ * endpoint executor at a time, the main thread of the endpoint, which yields after {@link
+ * NettyRpcServiceConfiguration#getThroughput()} messages like an actor of the Akka dispatcher does.
+ *
+ * <p>The mailbox has the lanes of the {@code RpcEndpointMailbox} of the Akka transport: the
+ * lifecycle messages are taken first, then the invocations of the methods of a higher {@link
+ * RpcPriority}, and an invocation exceeding the {@link
+ * NettyRpcServiceConfiguration#getMailboxCapacity()} of its lane fails with a {@link
+ * RpcRejectedException}.
+ *
+ * <p>The endpoint is started, stopped and terminated like the {@code AkkaRpcActor}: the messages
+ * received while it is not running are discarded and the rpc invocations among them failed.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+final class NettyRpcServer implements InvocationHandler, RpcServer {
+  private static final Logger LOG = LoggerFactory.getLogger(NettyRpcServer.class);
+
+  private final RpcEndpoint rpcEndpoint;
+
+  /** Id of the endpoint on the connections to its service. */
+  private final int handle;
+
+  private final String address;
+
+  private final String hostname;
+
+  private final RpcMethodTable methodTable;
+
+  private final MainThreadValidatorUtil mainThreadValidator;
+
+  private final NettyRpcServiceConfiguration configuration;
+
+  /** Executor of the main thread, completing the results for the self gateway too. */
+  private final Executor executor;
+
+  private final ScheduledExecutorService timer;
+
+  /** Statistics of the calls of the rpc service, taking the invocation times. */
+  private final RpcStatistics statistics;
+
+  private final RpcMailbox<Runnable> mailbox;
+
+  /** Whether the mailbox is being processed or about to be. */
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+
+  private final CompletableFuture<Void> terminationFuture = new CompletableFuture<>();
+
+  /** Only accessed in the main thread. */
+  private State state = State.STOPPED;
+
+  NettyRpcServer(
+      RpcEndpoint rpcEndpoint,
+      int handle,
+      String address,
+      String hostname,
+      NettyRpcServiceConfiguration configuration,
+      Executor executor,
+      ScheduledExecutorService timer,
+      RpcStatistics statistics) {
+    this.rpcEndpoint = Preconditions.checkNotNull(rpcEndpoint, "rpc endpoint");
+    this.handle = handle;
+    this.address = Preconditions.checkNotNull(address);
+    this.hostname = Preconditions.checkNotNull(hostname);
+    this.methodTable = RpcMethodTable.forEndpoint(rpcEndpoint.getClass());
+    this.mainThreadValidator = new MainThreadValidatorUtil(rpcEndpoint);
+    this.configuration = Preconditions.checkNotNull(configuration);
+    this.executor = Preconditions.checkNotNull(executor);
+    this.timer = Preconditions.checkNotNull(timer);
+    this.statistics = Preconditions.checkNotNull(statistics);
+    this.mailbox = new RpcMailbox<>(configuration.getMailboxCapacity());
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    Class<?> declaringClass = method.getDeclaringClass();
+    if (declaringClass.equals(Object.class)
+        || declaringClass.equals(RpcGateway.class)
+        || declaringClass.equals(RpcStartStoppable.class)
+        || declaringClass.equals(NeptuneStartStoppable.class)
+        || declaringClass.equals(MainThreadExecutable.class)
+        || declaringClass.equals(RpcServer.class)) {
+      return method.invoke(this, args);
+    }
+    return invokeSelf(method, args);
+  }
+
+  int getHandle() {
+    return handle;
+  }
+
+  RpcEndpoint getRpcEndpoint() {
+    return rpcEndpoint;
+  }
+
+  @Override
+  public String getAddress() {
+    return address;
+  }
+
+  @Override
+  public String getHostname() {
+    return hostname;
+  }
+
+  @Override
+  public CompletableFuture<Void> getTerminationFuture() {
+    return terminationFuture;
+  }
+
+  @Override
+  public void start() {
+    send(RpcPriority.Lane.CONTROL, this::handleStart);
+  }
+
+  @Override
+  public void stop() {
+    send(RpcPriority.Lane.CONTROL, this::handleStop);
+  }
+
+  /** Terminates the endpoint, returning its termination future. */
+  CompletableFuture<Void> terminate() {
+    send(RpcPriority.Lane.CONTROL, this::handleTerminate);
+    return terminationFuture;
+  }
+
+  @Override
+  public void runAsync(Runnable runnable) {
+    scheduleRunAsync(runnable, 0L);
+  }
+
+  @Override
+  public void scheduleRunAsync(Runnable runnable, long delay) {
+    Preconditions.checkNotNull(runnable, "runnable");
+    Preconditions.checkArgument(delay >= 0, "delay must be zero or greater");
+
+    if (delay == 0) {
+      send(RpcPriority.Lane.NORMAL, () -> runInMainThread(runnable));
+    } else {
+      timer.schedule(
+          () -> send(RpcPriority.Lane.NORMAL, () -> runInMainThread(runnable)),
+          delay,
+          TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Override
+  public <V> CompletableFuture<V> callAsync(Callable<V> callable, Time callTimeout) {
+    Preconditions.checkNotNull(callable, "callable");
+    CompletableFuture<V> resultFuture = new CompletableFuture<>();
+    send(
+        RpcPriority.Lane.NORMAL,
+        () -> {
+          if (!state.isRunning()) {
+            completeExceptionally(resultFuture, notRunning());
+            return;
+          }
+          try {
+            V result = callable.call();
+            executor.execute(() -> resultFuture.complete(result));
+          } catch (Throwable e) {
+            completeExceptionally(resultFuture, e);
+          }
+        });
+    return FutureUtil.orTimeout(resultFuture, callTimeout.getSize(), callTimeout.getUnit());
+  }
+
+  /**
+   * Handles an invocation read on the event loop of the channel: its arguments are deserialized
+   * there, the method is invoked in the main thread and its result is serialized by the thread
+   * completing it, then written back to the channel.
+   */
+  void handleRemoteInvocation(NettyMessage.Invocation invocation, Channel channel) {
+    final RpcMethodTable.RpcMethod rpcMethod = methodTable.get(invocation.getMethodId());
+    if (rpcMethod == null) {
+      LOG.error(
+          "[NettyRpcServer] Could not find rpc method {} of {}.",
+          invocation.getMethodId(),
+          rpcEndpoint.getEndpointId());
+      reply(
+          channel,
+          invocation,
+          NettyMessage.Response.failure(
+              invocation.getRequestId(),
+              new RpcConnectionException("Could not find rpc method for rpc invocation.")));
+      return;
+    }
+
+    final Object[] args;
+    try {
+      SerializedValue<Object[]> serializedArgs = invocation.getArgs();
+      args = serializedArgs == null ? null : serializedArgs.deserializeValue(getClassLoader());
+    } catch (IOException | ClassNotFoundException e) {
+      LOG.error("[NettyRpcServer] Could not deserialize rpc invocation of {}.", rpcMethod, e);
+      reply(
+          channel,
+          invocation,
+          NettyMessage.Response.failure(
+              invocation.getRequestId(),
+              new RpcConnectionException("Could not deserialize rpc invocation message.", e)));
+      return;
+    }
+
+    if (invocation.getRequestId() == 0L) {
+      if (!offer(rpcMethod, () -> invokeVoid(rpcMethod, args))) {
+        logRejected(rpcMethod);
+      }
+      return;
+    }
+    final CompletableFuture<Object> resultFuture = new CompletableFuture<>();
+    if (!offer(rpcMethod, () -> invokeInMainThread(rpcMethod, args, resultFuture))) {
+      logRejected(rpcMethod);
+      reply(
+          channel,
+          invocation,
+          NettyMessage.Response.failure(invocation.getRequestId(), rejected(rpcMethod)));
+      return;
+    }
+    resultFuture.whenComplete(
+        (result, failure) ->
+            reply(channel, invocation, serializeResponse(invocation, rpcMethod, result, failure)));
+  }
+
+  @Override
+  public String toString() {
+    return "NettyRpcServer(" + rpcEndpoint.getEndpointId() + ')';
+  }
+
+  // =====================  Internal  =====================
+
+  /** Calls the endpoint through its self gateway, without serializing the call. */
+  private Object invokeSelf(Method method, Object[] args) throws Exception {
+    RpcMethodTable.RpcMethod gatewayMethod =
+        RpcMethodTable.forGateway(method.getDeclaringClass()).get(method);
+    RpcMethodTable.RpcMethod rpcMethod = methodTable.get(gatewayMethod.getId());
+    Preconditions.checkState(
+        rpcMethod != null, "%s does not implement %s.", rpcEndpoint.getClass(), method);
+
+    RpcMethodStatistics methodStatistics = statistics.forMethod(gatewayMethod);
+    if (rpcMethod.returnsVoid()) {
+      methodStatistics.onTell(0L);
+      if (!offer(rpcMethod, () -> invokeVoid(rpcMethod, args))) {
+        logRejected(rpcMethod);
+      }
+      return null;
+    }
+
+    // the RpcTimeout annotations are on the parameters of the gateway, not of the endpoint
+    Time callTimeout = gatewayMethod.getTimeout(args, configuration.getTimeout());
+    CompletableFuture<Object> resultFuture = new CompletableFuture<>();
+    long startNanos = methodStatistics.onAsk(0L);
+    resultFuture.whenComplete(
+        (value, failure) -> methodStatistics.onAskCompleted(startNanos, 0L, failure));
+    CompletableFuture<Object> mainThreadFuture = new CompletableFuture<>();
+    if (!offer(rpcMethod, () -> invokeInMainThread(rpcMethod, args, mainThreadFuture))) {
+      logRejected(rpcMethod);
+      mainThreadFuture.completeExceptionally(rejected(rpcMethod));
+    }
+    // the callbacks of the caller must not run in the main thread
+    FutureUtil.forwardAsync(mainThreadFuture, resultFuture, executor);
+    FutureUtil.orTimeout(resultFuture, callTimeout.getSize(), callTimeout.getUnit());
+
+    if (rpcMethod.returnsFuture()) {
+      return resultFuture;
+    }
+    try {
+      return resultFuture.get(callTimeout.getSize(), callTimeout.getUnit());
+    } catch (ExecutionException e) {
+      throw new RpcException(
+          "Failure while obtaining synchronous RPC result.",
+          ExceptionUtil.stripExecutionException(e));
+    }
+  }
+
+  private void invokeVoid(RpcMethodTable.RpcMethod rpcMethod, Object[] args) {
+    if (!state.isRunning()) {
+      LOG.info(
+          "[NettyRpcServer] The rpc endpoint {} is not running. Discarding the call of {}.",
+          rpcEndpoint.getEndpointId(),
+          rpcMethod);
+      return;
+    }
+    try {
+      invokeTimed(rpcMethod, args);
+    } catch (Throwable e) {
+      LOG.error("[NettyRpcServer] Error while executing rpc call {}.", rpcMethod, e);
+    }
+  }
+
+  /** Invokes the rpc method, completing the future with its result in the main thread. */
+  @SuppressWarnings("unchecked")
+  private void invokeInMainThread(
+      RpcMethodTable.RpcMethod rpcMethod, Object[] args, CompletableFuture<Object> resultFuture) {
+    if (!state.isRunning()) {
+      LOG.info(
+          "[NettyRpcServer] The rpc endpoint {} is not running. Discarding the call of {}.",
+          rpcEndpoint.getEndpointId(),
+          rpcMethod);
+      resultFuture.completeExceptionally(notRunning());
+      return;
+    }
+    try {
+      Object result = invokeTimed(rpcMethod, args);
+      if (result instanceof CompletableFuture) {
+        FutureUtil.forward((CompletableFuture<Object>) result, resultFuture);
+      } else {
+        resultFuture.complete(result);
+      }
+    } catch (Throwable e) {
+      LOG.debug("[NettyRpcServer] Reporting back error thrown in rpc call {}.", rpcMethod, e);
+      resultFuture.completeExceptionally(e);
+    }
+  }
+
+  /** Invokes the rpc method, recording the time it takes in the main thread. */
+  private Object invokeTimed(RpcMethodTable.RpcMethod rpcMethod, Object[] args) throws Throwable {
+    final long startNanos = System.nanoTime();
+    try {
+      return rpcMethod.invoke(rpcEndpoint, args);
+    } finally {
+      statistics.forMethod(rpcMethod).onInvocation(System.nanoTime() - startNanos);
+    }
+  }
+
+  private NettyMessage.Response serializeResponse(
+      NettyMessage.Invocation invocation,
+      RpcMethodTable.RpcMethod rpcMethod,
+      @Nullable Object result,
+      @Nullable Throwable failure) {
+    if (failure != null) {
+      return NettyMessage.Response.failure(
+          invocation.getRequestId(), ExceptionUtil.stripCompletionException(failure));
+    }
+    try {
+      SerializedValue<Object> serializedResult =
+          new SerializedValue<>(
+              result,
+              invocation.getResultFormat(),
+              invocation.acceptsCompressedResult() ? configuration.getCompressionThreshold() : 0);
+      long resultSize = NettyMessage.sizeOf(serializedResult);
+      if (resultSize > configuration.getMaximumFrameSize()) {
+        return NettyMessage.Response.failure(
+            invocation.getRequestId(),
+            new RpcException(
+                String.format(
+                    "The result of RPC call %s of %d bytes exceeds the maximum frame size %d.",
+                    rpcMethod.getName(), resultSize, configuration.getMaximumFrameSize())));
+      }
+      return new NettyMessage.Response(invocation.getRequestId(), true, serializedResult);
+    } catch (IOException e) {
+      return NettyMessage.Response.failure(
+          invocation.getRequestId(),
+          new RpcException(
+              "Failed to serialize the result for RPC call : " + rpcMethod.getName() + ".", e));
+    }
+  }
+
+  private void reply(
+      Channel channel, NettyMessage.Invocation invocation, NettyMessage.Response response) {
+    if (invocation.getRequestId() != 0L) {
+      channel.writeAndFlush(response);
+    }
+  }
+
+  private void runInMainThread(Runnable runnable) {
+    if (!state.isRunning()) {
+      LOG.info(
+          "[NettyRpcServer] The rpc endpoint {} is not running. Discarding a runnable.",
+          rpcEndpoint.getEndpointId());
+      return;
+    }
+    try {
+      runnable.run();
+    } catch (Throwable t) {
+      LOG.error("[NettyRpcServer] Caught exception while executing runnable in main thread.", t);
+      ExceptionUtil.rethrowIfFatalErrorOrOOM(t);
+    }
+  }
+
+  private void completeExceptionally(CompletableFuture<?> future, Throwable failure) {
+    executor.execute(() -> future.completeExceptionally(failure));
+  }
+
+  private RpcException notRunning() {
+    return new RpcException(
+        String.format(
+            "Discard message, because the rpc endpoint %s has not been started yet.", address));
+  }
+
+  private RpcRejectedException rejected(RpcMethodTable.RpcMethod rpcMethod) {
+    return new RpcRejectedException(
+        String.format(
+            "The %s lane of the mailbox of the rpc endpoint %s is full with %d messages, try "
+                + "again later.",
+            rpcMethod.getLane(), rpcEndpoint.getEndpointId(), mailbox.getCapacity()));
+  }
+
+  private void logRejected(RpcMethodTable.RpcMethod rpcMethod) {
+    LOG.debug(
+        "[NettyRpcServer] The {} lane of the mailbox of {} is full, rejecting the call of {}.",
+        rpcMethod.getLane(),
+        rpcEndpoint.getEndpointId(),
+        rpcMethod);
+  }
+
+  private ClassLoader getClassLoader() {
+    return getClass().getClassLoader();
+  }
+
+  // ---------------------------------------------------------------------------
+  // Mailbox
+  // ---------------------------------------------------------------------------
+
+  /** Queues a message of the endpoint itself, which is never rejected. */
+  private void send(RpcPriority.Lane lane, Runnable message) {
+    mailbox.add(lane, message);
+    scheduleMailbox();
+  }
+
+  /** Queues a rpc invocation in the lane of its method, unless the lane is full. */
+  private boolean offer(RpcMethodTable.RpcMethod rpcMethod, Runnable invocation) {
+    if (!mailbox.offer(rpcMethod.getLane(), invocation)) {
+      return false;
+    }
+    scheduleMailbox();
+    return true;
+  }
+
+  private void scheduleMailbox() {
+    if (!mailbox.isEmpty() && scheduled.compareAndSet(false, true)) {
+      try {
+        executor.execute(this::processMailbox);
+      } catch (RejectedExecutionException e) {
+        scheduled.set(false);
+        LOG.debug(
+            "[NettyRpcServer] Executor shut down, dropping the messages of {}.",
+            rpcEndpoint.getEndpointId());
+      }
+    }
+  }
+
+  private void processMailbox() {
+    mainThreadValidator.enterMainThread();
+    try {
+      for (int i = 0; i < configuration.getThroughput(); i++) {
+        Runnable message = mailbox.poll();
+        if (message == null) {
+          break;
+        }
+        message.run();
+      }
+    } finally {
+      mainThreadValidator.exitMainThread();
+      scheduled.set(false);
+    }
+    // the messages added while the flag was set are processed in a next run
+    scheduleMailbox();
+  }
+
+  // ---------------------------------------------------------------------------
+  // Lifecycle, in the main thread
+  // ---------------------------------------------------------------------------
+
+  private void handleStart() {
+    if (state == State.STOPPED) {
+      state = State.STARTED;
+      try {
+        rpcEndpoint.internalCallOnStart();
+      } catch (Throwable throwable) {
+        terminated(
+            new RpcException(
+                String.format("Could not start RpcEndpoint %s.", rpcEndpoint.getEndpointId()),
+                throwable));
+      }
+    } else if (state != State.STARTED) {
+      LOG.warn("[NettyRpcServer] {} cannot be started in state {}.", this, state);
+    }
+  }
+
+  private void handleStop() {
+    if (state == State.STARTED) {
+      state = State.STOPPED;
+    } else if (state != State.STOPPED) {
+      LOG.warn("[NettyRpcServer] {} cannot be stopped in state {}.", this, state);
+    }
+  }
+
+  private void handleTerminate() {
+    if (state == State.STARTED) {
+      state = State.TERMINATING;
+      CompletableFuture<Void> stopFuture;
+      try {
+        stopFuture = rpcEndpoint.internalCallOnStop();
+      } catch (Throwable t) {
+        stopFuture =
+            FutureUtil.completedExceptionally(
+                new RpcException(
+                    String.format(
+                        "Failure while stopping RpcEndpoint %s.", rpcEndpoint.getEndpointId()),
+                    t));
+      }
+      stopFuture.whenComplete(
+          (ignored, throwable) -> send(RpcPriority.Lane.CONTROL, () -> terminated(throwable)));
+    } else if (state == State.STOPPED) {
+      terminated(null);
+    }
+  }
+
+  private void terminated(@Nullable Throwable cause) {
+    if (state == State.TERMINATED) {
+      return;
+    }
+    state = State.TERMINATED;
+    if (cause == null) {
+      terminationFuture.complete(null);
+    } else {
+      terminationFuture.completeExceptionally(cause);
+    }
+  }
+
+  private enum State {
+    STOPPED,
+    STARTED,
+    TERMINATING,
+    TERMINATED;
+
+    boolean isRunning() {
+      return this == STARTED || this == TERMINATING;
+    }
+  }
+}
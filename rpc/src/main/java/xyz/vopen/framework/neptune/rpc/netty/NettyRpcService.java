@@ -0,0 +1,682 @@
+package xyz.vopen.framework.neptune.rpc.netty;
+
+import com.google.common.base.Preconditions;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import xyz.vopen.framework.neptune.common.concurrent.FutureUtil;
+import xyz.vopen.framework.neptune.common.concurrent.ScheduledExecutor;
+import xyz.vopen.framework.neptune.common.concurrent.ScheduledExecutorServiceAdapter;
+import xyz.vopen.framework.neptune.common.serialization.PayloadFormat;
+import xyz.vopen.framework.neptune.common.utils.ExecutorStUtil;
+import xyz.vopen.framework.neptune.common.utils.ExecutorThreadFactory;
+import xyz.vopen.framework.neptune.common.utils.SerializedValue;
+import xyz.vopen.framework.neptune.rpc.InProcessEndpointRegistry;
+import xyz.vopen.framework.neptune.rpc.RpcEndpoint;
+import xyz.vopen.framework.neptune.rpc.RpcGateway;
+import xyz.vopen.framework.neptune.rpc.RpcServer;
+import xyz.vopen.framework.neptune.rpc.RpcService;
+import xyz.vopen.framework.neptune.rpc.RpcStatistics;
+import xyz.vopen.framework.neptune.rpc.RpcUtil;
+import xyz.vopen.framework.neptune.rpc.exceptions.HandshakeException;
+import xyz.vopen.framework.neptune.rpc.exceptions.RpcConnectionException;
+import xyz.vopen.framework.neptune.rpc.exceptions.RpcRuntimeException;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.net.BindException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link NettyRpcService} {@link RpcService} implementation over Netty, an alternative to the Akka
+ * remoting of the {@code AkkaRpcService}.
+ *
+ * <p>The messages are written in the binary form of {@link NettyMessageCodec} to pooled direct
+ * buffers, and the requests of a gateway are correlated with their responses by id on a single
+ * {@link NettyConnection} per remote service. The invocations read on the event loops are handed to
+ * the main thread of their endpoint, see {@link NettyRpcServer}, which keeps the threading model of
+ * the {@link RpcEndpoint}.
+ *
+ * <p>An endpoint is addressed as {@code neptune://host:port/endpointId}, see {@link
+ * NettyRpcServiceUtils#getRpcUrl(String, int, String)}. The endpoints of the process are called in
+ * their main thread directly, see {@link InProcessEndpointRegistry}.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+@ThreadSafe
+public class NettyRpcService implements RpcService {
+  private static final Logger LOG = LoggerFactory.getLogger(NettyRpcService.class);
+
+  static final int VERSION = 1;
+
+  private final Object lock = new Object();
+
+  private final NettyRpcServiceConfiguration configuration;
+
+  /** Host the service is reached at. */
+  private final String address;
+
+  private final int port;
+
+  private final EventLoopGroup bossGroup;
+
+  private final EventLoopGroup ioGroup;
+
+  private final Channel serverChannel;
+
+  private final Bootstrap clientBootstrap;
+
+  /** Runs the main threads of the endpoints and completes the calls. */
+  private final ExecutorService executor;
+
+  private final ScheduledExecutorService timer;
+
+  private final ScheduledExecutor scheduledExecutor;
+
+  private final RpcStatistics statistics = new RpcStatistics();
+
+  private final ConcurrentMap<String, NettyRpcServer> serversById = new ConcurrentHashMap<>();
+
+  private final ConcurrentMap<Integer, NettyRpcServer> serversByHandle = new ConcurrentHashMap<>();
+
+  private final AtomicInteger nextHandle = new AtomicInteger();
+
+  /** Connections to the other services by host and port. */
+  private final ConcurrentMap<String, CompletableFuture<NettyConnection>> connections =
+      new ConcurrentHashMap<>();
+
+  private final CompletableFuture<Void> terminationFuture = new CompletableFuture<>();
+
+  private volatile boolean stopped;
+
+  /**
+   * Starts a service listening on the first free port of the given ones.
+   *
+   * @param address Host the service is reached at.
+   * @param externalPort Port the service is reached at, 0 if the port it listens on.
+   * @param bindAddress Address to listen on.
+   * @param bindPorts Ports to try to listen on, in order.
+   * @throws BindException if none of the ports is free.
+   */
+  NettyRpcService(
+      NettyRpcServiceConfiguration configuration,
+      String address,
+      int externalPort,
+      String bindAddress,
+      Iterator<Integer> bindPorts)
+      throws Exception {
+    this.configuration = Preconditions.checkNotNull(configuration);
+    this.address = Preconditions.checkNotNull(address);
+    this.bossGroup = new NioEventLoopGroup(1, new ExecutorThreadFactory("neptune-rpc-netty-boss"));
+    this.ioGroup =
+        new NioEventLoopGroup(
+            configuration.getIoThreads(), new ExecutorThreadFactory("neptune-rpc-netty-io"));
+    this.executor =
+        Executors.newFixedThreadPool(
+            configuration.getEndpointThreads(), new ExecutorThreadFactory("neptune-rpc"));
+    this.timer =
+        Executors.newSingleThreadScheduledExecutor(
+            new ExecutorThreadFactory("neptune-rpc-timer"));
+    this.scheduledExecutor = new ScheduledExecutorServiceAdapter(timer);
+    this.clientBootstrap =
+        new Bootstrap()
+            .group(ioGroup)
+            .channel(NioSocketChannel.class)
+            .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+            .option(ChannelOption.TCP_NODELAY, true)
+            .option(ChannelOption.SO_KEEPALIVE, true)
+            .option(
+                ChannelOption.CONNECT_TIMEOUT_MILLIS,
+                (int) configuration.getTimeout().toMilliseconds());
+
+    try {
+      this.serverChannel = bind(bindAddress, bindPorts);
+    } catch (Exception e) {
+      shutDownThreads();
+      throw e;
+    }
+    int boundPort = ((InetSocketAddress) serverChannel.localAddress()).getPort();
+    this.port = externalPort > 0 ? externalPort : boundPort;
+    LOG.info(
+        "[NettyRpcService] Listening on {}:{}, reached at {}:{}.",
+        bindAddress,
+        boundPort,
+        address,
+        port);
+  }
+
+  @Override
+  public String getAddress() {
+    return address;
+  }
+
+  @Override
+  public int getPort() {
+    return port;
+  }
+
+  @Override
+  public <C extends RpcGateway> CompletableFuture<C> connect(String address, Class<C> clazz) {
+    Preconditions.checkState(!stopped, "RpcService is stopped");
+
+    // an endpoint of this process is called in its main thread directly
+    final C inProcessGateway =
+        configuration.isInProcessCalls()
+            ? InProcessEndpointRegistry.connect(
+                address, clazz, this, configuration.getTimeout(), statistics)
+            : null;
+    if (inProcessGateway != null) {
+      LOG.debug(
+          "[NettyRpcService] Connected to in-process RPC endpoint with address {}. "
+              + "Returning a {} gateway.",
+          address,
+          clazz.getName());
+      return CompletableFuture.completedFuture(inProcessGateway);
+    }
+
+    final NettyRpcServiceUtils.RpcUrl rpcUrl;
+    try {
+      rpcUrl = NettyRpcServiceUtils.parseRpcUrl(address);
+    } catch (IllegalArgumentException e) {
+      return FutureUtil.completedExceptionally(
+          new RpcConnectionException(
+              String.format("Could not connect to rpc endpoint under address %s.", address), e));
+    }
+
+    LOG.debug(
+        "[NettyRpcService] Try to connect to remote RPC endpoint with address {}. "
+            + "Returning a {} gateway.",
+        address,
+        clazz.getName());
+
+    final long startNanos = System.nanoTime();
+    return connection(rpcUrl.getHost(), rpcUrl.getPort())
+        .thenCompose(
+            connection ->
+                connection
+                    .ask(
+                        new NettyMessage.Handshake(
+                            connection.nextRequestId(),
+                            VERSION,
+                            rpcUrl.getEndpointId(),
+                            clazz.getName(),
+                            configuration.getPayloadFormats(),
+                            configuration.getCompressionThreshold() > 0),
+                        configuration.getTimeout())
+                    .thenApply(
+                        response -> {
+                          statistics.onHandshake(System.nanoTime() - startNanos);
+                          return createGateway(address, rpcUrl, clazz, connection, response);
+                        }));
+  }
+
+  @Override
+  public <C extends RpcEndpoint & RpcGateway> RpcServer startServer(C rpcEndpoint) {
+    Preconditions.checkNotNull(rpcEndpoint, "rpc endpoint");
+
+    final String endpointAddress =
+        NettyRpcServiceUtils.getRpcUrl(address, port, rpcEndpoint.getEndpointId());
+    final NettyRpcServer server =
+        new NettyRpcServer(
+            rpcEndpoint,
+            nextHandle.incrementAndGet(),
+            endpointAddress,
+            address,
+            configuration,
+            executor,
+            timer,
+            statistics);
+
+    synchronized (lock) {
+      Preconditions.checkState(!stopped, "RpcService is stopped");
+      if (serversById.putIfAbsent(rpcEndpoint.getEndpointId(), server) != null) {
+        throw new RpcRuntimeException(
+            String.format(
+                "Could not create the %s for %s, the endpoint id is taken.",
+                NettyRpcServer.class.getSimpleName(), rpcEndpoint.getEndpointId()));
+      }
+      serversByHandle.put(server.getHandle(), server);
+    }
+
+    LOG.info(
+        "[NettyRpcService] Starting RPC endpoint for {} at {} .",
+        rpcEndpoint.getClass().getName(),
+        endpointAddress);
+
+    Set<Class<?>> implementedRpcGateways =
+        new HashSet<>(RpcUtil.extractImplementedRpcGateways(rpcEndpoint.getClass()));
+    implementedRpcGateways.add(RpcServer.class);
+
+    RpcServer selfGateway =
+        (RpcServer)
+            Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                implementedRpcGateways.toArray(new Class<?>[0]),
+                server);
+
+    final boolean inProcessCalls = configuration.isInProcessCalls();
+    if (inProcessCalls) {
+      InProcessEndpointRegistry.register(
+          endpointAddress, rpcEndpoint, selfGateway, null, executor, statistics);
+    }
+    server
+        .getTerminationFuture()
+        .whenComplete(
+            (ignored, throwable) -> {
+              serversById.remove(rpcEndpoint.getEndpointId(), server);
+              serversByHandle.remove(server.getHandle(), server);
+              if (inProcessCalls) {
+                InProcessEndpointRegistry.unregister(endpointAddress, selfGateway);
+              }
+            });
+
+    return selfGateway;
+  }
+
+  @Override
+  public void stopServer(RpcServer selfGateway) {
+    final NettyRpcServer server = serverOf(selfGateway);
+    if (server == null || serversByHandle.get(server.getHandle()) != server) {
+      LOG.debug(
+          "[NettyRpcService] RPC endpoint {} already stopped or from different RPC service",
+          selfGateway.getAddress());
+      return;
+    }
+    synchronized (lock) {
+      if (stopped) {
+        return;
+      }
+    }
+    server.terminate();
+  }
+
+  @Override
+  public CompletableFuture<Void> stopService() {
+    final Collection<CompletableFuture<Void>> serverTerminationFutures;
+
+    synchronized (lock) {
+      if (stopped) {
+        return terminationFuture;
+      }
+
+      LOG.info("[NettyRpcService] Stopping Netty RPC service.");
+
+      stopped = true;
+
+      serverTerminationFutures = new ArrayList<>(serversById.size());
+      for (NettyRpcServer server : serversById.values()) {
+        serverTerminationFutures.add(server.terminate());
+      }
+    }
+
+    FutureUtil.waitForAll(serverTerminationFutures)
+        .whenComplete(
+            (ignored, throwable) -> {
+              serverChannel.close();
+              for (CompletableFuture<NettyConnection> connection : connections.values()) {
+                connection.thenAccept(NettyConnection::close);
+              }
+              shutDownThreads()
+                  .whenComplete(
+                      (alsoIgnored, shutdownFailure) -> {
+                        if (throwable != null) {
+                          terminationFuture.completeExceptionally(throwable);
+                        } else if (shutdownFailure != null) {
+                          terminationFuture.completeExceptionally(shutdownFailure);
+                        } else {
+                          terminationFuture.complete(null);
+                        }
+                        LOG.info("[NettyRpcService] Stopped Netty RPC service.");
+                      });
+            });
+
+    return terminationFuture;
+  }
+
+  @Override
+  public CompletableFuture<Void> getTerminationFuture() {
+    return terminationFuture;
+  }
+
+  @Override
+  public RpcStatistics getStatistics() {
+    return statistics;
+  }
+
+  @Override
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  @Override
+  public ScheduledExecutor getScheduledExecutor() {
+    return scheduledExecutor;
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleRunnable(Runnable runnable, long delay, TimeUnit unit) {
+    Preconditions.checkNotNull(runnable, "runnable");
+    Preconditions.checkNotNull(unit, "unit");
+    Preconditions.checkArgument(delay >= 0L, "delay must be zero or larger");
+
+    return timer.schedule(() -> executor.execute(runnable), delay, unit);
+  }
+
+  @Override
+  public void execute(Runnable runnable) {
+    executor.execute(runnable);
+  }
+
+  @Override
+  public <T> CompletableFuture<T> execute(Callable<T> callable) {
+    CompletableFuture<T> resultFuture = new CompletableFuture<>();
+    executor.execute(
+        () -> {
+          try {
+            resultFuture.complete(callable.call());
+          } catch (Throwable t) {
+            resultFuture.completeExceptionally(t);
+          }
+        });
+    return resultFuture;
+  }
+
+  // =====================  Internal  =====================
+
+  private Channel bind(String bindAddress, Iterator<Integer> bindPorts) throws Exception {
+    final RequestHandler requestHandler = new RequestHandler();
+    ServerBootstrap serverBootstrap =
+        new ServerBootstrap()
+            .group(bossGroup, ioGroup)
+            .channel(NioServerSocketChannel.class)
+            .option(ChannelOption.SO_REUSEADDR, true)
+            .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+            .childOption(ChannelOption.TCP_NODELAY, true)
+            .childOption(ChannelOption.SO_KEEPALIVE, true)
+            .childHandler(
+                new ChannelInitializer<SocketChannel>() {
+                  @Override
+                  protected void initChannel(SocketChannel channel) {
+                    channel
+                        .pipeline()
+                        .addLast(new FlushConsolidationHandler())
+                        .addLast(new NettyMessageCodec.Decoder(configuration.getMaximumFrameSize()))
+                        .addLast(NettyMessageCodec.Encoder.INSTANCE)
+                        .addLast(requestHandler);
+                  }
+                });
+
+    while (bindPorts.hasNext()) {
+      int bindPort = bindPorts.next();
+      ChannelFuture bindFuture = serverBootstrap.bind(bindAddress, bindPort).await();
+      if (bindFuture.isSuccess()) {
+        return bindFuture.channel();
+      }
+      if (!(bindFuture.cause() instanceof BindException)) {
+        throw new IOException(
+            String.format("Could not listen on %s:%d.", bindAddress, bindPort),
+            bindFuture.cause());
+      }
+      LOG.debug("[NettyRpcService] Port {} is taken.", bindPort);
+    }
+    throw new BindException("Could not start the netty rpc service on any port in port range");
+  }
+
+  private CompletableFuture<Void> shutDownThreads() {
+    long timeoutMillis = configuration.getTimeout().toMilliseconds();
+    CompletableFuture<Void> bossTermination = new CompletableFuture<>();
+    CompletableFuture<Void> ioTermination = new CompletableFuture<>();
+    bossGroup
+        .shutdownGracefully(0L, timeoutMillis, TimeUnit.MILLISECONDS)
+        .addListener(future -> bossTermination.complete(null));
+    ioGroup
+        .shutdownGracefully(0L, timeoutMillis, TimeUnit.MILLISECONDS)
+        .addListener(future -> ioTermination.complete(null));
+    Collection<CompletableFuture<Void>> terminationFutures = new ArrayList<>(3);
+    terminationFutures.add(bossTermination);
+    terminationFutures.add(ioTermination);
+    terminationFutures.add(
+        ExecutorStUtil.nonBlockingShutdown(timeoutMillis, TimeUnit.MILLISECONDS, executor, timer));
+    return FutureUtil.waitForAll(terminationFutures);
+  }
+
+  /** Returns the connection to the service at the host and port, connecting if there is none. */
+  private CompletableFuture<NettyConnection> connection(String host, int port) {
+    final String key = host + ':' + port;
+    while (true) {
+      CompletableFuture<NettyConnection> connectionFuture = connections.get(key);
+      if (connectionFuture == null) {
+        CompletableFuture<NettyConnection> newConnectionFuture = new CompletableFuture<>();
+        connectionFuture = connections.putIfAbsent(key, newConnectionFuture);
+        if (connectionFuture == null) {
+          connect(key, host, port, newConnectionFuture);
+          return newConnectionFuture;
+        }
+      }
+      if (!connectionFuture.isDone() || isActive(connectionFuture)) {
+        return connectionFuture;
+      }
+      // closed or failed, replaced by a new connection
+      connections.remove(key, connectionFuture);
+    }
+  }
+
+  private static boolean isActive(CompletableFuture<NettyConnection> connectionFuture) {
+    return !connectionFuture.isCompletedExceptionally() && connectionFuture.join().isActive();
+  }
+
+  private void connect(
+      String key, String host, int port, CompletableFuture<NettyConnection> connectionFuture) {
+    Bootstrap bootstrap =
+        clientBootstrap
+            .clone()
+            .handler(
+                new ChannelInitializer<SocketChannel>() {
+                  @Override
+                  protected void initChannel(SocketChannel channel) {
+                    channel.attr(NettyConnection.CONNECTION).set(
+                        new NettyConnection(channel, key, executor));
+                    channel
+                        .pipeline()
+                        .addLast(new FlushConsolidationHandler())
+                        .addLast(new NettyMessageCodec.Decoder(configuration.getMaximumFrameSize()))
+                        .addLast(NettyMessageCodec.Encoder.INSTANCE)
+                        .addLast(NettyConnection.ResponseHandler.INSTANCE);
+                  }
+                });
+
+    bootstrap
+        .connect(host, port)
+        .addListener(
+            (ChannelFuture connectFuture) -> {
+              if (connectFuture.isSuccess()) {
+                Channel channel = connectFuture.channel();
+                channel
+                    .closeFuture()
+                    .addListener(closed -> connections.remove(key, connectionFuture));
+                connectionFuture.complete(channel.attr(NettyConnection.CONNECTION).get());
+              } else {
+                connections.remove(key, connectionFuture);
+                connectionFuture.completeExceptionally(
+                    new RpcConnectionException(
+                        String.format("Could not connect to rpc service at %s.", key),
+                        connectFuture.cause()));
+              }
+            });
+  }
+
+  @SuppressWarnings("unchecked")
+  private <C extends RpcGateway> C createGateway(
+      String address,
+      NettyRpcServiceUtils.RpcUrl rpcUrl,
+      Class<C> clazz,
+      NettyConnection connection,
+      NettyMessage response) {
+    if (!(response instanceof NettyMessage.HandshakeSuccess)) {
+      throw new CompletionException(handshakeFailure(address, response));
+    }
+    NettyMessage.HandshakeSuccess handshakeSuccess = (NettyMessage.HandshakeSuccess) response;
+    InvocationHandler invocationHandler =
+        new NettyInvocationHandler(
+            address,
+            rpcUrl.getHost(),
+            connection,
+            handshakeSuccess.getEndpointHandle(),
+            configuration.getTimeout(),
+            configuration.getMaximumFrameSize(),
+            handshakeSuccess.getPayloadFormat(),
+            handshakeSuccess.isCompression() ? configuration.getCompressionThreshold() : 0,
+            statistics);
+
+    // Rather than using the System ClassLoader directly, we derive the ClassLoader
+    // from this class . That works better in cases where Neptune runs embedded and all Neptune
+    // code is loaded dynamically (for example from an OSGI bundle) through a custom ClassLoader
+    ClassLoader classLoader = getClass().getClassLoader();
+    return (C) Proxy.newProxyInstance(classLoader, new Class<?>[] {clazz}, invocationHandler);
+  }
+
+  private Throwable handshakeFailure(String address, NettyMessage response) {
+    if (response instanceof NettyMessage.Response) {
+      SerializedValue<?> value = ((NettyMessage.Response) response).getValue();
+      try {
+        Object failure = value == null ? null : value.deserializeValue(getClass().getClassLoader());
+        if (failure instanceof Throwable) {
+          return (Throwable) failure;
+        }
+      } catch (IOException | ClassNotFoundException e) {
+        return new RpcConnectionException(
+            String.format("Could not read the handshake response of %s.", address), e);
+      }
+    }
+    return new RpcConnectionException(
+        String.format("Unexpected handshake response of %s.", address));
+  }
+
+  private static NettyRpcServer serverOf(RpcServer selfGateway) {
+    if (Proxy.isProxyClass(selfGateway.getClass())) {
+      InvocationHandler invocationHandler = Proxy.getInvocationHandler(selfGateway);
+      if (invocationHandler instanceof NettyRpcServer) {
+        return (NettyRpcServer) invocationHandler;
+      }
+    }
+    return null;
+  }
+
+  private NettyMessage handshake(NettyMessage.Handshake handshake) {
+    NettyRpcServer server = serversById.get(handshake.getEndpointId());
+    if (server == null) {
+      return NettyMessage.Response.failure(
+          handshake.getRequestId(),
+          new RpcConnectionException(
+              String.format(
+                  "Could not connect to rpc endpoint under address %s.",
+                  NettyRpcServiceUtils.getRpcUrl(address, port, handshake.getEndpointId()))));
+    }
+    if (handshake.getVersion() != VERSION) {
+      return NettyMessage.Response.failure(
+          handshake.getRequestId(),
+          new HandshakeException(
+              String.format(
+                  "Version mismatch between source (%s) and target (%s) rpc component. "
+                      + "Please verify that all components have the same version.",
+                  handshake.getVersion(), VERSION)));
+    }
+    if (!isGatewaySupported(handshake.getRpcGateway(), server)) {
+      return NettyMessage.Response.failure(
+          handshake.getRequestId(),
+          new HandshakeException(
+              String.format(
+                  "The rpc endpoint does not support the gateway %s.",
+                  handshake.getRpcGateway())));
+    }
+    PayloadFormat payloadFormat =
+        PayloadFormat.negotiate(handshake.getPayloadFormats(), configuration.getPayloadFormats());
+    // compressed both ways once both sides read it, each side with its own threshold
+    boolean compression = handshake.isCompression() && configuration.getCompressionThreshold() > 0;
+    return new NettyMessage.HandshakeSuccess(
+        handshake.getRequestId(), server.getHandle(), payloadFormat, compression);
+  }
+
+  private boolean isGatewaySupported(String rpcGateway, NettyRpcServer server) {
+    try {
+      return Class.forName(rpcGateway, false, getClass().getClassLoader())
+          .isAssignableFrom(server.getRpcEndpoint().getClass());
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  /** Serves the requests read on the server channels. */
+  @ChannelHandler.Sharable
+  private final class RequestHandler extends SimpleChannelInboundHandler<NettyMessage> {
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, NettyMessage message) {
+      if (message instanceof NettyMessage.Invocation) {
+        NettyMessage.Invocation invocation = (NettyMessage.Invocation) message;
+        NettyRpcServer server = serversByHandle.get(invocation.getEndpointHandle());
+        if (server != null) {
+          server.handleRemoteInvocation(invocation, ctx.channel());
+        } else if (invocation.getRequestId() != 0L) {
+          ctx.writeAndFlush(
+              NettyMessage.Response.failure(
+                  invocation.getRequestId(),
+                  new RpcConnectionException(
+                      "The rpc endpoint of the invocation has been terminated.")));
+        }
+      } else if (message instanceof NettyMessage.Handshake) {
+        ctx.writeAndFlush(handshake((NettyMessage.Handshake) message));
+      } else {
+        LOG.warn(
+            "[NettyRpcService] Received unexpected message {} from {}, closing the connection.",
+            message.getClass().getSimpleName(),
+            ctx.channel().remoteAddress());
+        ctx.close();
+      }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      LOG.warn(
+          "[NettyRpcService] Closing the connection from {}.",
+          ctx.channel().remoteAddress(),
+          cause);
+      ctx.close();
+    }
+  }
+}
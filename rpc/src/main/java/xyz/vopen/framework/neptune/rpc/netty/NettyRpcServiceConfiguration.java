@@ -0,0 +1,135 @@
+package xyz.vopen.framework.neptune.rpc.netty;
+
+import com.google.common.base.Preconditions;
+import xyz.vopen.framework.neptune.common.configuration.AkkaOptions;
+import xyz.vopen.framework.neptune.common.configuration.Configuration;
+import xyz.vopen.framework.neptune.common.configuration.RpcOptions;
+import xyz.vopen.framework.neptune.common.serialization.PayloadFormat;
+import xyz.vopen.framework.neptune.common.utils.time.Time;
+import xyz.vopen.framework.neptune.rpc.akka.AkkaRpcServiceUtils;
+import xyz.vopen.framework.neptune.rpc.akka.AkkaUtils;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * {@link NettyRpcServiceConfiguration} Configuration for the {@link NettyRpcService}. The timeout,
+ * the maximum frame size, the payload formats and the compression threshold are read from the same
+ * options as for the Akka transport.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class NettyRpcServiceConfiguration {
+
+  private final @Nonnull Time timeout;
+
+  private final long maximumFrameSize;
+
+  /** Payload formats of the remote calls, in order of preference. */
+  private final @Nonnull List<PayloadFormat> payloadFormats;
+
+  /** Size from which the remote payloads are compressed, 0 if never. */
+  private final int compressionThreshold;
+
+  /** Event loop threads of the connections. */
+  private final int ioThreads;
+
+  /** Threads the main threads of the endpoints run on. */
+  private final int endpointThreads;
+
+  /** Messages an endpoint processes before yielding its thread. */
+  private final int throughput;
+
+  /** Rpc invocations queued in a lane of the mailbox of an endpoint, 0 if unbounded. */
+  private final int mailboxCapacity;
+
+  /** Whether the endpoints of the same process are called directly. */
+  private final boolean inProcessCalls;
+
+  public NettyRpcServiceConfiguration(
+      @Nonnull Time timeout,
+      long maximumFrameSize,
+      @Nonnull List<PayloadFormat> payloadFormats,
+      int compressionThreshold,
+      int ioThreads,
+      int endpointThreads,
+      int throughput,
+      int mailboxCapacity,
+      boolean inProcessCalls) {
+    Preconditions.checkArgument(maximumFrameSize > 0, "Maximum frame size must be positive.");
+    Preconditions.checkArgument(
+        compressionThreshold >= 0, "The compression threshold must not be negative.");
+    Preconditions.checkArgument(ioThreads > 0, "The io threads must be positive.");
+    Preconditions.checkArgument(endpointThreads > 0, "The endpoint threads must be positive.");
+    Preconditions.checkArgument(throughput > 0, "The throughput must be positive.");
+    Preconditions.checkArgument(
+        mailboxCapacity >= 0, "The mailbox capacity must not be negative.");
+    this.timeout = Preconditions.checkNotNull(timeout);
+    this.maximumFrameSize = maximumFrameSize;
+    this.payloadFormats = Preconditions.checkNotNull(payloadFormats);
+    this.compressionThreshold = compressionThreshold;
+    this.ioThreads = ioThreads;
+    this.endpointThreads = endpointThreads;
+    this.throughput = throughput;
+    this.mailboxCapacity = mailboxCapacity;
+    this.inProcessCalls = inProcessCalls;
+  }
+
+  public @Nonnull Time getTimeout() {
+    return timeout;
+  }
+
+  public long getMaximumFrameSize() {
+    return maximumFrameSize;
+  }
+
+  public @Nonnull List<PayloadFormat> getPayloadFormats() {
+    return payloadFormats;
+  }
+
+  public int getCompressionThreshold() {
+    return compressionThreshold;
+  }
+
+  public int getIoThreads() {
+    return ioThreads;
+  }
+
+  public int getEndpointThreads() {
+    return endpointThreads;
+  }
+
+  public int getThroughput() {
+    return throughput;
+  }
+
+  public int getMailboxCapacity() {
+    return mailboxCapacity;
+  }
+
+  public boolean isInProcessCalls() {
+    return inProcessCalls;
+  }
+
+  public static NettyRpcServiceConfiguration fromConfiguration(Configuration configuration) {
+    final int cores = Runtime.getRuntime().availableProcessors();
+    final int ioThreads = configuration.getInteger(RpcOptions.NETTY_IO_THREADS);
+    final int endpointThreads = configuration.getInteger(RpcOptions.NETTY_ENDPOINT_THREADS);
+
+    return new NettyRpcServiceConfiguration(
+        AkkaUtils.getTimeoutAsTime(configuration),
+        AkkaRpcServiceUtils.extractMaximumFrameSize(configuration),
+        PayloadFormat.parseList(configuration.getString(AkkaOptions.RPC_PAYLOAD_FORMATS)),
+        configuration.getInteger(AkkaOptions.RPC_COMPRESSION_THRESHOLD),
+        ioThreads > 0 ? ioThreads : 2 * cores,
+        endpointThreads > 0 ? endpointThreads : cores,
+        configuration.getInteger(RpcOptions.NETTY_THROUGHPUT),
+        configuration.getInteger(RpcOptions.MAILBOX_CAPACITY),
+        configuration.getBoolean(RpcOptions.IN_PROCESS_CALLS));
+  }
+
+  public static NettyRpcServiceConfiguration defaultConfiguration() {
+    return fromConfiguration(new Configuration());
+  }
+}
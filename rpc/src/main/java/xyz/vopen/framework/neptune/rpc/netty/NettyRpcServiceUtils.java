@@ -0,0 +1,146 @@
+package xyz.vopen.framework.neptune.rpc.netty;
+
+import com.google.common.base.Preconditions;
+import xyz.vopen.framework.neptune.common.configuration.Configuration;
+import xyz.vopen.framework.neptune.common.utils.NetUtils;
+
+import javax.annotation.Nullable;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Optional;
+
+import static xyz.vopen.framework.neptune.common.utils.NetUtils.isValidClientPort;
+
+/**
+ * {@link NettyRpcServiceUtils} Helper methods to start a {@link NettyRpcService} and to address
+ * its endpoints.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class NettyRpcServiceUtils {
+
+  private static final String PROTOCOL = "neptune";
+
+  /** This class is not meant to be instantiated. */
+  private NettyRpcServiceUtils() {}
+
+  // =====================  RPC instantiation   =====================
+
+  /**
+   * Starts a remote rpc service, like {@code AkkaRpcServiceUtils#createRemoteRpcService}: it is
+   * reached at the external address and the first port of the range it can listen on, or listens on
+   * the bind port if given.
+   */
+  public static NettyRpcService createRemoteRpcService(
+      Configuration configuration,
+      @Nullable String externalAddress,
+      String externalPortRange,
+      @Nullable String bindAddress,
+      Optional<Integer> bindPort)
+      throws Exception {
+    final Iterator<Integer> externalPorts;
+    try {
+      externalPorts = NetUtils.getPortRangeFromString(externalPortRange);
+    } catch (Exception e) {
+      throw new IllegalArgumentException("Invalid port range definition: " + externalPortRange);
+    }
+
+    final NettyRpcServiceConfiguration serviceConfiguration =
+        NettyRpcServiceConfiguration.fromConfiguration(configuration);
+    final String address =
+        externalAddress == null
+            ? InetAddress.getLoopbackAddress().getHostAddress()
+            : externalAddress;
+    final String listenAddress =
+        bindAddress == null ? NetUtils.getWildcardIPAddress() : bindAddress;
+
+    if (bindPort.isPresent()) {
+      Preconditions.checkArgument(externalPorts.hasNext(), "Empty port range.");
+      return new NettyRpcService(
+          serviceConfiguration,
+          address,
+          externalPorts.next(),
+          listenAddress,
+          Collections.singletonList(bindPort.get()).iterator());
+    }
+    return new NettyRpcService(serviceConfiguration, address, 0, listenAddress, externalPorts);
+  }
+
+  // =====================   RPC endpoint addressing  =====================
+
+  /**
+   * @param hostname The hostname or address where the target RPC service is listening.
+   * @param port The port where the target RPC service is listening.
+   * @param endpointName The name of the RPC endpoint.
+   * @return The RPC URL of the specified RPC endpoint.
+   */
+  public static String getRpcUrl(String hostname, int port, String endpointName) {
+    Preconditions.checkNotNull(hostname, "hostname is null");
+    Preconditions.checkNotNull(endpointName, "endpointName is null");
+    Preconditions.checkArgument(isValidClientPort(port), "port must be in [1, 65535]");
+
+    return PROTOCOL
+        + "://"
+        + NetUtils.unresolvedHostAndPortToNormalizedString(hostname, port)
+        + '/'
+        + endpointName;
+  }
+
+  /**
+   * Parses an address returned by {@link #getRpcUrl(String, int, String)}.
+   *
+   * @throws IllegalArgumentException if the address is not one.
+   */
+  static RpcUrl parseRpcUrl(String address) {
+    final URI uri;
+    try {
+      uri = new URI(address);
+    } catch (URISyntaxException e) {
+      throw new IllegalArgumentException("Invalid rpc url " + address + '.', e);
+    }
+    Preconditions.checkArgument(
+        PROTOCOL.equals(uri.getScheme())
+            && uri.getHost() != null
+            && uri.getPort() > 0
+            && uri.getPath() != null
+            && uri.getPath().length() > 1,
+        "Invalid rpc url %s, expected %s://host:port/endpoint.",
+        address,
+        PROTOCOL);
+    String host = uri.getHost();
+    if (host.startsWith("[") && host.endsWith("]")) {
+      // an IPv6 address
+      host = host.substring(1, host.length() - 1);
+    }
+    return new RpcUrl(host, uri.getPort(), uri.getPath().substring(1));
+  }
+
+  /** Host, port and endpoint id of a rpc url. */
+  static final class RpcUrl {
+    private final String host;
+    private final int port;
+    private final String endpointId;
+
+    private RpcUrl(String host, int port, String endpointId) {
+      this.host = host;
+      this.port = port;
+      this.endpointId = endpointId;
+    }
+
+    String getHost() {
+      return host;
+    }
+
+    int getPort() {
+      return port;
+    }
+
+    String getEndpointId() {
+      return endpointId;
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package xyz.vopen.framework.neptune.rpc;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link RpcMailboxTest} Tests of the {@link RpcMailbox}: the order of the lanes and of the
+ * messages of a lane, and the capacity bounding the offered messages but not the added ones.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class RpcMailboxTest {
+
+  @Test
+  public void testPollTakesLanesInPriorityOrder() {
+    RpcMailbox<String> mailbox = new RpcMailbox<>(0);
+    mailbox.offer(RpcPriority.Lane.NORMAL, "normal-1");
+    mailbox.offer(RpcPriority.Lane.HEARTBEAT, "heartbeat-1");
+    mailbox.add(RpcPriority.Lane.NORMAL, "normal-2");
+    mailbox.add(RpcPriority.Lane.CONTROL, "control-1");
+    mailbox.offer(RpcPriority.Lane.HEARTBEAT, "heartbeat-2");
+    mailbox.offer(RpcPriority.Lane.CONTROL, "control-2");
+
+    assertEquals(
+        Arrays.asList(
+            "control-1", "control-2", "heartbeat-1", "heartbeat-2", "normal-1", "normal-2"),
+        drain(mailbox));
+    assertTrue(mailbox.isEmpty());
+    assertNull(mailbox.poll());
+  }
+
+  @Test
+  public void testOfferIsBoundedPerLane() {
+    RpcMailbox<String> mailbox = new RpcMailbox<>(2);
+
+    assertTrue(mailbox.offer(RpcPriority.Lane.NORMAL, "normal-1"));
+    assertTrue(mailbox.offer(RpcPriority.Lane.NORMAL, "normal-2"));
+    assertFalse(mailbox.offer(RpcPriority.Lane.NORMAL, "normal-3"));
+    // the other lanes have their own capacity
+    assertTrue(mailbox.offer(RpcPriority.Lane.HEARTBEAT, "heartbeat-1"));
+
+    assertEquals(2, mailbox.size(RpcPriority.Lane.NORMAL));
+    assertEquals(3, mailbox.size());
+    assertEquals(2, mailbox.getCapacity());
+  }
+
+  @Test
+  public void testPollMakesRoom() {
+    RpcMailbox<String> mailbox = new RpcMailbox<>(1);
+    mailbox.offer(RpcPriority.Lane.NORMAL, "normal-1");
+    assertFalse(mailbox.offer(RpcPriority.Lane.NORMAL, "normal-2"));
+
+    assertEquals("normal-1", mailbox.poll());
+
+    assertTrue(mailbox.offer(RpcPriority.Lane.NORMAL, "normal-3"));
+    assertEquals("normal-3", mailbox.poll());
+  }
+
+  @Test
+  public void testAddIsNeverRejectedButCounts() {
+    RpcMailbox<String> mailbox = new RpcMailbox<>(1);
+
+    mailbox.add(RpcPriority.Lane.CONTROL, "control-1");
+    mailbox.add(RpcPriority.Lane.CONTROL, "control-2");
+
+    assertEquals(2, mailbox.size(RpcPriority.Lane.CONTROL));
+    assertFalse(mailbox.offer(RpcPriority.Lane.CONTROL, "control-3"));
+    assertEquals(Arrays.asList("control-1", "control-2"), drain(mailbox));
+    assertTrue(mailbox.offer(RpcPriority.Lane.CONTROL, "control-4"));
+  }
+
+  @Test
+  public void testZeroCapacityIsUnbounded() {
+    RpcMailbox<Integer> mailbox = new RpcMailbox<>(0);
+    for (int i = 0; i < 100_000; i++) {
+      assertTrue(mailbox.offer(RpcPriority.Lane.NORMAL, i));
+    }
+
+    assertEquals(100_000, mailbox.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeCapacity() {
+    new RpcMailbox<String>(-1);
+  }
+
+  @Test
+  public void testConcurrentOffersNeverExceedCapacity() throws Exception {
+    int capacity = 1_000;
+    int threads = 8;
+    RpcMailbox<Integer> mailbox = new RpcMailbox<>(capacity);
+    AtomicInteger accepted = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+
+    List<Thread> offering = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      Thread thread =
+          new Thread(
+              () -> {
+                try {
+                  start.await();
+                } catch (InterruptedException e) {
+                  return;
+                }
+                for (int i = 0; i < capacity; i++) {
+                  if (mailbox.offer(RpcPriority.Lane.NORMAL, i)) {
+                    accepted.incrementAndGet();
+                  }
+                }
+              });
+      thread.start();
+      offering.add(thread);
+    }
+    start.countDown();
+    for (Thread thread : offering) {
+      thread.join();
+    }
+
+    assertEquals(capacity, accepted.get());
+    assertEquals(capacity, drain(mailbox).size());
+    assertEquals(0, mailbox.size());
+  }
+
+  // =====================  Internal  =====================
+
+  private static <T> List<T> drain(RpcMailbox<T> mailbox) {
+    List<T> messages = new ArrayList<>();
+    for (T message = mailbox.poll(); message != null; message = mailbox.poll()) {
+      messages.add(message);
+    }
+    return messages;
+  }
+}
@@ -0,0 +1,249 @@
+package xyz.vopen.framework.neptune.rpc;
+
+import org.junit.Test;
+import xyz.vopen.framework.neptune.common.utils.time.Time;
+
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link RpcMethodTableTest} Tests of the {@link RpcMethodTable}: the caller and the endpoint agree
+ * on the ids of overloaded and inherited methods, colliding ids are rejected, and the method
+ * handles invoke primitive and varargs signatures.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class RpcMethodTableTest {
+
+  public interface BaseGateway extends RpcGateway {
+    @RpcPriority(RpcPriority.Lane.HEARTBEAT)
+    void heartbeat(long timestamp);
+
+    String echo(String message);
+  }
+
+  public interface TestGateway extends BaseGateway {
+    int add(int a, int b);
+
+    long add(long a, long b);
+
+    String add(String a, String b);
+
+    @RpcBatchable
+    String join(String separator, String... parts);
+
+    CompletableFuture<Double> scale(double value, @RpcTimeout Time timeout);
+  }
+
+  /** Declares two methods whose ids collide, see {@link #testCollidingIdsAreRejected()}. */
+  public interface CollidingGateway extends RpcGateway {
+    void method10925();
+
+    void method39370();
+  }
+
+  public static class TestEndpoint implements TestGateway {
+    private long lastHeartbeat;
+
+    @Override
+    public void heartbeat(long timestamp) {
+      lastHeartbeat = timestamp;
+    }
+
+    @Override
+    public String echo(String message) {
+      return message;
+    }
+
+    @Override
+    public int add(int a, int b) {
+      return a + b;
+    }
+
+    @Override
+    public long add(long a, long b) {
+      return a + b + 1L;
+    }
+
+    @Override
+    public String add(String a, String b) {
+      return a + b;
+    }
+
+    @Override
+    public String join(String separator, String... parts) {
+      return String.join(separator, parts);
+    }
+
+    @Override
+    public CompletableFuture<Double> scale(double value, Time timeout) {
+      return CompletableFuture.completedFuture(value * 2);
+    }
+
+    @Override
+    public String getAddress() {
+      return "test";
+    }
+
+    @Override
+    public String getHostname() {
+      return "localhost";
+    }
+  }
+
+  /** Inherits its rpc methods from {@link TestEndpoint}. */
+  public static class SubEndpoint extends TestEndpoint {}
+
+  public static class CollidingEndpoint implements CollidingGateway {
+    @Override
+    public void method10925() {}
+
+    @Override
+    public void method39370() {}
+
+    @Override
+    public String getAddress() {
+      return "colliding";
+    }
+
+    @Override
+    public String getHostname() {
+      return "localhost";
+    }
+  }
+
+  @Test
+  public void testOverloadsHaveDistinctIdsOnBothSides() throws Exception {
+    RpcMethodTable gatewayTable = RpcMethodTable.forGateway(TestGateway.class);
+    RpcMethodTable endpointTable = RpcMethodTable.forEndpoint(TestEndpoint.class);
+
+    Set<Integer> ids = new HashSet<>();
+    for (Class<?>[] parameterTypes :
+        new Class<?>[][] {
+          {int.class, int.class}, {long.class, long.class}, {String.class, String.class}
+        }) {
+      Method declared = TestGateway.class.getMethod("add", parameterTypes);
+      RpcMethodTable.RpcMethod caller = gatewayTable.get(declared);
+      RpcMethodTable.RpcMethod callee = endpointTable.get(caller.getId());
+
+      assertEquals(RpcMethodTable.methodIdOf("add", parameterTypes), caller.getId());
+      assertEquals(TestEndpoint.class.getMethod("add", parameterTypes), callee.getMethod());
+      assertTrue(ids.add(caller.getId()));
+    }
+  }
+
+  @Test
+  public void testInheritedMethodsHaveSameIdOnBothSides() throws Exception {
+    // the callers look the method up in the table of the gateway declaring it
+    Method declared = TestGateway.class.getMethod("heartbeat", long.class);
+    assertSame(BaseGateway.class, declared.getDeclaringClass());
+    RpcMethodTable.RpcMethod caller = RpcMethodTable.forGateway(BaseGateway.class).get(declared);
+
+    for (Class<?> endpoint : new Class<?>[] {TestEndpoint.class, SubEndpoint.class}) {
+      RpcMethodTable.RpcMethod callee = RpcMethodTable.forEndpoint(endpoint).get(caller.getId());
+      assertEquals(TestEndpoint.class.getMethod("heartbeat", long.class), callee.getMethod());
+      assertEquals("BaseGateway.heartbeat", callee.getQualifiedName());
+      assertEquals(RpcPriority.Lane.HEARTBEAT, callee.getLane());
+    }
+    assertEquals(
+        RpcMethodTable.forGateway(BaseGateway.class).size() + 5,
+        RpcMethodTable.forGateway(TestGateway.class).size());
+  }
+
+  @Test
+  public void testCollidingIdsAreRejected() {
+    assertEquals(
+        RpcMethodTable.methodIdOf("method10925", new Class<?>[0]),
+        RpcMethodTable.methodIdOf("method39370", new Class<?>[0]));
+
+    try {
+      RpcMethodTable.forEndpoint(CollidingEndpoint.class);
+      fail("the ids of the methods collide");
+    } catch (IllegalStateException e) {
+      assertTrue(e.getMessage().contains("method10925"));
+      assertTrue(e.getMessage().contains("method39370"));
+    }
+  }
+
+  @Test
+  public void testInvokePrimitiveSignatures() throws Throwable {
+    RpcMethodTable table = RpcMethodTable.forEndpoint(TestEndpoint.class);
+    TestEndpoint endpoint = new TestEndpoint();
+
+    assertEquals(5, invoke(table, endpoint, "add", new Class<?>[] {int.class, int.class}, 2, 3));
+    assertEquals(
+        6L, invoke(table, endpoint, "add", new Class<?>[] {long.class, long.class}, 2L, 3L));
+    assertNull(invoke(table, endpoint, "heartbeat", new Class<?>[] {long.class}, 42L));
+    assertEquals(42L, endpoint.lastHeartbeat);
+  }
+
+  @Test
+  public void testInvokeVarargsSignature() throws Throwable {
+    RpcMethodTable table = RpcMethodTable.forEndpoint(TestEndpoint.class);
+    Class<?>[] parameterTypes = {String.class, String[].class};
+
+    // the varargs arrive as one array argument
+    assertEquals(
+        "a-b-c",
+        invoke(
+            table,
+            new TestEndpoint(),
+            "join",
+            parameterTypes,
+            "-",
+            new String[] {"a", "b", "c"}));
+    assertEquals(
+        "", invoke(table, new TestEndpoint(), "join", parameterTypes, "-", new String[0]));
+  }
+
+  @Test
+  public void testMethodMetadata() throws Exception {
+    RpcMethodTable table = RpcMethodTable.forGateway(TestGateway.class);
+    RpcMethodTable.RpcMethod scale =
+        table.get(TestGateway.class.getMethod("scale", double.class, Time.class));
+    RpcMethodTable.RpcMethod join =
+        table.get(TestGateway.class.getMethod("join", String.class, String[].class));
+
+    assertEquals(1, scale.getTimeoutIndex());
+    assertEquals(
+        Time.seconds(3L),
+        scale.getTimeout(new Object[] {1.0d, Time.seconds(3L)}, Time.seconds(10L)));
+    assertTrue(scale.returnsFuture());
+    assertFalse(scale.isBatchable());
+    assertEquals(-1, join.getTimeoutIndex());
+    assertEquals(Time.seconds(10L), join.getTimeout(new Object[] {"-", null}, Time.seconds(10L)));
+    assertTrue(join.isBatchable());
+    assertEquals(RpcPriority.Lane.NORMAL, join.getLane());
+    assertNotEquals(scale.getId(), join.getId());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testGatewayMethodsCannotBeInvoked() throws Throwable {
+    RpcMethodTable.forGateway(TestGateway.class)
+        .get(TestGateway.class.getMethod("echo", String.class))
+        .invoke(new TestEndpoint(), new Object[] {"hello"});
+  }
+
+  // =====================  Internal  =====================
+
+  private static Object invoke(
+      RpcMethodTable table,
+      Object endpoint,
+      String name,
+      Class<?>[] parameterTypes,
+      Object... args)
+      throws Throwable {
+    return table.get(RpcMethodTable.methodIdOf(name, parameterTypes)).invoke(endpoint, args);
+  }
+}
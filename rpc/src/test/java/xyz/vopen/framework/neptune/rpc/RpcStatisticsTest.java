@@ -0,0 +1,131 @@
+package xyz.vopen.framework.neptune.rpc;
+
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * {@link RpcStatisticsTest} Tests of the {@link RpcStatistics}: the caller and the endpoint of a
+ * method share its statistics, which the method listener receives exactly once, however the first
+ * calls race with the listener being set.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class RpcStatisticsTest {
+
+  public interface ManyMethodsGateway extends RpcGateway {
+    void m0();
+
+    void m1();
+
+    void m2();
+
+    void m3();
+
+    void m4();
+
+    void m5();
+
+    void m6();
+
+    void m7();
+  }
+
+  @Test
+  public void testGatewayAndEndpointShareStatistics() throws Exception {
+    RpcStatistics statistics = new RpcStatistics();
+    Method method = ManyMethodsGateway.class.getMethod("m0");
+
+    RpcMethodStatistics caller =
+        statistics.forMethod(RpcMethodTable.forGateway(ManyMethodsGateway.class).get(method));
+    RpcMethodStatistics callee =
+        statistics.forMethod(
+            RpcMethodTable.forGateway(ManyMethodsGateway.class)
+                .get(RpcMethodTable.methodIdOf("m0", new Class<?>[0])));
+
+    assertSame(caller, callee);
+    assertEquals("ManyMethodsGateway.m0", caller.getName());
+  }
+
+  @Test
+  public void testListenerReceivesMethodsCalledBefore() {
+    RpcStatistics statistics = new RpcStatistics();
+    List<RpcMethodTable.RpcMethod> methods = methods();
+    statistics.forMethod(methods.get(0));
+    statistics.forMethod(methods.get(1));
+
+    List<String> received = new ArrayList<>();
+    statistics.setMethodListener(method -> received.add(method.getName()));
+    statistics.forMethod(methods.get(1));
+    statistics.forMethod(methods.get(2));
+
+    assertEquals(3, received.size());
+  }
+
+  @Test
+  public void testListenerReceivesEachMethodOnce() throws Exception {
+    List<RpcMethodTable.RpcMethod> methods = methods();
+    for (int round = 0; round < 200; round++) {
+      RpcStatistics statistics = new RpcStatistics();
+      ConcurrentMap<String, AtomicInteger> received = new ConcurrentHashMap<>();
+      CountDownLatch start = new CountDownLatch(1);
+
+      List<Thread> threads = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        threads.add(
+            new Thread(
+                () -> {
+                  await(start);
+                  methods.forEach(statistics::forMethod);
+                }));
+      }
+      threads.add(
+          new Thread(
+              () -> {
+                await(start);
+                statistics.setMethodListener(
+                    method ->
+                        received
+                            .computeIfAbsent(method.getName(), name -> new AtomicInteger())
+                            .incrementAndGet());
+              }));
+      threads.forEach(Thread::start);
+      start.countDown();
+      for (Thread thread : threads) {
+        thread.join();
+      }
+
+      assertEquals(methods.size(), received.size());
+      received.forEach((name, count) -> assertEquals(name, 1, count.get()));
+    }
+  }
+
+  // =====================  Internal  =====================
+
+  private static List<RpcMethodTable.RpcMethod> methods() {
+    RpcMethodTable table = RpcMethodTable.forGateway(ManyMethodsGateway.class);
+    List<RpcMethodTable.RpcMethod> methods = new ArrayList<>();
+    for (Method method : ManyMethodsGateway.class.getDeclaredMethods()) {
+      methods.add(table.get(method));
+    }
+    return methods;
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,209 @@
+package xyz.vopen.framework.neptune.rpc;
+
+import com.typesafe.config.ConfigFactory;
+import xyz.vopen.framework.neptune.common.configuration.Configuration;
+import xyz.vopen.framework.neptune.common.configuration.RpcOptions;
+import xyz.vopen.framework.neptune.common.utils.NetUtils;
+import xyz.vopen.framework.neptune.rpc.akka.AkkaRpcServiceUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link RpcTransportBenchmark} Compares the transports of {@link RpcServiceUtils.Transport}: for
+ * each, a gateway of this process calls an endpoint of a second JVM over the loopback, with up to
+ * {@link #IN_FLIGHT} calls in flight, and the throughput and the latency of the calls are reported
+ * for a small and a 4 KiB payload. Both rpc services disable {@link RpcOptions#IN_PROCESS_CALLS},
+ * so that the calls go through the transport.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class RpcTransportBenchmark {
+  private static final int WARMUP_CALLS = 50_000;
+  private static final int CALLS = 200_000;
+  private static final int IN_FLIGHT = 256;
+  private static final String ADDRESS_PREFIX = "endpoint-address=";
+
+  public interface EchoGateway extends RpcGateway {
+    CompletableFuture<byte[]> echo(byte[] payload);
+  }
+
+  public static class EchoEndpoint extends RpcEndpoint implements EchoGateway {
+
+    protected EchoEndpoint(RpcService rpcService) {
+      super(rpcService);
+    }
+
+    @Override
+    public CompletableFuture<byte[]> echo(byte[] payload) {
+      return CompletableFuture.completedFuture(payload);
+    }
+  }
+
+  /**
+   * Without arguments, benchmarks every transport against a server JVM started per transport;
+   * {@code server <transport>} runs that server, which prints the address of its endpoint and
+   * serves until its standard input is closed.
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length == 2 && "server".equals(args[0])) {
+      serve(RpcServiceUtils.Transport.valueOf(args[1]));
+      return;
+    }
+
+    byte[][] payloads = {new byte[16], new byte[4096]};
+    for (RpcServiceUtils.Transport transport : RpcServiceUtils.Transport.values()) {
+      Process serverProcess = startServerProcess(transport);
+      RpcService client = start(configurationOf(transport));
+      try {
+        String address = readEndpointAddress(serverProcess);
+        EchoGateway gateway = client.connect(address, EchoGateway.class).get();
+        for (byte[] payload : payloads) {
+          run(gateway, payload, WARMUP_CALLS);
+          long[] latencies = new long[CALLS];
+          long nanos = run(gateway, payload, latencies);
+          Arrays.sort(latencies);
+          System.out.printf(
+              "%-5s %5d bytes   %9.0f calls/s   p50 %7.1f us   p99 %7.1f us%n",
+              transport,
+              payload.length,
+              CALLS / (nanos / 1e9),
+              latencies[CALLS / 2] / 1e3,
+              latencies[CALLS * 99 / 100] / 1e3);
+        }
+      } finally {
+        client.stopService().get(30L, TimeUnit.SECONDS);
+        serverProcess.getOutputStream().close();
+        serverProcess.waitFor(30L, TimeUnit.SECONDS);
+        serverProcess.destroy();
+      }
+    }
+    System.exit(0);
+  }
+
+  // =====================  Internal  =====================
+
+  private static void serve(RpcServiceUtils.Transport transport) throws Exception {
+    RpcService server = start(configurationOf(transport));
+    EchoEndpoint endpoint = new EchoEndpoint(server);
+    endpoint.start();
+    System.out.println(ADDRESS_PREFIX + endpoint.getAddress());
+    System.out.flush();
+    while (System.in.read() >= 0) {
+      // serves until the benchmark closes the pipe
+    }
+    server.stopService().get(30L, TimeUnit.SECONDS);
+    System.exit(0);
+  }
+
+  private static Process startServerProcess(RpcServiceUtils.Transport transport)
+      throws Exception {
+    String java =
+        System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    return new ProcessBuilder(
+            java,
+            "-cp",
+            System.getProperty("java.class.path"),
+            RpcTransportBenchmark.class.getName(),
+            "server",
+            transport.name())
+        .redirectErrorStream(true)
+        .start();
+  }
+
+  /** Skips the log lines of the server up to the address of its endpoint. */
+  private static String readEndpointAddress(Process serverProcess) throws Exception {
+    BufferedReader reader =
+        new BufferedReader(
+            new InputStreamReader(serverProcess.getInputStream(), StandardCharsets.UTF_8));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.startsWith(ADDRESS_PREFIX)) {
+        String address = line.substring(ADDRESS_PREFIX.length());
+        // keeps draining the output, a full pipe would block the server
+        Thread drainer =
+            new Thread(
+                () -> {
+                  try {
+                    while (reader.readLine() != null) {
+                      // discarded
+                    }
+                  } catch (Exception ignored) {
+                    // the server exited
+                  }
+                },
+                "benchmark-server-output");
+        drainer.setDaemon(true);
+        drainer.start();
+        return address;
+      }
+    }
+    throw new Exception("The server exited before printing the address of its endpoint.");
+  }
+
+  private static Configuration configurationOf(RpcServiceUtils.Transport transport) {
+    Configuration configuration = new Configuration();
+    configuration.setString(RpcOptions.TRANSPORT, transport.name().toLowerCase());
+    configuration.setBoolean(RpcOptions.IN_PROCESS_CALLS, false);
+    return configuration;
+  }
+
+  private static RpcService start(Configuration configuration) throws Exception {
+    int port = NetUtils.getAvailablePort();
+    if (RpcServiceUtils.Transport.fromConfiguration(configuration)
+        == RpcServiceUtils.Transport.AKKA) {
+      // the actor system must listen on the loopback like the netty server
+      return AkkaRpcServiceUtils.remoteServiceBuilder(configuration, "127.0.0.1", port)
+          .withActorSystemName("benchmark-" + port)
+          .withCustomConfig(
+              ConfigFactory.parseString(
+                  "akka.remote.artery.canonical.port="
+                      + port
+                      + "\nakka.remote.artery.canonical.hostname=127.0.0.1"))
+          .createAndStart();
+    }
+    return RpcServiceUtils.createRemoteRpcService(
+        configuration, "127.0.0.1", String.valueOf(port), "127.0.0.1", Optional.empty());
+  }
+
+  private static void run(EchoGateway gateway, byte[] payload, int calls) throws Exception {
+    run(gateway, payload, new long[calls]);
+  }
+
+  /** Makes a call per latency slot, returning the elapsed nanoseconds. */
+  private static long run(EchoGateway gateway, byte[] payload, long[] latencies)
+      throws Exception {
+    Semaphore inFlight = new Semaphore(IN_FLIGHT);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    long start = System.nanoTime();
+    for (int i = 0; i < latencies.length && failure.get() == null; i++) {
+      inFlight.acquire();
+      final int call = i;
+      final long callStart = System.nanoTime();
+      gateway
+          .echo(payload)
+          .whenComplete(
+              (result, throwable) -> {
+                latencies[call] = System.nanoTime() - callStart;
+                if (throwable != null) {
+                  failure.compareAndSet(null, throwable);
+                }
+                inFlight.release();
+              });
+    }
+    inFlight.acquire(IN_FLIGHT);
+    if (failure.get() != null) {
+      throw new Exception("Echo call failed.", failure.get());
+    }
+    return System.nanoTime() - start;
+  }
+}
@@ -0,0 +1,188 @@
+package xyz.vopen.framework.neptune.rpc.akka;
+
+import com.typesafe.config.ConfigFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import xyz.vopen.framework.neptune.common.configuration.AkkaOptions;
+import xyz.vopen.framework.neptune.common.configuration.Configuration;
+import xyz.vopen.framework.neptune.common.configuration.RpcOptions;
+import xyz.vopen.framework.neptune.common.utils.NetUtils;
+import xyz.vopen.framework.neptune.rpc.RpcBatchable;
+import xyz.vopen.framework.neptune.rpc.RpcEndpoint;
+import xyz.vopen.framework.neptune.rpc.RpcGateway;
+import xyz.vopen.framework.neptune.rpc.RpcService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link AkkaRpcBatchTest} Remote calls of {@link RpcBatchable} methods between two actor systems:
+ * the endpoint answers each invocation of a batch as if it had been sent alone, a failing one does
+ * not fail the others, and the results overflowing the frame together are streamed.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class AkkaRpcBatchTest {
+  private static final long BATCH_WINDOW = 100L;
+  private static final int PAYLOAD_SIZE = 100 * 1024;
+
+  private RpcService server;
+  private RpcService client;
+  private BatchEndpoint endpoint;
+  private BatchGateway gateway;
+
+  public interface BatchGateway extends RpcGateway {
+    @RpcBatchable
+    CompletableFuture<Integer> square(int value);
+
+    @RpcBatchable
+    CompletableFuture<byte[]> payload(long seed);
+
+    @RpcBatchable
+    void record(int value);
+  }
+
+  public static class BatchEndpoint extends RpcEndpoint implements BatchGateway {
+    private final List<Integer> recorded = new CopyOnWriteArrayList<>();
+
+    BatchEndpoint(RpcService rpcService) {
+      super(rpcService);
+    }
+
+    @Override
+    public CompletableFuture<Integer> square(int value) {
+      if (value < 0) {
+        throw new IllegalArgumentException("negative " + value);
+      }
+      return CompletableFuture.completedFuture(value * value);
+    }
+
+    @Override
+    public CompletableFuture<byte[]> payload(long seed) {
+      return CompletableFuture.completedFuture(payloadOf(seed));
+    }
+
+    @Override
+    public void record(int value) {
+      recorded.add(value);
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    server = start();
+    client = start();
+    endpoint = new BatchEndpoint(server);
+    endpoint.start();
+    gateway = client.connect(endpoint.getAddress(), BatchGateway.class).get();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    client.stopService().get(30L, TimeUnit.SECONDS);
+    server.stopService().get(30L, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testCallWaitsForWindow() throws Exception {
+    long start = System.nanoTime();
+
+    assertEquals(9, (int) gateway.square(3).get(10L, TimeUnit.SECONDS));
+
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(BATCH_WINDOW));
+  }
+
+  @Test
+  public void testFailureIsIsolated() throws Exception {
+    List<CompletableFuture<Integer>> results = new ArrayList<>();
+    for (int value = -2; value <= 5; value++) {
+      results.add(gateway.square(value));
+    }
+
+    for (int value = -2; value <= 5; value++) {
+      CompletableFuture<Integer> result = results.get(value + 2);
+      if (value >= 0) {
+        assertEquals(value * value, (int) result.get(10L, TimeUnit.SECONDS));
+        continue;
+      }
+      try {
+        result.get(10L, TimeUnit.SECONDS);
+        fail("the square of a negative value fails");
+      } catch (ExecutionException e) {
+        assertTrue(causedBy(e, IllegalArgumentException.class));
+      }
+    }
+  }
+
+  @Test
+  public void testBatchResultsOverflowingFrameAreStreamed() throws Exception {
+    List<CompletableFuture<byte[]>> results = new ArrayList<>();
+    // more than the effective frame size of Artery together
+    for (long seed = 0L; seed < 4L; seed++) {
+      results.add(gateway.payload(seed));
+    }
+
+    for (long seed = 0L; seed < 4L; seed++) {
+      assertArrayEquals(payloadOf(seed), results.get((int) seed).get(30L, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  public void testTellsAreBatched() throws Exception {
+    for (int value = 0; value < 5; value++) {
+      gateway.record(value);
+    }
+
+    long deadline = System.currentTimeMillis() + 10_000L;
+    while (endpoint.recorded.size() < 5 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10L);
+    }
+    assertEquals(5, endpoint.recorded.size());
+  }
+
+  // =====================  Internal  =====================
+
+  private static byte[] payloadOf(long seed) {
+    // random, so that compression does not shrink it
+    byte[] payload = new byte[PAYLOAD_SIZE];
+    new Random(seed).nextBytes(payload);
+    return payload;
+  }
+
+  private static boolean causedBy(Throwable throwable, Class<? extends Throwable> type) {
+    for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+      if (type.isInstance(cause)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Two actor systems of one process need their own name and Artery port. */
+  private static RpcService start() throws Exception {
+    int port = NetUtils.getAvailablePort();
+    Configuration configuration = new Configuration();
+    configuration.setLong(AkkaOptions.RPC_BATCH_WINDOW, BATCH_WINDOW);
+    configuration.setBoolean(RpcOptions.IN_PROCESS_CALLS, false);
+    return AkkaRpcServiceUtils.remoteServiceBuilder(configuration, "127.0.0.1", port)
+        .withActorSystemName("batch-" + port)
+        .withCustomConfig(
+            ConfigFactory.parseString(
+                "akka.remote.artery.canonical.port="
+                    + port
+                    + "\nakka.remote.artery.canonical.hostname=127.0.0.1"))
+        .createAndStart();
+  }
+}
@@ -0,0 +1,93 @@
+package xyz.vopen.framework.neptune.rpc.akka;
+
+import com.typesafe.config.ConfigFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import xyz.vopen.framework.neptune.common.configuration.Configuration;
+import xyz.vopen.framework.neptune.common.utils.NetUtils;
+import xyz.vopen.framework.neptune.rpc.InProcessEndpointRegistry;
+import xyz.vopen.framework.neptune.rpc.RpcEndpoint;
+import xyz.vopen.framework.neptune.rpc.RpcGateway;
+import xyz.vopen.framework.neptune.rpc.RpcService;
+
+import java.lang.reflect.Proxy;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link AkkaRpcFrameSizeTest} Remote calls between two actor systems with a payload just above
+ * the default frame size of Artery, 256 KiB, which the configured {@code akka.framesize} of 10 MiB
+ * does not raise: the calls and their results are streamed instead of dropped by Artery.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class AkkaRpcFrameSizeTest {
+  private static final int ARTERY_FRAME_SIZE = 256 * 1024;
+
+  private RpcService server;
+  private RpcService client;
+
+  public interface EchoGateway extends RpcGateway {
+    CompletableFuture<byte[]> echo(byte[] payload);
+  }
+
+  public static class EchoEndpoint extends RpcEndpoint implements EchoGateway {
+
+    EchoEndpoint(RpcService rpcService) {
+      super(rpcService);
+      // the calls must go through the transport
+      InProcessEndpointRegistry.unregister(getAddress(), rpcServer);
+    }
+
+    @Override
+    public CompletableFuture<byte[]> echo(byte[] payload) {
+      return CompletableFuture.completedFuture(payload);
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    server = start();
+    client = start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    client.stopService().get(30L, TimeUnit.SECONDS);
+    server.stopService().get(30L, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testPayloadAboveArteryFrameSize() throws Exception {
+    EchoEndpoint endpoint = new EchoEndpoint(server);
+    endpoint.start();
+    EchoGateway gateway = client.connect(endpoint.getAddress(), EchoGateway.class).get();
+    assertEquals(AkkaInvocationHandler.class, Proxy.getInvocationHandler(gateway).getClass());
+
+    byte[] payload = new byte[ARTERY_FRAME_SIZE + 1024];
+    new Random(42L).nextBytes(payload);
+
+    assertArrayEquals(payload, gateway.echo(payload).get(30L, TimeUnit.SECONDS));
+  }
+
+  // =====================  Internal  =====================
+
+  /** Two actor systems of one process need their own name and Artery port. */
+  private static RpcService start() throws Exception {
+    int port = NetUtils.getAvailablePort();
+    return AkkaRpcServiceUtils.remoteServiceBuilder(new Configuration(), "127.0.0.1", port)
+        .withActorSystemName("frame-size-" + port)
+        .withCustomConfig(
+            ConfigFactory.parseString(
+                "akka.remote.artery.canonical.port="
+                    + port
+                    + "\nakka.remote.artery.canonical.hostname=127.0.0.1"))
+        .createAndStart();
+  }
+}
@@ -0,0 +1,276 @@
+package xyz.vopen.framework.neptune.rpc.akka;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.PoisonPill;
+import akka.actor.Props;
+import akka.remote.UniqueAddress;
+import akka.remote.artery.QuarantinedEvent;
+import com.typesafe.config.ConfigFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import xyz.vopen.framework.neptune.common.concurrent.FutureUtil;
+import xyz.vopen.framework.neptune.common.serialization.PayloadFormat;
+import xyz.vopen.framework.neptune.common.utils.time.Time;
+import xyz.vopen.framework.neptune.rpc.RpcGateway;
+import xyz.vopen.framework.neptune.rpc.RpcStatistics;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link GatewayCacheTest} Tests of the {@link GatewayCache}: hits and misses, the connections in
+ * progress shared by the concurrent connects, the eviction of the failed connections and of the
+ * gateways used least recently, and the invalidation of the gateways of terminated, quarantined or
+ * timed out actors.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class GatewayCacheTest {
+  private static final String ADDRESS = "akka://gateway-cache-test/user/endpoint";
+
+  private ActorSystem actorSystem;
+  private RpcStatistics statistics;
+  private GatewayCache cache;
+
+  public interface TestGateway extends RpcGateway {
+    CompletableFuture<String> ping();
+  }
+
+  /** Never answers, the asks to it time out. */
+  public static class SilentActor extends AbstractActor {
+    @Override
+    public Receive createReceive() {
+      return receiveBuilder().matchAny(message -> {}).build();
+    }
+  }
+
+  @Before
+  public void setUp() {
+    actorSystem =
+        ActorSystem.create(
+            "gateway-cache-test", ConfigFactory.parseString("akka.actor.provider = local"));
+    statistics = new RpcStatistics();
+    cache = GatewayCache.start(actorSystem, 2, statistics);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FutureUtil.toJava(actorSystem.terminate()).get(10L, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testHitReturnsCachedGateway() throws Exception {
+    Connector connector = new Connector(actor(), Time.seconds(10L));
+
+    TestGateway first = cache.connect(ADDRESS, TestGateway.class, connector).get();
+    TestGateway second = cache.connect(ADDRESS, TestGateway.class, connector).get();
+
+    assertSame(first, second);
+    assertEquals(1, connector.connects.get());
+    assertEquals(1L, statistics.getConnectionMisses());
+    assertEquals(1L, statistics.getConnectionHits());
+  }
+
+  @Test
+  public void testConcurrentConnectsShareConnection() throws Exception {
+    CompletableFuture<TestGateway> pending = new CompletableFuture<>();
+    AtomicInteger connects = new AtomicInteger();
+    Supplier<CompletableFuture<TestGateway>> connector =
+        () -> {
+          connects.incrementAndGet();
+          return pending;
+        };
+
+    CompletableFuture<TestGateway> first = cache.connect(ADDRESS, TestGateway.class, connector);
+    CompletableFuture<TestGateway> second = cache.connect(ADDRESS, TestGateway.class, connector);
+    // a caller completing its future does not complete the other one
+    first.complete(null);
+    assertFalse(second.isDone());
+
+    TestGateway gateway = gateway(actor(), Time.seconds(10L));
+    pending.complete(gateway);
+
+    assertSame(gateway, second.get());
+    assertEquals(1, connects.get());
+  }
+
+  @Test
+  public void testFailedConnectionIsNotKept() throws Exception {
+    CompletableFuture<TestGateway> failed = new CompletableFuture<>();
+    failed.completeExceptionally(new IllegalStateException("unreachable"));
+    try {
+      cache.connect(ADDRESS, TestGateway.class, () -> failed).get();
+      fail("the connection failed");
+    } catch (ExecutionException expected) {
+      // the next connect tries again
+    }
+
+    Connector connector = new Connector(actor(), Time.seconds(10L));
+    cache.connect(ADDRESS, TestGateway.class, connector).get();
+
+    assertEquals(1, connector.connects.get());
+  }
+
+  @Test
+  public void testThrowingConnectorIsNotKept() throws Exception {
+    try {
+      cache.connect(
+          ADDRESS,
+          TestGateway.class,
+          () -> {
+            throw new IllegalStateException("unreachable");
+          });
+      fail("the connector throws");
+    } catch (IllegalStateException expected) {
+      // the next connect tries again
+    }
+
+    Connector connector = new Connector(actor(), Time.seconds(10L));
+    cache.connect(ADDRESS, TestGateway.class, connector).get();
+
+    assertEquals(1, connector.connects.get());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedGatewayIsEvicted() throws Exception {
+    Connector connector = new Connector(actor(), Time.seconds(10L));
+    cache.connect(ADDRESS + "-a", TestGateway.class, connector).get();
+    cache.connect(ADDRESS + "-b", TestGateway.class, connector).get();
+    cache.connect(ADDRESS + "-a", TestGateway.class, connector).get();
+    // beyond the capacity of 2, b was used least recently
+    cache.connect(ADDRESS + "-c", TestGateway.class, connector).get();
+    assertEquals(3, connector.connects.get());
+
+    cache.connect(ADDRESS + "-a", TestGateway.class, connector).get();
+    assertEquals(3, connector.connects.get());
+    cache.connect(ADDRESS + "-b", TestGateway.class, connector).get();
+    assertEquals(4, connector.connects.get());
+  }
+
+  @Test
+  public void testTerminatedActorIsInvalidated() throws Exception {
+    ActorRef actorRef = actor();
+    Connector connector = new Connector(actorRef, Time.seconds(10L));
+    cache.connect(ADDRESS, TestGateway.class, connector).get();
+
+    actorRef.tell(PoisonPill.getInstance(), ActorRef.noSender());
+
+    awaitInvalidations(1L);
+    cache.connect(ADDRESS, TestGateway.class, connector).get();
+    assertEquals(2, connector.connects.get());
+  }
+
+  @Test
+  public void testQuarantineInvalidatesEveryGatewayOfTheSystem() throws Exception {
+    ActorRef actorRef = actor();
+    Connector connector = new Connector(actorRef, Time.seconds(10L));
+    cache.connect(ADDRESS + "-a", TestGateway.class, connector).get();
+    cache.connect(ADDRESS + "-b", TestGateway.class, connector).get();
+
+    actorSystem
+        .getEventStream()
+        .publish(new QuarantinedEvent(new UniqueAddress(actorRef.path().address(), 1L)));
+
+    // counted per gateway dropped
+    awaitInvalidations(2L);
+  }
+
+  @Test
+  public void testTimedOutCallInvalidates() throws Exception {
+    Connector connector = new Connector(actor(), Time.milliseconds(100L));
+    TestGateway gateway = cache.connect(ADDRESS, TestGateway.class, connector).get();
+
+    try {
+      gateway.ping().get(10L, TimeUnit.SECONDS);
+      fail("the actor never answers");
+    } catch (ExecutionException e) {
+      assertEquals(TimeoutException.class, e.getCause().getClass());
+    }
+
+    awaitInvalidations(1L);
+    TestGateway reconnected = cache.connect(ADDRESS, TestGateway.class, connector).get();
+    assertEquals(2, connector.connects.get());
+    assertTrue(reconnected != gateway);
+  }
+
+  @Test
+  public void testSeveralCachesPerActorSystem() throws Exception {
+    GatewayCache other = GatewayCache.start(actorSystem, 2, statistics);
+    Connector connector = new Connector(actor(), Time.seconds(10L));
+
+    TestGateway gateway = cache.connect(ADDRESS, TestGateway.class, connector).get();
+
+    assertTrue(gateway != other.connect(ADDRESS, TestGateway.class, connector).get());
+    assertEquals(2, connector.connects.get());
+  }
+
+  // =====================  Internal  =====================
+
+  private ActorRef actor() {
+    return actorSystem.actorOf(Props.create(SilentActor.class));
+  }
+
+  private TestGateway gateway(ActorRef actorRef, Time timeout) {
+    AkkaInvocationHandler handler =
+        new AkkaInvocationHandler(
+            ADDRESS,
+            "localhost",
+            actorRef,
+            timeout,
+            Long.MAX_VALUE,
+            null,
+            false,
+            PayloadFormat.JAVA,
+            0,
+            null,
+            statistics,
+            null);
+    return (TestGateway)
+        Proxy.newProxyInstance(
+            getClass().getClassLoader(),
+            new Class<?>[] {TestGateway.class, AkkaBasedEndpoint.class},
+            handler);
+  }
+
+  private void awaitInvalidations(long expected) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10_000L;
+    while (statistics.getConnectionInvalidations() < expected
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10L);
+    }
+    assertEquals(expected, statistics.getConnectionInvalidations());
+  }
+
+  /** Connects a new gateway to the actor on every call, counting the calls. */
+  private final class Connector implements Supplier<CompletableFuture<TestGateway>> {
+    private final ActorRef actorRef;
+    private final Time timeout;
+    private final AtomicInteger connects = new AtomicInteger();
+
+    private Connector(ActorRef actorRef, Time timeout) {
+      this.actorRef = actorRef;
+      this.timeout = timeout;
+    }
+
+    @Override
+    public CompletableFuture<TestGateway> get() {
+      connects.incrementAndGet();
+      return CompletableFuture.completedFuture(gateway(actorRef, timeout));
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package xyz.vopen.framework.neptune.rpc.akka;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.PoisonPill;
+import com.typesafe.config.ConfigFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import xyz.vopen.framework.neptune.common.concurrent.FutureUtil;
+import xyz.vopen.framework.neptune.common.concurrent.ScheduledExecutorServiceAdapter;
+import xyz.vopen.framework.neptune.common.configuration.AkkaOptions;
+import xyz.vopen.framework.neptune.common.configuration.Configuration;
+import xyz.vopen.framework.neptune.rpc.exceptions.RpcException;
+import xyz.vopen.framework.neptune.rpc.message.PayloadStreamHandle;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link PayloadStreamsTest} Tests of the {@link PayloadStreams}: the payloads of several chunks
+ * are received whole, and the receiver fails instead of waiting forever when its stream is
+ * unknown, expired or its source dies.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class PayloadStreamsTest {
+  private static final int CHUNK_SIZE = 1024;
+
+  private ActorSystem actorSystem;
+  private ScheduledExecutorService scheduledExecutor;
+
+  @Before
+  public void setUp() {
+    actorSystem =
+        ActorSystem.create(
+            "payload-streams-test", ConfigFactory.parseString("akka.actor.provider=local"));
+    scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    scheduledExecutor.shutdownNow();
+    FutureUtil.toJava(actorSystem.terminate()).get(10L, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testPayloadIsReceivedWhole() throws Exception {
+    PayloadStreams streams = start("10 s", 4);
+    byte[] payload = payload(10 * CHUNK_SIZE + 17);
+
+    PayloadStreamHandle handle = streams.open(payload);
+
+    assertEquals(11, handle.getChunkCount());
+    assertArrayEquals(payload, streams.receive(handle).get(10L, TimeUnit.SECONDS));
+    assertArrayEquals(new byte[0], streams.receive(streams.open(new byte[0])).get());
+  }
+
+  @Test
+  public void testReleasedStreamIsUnknown() throws Exception {
+    PayloadStreams streams = start("10 s", 4);
+    PayloadStreamHandle handle = streams.open(payload(3 * CHUNK_SIZE));
+    streams.receive(handle).get(10L, TimeUnit.SECONDS);
+
+    // the receiver released the stream once read
+    assertFails(streams.receive(handle));
+  }
+
+  @Test
+  public void testSeveralStreamsPerActorSystem() throws Exception {
+    PayloadStreams first = start("10 s", 4);
+    PayloadStreams second = start("10 s", 4);
+    byte[] payload = payload(3 * CHUNK_SIZE);
+
+    // each receives from the source of the other
+    assertArrayEquals(payload, first.receive(second.open(payload)).get(10L, TimeUnit.SECONDS));
+    assertArrayEquals(payload, second.receive(first.open(payload)).get(10L, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testUnknownStreamFails() throws Exception {
+    PayloadStreams streams = start("10 s", 4);
+    PayloadStreamHandle handle = streams.open(payload(CHUNK_SIZE));
+
+    assertFails(
+        streams.receive(
+            new PayloadStreamHandle(
+                handle.getSourceAddress(), handle.getStreamId() + 1, CHUNK_SIZE, CHUNK_SIZE)));
+  }
+
+  @Test
+  public void testExpiredStreamFails() throws Exception {
+    PayloadStreams streams = start("200 ms", 4);
+    PayloadStreamHandle handle = streams.open(payload(3 * CHUNK_SIZE));
+
+    Thread.sleep(1_000L);
+
+    assertFails(streams.receive(handle));
+  }
+
+  @Test
+  public void testSourceDyingMidStreamFails() throws Exception {
+    PayloadStreams streams = start("1 s", 1);
+    // one chunk at a time, long enough for the source to die before the end
+    PayloadStreamHandle handle = streams.open(payload(16 * 1024 * CHUNK_SIZE));
+    ActorRef source =
+        actorSystem
+            .actorSelection(handle.getSourceAddress())
+            .resolveOne(Duration.ofSeconds(10L))
+            .toCompletableFuture()
+            .get();
+
+    CompletableFuture<byte[]> received = streams.receive(handle);
+    source.tell(PoisonPill.getInstance(), ActorRef.noSender());
+
+    assertFails(received);
+  }
+
+  // =====================  Internal  =====================
+
+  private PayloadStreams start(String askTimeout, int window) {
+    Configuration configuration = new Configuration();
+    configuration.setString(AkkaOptions.ASK_TIMEOUT, askTimeout);
+    configuration.setInteger(AkkaOptions.RPC_STREAM_CHUNK_SIZE, CHUNK_SIZE);
+    configuration.setInteger(AkkaOptions.RPC_STREAM_WINDOW, window);
+    return PayloadStreams.start(
+        actorSystem,
+        new ScheduledExecutorServiceAdapter(scheduledExecutor),
+        AkkaRpcServiceConfiguration.fromConfiguration(configuration));
+  }
+
+  private static byte[] payload(int size) {
+    byte[] payload = new byte[size];
+    new Random(size).nextBytes(payload);
+    return payload;
+  }
+
+  /** The receiver must fail within the ask timeout, not wait forever. */
+  private static void assertFails(CompletableFuture<byte[]> received) throws Exception {
+    try {
+      received.get(10L, TimeUnit.SECONDS);
+      fail("the stream cannot be received");
+    } catch (ExecutionException e) {
+      assertEquals(RpcException.class, e.getCause().getClass());
+    }
+  }
+}
@@ -0,0 +1,280 @@
+package xyz.vopen.framework.neptune.rpc.akka;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.DeadLetter;
+import akka.actor.Props;
+import akka.actor.Status;
+import akka.dispatch.Envelope;
+import com.typesafe.config.ConfigFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import xyz.vopen.framework.neptune.common.concurrent.FutureUtil;
+import xyz.vopen.framework.neptune.common.configuration.Configuration;
+import xyz.vopen.framework.neptune.common.configuration.RpcOptions;
+import xyz.vopen.framework.neptune.common.serialization.PayloadFormat;
+import xyz.vopen.framework.neptune.rpc.RpcEndpoint;
+import xyz.vopen.framework.neptune.rpc.RpcGateway;
+import xyz.vopen.framework.neptune.rpc.RpcPriority;
+import xyz.vopen.framework.neptune.rpc.RpcService;
+import xyz.vopen.framework.neptune.rpc.exceptions.RpcException;
+import xyz.vopen.framework.neptune.rpc.exceptions.RpcRejectedException;
+import xyz.vopen.framework.neptune.rpc.message.LocalRpcInvocation;
+import xyz.vopen.framework.neptune.rpc.message.RemoteHandshakeMessage;
+import xyz.vopen.framework.neptune.rpc.message.RemoteRpcInvocation;
+import xyz.vopen.framework.neptune.rpc.message.RpcInvocationBatch;
+import xyz.vopen.framework.neptune.rpc.message.RunAsync;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link RpcEndpointMailboxTest} Tests of the {@link RpcEndpointMailbox}: the lanes of the
+ * messages, the rejected asks failing and the rejected tells published as dead letters, and an
+ * endpoint whose full lane rejects the calls but still gets its lifecycle messages.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class RpcEndpointMailboxTest {
+  private ActorSystem actorSystem;
+  private BlockingQueue<Object> received;
+  private ActorRef probe;
+
+  public interface BlockingGateway extends RpcGateway {
+    CompletableFuture<Integer> block();
+
+    @RpcPriority(RpcPriority.Lane.CONTROL)
+    CompletableFuture<Integer> control();
+
+    CompletableFuture<Integer> value();
+  }
+
+  public static class BlockingEndpoint extends RpcEndpoint implements BlockingGateway {
+    private final CountDownLatch blocked = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    BlockingEndpoint(RpcService rpcService) {
+      super(rpcService);
+    }
+
+    @Override
+    public CompletableFuture<Integer> block() {
+      blocked.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return CompletableFuture.completedFuture(0);
+    }
+
+    @Override
+    public CompletableFuture<Integer> control() {
+      return CompletableFuture.completedFuture(1);
+    }
+
+    @Override
+    public CompletableFuture<Integer> value() {
+      return CompletableFuture.completedFuture(2);
+    }
+
+    void stopProcessing() {
+      stop();
+    }
+  }
+
+  /** Hands the messages it receives to the test. */
+  public static class Probe extends AbstractActor {
+    private final BlockingQueue<Object> received;
+
+    public Probe(BlockingQueue<Object> received) {
+      this.received = received;
+    }
+
+    @Override
+    public Receive createReceive() {
+      return receiveBuilder().matchAny(received::add).build();
+    }
+  }
+
+  @Before
+  public void setUp() {
+    actorSystem =
+        ActorSystem.create("mailbox-test", ConfigFactory.parseString("akka.actor.provider=local"));
+    received = new LinkedBlockingQueue<>();
+    probe = actorSystem.actorOf(Props.create(Probe.class, received));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FutureUtil.toJava(actorSystem.terminate()).get(10L, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testLaneOf() throws Exception {
+    for (ControlMessages message : ControlMessages.values()) {
+      assertEquals(RpcPriority.Lane.CONTROL, RpcEndpointMailbox.laneOf(message));
+    }
+    assertEquals(
+        RpcPriority.Lane.CONTROL,
+        RpcEndpointMailbox.laneOf(new RemoteHandshakeMessage(BlockingGateway.class, 1)));
+    assertEquals(
+        RpcPriority.Lane.HEARTBEAT,
+        RpcEndpointMailbox.laneOf(invocation(RpcPriority.Lane.HEARTBEAT)));
+    assertEquals(
+        RpcPriority.Lane.NORMAL, RpcEndpointMailbox.laneOf(invocation(RpcPriority.Lane.NORMAL)));
+    assertEquals(RpcPriority.Lane.NORMAL, RpcEndpointMailbox.laneOf(new RunAsync(() -> {}, 0L)));
+    // a batch takes the first lane of its invocations
+    assertEquals(
+        RpcPriority.Lane.HEARTBEAT,
+        RpcEndpointMailbox.laneOf(
+            new RpcInvocationBatch(
+                new RemoteRpcInvocation[] {
+                  remoteInvocation(RpcPriority.Lane.NORMAL),
+                  remoteInvocation(RpcPriority.Lane.HEARTBEAT)
+                },
+                new boolean[] {false, false},
+                1_000L)));
+  }
+
+  @Test
+  public void testOnlyInvocationsAreRejectable() {
+    assertTrue(RpcEndpointMailbox.isRejectable(invocation(RpcPriority.Lane.CONTROL)));
+    assertFalse(RpcEndpointMailbox.isRejectable(ControlMessages.START));
+    assertFalse(RpcEndpointMailbox.isRejectable(new RunAsync(() -> {}, 0L)));
+    assertFalse(RpcEndpointMailbox.isRejectable("message"));
+  }
+
+  @Test
+  public void testControlMessagesGetThroughFullLane() {
+    RpcEndpointMailbox.RpcEndpointMessageQueue queue = queue(1);
+    Envelope invocation = Envelope.apply(invocation(RpcPriority.Lane.CONTROL), probe);
+    queue.enqueue(probe, invocation);
+    queue.enqueue(probe, Envelope.apply(invocation(RpcPriority.Lane.CONTROL), probe));
+
+    queue.enqueue(probe, Envelope.apply(ControlMessages.START, ActorRef.noSender()));
+    queue.enqueue(probe, Envelope.apply(ControlMessages.STOP, ActorRef.noSender()));
+
+    assertEquals(3, queue.numberOfMessages());
+    assertSame(invocation, queue.dequeue());
+    assertEquals(ControlMessages.START, queue.dequeue().message());
+    assertEquals(ControlMessages.STOP, queue.dequeue().message());
+    assertNull(queue.dequeue());
+  }
+
+  @Test
+  public void testHeartbeatsOvertakeNormalInvocations() {
+    RpcEndpointMailbox.RpcEndpointMessageQueue queue = queue(0);
+    queue.enqueue(probe, Envelope.apply(invocation(RpcPriority.Lane.NORMAL), probe));
+    queue.enqueue(probe, Envelope.apply(invocation(RpcPriority.Lane.HEARTBEAT), probe));
+
+    assertEquals(
+        RpcPriority.Lane.HEARTBEAT, RpcEndpointMailbox.laneOf(queue.dequeue().message()));
+    assertEquals(RpcPriority.Lane.NORMAL, RpcEndpointMailbox.laneOf(queue.dequeue().message()));
+  }
+
+  @Test
+  public void testRejectedAskFails() throws Exception {
+    RpcEndpointMailbox.RpcEndpointMessageQueue queue = queue(1);
+    queue.enqueue(probe, Envelope.apply(invocation(RpcPriority.Lane.NORMAL), probe));
+
+    queue.enqueue(probe, Envelope.apply(invocation(RpcPriority.Lane.NORMAL), probe));
+
+    Object answer = received.poll(10L, TimeUnit.SECONDS);
+    assertTrue(answer instanceof Status.Failure);
+    assertTrue(((Status.Failure) answer).cause() instanceof RpcRejectedException);
+    assertEquals(1, queue.numberOfMessages());
+  }
+
+  @Test
+  public void testRejectedTellIsDeadLetter() throws Exception {
+    actorSystem.getEventStream().subscribe(probe, DeadLetter.class);
+    RpcEndpointMailbox.RpcEndpointMessageQueue queue = queue(1);
+    LocalRpcInvocation rejected = invocation(RpcPriority.Lane.NORMAL);
+    queue.enqueue(probe, Envelope.apply(invocation(RpcPriority.Lane.NORMAL), probe));
+
+    queue.enqueue(probe, Envelope.apply(rejected, ActorRef.noSender()));
+
+    Object answer = received.poll(10L, TimeUnit.SECONDS);
+    assertTrue(answer instanceof DeadLetter);
+    assertSame(rejected, ((DeadLetter) answer).message());
+  }
+
+  @Test
+  public void testFullLaneRejectsCallsButNotLifecycle() throws Exception {
+    Configuration configuration = new Configuration();
+    configuration.setInteger(RpcOptions.MAILBOX_CAPACITY, 2);
+    configuration.setBoolean(RpcOptions.IN_PROCESS_CALLS, false);
+    RpcService rpcService =
+        AkkaRpcServiceUtils.localServiceBuilder(configuration)
+            .withActorSystemName("mailbox-capacity")
+            .createAndStart();
+    try {
+      BlockingEndpoint endpoint = new BlockingEndpoint(rpcService);
+      endpoint.start();
+      BlockingGateway gateway =
+          rpcService.connect(endpoint.getAddress(), BlockingGateway.class).get();
+
+      // the main thread of the endpoint is busy, its control lane fills up
+      CompletableFuture<Integer> blocking = gateway.block();
+      assertTrue(endpoint.blocked.await(10L, TimeUnit.SECONDS));
+      CompletableFuture<Integer> first = gateway.control();
+      CompletableFuture<Integer> second = gateway.control();
+      try {
+        gateway.control().get(10L, TimeUnit.SECONDS);
+        fail("the control lane is full");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof RpcRejectedException);
+      }
+
+      endpoint.stopProcessing();
+      endpoint.release.countDown();
+
+      assertEquals(0, (int) blocking.get(10L, TimeUnit.SECONDS));
+      assertEquals(1, (int) first.get(10L, TimeUnit.SECONDS));
+      assertEquals(1, (int) second.get(10L, TimeUnit.SECONDS));
+      // stopped, the calls are discarded
+      try {
+        gateway.value().get(10L, TimeUnit.SECONDS);
+        fail("the endpoint is stopped");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof RpcException);
+      }
+
+      endpoint.start();
+      assertEquals(2, (int) gateway.value().get(10L, TimeUnit.SECONDS));
+      endpoint.closeAsync().get(10L, TimeUnit.SECONDS);
+    } finally {
+      rpcService.stopService().get(30L, TimeUnit.SECONDS);
+    }
+  }
+
+  // =====================  Internal  =====================
+
+  private RpcEndpointMailbox.RpcEndpointMessageQueue queue(int capacity) {
+    return new RpcEndpointMailbox.RpcEndpointMessageQueue(capacity, actorSystem);
+  }
+
+  private static LocalRpcInvocation invocation(RpcPriority.Lane lane) {
+    return new LocalRpcInvocation(0, "call", new Class<?>[0], new Object[0], lane);
+  }
+
+  private static RemoteRpcInvocation remoteInvocation(RpcPriority.Lane lane) throws Exception {
+    return new RemoteRpcInvocation(
+        0, "call", new Class<?>[0], new Object[0], PayloadFormat.JAVA, 0, lane);
+  }
+}
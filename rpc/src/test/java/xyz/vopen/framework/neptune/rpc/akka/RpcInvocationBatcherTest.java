@@ -0,0 +1,302 @@
+package xyz.vopen.framework.neptune.rpc.akka;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import com.typesafe.config.ConfigFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import xyz.vopen.framework.neptune.common.concurrent.FutureUtil;
+import xyz.vopen.framework.neptune.common.concurrent.ScheduledExecutor;
+import xyz.vopen.framework.neptune.common.serialization.PayloadFormat;
+import xyz.vopen.framework.neptune.common.utils.time.Time;
+import xyz.vopen.framework.neptune.rpc.RpcPriority;
+import xyz.vopen.framework.neptune.rpc.message.RemoteRpcInvocation;
+import xyz.vopen.framework.neptune.rpc.message.RpcInvocationBatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link RpcInvocationBatcherTest} Tests of the {@link RpcInvocationBatcher} against an actor
+ * answering the batches: the flushes after the window, at the maximum number of invocations and at
+ * half of the frame size, and the results and failures of each invocation of a batch.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class RpcInvocationBatcherTest {
+  private static final Time TIMEOUT = Time.seconds(10L);
+  private static final long WINDOW = 5L;
+
+  private ActorSystem actorSystem;
+  private BlockingQueue<RpcInvocationBatch> batches;
+  private ActorRef endpoint;
+  private ManualScheduledExecutor scheduledExecutor;
+
+  /** Doubles the argument of each invocation, fails the negative ones. */
+  public static class DoublingEndpoint extends AbstractActor {
+    private final BlockingQueue<RpcInvocationBatch> batches;
+
+    public DoublingEndpoint(BlockingQueue<RpcInvocationBatch> batches) {
+      this.batches = batches;
+    }
+
+    @Override
+    public Receive createReceive() {
+      return receiveBuilder()
+          .match(RpcInvocationBatch.class, this::answer)
+          .build();
+    }
+
+    private void answer(RpcInvocationBatch batch) throws Exception {
+      batches.add(batch);
+      if (!batch.hasReplies()) {
+        return;
+      }
+      Object[] values = new Object[batch.size()];
+      Throwable[] failures = new Throwable[batch.size()];
+      for (int i = 0; i < batch.size(); i++) {
+        int value = (int) batch.getInvocation(i).getArgs()[0];
+        if (value < 0) {
+          failures[i] = new IllegalArgumentException("negative " + value);
+        } else {
+          values[i] = value * 2;
+        }
+      }
+      getSender().tell(new RpcInvocationBatch.Results(values, failures), getSelf());
+    }
+  }
+
+  /** Answers anything with a message which is not a result. */
+  public static class UnexpectedEndpoint extends AbstractActor {
+    @Override
+    public Receive createReceive() {
+      return receiveBuilder()
+          .matchAny(message -> getSender().tell("unexpected", getSelf()))
+          .build();
+    }
+  }
+
+  @Before
+  public void setUp() {
+    actorSystem =
+        ActorSystem.create("batcher-test", ConfigFactory.parseString("akka.actor.provider=local"));
+    batches = new LinkedBlockingQueue<>();
+    endpoint = actorSystem.actorOf(Props.create(DoublingEndpoint.class, batches));
+    scheduledExecutor = new ManualScheduledExecutor();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FutureUtil.toJava(actorSystem.terminate()).get(10L, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testWindowFlush() throws Exception {
+    RpcInvocationBatcher batcher = batcher(100, Long.MAX_VALUE);
+
+    CompletableFuture<Object> first = batcher.ask(invocation(1), TIMEOUT);
+    CompletableFuture<Object> second = batcher.ask(invocation(2), TIMEOUT);
+
+    // one flush scheduled after the window for the whole batch
+    assertEquals(1, scheduledExecutor.scheduled.size());
+    assertEquals(WINDOW, scheduledExecutor.delays.get(0).longValue());
+    assertNull(batches.poll(50L, TimeUnit.MILLISECONDS));
+
+    scheduledExecutor.runScheduled();
+
+    assertEquals(2, batches.poll(10L, TimeUnit.SECONDS).size());
+    assertEquals(2, first.get(10L, TimeUnit.SECONDS));
+    assertEquals(4, second.get(10L, TimeUnit.SECONDS));
+
+    // the next invocation starts a new window
+    batcher.ask(invocation(3), TIMEOUT);
+    assertEquals(1, scheduledExecutor.scheduled.size());
+  }
+
+  @Test
+  public void testMaxInvocationsFlush() throws Exception {
+    RpcInvocationBatcher batcher = batcher(3, Long.MAX_VALUE);
+
+    List<CompletableFuture<Object>> results = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      results.add(batcher.ask(invocation(i), TIMEOUT));
+    }
+
+    // sent without waiting for the window
+    assertEquals(3, batches.poll(10L, TimeUnit.SECONDS).size());
+    for (int i = 0; i < 3; i++) {
+      assertEquals(i * 2, results.get(i).get(10L, TimeUnit.SECONDS));
+    }
+    scheduledExecutor.runScheduled();
+    assertNull(batches.poll(50L, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testHalfFrameFlush() throws Exception {
+    long size = invocation(0).getSize();
+    // half of the frame holds two and a half invocations
+    RpcInvocationBatcher batcher = batcher(100, 5 * size);
+
+    CompletableFuture<Object> first = batcher.ask(invocation(1), TIMEOUT);
+    batcher.ask(invocation(2), TIMEOUT);
+    CompletableFuture<Object> third = batcher.ask(invocation(3), TIMEOUT);
+
+    // the third one overflows the batch, which is sent without it
+    assertEquals(2, batches.poll(10L, TimeUnit.SECONDS).size());
+    assertEquals(2, first.get(10L, TimeUnit.SECONDS));
+    assertFalse(third.isDone());
+
+    scheduledExecutor.runScheduled();
+    assertEquals(1, batches.poll(10L, TimeUnit.SECONDS).size());
+    assertEquals(6, third.get(10L, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testAcceptsInvocationsUpToHalfFrame() throws Exception {
+    long size = invocation(0).getSize();
+
+    assertTrue(batcher(100, 2 * size).accepts(invocation(0)));
+    assertFalse(batcher(100, 2 * size - 2).accepts(invocation(0)));
+  }
+
+  @Test
+  public void testFailuresAreIsolated() throws Exception {
+    RpcInvocationBatcher batcher = batcher(3, Long.MAX_VALUE);
+
+    CompletableFuture<Object> first = batcher.ask(invocation(1), TIMEOUT);
+    CompletableFuture<Object> failing = batcher.ask(invocation(-1), TIMEOUT);
+    CompletableFuture<Object> third = batcher.ask(invocation(3), TIMEOUT);
+
+    assertEquals(2, first.get(10L, TimeUnit.SECONDS));
+    assertEquals(6, third.get(10L, TimeUnit.SECONDS));
+    try {
+      failing.get(10L, TimeUnit.SECONDS);
+      fail("the invocation failed");
+    } catch (ExecutionException e) {
+      assertEquals(IllegalArgumentException.class, e.getCause().getClass());
+    }
+  }
+
+  @Test
+  public void testTellsAreSentWithoutReply() throws Exception {
+    RpcInvocationBatcher batcher = batcher(2, Long.MAX_VALUE);
+
+    batcher.tell(invocation(1));
+    batcher.tell(invocation(2));
+
+    RpcInvocationBatch batch = batches.poll(10L, TimeUnit.SECONDS);
+    assertEquals(2, batch.size());
+    assertFalse(batch.hasReplies());
+  }
+
+  @Test
+  public void testMixedBatchAnswersOnlyAsks() throws Exception {
+    RpcInvocationBatcher batcher = batcher(2, Long.MAX_VALUE);
+
+    batcher.tell(invocation(1));
+    CompletableFuture<Object> result = batcher.ask(invocation(2), Time.seconds(7L));
+
+    RpcInvocationBatch batch = batches.poll(10L, TimeUnit.SECONDS);
+    assertFalse(batch.isReply(0));
+    assertTrue(batch.isReply(1));
+    assertEquals(7_000L, batch.getTimeout());
+    assertEquals(4, result.get(10L, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testUnexpectedAnswerFailsEveryInvocation() throws Exception {
+    ActorRef unexpected = actorSystem.actorOf(Props.create(UnexpectedEndpoint.class));
+    RpcInvocationBatcher batcher =
+        new RpcInvocationBatcher(unexpected, WINDOW, 2, Long.MAX_VALUE, scheduledExecutor);
+
+    CompletableFuture<Object> first = batcher.ask(invocation(1), TIMEOUT);
+    CompletableFuture<Object> second = batcher.ask(invocation(2), TIMEOUT);
+
+    for (CompletableFuture<Object> result : new CompletableFuture[] {first, second}) {
+      try {
+        result.get(10L, TimeUnit.SECONDS);
+        fail("the answer is not a result of the batch");
+      } catch (ExecutionException e) {
+        assertEquals(IllegalStateException.class, e.getCause().getClass());
+      }
+    }
+  }
+
+  // =====================  Internal  =====================
+
+  private RpcInvocationBatcher batcher(int maxInvocations, long maximumFrameSize) {
+    return new RpcInvocationBatcher(
+        endpoint, WINDOW, maxInvocations, maximumFrameSize, scheduledExecutor);
+  }
+
+  private static RemoteRpcInvocation invocation(int value) throws Exception {
+    return new RemoteRpcInvocation(
+        0,
+        "double",
+        new Class<?>[] {int.class},
+        new Object[] {value},
+        PayloadFormat.JAVA,
+        0,
+        RpcPriority.Lane.NORMAL);
+  }
+
+  /** Runs the scheduled commands when told to, ignoring their delay. */
+  private static final class ManualScheduledExecutor implements ScheduledExecutor {
+    private final List<Runnable> scheduled = new ArrayList<>();
+    private final List<Long> delays = new ArrayList<>();
+
+    synchronized void runScheduled() {
+      List<Runnable> commands = new ArrayList<>(scheduled);
+      scheduled.clear();
+      delays.clear();
+      commands.forEach(Runnable::run);
+    }
+
+    @Override
+    public synchronized ScheduledFuture<?> schedule(
+        Runnable command, long delay, TimeUnit unit) {
+      scheduled.add(command);
+      delays.add(unit.toMillis(delay));
+      return null;
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(
+        Runnable command, long initialDelay, long period, TimeUnit unit) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(
+        Runnable command, long initialDelay, long delay, TimeUnit unit) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      command.run();
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package xyz.vopen.framework.neptune.rpc.netty;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Before;
+import org.junit.Test;
+import xyz.vopen.framework.neptune.common.serialization.PayloadFormat;
+import xyz.vopen.framework.neptune.common.utils.time.Time;
+import xyz.vopen.framework.neptune.rpc.exceptions.RpcConnectionException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link NettyConnectionTest} Tests of the correlation of the requests of a {@link
+ * NettyConnection} with their responses, and of the failure of the pending requests when the
+ * channel closes.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class NettyConnectionTest {
+  private static final Time TIMEOUT = Time.seconds(10L);
+
+  private EmbeddedChannel channel;
+  private NettyConnection connection;
+
+  @Before
+  public void setUp() {
+    channel = new EmbeddedChannel(NettyConnection.ResponseHandler.INSTANCE);
+    connection = new NettyConnection(channel, "127.0.0.1:6123", Runnable::run);
+    channel.attr(NettyConnection.CONNECTION).set(connection);
+  }
+
+  @Test
+  public void testResponsesCompleteTheirRequests() throws Exception {
+    NettyMessage first = invocation(connection.nextRequestId());
+    NettyMessage second = invocation(connection.nextRequestId());
+    CompletableFuture<NettyMessage> firstResponse = connection.ask(first, TIMEOUT);
+    CompletableFuture<NettyMessage> secondResponse = connection.ask(second, TIMEOUT);
+    assertSame(first, channel.readOutbound());
+    assertSame(second, channel.readOutbound());
+
+    // answered out of order
+    NettyMessage.Response response = new NettyMessage.Response(second.getRequestId(), true, null);
+    channel.writeInbound(response);
+
+    assertSame(response, secondResponse.get(1L, TimeUnit.SECONDS));
+    assertFalse(firstResponse.isDone());
+  }
+
+  @Test
+  public void testRequestIdsAreNeverZero() {
+    for (int i = 0; i < 1_000; i++) {
+      assertTrue(connection.nextRequestId() != 0L);
+    }
+  }
+
+  @Test
+  public void testPendingRequestsFailWhenChannelCloses() throws Exception {
+    CompletableFuture<NettyMessage> first =
+        connection.ask(invocation(connection.nextRequestId()), TIMEOUT);
+    CompletableFuture<NettyMessage> second =
+        connection.ask(invocation(connection.nextRequestId()), TIMEOUT);
+
+    channel.close();
+
+    assertConnectionClosed(first);
+    assertConnectionClosed(second);
+  }
+
+  @Test
+  public void testRequestOnClosedChannelFails() throws Exception {
+    channel.close();
+
+    assertConnectionClosed(connection.ask(invocation(connection.nextRequestId()), TIMEOUT));
+  }
+
+  @Test
+  public void testRequestTimesOut() throws Exception {
+    CompletableFuture<NettyMessage> response =
+        connection.ask(invocation(connection.nextRequestId()), Time.milliseconds(50L));
+
+    try {
+      response.get(10L, TimeUnit.SECONDS);
+      fail("the request is never answered");
+    } catch (ExecutionException e) {
+      assertEquals(TimeoutException.class, e.getCause().getClass());
+    }
+  }
+
+  @Test
+  public void testLateResponseIsDropped() throws Exception {
+    NettyMessage request = invocation(connection.nextRequestId());
+    CompletableFuture<NettyMessage> response = connection.ask(request, TIMEOUT);
+    response.cancel(false);
+
+    // neither completes nor fails anything
+    channel.writeInbound(new NettyMessage.Response(request.getRequestId(), true, null));
+
+    assertTrue(channel.isActive());
+  }
+
+  // =====================  Internal  =====================
+
+  private static NettyMessage invocation(long requestId) {
+    return new NettyMessage.Invocation(requestId, 1, 2, PayloadFormat.JAVA, false, null);
+  }
+
+  private static void assertConnectionClosed(CompletableFuture<NettyMessage> response)
+      throws Exception {
+    try {
+      response.get(1L, TimeUnit.SECONDS);
+      fail("the connection is closed");
+    } catch (ExecutionException e) {
+      assertEquals(RpcConnectionException.class, e.getCause().getClass());
+    }
+  }
+}
@@ -0,0 +1,193 @@
+package xyz.vopen.framework.neptune.rpc.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import org.junit.Test;
+import xyz.vopen.framework.neptune.common.serialization.PayloadFormat;
+import xyz.vopen.framework.neptune.common.utils.SerializedValue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link NettyMessageCodecTest} Round trips of every {@link NettyMessage} through the encoder and
+ * the decoder of {@link NettyMessageCodec}, and the rejection of the corrupted frames.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class NettyMessageCodecTest {
+  private static final ClassLoader LOADER = NettyMessageCodecTest.class.getClassLoader();
+  private static final long MAXIMUM_FRAME_SIZE = 1024 * 1024;
+
+  @Test
+  public void testRoundTripsHandshake() {
+    NettyMessage.Handshake handshake =
+        roundTrip(
+            new NettyMessage.Handshake(
+                7L,
+                3,
+                "dispatcher",
+                "xyz.vopen.framework.neptune.rpc.DispatcherGateway",
+                Arrays.asList(PayloadFormat.KRYO, PayloadFormat.JAVA),
+                true));
+
+    assertEquals(7L, handshake.getRequestId());
+    assertEquals(3, handshake.getVersion());
+    assertEquals("dispatcher", handshake.getEndpointId());
+    assertEquals("xyz.vopen.framework.neptune.rpc.DispatcherGateway", handshake.getRpcGateway());
+    assertEquals(
+        Arrays.asList(PayloadFormat.KRYO, PayloadFormat.JAVA), handshake.getPayloadFormats());
+    assertTrue(handshake.isCompression());
+  }
+
+  @Test
+  public void testRoundTripsHandshakeSuccess() {
+    NettyMessage.HandshakeSuccess success =
+        roundTrip(new NettyMessage.HandshakeSuccess(8L, 42, PayloadFormat.KRYO, false));
+
+    assertEquals(8L, success.getRequestId());
+    assertEquals(42, success.getEndpointHandle());
+    assertEquals(PayloadFormat.KRYO, success.getPayloadFormat());
+    assertFalse(success.isCompression());
+  }
+
+  @Test
+  public void testRoundTripsInvocation() throws Exception {
+    Object[] args = {"job-1", 42L, Collections.singletonList(3)};
+    for (PayloadFormat format : PayloadFormat.values()) {
+      NettyMessage.Invocation invocation =
+          roundTrip(
+              new NettyMessage.Invocation(
+                  9L, 5, -123_456, format, true, new SerializedValue<>(args, format, 0)));
+
+      assertEquals(9L, invocation.getRequestId());
+      assertEquals(5, invocation.getEndpointHandle());
+      assertEquals(-123_456, invocation.getMethodId());
+      assertEquals(format, invocation.getResultFormat());
+      assertTrue(invocation.acceptsCompressedResult());
+      assertEquals(format, invocation.getArgs().getFormat());
+      assertArrayEquals(args, invocation.getArgs().deserializeValue(LOADER));
+    }
+  }
+
+  @Test
+  public void testRoundTripsInvocationWithoutArgs() {
+    NettyMessage.Invocation invocation =
+        roundTrip(new NettyMessage.Invocation(10L, 5, 1, PayloadFormat.JAVA, false, null));
+
+    assertNull(invocation.getArgs());
+  }
+
+  @Test
+  public void testRoundTripsCompressedResponse() throws Exception {
+    StringBuilder value = new StringBuilder();
+    for (int i = 0; i < 1_000; i++) {
+      value.append("{\"jobId\":42,\"status\":\"RUNNING\"}");
+    }
+    SerializedValue<String> serialized =
+        new SerializedValue<>(value.toString(), PayloadFormat.KRYO, 1024);
+
+    NettyMessage.Response response = roundTrip(new NettyMessage.Response(11L, true, serialized));
+
+    assertEquals(11L, response.getRequestId());
+    assertTrue(response.isSuccess());
+    assertTrue(response.getValue().isCompressed());
+    assertEquals(value.toString(), response.getValue().deserializeValue(LOADER));
+  }
+
+  @Test
+  public void testRoundTripsFailure() throws Exception {
+    NettyMessage.Response response =
+        roundTrip(NettyMessage.Response.failure(12L, new IllegalStateException("failed")));
+
+    assertFalse(response.isSuccess());
+    Throwable cause = (Throwable) response.getValue().deserializeValue(LOADER);
+    assertEquals(IllegalStateException.class, cause.getClass());
+    assertEquals("failed", cause.getMessage());
+  }
+
+  @Test
+  public void testRoundTripsNullResult() {
+    assertNull(roundTrip(new NettyMessage.Response(13L, true, null)).getValue());
+  }
+
+  @Test
+  public void testRejectsPayloadLongerThanFrame() {
+    ByteBuf frame = Unpooled.buffer();
+    frame.writeInt(0);
+    frame.writeByte(NettyMessage.RESPONSE);
+    frame.writeLong(14L);
+    frame.writeBoolean(true);
+    frame.writeByte(PayloadFormat.JAVA.getId());
+    frame.writeBoolean(false);
+    // a hostile length is rejected before it is allocated
+    frame.writeInt(Integer.MAX_VALUE);
+    frame.writeBytes(new byte[16]);
+    frame.setInt(0, frame.readableBytes() - 4);
+
+    assertCorrupted(frame);
+  }
+
+  @Test
+  public void testRejectsStringLongerThanFrame() {
+    ByteBuf frame = Unpooled.buffer();
+    frame.writeInt(0);
+    frame.writeByte(NettyMessage.HANDSHAKE);
+    frame.writeLong(15L);
+    frame.writeInt(1);
+    frame.writeShort(60_000);
+    frame.writeBytes(new byte[16]);
+    frame.setInt(0, frame.readableBytes() - 4);
+
+    assertCorrupted(frame);
+  }
+
+  @Test
+  public void testRejectsUnknownType() {
+    ByteBuf frame = Unpooled.buffer();
+    frame.writeInt(9);
+    frame.writeByte(127);
+    frame.writeLong(16L);
+
+    assertCorrupted(frame);
+  }
+
+  // =====================  Internal  =====================
+
+  @SuppressWarnings("unchecked")
+  private static <T extends NettyMessage> T roundTrip(T message) {
+    EmbeddedChannel encoder = new EmbeddedChannel(NettyMessageCodec.Encoder.INSTANCE);
+    EmbeddedChannel decoder =
+        new EmbeddedChannel(new NettyMessageCodec.Decoder(MAXIMUM_FRAME_SIZE));
+    assertTrue(encoder.writeOutbound(message));
+    ByteBuf frame = encoder.readOutbound();
+    assertTrue(decoder.writeInbound(frame));
+    T decoded = decoder.readInbound();
+    assertEquals(message.getClass(), decoded.getClass());
+    assertEquals(message.getType(), decoded.getType());
+    assertFalse(encoder.finish());
+    assertFalse(decoder.finish());
+    return decoded;
+  }
+
+  private static void assertCorrupted(ByteBuf frame) {
+    EmbeddedChannel decoder =
+        new EmbeddedChannel(new NettyMessageCodec.Decoder(MAXIMUM_FRAME_SIZE));
+    try {
+      decoder.writeInbound(frame);
+      fail("a corrupted frame is rejected");
+    } catch (CorruptedFrameException expected) {
+      // the channel is closed
+    }
+  }
+}
@@ -0,0 +1,175 @@
+package xyz.vopen.framework.neptune.rpc.netty;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import xyz.vopen.framework.neptune.common.configuration.Configuration;
+import xyz.vopen.framework.neptune.common.configuration.RpcOptions;
+import xyz.vopen.framework.neptune.common.utils.NetUtils;
+import xyz.vopen.framework.neptune.rpc.RpcEndpoint;
+import xyz.vopen.framework.neptune.rpc.RpcGateway;
+import xyz.vopen.framework.neptune.rpc.RpcService;
+import xyz.vopen.framework.neptune.rpc.RpcServiceUtils;
+import xyz.vopen.framework.neptune.rpc.exceptions.RpcConnectionException;
+
+import java.lang.reflect.Proxy;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link NettyRpcServiceTest} Remote calls between two rpc services over {@code
+ * rpc.transport=netty}, with the in-process calls disabled so that they go through the transport.
+ *
+ * @author <a href="mailto:siran0611@gmail.com">Elias.Yao</a>
+ * @version ${project.version} - 2020/10/30
+ */
+public class NettyRpcServiceTest {
+
+  private RpcService server;
+  private RpcService client;
+
+  public interface CounterGateway extends RpcGateway {
+    CompletableFuture<Integer> add(int delta);
+
+    void set(int value);
+
+    CompletableFuture<String> fail(String message);
+
+    int get();
+  }
+
+  public static class CounterEndpoint extends RpcEndpoint implements CounterGateway {
+    private int count;
+
+    CounterEndpoint(RpcService rpcService) {
+      super(rpcService);
+    }
+
+    @Override
+    public CompletableFuture<Integer> add(int delta) {
+      validateRunsInMainThread();
+      count += delta;
+      return CompletableFuture.completedFuture(count);
+    }
+
+    @Override
+    public void set(int value) {
+      count = value;
+    }
+
+    @Override
+    public CompletableFuture<String> fail(String message) {
+      throw new IllegalStateException(message);
+    }
+
+    @Override
+    public int get() {
+      return count;
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    server = start();
+    client = start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    client.stopService().get(30L, TimeUnit.SECONDS);
+    server.stopService().get(30L, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testCallsGoThroughTheTransport() throws Exception {
+    CounterGateway gateway = connect();
+
+    assertEquals(NettyInvocationHandler.class, Proxy.getInvocationHandler(gateway).getClass());
+    assertEquals(Integer.valueOf(2), gateway.add(2).get(10L, TimeUnit.SECONDS));
+    assertEquals(Integer.valueOf(5), gateway.add(3).get(10L, TimeUnit.SECONDS));
+    assertEquals(5, gateway.get());
+  }
+
+  @Test
+  public void testCallsOfAGatewayAreOrdered() throws Exception {
+    CounterGateway gateway = connect();
+    CompletableFuture<Integer> last = null;
+    for (int i = 0; i < 1_000; i++) {
+      last = gateway.add(1);
+    }
+
+    assertEquals(Integer.valueOf(1_000), last.get(10L, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testTellIsOrderedWithAsks() throws Exception {
+    CounterGateway gateway = connect();
+    gateway.set(10);
+
+    assertEquals(Integer.valueOf(11), gateway.add(1).get(10L, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testFailureReachesTheCaller() throws Exception {
+    CounterGateway gateway = connect();
+
+    try {
+      gateway.fail("expected").get(10L, TimeUnit.SECONDS);
+      fail("the endpoint throws");
+    } catch (ExecutionException e) {
+      assertEquals(IllegalStateException.class, e.getCause().getClass());
+      assertEquals("expected", e.getCause().getMessage());
+    }
+  }
+
+  @Test
+  public void testUnknownEndpointFailsTheConnect() throws Exception {
+    CounterEndpoint endpoint = new CounterEndpoint(server);
+    endpoint.start();
+    String address = endpoint.getAddress().replace(endpoint.getEndpointId(), "unknown");
+
+    try {
+      client.connect(address, CounterGateway.class).get(10L, TimeUnit.SECONDS);
+      fail("no endpoint has the id");
+    } catch (ExecutionException expected) {
+      // the handshake is rejected
+    }
+  }
+
+  @Test
+  public void testPendingCallsFailWhenServerStops() throws Exception {
+    CounterGateway gateway = connect();
+    gateway.add(1).get(10L, TimeUnit.SECONDS);
+
+    server.stopService().get(30L, TimeUnit.SECONDS);
+
+    try {
+      gateway.add(1).get(10L, TimeUnit.SECONDS);
+      fail("the server is stopped");
+    } catch (ExecutionException e) {
+      assertEquals(RpcConnectionException.class, e.getCause().getClass());
+    }
+  }
+
+  // =====================  Internal  =====================
+
+  private CounterGateway connect() throws Exception {
+    CounterEndpoint endpoint = new CounterEndpoint(server);
+    endpoint.start();
+    return client.connect(endpoint.getAddress(), CounterGateway.class).get(10L, TimeUnit.SECONDS);
+  }
+
+  private static RpcService start() throws Exception {
+    Configuration configuration = new Configuration();
+    configuration.setString(RpcOptions.TRANSPORT, "netty");
+    configuration.setBoolean(RpcOptions.IN_PROCESS_CALLS, false);
+    int port = NetUtils.getAvailablePort();
+    return RpcServiceUtils.createRemoteRpcService(
+        configuration, "127.0.0.1", String.valueOf(port), "127.0.0.1", Optional.empty());
+  }
+}